@@ -0,0 +1,254 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.search.aggregations;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.cache.query.DisabledQueryCache;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.fielddata.IndexFieldDataCache;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.index.query.QueryShardContext;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.BatchingBucketCollector;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.search.aggregations.SearchContextAggregations;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.avg.AvgAggregationBuilder;
+import org.elasticsearch.search.aggregations.support.ValueType;
+import org.elasticsearch.search.internal.ContextIndexSearcher;
+import org.elasticsearch.search.internal.FilteredSearchContext;
+import org.elasticsearch.search.internal.SearchContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares collecting a {@code terms} aggregation on a long field with an {@code avg} sub-aggregation one document at a time
+ * with collecting it in batches through {@link LeafBucketCollector#collect(int[], int, long)}, which is what the aggregation
+ * phase does with a {@link BatchingBucketCollector} when scores are not needed. The aggregators are the real ones, built from
+ * their aggregation builders against a search context that only provides what they need to collect documents.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class BatchCollectionBenchmark {
+
+    @Param({"10", "10000"})
+    public int numTerms = 10;
+
+    // whether documents that share a term are next to each other, like with time based data and an index sort
+    @Param({"true", "false"})
+    public boolean clustered = true;
+
+    @Param({"depth_first", "breadth_first"})
+    public String collectMode = "depth_first";
+
+    @Param({"1000000"})
+    public int numDocs = 1000000;
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private SearchContext context;
+    private TermsAggregationBuilder aggregationBuilder;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        directory = new RAMDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig())) {
+            for (int i = 0; i < numDocs; i++) {
+                Document doc = new Document();
+                long term = clustered ? (long) i * numTerms / numDocs : random.nextInt(numTerms);
+                doc.add(new NumericDocValuesField("term", term));
+                doc.add(new NumericDocValuesField("value", random.nextInt(1000)));
+                writer.addDocument(doc);
+            }
+            writer.forceMerge(5);
+        }
+        reader = DirectoryReader.open(directory);
+        context = new AggregationContext(reader, fieldType("term"), fieldType("value"));
+        aggregationBuilder = new TermsAggregationBuilder("terms", ValueType.LONG)
+            .field("term")
+            .size(numTerms)
+            .collectMode(Aggregator.SubAggCollectionMode.parse(collectMode))
+            .subAggregation(new AvgAggregationBuilder("avg").field("value"));
+    }
+
+    private static MappedFieldType fieldType(String name) {
+        MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        fieldType.setName(name);
+        return fieldType;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    @Benchmark
+    public InternalAggregation perDocument() throws IOException {
+        Aggregator aggregator = aggregationBuilder.build(context, null).create(null, true);
+        try {
+            aggregator.preCollection();
+            for (LeafReaderContext ctx : reader.leaves()) {
+                LeafBucketCollector collector = aggregator.getLeafCollector(ctx);
+                int maxDoc = ctx.reader().maxDoc();
+                for (int doc = 0; doc < maxDoc; doc++) {
+                    collector.collect(doc, 0);
+                }
+            }
+            aggregator.postCollection();
+            return aggregator.buildAggregation(0);
+        } finally {
+            context.clearReleasables(SearchContext.Lifetime.PHASE);
+        }
+    }
+
+    @Benchmark
+    public InternalAggregation batched() throws IOException {
+        Aggregator aggregator = aggregationBuilder.build(context, null).create(null, true);
+        try {
+            BatchingBucketCollector collector = new BatchingBucketCollector(aggregator);
+            collector.preCollection();
+            for (LeafReaderContext ctx : reader.leaves()) {
+                LeafBucketCollector leafCollector;
+                try {
+                    leafCollector = collector.getLeafCollector(ctx);
+                } catch (CollectionTerminatedException e) {
+                    continue;
+                }
+                int maxDoc = ctx.reader().maxDoc();
+                for (int doc = 0; doc < maxDoc; doc++) {
+                    leafCollector.collect(doc, 0);
+                }
+            }
+            collector.postCollection();
+            return aggregator.buildAggregation(0);
+        } finally {
+            context.clearReleasables(SearchContext.Lifetime.PHASE);
+        }
+    }
+
+    /**
+     * A search context that only provides what terms and avg aggregators need to be built and to collect documents,
+     * all other methods fail since there is no context to delegate to.
+     */
+    private static final class AggregationContext extends FilteredSearchContext {
+        private final ContextIndexSearcher searcher;
+        private final QueryShardContext queryShardContext;
+
+        AggregationContext(DirectoryReader reader, MappedFieldType... fieldTypes) {
+            super(null);
+            IndexSettings indexSettings = new IndexSettings(IndexMetaData.builder("_index")
+                .settings(Settings.builder().put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT))
+                .numberOfShards(1)
+                .numberOfReplicas(0)
+                .build(), Settings.EMPTY);
+            this.searcher = new ContextIndexSearcher(new Engine.Searcher("benchmark", new IndexSearcher(reader)),
+                new DisabledQueryCache(indexSettings), new QueryCachingPolicy() {
+                    @Override
+                    public void onUse(Query query) {
+                    }
+
+                    @Override
+                    public boolean shouldCache(Query query) {
+                        return false;
+                    }
+                });
+            this.queryShardContext = new QueryShardContext(0, indexSettings, null,
+                (fieldType, index) -> fieldType.fielddataBuilder(index).build(indexSettings, fieldType, new IndexFieldDataCache.None(),
+                    new NoneCircuitBreakerService(), null),
+                null, null, null, NamedXContentRegistry.EMPTY, null, null, reader, () -> 0L, null) {
+                @Override
+                public MappedFieldType fieldMapper(String name) {
+                    for (MappedFieldType fieldType : fieldTypes) {
+                        if (fieldType.name().equals(name)) {
+                            return fieldType;
+                        }
+                    }
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public BigArrays bigArrays() {
+            return BigArrays.NON_RECYCLING_INSTANCE;
+        }
+
+        @Override
+        public SearchContextAggregations aggregations() {
+            return null;
+        }
+
+        @Override
+        public int numberOfShards() {
+            return 1;
+        }
+
+        @Override
+        public ContextIndexSearcher searcher() {
+            return searcher;
+        }
+
+        @Override
+        public QueryShardContext getQueryShardContext() {
+            return queryShardContext;
+        }
+    }
+}
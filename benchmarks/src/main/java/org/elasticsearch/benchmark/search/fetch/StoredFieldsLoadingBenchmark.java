@@ -0,0 +1,150 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.search.fetch;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
+import org.elasticsearch.index.fieldvisitor.FieldsVisitor;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.search.fetch.LeafStoredFieldsLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares loading the stored fields of a page of hits in score order, one document at a time, with loading them in doc id
+ * order per segment with a {@link LeafStoredFieldsLoader}, which is what the fetch phase does.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class StoredFieldsLoadingBenchmark {
+
+    @Param({"10", "100", "500", "1000"})
+    public int pageSize = 100;
+
+    @Param({"100000"})
+    public int numDocs = 100000;
+
+    @Param({"1024"})
+    public int sourceSize = 1024;
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private int[] docIds;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        directory = new RAMDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig())) {
+            byte[] source = new byte[sourceSize];
+            for (int i = 0; i < numDocs; i++) {
+                for (int j = 0; j < source.length; j++) {
+                    // compressible but not trivially so, like json
+                    source[j] = (byte) ('a' + random.nextInt(16));
+                }
+                Document doc = new Document();
+                doc.add(new StoredField("_uid", "type#" + i));
+                doc.add(new StoredField("_source", source));
+                writer.addDocument(doc);
+            }
+            writer.forceMerge(5);
+        }
+        reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(directory), new ShardId("index", "_na_", 0));
+        // the top hits of a query are spread over the whole index and come in score order
+        docIds = new int[pageSize];
+        for (int i = 0; i < pageSize; i++) {
+            docIds[i] = random.nextInt(numDocs);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    @Benchmark
+    public void scoreOrder(Blackhole bh) throws IOException {
+        List<LeafReaderContext> leaves = reader.leaves();
+        for (int docId : docIds) {
+            LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(docId, leaves));
+            FieldsVisitor visitor = new FieldsVisitor(true);
+            leaf.reader().document(docId - leaf.docBase, visitor);
+            bh.consume(visitor.source());
+        }
+    }
+
+    @Benchmark
+    public void docIdOrder(Blackhole bh) throws IOException {
+        List<LeafReaderContext> leaves = reader.leaves();
+        long[] docsInOrder = new long[docIds.length];
+        for (int i = 0; i < docIds.length; i++) {
+            docsInOrder[i] = ((long) docIds[i] << 32) | i;
+        }
+        Arrays.sort(docsInOrder);
+        FieldsVisitor visitor = new FieldsVisitor(true);
+        Object[] sources = new Object[docIds.length];
+        LeafReaderContext leaf = null;
+        LeafStoredFieldsLoader loader = null;
+        for (int i = 0; i < docsInOrder.length; i++) {
+            int docId = (int) (docsInOrder[i] >>> 32);
+            if (leaf == null || docId >= leaf.docBase + leaf.reader().maxDoc()) {
+                leaf = leaves.get(ReaderUtil.subIndex(docId, leaves));
+                boolean sequential = i + 1 < docsInOrder.length
+                    && (int) (docsInOrder[i + 1] >>> 32) < leaf.docBase + leaf.reader().maxDoc();
+                loader = LeafStoredFieldsLoader.create(leaf.reader(), sequential);
+            }
+            visitor.reset();
+            loader.document(docId - leaf.docBase, visitor);
+            sources[(int) docsInOrder[i]] = visitor.source();
+        }
+        bh.consume(sources);
+    }
+}
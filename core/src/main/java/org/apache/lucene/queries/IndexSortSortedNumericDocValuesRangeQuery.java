@@ -0,0 +1,211 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.lucene.queries;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.ConstantScoreScorer;
+import org.apache.lucene.search.ConstantScoreWeight;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.ScorerSupplier;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.search.Weight;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.function.LongPredicate;
+
+/**
+ * A range query on a long field that, on segments that are sorted by that field first, matches the contiguous range of doc ids
+ * whose values are within the range instead of evaluating the range document by document. The bounds of the doc id range are
+ * found with a binary search over the doc values of the field. Segments that are not sorted by the field, or where some
+ * documents don't have exactly one value for the field, are matched with the fallback query.
+ */
+public final class IndexSortSortedNumericDocValuesRangeQuery extends Query {
+
+    private final String field;
+    private final long lowerValue;
+    private final long upperValue;
+    private final Query fallbackQuery;
+
+    /**
+     * @param field the field, which must be indexed with points and doc values
+     * @param lowerValue the lower bound of the range, inclusive
+     * @param upperValue the upper bound of the range, inclusive
+     * @param fallbackQuery the query that matches the same documents as this query, used on segments where the index sort
+     *                      can't be used
+     */
+    public IndexSortSortedNumericDocValuesRangeQuery(String field, long lowerValue, long upperValue, Query fallbackQuery) {
+        this.field = Objects.requireNonNull(field);
+        this.lowerValue = lowerValue;
+        this.upperValue = upperValue;
+        this.fallbackQuery = Objects.requireNonNull(fallbackQuery);
+    }
+
+    public Query getFallbackQuery() {
+        return fallbackQuery;
+    }
+
+    @Override
+    public Query rewrite(IndexReader reader) throws IOException {
+        if (lowerValue > upperValue) {
+            return new MatchNoDocsQuery("empty range");
+        }
+        Query rewrittenFallback = fallbackQuery.rewrite(reader);
+        if (rewrittenFallback != fallbackQuery) {
+            return new IndexSortSortedNumericDocValuesRangeQuery(field, lowerValue, upperValue, rewrittenFallback);
+        }
+        return this;
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, boolean needsScores, float boost) throws IOException {
+        final Weight fallbackWeight = fallbackQuery.createWeight(searcher, needsScores, boost);
+        return new ConstantScoreWeight(this, boost) {
+            @Override
+            public Scorer scorer(LeafReaderContext context) throws IOException {
+                ScorerSupplier supplier = scorerSupplier(context);
+                if (supplier == null) {
+                    return null;
+                }
+                return supplier.get(Long.MAX_VALUE);
+            }
+
+            @Override
+            public ScorerSupplier scorerSupplier(LeafReaderContext context) throws IOException {
+                final int[] range = docIdRange(context.reader());
+                if (range == null) {
+                    return fallbackWeight.scorerSupplier(context);
+                }
+                if (range[0] >= range[1]) {
+                    return null;
+                }
+                final Weight weight = this;
+                return new ScorerSupplier() {
+                    @Override
+                    public Scorer get(long leadCost) throws IOException {
+                        return new ConstantScoreScorer(weight, score(), new MinDocQuery.MinDocIterator(range[0], range[1]));
+                    }
+
+                    @Override
+                    public long cost() {
+                        return range[1] - range[0];
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * Returns the range of doc ids, as an inclusive start and an exclusive end, of the documents of the given segment that
+     * match this query, or <code>null</code> if the segment is not sorted by the field or not all of its documents have
+     * exactly one value for the field.
+     */
+    int[] docIdRange(LeafReader reader) throws IOException {
+        final Sort indexSort = reader.getMetaData().getSort();
+        if (indexSort == null || indexSort.getSort().length == 0) {
+            return null;
+        }
+        final SortField sortField = indexSort.getSort()[0];
+        if (sortField instanceof SortedNumericSortField == false || field.equals(sortField.getField()) == false
+                || ((SortedNumericSortField) sortField).getNumericType() != SortField.Type.LONG) {
+            return null;
+        }
+        // with one value per document the values are monotonic in doc id order, whatever the selector and missing value
+        final PointValues points = reader.getPointValues(field);
+        if (points == null || points.getDocCount() != reader.maxDoc() || points.size() != points.getDocCount()) {
+            return null;
+        }
+        if (DocValues.unwrapSingleton(DocValues.getSortedNumeric(reader, field)) == null) {
+            return null;
+        }
+        final int maxDoc = reader.maxDoc();
+        if (sortField.getReverse()) {
+            // values decrease with doc ids
+            return new int[] {
+                firstDoc(reader, maxDoc, value -> value <= upperValue),
+                firstDoc(reader, maxDoc, value -> value < lowerValue)
+            };
+        } else {
+            return new int[] {
+                firstDoc(reader, maxDoc, value -> value >= lowerValue),
+                firstDoc(reader, maxDoc, value -> value > upperValue)
+            };
+        }
+    }
+
+    /**
+     * Returns the first doc id whose value matches the given predicate, which must be false for all the documents before that
+     * doc id and true for all the documents after it, or <code>maxDoc</code> if no document matches.
+     */
+    private int firstDoc(LeafReader reader, int maxDoc, LongPredicate predicate) throws IOException {
+        int low = 0;
+        int high = maxDoc - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (predicate.test(valueOf(reader, mid))) {
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private long valueOf(LeafReader reader, int doc) throws IOException {
+        // doc values are forward-only iterators so we need a new instance for each lookup, this is only called a few times
+        // per segment
+        final SortedNumericDocValues values = DocValues.getSortedNumeric(reader, field);
+        if (values.advanceExact(doc) == false) {
+            throw new IllegalStateException("document [" + doc + "] has no value for field [" + field + "]");
+        }
+        return values.nextValue();
+    }
+
+    @Override
+    public String toString(String field) {
+        return "IndexSortSortedNumericDocValuesRangeQuery(field=" + this.field + ", lower=" + lowerValue + ", upper=" + upperValue
+            + ", fallback=" + fallbackQuery.toString(field) + ")";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (sameClassAs(obj) == false) {
+            return false;
+        }
+        IndexSortSortedNumericDocValuesRangeQuery that = (IndexSortSortedNumericDocValuesRangeQuery) obj;
+        return field.equals(that.field) && lowerValue == that.lowerValue && upperValue == that.upperValue
+            && fallbackQuery.equals(that.fallbackQuery);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(classHash(), field, lowerValue, upperValue, fallbackQuery);
+    }
+}
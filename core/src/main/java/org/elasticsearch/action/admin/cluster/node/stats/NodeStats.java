@@ -20,16 +20,19 @@
 package org.elasticsearch.action.admin.cluster.node.stats;
 
 import org.elasticsearch.Version;
+import org.elasticsearch.action.search.BufferedAggsStats;
 import org.elasticsearch.action.support.nodes.BaseNodeResponse;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.util.BigArraysStats;
 import org.elasticsearch.common.xcontent.ToXContent.Params;
 import org.elasticsearch.common.xcontent.ToXContentFragment;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.discovery.DiscoveryStats;
 import org.elasticsearch.http.HttpStats;
+import org.elasticsearch.index.search.stats.SearchLatencyStats;
 import org.elasticsearch.indices.NodeIndicesStats;
 import org.elasticsearch.indices.breaker.AllCircuitBreakerStats;
 import org.elasticsearch.ingest.IngestStats;
@@ -91,6 +94,15 @@ public class NodeStats extends BaseNodeResponse implements ToXContentFragment {
     @Nullable
     private AdaptiveSelectionStats adaptiveSelectionStats;
 
+    @Nullable
+    private SearchLatencyStats searchLatencyStats;
+
+    @Nullable
+    private BigArraysStats bigArraysStats;
+
+    @Nullable
+    private BufferedAggsStats bufferedAggsStats;
+
     NodeStats() {
     }
 
@@ -101,7 +113,10 @@ public class NodeStats extends BaseNodeResponse implements ToXContentFragment {
                      @Nullable ScriptStats scriptStats,
                      @Nullable DiscoveryStats discoveryStats,
                      @Nullable IngestStats ingestStats,
-                     @Nullable AdaptiveSelectionStats adaptiveSelectionStats) {
+                     @Nullable AdaptiveSelectionStats adaptiveSelectionStats,
+                     @Nullable SearchLatencyStats searchLatencyStats,
+                     @Nullable BigArraysStats bigArraysStats,
+                     @Nullable BufferedAggsStats bufferedAggsStats) {
         super(node);
         this.timestamp = timestamp;
         this.indices = indices;
@@ -117,6 +132,9 @@ public class NodeStats extends BaseNodeResponse implements ToXContentFragment {
         this.discoveryStats = discoveryStats;
         this.ingestStats = ingestStats;
         this.adaptiveSelectionStats = adaptiveSelectionStats;
+        this.searchLatencyStats = searchLatencyStats;
+        this.bigArraysStats = bigArraysStats;
+        this.bufferedAggsStats = bufferedAggsStats;
     }
 
     public long getTimestamp() {
@@ -211,6 +229,21 @@ public class NodeStats extends BaseNodeResponse implements ToXContentFragment {
         return adaptiveSelectionStats;
     }
 
+    @Nullable
+    public SearchLatencyStats getSearchLatencyStats() {
+        return searchLatencyStats;
+    }
+
+    @Nullable
+    public BigArraysStats getBigArraysStats() {
+        return bigArraysStats;
+    }
+
+    @Nullable
+    public BufferedAggsStats getBufferedAggsStats() {
+        return bufferedAggsStats;
+    }
+
     public static NodeStats readNodeStats(StreamInput in) throws IOException {
         NodeStats nodeInfo = new NodeStats();
         nodeInfo.readFrom(in);
@@ -240,6 +273,15 @@ public class NodeStats extends BaseNodeResponse implements ToXContentFragment {
         } else {
             adaptiveSelectionStats = null;
         }
+        if (in.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            searchLatencyStats = in.readOptionalWriteable(SearchLatencyStats::new);
+            bigArraysStats = in.readOptionalWriteable(BigArraysStats::new);
+            bufferedAggsStats = in.readOptionalWriteable(BufferedAggsStats::new);
+        } else {
+            searchLatencyStats = null;
+            bigArraysStats = null;
+            bufferedAggsStats = null;
+        }
     }
 
     @Override
@@ -266,6 +308,11 @@ public class NodeStats extends BaseNodeResponse implements ToXContentFragment {
         if (out.getVersion().onOrAfter(Version.V_6_1_0)) {
             out.writeOptionalWriteable(adaptiveSelectionStats);
         }
+        if (out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            out.writeOptionalWriteable(searchLatencyStats);
+            out.writeOptionalWriteable(bigArraysStats);
+            out.writeOptionalWriteable(bufferedAggsStats);
+        }
     }
 
     @Override
@@ -329,6 +376,15 @@ public class NodeStats extends BaseNodeResponse implements ToXContentFragment {
         if (getAdaptiveSelectionStats() != null) {
             getAdaptiveSelectionStats().toXContent(builder, params);
         }
+        if (getSearchLatencyStats() != null) {
+            getSearchLatencyStats().toXContent(builder, params);
+        }
+        if (getBigArraysStats() != null) {
+            getBigArraysStats().toXContent(builder, params);
+        }
+        if (getBufferedAggsStats() != null) {
+            getBufferedAggsStats().toXContent(builder, params);
+        }
         return builder;
     }
 }
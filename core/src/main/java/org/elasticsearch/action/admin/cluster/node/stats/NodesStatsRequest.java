@@ -45,6 +45,9 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
     private boolean discovery;
     private boolean ingest;
     private boolean adaptiveSelection;
+    private boolean searchLatency;
+    private boolean bigArrays;
+    private boolean bufferedAggs;
 
     public NodesStatsRequest() {
     }
@@ -74,6 +77,9 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
         this.discovery = true;
         this.ingest = true;
         this.adaptiveSelection = true;
+        this.searchLatency = true;
+        this.bigArrays = true;
+        this.bufferedAggs = true;
         return this;
     }
 
@@ -94,6 +100,9 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
         this.discovery = false;
         this.ingest = false;
         this.adaptiveSelection = false;
+        this.searchLatency = false;
+        this.bigArrays = false;
+        this.bufferedAggs = false;
         return this;
     }
 
@@ -281,6 +290,42 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
         return this;
     }
 
+    public boolean searchLatency() {
+        return searchLatency;
+    }
+
+    /**
+     * Should the latency histograms of the search phases be returned.
+     */
+    public NodesStatsRequest searchLatency(boolean searchLatency) {
+        this.searchLatency = searchLatency;
+        return this;
+    }
+
+    public boolean bigArrays() {
+        return bigArrays;
+    }
+
+    /**
+     * Should the direct memory usage of big arrays be returned.
+     */
+    public NodesStatsRequest bigArrays(boolean bigArrays) {
+        this.bigArrays = bigArrays;
+        return this;
+    }
+
+    public boolean bufferedAggs() {
+        return bufferedAggs;
+    }
+
+    /**
+     * Should the stats of the aggregation results that search requests buffer on the coordinating node be returned.
+     */
+    public NodesStatsRequest bufferedAggs(boolean bufferedAggs) {
+        this.bufferedAggs = bufferedAggs;
+        return this;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
@@ -301,6 +346,15 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
         } else {
             adaptiveSelection = false;
         }
+        if (in.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            searchLatency = in.readBoolean();
+            bigArrays = in.readBoolean();
+            bufferedAggs = in.readBoolean();
+        } else {
+            searchLatency = false;
+            bigArrays = false;
+            bufferedAggs = false;
+        }
     }
 
     @Override
@@ -321,5 +375,10 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
         if (out.getVersion().onOrAfter(Version.V_6_1_0)) {
             out.writeBoolean(adaptiveSelection);
         }
+        if (out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            out.writeBoolean(searchLatency);
+            out.writeBoolean(bigArrays);
+            out.writeBoolean(bufferedAggs);
+        }
     }
 }
@@ -142,4 +142,28 @@ public class NodesStatsRequestBuilder extends NodesOperationRequestBuilder<Nodes
         request.ingest(ingest);
         return this;
     }
+
+    /**
+     * Should the latency histograms of the search phases be returned.
+     */
+    public NodesStatsRequestBuilder setSearchLatency(boolean searchLatency) {
+        request.searchLatency(searchLatency);
+        return this;
+    }
+
+    /**
+     * Should the direct memory usage of big arrays be returned.
+     */
+    public NodesStatsRequestBuilder setBigArrays(boolean bigArrays) {
+        request.bigArrays(bigArrays);
+        return this;
+    }
+
+    /**
+     * Should the stats of the aggregation results that search requests buffer on the coordinating node be returned.
+     */
+    public NodesStatsRequestBuilder setBufferedAggs(boolean bufferedAggs) {
+        request.bufferedAggs(bufferedAggs);
+        return this;
+    }
 }
@@ -0,0 +1,211 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.bulk;
+
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.index.mapper.SourceToParse;
+import org.elasticsearch.index.shard.IndexShard;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses the documents of the index items of a {@link BulkShardRequest} on up to <code>parallelism</code> threads of an executor
+ * while the items are applied to the primary one after the other, see {@link IndexShard#preParseIndexOperation(SourceToParse)}.
+ * Items are only ever parsed once: the thread that applies the items parses an item itself if no helper picked it up yet, so
+ * it never waits for tasks that are queued on the executor, and it waits for the helper that is parsing it otherwise.
+ * Helpers only parse up to {@link #ITEMS_AHEAD_PER_HELPER} items per helper ahead of the item that is being applied, so that
+ * the parsed documents that are held at once stay bounded. They stop once they reach this window and are started again as
+ * the items are applied.
+ */
+final class BulkItemPreParser implements Releasable {
+
+    static final int ITEMS_AHEAD_PER_HELPER = 4;
+
+    private final IndexShard primary;
+    private final Executor executor;
+    private final int parallelism;
+    private final Logger logger;
+    // one slot per item, null for items that aren't parsed ahead of time
+    private final Slot[] slots;
+    // the first item is parsed by the thread that applies the items anyway
+    private final AtomicInteger nextSlot = new AtomicInteger(1);
+    private final AtomicInteger activeHelpers = new AtomicInteger();
+    // the index of the item that is being applied
+    private volatile int applying;
+
+    private BulkItemPreParser(IndexShard primary, Executor executor, int parallelism, Logger logger, Slot[] slots) {
+        this.primary = primary;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.logger = logger;
+        this.slots = slots;
+    }
+
+    /**
+     * Starts parsing the index items of the given request on the given executor, returns <code>null</code> if there is nothing
+     * to parse ahead of time.
+     */
+    @Nullable
+    static BulkItemPreParser start(BulkShardRequest request, IndexShard primary, Executor executor, int parallelism, Logger logger) {
+        if (parallelism <= 0) {
+            return null;
+        }
+        final BulkItemRequest[] items = request.items();
+        final Slot[] slots = new Slot[items.length];
+        int count = 0;
+        for (int i = 1; i < items.length; i++) {
+            final DocWriteRequest itemRequest = items[i].request();
+            final BulkItemResponse primaryResponse = items[i].getPrimaryResponse();
+            final boolean aborted = primaryResponse != null && primaryResponse.isFailed() && primaryResponse.getFailure().isAborted();
+            if (aborted == false && (itemRequest.opType() == DocWriteRequest.OpType.INDEX
+                    || itemRequest.opType() == DocWriteRequest.OpType.CREATE)) {
+                slots[i] = new Slot(TransportShardBulkAction.sourceToParse((IndexRequest) itemRequest));
+                count++;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        final BulkItemPreParser preParser = new BulkItemPreParser(primary, executor, Math.min(parallelism, count), logger, slots);
+        preParser.startHelpers();
+        return preParser;
+    }
+
+    /**
+     * Starts helpers until there are <code>parallelism</code> of them or no item is left to parse in the window.
+     */
+    private void startHelpers() {
+        while (hasItemsInWindow() && tryAcquireHelper()) {
+            executor.execute(new AbstractRunnable() {
+                private boolean rejected;
+
+                @Override
+                protected void doRun() {
+                    parseWindow();
+                }
+
+                @Override
+                public void onRejection(Exception e) {
+                    // fine, the items are parsed when they are applied
+                    rejected = true;
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    logger.debug("failed to parse bulk items ahead of time", e);
+                }
+
+                @Override
+                public void onAfter() {
+                    activeHelpers.decrementAndGet();
+                    if (rejected == false) {
+                        // the window might have moved since this helper stopped
+                        startHelpers();
+                    }
+                }
+            });
+        }
+    }
+
+    private boolean tryAcquireHelper() {
+        for (int active = activeHelpers.get(); active < parallelism; active = activeHelpers.get()) {
+            if (activeHelpers.compareAndSet(active, active + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int windowEnd() {
+        return (int) Math.min(slots.length, (long) applying + 1 + (long) parallelism * ITEMS_AHEAD_PER_HELPER);
+    }
+
+    private boolean hasItemsInWindow() {
+        return nextSlot.get() < windowEnd();
+    }
+
+    private void parseWindow() {
+        for (int i = nextSlot.get(); i < windowEnd(); i = nextSlot.get()) {
+            if (nextSlot.compareAndSet(i, i + 1) == false) {
+                continue;
+            }
+            final Slot slot = slots[i];
+            if (slot != null && slot.claim()) {
+                try {
+                    slot.parsed = primary.preParseIndexOperation(slot.source);
+                } finally {
+                    slot.done.countDown();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the document of the item that was parsed ahead of time, waiting for it if it is being parsed, or <code>null</code>
+     * if it must be parsed when it is applied. Items must be taken in order, which moves the window of the items that the
+     * helpers parse.
+     */
+    @Nullable
+    IndexShard.PreParsedDocument take(int itemIndex) throws InterruptedException {
+        assert itemIndex >= applying : "item [" + itemIndex + "] is taken after item [" + applying + "]";
+        if (itemIndex > applying) {
+            applying = itemIndex;
+            startHelpers();
+        }
+        final Slot slot = slots[itemIndex];
+        if (slot == null || slot.claim()) {
+            return null;
+        }
+        slots[itemIndex] = null;
+        slot.done.await();
+        return slot.parsed;
+    }
+
+    /**
+     * Stops the helpers from picking up more items.
+     */
+    @Override
+    public void close() {
+        nextSlot.set(slots.length);
+    }
+
+    private static final class Slot {
+        final SourceToParse source;
+        final AtomicBoolean claimed = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile IndexShard.PreParsedDocument parsed;
+
+        Slot(SourceToParse source) {
+            this.source = source;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
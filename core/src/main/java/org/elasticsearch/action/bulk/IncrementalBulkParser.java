@@ -0,0 +1,179 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.bulk;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContent;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Parses the body of a bulk request chunk by chunk. Chunks are buffered until the items they complete add up to a batch, the
+ * complete items are then parsed into a new {@link BulkRequest} with {@link BulkRequest#add(BytesReference, String, String, String,
+ * String[], FetchSourceContext, String, Object, boolean, XContentType)}, so they are parsed exactly like the items of a bulk request
+ * whose body is read at once. Only the bytes of the incomplete item at the end of a batch are copied again.
+ * <p>
+ * Instances are not thread safe.
+ */
+public final class IncrementalBulkParser {
+
+    private final Supplier<BulkRequest> requestSupplier;
+    private final String defaultIndex;
+    private final String defaultType;
+    private final String defaultRouting;
+    private final String[] defaultFields;
+    private final FetchSourceContext defaultFetchSourceContext;
+    private final String defaultPipeline;
+    private final boolean allowExplicitIndex;
+    private final XContentType xContentType;
+    private final long batchSizeInBytes;
+
+    private BytesStreamOutput buffer = new BytesStreamOutput();
+    // the offset up to which the buffer was searched for line separators
+    private int scanned;
+    // the offset of the line that isn't terminated yet
+    private int lineStart;
+    // the offset after the last complete item
+    private int itemsEnd;
+    // whether the last action line needs a source line to complete its item
+    private boolean expectSource;
+    // the number of lines that were parsed into requests, to report the lines of malformed items
+    private int lines;
+    private int itemLines;
+
+    /**
+     * @param requestSupplier  supplies the requests the items are added to, with the options that apply to all items
+     * @param batchSizeInBytes the size of the complete items that are parsed into a request before the body is read to the end
+     */
+    public IncrementalBulkParser(Supplier<BulkRequest> requestSupplier, @Nullable String defaultIndex, @Nullable String defaultType,
+                                 @Nullable String defaultRouting, @Nullable String[] defaultFields,
+                                 @Nullable FetchSourceContext defaultFetchSourceContext, @Nullable String defaultPipeline,
+                                 boolean allowExplicitIndex, XContentType xContentType, long batchSizeInBytes) {
+        this.requestSupplier = requestSupplier;
+        this.defaultIndex = defaultIndex;
+        this.defaultType = defaultType;
+        this.defaultRouting = defaultRouting;
+        this.defaultFields = defaultFields;
+        this.defaultFetchSourceContext = defaultFetchSourceContext;
+        this.defaultPipeline = defaultPipeline;
+        this.allowExplicitIndex = allowExplicitIndex;
+        this.xContentType = xContentType;
+        this.batchSizeInBytes = batchSizeInBytes;
+    }
+
+    /**
+     * Adds the next chunk of the body. Returns a request with the items that are complete once they add up to a batch, and a request
+     * with all remaining items for the last chunk, which may have no items at all. Returns {@code null} otherwise.
+     */
+    @Nullable
+    public BulkRequest parse(BytesReference chunk, boolean isLast) throws IOException {
+        chunk.writeTo(buffer);
+        final BytesReference data = buffer.bytes();
+        findCompleteItems(data);
+        if (isLast) {
+            final BulkRequest request = toRequest(data, data.length());
+            buffer = new BytesStreamOutput();
+            scanned = lineStart = itemsEnd = 0;
+            return request;
+        } else if (itemsEnd >= batchSizeInBytes) {
+            final BulkRequest request = toRequest(data, itemsEnd);
+            // only the incomplete item at the end is copied, the request keeps referencing the pages of the old buffer
+            final BytesStreamOutput remaining = new BytesStreamOutput(data.length() - itemsEnd);
+            data.slice(itemsEnd, data.length() - itemsEnd).writeTo(remaining);
+            buffer = remaining;
+            scanned -= itemsEnd;
+            lineStart -= itemsEnd;
+            itemsEnd = 0;
+            return request;
+        }
+        return null;
+    }
+
+    /**
+     * The number of bytes of the body that are buffered because they weren't parsed into a request yet.
+     */
+    public long bufferedBytes() {
+        return buffer.size();
+    }
+
+    private void findCompleteItems(BytesReference data) throws IOException {
+        final byte marker = xContentType.xContent().streamSeparator();
+        final int length = data.length();
+        for (int i = scanned; i < length; i++) {
+            if (data.get(i) == marker) {
+                itemLines++;
+                if (expectSource) {
+                    expectSource = false;
+                    itemsEnd = i + 1;
+                } else if (needsSource(data.slice(lineStart, i - lineStart))) {
+                    expectSource = true;
+                } else {
+                    itemsEnd = i + 1;
+                }
+                lineStart = i + 1;
+            }
+        }
+        scanned = length;
+    }
+
+    /**
+     * Whether the given action line is followed by a source line. Delete actions, empty lines and lines that are so malformed that
+     * their action can't be read are not, {@link BulkRequest#add} fails on the latter.
+     */
+    private boolean needsSource(BytesReference actionLine) throws IOException {
+        final XContent xContent = xContentType.xContent();
+        // EMPTY is safe here because we never call namedObject
+        try (XContentParser parser = xContent.createParser(NamedXContentRegistry.EMPTY, actionLine)) {
+            if (parser.nextToken() != XContentParser.Token.START_OBJECT || parser.nextToken() != XContentParser.Token.FIELD_NAME) {
+                return false;
+            }
+            return "delete".equals(parser.currentName()) == false;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private BulkRequest toRequest(BytesReference data, int end) throws IOException {
+        final BulkRequest request = requestSupplier.get();
+        final int firstLine = lines + 1;
+        // the lines of the incomplete item at the end belong to the next request
+        final int requestLines = end == data.length() ? itemLines + (lineStart < end ? 1 : 0) : itemLines - (expectSource ? 1 : 0);
+        try {
+            request.add(data.slice(0, end), defaultIndex, defaultType, defaultRouting, defaultFields, defaultFetchSourceContext,
+                defaultPipeline, null, allowExplicitIndex, xContentType);
+        } catch (IllegalArgumentException e) {
+            if (firstLine == 1) {
+                throw e;
+            }
+            // the line numbers of the message are relative to the items of the request
+            throw new IllegalArgumentException("failed to parse the bulk items starting at line [" + firstLine + "]", e);
+        }
+        lines += requestLines;
+        itemLines -= requestLines;
+        return request;
+    }
+}
@@ -44,10 +44,13 @@ import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.logging.ESLoggerFactory;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentType;
@@ -75,8 +78,16 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
 
     private static final Logger logger = ESLoggerFactory.getLogger(TransportShardBulkAction.class);
 
+    /**
+     * The number of threads of the bulk_parse thread pool that may help to parse the documents of a shard bulk request on the primary
+     * while its items are applied one after the other (default: 0, the documents are parsed when they are applied).
+     */
+    public static final Setting<Integer> PARSE_PARALLELISM_SETTING =
+        Setting.intSetting("action.bulk.parse_parallelism", 0, 0, Property.NodeScope);
+
     private final UpdateHelper updateHelper;
     private final MappingUpdatedAction mappingUpdatedAction;
+    private final int parseParallelism;
 
     @Inject
     public TransportShardBulkAction(Settings settings, TransportService transportService, ClusterService clusterService,
@@ -87,6 +98,7 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
             indexNameExpressionResolver, BulkShardRequest::new, BulkShardRequest::new, ThreadPool.Names.BULK);
         this.updateHelper = updateHelper;
         this.mappingUpdatedAction = mappingUpdatedAction;
+        this.parseParallelism = PARSE_PARALLELISM_SETTING.get(settings);
     }
 
     @Override
@@ -107,7 +119,11 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
     @Override
     public WritePrimaryResult<BulkShardRequest, BulkShardResponse> shardOperationOnPrimary(
             BulkShardRequest request, IndexShard primary) throws Exception {
-        return performOnPrimary(request, primary, updateHelper, threadPool::absoluteTimeInMillis, new ConcreteMappingUpdatePerformer());
+        try (BulkItemPreParser preParser = BulkItemPreParser.start(request, primary, threadPool.executor(ThreadPool.Names.BULK_PARSE),
+                parseParallelism, logger)) {
+            return performOnPrimary(request, primary, updateHelper, threadPool::absoluteTimeInMillis, new ConcreteMappingUpdatePerformer(),
+                preParser);
+        }
     }
 
     public static WritePrimaryResult<BulkShardRequest, BulkShardResponse> performOnPrimary(
@@ -116,12 +132,22 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
             UpdateHelper updateHelper,
             LongSupplier nowInMillisSupplier,
             MappingUpdatePerformer mappingUpdater) throws Exception {
+        return performOnPrimary(request, primary, updateHelper, nowInMillisSupplier, mappingUpdater, null);
+    }
+
+    static WritePrimaryResult<BulkShardRequest, BulkShardResponse> performOnPrimary(
+            BulkShardRequest request,
+            IndexShard primary,
+            UpdateHelper updateHelper,
+            LongSupplier nowInMillisSupplier,
+            MappingUpdatePerformer mappingUpdater,
+            @Nullable BulkItemPreParser preParser) throws Exception {
         final IndexMetaData metaData = primary.indexSettings().getIndexMetaData();
         Translog.Location location = null;
         for (int requestIndex = 0; requestIndex < request.items().length; requestIndex++) {
             if (isAborted(request.items()[requestIndex].getPrimaryResponse()) == false) {
                 location = executeBulkItemRequest(metaData, primary, request, location, requestIndex,
-                    updateHelper, nowInMillisSupplier, mappingUpdater);
+                    updateHelper, nowInMillisSupplier, mappingUpdater, preParser);
             }
         }
         BulkItemResponse[] responses = new BulkItemResponse[request.items().length];
@@ -136,8 +162,9 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
     private static BulkItemResultHolder executeIndexRequest(final IndexRequest indexRequest,
                                                             final BulkItemRequest bulkItemRequest,
                                                             final IndexShard primary,
-                                                            final MappingUpdatePerformer mappingUpdater) throws Exception {
-        Engine.IndexResult indexResult = executeIndexRequestOnPrimary(indexRequest, primary, mappingUpdater);
+                                                            final MappingUpdatePerformer mappingUpdater,
+                                                            @Nullable final IndexShard.PreParsedDocument preParsed) throws Exception {
+        Engine.IndexResult indexResult = executeIndexRequestOnPrimary(indexRequest, primary, mappingUpdater, preParsed);
         if (indexResult.hasFailure()) {
             return new BulkItemResultHolder(null, indexResult, bulkItemRequest);
         } else {
@@ -227,14 +254,24 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
                                                     int requestIndex, UpdateHelper updateHelper,
                                                     LongSupplier nowInMillisSupplier,
                                                     final MappingUpdatePerformer mappingUpdater) throws Exception {
+        return executeBulkItemRequest(metaData, primary, request, location, requestIndex, updateHelper, nowInMillisSupplier,
+            mappingUpdater, null);
+    }
+
+    private static Translog.Location executeBulkItemRequest(IndexMetaData metaData, IndexShard primary,
+                                                            BulkShardRequest request, Translog.Location location,
+                                                            int requestIndex, UpdateHelper updateHelper,
+                                                            LongSupplier nowInMillisSupplier,
+                                                            final MappingUpdatePerformer mappingUpdater,
+                                                            @Nullable BulkItemPreParser preParser) throws Exception {
         final DocWriteRequest itemRequest = request.items()[requestIndex].request();
         final DocWriteRequest.OpType opType = itemRequest.opType();
         final BulkItemResultHolder responseHolder;
         switch (itemRequest.opType()) {
             case CREATE:
             case INDEX:
-                responseHolder = executeIndexRequest((IndexRequest) itemRequest,
-                        request.items()[requestIndex], primary, mappingUpdater);
+                responseHolder = executeIndexRequest((IndexRequest) itemRequest, request.items()[requestIndex], primary,
+                        mappingUpdater, preParser == null ? null : preParser.take(requestIndex));
                 break;
             case UPDATE:
                 responseHolder = executeUpdateRequest((UpdateRequest) itemRequest, primary, metaData, request,
@@ -538,9 +575,13 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
     /** Executes index operation on primary shard after updates mapping if dynamic mappings are found */
     static Engine.IndexResult executeIndexRequestOnPrimary(IndexRequest request, IndexShard primary,
                                                            MappingUpdatePerformer mappingUpdater) throws Exception {
-        final SourceToParse sourceToParse =
-            SourceToParse.source(request.index(), request.type(), request.id(), request.source(), request.getContentType())
-                .routing(request.routing()).parent(request.parent());
+        return executeIndexRequestOnPrimary(request, primary, mappingUpdater, null);
+    }
+
+    private static Engine.IndexResult executeIndexRequestOnPrimary(IndexRequest request, IndexShard primary,
+                                                                   MappingUpdatePerformer mappingUpdater,
+                                                                   @Nullable IndexShard.PreParsedDocument preParsed) throws Exception {
+        final SourceToParse sourceToParse = sourceToParse(request);
         try {
             // if a mapping update is required to index this request, issue a mapping update on the master, and abort the
             // current indexing operation so that it can be retried with the updated mapping from the master
@@ -549,13 +590,18 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
                 request.getAutoGeneratedTimestamp(), request.isRetry(), update -> {
                     mappingUpdater.updateMappings(update, primary.shardId(), sourceToParse.type());
                     throw new ReplicationOperation.RetryOnPrimaryException(primary.shardId(), "Mapping updated");
-                });
+                }, preParsed);
         } catch (ReplicationOperation.RetryOnPrimaryException e) {
             return primary.applyIndexOperationOnPrimary(request.version(), request.versionType(), sourceToParse,
                 request.getAutoGeneratedTimestamp(), request.isRetry(), update -> mappingUpdater.verifyMappings(update, primary.shardId()));
         }
     }
 
+    static SourceToParse sourceToParse(IndexRequest request) {
+        return SourceToParse.source(request.index(), request.type(), request.id(), request.source(), request.getContentType())
+            .routing(request.routing()).parent(request.parent());
+    }
+
     private static Engine.DeleteResult executeDeleteRequestOnPrimary(DeleteRequest request, IndexShard primary,
                                                                      MappingUpdatePerformer mappingUpdater) throws Exception {
         try {
@@ -30,6 +30,8 @@ import org.elasticsearch.action.ShardOperationFailedException;
 import org.elasticsearch.action.support.TransportActions;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.concurrent.AtomicArray;
 import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.SearchShardTarget;
@@ -38,6 +40,8 @@ import org.elasticsearch.search.internal.InternalSearchResponse;
 import org.elasticsearch.search.internal.ShardSearchTransportRequest;
 import org.elasticsearch.transport.Transport;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
@@ -67,7 +71,9 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
     private final Object shardFailuresMutex = new Object();
     private final AtomicInteger successfulOps = new AtomicInteger();
     private final AtomicInteger skippedOps = new AtomicInteger();
+    private final AtomicInteger prunedOps = new AtomicInteger();
     private final TransportSearchAction.SearchTimeProvider timeProvider;
+    private final List<Releasable> releasables = Collections.synchronizedList(new ArrayList<>());
 
 
     protected AbstractSearchAsyncAction(String name, Logger logger, SearchTransportService searchTransportService,
@@ -77,7 +83,19 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
                                         ActionListener<SearchResponse> listener, GroupShardsIterator<SearchShardIterator> shardsIts,
                                         TransportSearchAction.SearchTimeProvider timeProvider, long clusterStateVersion,
                                         SearchTask task, SearchPhaseResults<Result> resultConsumer, int maxConcurrentShardRequests) {
-        super(name, request, shardsIts, logger, maxConcurrentShardRequests, executor);
+        this(name, logger, searchTransportService, nodeIdToConnection, aliasFilter, concreteIndexBoosts, executor, request, listener,
+            shardsIts, timeProvider, clusterStateVersion, task, resultConsumer, maxConcurrentShardRequests, null);
+    }
+
+    protected AbstractSearchAsyncAction(String name, Logger logger, SearchTransportService searchTransportService,
+                                        BiFunction<String, String, Transport.Connection> nodeIdToConnection,
+                                        Map<String, AliasFilter> aliasFilter, Map<String, Float> concreteIndexBoosts,
+                                        Executor executor, SearchRequest request,
+                                        ActionListener<SearchResponse> listener, GroupShardsIterator<SearchShardIterator> shardsIts,
+                                        TransportSearchAction.SearchTimeProvider timeProvider, long clusterStateVersion,
+                                        SearchTask task, SearchPhaseResults<Result> resultConsumer, int maxConcurrentShardRequests,
+                                        @Nullable ShardRequestHedging hedging) {
+        super(name, request, shardsIts, logger, maxConcurrentShardRequests, executor, hedging);
         this.timeProvider = timeProvider;
         this.logger = logger;
         this.searchTransportService = searchTransportService;
@@ -90,6 +108,7 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
         this.concreteIndexBoosts = concreteIndexBoosts;
         this.aliasFilter = aliasFilter;
         this.results = resultConsumer;
+        addReleasable(resultConsumer);
     }
 
     /**
@@ -217,6 +236,7 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
                 logger.trace("failed to release context", inner);
             }
         });
+        releaseResources();
         listener.onFailure(exception);
     }
 
@@ -236,6 +256,18 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
         }
     }
 
+    @Override
+    final void onShardResultDiscarded(Result result) {
+        // another copy of the shard answered first, we don't need the search context of this one
+        final SearchShardTarget searchShardTarget = result.getSearchShardTarget();
+        try {
+            Transport.Connection connection = getConnection(searchShardTarget.getClusterAlias(), searchShardTarget.getNodeId());
+            sendReleaseSearchContext(result.getRequestId(), connection, searchShardTarget.getOriginalIndices());
+        } catch (Exception e) {
+            logger.trace("failed to release context", e);
+        }
+    }
+
     @Override
     public final void onPhaseDone() {
         executeNextPhase(this, getNextPhase(results, this));
@@ -264,7 +296,7 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
     @Override
     public final SearchResponse buildSearchResponse(InternalSearchResponse internalSearchResponse, String scrollId) {
         return new SearchResponse(internalSearchResponse, scrollId, getNumShards(), successfulOps.get(),
-            skippedOps.get(), buildTookInMillis(), buildShardFailures());
+            skippedOps.get(), prunedOps.get(), buildTookInMillis(), buildShardFailures());
     }
 
     @Override
@@ -289,21 +321,35 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
 
     @Override
     public final void onResponse(SearchResponse response) {
+        releaseResources();
         listener.onResponse(response);
     }
 
     @Override
     public final void onFailure(Exception e) {
+        releaseResources();
         listener.onFailure(e);
     }
 
+    @Override
+    public final void addReleasable(Releasable releasable) {
+        releasables.add(releasable);
+    }
+
+    private void releaseResources() {
+        synchronized (releasables) {
+            Releasables.close(releasables);
+            releasables.clear();
+        }
+    }
+
     public final ShardSearchTransportRequest buildShardSearchRequest(SearchShardIterator shardIt) {
         String clusterAlias = shardIt.getClusterAlias();
         AliasFilter filter = aliasFilter.get(shardIt.shardId().getIndex().getUUID());
         assert filter != null;
         float indexBoost = concreteIndexBoosts.getOrDefault(shardIt.shardId().getIndex().getUUID(), DEFAULT_INDEX_BOOST);
         return new ShardSearchTransportRequest(shardIt.getOriginalIndices(), request, shardIt.shardId(), getNumShards(),
-            filter, indexBoost, timeProvider.getAbsoluteStartMillis(), clusterAlias);
+            filter, indexBoost, timeProvider.getAbsoluteStartMillis(), clusterAlias, shardIt.getPointInTimeReaderId());
     }
 
     /**
@@ -318,6 +364,9 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
     protected void skipShard(SearchShardIterator iterator) {
         successfulOps.incrementAndGet();
         skippedOps.incrementAndGet();
+        if (iterator.pruned()) {
+            prunedOps.incrementAndGet();
+        }
         super.skipShard(iterator);
     }
 }
@@ -0,0 +1,99 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+
+/**
+ * The shard aggregation results that search requests coordinated by a node buffer before they are reduced,
+ * see {@link SearchPhaseController#MAX_BUFFERED_AGGS_SIZE_SETTING}.
+ */
+public class BufferedAggsStats implements Writeable, ToXContentFragment {
+
+    private final long current;
+    private final long peak;
+    private final long partialReduces;
+
+    public BufferedAggsStats(long current, long peak, long partialReduces) {
+        this.current = current;
+        this.peak = peak;
+        this.partialReduces = partialReduces;
+    }
+
+    public BufferedAggsStats(StreamInput in) throws IOException {
+        current = in.readVLong();
+        peak = in.readVLong();
+        partialReduces = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVLong(current);
+        out.writeVLong(peak);
+        out.writeVLong(partialReduces);
+    }
+
+    /**
+     * The estimated size of the aggregation results that are currently buffered by all search requests.
+     */
+    public ByteSizeValue getCurrent() {
+        return new ByteSizeValue(current);
+    }
+
+    /**
+     * The largest estimated size of the aggregation results that a single search request buffered since the node started.
+     */
+    public ByteSizeValue getPeak() {
+        return new ByteSizeValue(peak);
+    }
+
+    /**
+     * The number of times buffered aggregation results were partially reduced since the node started.
+     */
+    public long getPartialReduces() {
+        return partialReduces;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(Fields.BUFFERED_AGGS);
+        builder.byteSizeField(Fields.CURRENT_IN_BYTES, Fields.CURRENT, current);
+        builder.byteSizeField(Fields.PEAK_IN_BYTES, Fields.PEAK, peak);
+        builder.field(Fields.PARTIAL_REDUCES, partialReduces);
+        builder.endObject();
+        return builder;
+    }
+
+    static final class Fields {
+        static final String BUFFERED_AGGS = "buffered_aggs";
+        static final String CURRENT = "current";
+        static final String CURRENT_IN_BYTES = "current_in_bytes";
+        static final String PEAK = "peak";
+        static final String PEAK_IN_BYTES = "peak_in_bytes";
+        static final String PARTIAL_REDUCES = "partial_reduces";
+    }
+}
@@ -23,6 +23,7 @@ import org.apache.lucene.util.FixedBitSet;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
 import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.search.internal.AliasFilter;
 import org.elasticsearch.transport.Transport;
 
@@ -51,12 +52,25 @@ final class CanMatchPreFilterSearchPhase extends AbstractSearchAsyncAction<Searc
                                         ActionListener<SearchResponse> listener, GroupShardsIterator<SearchShardIterator> shardsIts,
                                         TransportSearchAction.SearchTimeProvider timeProvider, long clusterStateVersion,
                                         SearchTask task, Function<GroupShardsIterator<SearchShardIterator>, SearchPhase> phaseFactory) {
+        this(logger, searchTransportService, nodeIdToConnection, aliasFilter, concreteIndexBoosts, executor, request, listener, shardsIts,
+            timeProvider, clusterStateVersion, task, phaseFactory, null);
+    }
+
+    CanMatchPreFilterSearchPhase(Logger logger, SearchTransportService searchTransportService,
+                                        BiFunction<String, String, Transport.Connection> nodeIdToConnection,
+                                        Map<String, AliasFilter> aliasFilter, Map<String, Float> concreteIndexBoosts,
+                                        Executor executor, SearchRequest request,
+                                        ActionListener<SearchResponse> listener, GroupShardsIterator<SearchShardIterator> shardsIts,
+                                        TransportSearchAction.SearchTimeProvider timeProvider, long clusterStateVersion,
+                                        SearchTask task, Function<GroupShardsIterator<SearchShardIterator>, SearchPhase> phaseFactory,
+                                        @Nullable ShardFieldRangeCache fieldRangeCache) {
         /*
          * We set max concurrent shard requests to the number of shards to otherwise avoid deep recursing that would occur if the local node
          * is the coordinating node for the query, holds all the shards for the request, and there are a lot of shards.
          */
         super("can_match", logger, searchTransportService, nodeIdToConnection, aliasFilter, concreteIndexBoosts, executor, request,
-            listener, shardsIts, timeProvider, clusterStateVersion, task, new BitSetSearchPhaseResults(shardsIts.size()), shardsIts.size());
+            listener, shardsIts, timeProvider, clusterStateVersion, task, new BitSetSearchPhaseResults(shardsIts.size(), fieldRangeCache),
+            shardsIts.size());
         this.phaseFactory = phaseFactory;
         this.shardsIts = shardsIts;
     }
@@ -81,8 +95,16 @@ final class CanMatchPreFilterSearchPhase extends AbstractSearchAsyncAction<Searc
         FixedBitSet possibleMatches = results.getPossibleMatches();
         if (cardinality == 0) {
             // this is a special case where we have no hit but we need to get at least one search response in order
-            // to produce a valid search result with all the aggs etc.
-            possibleMatches.set(0);
+            // to produce a valid search result with all the aggs etc. Shards that have been pruned by the coordinating
+            // node stay skipped, but there is always at least one shard that has not been pruned.
+            int first = 0;
+            for (SearchShardIterator iter : shardsIts) {
+                if (iter.pruned() == false) {
+                    break;
+                }
+                first++;
+            }
+            possibleMatches.set(first);
         }
         int i = 0;
         for (SearchShardIterator iter : shardsIts) {
@@ -99,11 +121,13 @@ final class CanMatchPreFilterSearchPhase extends AbstractSearchAsyncAction<Searc
         SearchPhaseResults<SearchTransportService.CanMatchResponse> {
 
         private final FixedBitSet possibleMatches;
+        private final ShardFieldRangeCache fieldRangeCache;
         private int numPossibleMatches;
 
-        BitSetSearchPhaseResults(int size) {
+        BitSetSearchPhaseResults(int size, @Nullable ShardFieldRangeCache fieldRangeCache) {
             super(size);
-            possibleMatches = new FixedBitSet(size);
+            this.possibleMatches = new FixedBitSet(size);
+            this.fieldRangeCache = fieldRangeCache;
         }
 
         @Override
@@ -111,6 +135,9 @@ final class CanMatchPreFilterSearchPhase extends AbstractSearchAsyncAction<Searc
             if (result.canMatch()) {
                 consumeShardFailure(result.getShardIndex());
             }
+            if (fieldRangeCache != null && result.getFieldRanges() != null && result.getSearchShardTarget().getClusterAlias() == null) {
+                fieldRangeCache.put(result.getSearchShardTarget().getShardId(), result.getFieldRanges());
+            }
         }
 
         @Override
@@ -0,0 +1,43 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.client.ElasticsearchClient;
+
+public class ClosePointInTimeAction extends Action<ClosePointInTimeRequest, ClosePointInTimeResponse, ClosePointInTimeRequestBuilder> {
+
+    public static final ClosePointInTimeAction INSTANCE = new ClosePointInTimeAction();
+    public static final String NAME = "indices:data/read/close_point_in_time";
+
+    private ClosePointInTimeAction() {
+        super(NAME);
+    }
+
+    @Override
+    public ClosePointInTimeResponse newResponse() {
+        return new ClosePointInTimeResponse();
+    }
+
+    @Override
+    public ClosePointInTimeRequestBuilder newRequestBuilder(ElasticsearchClient client) {
+        return new ClosePointInTimeRequestBuilder(client, this);
+    }
+}
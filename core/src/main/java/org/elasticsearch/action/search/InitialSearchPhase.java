@@ -26,6 +26,8 @@ import org.elasticsearch.action.support.TransportActions;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.elasticsearch.common.util.concurrent.AtomicArray;
 import org.elasticsearch.search.SearchPhaseResult;
@@ -45,6 +47,8 @@ import java.util.stream.Stream;
  * referred to as the <tt>shardIndex</tt>.
  * The fan out and collect algorithm is traditionally used as the initial phase which can either be a query execution or collection
  * distributed frequencies
+ * If {@link ShardRequestHedging} is enabled, a shard request that takes longer than usual is also sent to the next replica of the
+ * shard without waiting for a failure. The first copy that answers is used and the results of the other copies are discarded.
  */
 abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends SearchPhase {
     private final SearchRequest request;
@@ -56,9 +60,17 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
     private final AtomicInteger shardExecutionIndex = new AtomicInteger(0);
     private final int maxConcurrentShardRequests;
     private final Executor executor;
+    @Nullable
+    private final ShardRequestHedging hedging;
+    private final List<HedgedShard> hedgedShards;
 
     InitialSearchPhase(String name, SearchRequest request, GroupShardsIterator<SearchShardIterator> shardsIts, Logger logger,
                        int maxConcurrentShardRequests, Executor executor) {
+        this(name, request, shardsIts, logger, maxConcurrentShardRequests, executor, null);
+    }
+
+    InitialSearchPhase(String name, SearchRequest request, GroupShardsIterator<SearchShardIterator> shardsIts, Logger logger,
+                       int maxConcurrentShardRequests, Executor executor, @Nullable ShardRequestHedging hedging) {
         super(name);
         this.request = request;
         final List<SearchShardIterator> toSkipIterators = new ArrayList<>();
@@ -80,6 +92,16 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
         this.expectedTotalOps = shardsIts.totalSizeWith1ForEmpty();
         this.maxConcurrentShardRequests = Math.min(maxConcurrentShardRequests, shardsIts.size());
         this.executor = executor;
+        if (hedging != null && hedging.isEnabled()) {
+            this.hedging = hedging;
+            this.hedgedShards = new ArrayList<>(this.shardsIts.size());
+            for (int i = 0; i < this.shardsIts.size(); i++) {
+                hedgedShards.add(new HedgedShard(i, this.shardsIts.get(i)));
+            }
+        } else {
+            this.hedging = null;
+            this.hedgedShards = null;
+        }
     }
 
     private void onShardFailure(final int shardIndex, @Nullable ShardRouting shard, @Nullable String nodeId,
@@ -203,6 +225,8 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
         final Thread thread = Thread.currentThread();
         if (shard == null) {
             fork(() -> onShardFailure(shardIndex, null, null, shardIt, new NoShardAvailableActionException(shardIt.shardId())));
+        } else if (hedgedShards != null) {
+            hedgedShards.get(shardIndex).execute(shard);
         } else {
             try {
                 executePhaseOnShard(shardIt, shard, new SearchActionListener<FirstResult>(new SearchShardTarget(shard.currentNodeId(),
@@ -228,6 +252,13 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
     }
 
     private void onShardResult(FirstResult result, SearchShardIterator shardIt) {
+        onShardResult(result, shardIt, 0);
+    }
+
+    /**
+     * @param abandonedOps the number of other copies of the shard that are still being queried and whose results will be discarded
+     */
+    private void onShardResult(FirstResult result, SearchShardIterator shardIt, int abandonedOps) {
         assert result.getShardIndex() != -1 : "shard index is not set";
         assert result.getSearchShardTarget() != null : "search shard target must not be null";
         onShardSuccess(result);
@@ -236,15 +267,15 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
         // cause the successor to read a wrong value from successfulOps if second phase is very fast ie. count etc.
         // increment all the "future" shards to update the total ops since we some may work and some may not...
         // and when that happens, we break on total ops, so we must maintain them
-        successfulShardExecution(shardIt);
+        successfulShardExecution(shardIt, abandonedOps);
     }
 
-    private void successfulShardExecution(SearchShardIterator shardsIt) {
+    private void successfulShardExecution(SearchShardIterator shardsIt, int abandonedOps) {
         final int remainingOpsOnIterator;
         if (shardsIt.skip()) {
             remainingOpsOnIterator = shardsIt.remaining();
         } else {
-            remainingOpsOnIterator = shardsIt.remaining() + 1;
+            remainingOpsOnIterator = shardsIt.remaining() + 1 + abandonedOps;
         }
         final int xTotalOps = totalOps.addAndGet(remainingOpsOnIterator);
         if (xTotalOps == expectedTotalOps) {
@@ -291,10 +322,18 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
     protected abstract void executePhaseOnShard(SearchShardIterator shardIt, ShardRouting shard,
                                                 SearchActionListener<FirstResult> listener);
 
+    /**
+     * Executed for every successful shard level request whose result is discarded because another copy of the same shard
+     * answered first. This might be called after the phase is done.
+     * @param result the discarded result
+     */
+    void onShardResultDiscarded(FirstResult result) {
+    }
+
     /**
      * This class acts as a basic result collection that can be extended to do on-the-fly reduction or result processing
      */
-    abstract static class SearchPhaseResults<Result extends SearchPhaseResult> {
+    abstract static class SearchPhaseResults<Result extends SearchPhaseResult> implements Releasable {
         private final int numShards;
 
         protected SearchPhaseResults(int numShards) {
@@ -335,6 +374,13 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
         SearchPhaseController.ReducedQueryPhase reduce() {
             throw new UnsupportedOperationException("reduce is not supported");
         }
+
+        /**
+         * Releases the resources held by the collected results. Called once the search request completes, successfully or not.
+         */
+        @Override
+        public void close() {
+        }
     }
 
     /**
@@ -369,7 +415,126 @@ abstract class InitialSearchPhase<FirstResult extends SearchPhaseResult> extends
 
     protected void skipShard(SearchShardIterator iterator) {
         assert iterator.skip();
-        successfulShardExecution(iterator);
+        successfulShardExecution(iterator, 0);
+    }
+
+    /**
+     * Executes the shard level requests of a single shard when hedging is enabled. Several copies of the shard might be queried
+     * concurrently, the first successful result is used and the failures of the other copies are only taken into account if no
+     * copy succeeds. A hedge only moves the {@link SearchShardIterator} forward under the lock of this object while another copy is
+     * being queried, which is why it can't race with the usual move to the next copy after a failure.
+     */
+    private final class HedgedShard {
+        private final int shardIndex;
+        private final SearchShardIterator shardIt;
+        private int inFlight = 0;
+        private boolean hedged = false;
+        private boolean done = false;
+
+        HedgedShard(int shardIndex, SearchShardIterator shardIt) {
+            this.shardIndex = shardIndex;
+            this.shardIt = shardIt;
+        }
+
+        void execute(ShardRouting shard) {
+            synchronized (this) {
+                inFlight++;
+            }
+            if (send(shard, false)) {
+                final TimeValue delay = hedging.getHedgeDelay(shard.currentNodeId());
+                if (delay != null) {
+                    hedging.schedule(delay, this::hedge);
+                }
+            }
+        }
+
+        private void hedge() {
+            final ShardRouting shard;
+            synchronized (this) {
+                if (done || hedged || inFlight == 0) {
+                    return;
+                }
+                final ShardRouting next = shardIt.peekNextOrNull();
+                if (next == null || hedging.tryAcquire(next.currentNodeId()) == false) {
+                    return;
+                }
+                hedged = true;
+                inFlight++;
+                shard = shardIt.nextOrNull();
+            }
+            logger.trace("{}: hedging [{}] on [{}]", shardIt.shardId(), request, shard.currentNodeId());
+            send(shard, true);
+        }
+
+        /**
+         * Sends the request to the given copy, returns <code>false</code> if the request could not be sent.
+         */
+        private boolean send(ShardRouting shard, boolean hedge) {
+            final Thread thread = Thread.currentThread();
+            try {
+                executePhaseOnShard(shardIt, shard, new SearchActionListener<FirstResult>(new SearchShardTarget(shard.currentNodeId(),
+                    shardIt.shardId(), shardIt.getClusterAlias(), shardIt.getOriginalIndices()), shardIndex) {
+                    @Override
+                    public void innerOnResponse(FirstResult result) {
+                        maybeFork(thread, () -> onResult(shard, hedge, result));
+                    }
+
+                    @Override
+                    public void onFailure(Exception t) {
+                        maybeFork(thread, () -> HedgedShard.this.onFailure(shard, hedge, t));
+                    }
+                });
+                return true;
+            } catch (final Exception e) {
+                fork(() -> onFailure(shard, hedge, e));
+                return false;
+            }
+        }
+
+        private void onResult(ShardRouting shard, boolean hedge, FirstResult result) {
+            final boolean first;
+            final int abandonedOps;
+            synchronized (this) {
+                inFlight--;
+                first = done == false;
+                done = true;
+                abandonedOps = inFlight;
+            }
+            if (hedge) {
+                hedging.onHedgeDone(shard.currentNodeId());
+            }
+            if (first) {
+                if (hedge) {
+                    hedging.onHedgeWon(shard.currentNodeId());
+                }
+                onShardResult(result, shardIt, abandonedOps);
+            } else {
+                onShardResultDiscarded(result);
+            }
+        }
+
+        private void onFailure(ShardRouting shard, boolean hedge, Exception e) {
+            final boolean moveToNextCopy;
+            synchronized (this) {
+                inFlight--;
+                moveToNextCopy = done == false && inFlight == 0;
+                if (done == false && inFlight > 0) {
+                    // another copy is still being queried, so we only record the failure here. It is recorded under the lock
+                    // so that it can't override the success of the other copy.
+                    InitialSearchPhase.this.onShardFailure(shardIndex, new SearchShardTarget(shard.currentNodeId(),
+                        shardIt.shardId(), shardIt.getClusterAlias(), shardIt.getOriginalIndices()), e);
+                    final int xTotalOps = totalOps.incrementAndGet();
+                    assert xTotalOps < expectedTotalOps : "unexpected total ops [" + xTotalOps + "] with copies in flight";
+                }
+            }
+            if (hedge) {
+                hedging.onHedgeDone(shard.currentNodeId());
+            }
+            if (moveToNextCopy) {
+                // no other copy is being queried, move to the next copy as usual
+                InitialSearchPhase.this.onShardFailure(shardIndex, shard, shard.currentNodeId(), shardIt, e);
+            }
+        }
     }
 
 }
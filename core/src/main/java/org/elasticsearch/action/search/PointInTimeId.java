@@ -0,0 +1,124 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.index.shard.ShardId;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The decoded id of a point in time: the index expressions that it was opened on, which are used to resolve the alias filters of
+ * the searches that run against it, and the node and reader id of the point in time of each of its shards.
+ */
+final class PointInTimeId {
+
+    static final class ShardReader {
+        private final ShardId shardId;
+        private final String nodeId;
+        private final long readerId;
+
+        ShardReader(ShardId shardId, String nodeId, long readerId) {
+            this.shardId = shardId;
+            this.nodeId = nodeId;
+            this.readerId = readerId;
+        }
+
+        ShardId getShardId() {
+            return shardId;
+        }
+
+        String getNodeId() {
+            return nodeId;
+        }
+
+        long getReaderId() {
+            return readerId;
+        }
+    }
+
+    private final String[] indices;
+    private final IndicesOptions indicesOptions;
+    private final List<ShardReader> shards;
+
+    PointInTimeId(String[] indices, IndicesOptions indicesOptions, List<ShardReader> shards) {
+        this.indices = indices;
+        this.indicesOptions = indicesOptions;
+        this.shards = Collections.unmodifiableList(shards);
+    }
+
+    String[] getIndices() {
+        return indices;
+    }
+
+    IndicesOptions getIndicesOptions() {
+        return indicesOptions;
+    }
+
+    List<ShardReader> getShards() {
+        return shards;
+    }
+
+    String encode() {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            Version.writeVersion(Version.CURRENT, out);
+            out.setVersion(Version.CURRENT);
+            out.writeStringArray(indices);
+            indicesOptions.writeIndicesOptions(out);
+            out.writeVInt(shards.size());
+            for (ShardReader shard : shards) {
+                shard.shardId.writeTo(out);
+                out.writeString(shard.nodeId);
+                out.writeLong(shard.readerId);
+            }
+            return Base64.getUrlEncoder().encodeToString(BytesReference.toBytes(out.bytes()));
+        } catch (IOException e) {
+            throw new AssertionError("writing to an in-memory stream must not fail", e);
+        }
+    }
+
+    static PointInTimeId decode(String id) {
+        try (StreamInput in = new BytesArray(Base64.getUrlDecoder().decode(id)).streamInput()) {
+            in.setVersion(Version.readVersion(in));
+            final String[] indices = in.readStringArray();
+            final IndicesOptions indicesOptions = IndicesOptions.readIndicesOptions(in);
+            final int numShards = in.readVInt();
+            final List<ShardReader> shards = new ArrayList<>(numShards);
+            for (int i = 0; i < numShards; i++) {
+                shards.add(new ShardReader(ShardId.readShardId(in), in.readString(), in.readLong()));
+            }
+            if (in.available() > 0) {
+                throw new IllegalArgumentException("Not all bytes were read");
+            }
+            return new PointInTimeId(indices, indicesOptions, shards);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Cannot parse point in time id", e);
+        }
+    }
+}
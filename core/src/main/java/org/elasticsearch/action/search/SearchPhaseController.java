@@ -32,10 +32,19 @@ import org.apache.lucene.search.TermStatistics;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopFieldDocs;
 import org.apache.lucene.search.grouping.CollapseTopFieldDocs;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.common.collect.HppcMaps;
 import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.script.ScriptService;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.SearchHit;
@@ -65,6 +74,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -73,13 +84,52 @@ public final class SearchPhaseController extends AbstractComponent {
 
     private static final ScoreDoc[] EMPTY_DOCS = new ScoreDoc[0];
 
+    /**
+     * The maximum estimated size of the shard aggregation results that a search request buffers on the coordinating node
+     * before they are partially reduced, regardless of the <code>batched_reduce_size</code> of the request.
+     */
+    public static final Setting<ByteSizeValue> MAX_BUFFERED_AGGS_SIZE_SETTING =
+        Setting.memorySizeSetting("search.max_buffered_aggs_size", "1%", Property.NodeScope);
+
+    /**
+     * The maximum number of top level aggregations that the final reduce of a search request reduces at the same time.
+     */
+    public static final Setting<Integer> MAX_CONCURRENT_AGGS_REDUCE_SETTING =
+        new Setting<>("search.max_concurrent_aggs_reduce", s -> Integer.toString(Math.min(4, EsExecutors.numberOfProcessors(s))),
+            s -> Setting.parseInt(s, 1, "search.max_concurrent_aggs_reduce"), Property.NodeScope);
+
     private final BigArrays bigArrays;
     private final ScriptService scriptService;
+    private final long maxBufferedAggsBytes;
+    private final Executor reduceExecutor;
+    private final int maxConcurrentAggsReduce;
+    // node level stats of the aggregation results that search requests buffer on this node
+    private final CounterMetric currentBufferedAggsBytes = new CounterMetric();
+    private final AtomicLong peakBufferedAggsBytes = new AtomicLong();
+    private final CounterMetric partialAggsReduces = new CounterMetric();
 
     public SearchPhaseController(Settings settings, BigArrays bigArrays, ScriptService scriptService) {
+        this(settings, bigArrays, scriptService, EsExecutors.newDirectExecutorService());
+    }
+
+    /**
+     * @param reduceExecutor the executor that helps the calling thread reduce top level aggregations concurrently during
+     *                       the final reduce
+     */
+    public SearchPhaseController(Settings settings, BigArrays bigArrays, ScriptService scriptService, Executor reduceExecutor) {
         super(settings);
         this.bigArrays = bigArrays;
         this.scriptService = scriptService;
+        this.maxBufferedAggsBytes = MAX_BUFFERED_AGGS_SIZE_SETTING.get(settings).getBytes();
+        this.reduceExecutor = reduceExecutor;
+        this.maxConcurrentAggsReduce = MAX_CONCURRENT_AGGS_REDUCE_SETTING.get(settings);
+    }
+
+    /**
+     * Returns the stats of the aggregation results that search requests buffer on this node while they wait for more shard results.
+     */
+    public BufferedAggsStats bufferedAggsStats() {
+        return new BufferedAggsStats(currentBufferedAggsBytes.count(), peakBufferedAggsBytes.get(), partialAggsReduces.count());
     }
 
     public AggregatedDfs aggregateDfs(Collection<DfsSearchResult> results) {
@@ -414,7 +464,7 @@ public final class SearchPhaseController extends AbstractComponent {
      * @param queryResults a list of non-null query shard results
      */
     public ReducedQueryPhase reducedQueryPhase(Collection<? extends SearchPhaseResult> queryResults, boolean isScrollRequest, boolean trackTotalHits) {
-        return reducedQueryPhase(queryResults, null, new ArrayList<>(), new TopDocsStats(trackTotalHits), 0, isScrollRequest);
+        return reducedQueryPhase(queryResults, null, new ArrayList<>(), new TopDocsStats(trackTotalHits), 0, 0, isScrollRequest);
     }
 
 
@@ -426,19 +476,22 @@ public final class SearchPhaseController extends AbstractComponent {
      * @param bufferedTopDocs a list of pre-collected / buffered top docs. if this list is non-null all top docs have been consumed
      *                    from all non-null query results.
      * @param numReducePhases the number of non-final reduce phases applied to the query results.
+     * @param peakBufferedAggsBytes the maximum estimated size of the aggregation results that were buffered before the final reduce
      * @see QuerySearchResult#consumeAggs()
      * @see QuerySearchResult#consumeProfileResult()
      */
     private ReducedQueryPhase reducedQueryPhase(Collection<? extends SearchPhaseResult> queryResults,
                                                 List<InternalAggregations> bufferedAggs, List<TopDocs> bufferedTopDocs,
-                                                TopDocsStats topDocsStats, int numReducePhases, boolean isScrollRequest) {
+                                                TopDocsStats topDocsStats, int numReducePhases, long peakBufferedAggsBytes,
+                                                boolean isScrollRequest) {
         assert numReducePhases >= 0 : "num reduce phases must be >= 0 but was: " + numReducePhases;
         numReducePhases++; // increment for this phase
         boolean timedOut = false;
         Boolean terminatedEarly = null;
         if (queryResults.isEmpty()) { // early terminate we have nothing to reduce
             return new ReducedQueryPhase(topDocsStats.totalHits, topDocsStats.fetchHits, topDocsStats.maxScore,
-                timedOut, terminatedEarly, null, null, null, EMPTY_DOCS, null, null, numReducePhases, false, 0, 0, true);
+                timedOut, terminatedEarly, null, null, null, EMPTY_DOCS, null, null, numReducePhases, peakBufferedAggsBytes, false, 0, 0,
+                true);
         }
         final QuerySearchResult firstResult = queryResults.stream().findFirst().get().queryResult();
         final boolean hasSuggest = firstResult.suggest() != null;
@@ -497,30 +550,48 @@ public final class SearchPhaseController extends AbstractComponent {
         }
         final Suggest suggest = groupedSuggestions.isEmpty() ? null : new Suggest(Suggest.reduce(groupedSuggestions));
         ReduceContext reduceContext = new ReduceContext(bigArrays, scriptService, true);
+        final Map<String, Long> aggsReduceTimes = hasProfileResults ? new HashMap<>() : null;
         final InternalAggregations aggregations = aggregationsList.isEmpty() ? null : reduceAggs(aggregationsList,
-            firstResult.pipelineAggregators(), reduceContext);
-        final SearchProfileShardResults shardResults = profileResults.isEmpty() ? null : new SearchProfileShardResults(profileResults);
+            firstResult.pipelineAggregators(), reduceContext, aggsReduceTimes);
+        final SearchProfileShardResults shardResults = profileResults.isEmpty() ? null
+            : new SearchProfileShardResults(profileResults, aggsReduceTimes);
         final SortedTopDocs scoreDocs = this.sortDocs(isScrollRequest, queryResults, bufferedTopDocs, topDocsStats, from, size);
         return new ReducedQueryPhase(topDocsStats.totalHits, topDocsStats.fetchHits, topDocsStats.maxScore,
             timedOut, terminatedEarly, suggest, aggregations, shardResults, scoreDocs.scoreDocs, scoreDocs.sortFields,
             firstResult != null ? firstResult.sortValueFormats() : null,
-            numReducePhases, scoreDocs.isSortedByField, size, from, firstResult == null);
+            numReducePhases, peakBufferedAggsBytes, scoreDocs.isSortedByField, size, from, firstResult == null);
     }
 
 
     /**
      * Performs an intermediate reduce phase on the aggregations. For instance with this reduce phase never prune information
-     * that relevant for the final reduce step. For final reduce see {@link #reduceAggs(List, List, ReduceContext)}
+     * that relevant for the final reduce step. For final reduce see {@link #reduceAggs(List, List, ReduceContext, Map)}
      */
     private InternalAggregations reduceAggsIncrementally(List<InternalAggregations> aggregationsList) {
         ReduceContext reduceContext = new ReduceContext(bigArrays, scriptService, false);
         return aggregationsList.isEmpty() ? null : reduceAggs(aggregationsList,
-            null, reduceContext);
+            null, reduceContext, null);
     }
 
+    /**
+     * Estimates the heap used by the provided aggregation results, see {@link InternalAggregation#estimateSize()}. This walks
+     * the results, which is much cheaper than serializing them on the coordinating node.
+     */
+    static long estimateAggsSize(@Nullable InternalAggregations aggregations) {
+        return aggregations == null ? 0 : aggregations.estimateSize();
+    }
+
+    /**
+     * Reduces the aggregations, concurrently if this is the final reduce, and then applies the sibling pipeline aggregations
+     * in order.
+     * @param reduceTimes if not <code>null</code>, receives the time it took to reduce each top level aggregation
+     */
     private InternalAggregations reduceAggs(List<InternalAggregations> aggregationsList,
-                                            List<SiblingPipelineAggregator> pipelineAggregators, ReduceContext reduceContext) {
-        InternalAggregations aggregations = InternalAggregations.reduce(aggregationsList, reduceContext);
+                                            List<SiblingPipelineAggregator> pipelineAggregators, ReduceContext reduceContext,
+                                            @Nullable Map<String, Long> reduceTimes) {
+        InternalAggregations aggregations = reduceContext.isFinalReduce()
+            ? InternalAggregations.reduce(aggregationsList, reduceContext, reduceExecutor, maxConcurrentAggsReduce, reduceTimes)
+            : InternalAggregations.reduce(aggregationsList, reduceContext);
         if (pipelineAggregators != null) {
             List<InternalAggregation> newAggs = StreamSupport.stream(aggregations.spliterator(), false)
                 .map((p) -> (InternalAggregation) p)
@@ -553,6 +624,8 @@ public final class SearchPhaseController extends AbstractComponent {
         final SearchProfileShardResults shardResults;
         // the number of reduces phases
         final int numReducePhases;
+        // the maximum estimated size of the aggregation results that were buffered before the final reduce
+        final long peakBufferedAggsBytes;
         // the searches merged top docs
         final ScoreDoc[] scoreDocs;
         // the top docs sort fields used to sort the score docs, <code>null</code> if the results are not sorted
@@ -572,6 +645,14 @@ public final class SearchPhaseController extends AbstractComponent {
                           InternalAggregations aggregations, SearchProfileShardResults shardResults, ScoreDoc[] scoreDocs,
                           SortField[] sortFields, DocValueFormat[] sortValueFormats, int numReducePhases, boolean isSortedByField, int size,
                           int from, boolean isEmptyResult) {
+            this(totalHits, fetchHits, maxScore, timedOut, terminatedEarly, suggest, aggregations, shardResults, scoreDocs, sortFields,
+                sortValueFormats, numReducePhases, 0, isSortedByField, size, from, isEmptyResult);
+        }
+
+        ReducedQueryPhase(long totalHits, long fetchHits, float maxScore, boolean timedOut, Boolean terminatedEarly, Suggest suggest,
+                          InternalAggregations aggregations, SearchProfileShardResults shardResults, ScoreDoc[] scoreDocs,
+                          SortField[] sortFields, DocValueFormat[] sortValueFormats, int numReducePhases, long peakBufferedAggsBytes,
+                          boolean isSortedByField, int size, int from, boolean isEmptyResult) {
             if (numReducePhases <= 0) {
                 throw new IllegalArgumentException("at least one reduce phase must have been applied but was: " + numReducePhases);
             }
@@ -588,6 +669,7 @@ public final class SearchPhaseController extends AbstractComponent {
             this.aggregations = aggregations;
             this.shardResults = shardResults;
             this.numReducePhases = numReducePhases;
+            this.peakBufferedAggsBytes = peakBufferedAggsBytes;
             this.scoreDocs = scoreDocs;
             this.sortField = sortFields;
             this.isSortedByField = isSortedByField;
@@ -602,7 +684,8 @@ public final class SearchPhaseController extends AbstractComponent {
          * @see #merge(boolean, ReducedQueryPhase, Collection, IntFunction)
          */
         public InternalSearchResponse buildResponse(SearchHits hits) {
-            return new InternalSearchResponse(hits, aggregations, suggest, shardResults, timedOut, terminatedEarly, numReducePhases);
+            return new InternalSearchResponse(hits, aggregations, suggest, shardResults, timedOut, terminatedEarly, numReducePhases,
+                peakBufferedAggsBytes);
         }
     }
 
@@ -614,14 +697,23 @@ public final class SearchPhaseController extends AbstractComponent {
      */
     static final class QueryPhaseResultConsumer extends InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> {
         private final InternalAggregations[] aggsBuffer;
+        // the estimated size of each buffered aggregation result
+        private final long[] aggsBytesBuffer;
         private final TopDocs[] topDocsBuffer;
         private final boolean hasAggs;
         private final boolean hasTopDocs;
         private final int bufferSize;
+        private final long maxBufferedBytes;
+        private final CircuitBreaker breaker;
         private int index;
         private final SearchPhaseController controller;
         private int numReducePhases = 0;
-        private final TopDocsStats topDocsStats = new TopDocsStats();
+        private final TopDocsStats topDocsStats;
+        // the estimated size of the buffered aggregation results, charged to the request circuit breaker
+        private long bufferedBytes;
+        private long peakBufferedBytes;
+        // set if buffering the aggregation results tripped the request circuit breaker, fails the final reduce
+        private CircuitBreakingException failure;
 
         /**
          * Creates a new {@link QueryPhaseResultConsumer}
@@ -629,15 +721,17 @@ public final class SearchPhaseController extends AbstractComponent {
          * @param expectedResultSize the expected number of query results. Corresponds to the number of shards queried
          * @param bufferSize the size of the reduce buffer. if the buffer size is smaller than the number of expected results
          *                   the buffer is used to incrementally reduce aggregation results before all shards responded.
+         * @param maxBufferedBytes the maximum estimated size of the buffered aggregation results. Buffered results are
+         *                         incrementally reduced once this size is reached even if the buffer is not full.
          */
         private QueryPhaseResultConsumer(SearchPhaseController controller, int expectedResultSize, int bufferSize,
-                                         boolean hasTopDocs, boolean hasAggs) {
+                                         boolean hasTopDocs, boolean hasAggs, boolean trackTotalHits, long maxBufferedBytes) {
             super(expectedResultSize);
             if (expectedResultSize != 1 && bufferSize < 2) {
                 throw new IllegalArgumentException("buffer size must be >= 2 if there is more than one expected result");
             }
-            if (expectedResultSize <= bufferSize) {
-                throw new IllegalArgumentException("buffer size must be less than the expected result size");
+            if (expectedResultSize < bufferSize) {
+                throw new IllegalArgumentException("buffer size must be less than or equal to the expected result size");
             }
             if (hasAggs == false && hasTopDocs == false) {
                 throw new IllegalArgumentException("either aggs or top docs must be present");
@@ -645,29 +739,44 @@ public final class SearchPhaseController extends AbstractComponent {
             this.controller = controller;
             // no need to buffer anything if we have less expected results. in this case we don't consume any results ahead of time.
             this.aggsBuffer = new InternalAggregations[hasAggs ? bufferSize : 0];
+            this.aggsBytesBuffer = new long[hasAggs ? bufferSize : 0];
             this.topDocsBuffer = new TopDocs[hasTopDocs ? bufferSize : 0];
             this.hasTopDocs = hasTopDocs;
             this.hasAggs = hasAggs;
             this.bufferSize = bufferSize;
-
+            this.maxBufferedBytes = maxBufferedBytes;
+            this.topDocsStats = new TopDocsStats(trackTotalHits);
+            final CircuitBreakerService breakerService = controller.bigArrays.breakerService();
+            this.breaker = breakerService == null ? null : breakerService.getBreaker(CircuitBreaker.REQUEST);
         }
 
         @Override
         public void consumeResult(SearchPhaseResult result) {
             super.consumeResult(result);
             QuerySearchResult queryResult = result.queryResult();
-            consumeInternal(queryResult);
-        }
-
-        private synchronized void consumeInternal(QuerySearchResult querySearchResult) {
-            if (index == bufferSize) {
-                if (hasAggs) {
-                    InternalAggregations reducedAggs = controller.reduceAggsIncrementally(Arrays.asList(aggsBuffer));
+            // the size of the aggregations is estimated before taking the lock so that results that arrive at the same time
+            // are walked in parallel
+            final InternalAggregations aggs = hasAggs ? (InternalAggregations) queryResult.consumeAggs() : null;
+            consumeInternal(queryResult, aggs, estimateAggsSize(aggs));
+        }
+
+        private synchronized void consumeInternal(QuerySearchResult querySearchResult, InternalAggregations aggs, long aggsBytes) {
+            if (index == bufferSize || (index > 1 && bufferedBytes + aggsBytes > maxBufferedBytes)) {
+                if (hasAggs && failure == null) {
+                    InternalAggregations reducedAggs = controller.reduceAggsIncrementally(Arrays.asList(aggsBuffer).subList(0, index));
+                    // the reduced result can be larger than any of the results it replaces, for instance if shards return
+                    // different buckets, so it is accounted for by its own size
+                    final long reducedBytes = estimateAggsSize(reducedAggs);
                     Arrays.fill(aggsBuffer, null);
+                    Arrays.fill(aggsBytesBuffer, 0);
                     aggsBuffer[0] = reducedAggs;
+                    aggsBytesBuffer[0] = reducedBytes;
+                    if (chargeBufferedBytes(reducedBytes)) {
+                        controller.partialAggsReduces.inc();
+                    }
                 }
                 if (hasTopDocs) {
-                    TopDocs reducedTopDocs = controller.mergeTopDocs(Arrays.asList(topDocsBuffer),
+                    TopDocs reducedTopDocs = controller.mergeTopDocs(Arrays.asList(topDocsBuffer).subList(0, index),
                         querySearchResult.from() + querySearchResult.size() // we have to merge here in the same way we collect on a shard
                         , 0);
                     Arrays.fill(topDocsBuffer, null);
@@ -677,8 +786,10 @@ public final class SearchPhaseController extends AbstractComponent {
                 index = 1;
             }
             final int i = index++;
-            if (hasAggs) {
-                aggsBuffer[i] = (InternalAggregations) querySearchResult.consumeAggs();
+            if (hasAggs && failure == null) {
+                aggsBuffer[i] = aggs;
+                aggsBytesBuffer[i] = aggsBytes;
+                chargeBufferedBytes(bufferedBytes + aggsBytes);
             }
             if (hasTopDocs) {
                 final TopDocs topDocs = querySearchResult.consumeTopDocs(); // can't be null
@@ -688,6 +799,46 @@ public final class SearchPhaseController extends AbstractComponent {
             }
         }
 
+        /**
+         * Updates the estimated size of the buffered aggregation results. If this trips the request circuit breaker, the
+         * buffered results are dropped and released from the breaker, and the final reduce fails with the breaker exception.
+         * Returns <code>false</code> if the breaker tripped.
+         */
+        private boolean chargeBufferedBytes(long newBufferedBytes) {
+            try {
+                setBufferedBytes(newBufferedBytes);
+                return true;
+            } catch (CircuitBreakingException e) {
+                failure = e;
+                Arrays.fill(aggsBuffer, null);
+                Arrays.fill(aggsBytesBuffer, 0);
+                setBufferedBytes(0);
+                return false;
+            }
+        }
+
+        /**
+         * Updates the estimated size of the buffered aggregation results and adjusts the request circuit breaker accordingly.
+         * @throws CircuitBreakingException if the additional bytes trip the request circuit breaker, in which case the size is
+         *                                  left unchanged
+         */
+        private void setBufferedBytes(long newBufferedBytes) {
+            if (breaker != null) {
+                final long delta = newBufferedBytes - bufferedBytes;
+                if (delta > 0) {
+                    breaker.addEstimateBytesAndMaybeBreak(delta, "<reduce_aggs>");
+                } else {
+                    breaker.addWithoutBreaking(delta);
+                }
+            }
+            controller.currentBufferedAggsBytes.inc(newBufferedBytes - bufferedBytes);
+            bufferedBytes = newBufferedBytes;
+            if (bufferedBytes > peakBufferedBytes) {
+                peakBufferedBytes = bufferedBytes;
+                controller.peakBufferedAggsBytes.accumulateAndGet(peakBufferedBytes, Math::max);
+            }
+        }
+
         private synchronized List<InternalAggregations> getRemainingAggs() {
             return hasAggs ? Arrays.asList(aggsBuffer).subList(0, index) : null;
         }
@@ -699,8 +850,25 @@ public final class SearchPhaseController extends AbstractComponent {
 
         @Override
         public ReducedQueryPhase reduce() {
-            return controller.reducedQueryPhase(results.asList(), getRemainingAggs(), getRemainingTopDocs(), topDocsStats,
-                numReducePhases, false);
+            try {
+                synchronized (this) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                }
+                return controller.reducedQueryPhase(results.asList(), getRemainingAggs(), getRemainingTopDocs(), topDocsStats,
+                    numReducePhases, getPeakBufferedBytes(), false);
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Releases the bytes of the buffered aggregation results from the request circuit breaker.
+         */
+        @Override
+        public synchronized void close() {
+            setBufferedBytes(0);
         }
 
         /**
@@ -711,6 +879,20 @@ public final class SearchPhaseController extends AbstractComponent {
         }
 
         int getNumReducePhases() { return numReducePhases; }
+
+        /**
+         * Returns the estimated size of the buffered aggregation results
+         */
+        synchronized long getBufferedBytes() {
+            return bufferedBytes;
+        }
+
+        /**
+         * Returns the maximum estimated size of the buffered aggregation results since this consumer was created
+         */
+        synchronized long getPeakBufferedBytes() {
+            return peakBufferedBytes;
+        }
     }
 
     /**
@@ -725,9 +907,12 @@ public final class SearchPhaseController extends AbstractComponent {
 
         if (isScrollRequest == false && (hasAggs || hasTopDocs)) {
             // no incremental reduce if scroll is used - we only hit a single shard or sometimes more...
-            if (request.getBatchedReduceSize() < numShards) {
-                // only use this if there are aggs and if there are more shards than we should reduce at once
-                return new QueryPhaseResultConsumer(this, numShards, request.getBatchedReduceSize(), hasTopDocs, hasAggs);
+            if ((hasAggs && numShards > 1) || request.getBatchedReduceSize() < numShards) {
+                // aggs of more than one shard are always buffered by the consumer so that their size is bounded and accounted
+                // for, even if there are less shards than we should reduce at once
+                final int bufferSize = Math.min(request.getBatchedReduceSize(), numShards);
+                return new QueryPhaseResultConsumer(this, numShards, bufferSize, hasTopDocs, hasAggs, trackTotalHits,
+                    maxBufferedAggsBytes);
             }
         }
         return new InitialSearchPhase.ArraySearchPhaseResults(numShards) {
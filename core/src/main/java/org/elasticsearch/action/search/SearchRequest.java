@@ -31,6 +31,7 @@ import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.search.Scroll;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.tasks.Task;
 import org.elasticsearch.tasks.TaskId;
@@ -173,6 +174,14 @@ public final class SearchRequest extends ActionRequest implements IndicesRequest
             validationException =
                 addValidationError("[request_cache] cannot be used in a a scroll context", validationException);
         }
+        if (pointInTimeBuilder() != null) {
+            if (scroll() != null) {
+                validationException = addValidationError("using [point in time] is not allowed in a scroll context", validationException);
+            }
+            if (indices.length > 0) {
+                validationException = addValidationError("[indices] cannot be used with point in time", validationException);
+            }
+        }
         return validationException;
     }
 
@@ -289,6 +298,13 @@ public final class SearchRequest extends ActionRequest implements IndicesRequest
         return source;
     }
 
+    /**
+     * The point in time that this request runs against, if any.
+     */
+    PointInTimeBuilder pointInTimeBuilder() {
+        return source == null ? null : source.pointInTimeBuilder();
+    }
+
     /**
      * The tye of search to execute.
      */
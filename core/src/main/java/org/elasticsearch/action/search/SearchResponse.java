@@ -58,6 +58,7 @@ public class SearchResponse extends ActionResponse implements StatusToXContentOb
     private static final ParseField TIMED_OUT = new ParseField("timed_out");
     private static final ParseField TERMINATED_EARLY = new ParseField("terminated_early");
     private static final ParseField NUM_REDUCE_PHASES = new ParseField("num_reduce_phases");
+    private static final ParseField PEAK_BUFFERED_AGGS_BYTES = new ParseField("peak_buffered_aggs_bytes");
 
     private SearchResponseSections internalResponse;
 
@@ -69,6 +70,8 @@ public class SearchResponse extends ActionResponse implements StatusToXContentOb
 
     private int skippedShards;
 
+    private int prunedShards;
+
     private ShardSearchFailure[] shardFailures;
 
     private long tookInMillis;
@@ -78,14 +81,21 @@ public class SearchResponse extends ActionResponse implements StatusToXContentOb
 
     public SearchResponse(SearchResponseSections internalResponse, String scrollId, int totalShards, int successfulShards,
                           int skippedShards, long tookInMillis, ShardSearchFailure[] shardFailures) {
+        this(internalResponse, scrollId, totalShards, successfulShards, skippedShards, 0, tookInMillis, shardFailures);
+    }
+
+    public SearchResponse(SearchResponseSections internalResponse, String scrollId, int totalShards, int successfulShards,
+                          int skippedShards, int prunedShards, long tookInMillis, ShardSearchFailure[] shardFailures) {
         this.internalResponse = internalResponse;
         this.scrollId = scrollId;
         this.totalShards = totalShards;
         this.successfulShards = successfulShards;
         this.skippedShards = skippedShards;
+        this.prunedShards = prunedShards;
         this.tookInMillis = tookInMillis;
         this.shardFailures = shardFailures;
         assert skippedShards <= totalShards : "skipped: " + skippedShards + " total: " + totalShards;
+        assert prunedShards <= skippedShards : "pruned: " + prunedShards + " skipped: " + skippedShards;
     }
 
     @Override
@@ -131,6 +141,14 @@ public class SearchResponse extends ActionResponse implements StatusToXContentOb
         return internalResponse.getNumReducePhases();
     }
 
+    /**
+     * Returns the largest estimated size of the shard aggregation results that were buffered on the coordinating node before
+     * they were reduced, or <code>0</code> if the results were not buffered
+     */
+    public long getPeakBufferedAggsBytes() {
+        return internalResponse.getPeakBufferedAggsBytes();
+    }
+
     /**
      * How long the search took.
      */
@@ -160,6 +178,14 @@ public class SearchResponse extends ActionResponse implements StatusToXContentOb
         return skippedShards;
     }
 
+    /**
+     * The number of skipped shards that the coordinating node skipped without sending any request to them, because
+     * their cached field ranges could not match the query. These shards are included in {@link #getSkippedShards()}.
+     */
+    public int getPrunedShards() {
+        return prunedShards;
+    }
+
     /**
      * The failed number of shards the search was executed on.
      */
@@ -219,8 +245,11 @@ public class SearchResponse extends ActionResponse implements StatusToXContentOb
         if (getNumReducePhases() != 1) {
             builder.field(NUM_REDUCE_PHASES.getPreferredName(), getNumReducePhases());
         }
+        if (getPeakBufferedAggsBytes() > 0) {
+            builder.field(PEAK_BUFFERED_AGGS_BYTES.getPreferredName(), getPeakBufferedAggsBytes());
+        }
         RestActions.buildBroadcastShardsHeader(builder, params, getTotalShards(), getSuccessfulShards(), getSkippedShards(),
-            getFailedShards(), getShardFailures());
+            getPrunedShards(), getFailedShards(), getShardFailures());
         internalResponse.toXContent(builder, params);
         return builder;
     }
@@ -236,10 +265,12 @@ public class SearchResponse extends ActionResponse implements StatusToXContentOb
         boolean timedOut = false;
         Boolean terminatedEarly = null;
         int numReducePhases = 1;
+        long peakBufferedAggsBytes = 0;
         long tookInMillis = -1;
         int successfulShards = -1;
         int totalShards = -1;
         int skippedShards = 0; // 0 for BWC
+        int prunedShards = 0;
         String scrollId = null;
         List<ShardSearchFailure> failures = new ArrayList<>();
         while((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
@@ -256,6 +287,8 @@ public class SearchResponse extends ActionResponse implements StatusToXContentOb
                     terminatedEarly = parser.booleanValue();
                 } else if (NUM_REDUCE_PHASES.match(currentFieldName)) {
                     numReducePhases = parser.intValue();
+                } else if (PEAK_BUFFERED_AGGS_BYTES.match(currentFieldName)) {
+                    peakBufferedAggsBytes = parser.longValue();
                 } else {
                     parser.skipChildren();
                 }
@@ -281,6 +314,8 @@ public class SearchResponse extends ActionResponse implements StatusToXContentOb
                                 totalShards = parser.intValue();
                             } else if (RestActions.SKIPPED_FIELD.match(currentFieldName)) {
                                 skippedShards = parser.intValue();
+                            } else if (RestActions.PRUNED_FIELD.match(currentFieldName)) {
+                                prunedShards = parser.intValue();
                             } else {
                                 parser.skipChildren();
                             }
@@ -302,9 +337,9 @@ public class SearchResponse extends ActionResponse implements StatusToXContentOb
             }
         }
         SearchResponseSections searchResponseSections = new SearchResponseSections(hits, aggs, suggest, timedOut, terminatedEarly,
-                profile, numReducePhases);
-        return new SearchResponse(searchResponseSections, scrollId, totalShards, successfulShards, skippedShards, tookInMillis,
-                failures.toArray(new ShardSearchFailure[failures.size()]));
+                profile, numReducePhases, peakBufferedAggsBytes);
+        return new SearchResponse(searchResponseSections, scrollId, totalShards, successfulShards, skippedShards, prunedShards,
+                tookInMillis, failures.toArray(new ShardSearchFailure[failures.size()]));
     }
 
     @Override
@@ -327,6 +362,9 @@ public class SearchResponse extends ActionResponse implements StatusToXContentOb
         if (in.getVersion().onOrAfter(Version.V_5_6_0)) {
             skippedShards = in.readVInt();
         }
+        if (in.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            prunedShards = in.readVInt();
+        }
     }
 
     @Override
@@ -346,6 +384,9 @@ public class SearchResponse extends ActionResponse implements StatusToXContentOb
         if(out.getVersion().onOrAfter(Version.V_5_6_0)) {
             out.writeVInt(skippedShards);
         }
+        if (out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            out.writeVInt(prunedShards);
+        }
     }
 
     @Override
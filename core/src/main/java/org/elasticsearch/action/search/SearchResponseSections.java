@@ -49,9 +49,15 @@ public class SearchResponseSections implements ToXContentFragment {
     protected final boolean timedOut;
     protected final Boolean terminatedEarly;
     protected final int numReducePhases;
+    protected final long peakBufferedAggsBytes;
 
     public SearchResponseSections(SearchHits hits, Aggregations aggregations, Suggest suggest, boolean timedOut, Boolean terminatedEarly,
                                   SearchProfileShardResults profileResults,  int numReducePhases) {
+        this(hits, aggregations, suggest, timedOut, terminatedEarly, profileResults, numReducePhases, 0);
+    }
+
+    public SearchResponseSections(SearchHits hits, Aggregations aggregations, Suggest suggest, boolean timedOut, Boolean terminatedEarly,
+                                  SearchProfileShardResults profileResults, int numReducePhases, long peakBufferedAggsBytes) {
         this.hits = hits;
         this.aggregations = aggregations;
         this.suggest = suggest;
@@ -59,6 +65,7 @@ public class SearchResponseSections implements ToXContentFragment {
         this.timedOut = timedOut;
         this.terminatedEarly = terminatedEarly;
         this.numReducePhases = numReducePhases;
+        this.peakBufferedAggsBytes = peakBufferedAggsBytes;
     }
 
     public final boolean timedOut() {
@@ -88,6 +95,14 @@ public class SearchResponseSections implements ToXContentFragment {
         return numReducePhases;
     }
 
+    /**
+     * Returns the largest estimated size of the shard aggregation results that were buffered on the coordinating node before
+     * they were reduced, or <code>0</code> if the results were not buffered
+     */
+    public final long getPeakBufferedAggsBytes() {
+        return peakBufferedAggsBytes;
+    }
+
     /**
      * Returns the profile results for this search response (including all shards).
      * An empty map is returned if profiling was not enabled
@@ -23,6 +23,7 @@ import org.elasticsearch.action.OriginalIndices;
 import org.elasticsearch.cluster.routing.PlainShardIterator;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.search.internal.PointInTimeReader;
 
 import java.util.List;
 
@@ -33,8 +34,10 @@ import java.util.List;
 public final class SearchShardIterator extends PlainShardIterator {
 
     private final OriginalIndices originalIndices;
+    private final long pointInTimeReaderId;
     private String clusterAlias;
     private boolean skip = false;
+    private boolean pruned = false;
 
     /**
      * Creates a {@link PlainShardIterator} instance that iterates over a subset of the given shards
@@ -44,9 +47,19 @@ public final class SearchShardIterator extends PlainShardIterator {
      * @param shards  shards to iterate
      */
     public SearchShardIterator(String clusterAlias, ShardId shardId, List<ShardRouting> shards, OriginalIndices originalIndices) {
+        this(clusterAlias, shardId, shards, originalIndices, PointInTimeReader.NO_READER_ID);
+    }
+
+    /**
+     * Creates a {@link SearchShardIterator} for a shard of a point in time, the shards to iterate are the copies of the shard
+     * that hold the point in time with the given reader id.
+     */
+    SearchShardIterator(String clusterAlias, ShardId shardId, List<ShardRouting> shards, OriginalIndices originalIndices,
+                        long pointInTimeReaderId) {
         super(shardId, shards);
         this.originalIndices = originalIndices;
         this.clusterAlias = clusterAlias;
+        this.pointInTimeReaderId = pointInTimeReaderId;
     }
 
     /**
@@ -60,6 +73,14 @@ public final class SearchShardIterator extends PlainShardIterator {
         return clusterAlias;
     }
 
+    /**
+     * Returns the id of the point in time reader that the shard requests must run against, or
+     * {@link PointInTimeReader#NO_READER_ID} if the request doesn't run against a point in time.
+     */
+    long getPointInTimeReaderId() {
+        return pointInTimeReaderId;
+    }
+
     /**
      * Reset the iterator and mark it as skippable
      * @see #skip()
@@ -75,4 +96,28 @@ public final class SearchShardIterator extends PlainShardIterator {
     boolean skip() {
         return skip;
     }
+
+    /**
+     * Reset the iterator and mark it as skippable because the cached field ranges of the shard can't match the query.
+     * @see #pruned()
+     */
+    void resetAndPrune() {
+        resetAndSkip();
+        pruned = true;
+    }
+
+    /**
+     * Returns <code>true</code> if the shard has been skipped by the coordinating node without sending any request to it.
+     */
+    boolean pruned() {
+        return pruned;
+    }
+
+    /**
+     * Returns the shard that the next call to {@link #nextOrNull()} will return without moving the iterator forward.
+     */
+    ShardRouting peekNextOrNull() {
+        final int remaining = remaining();
+        return remaining == 0 ? null : getShardRoutings().get(size() - remaining);
+    }
 }
@@ -19,13 +19,30 @@
 
 package org.elasticsearch.action.search;
 
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ConstructingObjectParser;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.search.aggregations.AggregationMemoryUsage;
 import org.elasticsearch.tasks.CancellableTask;
+import org.elasticsearch.tasks.Task;
 import org.elasticsearch.tasks.TaskId;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+import static org.elasticsearch.common.xcontent.ConstructingObjectParser.constructorArg;
+
 /**
  * Task storing information about a currently running search request.
  */
 public class SearchTask extends CancellableTask {
+    private volatile Supplier<List<AggregationMemoryUsage.Stats>> aggregationMemoryUsage;
 
     public SearchTask(long id, String type, String action, String description, TaskId parentTaskId) {
         super(id, type, action, description, parentTaskId);
@@ -36,4 +53,92 @@ public class SearchTask extends CancellableTask {
         return true;
     }
 
+    /**
+     * Set the supplier of the memory usage of the aggregations that this task is running.
+     */
+    public void setAggregationMemoryUsage(Supplier<List<AggregationMemoryUsage.Stats>> aggregationMemoryUsage) {
+        this.aggregationMemoryUsage = aggregationMemoryUsage;
+    }
+
+    @Override
+    public Task.Status getStatus() {
+        final Supplier<List<AggregationMemoryUsage.Stats>> aggregationMemoryUsage = this.aggregationMemoryUsage;
+        return aggregationMemoryUsage == null ? null : new Status(aggregationMemoryUsage.get());
+    }
+
+    public static class Status implements Task.Status {
+        public static final String NAME = "search";
+
+        @SuppressWarnings("unchecked")
+        private static final ConstructingObjectParser<Status, Void> PARSER = new ConstructingObjectParser<>(NAME,
+            a -> new Status((List<AggregationMemoryUsage.Stats>) a[0]));
+        static {
+            PARSER.declareObjectArray(constructorArg(), (p, c) -> AggregationMemoryUsage.Stats.fromXContent(p),
+                new ParseField("aggregations"));
+        }
+
+        private final List<AggregationMemoryUsage.Stats> aggregations;
+
+        public Status(List<AggregationMemoryUsage.Stats> aggregations) {
+            this.aggregations = requireNonNull(aggregations, "Aggregations cannot be null");
+        }
+
+        public Status(StreamInput in) throws IOException {
+            aggregations = in.readList(AggregationMemoryUsage.Stats::new);
+        }
+
+        public static Status fromXContent(XContentParser parser) {
+            return PARSER.apply(parser, null);
+        }
+
+        /**
+         * The memory usage of the aggregators of the search, sorted by path.
+         */
+        public List<AggregationMemoryUsage.Stats> getAggregations() {
+            return aggregations;
+        }
+
+        @Override
+        public String getWriteableName() {
+            return NAME;
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            builder.startArray("aggregations");
+            for (AggregationMemoryUsage.Stats stats : aggregations) {
+                stats.toXContent(builder, params);
+            }
+            builder.endArray();
+            builder.endObject();
+            return builder;
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeList(aggregations);
+        }
+
+        @Override
+        public String toString() {
+            return Strings.toString(this);
+        }
+
+        // Implements equals and hashcode for testing
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null || obj.getClass() != SearchTask.Status.class) {
+                return false;
+            }
+            SearchTask.Status other = (Status) obj;
+            return aggregations.equals(other.aggregations);
+        }
+
+        @Override
+        public int hashCode() {
+            return aggregations.hashCode();
+        }
+    }
+
 }
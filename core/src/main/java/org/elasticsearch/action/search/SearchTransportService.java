@@ -26,13 +26,18 @@ import org.elasticsearch.action.IndicesRequest;
 import org.elasticsearch.action.OriginalIndices;
 import org.elasticsearch.action.support.IndicesOptions;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.SearchService;
+import org.elasticsearch.search.ShardFieldRanges;
 import org.elasticsearch.search.dfs.DfsSearchResult;
 import org.elasticsearch.search.fetch.FetchSearchResult;
 import org.elasticsearch.search.fetch.QueryFetchSearchResult;
@@ -83,6 +88,8 @@ public class SearchTransportService extends AbstractComponent {
     public static final String FETCH_ID_SCROLL_ACTION_NAME = "indices:data/read/search[phase/fetch/id/scroll]";
     public static final String FETCH_ID_ACTION_NAME = "indices:data/read/search[phase/fetch/id]";
     public static final String QUERY_CAN_MATCH_NAME = "indices:data/read/search[can_match]";
+    public static final String OPEN_POINT_IN_TIME_ACTION_NAME = "indices:data/read/search[open_point_in_time]";
+    public static final String FREE_POINT_IN_TIME_ACTION_NAME = "indices:data/read/search[free_point_in_time]";
 
     private final TransportService transportService;
     private final BiFunction<Transport.Connection, SearchActionListener, ActionListener> responseWrapper;
@@ -134,6 +141,19 @@ public class SearchTransportService extends AbstractComponent {
         }
     }
 
+    public void sendOpenPointInTime(Transport.Connection connection, ShardId shardId, TimeValue keepAlive,
+                                    OriginalIndices originalIndices, final ActionListener<OpenPointInTimeShardResponse> listener) {
+        transportService.sendRequest(connection, OPEN_POINT_IN_TIME_ACTION_NAME,
+            new OpenPointInTimeShardRequest(originalIndices, shardId, keepAlive), TransportRequestOptions.EMPTY,
+            new ActionListenerResponseHandler<>(listener, OpenPointInTimeShardResponse::new));
+    }
+
+    public void sendFreePointInTime(Transport.Connection connection, long readerId,
+                                    final ActionListener<SearchFreeContextResponse> listener) {
+        transportService.sendRequest(connection, FREE_POINT_IN_TIME_ACTION_NAME, new ScrollFreeContextRequest(readerId),
+            TransportRequestOptions.EMPTY, new ActionListenerResponseHandler<>(listener, SearchFreeContextResponse::new));
+    }
+
     public void sendClearAllScrollContexts(Transport.Connection connection, final ActionListener<TransportResponse> listener) {
         transportService.sendRequest(connection, CLEAR_SCROLL_CONTEXTS_ACTION_NAME, TransportRequest.Empty.INSTANCE,
             TransportRequestOptions.EMPTY, new ActionListenerResponseHandler<>(listener, () -> TransportResponse.Empty.INSTANCE));
@@ -317,6 +337,93 @@ public class SearchTransportService extends AbstractComponent {
         }
     }
 
+    static class OpenPointInTimeShardRequest extends TransportRequest implements IndicesRequest {
+        private OriginalIndices originalIndices;
+        private ShardId shardId;
+        private TimeValue keepAlive;
+
+        OpenPointInTimeShardRequest() {
+        }
+
+        OpenPointInTimeShardRequest(OriginalIndices originalIndices, ShardId shardId, TimeValue keepAlive) {
+            this.originalIndices = originalIndices;
+            this.shardId = shardId;
+            this.keepAlive = keepAlive;
+        }
+
+        OpenPointInTimeShardRequest(StreamInput in) throws IOException {
+            super(in);
+            originalIndices = OriginalIndices.readOriginalIndices(in);
+            shardId = ShardId.readShardId(in);
+            keepAlive = new TimeValue(in);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            OriginalIndices.writeOriginalIndices(originalIndices, out);
+            shardId.writeTo(out);
+            keepAlive.writeTo(out);
+        }
+
+        public ShardId shardId() {
+            return shardId;
+        }
+
+        public TimeValue keepAlive() {
+            return keepAlive;
+        }
+
+        @Override
+        public String[] indices() {
+            if (originalIndices == null) {
+                return null;
+            }
+            return originalIndices.indices();
+        }
+
+        @Override
+        public IndicesOptions indicesOptions() {
+            if (originalIndices == null) {
+                return null;
+            }
+            return originalIndices.indicesOptions();
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            throw new UnsupportedOperationException("usage of Streamable is to be replaced by Writeable");
+        }
+    }
+
+    public static class OpenPointInTimeShardResponse extends TransportResponse {
+
+        private long readerId;
+
+        OpenPointInTimeShardResponse() {
+        }
+
+        OpenPointInTimeShardResponse(long readerId) {
+            this.readerId = readerId;
+        }
+
+        public long getReaderId() {
+            return readerId;
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            super.readFrom(in);
+            readerId = in.readLong();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeLong(readerId);
+        }
+    }
+
     public static void registerRequestHandler(TransportService transportService, SearchService searchService) {
         transportService.registerRequestHandler(FREE_CONTEXT_SCROLL_ACTION_NAME, ThreadPool.Names.SAME, ScrollFreeContextRequest::new,
             new TaskAwareTransportRequestHandler<ScrollFreeContextRequest>() {
@@ -349,6 +456,28 @@ public class SearchTransportService extends AbstractComponent {
         TransportActionProxy.registerProxyAction(transportService, CLEAR_SCROLL_CONTEXTS_ACTION_NAME,
                 () -> TransportResponse.Empty.INSTANCE);
 
+        // acquiring a searcher is cheap, it doesn't need to fork
+        transportService.registerRequestHandler(OPEN_POINT_IN_TIME_ACTION_NAME, ThreadPool.Names.SAME, OpenPointInTimeShardRequest::new,
+            new TaskAwareTransportRequestHandler<OpenPointInTimeShardRequest>() {
+                @Override
+                public void messageReceived(OpenPointInTimeShardRequest request, TransportChannel channel, Task task) throws Exception {
+                    long readerId = searchService.openPointInTime(request.shardId(), request.keepAlive());
+                    channel.sendResponse(new OpenPointInTimeShardResponse(readerId));
+                }
+            });
+        TransportActionProxy.registerProxyAction(transportService, OPEN_POINT_IN_TIME_ACTION_NAME,
+                (Supplier<TransportResponse>) OpenPointInTimeShardResponse::new);
+        transportService.registerRequestHandler(FREE_POINT_IN_TIME_ACTION_NAME, ThreadPool.Names.SAME, ScrollFreeContextRequest::new,
+            new TaskAwareTransportRequestHandler<ScrollFreeContextRequest>() {
+                @Override
+                public void messageReceived(ScrollFreeContextRequest request, TransportChannel channel, Task task) throws Exception {
+                    boolean freed = searchService.freePointInTime(request.id());
+                    channel.sendResponse(new SearchFreeContextResponse(freed));
+                }
+            });
+        TransportActionProxy.registerProxyAction(transportService, FREE_POINT_IN_TIME_ACTION_NAME,
+                (Supplier<TransportResponse>) SearchFreeContextResponse::new);
+
         transportService.registerRequestHandler(DFS_ACTION_NAME, ThreadPool.Names.SAME, ShardSearchTransportRequest::new,
             new TaskAwareTransportRequestHandler<ShardSearchTransportRequest>() {
                 @Override
@@ -460,8 +589,8 @@ public class SearchTransportService extends AbstractComponent {
             new TaskAwareTransportRequestHandler<ShardSearchTransportRequest>() {
                 @Override
                 public void messageReceived(ShardSearchTransportRequest request, TransportChannel channel, Task task) throws Exception {
-                    boolean canMatch = searchService.canMatch(request);
-                    channel.sendResponse(new CanMatchResponse(canMatch));
+                    Tuple<Boolean, ShardFieldRanges> canMatch = searchService.canMatchWithFieldRanges(request);
+                    channel.sendResponse(new CanMatchResponse(canMatch.v1(), canMatch.v2()));
                 }
             });
         TransportActionProxy.registerProxyAction(transportService, QUERY_CAN_MATCH_NAME,
@@ -470,12 +599,18 @@ public class SearchTransportService extends AbstractComponent {
 
     public static final class CanMatchResponse extends SearchPhaseResult {
         private boolean canMatch;
+        private ShardFieldRanges fieldRanges;
 
         public CanMatchResponse() {
         }
 
         public CanMatchResponse(boolean canMatch) {
+            this(canMatch, null);
+        }
+
+        public CanMatchResponse(boolean canMatch, @Nullable ShardFieldRanges fieldRanges) {
             this.canMatch = canMatch;
+            this.fieldRanges = fieldRanges;
         }
 
 
@@ -483,17 +618,31 @@ public class SearchTransportService extends AbstractComponent {
         public void readFrom(StreamInput in) throws IOException {
             super.readFrom(in);
             canMatch = in.readBoolean();
+            if (in.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+                fieldRanges = in.readOptionalWriteable(ShardFieldRanges::new);
+            }
         }
 
         @Override
         public void writeTo(StreamOutput out) throws IOException {
             super.writeTo(out);
             out.writeBoolean(canMatch);
+            if (out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+                out.writeOptionalWriteable(fieldRanges);
+            }
         }
 
         public boolean canMatch() {
             return canMatch;
         }
+
+        /**
+         * The ranges of the fields of the shard that the query requires to be within a range, if they can be cached.
+         */
+        @Nullable
+        public ShardFieldRanges getFieldRanges() {
+            return fieldRanges;
+        }
     }
 
 
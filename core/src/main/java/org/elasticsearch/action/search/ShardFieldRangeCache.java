@@ -0,0 +1,191 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.block.ClusterBlockLevel;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.routing.GroupShardsIterator;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.search.SearchService;
+import org.elasticsearch.search.ShardFieldRanges;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the {@link ShardFieldRanges} that the <code>can_match</code> phase returns for the shards on the coordinating node.
+ * This allows to skip shards whose field ranges can't match the query of later search requests before sending any request
+ * to them. Entries are never used once the index metadata has another version than when the ranges were computed. Read-only
+ * ranges of write blocked indices are used for as long as the index stays write blocked, see {@link ShardFieldRanges#isReadOnly()}.
+ * Ranges of shards that receive writes are not used by default since a refresh may add documents outside of them at any time,
+ * unless {@link #SHARD_FIELD_RANGES_MAX_AGE_SETTING} allows to use them for some time after they were reported.
+ */
+public final class ShardFieldRangeCache {
+
+    public static final Setting<Boolean> SHARD_PRUNING_ENABLED_SETTING =
+        Setting.boolSetting("search.shard_field_ranges.pruning.enabled", true, Property.Dynamic, Property.NodeScope);
+    public static final Setting<Integer> SHARD_FIELD_RANGES_CACHE_SIZE_SETTING =
+        Setting.intSetting("search.shard_field_ranges.cache.size", 50_000, 0, Property.NodeScope);
+    /**
+     * How long the ranges of a shard that can receive writes are used after the shard reported them. Documents that are
+     * refreshed in the meantime are not found by searches that skip the shard for that long, even after a refresh with
+     * <code>wait_for</code>. Defaults to <code>0</code>, which only uses the ranges of write blocked indices.
+     */
+    public static final Setting<TimeValue> SHARD_FIELD_RANGES_MAX_AGE_SETTING =
+        Setting.timeSetting("search.shard_field_ranges.max_age", TimeValue.ZERO, TimeValue.ZERO,
+            Property.Dynamic, Property.NodeScope);
+
+    private final Cache<ShardId, Entry> cache;
+    private final LongSupplier relativeTimeInMillis;
+    private volatile boolean pruningEnabled;
+    private volatile long maxAgeInMillis;
+
+    ShardFieldRangeCache(Settings settings, ClusterSettings clusterSettings, LongSupplier relativeTimeInMillis) {
+        this.cache = CacheBuilder.<ShardId, Entry>builder()
+            .setMaximumWeight(SHARD_FIELD_RANGES_CACHE_SIZE_SETTING.get(settings)).build();
+        this.relativeTimeInMillis = relativeTimeInMillis;
+        this.pruningEnabled = SHARD_PRUNING_ENABLED_SETTING.get(settings);
+        this.maxAgeInMillis = SHARD_FIELD_RANGES_MAX_AGE_SETTING.get(settings).millis();
+        clusterSettings.addSettingsUpdateConsumer(SHARD_PRUNING_ENABLED_SETTING, this::setPruningEnabled);
+        clusterSettings.addSettingsUpdateConsumer(SHARD_FIELD_RANGES_MAX_AGE_SETTING, maxAge -> this.maxAgeInMillis = maxAge.millis());
+    }
+
+    private void setPruningEnabled(boolean pruningEnabled) {
+        this.pruningEnabled = pruningEnabled;
+        if (pruningEnabled == false) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * Records the field ranges of the given shard. Ranges of other fields that were computed from the same reader are kept,
+     * ranges that were computed from an older reader than the cached ones are ignored.
+     */
+    void put(ShardId shardId, ShardFieldRanges fieldRanges) {
+        if (pruningEnabled == false) {
+            return;
+        }
+        final long now = relativeTimeInMillis.getAsLong();
+        final Entry previous = cache.get(shardId);
+        if (previous != null && previous.ranges.getIndexMetaDataVersion() == fieldRanges.getIndexMetaDataVersion()) {
+            final ShardFieldRanges previousRanges = previous.ranges;
+            if (previousRanges.getReaderVersion() > fieldRanges.getReaderVersion()) {
+                // responses of concurrent requests may arrive out of order
+                return;
+            }
+            if (previousRanges.getReaderVersion() == fieldRanges.getReaderVersion()
+                    && previousRanges.isReadOnly() == fieldRanges.isReadOnly()) {
+                final Map<String, ShardFieldRanges.FieldRange> ranges = new HashMap<>(previousRanges.getRanges());
+                ranges.putAll(fieldRanges.getRanges());
+                fieldRanges = new ShardFieldRanges(fieldRanges.getIndexMetaDataVersion(), fieldRanges.getReaderVersion(),
+                    fieldRanges.isReadOnly(), ranges);
+            }
+        }
+        cache.put(shardId, new Entry(fieldRanges, now));
+    }
+
+    /**
+     * Marks the local shards whose cached field ranges can't match the query of the given request as skipped, see
+     * {@link SearchShardIterator#resetAndPrune()}. At least one shard is always kept in order to produce a valid search
+     * response. Returns the number of pruned shards.
+     */
+    int prune(ClusterState state, SearchRequest request, GroupShardsIterator<SearchShardIterator> shardIts, long nowInMillis) {
+        if (pruningEnabled == false || request.searchType() != SearchType.QUERY_THEN_FETCH
+                || SearchService.canRewriteToMatchNone(request.source()) == false) {
+            return 0;
+        }
+        final QueryBuilder query = request.source().query();
+        if (ShardFieldRanges.requiredRanges(query).isEmpty()) {
+            return 0;
+        }
+        final List<SearchShardIterator> toPrune = new ArrayList<>();
+        for (SearchShardIterator shardIt : shardIts) {
+            if (shardIt.getClusterAlias() != null) {
+                // the ranges of remote shards can't be validated against our cluster state
+                continue;
+            }
+            ShardFieldRanges fieldRanges = get(state, shardIt.shardId());
+            if (fieldRanges != null && fieldRanges.canMatch(query, nowInMillis) == false) {
+                toPrune.add(shardIt);
+            }
+        }
+        if (toPrune.isEmpty() == false && toPrune.size() == shardIts.size()) {
+            toPrune.remove(0);
+        }
+        for (SearchShardIterator shardIt : toPrune) {
+            shardIt.resetAndPrune();
+        }
+        return toPrune.size();
+    }
+
+    @Nullable
+    private ShardFieldRanges get(ClusterState state, ShardId shardId) {
+        final Entry entry = cache.get(shardId);
+        if (entry == null) {
+            return null;
+        }
+        final ShardFieldRanges fieldRanges = entry.ranges;
+        final IndexMetaData indexMetaData = state.metaData().index(shardId.getIndex());
+        if (indexMetaData == null || indexMetaData.getVersion() > fieldRanges.getIndexMetaDataVersion()) {
+            cache.invalidate(shardId);
+            return null;
+        }
+        if (indexMetaData.getVersion() != fieldRanges.getIndexMetaDataVersion()) {
+            return null;
+        }
+        if (fieldRanges.isReadOnly() && state.blocks().indexBlocked(ClusterBlockLevel.WRITE, shardId.getIndexName())) {
+            return fieldRanges;
+        }
+        // the shard might have been refreshed with documents outside of these ranges since it reported them
+        final long maxAgeInMillis = this.maxAgeInMillis;
+        if (maxAgeInMillis > 0 && relativeTimeInMillis.getAsLong() - entry.timestampInMillis <= maxAgeInMillis) {
+            return fieldRanges;
+        }
+        return null;
+    }
+
+    int count() {
+        return cache.count();
+    }
+
+    private static final class Entry {
+        final ShardFieldRanges ranges;
+        // the relative time at which the ranges were reported
+        final long timestampInMillis;
+
+        Entry(ShardFieldRanges ranges, long timestampInMillis) {
+            this.ranges = ranges;
+            this.timestampInMillis = timestampInMillis;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.node.ResponseCollectorService;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides when the initial phase of a search request should be sent to another copy of a shard because the copy that was
+ * queried first didn't answer yet. A shard level request is hedged once it has been running for longer than a percentile of
+ * the recent response times of the node it was sent to, as recorded by the {@link ResponseCollectorService}. The number of
+ * hedged requests that may be outstanding on a single node is limited so that hedging can't overload the other copies.
+ */
+public final class ShardRequestHedging {
+
+    public static final Setting<Boolean> HEDGING_ENABLED_SETTING =
+        Setting.boolSetting("search.hedging.enabled", false, Property.Dynamic, Property.NodeScope);
+    public static final Setting<Double> HEDGING_LATENCY_PERCENTILE_SETTING =
+        new Setting<>("search.hedging.latency_percentile", "95", ShardRequestHedging::parsePercentile,
+            Property.Dynamic, Property.NodeScope);
+    public static final Setting<TimeValue> HEDGING_MIN_DELAY_SETTING =
+        Setting.timeSetting("search.hedging.min_delay", TimeValue.timeValueMillis(10), TimeValue.timeValueMillis(0),
+            Property.Dynamic, Property.NodeScope);
+    public static final Setting<Integer> HEDGING_MAX_OUTSTANDING_PER_NODE_SETTING =
+        Setting.intSetting("search.hedging.max_outstanding_per_node", 5, 0, Property.Dynamic, Property.NodeScope);
+
+    private final ThreadPool threadPool;
+    private final ResponseCollectorService responseCollectorService;
+    private final ConcurrentMap<String, AtomicInteger> outstandingHedges = ConcurrentCollections.newConcurrentMap();
+    private volatile boolean enabled;
+    private volatile double latencyPercentile;
+    private volatile TimeValue minDelay;
+    private volatile int maxOutstandingPerNode;
+
+    ShardRequestHedging(Settings settings, ClusterSettings clusterSettings, ThreadPool threadPool,
+                        ResponseCollectorService responseCollectorService) {
+        this.threadPool = threadPool;
+        this.responseCollectorService = responseCollectorService;
+        this.enabled = HEDGING_ENABLED_SETTING.get(settings);
+        this.latencyPercentile = HEDGING_LATENCY_PERCENTILE_SETTING.get(settings);
+        this.minDelay = HEDGING_MIN_DELAY_SETTING.get(settings);
+        this.maxOutstandingPerNode = HEDGING_MAX_OUTSTANDING_PER_NODE_SETTING.get(settings);
+        clusterSettings.addSettingsUpdateConsumer(HEDGING_ENABLED_SETTING, this::setEnabled);
+        clusterSettings.addSettingsUpdateConsumer(HEDGING_LATENCY_PERCENTILE_SETTING, this::setLatencyPercentile);
+        clusterSettings.addSettingsUpdateConsumer(HEDGING_MIN_DELAY_SETTING, this::setMinDelay);
+        clusterSettings.addSettingsUpdateConsumer(HEDGING_MAX_OUTSTANDING_PER_NODE_SETTING, this::setMaxOutstandingPerNode);
+    }
+
+    private static double parsePercentile(String value) {
+        final double percentile = Double.parseDouble(value);
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Failed to parse value [" + value + "] for setting ["
+                + "search.hedging.latency_percentile] must be > 0 and <= 100");
+        }
+        return percentile;
+    }
+
+    private void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    private void setLatencyPercentile(double latencyPercentile) {
+        this.latencyPercentile = latencyPercentile;
+    }
+
+    private void setMinDelay(TimeValue minDelay) {
+        this.minDelay = minDelay;
+    }
+
+    private void setMaxOutstandingPerNode(int maxOutstandingPerNode) {
+        this.maxOutstandingPerNode = maxOutstandingPerNode;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns how long to wait for a response of the given node before hedging a shard level request that was sent to it,
+     * or <code>null</code> if the request should not be hedged because hedging is disabled or too little is known about the
+     * response times of the node.
+     */
+    @Nullable
+    TimeValue getHedgeDelay(String nodeId) {
+        if (enabled == false) {
+            return null;
+        }
+        final OptionalLong responseTime = responseCollectorService.getResponseTimePercentile(nodeId, latencyPercentile);
+        if (responseTime.isPresent() == false) {
+            return null;
+        }
+        return TimeValue.timeValueNanos(Math.max(minDelay.nanos(), responseTime.getAsLong()));
+    }
+
+    /**
+     * Schedules the given hedge on the search thread pool.
+     */
+    void schedule(TimeValue delay, Runnable hedge) {
+        threadPool.schedule(delay, ThreadPool.Names.SEARCH, hedge);
+    }
+
+    /**
+     * Reserves a slot for a hedged request to the given node. Returns <code>false</code> if the node has too many outstanding
+     * hedged requests already, in which case no request should be sent. Otherwise the slot must be released with
+     * {@link #onHedgeDone(String)} once the request completes.
+     */
+    boolean tryAcquire(String nodeId) {
+        final AtomicInteger outstanding = outstandingHedges.computeIfAbsent(nodeId, id -> new AtomicInteger());
+        if (outstanding.incrementAndGet() > maxOutstandingPerNode) {
+            outstanding.decrementAndGet();
+            return false;
+        }
+        responseCollectorService.onHedgeSent(nodeId);
+        return true;
+    }
+
+    /**
+     * Releases the slot of a hedged request to the given node, see {@link #tryAcquire(String)}.
+     */
+    void onHedgeDone(String nodeId) {
+        final AtomicInteger outstanding = outstandingHedges.get(nodeId);
+        assert outstanding != null : "no outstanding hedges on node [" + nodeId + "]";
+        if (outstanding != null) {
+            outstanding.decrementAndGet();
+        }
+    }
+
+    /**
+     * Records that a hedged request to the given node answered before the request it hedged.
+     */
+    void onHedgeWon(String nodeId) {
+        responseCollectorService.onHedgeWon(nodeId);
+    }
+
+    int getOutstandingHedges(String nodeId) {
+        final AtomicInteger outstanding = outstandingHedges.get(nodeId);
+        return outstanding == null ? 0 : outstanding.get();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.logging.log4j.util.Supplier;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.HandledTransportAction;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.CountDown;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TransportClosePointInTimeAction extends HandledTransportAction<ClosePointInTimeRequest, ClosePointInTimeResponse> {
+
+    private final ClusterService clusterService;
+    private final SearchTransportService searchTransportService;
+
+    @Inject
+    public TransportClosePointInTimeAction(Settings settings, TransportService transportService, ThreadPool threadPool,
+                                           ClusterService clusterService, ActionFilters actionFilters,
+                                           IndexNameExpressionResolver indexNameExpressionResolver,
+                                           SearchTransportService searchTransportService) {
+        super(settings, ClosePointInTimeAction.NAME, threadPool, transportService, actionFilters, indexNameExpressionResolver,
+            ClosePointInTimeRequest::new);
+        this.clusterService = clusterService;
+        this.searchTransportService = searchTransportService;
+    }
+
+    @Override
+    protected void doExecute(ClosePointInTimeRequest request, ActionListener<ClosePointInTimeResponse> listener) {
+        final List<PointInTimeId.ShardReader> readers = PointInTimeId.decode(request.getId()).getShards();
+        if (readers.isEmpty()) {
+            listener.onResponse(new ClosePointInTimeResponse(true, 0));
+            return;
+        }
+        final DiscoveryNodes nodes = clusterService.state().nodes();
+        final CountDown countDown = new CountDown(readers.size());
+        final AtomicInteger numFreed = new AtomicInteger();
+        final AtomicBoolean hasFailed = new AtomicBoolean(false);
+        final Runnable onReaderDone = () -> {
+            if (countDown.countDown()) {
+                listener.onResponse(new ClosePointInTimeResponse(hasFailed.get() == false, numFreed.get()));
+            }
+        };
+        for (PointInTimeId.ShardReader reader : readers) {
+            final DiscoveryNode node = nodes.get(reader.getNodeId());
+            if (node == null) {
+                // the node left the cluster and took its point in time with it
+                onReaderDone.run();
+                continue;
+            }
+            try {
+                searchTransportService.sendFreePointInTime(searchTransportService.getConnection(null, node), reader.getReaderId(),
+                    ActionListener.wrap(response -> {
+                        if (response.isFreed()) {
+                            numFreed.incrementAndGet();
+                        }
+                        onReaderDone.run();
+                    }, e -> {
+                        logger.warn((Supplier<?>) () -> new ParameterizedMessage("Close point in time failed on node[{}]", node), e);
+                        hasFailed.set(true);
+                        onReaderDone.run();
+                    }));
+            } catch (Exception e) {
+                logger.warn((Supplier<?>) () -> new ParameterizedMessage("Close point in time failed on node[{}]", node), e);
+                hasFailed.set(true);
+                onReaderDone.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.logging.log4j.util.Supplier;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.NoShardAvailableActionException;
+import org.elasticsearch.action.OriginalIndices;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.HandledTransportAction;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.block.ClusterBlockLevel;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.routing.GroupShardsIterator;
+import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.AtomicArray;
+import org.elasticsearch.common.util.concurrent.CountDown;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Opens a point in time on one copy of each shard of the requested indices. If a shard can't be opened on any of its copies the
+ * points in time that were opened already are closed again and the request fails, so that a point in time always covers all
+ * the shards that a search on the indices would hit.
+ */
+public class TransportOpenPointInTimeAction extends HandledTransportAction<OpenPointInTimeRequest, OpenPointInTimeResponse> {
+
+    private final ClusterService clusterService;
+    private final SearchTransportService searchTransportService;
+
+    @Inject
+    public TransportOpenPointInTimeAction(Settings settings, TransportService transportService, ThreadPool threadPool,
+                                          ClusterService clusterService, ActionFilters actionFilters,
+                                          IndexNameExpressionResolver indexNameExpressionResolver,
+                                          SearchTransportService searchTransportService) {
+        super(settings, OpenPointInTimeAction.NAME, threadPool, transportService, actionFilters, indexNameExpressionResolver,
+            OpenPointInTimeRequest::new);
+        this.clusterService = clusterService;
+        this.searchTransportService = searchTransportService;
+    }
+
+    @Override
+    protected void doExecute(OpenPointInTimeRequest request, ActionListener<OpenPointInTimeResponse> listener) {
+        final ClusterState clusterState = clusterService.state();
+        clusterState.blocks().globalBlockedRaiseException(ClusterBlockLevel.READ);
+        final Index[] indices = indexNameExpressionResolver.concreteIndices(clusterState, request);
+        final String[] concreteIndices = new String[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            clusterState.blocks().indexBlockedRaiseException(ClusterBlockLevel.READ, indices[i].getName());
+            concreteIndices[i] = indices[i].getName();
+        }
+        final Map<String, Set<String>> routingMap = indexNameExpressionResolver.resolveSearchRouting(clusterState, request.routing(),
+            request.indices());
+        final GroupShardsIterator<ShardIterator> shardIterators = clusterService.operationRouting().searchShards(clusterState,
+            concreteIndices, routingMap, request.preference());
+        new AsyncOpen(request, shardIterators, clusterState.nodes(), listener).start();
+    }
+
+    private final class AsyncOpen {
+        private final OpenPointInTimeRequest request;
+        private final OriginalIndices originalIndices;
+        private final GroupShardsIterator<ShardIterator> shardIterators;
+        private final DiscoveryNodes nodes;
+        private final ActionListener<OpenPointInTimeResponse> listener;
+        private final AtomicArray<PointInTimeId.ShardReader> readers;
+        private final AtomicArray<ShardSearchFailure> failures;
+        private final CountDown countDown;
+
+        AsyncOpen(OpenPointInTimeRequest request, GroupShardsIterator<ShardIterator> shardIterators, DiscoveryNodes nodes,
+                  ActionListener<OpenPointInTimeResponse> listener) {
+            this.request = request;
+            this.originalIndices = new OriginalIndices(request);
+            this.shardIterators = shardIterators;
+            this.nodes = nodes;
+            this.listener = listener;
+            this.readers = new AtomicArray<>(shardIterators.size());
+            this.failures = new AtomicArray<>(shardIterators.size());
+            this.countDown = new CountDown(shardIterators.size());
+        }
+
+        void start() {
+            if (shardIterators.size() == 0) {
+                listener.onResponse(new OpenPointInTimeResponse(buildId()));
+                return;
+            }
+            int shardIndex = 0;
+            for (ShardIterator shardIt : shardIterators) {
+                open(shardIndex++, shardIt, shardIt.nextOrNull(), null);
+            }
+        }
+
+        private void open(int shardIndex, ShardIterator shardIt, ShardRouting shard, Exception lastFailure) {
+            if (shard == null) {
+                Exception e = lastFailure == null ? new NoShardAvailableActionException(shardIt.shardId()) : lastFailure;
+                failures.set(shardIndex, new ShardSearchFailure(e,
+                    new SearchShardTarget(null, shardIt.shardId(), null, originalIndices)));
+                onShardDone();
+                return;
+            }
+            try {
+                final DiscoveryNode node = nodes.get(shard.currentNodeId());
+                if (node == null) {
+                    throw new NoShardAvailableActionException(shardIt.shardId());
+                }
+                searchTransportService.sendOpenPointInTime(searchTransportService.getConnection(null, node), shardIt.shardId(),
+                    request.keepAlive(), originalIndices, ActionListener.wrap(response -> {
+                        readers.set(shardIndex, new PointInTimeId.ShardReader(shardIt.shardId(), node.getId(), response.getReaderId()));
+                        onShardDone();
+                    }, e -> {
+                        logger.debug((Supplier<?>) () -> new ParameterizedMessage("{} failed to open point in time", shard), e);
+                        open(shardIndex, shardIt, shardIt.nextOrNull(), e);
+                    }));
+            } catch (Exception e) {
+                open(shardIndex, shardIt, shardIt.nextOrNull(), e);
+            }
+        }
+
+        private void onShardDone() {
+            if (countDown.countDown() == false) {
+                return;
+            }
+            if (failures.asList().isEmpty()) {
+                listener.onResponse(new OpenPointInTimeResponse(buildId()));
+                return;
+            }
+            // release what was opened already, the caller has no id to close it with
+            for (PointInTimeId.ShardReader reader : readers.asList()) {
+                try {
+                    final DiscoveryNode node = nodes.get(reader.getNodeId());
+                    searchTransportService.sendFreePointInTime(searchTransportService.getConnection(null, node), reader.getReaderId(),
+                        ActionListener.wrap(r -> {}, e -> logger.debug((Supplier<?>) () ->
+                            new ParameterizedMessage("{} failed to free point in time", reader.getShardId()), e)));
+                } catch (Exception e) {
+                    logger.debug((Supplier<?>) () -> new ParameterizedMessage("{} failed to free point in time", reader.getShardId()), e);
+                }
+            }
+            final List<ShardSearchFailure> shardFailures = failures.asList();
+            listener.onFailure(new SearchPhaseExecutionException("open_point_in_time", "failed to open point in time on all shards",
+                shardFailures.toArray(new ShardSearchFailure[shardFailures.size()])));
+        }
+
+        private String buildId() {
+            return new PointInTimeId(request.indices(), request.indicesOptions(), new ArrayList<>(readers.asList())).encode();
+        }
+    }
+}
@@ -32,7 +32,9 @@ import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
+import org.elasticsearch.cluster.routing.IndexShardRoutingTable;
 import org.elasticsearch.cluster.routing.ShardIterator;
+import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Setting;
@@ -76,6 +78,8 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
     private final RemoteClusterService remoteClusterService;
     private final SearchPhaseController searchPhaseController;
     private final SearchService searchService;
+    private final ShardFieldRangeCache shardFieldRangeCache;
+    private final ShardRequestHedging shardRequestHedging;
 
     @Inject
     public TransportSearchAction(Settings settings, ThreadPool threadPool, TransportService transportService, SearchService searchService,
@@ -89,6 +93,10 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
         SearchTransportService.registerRequestHandler(transportService, searchService);
         this.clusterService = clusterService;
         this.searchService = searchService;
+        this.shardFieldRangeCache = new ShardFieldRangeCache(settings, clusterService.getClusterSettings(),
+            threadPool::relativeTimeInMillis);
+        this.shardRequestHedging = new ShardRequestHedging(settings, clusterService.getClusterSettings(), threadPool,
+            searchService.getResponseCollectorService());
     }
 
     private Map<String, AliasFilter> buildPerIndexAliasFilter(SearchRequest request, ClusterState clusterState,
@@ -186,6 +194,10 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
                 searchRequest.source(source);
             }
             final ClusterState clusterState = clusterService.state();
+            if (searchRequest.pointInTimeBuilder() != null) {
+                executePointInTimeSearch((SearchTask) task, timeProvider, searchRequest, clusterState, listener);
+                return;
+            }
             final Map<String, OriginalIndices> remoteClusterIndices = remoteClusterService.groupIndices(searchRequest.indicesOptions(),
                 searchRequest.indices(), idx -> indexNameExpressionResolver.hasIndexOrAlias(idx, clusterState));
             OriginalIndices localIndices = remoteClusterIndices.remove(RemoteClusterAware.LOCAL_CLUSTER_GROUP_KEY);
@@ -289,7 +301,52 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
                 concreteIndices, routingMap, searchRequest.preference(), searchService.getResponseCollectorService(), nodeSearchCounts);
         GroupShardsIterator<SearchShardIterator> shardIterators = mergeShardsIterators(localShardsIterator, localIndices,
             remoteShardIterators);
+        executeSearch(task, timeProvider, searchRequest, shardIterators, aliasFilter, remoteConnections, clusterState, listener,
+            nodeCount);
+    }
 
+    /**
+     * Runs a search against a point in time. The shards to search are the ones that the point in time was opened on, and each
+     * shard request is sent to the node that holds the point in time of the shard, there is no other copy to fall back to.
+     */
+    private void executePointInTimeSearch(SearchTask task, SearchTimeProvider timeProvider, SearchRequest searchRequest,
+                                          ClusterState clusterState, ActionListener<SearchResponse> listener) {
+        clusterState.blocks().globalBlockedRaiseException(ClusterBlockLevel.READ);
+        final PointInTimeId pointInTimeId = PointInTimeId.decode(searchRequest.pointInTimeBuilder().getId());
+        final OriginalIndices originalIndices = new OriginalIndices(pointInTimeId.getIndices(), pointInTimeId.getIndicesOptions());
+        final Map<String, AliasFilter> aliasFilter = new HashMap<>();
+        final List<SearchShardIterator> shards = new ArrayList<>();
+        for (PointInTimeId.ShardReader shard : pointInTimeId.getShards()) {
+            final ShardId shardId = shard.getShardId();
+            final List<ShardRouting> copies = new ArrayList<>(1);
+            if (clusterState.metaData().index(shardId.getIndex()) == null) {
+                // the index is gone and so is the point in time, the shard request fails without a copy to send it to
+                aliasFilter.put(shardId.getIndex().getUUID(), AliasFilter.EMPTY);
+            } else {
+                if (aliasFilter.containsKey(shardId.getIndex().getUUID()) == false) {
+                    clusterState.blocks().indexBlockedRaiseException(ClusterBlockLevel.READ, shardId.getIndexName());
+                    aliasFilter.put(shardId.getIndex().getUUID(),
+                        searchService.buildAliasFilter(clusterState, shardId.getIndexName(), pointInTimeId.getIndices()));
+                }
+                final IndexShardRoutingTable shardRoutingTable = clusterState.routingTable().shardRoutingTableOrNull(shardId);
+                if (shardRoutingTable != null) {
+                    for (ShardRouting copy : shardRoutingTable.activeShards()) {
+                        if (copy.currentNodeId().equals(shard.getNodeId())) {
+                            copies.add(copy);
+                        }
+                    }
+                }
+            }
+            shards.add(new SearchShardIterator(null, shardId, copies, originalIndices, shard.getReaderId()));
+        }
+        executeSearch(task, timeProvider, searchRequest, new GroupShardsIterator<>(shards), aliasFilter, (clusterName, nodeId) -> null,
+            clusterState, listener, clusterState.getNodes().getDataNodes().size());
+    }
+
+    private void executeSearch(SearchTask task, SearchTimeProvider timeProvider, SearchRequest searchRequest,
+                               GroupShardsIterator<SearchShardIterator> shardIterators, Map<String, AliasFilter> aliasFilter,
+                               BiFunction<String, String, DiscoveryNode> remoteConnections, ClusterState clusterState,
+                               ActionListener<SearchResponse> listener, int nodeCount) {
         failIfOverShardCountLimit(clusterService, shardIterators.size());
 
         Map<String, Float> concreteIndexBoosts = resolveIndexBoosts(searchRequest, clusterState);
@@ -327,6 +384,11 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
             searchRequest.setMaxConcurrentShardRequests(Math.min(256, nodeCount
                 * IndexMetaData.INDEX_NUMBER_OF_SHARDS_SETTING.getDefault(Settings.EMPTY)));
         }
+        if (searchRequest.pointInTimeBuilder() == null) {
+            // skip the shards whose cached field ranges can't match before sending any request, the ranges reflect the current
+            // readers of the shards which might not be the ones of a point in time
+            shardFieldRangeCache.prune(clusterState, searchRequest, shardIterators, timeProvider.getAbsoluteStartMillis());
+        }
         boolean preFilterSearchShards = shouldPreFilterSearchShards(searchRequest, shardIterators);
         searchAsyncAction(task, searchRequest, shardIterators, timeProvider, connectionLookup, clusterState.version(),
             Collections.unmodifiableMap(aliasFilter), concreteIndexBoosts, listener, preFilterSearchShards).start();
@@ -377,20 +439,20 @@ public class TransportSearchAction extends HandledTransportAction<SearchRequest,
                         action.start();
                     }
                 };
-            });
+            }, shardFieldRangeCache);
         } else {
             AbstractSearchAsyncAction searchAsyncAction;
             switch (searchRequest.searchType()) {
                 case DFS_QUERY_THEN_FETCH:
                     searchAsyncAction = new SearchDfsQueryThenFetchAsyncAction(logger, searchTransportService, connectionLookup,
                         aliasFilter, concreteIndexBoosts, searchPhaseController, executor, searchRequest, listener, shardIterators,
-                        timeProvider, clusterStateVersion, task);
+                        timeProvider, clusterStateVersion, task, shardRequestHedging);
                     break;
                 case QUERY_AND_FETCH:
                 case QUERY_THEN_FETCH:
                     searchAsyncAction = new SearchQueryThenFetchAsyncAction(logger, searchTransportService, connectionLookup,
                         aliasFilter, concreteIndexBoosts, searchPhaseController, executor, searchRequest, listener, shardIterators,
-                        timeProvider, clusterStateVersion, task);
+                        timeProvider, clusterStateVersion, task, shardRequestHedging);
                     break;
                 default:
                     throw new IllegalStateException("Unknown search type: [" + searchRequest.searchType() + "]");
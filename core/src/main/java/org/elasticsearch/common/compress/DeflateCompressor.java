@@ -19,6 +19,8 @@
 
 package org.elasticsearch.common.compress;
 
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefIterator;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.InputStreamStreamInput;
 import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
@@ -101,6 +103,38 @@ public class DeflateCompressor implements Compressor {
         };
     }
 
+    /**
+     * Creates a deflater for {@link #compress(BytesReference, Deflater, byte[], StreamOutput)}. The caller must call
+     * {@link Deflater#end()} to release its native memory once it doesn't need it anymore, or leave it to the garbage
+     * collector if it keeps it for the lifetime of a thread.
+     */
+    public static Deflater newDeflater() {
+        final boolean nowrap = true;
+        return new Deflater(LEVEL, nowrap);
+    }
+
+    /**
+     * Compresses the given bytes into the same format as {@link #streamOutput(StreamOutput)}, so that they can be read with
+     * {@link #streamInput(StreamInput)}, but reuses the given deflater and buffer rather than allocating new ones, which
+     * is much cheaper for small inputs.
+     */
+    public static void compress(BytesReference bytes, Deflater deflater, byte[] buffer, StreamOutput out) throws IOException {
+        out.writeBytes(HEADER);
+        deflater.reset();
+        final BytesRefIterator iterator = bytes.iterator();
+        BytesRef chunk;
+        while ((chunk = iterator.next()) != null) {
+            deflater.setInput(chunk.bytes, chunk.offset, chunk.length);
+            while (deflater.needsInput() == false) {
+                out.writeBytes(buffer, 0, deflater.deflate(buffer));
+            }
+        }
+        deflater.finish();
+        while (deflater.finished() == false) {
+            out.writeBytes(buffer, 0, deflater.deflate(buffer));
+        }
+    }
+
     @Override
     public StreamOutput streamOutput(StreamOutput out) throws IOException {
         out.writeBytes(HEADER);
@@ -19,6 +19,10 @@
 package org.elasticsearch.common.settings;
 
 import org.elasticsearch.action.admin.indices.close.TransportCloseIndexAction;
+import org.elasticsearch.action.bulk.TransportShardBulkAction;
+import org.elasticsearch.action.search.SearchPhaseController;
+import org.elasticsearch.action.search.ShardFieldRangeCache;
+import org.elasticsearch.action.search.ShardRequestHedging;
 import org.elasticsearch.action.search.TransportSearchAction;
 import org.elasticsearch.action.support.AutoCreateIndex;
 import org.elasticsearch.action.support.DestructiveOperations;
@@ -50,6 +54,7 @@ import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.network.NetworkModule;
 import org.elasticsearch.common.network.NetworkService;
 import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.PageCacheRecycler;
 import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
@@ -64,10 +69,12 @@ import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.gateway.GatewayService;
 import org.elasticsearch.http.HttpTransportSettings;
 import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.search.stats.SearchLatencyListener;
 import org.elasticsearch.indices.IndexingMemoryController;
 import org.elasticsearch.indices.IndicesQueryCache;
 import org.elasticsearch.indices.IndicesRequestCache;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.indices.TranslogSyncCoordinator;
 import org.elasticsearch.indices.analysis.HunspellService;
 import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
 import org.elasticsearch.indices.fielddata.cache.IndicesFieldDataCache;
@@ -82,6 +89,7 @@ import org.elasticsearch.node.Node;
 import org.elasticsearch.plugins.PluginsService;
 import org.elasticsearch.repositories.fs.FsRepository;
 import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.action.document.RestBulkAction;
 import org.elasticsearch.script.ScriptService;
 import org.elasticsearch.search.SearchModule;
 import org.elasticsearch.search.SearchService;
@@ -262,6 +270,13 @@ public final class ClusterSettings extends AbstractScopedSettings {
                     SearchService.DEFAULT_SEARCH_TIMEOUT_SETTING,
                     ElectMasterService.DISCOVERY_ZEN_MINIMUM_MASTER_NODES_SETTING,
                     TransportSearchAction.SHARD_COUNT_LIMIT_SETTING,
+                    ShardFieldRangeCache.SHARD_PRUNING_ENABLED_SETTING,
+                    ShardFieldRangeCache.SHARD_FIELD_RANGES_CACHE_SIZE_SETTING,
+                    ShardFieldRangeCache.SHARD_FIELD_RANGES_MAX_AGE_SETTING,
+                    ShardRequestHedging.HEDGING_ENABLED_SETTING,
+                    ShardRequestHedging.HEDGING_LATENCY_PERCENTILE_SETTING,
+                    ShardRequestHedging.HEDGING_MIN_DELAY_SETTING,
+                    ShardRequestHedging.HEDGING_MAX_OUTSTANDING_PER_NODE_SETTING,
                     RemoteClusterAware.REMOTE_CLUSTERS_SEEDS,
                     RemoteClusterService.REMOTE_CONNECTIONS_PER_CLUSTER,
                     RemoteClusterService.REMOTE_INITIAL_CONNECTION_TIMEOUT_SETTING,
@@ -358,6 +373,9 @@ public final class ClusterSettings extends AbstractScopedSettings {
                     SearchService.KEEPALIVE_INTERVAL_SETTING,
                     SearchService.MAX_KEEPALIVE_SETTING,
                     SearchService.LOW_LEVEL_CANCELLATION_SETTING,
+                    SearchPhaseController.MAX_BUFFERED_AGGS_SIZE_SETTING,
+                    SearchPhaseController.MAX_CONCURRENT_AGGS_REDUCE_SETTING,
+                    SearchLatencyListener.SEARCH_LATENCY_HISTOGRAMS_ENABLED_SETTING,
                     Node.WRITE_PORTS_FILE_SETTING,
                     Node.NODE_NAME_SETTING,
                     Node.NODE_DATA_SETTING,
@@ -367,7 +385,10 @@ public final class ClusterSettings extends AbstractScopedSettings {
                     Node.NODE_LOCAL_STORAGE_SETTING,
                     TransportMasterNodeReadAction.FORCE_LOCAL_SETTING,
                     AutoCreateIndex.AUTO_CREATE_INDEX_SETTING,
+                    TransportShardBulkAction.PARSE_PARALLELISM_SETTING,
                     BaseRestHandler.MULTI_ALLOW_EXPLICIT_INDEX,
+                    RestBulkAction.STREAMING_ENABLED_SETTING,
+                    RestBulkAction.STREAMING_WINDOW_SETTING,
                     ClusterName.CLUSTER_NAME_SETTING,
                     Client.CLIENT_TYPE_SETTING_S,
                     ClusterModule.SHARDS_ALLOCATOR_TYPE_SETTING,
@@ -393,6 +414,9 @@ public final class ClusterSettings extends AbstractScopedSettings {
                     PageCacheRecycler.WEIGHT_LONG_SETTING,
                     PageCacheRecycler.WEIGHT_OBJECTS_SETTING,
                     PageCacheRecycler.TYPE_SETTING,
+                    PageCacheRecycler.LIMIT_OFF_HEAP_SETTING,
+                    BigArrays.OFF_HEAP_SETTING,
+                    BigArrays.OFF_HEAP_LIMIT_SETTING,
                     PluginsService.MANDATORY_SETTING,
                     BootstrapSettings.SECURITY_FILTER_BAD_DEFAULTS_SETTING,
                     BootstrapSettings.MEMORY_LOCK_SETTING,
@@ -404,6 +428,7 @@ public final class ClusterSettings extends AbstractScopedSettings {
                     IndexingMemoryController.MAX_INDEX_BUFFER_SIZE_SETTING,
                     IndexingMemoryController.SHARD_INACTIVE_TIME_SETTING,
                     IndexingMemoryController.SHARD_MEMORY_INTERVAL_TIME_SETTING,
+                    TranslogSyncCoordinator.SYNC_WINDOW_SETTING,
                     ResourceWatcherService.ENABLED,
                     ResourceWatcherService.RELOAD_INTERVAL_HIGH,
                     ResourceWatcherService.RELOAD_INTERVAL_MEDIUM,
@@ -41,7 +41,11 @@ abstract class AbstractArray implements BigArray {
     public final void close() {
         if (closed.compareAndSet(false, true)) {
             try {
-                bigArrays.adjustBreaker(-ramBytesUsed(), true);
+                if (isOffHeap()) {
+                    bigArrays.adjustOffHeap(-ramBytesUsed(), true);
+                } else {
+                    bigArrays.adjustBreaker(-ramBytesUsed(), true);
+                }
             } finally {
                 doClose();
             }
@@ -50,6 +54,13 @@ abstract class AbstractArray implements BigArray {
 
     protected abstract void doClose();
 
+    /**
+     * Whether the values of this array are stored in direct memory, which is accounted separately from the heap.
+     */
+    boolean isOffHeap() {
+        return false;
+    }
+
     @Override
     public Collection<Accountable> getChildResources() {
         return Collections.emptyList();
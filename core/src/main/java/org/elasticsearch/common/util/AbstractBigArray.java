@@ -25,6 +25,7 @@ import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.recycler.Recycler;
 
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /** Common implementation for array lists that slice data into fixed-size blocks. */
@@ -112,6 +113,17 @@ abstract class AbstractBigArray extends AbstractArray {
         return v.v();
       }
 
+    protected final ByteBuffer newDirectPage(int page) {
+        // off-heap arrays always have a recycler, it is the one that keeps track of the direct memory that they use
+        assert recycler != null;
+        final Recycler.V<ByteBuffer> v = recycler.directPage(clearOnResize);
+        cache = grow(cache, page + 1);
+        assert cache[page] == null;
+        cache[page] = v;
+        assert v.v().capacity() == BigArrays.PAGE_SIZE_IN_BYTES;
+        return v.v();
+    }
+
     protected final byte[] newBytePage(int page) {
         if (recycler != null) {
             final Recycler.V<byte[]> v = recycler.bytePage(clearOnResize);
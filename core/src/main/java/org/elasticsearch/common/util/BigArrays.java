@@ -28,16 +28,45 @@ import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.recycler.Recycler;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.monitor.jvm.JvmInfo;
 
 import java.util.Arrays;
+import java.util.function.LongConsumer;
 
 /** Utility class to work with arrays. */
 public class BigArrays implements Releasable {
 
     public static final BigArrays NON_RECYCLING_INSTANCE = new BigArrays(null, null, false);
 
+    /**
+     * Whether arrays of numbers that span several pages should store their values in direct memory rather than on the heap.
+     * Byte arrays only do so when they are allocated with {@link #newOffHeapByteArray}, since the others expose their
+     * pages as {@link BytesRef}s, and object arrays always stay on the heap.
+     */
+    public static final Setting<Boolean> OFF_HEAP_SETTING =
+        Setting.boolSetting("big_arrays.off_heap.enabled", false, Property.NodeScope);
+
+    /**
+     * The maximum direct memory that off-heap arrays may use, half of the maximum direct memory of the JVM by default so that
+     * the network layer keeps room for its own buffers.
+     */
+    public static final Setting<ByteSizeValue> OFF_HEAP_LIMIT_SETTING =
+        Setting.byteSizeSetting("big_arrays.off_heap.limit", BigArrays::defaultOffHeapLimit, Property.NodeScope);
+
+    private static String defaultOffHeapLimit(Settings settings) {
+        long maxDirectMemory = JvmInfo.jvmInfo().getMem().getDirectMemoryMax().getBytes();
+        if (maxDirectMemory <= 0) {
+            // the JVM limits direct memory to the maximum heap size unless it is told otherwise
+            maxDirectMemory = JvmInfo.jvmInfo().getMem().getHeapMax().getBytes();
+        }
+        return new ByteSizeValue(maxDirectMemory / 2).getStringRep();
+    }
+
     /** Page size in bytes: 16KB */
     public static final int PAGE_SIZE_IN_BYTES = 1 << 14;
     public static final int BYTE_PAGE_SIZE = BigArrays.PAGE_SIZE_IN_BYTES;
@@ -116,10 +145,14 @@ public class BigArrays implements Releasable {
     private static class ByteArrayWrapper extends AbstractArrayWrapper implements ByteArray {
 
         private final byte[] array;
+        // whether the array may move to direct memory when it grows, see newOffHeapByteArray
+        private final boolean allowOffHeap;
 
-        ByteArrayWrapper(BigArrays bigArrays, byte[] array, long size, Recycler.V<byte[]> releasable, boolean clearOnResize) {
+        ByteArrayWrapper(BigArrays bigArrays, byte[] array, long size, Recycler.V<byte[]> releasable, boolean clearOnResize,
+                         boolean allowOffHeap) {
             super(bigArrays, size, releasable, clearOnResize);
             this.array = array;
+            this.allowOffHeap = allowOffHeap;
         }
 
         @Override
@@ -144,6 +177,16 @@ public class BigArrays implements Releasable {
         @Override
         public boolean get(long index, int len, BytesRef ref) {
             assert indexIsInt(index);
+            if (allowOffHeap) {
+                // the slices of off-heap arrays are copied into the bytes of the given ref, which must not be one of our pages
+                if (ref.bytes.length < len) {
+                    ref.bytes = new byte[ArrayUtil.oversize(len, Byte.BYTES)];
+                }
+                System.arraycopy(array, (int) index, ref.bytes, 0, len);
+                ref.offset = 0;
+                ref.length = len;
+                return true;
+            }
             ref.bytes = array;
             ref.offset = (int) index;
             ref.length = len;
@@ -370,22 +413,91 @@ public class BigArrays implements Releasable {
     final PageCacheRecycler recycler;
     final CircuitBreakerService breakerService;
     final boolean checkBreaker;
+    final boolean offHeap;
+    @Nullable
+    final LongConsumer memoryListener;
     private final BigArrays circuitBreakingInstance;
 
     public BigArrays(Settings settings, @Nullable final CircuitBreakerService breakerService) {
         // Checking the breaker is disabled if not specified
-        this(new PageCacheRecycler(settings), breakerService, false);
+        this(new PageCacheRecycler(settings), breakerService, false, OFF_HEAP_SETTING.get(settings));
     }
 
     // public for tests
     public BigArrays(PageCacheRecycler recycler, @Nullable final CircuitBreakerService breakerService, boolean checkBreaker) {
+        this(recycler, breakerService, checkBreaker, false);
+    }
+
+    // public for tests
+    public BigArrays(PageCacheRecycler recycler, @Nullable final CircuitBreakerService breakerService, boolean checkBreaker,
+                     boolean offHeap) {
+        this(recycler, breakerService, checkBreaker, offHeap, null);
+    }
+
+    protected BigArrays(PageCacheRecycler recycler, @Nullable final CircuitBreakerService breakerService, boolean checkBreaker,
+                        boolean offHeap, @Nullable LongConsumer memoryListener) {
+        if (offHeap && recycler == null) {
+            throw new IllegalArgumentException("off-heap big arrays require a page recycler");
+        }
         this.checkBreaker = checkBreaker;
         this.recycler = recycler;
         this.breakerService = breakerService;
+        this.offHeap = offHeap;
+        this.memoryListener = memoryListener;
         if (checkBreaker) {
             this.circuitBreakingInstance = this;
         } else {
-            this.circuitBreakingInstance = new BigArrays(recycler, breakerService, true);
+            this.circuitBreakingInstance = new BigArrays(recycler, breakerService, true, offHeap, memoryListener);
+        }
+    }
+
+    /**
+     * Return an instance of this class that also reports the bytes it adds to and removes from the request circuit
+     * breaker to the given listener, so that the memory of a single consumer of arrays can be tracked.
+     */
+    public BigArrays withMemoryListener(LongConsumer listener) {
+        return new BigArrays(recycler, breakerService, checkBreaker, offHeap, listener);
+    }
+
+    /**
+     * Whether arrays of numbers that span several pages store their values in direct memory.
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Returns the direct memory usage of the arrays that are allocated by this instance.
+     */
+    public BigArraysStats stats() {
+        if (offHeap == false) {
+            return new BigArraysStats(false, 0, 0, 0);
+        }
+        return new BigArraysStats(true, recycler.getOffHeapUsedInBytes(), recycler.getOffHeapAllocatedInBytes(),
+            recycler.getOffHeapLimitInBytes());
+    }
+
+    /**
+     * Adjust the direct memory that off-heap arrays reserved with the given delta. This memory is not on the heap, so rather
+     * than the request circuit breaker it is checked against {@link #OFF_HEAP_LIMIT_SETTING}, in the same way as
+     * {@link #adjustBreaker} checks the breaker.
+     */
+    void adjustOffHeap(final long delta, final boolean isDataAlreadyCreated) {
+        final long reserved = recycler.addDirectReservation(delta);
+        final long limit = recycler.getOffHeapLimitInBytes();
+        if (checkBreaker && delta > 0 && reserved > limit) {
+            if (isDataAlreadyCreated == false) {
+                recycler.addDirectReservation(-delta);
+            } else if (memoryListener != null) {
+                // the data was created already, so it stays reserved until it is released
+                memoryListener.accept(delta);
+            }
+            throw new CircuitBreakingException("[off_heap] Data too large, data for [<reused_arrays>] would be ["
+                + reserved + "/" + new ByteSizeValue(reserved) + "], which is larger than the limit of ["
+                + limit + "/" + new ByteSizeValue(limit) + "]", reserved, limit);
+        }
+        if (memoryListener != null) {
+            memoryListener.accept(delta);
         }
     }
 
@@ -411,6 +523,9 @@ public class BigArrays implements Releasable {
                             // since we've already created the data, we need to
                             // add it so closing the stream re-adjusts properly
                             breaker.addWithoutBreaking(delta);
+                            if (memoryListener != null) {
+                                memoryListener.accept(delta);
+                            }
                         }
                         // re-throw the original exception
                         throw e;
@@ -424,6 +539,9 @@ public class BigArrays implements Releasable {
                 breaker.addWithoutBreaking(delta);
             }
         }
+        if (memoryListener != null) {
+            memoryListener.accept(delta);
+        }
     }
 
     /**
@@ -445,7 +563,11 @@ public class BigArrays implements Releasable {
             "ram bytes used should equal that which was previously estimated: ramBytesUsed=" +
             oldMemSize + ", ramBytesEstimated=" + array.ramBytesEstimated(oldSize);
         final long estimatedIncreaseInBytes = array.ramBytesEstimated(newSize) - oldMemSize;
-        adjustBreaker(estimatedIncreaseInBytes, false);
+        if (array.isOffHeap()) {
+            adjustOffHeap(estimatedIncreaseInBytes, false);
+        } else {
+            adjustBreaker(estimatedIncreaseInBytes, false);
+        }
         array.resize(newSize);
         return array;
     }
@@ -469,16 +591,34 @@ public class BigArrays implements Releasable {
      * @param clearOnResize whether values should be set to 0 on initialization and resize
      */
     public ByteArray newByteArray(long size, boolean clearOnResize) {
-        if (size > BYTE_PAGE_SIZE) {
+        return newByteArray(size, clearOnResize, false);
+    }
+
+    /**
+     * Allocate a new {@link ByteArray} that stores its values in direct memory once it spans several pages, if big arrays
+     * are off-heap. Slices of such arrays are then copied by {@link ByteArray#get(long, int, BytesRef)} into the bytes of the
+     * given {@link BytesRef}, which are reused when they are large enough, so the ref must not share its bytes.
+     * @param size          the initial length of the array
+     * @param clearOnResize whether values should be set to 0 on initialization and resize
+     */
+    public ByteArray newOffHeapByteArray(long size, boolean clearOnResize) {
+        return newByteArray(size, clearOnResize, true);
+    }
+
+    private ByteArray newByteArray(long size, boolean clearOnResize, boolean allowOffHeap) {
+        if (size > BYTE_PAGE_SIZE && offHeap && allowOffHeap) {
+            adjustOffHeap(OffHeapByteArray.estimateRamBytes(size), false);
+            return new OffHeapByteArray(size, this, clearOnResize);
+        } else if (size > BYTE_PAGE_SIZE) {
             // when allocating big arrays, we want to first ensure we have the capacity by
             // checking with the circuit breaker before attempting to allocate
             adjustBreaker(BigByteArray.estimateRamBytes(size), false);
             return new BigByteArray(size, this, clearOnResize);
         } else if (size >= BYTE_PAGE_SIZE / 2 && recycler != null) {
             final Recycler.V<byte[]> page = recycler.bytePage(clearOnResize);
-            return validate(new ByteArrayWrapper(this, page.v(), size, page, clearOnResize));
+            return validate(new ByteArrayWrapper(this, page.v(), size, page, clearOnResize, offHeap && allowOffHeap));
         } else {
-            return validate(new ByteArrayWrapper(this, new byte[(int) size], size, null, clearOnResize));
+            return validate(new ByteArrayWrapper(this, new byte[(int) size], size, null, clearOnResize, offHeap && allowOffHeap));
         }
     }
 
@@ -494,9 +634,11 @@ public class BigArrays implements Releasable {
     public ByteArray resize(ByteArray array, long size) {
         if (array instanceof BigByteArray) {
             return resizeInPlace((BigByteArray) array, size);
+        } else if (array instanceof OffHeapByteArray) {
+            return resizeInPlace((OffHeapByteArray) array, size);
         } else {
             AbstractArray arr = (AbstractArray) array;
-            final ByteArray newArray = newByteArray(size, arr.clearOnResize);
+            final ByteArray newArray = newByteArray(size, arr.clearOnResize, ((ByteArrayWrapper) array).allowOffHeap);
             final byte[] rawArray = ((ByteArrayWrapper) array).array;
             newArray.set(0, rawArray, 0, (int) Math.min(rawArray.length, newArray.size()));
             arr.close();
@@ -552,7 +694,10 @@ public class BigArrays implements Releasable {
      * @param clearOnResize whether values should be set to 0 on initialization and resize
      */
     public IntArray newIntArray(long size, boolean clearOnResize) {
-        if (size > INT_PAGE_SIZE) {
+        if (size > INT_PAGE_SIZE && offHeap) {
+            adjustOffHeap(OffHeapIntArray.estimateRamBytes(size), false);
+            return new OffHeapIntArray(size, this, clearOnResize);
+        } else if (size > INT_PAGE_SIZE) {
             // when allocating big arrays, we want to first ensure we have the capacity by
             // checking with the circuit breaker before attempting to allocate
             adjustBreaker(BigIntArray.estimateRamBytes(size), false);
@@ -577,6 +722,8 @@ public class BigArrays implements Releasable {
     public IntArray resize(IntArray array, long size) {
         if (array instanceof BigIntArray) {
             return resizeInPlace((BigIntArray) array, size);
+        } else if (array instanceof OffHeapIntArray) {
+            return resizeInPlace((OffHeapIntArray) array, size);
         } else {
             AbstractArray arr = (AbstractArray) array;
             final IntArray newArray = newIntArray(size, arr.clearOnResize);
@@ -603,7 +750,10 @@ public class BigArrays implements Releasable {
      * @param clearOnResize whether values should be set to 0 on initialization and resize
      */
     public LongArray newLongArray(long size, boolean clearOnResize) {
-        if (size > LONG_PAGE_SIZE) {
+        if (size > LONG_PAGE_SIZE && offHeap) {
+            adjustOffHeap(OffHeapLongArray.estimateRamBytes(size), false);
+            return new OffHeapLongArray(size, this, clearOnResize);
+        } else if (size > LONG_PAGE_SIZE) {
             // when allocating big arrays, we want to first ensure we have the capacity by
             // checking with the circuit breaker before attempting to allocate
             adjustBreaker(BigLongArray.estimateRamBytes(size), false);
@@ -628,6 +778,8 @@ public class BigArrays implements Releasable {
     public LongArray resize(LongArray array, long size) {
         if (array instanceof BigLongArray) {
             return resizeInPlace((BigLongArray) array, size);
+        } else if (array instanceof OffHeapLongArray) {
+            return resizeInPlace((OffHeapLongArray) array, size);
         } else {
             AbstractArray arr = (AbstractArray) array;
             final LongArray newArray = newLongArray(size, arr.clearOnResize);
@@ -654,7 +806,10 @@ public class BigArrays implements Releasable {
      * @param clearOnResize whether values should be set to 0 on initialization and resize
      */
     public DoubleArray newDoubleArray(long size, boolean clearOnResize) {
-        if (size > LONG_PAGE_SIZE) {
+        if (size > LONG_PAGE_SIZE && offHeap) {
+            adjustOffHeap(OffHeapDoubleArray.estimateRamBytes(size), false);
+            return new OffHeapDoubleArray(size, this, clearOnResize);
+        } else if (size > LONG_PAGE_SIZE) {
             // when allocating big arrays, we want to first ensure we have the capacity by
             // checking with the circuit breaker before attempting to allocate
             adjustBreaker(BigDoubleArray.estimateRamBytes(size), false);
@@ -676,6 +831,8 @@ public class BigArrays implements Releasable {
     public DoubleArray resize(DoubleArray array, long size) {
         if (array instanceof BigDoubleArray) {
             return resizeInPlace((BigDoubleArray) array, size);
+        } else if (array instanceof OffHeapDoubleArray) {
+            return resizeInPlace((OffHeapDoubleArray) array, size);
         } else {
             AbstractArray arr = (AbstractArray) array;
             final DoubleArray newArray = newDoubleArray(size, arr.clearOnResize);
@@ -702,7 +859,10 @@ public class BigArrays implements Releasable {
      * @param clearOnResize whether values should be set to 0 on initialization and resize
      */
     public FloatArray newFloatArray(long size, boolean clearOnResize) {
-        if (size > INT_PAGE_SIZE) {
+        if (size > INT_PAGE_SIZE && offHeap) {
+            adjustOffHeap(OffHeapFloatArray.estimateRamBytes(size), false);
+            return new OffHeapFloatArray(size, this, clearOnResize);
+        } else if (size > INT_PAGE_SIZE) {
             // when allocating big arrays, we want to first ensure we have the capacity by
             // checking with the circuit breaker before attempting to allocate
             adjustBreaker(BigFloatArray.estimateRamBytes(size), false);
@@ -724,6 +884,8 @@ public class BigArrays implements Releasable {
     public FloatArray resize(FloatArray array, long size) {
         if (array instanceof BigFloatArray) {
             return resizeInPlace((BigFloatArray) array, size);
+        } else if (array instanceof OffHeapFloatArray) {
+            return resizeInPlace((OffHeapFloatArray) array, size);
         } else {
             AbstractArray arr = (AbstractArray) array;
             final FloatArray newArray = newFloatArray(size, arr.clearOnResize);
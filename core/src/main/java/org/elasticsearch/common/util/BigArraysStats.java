@@ -0,0 +1,114 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.common.util;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+
+/**
+ * The direct memory usage of the {@link BigArrays} of a node, see {@link BigArrays#OFF_HEAP_SETTING}.
+ */
+public class BigArraysStats implements Writeable, ToXContentFragment {
+
+    private final boolean offHeap;
+    private final long offHeapUsed;
+    private final long offHeapAllocated;
+    private final long offHeapLimit;
+
+    public BigArraysStats(boolean offHeap, long offHeapUsed, long offHeapAllocated, long offHeapLimit) {
+        this.offHeap = offHeap;
+        this.offHeapUsed = offHeapUsed;
+        this.offHeapAllocated = offHeapAllocated;
+        this.offHeapLimit = offHeapLimit;
+    }
+
+    public BigArraysStats(StreamInput in) throws IOException {
+        offHeap = in.readBoolean();
+        offHeapUsed = in.readVLong();
+        offHeapAllocated = in.readVLong();
+        offHeapLimit = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeBoolean(offHeap);
+        out.writeVLong(offHeapUsed);
+        out.writeVLong(offHeapAllocated);
+        out.writeVLong(offHeapLimit);
+    }
+
+    /**
+     * Whether arrays of numbers that span several pages store their values in direct memory.
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * The direct memory that is held by arrays.
+     */
+    public ByteSizeValue getOffHeapUsed() {
+        return new ByteSizeValue(offHeapUsed);
+    }
+
+    /**
+     * The direct memory that is held by arrays or cached for reuse by the page recycler.
+     */
+    public ByteSizeValue getOffHeapAllocated() {
+        return new ByteSizeValue(offHeapAllocated);
+    }
+
+    /**
+     * The maximum direct memory that arrays may use, see {@link BigArrays#OFF_HEAP_LIMIT_SETTING}.
+     */
+    public ByteSizeValue getOffHeapLimit() {
+        return new ByteSizeValue(offHeapLimit);
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(Fields.BIG_ARRAYS);
+        builder.startObject(Fields.OFF_HEAP);
+        builder.field(Fields.ENABLED, offHeap);
+        builder.byteSizeField(Fields.USED_IN_BYTES, Fields.USED, offHeapUsed);
+        builder.byteSizeField(Fields.ALLOCATED_IN_BYTES, Fields.ALLOCATED, offHeapAllocated);
+        builder.byteSizeField(Fields.LIMIT_IN_BYTES, Fields.LIMIT, offHeapLimit);
+        builder.endObject();
+        builder.endObject();
+        return builder;
+    }
+
+    static final class Fields {
+        static final String BIG_ARRAYS = "big_arrays";
+        static final String OFF_HEAP = "off_heap";
+        static final String ENABLED = "enabled";
+        static final String USED = "used";
+        static final String USED_IN_BYTES = "used_in_bytes";
+        static final String ALLOCATED = "allocated";
+        static final String ALLOCATED_IN_BYTES = "allocated_in_bytes";
+        static final String LIMIT = "limit";
+        static final String LIMIT_IN_BYTES = "limit_in_bytes";
+    }
+}
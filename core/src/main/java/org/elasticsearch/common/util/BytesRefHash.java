@@ -48,7 +48,8 @@ public final class BytesRefHash extends AbstractHash {
         super(capacity, maxLoadFactor, bigArrays);
         startOffsets = bigArrays.newLongArray(capacity + 1, false);
         startOffsets.set(0, 0);
-        bytes = bigArrays.newByteArray(capacity * 3, false);
+        // the keys are only compared in place and copied out when they are read, so they may live in direct memory
+        bytes = bigArrays.newOffHeapByteArray(capacity * 3, false);
         hashes = bigArrays.newIntArray(capacity, false);
         spare = new BytesRef();
     }
@@ -61,7 +62,8 @@ public final class BytesRefHash extends AbstractHash {
 
     /**
      * Return the key at <code>0 &lt;= index &lt;= capacity()</code>. The result is undefined if the slot is unused.
-     * <p>Beware that the content of the {@link BytesRef} may become invalid as soon as {@link #close()} is called</p>
+     * <p>The key is copied into the bytes of <code>dest</code>, which are reused when they are large enough, so
+     * <code>dest</code> must not share its bytes with other {@link BytesRef}s.</p>
      */
     public BytesRef get(long id, BytesRef dest) {
         final long startOffset = startOffsets.get(id);
@@ -70,6 +72,18 @@ public final class BytesRefHash extends AbstractHash {
         return dest;
     }
 
+    private boolean keyEquals(long id, BytesRef key) {
+        final long startOffset = startOffsets.get(id);
+        if (startOffsets.get(id + 1) - startOffset != key.length) {
+            return false;
+        }
+        if (bytes instanceof OffHeapByteArray) {
+            // reading the key would copy it
+            return ((OffHeapByteArray) bytes).bytesEquals(startOffset, key);
+        }
+        return key.bytesEquals(get(id, spare));
+    }
+
     /**
      * Get the id associated with <code>key</code>
      */
@@ -77,7 +91,7 @@ public final class BytesRefHash extends AbstractHash {
         final long slot = slot(rehash(code), mask);
         for (long index = slot; ; index = nextSlot(index, mask)) {
             final long id = id(index);
-            if (id == -1L || key.bytesEquals(get(id, spare))) {
+            if (id == -1L || keyEquals(id, key)) {
                 return id;
             }
         }
@@ -99,7 +113,7 @@ public final class BytesRefHash extends AbstractHash {
                 append(id, key, code);
                 ++size;
                 return id;
-            } else if (key.bytesEquals(get(curId, spare))) {
+            } else if (keyEquals(curId, key)) {
                 return -1 - curId;
             }
         }
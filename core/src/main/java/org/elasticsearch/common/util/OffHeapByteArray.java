@@ -0,0 +1,164 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.util;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.elasticsearch.common.util.BigArrays.BYTE_PAGE_SIZE;
+
+/**
+ * Byte array abstraction able to support more than 2B values. This implementation slices data into fixed-sized blocks
+ * of direct memory, so that the values are not on the Java heap. Since its pages can't be exposed as {@link BytesRef}s,
+ * slices are always copied, into the bytes of the given {@link BytesRef} when they are large enough.
+ */
+final class OffHeapByteArray extends AbstractBigArray implements ByteArray {
+
+    private static final OffHeapByteArray ESTIMATOR = new OffHeapByteArray(0, BigArrays.NON_RECYCLING_INSTANCE, false);
+
+    private ByteBuffer[] pages;
+
+    /** Constructor. */
+    OffHeapByteArray(long size, BigArrays bigArrays, boolean clearOnResize) {
+        super(BYTE_PAGE_SIZE, bigArrays, clearOnResize);
+        this.size = size;
+        pages = new ByteBuffer[numPages(size)];
+        for (int i = 0; i < pages.length; ++i) {
+            pages[i] = newDirectPage(i);
+        }
+    }
+
+    @Override
+    public byte get(long index) {
+        final int pageIndex = pageIndex(index);
+        final int indexInPage = indexInPage(index);
+        return pages[pageIndex].get(indexInPage);
+    }
+
+    @Override
+    public byte set(long index, byte value) {
+        final int pageIndex = pageIndex(index);
+        final int indexInPage = indexInPage(index);
+        final ByteBuffer page = pages[pageIndex];
+        final byte ret = page.get(indexInPage);
+        page.put(indexInPage, value);
+        return ret;
+    }
+
+    /**
+     * Copies the slice into the bytes of <code>ref</code>, which are reused when they are large enough, so <code>ref</code>
+     * must not share its bytes with other {@link BytesRef}s.
+     */
+    @Override
+    public boolean get(long index, int len, BytesRef ref) {
+        assert index + len <= size();
+        if (ref.bytes.length < len) {
+            ref.bytes = new byte[ArrayUtil.oversize(len, Byte.BYTES)];
+        }
+        ref.offset = 0;
+        ref.length = len;
+        int copied = 0;
+        while (copied < len) {
+            final int indexInPage = indexInPage(index + copied);
+            final int copyLength = Math.min(pageSize() - indexInPage, len - copied);
+            // reads from a duplicate, so that concurrent readers don't share the position of the page
+            final ByteBuffer page = pages[pageIndex(index + copied)].duplicate();
+            page.position(indexInPage);
+            page.get(ref.bytes, copied, copyLength);
+            copied += copyLength;
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the <code>other.length</code> bytes that start at <code>index</code> are equal to the bytes of
+     * <code>other</code>, without copying them.
+     */
+    boolean bytesEquals(long index, BytesRef other) {
+        assert index + other.length <= size();
+        for (int i = 0; i < other.length; ++i) {
+            if (get(index + i) != other.bytes[other.offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void set(long index, byte[] buf, int offset, int len) {
+        assert index + len <= size();
+        int copied = 0;
+        while (copied < len) {
+            final int indexInPage = indexInPage(index + copied);
+            final int copyLength = Math.min(pageSize() - indexInPage, len - copied);
+            final ByteBuffer page = pages[pageIndex(index + copied)].duplicate();
+            page.position(indexInPage);
+            page.put(buf, offset + copied, copyLength);
+            copied += copyLength;
+        }
+    }
+
+    @Override
+    public void fill(long fromIndex, long toIndex, byte value) {
+        if (fromIndex > toIndex) {
+            throw new IllegalArgumentException();
+        }
+        for (long i = fromIndex; i < toIndex; ++i) {
+            pages[pageIndex(i)].put(indexInPage(i), value);
+        }
+    }
+
+    @Override
+    boolean isOffHeap() {
+        return true;
+    }
+
+    @Override
+    protected int numBytesPerElement() {
+        return 1;
+    }
+
+    /** Change the size of this array. Content between indexes <code>0</code> and <code>min(size(), newSize)</code> will be preserved. */
+    @Override
+    public void resize(long newSize) {
+        final int numPages = numPages(newSize);
+        if (numPages > pages.length) {
+            pages = Arrays.copyOf(pages, ArrayUtil.oversize(numPages, RamUsageEstimator.NUM_BYTES_OBJECT_REF));
+        }
+        for (int i = numPages - 1; i >= 0 && pages[i] == null; --i) {
+            pages[i] = newDirectPage(i);
+        }
+        for (int i = numPages; i < pages.length && pages[i] != null; ++i) {
+            pages[i] = null;
+            releasePage(i);
+        }
+        this.size = newSize;
+    }
+
+    /** Estimates the number of bytes that would be consumed by an array of the given size. */
+    public static long estimateRamBytes(final long size) {
+        return ESTIMATOR.ramBytesEstimated(size);
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.common.util;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+import static org.elasticsearch.common.util.BigArrays.LONG_PAGE_SIZE;
+
+/**
+ * Double array abstraction able to support more than 2B values. This implementation slices data into fixed-sized blocks
+ * of direct memory, so that the values are not on the Java heap.
+ */
+final class OffHeapDoubleArray extends AbstractBigArray implements DoubleArray {
+
+    private static final OffHeapDoubleArray ESTIMATOR = new OffHeapDoubleArray(0, BigArrays.NON_RECYCLING_INSTANCE, false);
+
+    private DoubleBuffer[] pages;
+
+    /** Constructor. */
+    OffHeapDoubleArray(long size, BigArrays bigArrays, boolean clearOnResize) {
+        super(LONG_PAGE_SIZE, bigArrays, clearOnResize);
+        this.size = size;
+        pages = new DoubleBuffer[numPages(size)];
+        for (int i = 0; i < pages.length; ++i) {
+            pages[i] = newDirectPage(i).asDoubleBuffer();
+        }
+    }
+
+    @Override
+    public double get(long index) {
+        final int pageIndex = pageIndex(index);
+        final int indexInPage = indexInPage(index);
+        return pages[pageIndex].get(indexInPage);
+    }
+
+    @Override
+    public double set(long index, double value) {
+        final int pageIndex = pageIndex(index);
+        final int indexInPage = indexInPage(index);
+        final DoubleBuffer page = pages[pageIndex];
+        final double ret = page.get(indexInPage);
+        page.put(indexInPage, value);
+        return ret;
+    }
+
+    @Override
+    public double increment(long index, double inc) {
+        final int pageIndex = pageIndex(index);
+        final int indexInPage = indexInPage(index);
+        final DoubleBuffer page = pages[pageIndex];
+        final double value = page.get(indexInPage) + inc;
+        page.put(indexInPage, value);
+        return value;
+    }
+
+    @Override
+    boolean isOffHeap() {
+        return true;
+    }
+
+    @Override
+    protected int numBytesPerElement() {
+        return Double.BYTES;
+    }
+
+    /** Change the size of this array. Content between indexes <code>0</code> and <code>min(size(), newSize)</code> will be preserved. */
+    @Override
+    public void resize(long newSize) {
+        final int numPages = numPages(newSize);
+        if (numPages > pages.length) {
+            pages = Arrays.copyOf(pages, ArrayUtil.oversize(numPages, RamUsageEstimator.NUM_BYTES_OBJECT_REF));
+        }
+        for (int i = numPages - 1; i >= 0 && pages[i] == null; --i) {
+            pages[i] = newDirectPage(i).asDoubleBuffer();
+        }
+        for (int i = numPages; i < pages.length && pages[i] != null; ++i) {
+            pages[i] = null;
+            releasePage(i);
+        }
+        this.size = newSize;
+    }
+
+    @Override
+    public void fill(long fromIndex, long toIndex, double value) {
+        if (fromIndex > toIndex) {
+            throw new IllegalArgumentException();
+        }
+        for (long i = fromIndex; i < toIndex; ++i) {
+            pages[pageIndex(i)].put(indexInPage(i), value);
+        }
+    }
+
+    /** Estimates the number of bytes that would be consumed by an array of the given size. */
+    public static long estimateRamBytes(final long size) {
+        return ESTIMATOR.ramBytesEstimated(size);
+    }
+
+}
@@ -30,8 +30,11 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.util.concurrent.EsExecutors;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.elasticsearch.common.recycler.Recyclers.concurrent;
 import static org.elasticsearch.common.recycler.Recyclers.concurrentDeque;
@@ -54,15 +57,26 @@ public class PageCacheRecycler extends AbstractComponent implements Releasable {
     // object pages are less useful to us so we give them a lower weight by default
     public static final Setting<Double> WEIGHT_OBJECTS_SETTING  =
         Setting.doubleSetting("cache.recycler.page.weight.objects", 0.1d, 0d, Property.NodeScope);
+    // direct pages are only allocated when big arrays are off-heap, so they have their own limit
+    public static final Setting<ByteSizeValue> LIMIT_OFF_HEAP_SETTING  =
+        Setting.memorySizeSetting("cache.recycler.page.limit.off_heap", "10%", Property.NodeScope);
 
     private final Recycler<byte[]> bytePage;
     private final Recycler<int[]> intPage;
     private final Recycler<long[]> longPage;
     private final Recycler<Object[]> objectPage;
+    private final Recycler<ByteBuffer> directPage;
+
+    private final AtomicLong allocatedDirectPages = new AtomicLong();
+    private final AtomicLong usedDirectPages = new AtomicLong();
+    // direct memory that off-heap big arrays reserve ahead of allocating it, checked against its own limit rather than
+    // the request circuit breaker which accounts for heap memory
+    private final AtomicLong reservedDirectBytes = new AtomicLong();
+    private final long directLimitInBytes;
 
     @Override
     public void close() {
-        Releasables.close(true, bytePage, intPage, longPage, objectPage);
+        Releasables.close(true, bytePage, intPage, longPage, objectPage, directPage);
     }
 
     protected PageCacheRecycler(Settings settings) {
@@ -141,6 +155,27 @@ public class PageCacheRecycler extends AbstractComponent implements Releasable {
         });
 
         assert BigArrays.PAGE_SIZE_IN_BYTES * (maxBytePageCount + maxIntPageCount + maxLongPageCount + maxObjectPageCount) <= limit;
+
+        // direct memory is only released once the garbage collector reclaims the buffers that hold it, so recycling direct
+        // pages is what keeps off-heap big arrays from allocating more native memory than they need
+        directLimitInBytes = BigArrays.OFF_HEAP_LIMIT_SETTING.get(settings).getBytes();
+        final long offHeapLimit = LIMIT_OFF_HEAP_SETTING.get(settings).getBytes();
+        final int maxDirectPageCount = (int) Math.min(Integer.MAX_VALUE, offHeapLimit / BigArrays.PAGE_SIZE_IN_BYTES);
+        directPage = build(type, maxDirectPageCount, availableProcessors, new AbstractRecyclerC<ByteBuffer>() {
+            @Override
+            public ByteBuffer newInstance(int sizing) {
+                allocatedDirectPages.incrementAndGet();
+                return ByteBuffer.allocateDirect(BigArrays.PAGE_SIZE_IN_BYTES).order(ByteOrder.nativeOrder());
+            }
+            @Override
+            public void recycle(ByteBuffer value) {
+                // nothing to do
+            }
+            @Override
+            public void destroy(ByteBuffer value) {
+                allocatedDirectPages.decrementAndGet();
+            }
+        });
     }
 
     public Recycler.V<byte[]> bytePage(boolean clear) {
@@ -172,6 +207,67 @@ public class PageCacheRecycler extends AbstractComponent implements Releasable {
         return objectPage.obtain();
     }
 
+    /**
+     * Obtain a page of {@link BigArrays#PAGE_SIZE_IN_BYTES} bytes of direct memory, in native byte order.
+     */
+    public Recycler.V<ByteBuffer> directPage(boolean clear) {
+        final Recycler.V<ByteBuffer> v = directPage.obtain();
+        if (v.isRecycled() && clear) {
+            final ByteBuffer page = v.v();
+            for (int i = 0; i < BigArrays.PAGE_SIZE_IN_BYTES; i += Long.BYTES) {
+                page.putLong(i, 0L);
+            }
+        }
+        usedDirectPages.incrementAndGet();
+        return new Recycler.V<ByteBuffer>() {
+            @Override
+            public ByteBuffer v() {
+                return v.v();
+            }
+
+            @Override
+            public boolean isRecycled() {
+                return v.isRecycled();
+            }
+
+            @Override
+            public void close() {
+                usedDirectPages.decrementAndGet();
+                v.close();
+            }
+        };
+    }
+
+    /**
+     * Returns the number of bytes of direct memory that are held by off-heap big arrays.
+     */
+    public long getOffHeapUsedInBytes() {
+        return usedDirectPages.get() * BigArrays.PAGE_SIZE_IN_BYTES;
+    }
+
+    /**
+     * Returns the number of bytes of direct memory that have been allocated for off-heap big arrays, including the pages
+     * that are cached for reuse.
+     */
+    public long getOffHeapAllocatedInBytes() {
+        return allocatedDirectPages.get() * BigArrays.PAGE_SIZE_IN_BYTES;
+    }
+
+    /**
+     * Adds the given number of bytes, which may be negative, to the direct memory that off-heap big arrays reserved and
+     * returns the new total.
+     */
+    long addDirectReservation(long bytes) {
+        return reservedDirectBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Returns the maximum number of bytes of direct memory that off-heap big arrays may reserve.
+     */
+    public long getOffHeapLimitInBytes() {
+        return directLimitInBytes;
+    }
+
     private static <T> Recycler<T> build(Type type, int limit, int availableProcessors, Recycler.C<T> c) {
         final Recycler<T> recycler;
         if (limit == 0) {
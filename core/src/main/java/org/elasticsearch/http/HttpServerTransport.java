@@ -61,6 +61,16 @@ public interface HttpServerTransport extends LifecycleComponent {
          */
         void dispatchBadRequest(RestRequest request, RestChannel channel, ThreadContext threadContext, Throwable cause);
 
+        /**
+         * Indicates if the request, whose body hasn't been read yet, is handled by a request handler that can consume the body while it
+         * is read, see {@link RestRequest#bodyStream()}. The body of all other requests must be read before they are dispatched.
+         *
+         * @param request the request without its body
+         */
+        default boolean canStreamBody(RestRequest request) {
+            return false;
+        }
+
     }
 
 }
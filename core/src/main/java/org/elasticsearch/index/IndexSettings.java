@@ -65,6 +65,12 @@ public final class IndexSettings {
     public static final Setting<Translog.Durability> INDEX_TRANSLOG_DURABILITY_SETTING =
         new Setting<>("index.translog.durability", Translog.Durability.REQUEST.name(),
             (value) -> Translog.Durability.valueOf(value.toUpperCase(Locale.ROOT)), Property.Dynamic, Property.IndexScope);
+    /**
+     * Controls whether operations are compressed before they are written to the translog. Translogs may contain both
+     * compressed and uncompressed operations so the setting can be changed at any time.
+     */
+    public static final Setting<Boolean> INDEX_TRANSLOG_COMPRESS_SETTING =
+        Setting.boolSetting("index.translog.compress", false, Property.Dynamic, Property.IndexScope);
     public static final Setting<Boolean> INDEX_WARMER_ENABLED_SETTING =
         Setting.boolSetting("index.warmer.enabled", true, Property.Dynamic, Property.IndexScope);
     public static final Setting<Boolean> INDEX_TTL_DISABLE_PURGE_SETTING =
@@ -147,6 +153,13 @@ public final class IndexSettings {
      */
     public static final Setting<Integer> MAX_ADJACENCY_MATRIX_FILTERS_SETTING =
         Setting.intSetting("index.max_adjacency_matrix_filters", 100, 2, Property.Dynamic, Property.IndexScope);
+    /**
+     * Index setting describing how much memory the terms and counts of a terms aggregation with the <code>spill</code>
+     * execution hint can use before they are written to temporary files in the data path of the shard.
+     */
+    public static final Setting<ByteSizeValue> TERMS_SPILL_THRESHOLD_SETTING =
+        Setting.byteSizeSetting("index.terms_spill_threshold", new ByteSizeValue(64, ByteSizeUnit.MB), Property.Dynamic,
+            Property.IndexScope);
     public static final TimeValue DEFAULT_REFRESH_INTERVAL = new TimeValue(1, TimeUnit.SECONDS);
     public static final Setting<TimeValue> INDEX_REFRESH_INTERVAL_SETTING =
         Setting.timeSetting("index.refresh_interval", DEFAULT_REFRESH_INTERVAL, new TimeValue(-1, TimeUnit.MILLISECONDS),
@@ -212,6 +225,21 @@ public final class IndexSettings {
     public static final Setting<Integer> MAX_SLICES_PER_SCROLL = Setting.intSetting("index.max_slices_per_scroll",
         1024, 1, Property.Dynamic, Property.IndexScope);
 
+    /**
+     * Index setting to enable / disable concurrent collection of the segments of a shard. When enabled, the leaves
+     * of a shard are split into slices that are collected in parallel on the search_worker thread pool.
+     */
+    public static final Setting<Boolean> CONCURRENT_SEGMENT_SEARCH_SETTING =
+        Setting.boolSetting("index.search.concurrent_segment_search.enabled", false, Property.Dynamic, Property.IndexScope);
+
+    /**
+     * Index setting for the minimum number of documents of a slice when the segments of a shard are collected concurrently.
+     * Shards with less documents than twice this number are not split.
+     */
+    public static final Setting<Integer> CONCURRENT_SEGMENT_SEARCH_MIN_DOCS_PER_SLICE_SETTING =
+        Setting.intSetting("index.search.concurrent_segment_search.min_docs_per_slice", 100_000, 1,
+            Property.Dynamic, Property.IndexScope);
+
     public static final String INDEX_MAPPING_SINGLE_TYPE_SETTING_KEY = "index.mapping.single_type";
     private static final Setting<Boolean> INDEX_MAPPING_SINGLE_TYPE_SETTING; // private - should not be registered
     static {
@@ -241,6 +269,7 @@ public final class IndexSettings {
     private final boolean queryStringAllowLeadingWildcard;
     private final boolean defaultAllowUnmappedFields;
     private volatile Translog.Durability durability;
+    private volatile boolean translogCompress;
     private final TimeValue syncInterval;
     private volatile TimeValue refreshInterval;
     private volatile ByteSizeValue flushThresholdSize;
@@ -258,6 +287,8 @@ public final class IndexSettings {
     private volatile int maxAdjacencyMatrixFilters;
     private volatile int maxRescoreWindow;
     private volatile int maxDocvalueFields;
+    private volatile boolean concurrentSegmentSearch;
+    private volatile int concurrentSegmentSearchMinDocsPerSlice;
     private volatile int maxScriptFields;
     private volatile int maxNgramDiff;
     private volatile int maxShingleDiff;
@@ -348,6 +379,7 @@ public final class IndexSettings {
         this.queryStringAllowLeadingWildcard = QUERY_STRING_ALLOW_LEADING_WILDCARD.get(nodeSettings);
         this.defaultAllowUnmappedFields = scopedSettings.get(ALLOW_UNMAPPED);
         this.durability = scopedSettings.get(INDEX_TRANSLOG_DURABILITY_SETTING);
+        this.translogCompress = scopedSettings.get(INDEX_TRANSLOG_COMPRESS_SETTING);
         defaultFields = scopedSettings.get(DEFAULT_FIELD_SETTING);
         syncInterval = INDEX_TRANSLOG_SYNC_INTERVAL_SETTING.get(settings);
         refreshInterval = scopedSettings.get(INDEX_REFRESH_INTERVAL_SETTING);
@@ -369,6 +401,8 @@ public final class IndexSettings {
         TTLPurgeDisabled = scopedSettings.get(INDEX_TTL_DISABLE_PURGE_SETTING);
         maxRefreshListeners = scopedSettings.get(MAX_REFRESH_LISTENERS_PER_SHARD);
         maxSlicesPerScroll = scopedSettings.get(MAX_SLICES_PER_SCROLL);
+        concurrentSegmentSearch = scopedSettings.get(CONCURRENT_SEGMENT_SEARCH_SETTING);
+        concurrentSegmentSearchMinDocsPerSlice = scopedSettings.get(CONCURRENT_SEGMENT_SEARCH_MIN_DOCS_PER_SLICE_SETTING);
         this.mergePolicyConfig = new MergePolicyConfig(logger, this);
         this.indexSortConfig = new IndexSortConfig(this);
         singleType = INDEX_MAPPING_SINGLE_TYPE_SETTING.get(indexMetaData.getSettings()); // get this from metadata - it's not registered
@@ -390,6 +424,7 @@ public final class IndexSettings {
             mergeSchedulerConfig::setMaxThreadAndMergeCount);
         scopedSettings.addSettingsUpdateConsumer(MergeSchedulerConfig.AUTO_THROTTLE_SETTING, mergeSchedulerConfig::setAutoThrottle);
         scopedSettings.addSettingsUpdateConsumer(INDEX_TRANSLOG_DURABILITY_SETTING, this::setTranslogDurability);
+        scopedSettings.addSettingsUpdateConsumer(INDEX_TRANSLOG_COMPRESS_SETTING, this::setTranslogCompress);
         scopedSettings.addSettingsUpdateConsumer(INDEX_TTL_DISABLE_PURGE_SETTING, this::setTTLPurgeDisabled);
         scopedSettings.addSettingsUpdateConsumer(MAX_RESULT_WINDOW_SETTING, this::setMaxResultWindow);
         scopedSettings.addSettingsUpdateConsumer(MAX_INNER_RESULT_WINDOW_SETTING, this::setMaxInnerResultWindow);
@@ -410,6 +445,9 @@ public final class IndexSettings {
         scopedSettings.addSettingsUpdateConsumer(INDEX_REFRESH_INTERVAL_SETTING, this::setRefreshInterval);
         scopedSettings.addSettingsUpdateConsumer(MAX_REFRESH_LISTENERS_PER_SHARD, this::setMaxRefreshListeners);
         scopedSettings.addSettingsUpdateConsumer(MAX_SLICES_PER_SCROLL, this::setMaxSlicesPerScroll);
+        scopedSettings.addSettingsUpdateConsumer(CONCURRENT_SEGMENT_SEARCH_SETTING, this::setConcurrentSegmentSearch);
+        scopedSettings.addSettingsUpdateConsumer(CONCURRENT_SEGMENT_SEARCH_MIN_DOCS_PER_SLICE_SETTING,
+            this::setConcurrentSegmentSearchMinDocsPerSlice);
         scopedSettings.addSettingsUpdateConsumer(DEFAULT_FIELD_SETTING, this::setDefaultFields);
     }
 
@@ -553,6 +591,17 @@ public final class IndexSettings {
         this.durability = durability;
     }
 
+    /**
+     * Returns <code>true</code> if operations are compressed before they are written to the translog.
+     */
+    public boolean isTranslogCompress() {
+        return translogCompress;
+    }
+
+    private void setTranslogCompress(boolean translogCompress) {
+        this.translogCompress = translogCompress;
+    }
+
     /**
      * Returns true if index warmers are enabled, otherwise <code>false</code>
      */
@@ -744,6 +793,28 @@ public final class IndexSettings {
         this.maxSlicesPerScroll = value;
     }
 
+    /**
+     * Returns <code>true</code> if the segments of a shard should be collected concurrently.
+     */
+    public boolean isConcurrentSegmentSearch() {
+        return concurrentSegmentSearch;
+    }
+
+    private void setConcurrentSegmentSearch(boolean concurrentSegmentSearch) {
+        this.concurrentSegmentSearch = concurrentSegmentSearch;
+    }
+
+    /**
+     * Returns the minimum number of documents of a slice when the segments of a shard are collected concurrently.
+     */
+    public int getConcurrentSegmentSearchMinDocsPerSlice() {
+        return concurrentSegmentSearchMinDocsPerSlice;
+    }
+
+    private void setConcurrentSegmentSearchMinDocsPerSlice(int minDocsPerSlice) {
+        this.concurrentSegmentSearchMinDocsPerSlice = minDocsPerSlice;
+    }
+
     /**
      * Returns the index sort config that should be used for this index.
      */
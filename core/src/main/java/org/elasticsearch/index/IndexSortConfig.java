@@ -171,6 +171,13 @@ public final class IndexSortConfig {
         return sortSpecs.length > 0;
     }
 
+    /**
+     * Returns true if the index is sorted by the given field first
+     */
+    public boolean isPrimarySortField(String field) {
+        return sortSpecs.length > 0 && sortSpecs[0].field.equals(field);
+    }
+
     /**
      * Builds the {@link Sort} order from the settings for this index
      * or returns null if this index has no sort.
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.index.cache.request;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
@@ -35,15 +36,26 @@ public class RequestCacheStats implements Streamable, ToXContentFragment {
     long evictions;
     long hitCount;
     long missCount;
+    long hitsEvictions;
+    long hitsHitCount;
+    long hitsMissCount;
 
     public RequestCacheStats() {
     }
 
     public RequestCacheStats(long memorySize, long evictions, long hitCount, long missCount) {
+        this(memorySize, evictions, hitCount, missCount, 0, 0, 0);
+    }
+
+    public RequestCacheStats(long memorySize, long evictions, long hitCount, long missCount,
+                             long hitsEvictions, long hitsHitCount, long hitsMissCount) {
         this.memorySize = memorySize;
         this.evictions = evictions;
         this.hitCount = hitCount;
         this.missCount = missCount;
+        this.hitsEvictions = hitsEvictions;
+        this.hitsHitCount = hitsHitCount;
+        this.hitsMissCount = hitsMissCount;
     }
 
     public void add(RequestCacheStats stats) {
@@ -51,6 +63,9 @@ public class RequestCacheStats implements Streamable, ToXContentFragment {
         this.evictions += stats.evictions;
         this.hitCount += stats.hitCount;
         this.missCount += stats.missCount;
+        this.hitsEvictions += stats.hitsEvictions;
+        this.hitsHitCount += stats.hitsHitCount;
+        this.hitsMissCount += stats.hitsMissCount;
     }
 
     public long getMemorySizeInBytes() {
@@ -73,12 +88,38 @@ public class RequestCacheStats implements Streamable, ToXContentFragment {
         return this.missCount;
     }
 
+    /**
+     * The number of evicted entries that held fetched search hits.
+     */
+    public long getHitsEvictions() {
+        return this.hitsEvictions;
+    }
+
+    /**
+     * The number of cache hits for entries that hold fetched search hits.
+     */
+    public long getHitsHitCount() {
+        return this.hitsHitCount;
+    }
+
+    /**
+     * The number of cache misses for entries that hold fetched search hits.
+     */
+    public long getHitsMissCount() {
+        return this.hitsMissCount;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         memorySize = in.readVLong();
         evictions = in.readVLong();
         hitCount = in.readVLong();
         missCount = in.readVLong();
+        if (in.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            hitsEvictions = in.readVLong();
+            hitsHitCount = in.readVLong();
+            hitsMissCount = in.readVLong();
+        }
     }
 
     @Override
@@ -87,6 +128,11 @@ public class RequestCacheStats implements Streamable, ToXContentFragment {
         out.writeVLong(evictions);
         out.writeVLong(hitCount);
         out.writeVLong(missCount);
+        if (out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            out.writeVLong(hitsEvictions);
+            out.writeVLong(hitsHitCount);
+            out.writeVLong(hitsMissCount);
+        }
     }
 
     @Override
@@ -96,6 +142,11 @@ public class RequestCacheStats implements Streamable, ToXContentFragment {
         builder.field(Fields.EVICTIONS, getEvictions());
         builder.field(Fields.HIT_COUNT, getHitCount());
         builder.field(Fields.MISS_COUNT, getMissCount());
+        builder.startObject(Fields.HITS);
+        builder.field(Fields.EVICTIONS, getHitsEvictions());
+        builder.field(Fields.HIT_COUNT, getHitsHitCount());
+        builder.field(Fields.MISS_COUNT, getHitsMissCount());
+        builder.endObject();
         builder.endObject();
         return builder;
     }
@@ -107,5 +158,6 @@ public class RequestCacheStats implements Streamable, ToXContentFragment {
         static final String EVICTIONS = "evictions";
         static final String HIT_COUNT = "hit_count";
         static final String MISS_COUNT = "miss_count";
+        static final String HITS = "hits";
     }
 }
@@ -31,9 +31,13 @@ public final class ShardRequestCache {
     final CounterMetric totalMetric = new CounterMetric();
     final CounterMetric hitCount = new CounterMetric();
     final CounterMetric missCount = new CounterMetric();
+    final CounterMetric hitsEvictionsMetric = new CounterMetric();
+    final CounterMetric hitsHitCount = new CounterMetric();
+    final CounterMetric hitsMissCount = new CounterMetric();
 
     public RequestCacheStats stats() {
-        return new RequestCacheStats(totalMetric.count(), evictionsMetric.count(), hitCount.count(), missCount.count());
+        return new RequestCacheStats(totalMetric.count(), evictionsMetric.count(), hitCount.count(), missCount.count(),
+            hitsEvictionsMetric.count(), hitsHitCount.count(), hitsMissCount.count());
     }
 
     public void onHit() {
@@ -44,6 +48,20 @@ public final class ShardRequestCache {
         missCount.inc();
     }
 
+    /**
+     * Called when a cached entry holding fetched search hits is reused.
+     */
+    public void onHitsHit() {
+        hitsHitCount.inc();
+    }
+
+    /**
+     * Called when an entry holding fetched search hits had to be computed.
+     */
+    public void onHitsMiss() {
+        hitsMissCount.inc();
+    }
+
     public void onCached(Accountable key, Accountable value) {
         totalMetric.inc(key.ramBytesUsed() + value.ramBytesUsed());
     }
@@ -61,4 +79,11 @@ public final class ShardRequestCache {
         }
         totalMetric.dec(dec);
     }
+
+    public void onHitsRemoval(Accountable key, Accountable value, boolean evicted) {
+        if (evicted) {
+            hitsEvictionsMetric.inc();
+        }
+        onRemoval(key, value, false);
+    }
 }
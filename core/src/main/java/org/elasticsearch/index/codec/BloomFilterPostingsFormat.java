@@ -0,0 +1,371 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.codec;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.FieldsConsumer;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.Fields;
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.index.TermState;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Accountables;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.hash.MurmurHash3;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link PostingsFormat} that wraps another postings format and keeps a bloom filter of the terms of each field per segment,
+ * so that {@link TermsEnum#seekExact(BytesRef)} can return <code>false</code> without looking up the terms dictionary
+ * for most of the terms that the segment doesn't contain. This speeds up primary key lookups, which seek the same term in
+ * every segment of the index while only one segment at most contains it.
+ * <p>
+ * The filters are sized for as many terms as the segment has documents, with a false positive probability of about 1%,
+ * and are loaded on heap when the segment is opened.
+ */
+public final class BloomFilterPostingsFormat extends PostingsFormat {
+
+    public static final String NAME = "ESBloomFilter";
+
+    static final String BLOOM_CODEC_NAME = "ESBloomFilter";
+    static final int VERSION_START = 0;
+    static final int VERSION_CURRENT = VERSION_START;
+    static final String BLOOM_EXTENSION = "blm";
+
+    private final PostingsFormat delegate;
+
+    /**
+     * Used by the SPI to read segments, the wrapped format is read from the segment.
+     */
+    public BloomFilterPostingsFormat() {
+        this(null);
+    }
+
+    public BloomFilterPostingsFormat(PostingsFormat delegate) {
+        super(NAME);
+        this.delegate = delegate;
+    }
+
+    @Override
+    public FieldsConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+        if (delegate == null) {
+            throw new UnsupportedOperationException("Error - " + getClass().getName()
+                + " has been constructed without a choice of PostingsFormat");
+        }
+        return new BloomFilteredFieldsConsumer(delegate, state);
+    }
+
+    @Override
+    public FieldsProducer fieldsProducer(SegmentReadState state) throws IOException {
+        return new BloomFilteredFieldsProducer(state);
+    }
+
+    /**
+     * Returns the number of bytes that the bloom filter of the given terms uses, or 0 if they have no bloom filter.
+     */
+    public static long bloomFilterRamBytesUsed(Terms terms) {
+        return terms instanceof BloomFilteredTerms ? ((BloomFilteredTerms) terms).filter.ramBytesUsed() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "BloomFilterPostingsFormat(" + delegate + ")";
+    }
+
+    private static String bloomFileName(String segmentName, String segmentSuffix) {
+        return IndexFileNames.segmentFileName(segmentName, segmentSuffix, BLOOM_EXTENSION);
+    }
+
+    private static final class BloomFilteredFieldsConsumer extends FieldsConsumer {
+        private final FieldsConsumer delegateFieldsConsumer;
+        private final String delegateName;
+        private final SegmentWriteState state;
+        private final Map<FieldInfo, BloomFilter> filters = new HashMap<>();
+
+        BloomFilteredFieldsConsumer(PostingsFormat delegate, SegmentWriteState state) throws IOException {
+            this.delegateFieldsConsumer = delegate.fieldsConsumer(state);
+            this.delegateName = delegate.getName();
+            this.state = state;
+        }
+
+        @Override
+        public void write(Fields fields) throws IOException {
+            // the terms are added to the filters while the wrapped format iterates over them
+            delegateFieldsConsumer.write(new FilterLeafReader.FilterFields(fields) {
+                @Override
+                public Terms terms(String field) throws IOException {
+                    final Terms terms = super.terms(field);
+                    if (terms == null) {
+                        return null;
+                    }
+                    final BloomFilter filter = filters.computeIfAbsent(state.fieldInfos.fieldInfo(field),
+                        fieldInfo -> BloomFilter.create(state.segmentInfo.maxDoc()));
+                    return new FilterLeafReader.FilterTerms(terms) {
+                        @Override
+                        public TermsEnum iterator() throws IOException {
+                            return new FilterLeafReader.FilterTermsEnum(super.iterator()) {
+                                @Override
+                                public BytesRef next() throws IOException {
+                                    final BytesRef term = super.next();
+                                    if (term != null) {
+                                        filter.add(term);
+                                    }
+                                    return term;
+                                }
+                            };
+                        }
+                    };
+                }
+            });
+
+            final String fileName = bloomFileName(state.segmentInfo.name, state.segmentSuffix);
+            try (IndexOutput out = state.directory.createOutput(fileName, state.context)) {
+                CodecUtil.writeIndexHeader(out, BLOOM_CODEC_NAME, VERSION_CURRENT, state.segmentInfo.getId(), state.segmentSuffix);
+                out.writeString(delegateName);
+                out.writeVInt(filters.size());
+                for (Map.Entry<FieldInfo, BloomFilter> entry : filters.entrySet()) {
+                    out.writeVInt(entry.getKey().number);
+                    entry.getValue().writeTo(out);
+                }
+                CodecUtil.writeFooter(out);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegateFieldsConsumer.close();
+        }
+    }
+
+    private static final class BloomFilteredFieldsProducer extends FieldsProducer {
+        private final FieldsProducer delegateFieldsProducer;
+        private final Map<String, BloomFilter> filters = new HashMap<>();
+
+        BloomFilteredFieldsProducer(SegmentReadState state) throws IOException {
+            final String fileName = bloomFileName(state.segmentInfo.name, state.segmentSuffix);
+            final PostingsFormat delegateFormat;
+            try (ChecksumIndexInput in = state.directory.openChecksumInput(fileName, state.context)) {
+                Throwable priorE = null;
+                String delegateName = null;
+                try {
+                    CodecUtil.checkIndexHeader(in, BLOOM_CODEC_NAME, VERSION_START, VERSION_CURRENT, state.segmentInfo.getId(),
+                        state.segmentSuffix);
+                    delegateName = in.readString();
+                    final int numFilters = in.readVInt();
+                    for (int i = 0; i < numFilters; i++) {
+                        final FieldInfo fieldInfo = state.fieldInfos.fieldInfo(in.readVInt());
+                        filters.put(fieldInfo.name, BloomFilter.readFrom(in));
+                    }
+                } catch (Throwable exception) {
+                    priorE = exception;
+                } finally {
+                    CodecUtil.checkFooter(in, priorE);
+                }
+                delegateFormat = PostingsFormat.forName(delegateName);
+            }
+            this.delegateFieldsProducer = delegateFormat.fieldsProducer(state);
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return delegateFieldsProducer.iterator();
+        }
+
+        @Override
+        public Terms terms(String field) throws IOException {
+            final Terms terms = delegateFieldsProducer.terms(field);
+            final BloomFilter filter = filters.get(field);
+            if (terms == null || filter == null) {
+                return terms;
+            }
+            return new BloomFilteredTerms(terms, filter);
+        }
+
+        @Override
+        public int size() {
+            return delegateFieldsProducer.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegateFieldsProducer.close();
+        }
+
+        @Override
+        public void checkIntegrity() throws IOException {
+            // the checksum of the filters is verified when they are loaded
+            delegateFieldsProducer.checkIntegrity();
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            long sizeInBytes = delegateFieldsProducer.ramBytesUsed();
+            for (BloomFilter filter : filters.values()) {
+                sizeInBytes += filter.ramBytesUsed();
+            }
+            return sizeInBytes;
+        }
+
+        @Override
+        public Collection<Accountable> getChildResources() {
+            final List<Accountable> resources = new ArrayList<>(Accountables.namedAccountables("bloom filter", filters));
+            resources.add(Accountables.namedAccountable("delegate", delegateFieldsProducer));
+            return Collections.unmodifiableList(resources);
+        }
+
+        @Override
+        public String toString() {
+            return "BloomFilteredFieldsProducer(fields=" + filters.size() + ",delegate=" + delegateFieldsProducer + ")";
+        }
+    }
+
+    private static final class BloomFilteredTerms extends FilterLeafReader.FilterTerms {
+        private final BloomFilter filter;
+
+        BloomFilteredTerms(Terms in, BloomFilter filter) {
+            super(in);
+            this.filter = filter;
+        }
+
+        @Override
+        public TermsEnum iterator() throws IOException {
+            return new FilterLeafReader.FilterTermsEnum(in.iterator()) {
+                final MurmurHash3.Hash128 hash = new MurmurHash3.Hash128();
+
+                @Override
+                public boolean seekExact(BytesRef text) throws IOException {
+                    if (filter.mightContain(text, hash) == false) {
+                        return false;
+                    }
+                    return in.seekExact(text);
+                }
+
+                @Override
+                public void seekExact(BytesRef term, TermState state) throws IOException {
+                    in.seekExact(term, state);
+                }
+
+                @Override
+                public TermState termState() throws IOException {
+                    return in.termState();
+                }
+            };
+        }
+    }
+
+    /**
+     * A bloom filter over terms that derives its hash functions from the two halves of the 128 bits murmur3 hash of a term.
+     */
+    static final class BloomFilter implements Accountable {
+        // 1% of false positives
+        private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+        private final long[] bits;
+        private final long numBits;
+        private final int numHashFunctions;
+        private final MurmurHash3.Hash128 hash = new MurmurHash3.Hash128();
+
+        private BloomFilter(long[] bits, int numHashFunctions) {
+            this.bits = bits;
+            this.numBits = (long) bits.length * Long.SIZE;
+            this.numHashFunctions = numHashFunctions;
+        }
+
+        /**
+         * Creates a filter for the given number of terms.
+         */
+        static BloomFilter create(int expectedTerms) {
+            final int n = Math.max(1, expectedTerms);
+            final long numBits = Math.max(Long.SIZE,
+                (long) Math.ceil(-n * Math.log(FALSE_POSITIVE_PROBABILITY) / (Math.log(2) * Math.log(2))));
+            final int numHashFunctions = Math.max(1, (int) Math.round((double) numBits / n * Math.log(2)));
+            return new BloomFilter(new long[Math.toIntExact((numBits + Long.SIZE - 1) / Long.SIZE)], numHashFunctions);
+        }
+
+        void add(BytesRef term) {
+            MurmurHash3.hash128(term.bytes, term.offset, term.length, 0, hash);
+            long combined = hash.h1;
+            for (int i = 0; i < numHashFunctions; i++) {
+                final long bit = (combined & Long.MAX_VALUE) % numBits;
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+                combined += hash.h2;
+            }
+        }
+
+        /**
+         * Returns <code>false</code> if the term was certainly not added to this filter. Filters are shared between threads
+         * once the segment is written so the hash is computed into the given scratch object.
+         */
+        boolean mightContain(BytesRef term, MurmurHash3.Hash128 hash) {
+            MurmurHash3.hash128(term.bytes, term.offset, term.length, 0, hash);
+            long combined = hash.h1;
+            for (int i = 0; i < numHashFunctions; i++) {
+                final long bit = (combined & Long.MAX_VALUE) % numBits;
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+                combined += hash.h2;
+            }
+            return true;
+        }
+
+        void writeTo(DataOutput out) throws IOException {
+            out.writeVInt(numHashFunctions);
+            out.writeVInt(bits.length);
+            for (long word : bits) {
+                out.writeLong(word);
+            }
+        }
+
+        static BloomFilter readFrom(DataInput in) throws IOException {
+            final int numHashFunctions = in.readVInt();
+            final long[] bits = new long[in.readVInt()];
+            for (int i = 0; i < bits.length; i++) {
+                bits[i] = in.readLong();
+            }
+            return new BloomFilter(bits, numHashFunctions);
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return RamUsageEstimator.sizeOf(bits);
+        }
+    }
+}
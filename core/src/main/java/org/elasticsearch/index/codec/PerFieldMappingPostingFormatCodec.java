@@ -25,9 +25,13 @@ import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat;
 import org.apache.lucene.codecs.lucene70.Lucene70Codec;
 import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.engine.EngineConfig;
 import org.elasticsearch.index.mapper.CompletionFieldMapper;
+import org.elasticsearch.index.mapper.IdFieldMapper;
 import org.elasticsearch.index.mapper.MappedFieldType;
 import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.UidFieldMapper;
 
 /**
  * {@link PerFieldMappingPostingFormatCodec This postings format} is the default
@@ -41,6 +45,9 @@ import org.elasticsearch.index.mapper.MapperService;
 public class PerFieldMappingPostingFormatCodec extends Lucene70Codec {
     private final Logger logger;
     private final MapperService mapperService;
+    // the field that identifies documents and its postings format if it keeps bloom filters, null otherwise
+    private final String uidField;
+    private final PostingsFormat uidPostingsFormat;
 
     static {
         assert Codec.forName(Lucene.LATEST_CODEC).getClass().isAssignableFrom(PerFieldMappingPostingFormatCodec.class) : "PerFieldMappingPostingFormatCodec must subclass the latest lucene codec: " + Lucene.LATEST_CODEC;
@@ -50,10 +57,21 @@ public class PerFieldMappingPostingFormatCodec extends Lucene70Codec {
         super(compressionMode);
         this.mapperService = mapperService;
         this.logger = logger;
+        final IndexSettings indexSettings = mapperService.getIndexSettings();
+        if (indexSettings.getValue(EngineConfig.INDEX_ID_BLOOM_FILTER_SETTING)) {
+            this.uidField = indexSettings.isSingleType() ? IdFieldMapper.NAME : UidFieldMapper.NAME;
+            this.uidPostingsFormat = new BloomFilterPostingsFormat(super.getPostingsFormatForField(uidField));
+        } else {
+            this.uidField = null;
+            this.uidPostingsFormat = null;
+        }
     }
 
     @Override
     public PostingsFormat getPostingsFormatForField(String field) {
+        if (uidPostingsFormat != null && field.equals(uidField)) {
+            return uidPostingsFormat;
+        }
         final MappedFieldType fieldType = mapperService.fullName(field);
         if (fieldType == null) {
             logger.warn("no index mapper found for field: [{}] returning default postings format", field);
@@ -95,6 +95,14 @@ public final class EngineConfig {
         }
     }, Property.IndexScope, Property.NodeScope);
 
+    /**
+     * Index setting to keep a bloom filter of the ids of each segment so that version lookups of indexing operations with
+     * external ids skip the segments that don't contain the id. This setting is <b>not</b> realtime updateable, it only
+     * applies to the segments written once the index is reopened.
+     */
+    public static final Setting<Boolean> INDEX_ID_BLOOM_FILTER_SETTING =
+        Setting.boolSetting("index.codec.id_bloom_filter", false, Property.IndexScope);
+
     /**
      * Configures an index to optimize documents with auto generated ids for append only. If this setting is updated from <code>false</code>
      * to <code>true</code> might not take effect immediately. In other words, disabling the optimization will be immediately applied while
@@ -21,6 +21,7 @@ package org.elasticsearch.index.engine;
 
 import com.carrotsearch.hppc.cursors.ObjectObjectCursor;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -43,6 +44,7 @@ public class SegmentsStats implements Streamable, ToXContentFragment {
     private long normsMemoryInBytes;
     private long pointsMemoryInBytes;
     private long docValuesMemoryInBytes;
+    private long bloomFilterMemoryInBytes;
     private long indexWriterMemoryInBytes;
     private long versionMapMemoryInBytes;
     private long maxUnsafeAutoIdTimestamp = Long.MIN_VALUE;
@@ -75,6 +77,7 @@ public class SegmentsStats implements Streamable, ToXContentFragment {
             .fPut("tvd", "Term Vector Documents")
             .fPut("tvf", "Term Vector Fields")
             .fPut("liv", "Live Documents")
+            .fPut("blm", "Bloom Filter")
             .build();
 
     public SegmentsStats() {}
@@ -108,6 +111,10 @@ public class SegmentsStats implements Streamable, ToXContentFragment {
         this.docValuesMemoryInBytes += docValuesMemoryInBytes;
     }
 
+    public void addBloomFilterMemoryInBytes(long bloomFilterMemoryInBytes) {
+        this.bloomFilterMemoryInBytes += bloomFilterMemoryInBytes;
+    }
+
     public void addIndexWriterMemoryInBytes(long indexWriterMemoryInBytes) {
         this.indexWriterMemoryInBytes += indexWriterMemoryInBytes;
     }
@@ -152,6 +159,7 @@ public class SegmentsStats implements Streamable, ToXContentFragment {
         addNormsMemoryInBytes(mergeStats.normsMemoryInBytes);
         addPointsMemoryInBytes(mergeStats.pointsMemoryInBytes);
         addDocValuesMemoryInBytes(mergeStats.docValuesMemoryInBytes);
+        addBloomFilterMemoryInBytes(mergeStats.bloomFilterMemoryInBytes);
         addIndexWriterMemoryInBytes(mergeStats.indexWriterMemoryInBytes);
         addVersionMapMemoryInBytes(mergeStats.versionMapMemoryInBytes);
         addBitsetMemoryInBytes(mergeStats.bitsetMemoryInBytes);
@@ -242,6 +250,17 @@ public class SegmentsStats implements Streamable, ToXContentFragment {
         return new ByteSizeValue(docValuesMemoryInBytes);
     }
 
+    /**
+     * Estimation of the memory usage of the bloom filters of the ids by a segment.
+     */
+    public long getBloomFilterMemoryInBytes() {
+        return this.bloomFilterMemoryInBytes;
+    }
+
+    public ByteSizeValue getBloomFilterMemory() {
+        return new ByteSizeValue(bloomFilterMemoryInBytes);
+    }
+
     /**
      * Estimation of the memory usage by index writer
      */
@@ -298,6 +317,7 @@ public class SegmentsStats implements Streamable, ToXContentFragment {
         builder.byteSizeField(Fields.NORMS_MEMORY_IN_BYTES, Fields.NORMS_MEMORY, normsMemoryInBytes);
         builder.byteSizeField(Fields.POINTS_MEMORY_IN_BYTES, Fields.POINTS_MEMORY, pointsMemoryInBytes);
         builder.byteSizeField(Fields.DOC_VALUES_MEMORY_IN_BYTES, Fields.DOC_VALUES_MEMORY, docValuesMemoryInBytes);
+        builder.byteSizeField(Fields.BLOOM_FILTER_MEMORY_IN_BYTES, Fields.BLOOM_FILTER_MEMORY, bloomFilterMemoryInBytes);
         builder.byteSizeField(Fields.INDEX_WRITER_MEMORY_IN_BYTES, Fields.INDEX_WRITER_MEMORY, indexWriterMemoryInBytes);
         builder.byteSizeField(Fields.VERSION_MAP_MEMORY_IN_BYTES, Fields.VERSION_MAP_MEMORY, versionMapMemoryInBytes);
         builder.byteSizeField(Fields.FIXED_BIT_SET_MEMORY_IN_BYTES, Fields.FIXED_BIT_SET, bitsetMemoryInBytes);
@@ -332,6 +352,8 @@ public class SegmentsStats implements Streamable, ToXContentFragment {
         static final String POINTS_MEMORY_IN_BYTES = "points_memory_in_bytes";
         static final String DOC_VALUES_MEMORY = "doc_values_memory";
         static final String DOC_VALUES_MEMORY_IN_BYTES = "doc_values_memory_in_bytes";
+        static final String BLOOM_FILTER_MEMORY = "bloom_filter_memory";
+        static final String BLOOM_FILTER_MEMORY_IN_BYTES = "bloom_filter_memory_in_bytes";
         static final String INDEX_WRITER_MEMORY = "index_writer_memory";
         static final String INDEX_WRITER_MEMORY_IN_BYTES = "index_writer_memory_in_bytes";
         static final String VERSION_MAP_MEMORY = "version_map_memory";
@@ -359,6 +381,9 @@ public class SegmentsStats implements Streamable, ToXContentFragment {
         versionMapMemoryInBytes = in.readLong();
         bitsetMemoryInBytes = in.readLong();
         maxUnsafeAutoIdTimestamp = in.readLong();
+        if (in.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            bloomFilterMemoryInBytes = in.readLong();
+        }
 
         int size = in.readVInt();
         ImmutableOpenMap.Builder<String, Long> map = ImmutableOpenMap.builder(size);
@@ -384,6 +409,9 @@ public class SegmentsStats implements Streamable, ToXContentFragment {
         out.writeLong(versionMapMemoryInBytes);
         out.writeLong(bitsetMemoryInBytes);
         out.writeLong(maxUnsafeAutoIdTimestamp);
+        if (out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            out.writeLong(bloomFilterMemoryInBytes);
+        }
 
         out.writeVInt(fileSizes.size());
         for (ObjectObjectCursor<String, Long> entry : fileSizes) {
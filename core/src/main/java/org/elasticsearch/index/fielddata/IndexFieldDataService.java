@@ -52,6 +52,13 @@ public class IndexFieldDataService extends AbstractIndexComponent implements Clo
         }
     }, Property.IndexScope);
 
+    /**
+     * Whether the murmur3 hashes of the terms of global ordinals are computed and cached alongside them, so that
+     * repeated cardinality aggregations on the field don't need to hash the terms again.
+     */
+    public static final Setting<Boolean> INDEX_FIELDDATA_ORDINAL_HASHES_SETTING =
+        Setting.boolSetting("index.fielddata.ordinal_hashes", false, Property.IndexScope);
+
     private final CircuitBreakerService circuitBreakerService;
 
     private final IndicesFieldDataCache indicesFieldDataCache;
@@ -25,11 +25,17 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.OrdinalMap;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.packed.PackedInts;
 import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.hash.MurmurHash3;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.fielddata.AtomicOrdinalsFieldData;
+import org.elasticsearch.index.fielddata.IndexFieldDataService;
 import org.elasticsearch.index.fielddata.IndexOrdinalsFieldData;
 import org.elasticsearch.index.fielddata.ScriptDocValues;
 import org.elasticsearch.index.fielddata.plain.AbstractAtomicOrdinalsFieldData;
@@ -47,13 +53,24 @@ import java.util.function.Function;
 public enum GlobalOrdinalsBuilder {
     ;
 
+    /**
+     * Returns <code>true</code> if the segment ordinals of the provided {@link IndexReader} can be used as global ordinals,
+     * which is the case if it has at most one segment, unless the hashes of the terms are cached with the global ordinals
+     * (see {@link IndexFieldDataService#INDEX_FIELDDATA_ORDINAL_HASHES_SETTING}), which requires building them anyway.
+     */
+    public static boolean segmentOrdinalsAreGlobal(IndexReader indexReader, IndexSettings indexSettings) {
+        final int numSegments = indexReader.leaves().size();
+        return numSegments == 0
+            || (numSegments == 1 && indexSettings.getValue(IndexFieldDataService.INDEX_FIELDDATA_ORDINAL_HASHES_SETTING) == false);
+    }
+
     /**
      * Build global ordinals for the provided {@link IndexReader}.
      */
     public static IndexOrdinalsFieldData build(final IndexReader indexReader, IndexOrdinalsFieldData indexFieldData,
             IndexSettings indexSettings, CircuitBreakerService breakerService, Logger logger,
             Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction) throws IOException {
-        assert indexReader.leaves().size() > 1;
+        assert segmentOrdinalsAreGlobal(indexReader, indexSettings) == false;
         long startTimeNS = System.nanoTime();
 
         final AtomicOrdinalsFieldData[] atomicFD = new AtomicOrdinalsFieldData[indexReader.leaves().size()];
@@ -63,8 +80,37 @@ public enum GlobalOrdinalsBuilder {
             subs[i] = atomicFD[i].getOrdinalsValues();
         }
         final OrdinalMap ordinalMap = OrdinalMap.build(null, subs, PackedInts.DEFAULT);
-        final long memorySizeInBytes = ordinalMap.ramBytesUsed();
-        breakerService.getBreaker(CircuitBreaker.FIELDDATA).addWithoutBreaking(memorySizeInBytes);
+        long memorySizeInBytes = ordinalMap.ramBytesUsed();
+        final CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.FIELDDATA);
+        breaker.addWithoutBreaking(memorySizeInBytes);
+
+        long[] ordinalHashes = null;
+        if (indexSettings.getValue(IndexFieldDataService.INDEX_FIELDDATA_ORDINAL_HASHES_SETTING)
+                && ordinalMap.getValueCount() <= ArrayUtil.MAX_ARRAY_LENGTH) {
+            final long hashesSizeInBytes = RamUsageEstimator.sizeOf(new long[0])
+                + ordinalMap.getValueCount() * Long.BYTES;
+            boolean reserved = false;
+            try {
+                breaker.addEstimateBytesAndMaybeBreak(hashesSizeInBytes, "ordinal_hashes:" + indexFieldData.getFieldName());
+                reserved = true;
+            } catch (CircuitBreakingException e) {
+                // the hashes are an optimization, the global ordinals are still usable without them
+                logger.debug("not enough memory to cache the ordinal hashes of [{}]", indexFieldData.getFieldName());
+            }
+            if (reserved) {
+                boolean success = false;
+                try {
+                    ordinalHashes = buildOrdinalHashes(atomicFD, ordinalMap);
+                    success = true;
+                } finally {
+                    if (success == false) {
+                        // the global ordinals don't make it to the cache, so their bytes would never be released otherwise
+                        breaker.addWithoutBreaking(-(memorySizeInBytes + hashesSizeInBytes));
+                    }
+                }
+                memorySizeInBytes += hashesSizeInBytes;
+            }
+        }
 
         if (logger.isDebugEnabled()) {
             logger.debug(
@@ -75,12 +121,32 @@ public enum GlobalOrdinalsBuilder {
             );
         }
         return new GlobalOrdinalsIndexFieldData(indexSettings, indexFieldData.getFieldName(),
-                atomicFD, ordinalMap, memorySizeInBytes, scriptFunction
+                atomicFD, ordinalMap, ordinalHashes, memorySizeInBytes, scriptFunction
         );
     }
 
+    /**
+     * Computes the murmur3 hash of the term of every global ordinal, as used by the
+     * {@link org.elasticsearch.search.aggregations.metrics.cardinality.CardinalityAggregator}.
+     */
+    static long[] buildOrdinalHashes(AtomicOrdinalsFieldData[] atomicFD, OrdinalMap ordinalMap) throws IOException {
+        final SortedSetDocValues[] values = new SortedSetDocValues[atomicFD.length];
+        final long[] hashes = new long[Math.toIntExact(ordinalMap.getValueCount())];
+        final MurmurHash3.Hash128 hash = new MurmurHash3.Hash128();
+        for (int globalOrd = 0; globalOrd < hashes.length; globalOrd++) {
+            final int segmentIndex = ordinalMap.getFirstSegmentNumber(globalOrd);
+            if (values[segmentIndex] == null) {
+                values[segmentIndex] = atomicFD[segmentIndex].getOrdinalsValues();
+            }
+            final BytesRef term = values[segmentIndex].lookupOrd(ordinalMap.getFirstSegmentOrd(globalOrd));
+            MurmurHash3.hash128(term.bytes, term.offset, term.length, 0, hash);
+            hashes[globalOrd] = hash.h1;
+        }
+        return hashes;
+    }
+
     public static IndexOrdinalsFieldData buildEmpty(IndexSettings indexSettings, final IndexReader indexReader, IndexOrdinalsFieldData indexFieldData) throws IOException {
-        assert indexReader.leaves().size() > 1;
+        assert segmentOrdinalsAreGlobal(indexReader, indexSettings) == false;
 
         final AtomicOrdinalsFieldData[] atomicFD = new AtomicOrdinalsFieldData[indexReader.leaves().size()];
         final SortedSetDocValues[] subs = new SortedSetDocValues[indexReader.leaves().size()];
@@ -109,7 +175,7 @@ public enum GlobalOrdinalsBuilder {
         }
         final OrdinalMap ordinalMap = OrdinalMap.build(null, subs, PackedInts.DEFAULT);
         return new GlobalOrdinalsIndexFieldData(indexSettings, indexFieldData.getFieldName(),
-                atomicFD, ordinalMap, 0, AbstractAtomicOrdinalsFieldData.DEFAULT_SCRIPT_FUNCTION
+                atomicFD, ordinalMap, null, 0, AbstractAtomicOrdinalsFieldData.DEFAULT_SCRIPT_FUNCTION
         );
     }
 
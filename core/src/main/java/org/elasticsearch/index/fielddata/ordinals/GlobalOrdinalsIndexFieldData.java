@@ -24,6 +24,7 @@ import org.apache.lucene.index.OrdinalMap;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.LongValues;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.index.AbstractIndexComponent;
 import org.elasticsearch.index.IndexSettings;
@@ -48,17 +49,20 @@ public class GlobalOrdinalsIndexFieldData extends AbstractIndexComponent impleme
     private final long memorySizeInBytes;
 
     private final OrdinalMap ordinalMap;
+    @Nullable
+    private final long[] ordinalHashes;
     private final Atomic[] atomicReaders;
     private final Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction;
 
 
     protected GlobalOrdinalsIndexFieldData(IndexSettings indexSettings, String fieldName, AtomicOrdinalsFieldData[] segmentAfd,
-                                           OrdinalMap ordinalMap, long memorySizeInBytes, Function<SortedSetDocValues,
-                                           ScriptDocValues<?>> scriptFunction) {
+                                           OrdinalMap ordinalMap, @Nullable long[] ordinalHashes, long memorySizeInBytes,
+                                           Function<SortedSetDocValues, ScriptDocValues<?>> scriptFunction) {
         super(indexSettings);
         this.fieldName = fieldName;
         this.memorySizeInBytes = memorySizeInBytes;
         this.ordinalMap = ordinalMap;
+        this.ordinalHashes = ordinalHashes;
         this.atomicReaders = new Atomic[segmentAfd.length];
         for (int i = 0; i < segmentAfd.length; i++) {
             atomicReaders[i] = new Atomic(segmentAfd[i], ordinalMap, i);
@@ -117,6 +121,25 @@ public class GlobalOrdinalsIndexFieldData extends AbstractIndexComponent impleme
         return ordinalMap;
     }
 
+    /**
+     * Returns the murmur3 hashes of the terms of the given segment, indexed by segment ordinal, or <code>null</code> if
+     * the hashes were not computed with the global ordinals, see
+     * {@link org.elasticsearch.index.fielddata.IndexFieldDataService#INDEX_FIELDDATA_ORDINAL_HASHES_SETTING}.
+     */
+    @Nullable
+    public LongValues getOrdinalHashes(LeafReaderContext context) {
+        if (ordinalHashes == null) {
+            return null;
+        }
+        final LongValues globalOrds = ordinalMap.getGlobalOrds(context.ord);
+        return new LongValues() {
+            @Override
+            public long get(long segmentOrd) {
+                return ordinalHashes[(int) globalOrds.get(segmentOrd)];
+            }
+        };
+    }
+
     private final class Atomic extends AbstractAtomicOrdinalsFieldData {
 
         private final AtomicOrdinalsFieldData afd;
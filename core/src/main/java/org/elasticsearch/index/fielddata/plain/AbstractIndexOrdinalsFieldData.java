@@ -59,7 +59,7 @@ public abstract class AbstractIndexOrdinalsFieldData extends AbstractIndexFieldD
 
     @Override
     public IndexOrdinalsFieldData loadGlobal(DirectoryReader indexReader) {
-        if (indexReader.leaves().size() <= 1) {
+        if (GlobalOrdinalsBuilder.segmentOrdinalsAreGlobal(indexReader, indexSettings)) {
             // ordinals are already global
             return this;
         }
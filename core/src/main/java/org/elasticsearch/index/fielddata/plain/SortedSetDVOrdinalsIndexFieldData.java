@@ -92,7 +92,7 @@ public class SortedSetDVOrdinalsIndexFieldData extends DocValuesIndexFieldData i
 
     @Override
     public IndexOrdinalsFieldData loadGlobal(DirectoryReader indexReader) {
-        if (indexReader.leaves().size() <= 1) {
+        if (GlobalOrdinalsBuilder.segmentOrdinalsAreGlobal(indexReader, indexSettings)) {
             // ordinals are already global
             return this;
         }
@@ -94,6 +94,9 @@ public abstract class AbstractQueryBuilder<QB extends AbstractQueryBuilder<QB>>
 
     @Override
     public final Query toQuery(QueryShardContext context) throws IOException {
+        if (matchesPerSegment() == false) {
+            context.markCrossSegment();
+        }
         Query query = doToQuery(context);
         if (query != null) {
             if (boost != DEFAULT_BOOST) {
@@ -125,6 +128,16 @@ public abstract class AbstractQueryBuilder<QB extends AbstractQueryBuilder<QB>>
 
     protected abstract Query doToQuery(QueryShardContext context) throws IOException;
 
+    /**
+     * Returns <code>true</code> if the documents that this query matches in a segment only depend on the segment, regardless
+     * of the other segments of the shard. Queries are assumed to depend on the other segments unless they override this
+     * method, see {@link QueryShardContext#markCrossSegment()}. Queries that only depend on the other segments with some of
+     * their options can return <code>true</code> and mark the context in {@link #doToQuery(QueryShardContext)} instead.
+     */
+    protected boolean matchesPerSegment() {
+        return false;
+    }
+
     /**
      * Sets the query name for the query.
      */
@@ -157,6 +157,11 @@ public abstract class BaseTermQueryBuilder<QB extends BaseTermQueryBuilder<QB>>
         builder.endObject();
     }
 
+    @Override
+    protected boolean matchesPerSegment() {
+        return true;
+    }
+
     @Override
     protected final int doHashCode() {
         return Objects.hash(fieldName, value);
@@ -413,6 +413,11 @@ public class BoolQueryBuilder extends AbstractQueryBuilder<BoolQueryBuilder> {
         }
     }
 
+    @Override
+    protected boolean matchesPerSegment() {
+        return true;
+    }
+
     @Override
     protected int doHashCode() {
         return Objects.hash(adjustPureNegative,
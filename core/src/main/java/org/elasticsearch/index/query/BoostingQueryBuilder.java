@@ -204,6 +204,11 @@ public class BoostingQueryBuilder extends AbstractQueryBuilder<BoostingQueryBuil
         return new BoostingQuery(positive, negative, negativeBoost);
     }
 
+    @Override
+    protected boolean matchesPerSegment() {
+        return true;
+    }
+
     @Override
     protected int doHashCode() {
         return Objects.hash(negativeBoost, positiveQuery, negativeQuery);
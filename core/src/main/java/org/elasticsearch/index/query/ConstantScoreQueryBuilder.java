@@ -142,6 +142,11 @@ public class ConstantScoreQueryBuilder extends AbstractQueryBuilder<ConstantScor
         return NAME;
     }
 
+    @Override
+    protected boolean matchesPerSegment() {
+        return true;
+    }
+
     @Override
     protected int doHashCode() {
         return Objects.hash(filterBuilder);
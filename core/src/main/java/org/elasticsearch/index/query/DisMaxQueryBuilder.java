@@ -190,6 +190,11 @@ public class DisMaxQueryBuilder extends AbstractQueryBuilder<DisMaxQueryBuilder>
         return new DisjunctionMaxQuery(luceneQueries, tieBreaker);
     }
 
+    @Override
+    protected boolean matchesPerSegment() {
+        return true;
+    }
+
     @Override
     protected int doHashCode() {
         return Objects.hash(queries, tieBreaker);
@@ -161,6 +161,11 @@ public class FieldMaskingSpanQueryBuilder extends AbstractQueryBuilder<FieldMask
         return new FieldMaskingSpanQuery((SpanQuery)innerQuery, fieldInQuery);
     }
 
+    @Override
+    protected boolean matchesPerSegment() {
+        return true;
+    }
+
     @Override
     protected int doHashCode() {
         return Objects.hash(queryBuilder, fieldName);
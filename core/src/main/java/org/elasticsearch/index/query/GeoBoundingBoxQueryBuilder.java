@@ -484,6 +484,11 @@ public class GeoBoundingBoxQueryBuilder extends AbstractQueryBuilder<GeoBounding
                 Objects.equals(ignoreUnmapped, other.ignoreUnmapped);
     }
 
+    @Override
+    protected boolean matchesPerSegment() {
+        return true;
+    }
+
     @Override
     protected int doHashCode() {
         return Objects.hash(topLeft, bottomRight, type, validationMethod, fieldName, ignoreUnmapped);
@@ -298,6 +298,11 @@ public class GeoPolygonQueryBuilder extends AbstractQueryBuilder<GeoPolygonQuery
                 && Objects.equals(ignoreUnmapped, other.ignoreUnmapped);
     }
 
+    @Override
+    protected boolean matchesPerSegment() {
+        return true;
+    }
+
     @Override
     protected int doHashCode() {
         return Objects.hash(validationMethod, fieldName, shell, ignoreUnmapped);
@@ -260,6 +260,11 @@ public class NestedQueryBuilder extends AbstractQueryBuilder<NestedQueryBuilder>
                 && Objects.equals(ignoreUnmapped, that.ignoreUnmapped);
     }
 
+    @Override
+    protected boolean matchesPerSegment() {
+        return true;
+    }
+
     @Override
     protected int doHashCode() {
         return Objects.hash(query, path, scoreMode, innerHitBuilder, ignoreUnmapped);
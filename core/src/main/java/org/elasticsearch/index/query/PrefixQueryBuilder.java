@@ -170,6 +170,9 @@ public class PrefixQueryBuilder extends AbstractQueryBuilder<PrefixQueryBuilder>
     @Override
     protected Query doToQuery(QueryShardContext context) throws IOException {
         MultiTermQuery.RewriteMethod method = QueryParsers.parseRewriteMethod(rewrite, null);
+        if (QueryParsers.isTopTermsRewrite(method)) {
+            context.markCrossSegment();
+        }
 
         Query query = null;
         MappedFieldType fieldType = context.fieldMapper(fieldName);
@@ -187,6 +190,11 @@ public class PrefixQueryBuilder extends AbstractQueryBuilder<PrefixQueryBuilder>
         return query;
     }
 
+    @Override
+    protected boolean matchesPerSegment() {
+        return true;
+    }
+
     @Override
     protected final int doHashCode() {
         return Objects.hash(fieldName, value, rewrite);
@@ -81,6 +81,7 @@ public class QueryShardContext extends QueryRewriteContext {
     private final String clusterAlias;
     private String[] types = Strings.EMPTY_ARRAY;
     private boolean cachable = true;
+    private boolean crossSegment = false;
     private final SetOnce<Boolean> frozen = new SetOnce<>();
     private final String fullyQualifiedIndexName;
 
@@ -378,6 +379,24 @@ public class QueryShardContext extends QueryRewriteContext {
         return cachable;
     }
 
+    /**
+     * Marks the processed search request as matching documents of a segment depending on the other segments of the shard,
+     * for instance through shard level term statistics or global ordinals. Such requests can be cached at the shard level
+     * but their results can't be cached per segment. Queries mark the context unless they override
+     * {@link AbstractQueryBuilder#matchesPerSegment()}.
+     */
+    public final void markCrossSegment() {
+        this.crossSegment = true;
+    }
+
+    /**
+     * Returns <code>true</code> iff the documents that the processed search request matches in a segment depend on the other
+     * segments of the shard, see {@link #markCrossSegment()}.
+     */
+    public final boolean isCrossSegment() {
+        return crossSegment;
+    }
+
     /**
      * Returns the shard ID this context was created for.
      */
@@ -239,6 +239,9 @@ public class RegexpQueryBuilder extends AbstractQueryBuilder<RegexpQueryBuilder>
     @Override
     protected Query doToQuery(QueryShardContext context) throws QueryShardException, IOException {
         MultiTermQuery.RewriteMethod method = QueryParsers.parseRewriteMethod(rewrite, null);
+        if (QueryParsers.isTopTermsRewrite(method)) {
+            context.markCrossSegment();
+        }
 
         Query query = null;
         MappedFieldType fieldType = context.fieldMapper(fieldName);
@@ -255,6 +258,11 @@ public class RegexpQueryBuilder extends AbstractQueryBuilder<RegexpQueryBuilder>
         return query;
     }
 
+    @Override
+    protected boolean matchesPerSegment() {
+        return true;
+    }
+
     @Override
     protected int doHashCode() {
         return Objects.hash(fieldName, value, flagsValue, maxDeterminizedStates, rewrite);
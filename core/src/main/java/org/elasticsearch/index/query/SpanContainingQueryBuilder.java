@@ -151,6 +151,11 @@ public class SpanContainingQueryBuilder extends AbstractQueryBuilder<SpanContain
         return new SpanContainingQuery((SpanQuery) innerBig, (SpanQuery) innerLittle);
     }
 
+    @Override
+    protected boolean matchesPerSegment() {
+        return true;
+    }
+
     @Override
     protected int doHashCode() {
         return Objects.hash(big, little);
@@ -162,6 +162,11 @@ public class SpanWithinQueryBuilder extends AbstractQueryBuilder<SpanWithinQuery
         return new SpanWithinQuery((SpanQuery) innerBig, (SpanQuery) innerLittle);
     }
 
+    @Override
+    protected boolean matchesPerSegment() {
+        return true;
+    }
+
     @Override
     protected int doHashCode() {
         return Objects.hash(big, little);
@@ -120,6 +120,11 @@ public final class TermsSetQueryBuilder extends AbstractQueryBuilder<TermsSetQue
                 Objects.equals(minimumShouldMatchScript, this.minimumShouldMatchScript);
     }
 
+    @Override
+    protected boolean matchesPerSegment() {
+        return true;
+    }
+
     @Override
     protected int doHashCode() {
         return Objects.hash(fieldName, values, minimumShouldMatchField, minimumShouldMatchScript);
@@ -198,10 +198,18 @@ public class WildcardQueryBuilder extends AbstractQueryBuilder<WildcardQueryBuil
 
         WildcardQuery query = new WildcardQuery(term);
         MultiTermQuery.RewriteMethod rewriteMethod = QueryParsers.parseRewriteMethod(rewrite, null);
+        if (QueryParsers.isTopTermsRewrite(rewriteMethod)) {
+            context.markCrossSegment();
+        }
         QueryParsers.setRewriteMethod(query, rewriteMethod);
         return query;
     }
 
+    @Override
+    protected boolean matchesPerSegment() {
+        return true;
+    }
+
     @Override
     protected int doHashCode() {
         return Objects.hash(fieldName, value, rewrite);
@@ -284,6 +284,12 @@ public class FunctionScoreQueryBuilder extends AbstractQueryBuilder<FunctionScor
                 Objects.equals(this.maxBoost, other.maxBoost);
     }
 
+    @Override
+    protected boolean matchesPerSegment() {
+        // min_score filters on scores, which depend on the term statistics of the shard
+        return minScore == null;
+    }
+
     @Override
     protected int doHashCode() {
         return Objects.hash(this.query, Arrays.hashCode(this.filterFunctionBuilders), this.boostMode, this.scoreMode, this.minScore,
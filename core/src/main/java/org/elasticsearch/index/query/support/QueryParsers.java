@@ -20,6 +20,7 @@
 package org.elasticsearch.index.query.support;
 
 import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.TopTermsRewrite;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.ParseField;
 
@@ -43,6 +44,14 @@ public final class QueryParsers {
         query.setRewriteMethod(rewriteMethod);
     }
 
+    /**
+     * Returns <code>true</code> if the given rewrite method only keeps the top terms of the shard, in which case the documents
+     * that the rewritten query matches in a segment depend on the terms of the other segments.
+     */
+    public static boolean isTopTermsRewrite(@Nullable MultiTermQuery.RewriteMethod rewriteMethod) {
+        return rewriteMethod instanceof TopTermsRewrite;
+    }
+
     public static MultiTermQuery.RewriteMethod parseRewriteMethod(@Nullable String rewriteMethod) {
         return parseRewriteMethod(rewriteMethod, MultiTermQuery.CONSTANT_SCORE_REWRITE);
     }
@@ -188,6 +188,10 @@ public class MatchQuery {
     }
 
     public void setCommonTermsCutoff(Float cutoff) {
+        if (cutoff != null) {
+            // the terms that are required depend on their frequency in the shard
+            context.markCrossSegment();
+        }
         this.commonTermsCutoff = cutoff;
     }
 
@@ -200,6 +204,10 @@ public class MatchQuery {
     }
 
     public void setFuzziness(Fuzziness fuzziness) {
+        if (fuzziness != null) {
+            // the terms that are matched are the top terms of the shard within the edit distance
+            context.markCrossSegment();
+        }
         this.fuzziness = fuzziness;
     }
 
@@ -286,6 +294,8 @@ public class MatchQuery {
                 query = builder.createPhraseQuery(field, value.toString(), phraseSlop);
                 break;
             case PHRASE_PREFIX:
+                // the prefix is expanded to the first max_expansions terms of the shard
+                context.markCrossSegment();
                 query = builder.createPhrasePrefixQuery(field, value.toString(), phraseSlop, maxExpansions);
                 break;
             default:
@@ -0,0 +1,173 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.search.stats;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.shard.SearchOperationListener;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A node level {@link SearchOperationListener} that records the latency of the shard level search phases of all indices of the
+ * node in HDR histograms, see {@link SearchLatencyStats}. Recording is wait-free, it only blocks while stats are being taken,
+ * and histograms resize themselves to the range of the recorded values so that they stay small.
+ */
+public final class SearchLatencyListener implements SearchOperationListener {
+
+    public static final Setting<Boolean> SEARCH_LATENCY_HISTOGRAMS_ENABLED_SETTING =
+        Setting.boolSetting("search.latency_histograms.enabled", true, Property.NodeScope);
+
+    /**
+     * The query type that is recorded for requests without a query, which match all documents.
+     */
+    static final String MATCH_ALL = "match_all";
+
+    private final ConcurrentMap<String, IndexRecorders> indices = ConcurrentCollections.newConcurrentMap();
+
+    @Override
+    public void onCanMatchPhase(SearchContext searchContext, long tookInNanos) {
+        indexRecorders(searchContext).phases.record(SearchLatencyStats.CAN_MATCH, tookInNanos);
+    }
+
+    @Override
+    public void onQueryPhase(SearchContext searchContext, long tookInNanos) {
+        final IndexRecorders recorders = indexRecorders(searchContext);
+        recorders.phases.record(SearchLatencyStats.QUERY, tookInNanos);
+        final SearchSourceBuilder source = searchContext.request().source();
+        final QueryBuilder query = source == null ? null : source.query();
+        recorders.queries.record(query == null ? MATCH_ALL : query.getName(), tookInNanos);
+        final AggregatorFactories.Builder aggregations = source == null ? null : source.aggregations();
+        if (aggregations != null) {
+            final List<AggregationBuilder> builders = aggregations.getAggregatorFactories();
+            for (int i = 0; i < builders.size(); i++) {
+                final String type = builders.get(i).getType();
+                if (seenBefore(builders, i, type) == false) {
+                    recorders.aggregations.record(type, tookInNanos);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onFetchPhase(SearchContext searchContext, long tookInNanos) {
+        indexRecorders(searchContext).phases.record(SearchLatencyStats.FETCH, tookInNanos);
+    }
+
+    /**
+     * Returns whether an aggregation that precedes the given position has the given type, so that a request with several
+     * aggregations of the same type is only recorded once for that type.
+     */
+    private static boolean seenBefore(List<AggregationBuilder> builders, int position, String type) {
+        for (int i = 0; i < position; i++) {
+            if (builders.get(i).getType().equals(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private IndexRecorders indexRecorders(SearchContext searchContext) {
+        final String index = searchContext.indexShard().shardId().getIndexName();
+        IndexRecorders recorders = indices.get(index);
+        if (recorders == null) {
+            recorders = indices.computeIfAbsent(index, k -> new IndexRecorders());
+        }
+        return recorders;
+    }
+
+    /**
+     * Drops the latencies of the given index, called once the index is deleted.
+     */
+    public void removeIndex(String index) {
+        indices.remove(index);
+    }
+
+    /**
+     * Returns a snapshot of the latencies that were recorded since the node started.
+     */
+    public SearchLatencyStats stats() {
+        final Map<String, SearchLatencyStats.IndexLatency> stats = new HashMap<>(indices.size());
+        for (Map.Entry<String, IndexRecorders> entry : indices.entrySet()) {
+            final IndexRecorders recorders = entry.getValue();
+            stats.put(entry.getKey(), new SearchLatencyStats.IndexLatency(recorders.phases.snapshot(),
+                recorders.queries.snapshot(), recorders.aggregations.snapshot()));
+        }
+        return new SearchLatencyStats(stats);
+    }
+
+    private static final class IndexRecorders {
+        final LatencyRecorders phases = new LatencyRecorders();
+        final LatencyRecorders queries = new LatencyRecorders();
+        final LatencyRecorders aggregations = new LatencyRecorders();
+    }
+
+    private static final class LatencyRecorders {
+        private final ConcurrentMap<String, LatencyRecorder> recorders = ConcurrentCollections.newConcurrentMap();
+
+        void record(String key, long tookInNanos) {
+            LatencyRecorder recorder = recorders.get(key);
+            if (recorder == null) {
+                recorder = recorders.computeIfAbsent(key, k -> new LatencyRecorder());
+            }
+            recorder.record(tookInNanos);
+        }
+
+        Map<String, Histogram> snapshot() {
+            final Map<String, Histogram> histograms = new HashMap<>(recorders.size());
+            for (Map.Entry<String, LatencyRecorder> entry : recorders.entrySet()) {
+                histograms.put(entry.getKey(), entry.getValue().snapshot());
+            }
+            return histograms;
+        }
+    }
+
+    /**
+     * Records latencies in a {@link Recorder}, whose interval histograms are accumulated into the histogram of all the latencies
+     * recorded so far whenever stats are taken.
+     */
+    private static final class LatencyRecorder {
+        private final Recorder recorder = new Recorder(SearchLatencyStats.SIGNIFICANT_VALUE_DIGITS);
+        private final Histogram accumulated = new Histogram(SearchLatencyStats.SIGNIFICANT_VALUE_DIGITS);
+        private Histogram interval;
+
+        void record(long tookInNanos) {
+            recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(tookInNanos));
+        }
+
+        synchronized Histogram snapshot() {
+            interval = recorder.getIntervalHistogram(interval);
+            accumulated.add(interval);
+            return accumulated.copy();
+        }
+    }
+}
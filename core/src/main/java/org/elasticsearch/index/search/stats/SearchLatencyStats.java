@@ -0,0 +1,231 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.search.stats;
+
+import org.HdrHistogram.Histogram;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+
+/**
+ * Latency distributions of the shard level search phases that ran on a node, per index and per search phase, and for the query
+ * phase also per type of the top level query and per type of the top level aggregations. Latencies are recorded in microseconds
+ * in HDR histograms, which are sent over the wire in full so that the stats of several nodes can be merged with
+ * {@link #add(SearchLatencyStats)} without losing precision.
+ */
+public class SearchLatencyStats implements Writeable, ToXContentFragment {
+
+    public static final String CAN_MATCH = "can_match";
+    public static final String QUERY = "query";
+    public static final String FETCH = "fetch";
+
+    /**
+     * The number of significant value digits of the histograms, which keeps the relative error of the reported values
+     * below 1% while keeping each histogram small.
+     */
+    static final int SIGNIFICANT_VALUE_DIGITS = 2;
+
+    private static final double[] PERCENTILES = new double[] { 50, 90, 99, 99.9 };
+
+    private final Map<String, IndexLatency> indices;
+
+    public SearchLatencyStats(Map<String, IndexLatency> indices) {
+        this.indices = new TreeMap<>(indices);
+    }
+
+    public SearchLatencyStats(StreamInput in) throws IOException {
+        indices = new TreeMap<>(in.readMap(StreamInput::readString, IndexLatency::new));
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeMap(indices, StreamOutput::writeString, (o, latency) -> latency.writeTo(o));
+    }
+
+    /**
+     * Returns the latencies per index name.
+     */
+    public Map<String, IndexLatency> getIndices() {
+        return indices;
+    }
+
+    /**
+     * Merges the latencies of the given stats, usually of another node, into these stats.
+     */
+    public void add(SearchLatencyStats other) {
+        for (Map.Entry<String, IndexLatency> entry : other.indices.entrySet()) {
+            IndexLatency latency = indices.get(entry.getKey());
+            if (latency == null) {
+                latency = new IndexLatency(new TreeMap<>(), new TreeMap<>(), new TreeMap<>());
+                indices.put(entry.getKey(), latency);
+            }
+            latency.add(entry.getValue());
+        }
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(Fields.SEARCH_LATENCY);
+        builder.startObject(Fields.INDICES);
+        for (Map.Entry<String, IndexLatency> entry : indices.entrySet()) {
+            builder.startObject(entry.getKey());
+            entry.getValue().toXContent(builder, params);
+            builder.endObject();
+        }
+        builder.endObject();
+        builder.endObject();
+        return builder;
+    }
+
+    /**
+     * The latencies of the search phases of a single index.
+     */
+    public static class IndexLatency implements Writeable, ToXContentFragment {
+
+        private final Map<String, Histogram> phases;
+        private final Map<String, Histogram> queries;
+        private final Map<String, Histogram> aggregations;
+
+        public IndexLatency(Map<String, Histogram> phases, Map<String, Histogram> queries, Map<String, Histogram> aggregations) {
+            this.phases = new TreeMap<>(phases);
+            this.queries = new TreeMap<>(queries);
+            this.aggregations = new TreeMap<>(aggregations);
+        }
+
+        IndexLatency(StreamInput in) throws IOException {
+            phases = new TreeMap<>(in.readMap(StreamInput::readString, SearchLatencyStats::readHistogram));
+            queries = new TreeMap<>(in.readMap(StreamInput::readString, SearchLatencyStats::readHistogram));
+            aggregations = new TreeMap<>(in.readMap(StreamInput::readString, SearchLatencyStats::readHistogram));
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeMap(phases, StreamOutput::writeString, SearchLatencyStats::writeHistogram);
+            out.writeMap(queries, StreamOutput::writeString, SearchLatencyStats::writeHistogram);
+            out.writeMap(aggregations, StreamOutput::writeString, SearchLatencyStats::writeHistogram);
+        }
+
+        /**
+         * Returns the latencies per search phase, one of {@link #CAN_MATCH}, {@link #QUERY} or {@link #FETCH}.
+         */
+        public Map<String, Histogram> getPhases() {
+            return phases;
+        }
+
+        /**
+         * Returns the latencies of the query phase per type of the top level query.
+         */
+        public Map<String, Histogram> getQueries() {
+            return queries;
+        }
+
+        /**
+         * Returns the latencies of the query phase per type of the top level aggregations.
+         */
+        public Map<String, Histogram> getAggregations() {
+            return aggregations;
+        }
+
+        void add(IndexLatency other) {
+            merge(phases, other.phases);
+            merge(queries, other.queries);
+            merge(aggregations, other.aggregations);
+        }
+
+        private static void merge(Map<String, Histogram> histograms, Map<String, Histogram> others) {
+            for (Map.Entry<String, Histogram> entry : others.entrySet()) {
+                Histogram histogram = histograms.get(entry.getKey());
+                if (histogram == null) {
+                    histogram = new Histogram(SIGNIFICANT_VALUE_DIGITS);
+                    histograms.put(entry.getKey(), histogram);
+                }
+                histogram.add(entry.getValue());
+            }
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            histogramsToXContent(Fields.PHASES, phases, builder);
+            histogramsToXContent(Fields.QUERIES, queries, builder);
+            histogramsToXContent(Fields.AGGREGATIONS, aggregations, builder);
+            return builder;
+        }
+
+        private static void histogramsToXContent(String name, Map<String, Histogram> histograms,
+                                                 XContentBuilder builder) throws IOException {
+            builder.startObject(name);
+            for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                Histogram histogram = entry.getValue();
+                builder.startObject(entry.getKey());
+                builder.field(Fields.COUNT, histogram.getTotalCount());
+                builder.field(Fields.MIN_IN_MICROS, histogram.getMinValue());
+                builder.field(Fields.MAX_IN_MICROS, histogram.getMaxValue());
+                builder.field(Fields.MEAN_IN_MICROS, (long) histogram.getMean());
+                builder.startObject(Fields.PERCENTILES_IN_MICROS);
+                for (double percentile : PERCENTILES) {
+                    builder.field(Double.toString(percentile), histogram.getValueAtPercentile(percentile));
+                }
+                builder.endObject();
+                builder.endObject();
+            }
+            builder.endObject();
+        }
+    }
+
+    static Histogram readHistogram(StreamInput in) throws IOException {
+        final byte[] bytes = in.readByteArray();
+        final Histogram histogram;
+        try {
+            histogram = Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(bytes), 0);
+        } catch (DataFormatException e) {
+            throw new IOException("failed to decode search latency histogram", e);
+        }
+        histogram.setAutoResize(true);
+        return histogram;
+    }
+
+    static void writeHistogram(StreamOutput out, Histogram histogram) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        final int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        out.writeVInt(length);
+        out.writeBytes(buffer.array(), 0, length);
+    }
+
+    static final class Fields {
+        static final String SEARCH_LATENCY = "search_latency";
+        static final String INDICES = "indices";
+        static final String PHASES = "phases";
+        static final String QUERIES = "queries";
+        static final String AGGREGATIONS = "aggregations";
+        static final String COUNT = "count";
+        static final String MIN_IN_MICROS = "min_in_micros";
+        static final String MAX_IN_MICROS = "max_in_micros";
+        static final String MEAN_IN_MICROS = "mean_in_micros";
+        static final String PERCENTILES_IN_MICROS = "percentiles_in_micros";
+    }
+}
@@ -50,6 +50,7 @@ import org.elasticsearch.cluster.routing.RecoverySource;
 import org.elasticsearch.cluster.routing.RecoverySource.SnapshotRecoverySource;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.common.Booleans;
+import org.elasticsearch.common.CheckedConsumer;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
@@ -89,6 +90,7 @@ import org.elasticsearch.index.fielddata.ShardFieldData;
 import org.elasticsearch.index.flush.FlushStats;
 import org.elasticsearch.index.get.GetStats;
 import org.elasticsearch.index.get.ShardGetService;
+import org.elasticsearch.index.mapper.DocumentMapper;
 import org.elasticsearch.index.mapper.DocumentMapperForType;
 import org.elasticsearch.index.mapper.IdFieldMapper;
 import org.elasticsearch.index.mapper.MapperParsingException;
@@ -120,6 +122,7 @@ import org.elasticsearch.index.warmer.ShardIndexWarmerService;
 import org.elasticsearch.index.warmer.WarmerStats;
 import org.elasticsearch.indices.IndexingMemoryController;
 import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.indices.TranslogSyncCoordinator;
 import org.elasticsearch.indices.TypeMissingException;
 import org.elasticsearch.indices.cluster.IndicesClusterStateService;
 import org.elasticsearch.indices.recovery.PeerRecoveryTargetService;
@@ -157,6 +160,7 @@ import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import static org.elasticsearch.index.mapper.SourceToParse.source;
@@ -194,6 +198,8 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
 
     private final IndexingOperationListener indexingOperationListeners;
     private final Runnable globalCheckpointSyncer;
+    @Nullable
+    private final TranslogSyncCoordinator translogSyncCoordinator;
 
     Runnable getGlobalCheckpointSyncer() {
         return globalCheckpointSyncer;
@@ -251,7 +257,8 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
             Engine.Warmer warmer,
             List<SearchOperationListener> searchOperationListener,
             List<IndexingOperationListener> listeners,
-            Runnable globalCheckpointSyncer) throws IOException {
+            Runnable globalCheckpointSyncer,
+            @Nullable TranslogSyncCoordinator translogSyncCoordinator) throws IOException {
         super(shardRouting.shardId(), indexSettings);
         assert shardRouting.initializing();
         this.shardRouting = shardRouting;
@@ -272,6 +279,7 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         listenersList.add(internalIndexingStats);
         this.indexingOperationListeners = new IndexingOperationListener.CompositeListener(listenersList, logger);
         this.globalCheckpointSyncer = globalCheckpointSyncer;
+        this.translogSyncCoordinator = translogSyncCoordinator;
         final List<SearchOperationListener> searchListenersList = new ArrayList<>(searchOperationListener);
         searchListenersList.add(searchStats);
         this.searchOperationListener = new SearchOperationListener.CompositeListener(searchListenersList, logger);
@@ -282,6 +290,8 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         this.shardBitsetFilterCache = new ShardBitsetFilterCache(shardId, indexSettings);
         state = IndexShardState.CREATED;
         this.path = path;
+        // spill files of searches that didn't get to delete them, e.g. because the node crashed
+        IOUtils.rm(path.resolveTermsSpill());
         /* create engine config */
         logger.debug("state: [CREATED]");
 
@@ -644,28 +654,87 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
     public Engine.IndexResult applyIndexOperationOnPrimary(long version, VersionType versionType, SourceToParse sourceToParse,
                                                            long autoGeneratedTimestamp, boolean isRetry,
                                                            Consumer<Mapping> onMappingUpdate) throws IOException {
+        return applyIndexOperationOnPrimary(version, versionType, sourceToParse, autoGeneratedTimestamp, isRetry, onMappingUpdate, null);
+    }
+
+    /**
+     * Same as {@link #applyIndexOperationOnPrimary(long, VersionType, SourceToParse, long, boolean, Consumer)} but uses the document
+     * that was parsed ahead of time with {@link #preParseIndexOperation(SourceToParse)}, unless the mapping of its type changed in the
+     * meantime in which case the source is parsed again.
+     */
+    public Engine.IndexResult applyIndexOperationOnPrimary(long version, VersionType versionType, SourceToParse sourceToParse,
+                                                           long autoGeneratedTimestamp, boolean isRetry,
+                                                           Consumer<Mapping> onMappingUpdate,
+                                                           @Nullable PreParsedDocument preParsed) throws IOException {
         return applyIndexOperation(SequenceNumbers.UNASSIGNED_SEQ_NO, primaryTerm, version, versionType, autoGeneratedTimestamp,
-            isRetry, Engine.Operation.Origin.PRIMARY, sourceToParse, onMappingUpdate);
+            isRetry, Engine.Operation.Origin.PRIMARY, sourceToParse, onMappingUpdate, preParsed);
+    }
+
+    /**
+     * Parses the source of an index operation with the current mapping of its type so that the parsing doesn't have to happen when
+     * the operation is applied on the primary. This method may be called concurrently from any thread. Returns <code>null</code> if
+     * the document fails to parse or requires a mapping update, the source is parsed again when the operation is applied in that case
+     * so that failures are reported and mapping updates are handled as usual.
+     */
+    @Nullable
+    public PreParsedDocument preParseIndexOperation(SourceToParse sourceToParse) {
+        final long startTime = System.nanoTime();
+        try {
+            final DocumentMapperForType docMapper = docMapper(sourceToParse.type());
+            if (docMapper.getMapping() != null) {
+                return null;
+            }
+            final ParsedDocument doc = docMapper.getDocumentMapper().parse(sourceToParse);
+            if (doc.dynamicMappingsUpdate() != null) {
+                return null;
+            }
+            return new PreParsedDocument(docMapper.getDocumentMapper(), doc, startTime);
+        } catch (Exception e) {
+            logger.trace("failed to parse document ahead of time", e);
+            return null;
+        }
+    }
+
+    /**
+     * A document that was parsed ahead of time, see {@link #preParseIndexOperation(SourceToParse)}. It must only be applied once.
+     */
+    public static final class PreParsedDocument {
+        private final DocumentMapper mapper;
+        private final ParsedDocument doc;
+        private final long startTime;
+
+        private PreParsedDocument(DocumentMapper mapper, ParsedDocument doc, long startTime) {
+            this.mapper = mapper;
+            this.doc = doc;
+            this.startTime = startTime;
+        }
     }
 
     public Engine.IndexResult applyIndexOperationOnReplica(long seqNo, long version, VersionType versionType,
                                                            long autoGeneratedTimeStamp, boolean isRetry, SourceToParse sourceToParse,
                                                            Consumer<Mapping> onMappingUpdate) throws IOException {
         return applyIndexOperation(seqNo, primaryTerm, version, versionType, autoGeneratedTimeStamp, isRetry,
-            Engine.Operation.Origin.REPLICA, sourceToParse, onMappingUpdate);
+            Engine.Operation.Origin.REPLICA, sourceToParse, onMappingUpdate, null);
     }
 
     private Engine.IndexResult applyIndexOperation(long seqNo, long opPrimaryTerm, long version, VersionType versionType,
                                                    long autoGeneratedTimeStamp, boolean isRetry, Engine.Operation.Origin origin,
-                                                   SourceToParse sourceToParse, Consumer<Mapping> onMappingUpdate) throws IOException {
+                                                   SourceToParse sourceToParse, Consumer<Mapping> onMappingUpdate,
+                                                   @Nullable PreParsedDocument preParsed) throws IOException {
         assert opPrimaryTerm <= this.primaryTerm : "op term [ " + opPrimaryTerm + " ] > shard term [" + this.primaryTerm + "]";
         assert versionType.validateVersionForWrites(version);
         ensureWriteAllowed(origin);
         Engine.Index operation;
         try {
-            operation = prepareIndex(docMapper(sourceToParse.type()), indexSettings.getIndexVersionCreated(), sourceToParse, seqNo,
-                    opPrimaryTerm, version, versionType, origin,
-                autoGeneratedTimeStamp, isRetry);
+            final DocumentMapperForType docMapper = docMapper(sourceToParse.type());
+            if (preParsed != null && docMapper.getMapping() == null && docMapper.getDocumentMapper() == preParsed.mapper) {
+                operation = prepareIndex(docMapper.getDocumentMapper(), indexSettings.getIndexVersionCreated(), preParsed.doc,
+                    preParsed.startTime, seqNo, opPrimaryTerm, version, versionType, origin, autoGeneratedTimeStamp, isRetry);
+            } else {
+                operation = prepareIndex(docMapper, indexSettings.getIndexVersionCreated(), sourceToParse, seqNo,
+                        opPrimaryTerm, version, versionType, origin,
+                    autoGeneratedTimeStamp, isRetry);
+            }
             Mapping update = operation.parsedDoc().dynamicMappingsUpdate();
             if (update != null) {
                 // wrap this in the outer catch block, as the master might also throw a MapperParsingException when updating the mapping
@@ -689,10 +758,17 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         if (docMapper.getMapping() != null) {
             doc.addDynamicMappingsUpdate(docMapper.getMapping());
         }
+        return prepareIndex(docMapper.getDocumentMapper(), indexCreatedVersion, doc, startTime, seqNo, primaryTerm, version, versionType,
+            origin, autoGeneratedIdTimestamp, isRetry);
+    }
+
+    private static Engine.Index prepareIndex(DocumentMapper docMapper, Version indexCreatedVersion, ParsedDocument doc, long startTime,
+            long seqNo, long primaryTerm, long version, VersionType versionType, Engine.Operation.Origin origin,
+            long autoGeneratedIdTimestamp, boolean isRetry) {
         Term uid;
         if (indexCreatedVersion.onOrAfter(Version.V_6_0_0_beta1)) {
             uid = new Term(IdFieldMapper.NAME, Uid.encodeId(doc.id()));
-        } else if (docMapper.getDocumentMapper().idFieldMapper().fieldType().indexOptions() != IndexOptions.NONE) {
+        } else if (docMapper.idFieldMapper().fieldType().indexOptions() != IndexOptions.NONE) {
             uid = new Term(IdFieldMapper.NAME, doc.id());
         } else {
             uid = new Term(UidFieldMapper.NAME, Uid.createUidAsBytes(doc.type(), doc.id()));
@@ -1200,7 +1276,7 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
                 result = applyIndexOperation(index.seqNo(), index.primaryTerm(), index.version(),
                     index.versionType().versionTypeForReplicationAndRecovery(), index.getAutoGeneratedIdTimestamp(), true, origin,
                     source(shardId.getIndexName(), index.type(), index.id(), index.source(), XContentFactory.xContentType(index.source()))
-                        .routing(index.routing()).parent(index.parent()), onMappingUpdate);
+                        .routing(index.routing()).parent(index.parent()), onMappingUpdate, null);
                 break;
             case DELETE:
                 final Translog.Delete delete = (Translog.Delete) operation;
@@ -2274,19 +2350,23 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         return indexShardOperationPermits.getActiveOperationsCount(); // refCount is incremented on successful acquire and decremented on close
     }
 
+    private final CheckedConsumer<Stream<Translog.Location>, IOException> translogSyncer = locations -> {
+        try {
+            final Engine engine = getEngine();
+            engine.getTranslog().ensureSynced(locations);
+        } catch (AlreadyClosedException ex) {
+            // that's fine since we already synced everything on engine close - this also is conform with the methods
+            // documentation
+        } catch (IOException ex) { // if this fails we are in deep shit - fail the request
+            logger.debug("failed to sync translog", ex);
+            throw ex;
+        }
+    };
+
     private final AsyncIOProcessor<Translog.Location> translogSyncProcessor = new AsyncIOProcessor<Translog.Location>(logger, 1024) {
         @Override
         protected void write(List<Tuple<Translog.Location, Consumer<Exception>>> candidates) throws IOException {
-            try {
-                final Engine engine = getEngine();
-                engine.getTranslog().ensureSynced(candidates.stream().map(Tuple::v1));
-            } catch (AlreadyClosedException ex) {
-                // that's fine since we already synced everything on engine close - this also is conform with the methods
-                // documentation
-            } catch (IOException ex) { // if this fails we are in deep shit - fail the request
-                logger.debug("failed to sync translog", ex);
-                throw ex;
-            }
+            translogSyncer.accept(candidates.stream().map(Tuple::v1));
         }
     };
 
@@ -2298,10 +2378,16 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
      * one thread blocking on the sync an all others can continue indexing.
      * NOTE: if the syncListener throws an exception when it's processed the exception will only be logged. Users should make sure that the
      * listener handles all exception cases internally.
+     * If the node groups translog syncs, see {@link TranslogSyncCoordinator}, the location is synced together with the pending
+     * syncs of the other shards on the same data path instead.
      */
     public final void sync(Translog.Location location, Consumer<Exception> syncListener) {
         verifyNotClosed();
-        translogSyncProcessor.put(location, syncListener);
+        if (translogSyncCoordinator != null && translogSyncCoordinator.isEnabled()) {
+            translogSyncCoordinator.sync(path.getRootDataPath(), translogSyncer, location, syncListener);
+        } else {
+            translogSyncProcessor.put(location, syncListener);
+        }
     }
 
     public final void sync() throws IOException {
@@ -32,6 +32,14 @@ import java.util.List;
  */
 public interface SearchOperationListener {
 
+    /**
+     * Executed after the can match phase, which checks whether a shard can possibly match a request without running the query,
+     * finished.
+     * @param searchContext the search context that was created to rewrite the request
+     * @param tookInNanos the number of nanoseconds the can match phase took
+     */
+    default void onCanMatchPhase(SearchContext searchContext, long tookInNanos) {}
+
     /**
      * Executed before the query phase is executed
      * @param searchContext the current search context
@@ -149,6 +157,17 @@ public interface SearchOperationListener {
             }
         }
 
+        @Override
+        public void onCanMatchPhase(SearchContext searchContext, long tookInNanos) {
+            for (SearchOperationListener listener : listeners) {
+                try {
+                    listener.onCanMatchPhase(searchContext, tookInNanos);
+                } catch (Exception e) {
+                    logger.warn((Supplier<?>) () -> new ParameterizedMessage("onCanMatchPhase listener [{}] failed", listener), e);
+                }
+            }
+        }
+
         @Override
         public void onQueryPhase(SearchContext searchContext, long tookInNanos) {
             for (SearchOperationListener listener : listeners) {
@@ -40,6 +40,7 @@ import java.util.stream.Collectors;
 public final class ShardPath {
     public static final String INDEX_FOLDER_NAME = "index";
     public static final String TRANSLOG_FOLDER_NAME = "translog";
+    public static final String TERMS_SPILL_FOLDER_NAME = "terms_spill";
 
     private final Path path;
     private final ShardId shardId;
@@ -68,6 +69,14 @@ public final class ShardPath {
         return path.resolve(INDEX_FOLDER_NAME);
     }
 
+    /**
+     * Returns the directory that terms aggregations write their temporary files to when they spill to disk. It only holds
+     * files of searches that are running, so it is wiped whenever the shard is created.
+     */
+    public Path resolveTermsSpill() {
+        return path.resolve(TERMS_SPILL_FOLDER_NAME);
+    }
+
     public Path getDataPath() {
         return path;
     }
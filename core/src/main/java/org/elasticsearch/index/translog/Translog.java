@@ -30,6 +30,9 @@ import org.elasticsearch.common.UUIDs;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.bytes.ReleasablePagedBytesReference;
+import org.elasticsearch.common.compress.CompressorFactory;
+import org.elasticsearch.common.compress.DeflateCompressor;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -37,6 +40,7 @@ import org.elasticsearch.common.io.stream.Writeable;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.lucene.uid.Versions;
+import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.concurrent.ReleasableLock;
 import org.elasticsearch.index.IndexSettings;
@@ -61,7 +65,6 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -69,6 +72,7 @@ import java.util.function.LongSupplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
+import java.util.zip.Deflater;
 
 /**
  * A Translog is a per index shard component that records all non-committed index operations in a durable manner.
@@ -106,6 +110,12 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
     public static final String TRANSLOG_FILE_PREFIX = "translog-";
     public static final String TRANSLOG_FILE_SUFFIX = ".tlog";
     public static final String CHECKPOINT_SUFFIX = ".ckp";
+    // marks operations that are compressed, it must not clash with the ids of Operation.Type
+    static final byte COMPRESSED_OPERATION = (byte) 0x7f;
+    // smaller operations hardly compress, so they are written as they are even if compression is enabled
+    static final int COMPRESSION_THRESHOLD_IN_BYTES = 512;
+    // the deflater and buffers that compress operations are reused by each writing thread rather than allocated per operation
+    private static final ThreadLocal<CompressionBuffers> COMPRESSION_BUFFERS = ThreadLocal.withInitial(CompressionBuffers::new);
     public static final String CHECKPOINT_FILE_NAME = "translog" + CHECKPOINT_SUFFIX;
 
     static final Pattern PARSE_STRICT_ID_PATTERN = Pattern.compile("^" + TRANSLOG_FILE_PREFIX + "(\\d+)(\\.tlog)$");
@@ -123,6 +133,9 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
     private final LongSupplier globalCheckpointSupplier;
     private final String translogUUID;
     private final TranslogDeletionPolicy deletionPolicy;
+    // the fsyncs that were actually executed and the requests to sync that they served
+    private final CounterMetric syncs = new CounterMetric();
+    private final CounterMetric syncRequests = new CounterMetric();
 
     /**
      * Creates a new Translog instance. This method will create a new transaction log unless the given {@link TranslogGeneration} is
@@ -493,7 +506,11 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
         try {
             final long start = out.position();
             out.skip(Integer.BYTES);
-            writeOperationNoSize(new BufferedChecksumStreamOutput(out), operation);
+            if (config.getIndexSettings().isTranslogCompress()) {
+                writeCompressedOperationNoSize(new BufferedChecksumStreamOutput(out), operation);
+            } else {
+                writeOperationNoSize(new BufferedChecksumStreamOutput(out), operation);
+            }
             final long end = out.position();
             final int operationSize = (int) (end - Integer.BYTES - start);
             out.seek(start);
@@ -665,9 +682,10 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
      * Sync's the translog.
      */
     public void sync() throws IOException {
+        syncRequests.inc();
         try (ReleasableLock lock = readLock.acquire()) {
-            if (closed.get() == false) {
-                current.sync();
+            if (closed.get() == false && current.sync()) {
+                syncs.inc();
             }
         } catch (Exception ex) {
             try {
@@ -704,10 +722,18 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
      * @return Returns <code>true</code> iff this call caused an actual sync operation otherwise <code>false</code>
      */
     public boolean ensureSynced(Location location) throws IOException {
+        return ensureSynced(location, 1);
+    }
+
+    private boolean ensureSynced(Location location, long requests) throws IOException {
+        syncRequests.inc(requests);
         try (ReleasableLock lock = readLock.acquire()) {
             if (location.generation == current.getGeneration()) { // if we have a new one it's already synced
                 ensureOpen();
-                return current.syncUpTo(location.translogLocation + location.size);
+                if (current.syncUpTo(location.translogLocation + location.size)) {
+                    syncs.inc();
+                    return true;
+                }
             }
         } catch (Exception ex) {
             try {
@@ -728,11 +754,18 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
      * @return Returns <code>true</code> iff this call caused an actual sync operation otherwise <code>false</code>
      */
     public boolean ensureSynced(Stream<Location> locations) throws IOException {
-        final Optional<Location> max = locations.max(Location::compareTo);
+        Location max = null;
+        long requests = 0;
+        for (Iterator<Location> iterator = locations.iterator(); iterator.hasNext(); requests++) {
+            final Location location = iterator.next();
+            if (max == null || location.compareTo(max) > 0) {
+                max = location;
+            }
+        }
         // we only need to sync the max location since it will sync all other
         // locations implicitly
-        if (max.isPresent()) {
-            return ensureSynced(max.get());
+        if (max != null) {
+            return ensureSynced(max, requests);
         } else {
             return false;
         }
@@ -758,7 +791,8 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
     public TranslogStats stats() {
         // acquire lock to make the two numbers roughly consistent (no file change half way)
         try (ReleasableLock lock = readLock.acquire()) {
-            return new TranslogStats(totalOperations(), sizeInBytes(), uncommittedOperations(), uncommittedSizeInBytes());
+            return new TranslogStats(totalOperations(), sizeInBytes(), uncommittedOperations(), uncommittedSizeInBytes(),
+                syncs.count(), syncRequests.count());
         }
     }
 
@@ -896,7 +930,14 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
          * {@link Operation#writeType(Operation, StreamOutput)}
          */
         static Operation readType(StreamInput input) throws IOException {
-            Translog.Operation.Type type = Translog.Operation.Type.fromId(input.readByte());
+            return readType(input.readByte(), input);
+        }
+
+        /**
+         * Reads the translog operation of the given type id from the given stream
+         */
+        static Operation readType(byte id, StreamInput input) throws IOException {
+            Translog.Operation.Type type = Translog.Operation.Type.fromId(id);
             switch (type) {
                 case CREATE:
                     // the deserialization logic in Index was identical to that of Create when create was deprecated
@@ -1440,7 +1481,16 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
                 verifyChecksum(in);
                 in.reset();
             }
-            operation = Translog.Operation.readType(in);
+            final byte type = in.readByte();
+            if (type == COMPRESSED_OPERATION) {
+                // the checksum covers the compressed bytes so that corruptions are detected before decompressing
+                final BytesReference compressed = in.readBytesReference(opSize - Integer.BYTES - 1);
+                try (StreamInput decompressed = CompressorFactory.COMPRESSOR.streamInput(compressed.streamInput())) {
+                    operation = Translog.Operation.readType(decompressed);
+                }
+            } else {
+                operation = Translog.Operation.readType(type, in);
+            }
             verifyChecksum(in);
         } catch (TranslogCorruptedException e) {
             throw e;
@@ -1478,6 +1528,41 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
 
     }
 
+    /**
+     * Writes the operation like {@link #writeOperationNoSize(BufferedChecksumStreamOutput, Operation)} but compresses its type and
+     * content if it is at least {@link #COMPRESSION_THRESHOLD_IN_BYTES} long and gets smaller. The checksum is computed on the
+     * compressed bytes. Only used for the translog files, operations that are sent to other nodes are never compressed.
+     */
+    static void writeCompressedOperationNoSize(BufferedChecksumStreamOutput out, Translog.Operation op) throws IOException {
+        final CompressionBuffers buffers = COMPRESSION_BUFFERS.get();
+        try {
+            Translog.Operation.writeType(op, buffers.serialized);
+            out.resetDigest();
+            if (buffers.serialized.size() >= COMPRESSION_THRESHOLD_IN_BYTES) {
+                DeflateCompressor.compress(buffers.serialized.bytes(), buffers.deflater, buffers.buffer, buffers.compressed);
+            }
+            if (buffers.compressed.size() > 0 && buffers.compressed.size() < buffers.serialized.size()) {
+                out.writeByte(COMPRESSED_OPERATION);
+                buffers.compressed.bytes().writeTo(out);
+            } else {
+                buffers.serialized.bytes().writeTo(out);
+            }
+            long checksum = out.getChecksum();
+            out.writeInt((int) checksum);
+        } finally {
+            // also gives back the pages of large operations
+            buffers.serialized.reset();
+            buffers.compressed.reset();
+        }
+    }
+
+    private static final class CompressionBuffers {
+        final BytesStreamOutput serialized = new BytesStreamOutput();
+        final BytesStreamOutput compressed = new BytesStreamOutput();
+        final Deflater deflater = DeflateCompressor.newDeflater();
+        final byte[] buffer = new byte[4096];
+    }
+
     public static void writeOperationNoSize(BufferedChecksumStreamOutput out, Translog.Operation op) throws IOException {
         // This BufferedChecksumStreamOutput remains unclosed on purpose,
         // because closing it closes the underlying stream, which we don't
@@ -34,11 +34,18 @@ public class TranslogStats implements Streamable, ToXContentFragment {
     private int numberOfOperations;
     private long uncommittedSizeInBytes;
     private int  uncommittedOperations;
+    private long syncCount;
+    private long syncRequestCount;
 
     public TranslogStats() {
     }
 
     public TranslogStats(int numberOfOperations, long translogSizeInBytes, int uncommittedOperations, long uncommittedSizeInBytes) {
+        this(numberOfOperations, translogSizeInBytes, uncommittedOperations, uncommittedSizeInBytes, 0, 0);
+    }
+
+    public TranslogStats(int numberOfOperations, long translogSizeInBytes, int uncommittedOperations, long uncommittedSizeInBytes,
+                         long syncCount, long syncRequestCount) {
         if (numberOfOperations < 0) {
             throw new IllegalArgumentException("numberOfOperations must be >= 0");
         }
@@ -51,10 +58,18 @@ public class TranslogStats implements Streamable, ToXContentFragment {
         if (uncommittedSizeInBytes < 0) {
             throw new IllegalArgumentException("uncommittedSizeInBytes must be >= 0");
         }
+        if (syncCount < 0) {
+            throw new IllegalArgumentException("syncCount must be >= 0");
+        }
+        if (syncRequestCount < 0) {
+            throw new IllegalArgumentException("syncRequestCount must be >= 0");
+        }
         this.numberOfOperations = numberOfOperations;
         this.translogSizeInBytes = translogSizeInBytes;
         this.uncommittedSizeInBytes = uncommittedSizeInBytes;
         this.uncommittedOperations = uncommittedOperations;
+        this.syncCount = syncCount;
+        this.syncRequestCount = syncRequestCount;
     }
 
     public void add(TranslogStats translogStats) {
@@ -66,6 +81,8 @@ public class TranslogStats implements Streamable, ToXContentFragment {
         this.translogSizeInBytes += translogStats.translogSizeInBytes;
         this.uncommittedOperations += translogStats.uncommittedOperations;
         this.uncommittedSizeInBytes += translogStats.uncommittedSizeInBytes;
+        this.syncCount += translogStats.syncCount;
+        this.syncRequestCount += translogStats.syncRequestCount;
     }
 
     public long getTranslogSizeInBytes() {
@@ -86,6 +103,16 @@ public class TranslogStats implements Streamable, ToXContentFragment {
         return uncommittedOperations;
     }
 
+    /** the number of fsyncs of the translog */
+    public long getSyncCount() {
+        return syncCount;
+    }
+
+    /** the number of requests to sync the translog, several of them may be served by a single fsync */
+    public long getSyncRequestCount() {
+        return syncRequestCount;
+    }
+
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
         builder.startObject("translog");
@@ -93,6 +120,8 @@ public class TranslogStats implements Streamable, ToXContentFragment {
         builder.byteSizeField("size_in_bytes", "size", translogSizeInBytes);
         builder.field("uncommitted_operations", uncommittedOperations);
         builder.byteSizeField("uncommitted_size_in_bytes", "uncommitted_size", uncommittedSizeInBytes);
+        builder.field("sync_count", syncCount);
+        builder.field("sync_request_count", syncRequestCount);
         builder.endObject();
         return builder;
     }
@@ -113,6 +142,10 @@ public class TranslogStats implements Streamable, ToXContentFragment {
             uncommittedOperations = numberOfOperations;
             uncommittedSizeInBytes = translogSizeInBytes;
         }
+        if (in.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            syncCount = in.readVLong();
+            syncRequestCount = in.readVLong();
+        }
     }
 
     @Override
@@ -123,5 +156,9 @@ public class TranslogStats implements Streamable, ToXContentFragment {
             out.writeVInt(uncommittedOperations);
             out.writeVLong(uncommittedSizeInBytes);
         }
+        if (out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            out.writeVLong(syncCount);
+            out.writeVLong(syncRequestCount);
+        }
     }
 }
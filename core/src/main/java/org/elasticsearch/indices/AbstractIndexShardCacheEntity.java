@@ -34,6 +34,14 @@ abstract class AbstractIndexShardCacheEntity implements IndicesRequestCache.Cach
      */
     protected abstract ShardRequestCache stats();
 
+    /**
+     * Returns <code>true</code> if the entries of this entity hold fetched search hits. Their statistics are tracked
+     * separately from the other entries, including the query results of requests with <code>size &gt; 0</code>.
+     */
+    protected boolean cachesHits() {
+        return false;
+    }
+
     @Override
     public final void onCached(IndicesRequestCache.Key key, BytesReference value) {
         stats().onCached(key, value);
@@ -41,17 +49,29 @@ abstract class AbstractIndexShardCacheEntity implements IndicesRequestCache.Cach
 
     @Override
     public final void onHit() {
-        stats().onHit();
+        if (cachesHits()) {
+            stats().onHitsHit();
+        } else {
+            stats().onHit();
+        }
     }
 
     @Override
     public final void onMiss() {
-        stats().onMiss();
+        if (cachesHits()) {
+            stats().onHitsMiss();
+        } else {
+            stats().onMiss();
+        }
     }
 
     @Override
     public final void onRemoval(RemovalNotification<IndicesRequestCache.Key, BytesReference> notification) {
-        stats().onRemoval(notification.getKey(), notification.getValue(),
-                notification.getRemovalReason() == RemovalNotification.RemovalReason.EVICTED);
+        final boolean evicted = notification.getRemovalReason() == RemovalNotification.RemovalReason.EVICTED;
+        if (cachesHits()) {
+            stats().onHitsRemoval(notification.getKey(), notification.getValue(), evicted);
+        } else {
+            stats().onRemoval(notification.getKey(), notification.getValue(), evicted);
+        }
     }
 }
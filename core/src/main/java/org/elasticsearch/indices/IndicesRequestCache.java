@@ -23,6 +23,7 @@ import com.carrotsearch.hppc.ObjectHashSet;
 import com.carrotsearch.hppc.ObjectSet;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.RamUsageEstimator;
 import org.elasticsearch.common.bytes.BytesReference;
@@ -44,6 +45,7 @@ import java.io.Closeable;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.Supplier;
@@ -55,8 +57,14 @@ import java.util.function.Supplier;
  * eviction to evict old reader associated cache entries as well as scheduler reaper to clean readers that
  * are no longer used or closed shards.
  * <p>
- * Currently, the cache is only enabled for count requests, and can only be opted in on an index
- * level setting that can be dynamically changed and defaults to false.
+ * By default the cache is only used for requests with <code>size=0</code>. Small pages of hits can be cached too,
+ * either per request or through the {@link #INDEX_CACHE_REQUEST_HITS_ENABLED_SETTING} index setting, in which case
+ * both the query phase result and the fetched hits are cached.
+ * <p>
+ * The cache can also hold the partial aggregation results of single segments when
+ * {@link #INDEX_CACHE_REQUEST_SEGMENT_AGGS_ENABLED_SETTING} is set. These entries are keyed on the core of the segment
+ * and its number of deleted documents instead of the top level reader so that they survive refreshes, and are dropped
+ * when the core of the segment is closed, ie. when a merge retired the segment.
  * <p>
  * There are still several TODOs left in this class, some easily addressable, some more complex, but the support
  * is functional.
@@ -70,6 +78,23 @@ public final class IndicesRequestCache extends AbstractComponent implements Remo
      */
     public static final Setting<Boolean> INDEX_CACHE_REQUEST_ENABLED_SETTING =
         Setting.boolSetting("index.requests.cache.enable", true, Property.Dynamic, Property.IndexScope);
+    /**
+     * A setting to enable caching of requests that return hits (<code>size &gt; 0</code>) on an index level,
+     * as long as the requested page fits within {@link #INDEX_CACHE_REQUEST_HITS_MAX_WINDOW_SETTING}.
+     */
+    public static final Setting<Boolean> INDEX_CACHE_REQUEST_HITS_ENABLED_SETTING =
+        Setting.boolSetting("index.requests.cache.hits.enable", false, Property.Dynamic, Property.IndexScope);
+    /**
+     * The maximum value of <code>from + size</code> for which the fetched hits of a request are cached.
+     */
+    public static final Setting<Integer> INDEX_CACHE_REQUEST_HITS_MAX_WINDOW_SETTING =
+        Setting.intSetting("index.requests.cache.hits.max_window", 50, 1, Property.Dynamic, Property.IndexScope);
+    /**
+     * A setting to enable caching of the partial aggregation results of each segment on an index level. Only the segments
+     * that are not in the cache yet are collected, their results are then merged with the cached ones.
+     */
+    public static final Setting<Boolean> INDEX_CACHE_REQUEST_SEGMENT_AGGS_ENABLED_SETTING =
+        Setting.boolSetting("index.requests.cache.segment_aggs.enable", false, Property.Dynamic, Property.IndexScope);
     public static final Setting<ByteSizeValue> INDICES_CACHE_QUERY_SIZE =
         Setting.memorySizeSetting("indices.requests.cache.size", "1%", Property.NodeScope);
     public static final Setting<TimeValue> INDICES_CACHE_QUERY_EXPIRE =
@@ -100,7 +125,7 @@ public final class IndicesRequestCache extends AbstractComponent implements Remo
     }
 
     void clear(CacheEntity entity) {
-        keysToClean.add(new CleanupKey(entity, -1));
+        keysToClean.add(new CleanupKey(entity, null));
         cleanCache();
     }
 
@@ -130,6 +155,33 @@ public final class IndicesRequestCache extends AbstractComponent implements Remo
         return value;
     }
 
+    /**
+     * Returns the cached value of the given segment reader, or <code>null</code> if it is not cached. Unlike shard level
+     * lookups, segment lookups are not counted as hits or misses of the cache since a single search looks up every segment
+     * of the shard.
+     */
+    BytesReference get(CacheEntity cacheEntity, LeafReader reader, BytesReference cacheKey) {
+        return cache.get(new Key(cacheEntity, new SegmentKey(reader), cacheKey));
+    }
+
+    /**
+     * Caches the value that was computed for the given segment reader. The entry is dropped once the core of the segment
+     * is closed.
+     */
+    void put(CacheEntity cacheEntity, LeafReader reader, BytesReference cacheKey, BytesReference value) {
+        final SegmentKey segmentKey = new SegmentKey(reader);
+        final Key key = new Key(cacheEntity, segmentKey, cacheKey);
+        cache.put(key, value);
+        cacheEntity.onCached(key, value);
+        CleanupKey cleanupKey = new CleanupKey(cacheEntity, segmentKey.coreCacheKey);
+        if (!registeredClosedListeners.containsKey(cleanupKey)) {
+            Boolean previous = registeredClosedListeners.putIfAbsent(cleanupKey, Boolean.TRUE);
+            if (previous == null) {
+                reader.getCoreCacheHelper().addClosedListener(cleanupKey);
+            }
+        }
+    }
+
     /**
      * Invalidates the given the cache entry for the given key and it's context
      * @param cacheEntity the cache entity to invalidate for
@@ -206,12 +258,14 @@ public final class IndicesRequestCache extends AbstractComponent implements Remo
         private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Key.class);
 
         public final CacheEntity entity; // use as identity equality
-        public final long readerVersion; // use the reader version to now keep a reference to a "short" lived reader until its reaped
+        // the version of a top level reader or the cache key of a segment reader, to not keep a reference
+        // to a "short" lived reader until its reaped
+        public final Object readerCacheKey;
         public final BytesReference value;
 
-        Key(CacheEntity entity, long readerVersion, BytesReference value) {
+        Key(CacheEntity entity, Object readerCacheKey, BytesReference value) {
             this.entity = entity;
-            this.readerVersion = readerVersion;
+            this.readerCacheKey = readerCacheKey;
             this.value = value;
         }
 
@@ -230,7 +284,7 @@ public final class IndicesRequestCache extends AbstractComponent implements Remo
         public boolean equals(Object o) {
             if (this == o) return true;
             Key key = (Key) o;
-            if (readerVersion != key.readerVersion) return false;
+            if (!readerCacheKey.equals(key.readerCacheKey)) return false;
             if (!entity.getCacheIdentity().equals(key.entity.getCacheIdentity())) return false;
             if (!value.equals(key.value)) return false;
             return true;
@@ -239,19 +293,51 @@ public final class IndicesRequestCache extends AbstractComponent implements Remo
         @Override
         public int hashCode() {
             int result = entity.getCacheIdentity().hashCode();
-            result = 31 * result + Long.hashCode(readerVersion);
+            result = 31 * result + readerCacheKey.hashCode();
             result = 31 * result + value.hashCode();
             return result;
         }
     }
 
+    /**
+     * Identifies the live documents of a segment: the deletes of a segment only grow until it is merged away, so its number
+     * of deleted documents changes whenever its live documents change. Segment readers can't be used as they are
+     * recreated on every refresh once the segment has deletes.
+     */
+    private static class SegmentKey {
+        final IndexReader.CacheKey coreCacheKey;
+        final int numDeletedDocs;
+
+        private SegmentKey(LeafReader reader) {
+            final IndexReader.CacheHelper cacheHelper = reader.getCoreCacheHelper();
+            assert cacheHelper != null : "segment reader must support caching";
+            this.coreCacheKey = cacheHelper.getKey();
+            this.numDeletedDocs = reader.numDeletedDocs();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            SegmentKey that = (SegmentKey) o;
+            return numDeletedDocs == that.numDeletedDocs && coreCacheKey.equals(that.coreCacheKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * coreCacheKey.hashCode() + numDeletedDocs;
+        }
+    }
+
     private class CleanupKey implements IndexReader.ClosedListener {
         final CacheEntity entity;
-        final long readerVersion; // use the reader version to now keep a reference to a "short" lived reader until its reaped
+        final Object readerCacheKey; // null means that all the entries of the entity must be cleaned
 
-        private CleanupKey(CacheEntity entity, long readerVersion) {
+        private CleanupKey(CacheEntity entity, Object readerCacheKey) {
             this.entity = entity;
-            this.readerVersion = readerVersion;
+            this.readerCacheKey = readerCacheKey;
         }
 
         @Override
@@ -269,7 +355,7 @@ public final class IndicesRequestCache extends AbstractComponent implements Remo
                 return false;
             }
             CleanupKey that = (CleanupKey) o;
-            if (readerVersion != that.readerVersion) return false;
+            if (!Objects.equals(readerCacheKey, that.readerCacheKey)) return false;
             if (!entity.getCacheIdentity().equals(that.entity.getCacheIdentity())) return false;
             return true;
         }
@@ -277,7 +363,7 @@ public final class IndicesRequestCache extends AbstractComponent implements Remo
         @Override
         public int hashCode() {
             int result = entity.getCacheIdentity().hashCode();
-            result = 31 * result + Long.hashCode(readerVersion);
+            result = 31 * result + Objects.hashCode(readerCacheKey);
             return result;
         }
     }
@@ -292,8 +378,8 @@ public final class IndicesRequestCache extends AbstractComponent implements Remo
         for (Iterator<CleanupKey> iterator = keysToClean.iterator(); iterator.hasNext(); ) {
             CleanupKey cleanupKey = iterator.next();
             iterator.remove();
-            if (cleanupKey.readerVersion == -1 || cleanupKey.entity.isOpen() == false) {
-                // -1 indicates full cleanup, as does a closed shard
+            if (cleanupKey.readerCacheKey == null || cleanupKey.entity.isOpen() == false) {
+                // null indicates full cleanup, as does a closed shard
                 currentFullClean.add(cleanupKey.entity.getCacheIdentity());
             } else {
                 currentKeysToClean.add(cleanupKey);
@@ -305,7 +391,10 @@ public final class IndicesRequestCache extends AbstractComponent implements Remo
                 if (currentFullClean.contains(key.entity.getCacheIdentity())) {
                     iterator.remove();
                 } else {
-                    if (currentKeysToClean.contains(new CleanupKey(key.entity, key.readerVersion))) {
+                    // entries of segments are cleaned when the core of the segment is closed
+                    final Object readerCacheKey = key.readerCacheKey instanceof SegmentKey
+                        ? ((SegmentKey) key.readerCacheKey).coreCacheKey : key.readerCacheKey;
+                    if (currentKeysToClean.contains(new CleanupKey(key.entity, readerCacheKey))) {
                         iterator.remove();
                     }
                 }
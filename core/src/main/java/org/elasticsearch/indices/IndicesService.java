@@ -22,6 +22,7 @@ package org.elasticsearch.indices;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.message.ParameterizedMessage;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.LockObtainFailedException;
 import org.apache.lucene.util.CollectionUtil;
@@ -87,6 +88,8 @@ import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryRewriteContext;
 import org.elasticsearch.index.recovery.RecoveryStats;
 import org.elasticsearch.index.refresh.RefreshStats;
+import org.elasticsearch.index.search.stats.SearchLatencyListener;
+import org.elasticsearch.index.search.stats.SearchLatencyStats;
 import org.elasticsearch.index.search.stats.SearchStats;
 import org.elasticsearch.index.shard.IllegalIndexShardStateException;
 import org.elasticsearch.index.shard.IndexEventListener;
@@ -104,6 +107,12 @@ import org.elasticsearch.indices.recovery.RecoveryState;
 import org.elasticsearch.plugins.PluginsService;
 import org.elasticsearch.repositories.RepositoriesService;
 import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.SegmentAggregationsCache;
+import org.elasticsearch.search.aggregations.SegmentCachingBucketCollector;
+import org.elasticsearch.search.fetch.FetchPhase;
 import org.elasticsearch.search.internal.AliasFilter;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.internal.ShardSearchRequest;
@@ -165,10 +174,13 @@ public class IndicesService extends AbstractLifecycleComponent
     private final MapperRegistry mapperRegistry;
     private final NamedWriteableRegistry namedWriteableRegistry;
     private final IndexingMemoryController indexingMemoryController;
+    private final TranslogSyncCoordinator translogSyncCoordinator;
     private final TimeValue cleanInterval;
     private final IndicesRequestCache indicesRequestCache;
     private final IndicesQueryCache indicesQueryCache;
     private final MetaStateService metaStateService;
+    private final SearchLatencyListener searchLatencyListener;
+    private final boolean searchLatencyHistogramsEnabled;
 
     @Override
     protected void doStart() {
@@ -196,6 +208,7 @@ public class IndicesService extends AbstractLifecycleComponent
         indexingMemoryController = new IndexingMemoryController(settings, threadPool,
                                                                 // ensure we pull an iter with new shards - flatten makes a copy
                                                                 () -> Iterables.flatten(this).iterator());
+        this.translogSyncCoordinator = new TranslogSyncCoordinator(settings, threadPool);
         this.indexScopeSetting = indexScopedSettings;
         this.circuitBreakerService = circuitBreakerService;
         this.bigArrays = bigArrays;
@@ -211,6 +224,8 @@ public class IndicesService extends AbstractLifecycleComponent
         this.cleanInterval = INDICES_CACHE_CLEAN_INTERVAL_SETTING.get(settings);
         this.cacheCleaner = new CacheCleaner(indicesFieldDataCache, indicesRequestCache,  logger, threadPool, this.cleanInterval);
         this.metaStateService = metaStateService;
+        this.searchLatencyListener = new SearchLatencyListener();
+        this.searchLatencyHistogramsEnabled = SearchLatencyListener.SEARCH_LATENCY_HISTOGRAMS_ENABLED_SETTING.get(settings);
     }
 
     @Override
@@ -441,6 +456,9 @@ public class IndicesService extends AbstractLifecycleComponent
         for (IndexingOperationListener operationListener : indexingOperationListeners) {
             indexModule.addIndexOperationListener(operationListener);
         }
+        if (searchLatencyHistogramsEnabled) {
+            indexModule.addSearchOperationListener(searchLatencyListener);
+        }
         pluginsService.onIndexModule(indexModule);
         for (IndexEventListener listener : builtInListeners) {
             indexModule.addIndexEventListener(listener);
@@ -457,7 +475,8 @@ public class IndicesService extends AbstractLifecycleComponent
                 indicesQueryCache,
                 mapperRegistry,
                 indicesFieldDataCache,
-                namedWriteableRegistry
+                namedWriteableRegistry,
+                translogSyncCoordinator
         );
     }
 
@@ -552,6 +571,7 @@ public class IndicesService extends AbstractLifecycleComponent
             final IndexSettings indexSettings = indexService.getIndexSettings();
             listener.afterIndexRemoved(indexService.index(), indexSettings, reason);
             if (reason == IndexRemovalReason.DELETED) {
+                searchLatencyListener.removeIndex(indexName);
                 // now we are done - try to wipe data on disk if possible
                 deleteIndexStore(extraInfo, indexService.index(), indexSettings);
             }
@@ -560,6 +580,13 @@ public class IndicesService extends AbstractLifecycleComponent
         }
     }
 
+    /**
+     * Returns the latency histograms of the shard level search phases that ran on this node.
+     */
+    public SearchLatencyStats searchLatencyStats() {
+        return searchLatencyListener.stats();
+    }
+
     public IndicesFieldDataCache getIndicesFieldDataCache() {
         return indicesFieldDataCache;
     }
@@ -1092,9 +1119,11 @@ public class IndicesService extends AbstractLifecycleComponent
         if (request.requestCache() == null) {
             if (settings.getValue(IndicesRequestCache.INDEX_CACHE_REQUEST_ENABLED_SETTING) == false) {
                 return false;
-            } else if (context.size() != 0) {
+            } else if (context.size() != 0 && (settings.getValue(IndicesRequestCache.INDEX_CACHE_REQUEST_HITS_ENABLED_SETTING) == false
+                    || context.from() + context.size() > settings.getValue(IndicesRequestCache.INDEX_CACHE_REQUEST_HITS_MAX_WINDOW_SETTING))) {
                 // If no request cache query parameter and shard request cache
                 // is enabled in settings don't cache for requests with size > 0
+                // unless hits caching is enabled and the page is small enough
                 return false;
             }
         } else if (request.requestCache() == false) {
@@ -1124,8 +1153,10 @@ public class IndicesService extends AbstractLifecycleComponent
         assert canCache(request, context);
         final DirectoryReader directoryReader = context.searcher().getDirectoryReader();
 
+        // query results are tracked with the other entries even if they hold top docs, only fetched hits are tracked separately
         boolean[] loadedFromCache = new boolean[] { true };
-        BytesReference bytesReference = cacheShardLevelResult(context.indexShard(), directoryReader, request.cacheKey(), out -> {
+        BytesReference bytesReference = cacheShardLevelResult(context.indexShard(), false, directoryReader, request.cacheKey(),
+            out -> {
             queryPhase.execute(context);
             try {
                 context.queryResult().writeToNoId(out);
@@ -1154,6 +1185,160 @@ public class IndicesService extends AbstractLifecycleComponent
         }
     }
 
+    /**
+     * Can the hits fetched for the given search context be cached? This requires the shard request to be cachable
+     * and the requested page to fit within {@link IndicesRequestCache#INDEX_CACHE_REQUEST_HITS_MAX_WINDOW_SETTING}.
+     */
+    public boolean canCacheHits(SearchContext context) {
+        if (context.size() <= 0) {
+            return false;
+        }
+        IndexSettings settings = context.indexShard().indexSettings();
+        if (context.from() + context.size() > settings.getValue(IndicesRequestCache.INDEX_CACHE_REQUEST_HITS_MAX_WINDOW_SETTING)) {
+            return false;
+        }
+        return canCache(context.request(), context);
+    }
+
+    /**
+     * Loads the fetched hits from the cache, computing them if needed by executing the fetch phase and otherwise
+     * deserializing the cached hits into the {@link SearchContext#fetchResult() context's fetch result}. The entry is
+     * keyed on the shard request and the doc ids to load, so it is only reused for the exact same page of hits.
+     */
+    public void loadFetchIntoContext(SearchContext context, FetchPhase fetchPhase) throws Exception {
+        assert canCacheHits(context);
+        final DirectoryReader directoryReader = context.searcher().getDirectoryReader();
+
+        boolean[] loadedFromCache = new boolean[] { true };
+        BytesReference bytesReference = cacheShardLevelResult(context.indexShard(), true, directoryReader, fetchCacheKey(context),
+            out -> {
+            fetchPhase.execute(context);
+            try {
+                context.fetchResult().hits().writeTo(out);
+            } catch (IOException e) {
+                throw new AssertionError("Could not serialize response", e);
+            }
+            loadedFromCache[0] = false;
+        });
+
+        if (loadedFromCache[0]) {
+            // restore the cached hits into the context
+            StreamInput in = new NamedWriteableAwareStreamInput(bytesReference.streamInput(), namedWriteableRegistry);
+            context.fetchResult().hits(SearchHits.readSearchHits(in));
+        }
+    }
+
+    /**
+     * Builds the cache key of the fetched hits out of the shard request cache key and the doc ids to load.
+     */
+    private static BytesReference fetchCacheKey(SearchContext context) throws IOException {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.writeBytesReference(context.request().cacheKey());
+            final int[] docIdsToLoad = context.docIdsToLoad();
+            final int from = context.docIdsToLoadFrom();
+            final int size = context.docIdsToLoadSize();
+            out.writeVInt(size);
+            for (int i = from; i < from + size; i++) {
+                out.writeVInt(docIdsToLoad[i]);
+            }
+            return out.bytes();
+        }
+    }
+
+    /**
+     * Can the partial aggregation results of the segments of the shard be cached? Unlike shard level results, they are
+     * reused across refreshes so this requires {@link IndicesRequestCache#INDEX_CACHE_REQUEST_SEGMENT_AGGS_ENABLED_SETTING}
+     * to be set, queries that match the documents of a segment regardless of the other segments, see
+     * {@link org.elasticsearch.index.query.QueryShardContext#isCrossSegment()}, and aggregations whose results can be merged
+     * across segments, see {@link SegmentCachingBucketCollector#canCache}.
+     */
+    public boolean canCacheSegmentAggregations(ShardSearchRequest request, SearchContext context) {
+        if (context.aggregations() == null || request.source() == null || request.source().aggregations() == null) {
+            return false;
+        }
+        IndexSettings settings = context.indexShard().indexSettings();
+        if (Boolean.FALSE.equals(request.requestCache())
+                || settings.getValue(IndicesRequestCache.INDEX_CACHE_REQUEST_SEGMENT_AGGS_ENABLED_SETTING) == false) {
+            return false;
+        }
+        // same as for the shard level cache, see canCache
+        if (request.scroll() != null || SearchType.QUERY_THEN_FETCH != context.searchType()) {
+            return false;
+        }
+        // the documents that are aggregated must only depend on the query and the segment
+        if (context.minimumScore() != null || context.terminateAfter() != SearchContext.DEFAULT_TERMINATE_AFTER) {
+            return false;
+        }
+        if (context.getProfilers() != null) {
+            return false;
+        }
+        if ((context.searcher().getIndexReader() instanceof DirectoryReader) == false) {
+            return false;
+        }
+        if (context.getQueryShardContext().isCachable() == false || context.getQueryShardContext().isCrossSegment()) {
+            return false;
+        }
+        return SegmentCachingBucketCollector.canCache(request.source().aggregations());
+    }
+
+    /**
+     * Returns the cache of the partial aggregation results of the segments of the shard for the given request. The entries
+     * are keyed on the segment, the query and the aggregations, and are dropped once the segment is merged away.
+     */
+    public SegmentAggregationsCache segmentAggregationsCache(ShardSearchRequest request, SearchContext context) throws IOException {
+        assert canCacheSegmentAggregations(request, context);
+        final IndexShardCacheEntity cacheEntity = new IndexShardCacheEntity(context.indexShard());
+        final BytesReference cacheKey = segmentAggregationsCacheKey(request);
+        return new SegmentAggregationsCache() {
+            @Override
+            public InternalAggregations get(LeafReader reader) throws IOException {
+                if (reader.getCoreCacheHelper() == null) {
+                    // the reader doesn't support caching
+                    return null;
+                }
+                final BytesReference bytesReference = indicesRequestCache.get(cacheEntity, reader, cacheKey);
+                if (bytesReference == null) {
+                    return null;
+                }
+                try (StreamInput in = new NamedWriteableAwareStreamInput(bytesReference.streamInput(), namedWriteableRegistry)) {
+                    return InternalAggregations.readAggregations(in);
+                }
+            }
+
+            @Override
+            public void put(LeafReader reader, InternalAggregations aggregations) throws IOException {
+                if (reader.getCoreCacheHelper() == null) {
+                    return;
+                }
+                // see cacheShardLevelResult for the expected size
+                try (BytesStreamOutput out = new BytesStreamOutput(512)) {
+                    aggregations.writeTo(out);
+                    indicesRequestCache.put(cacheEntity, reader, cacheKey, out.bytes());
+                }
+            }
+
+            @Override
+            public InternalAggregations merge(List<InternalAggregations> segmentAggregations) {
+                // this is a partial reduce, pipeline aggregations and the final pruning of buckets are left to the coordinating node
+                return InternalAggregations.reduce(segmentAggregations, new ReduceContext(bigArrays, scriptService, false));
+            }
+        };
+    }
+
+    /**
+     * Builds the cache key of the partial aggregation results of segments out of the parts of the shard request that select
+     * and aggregate documents. Unlike the shard level cache key, it doesn't depend on the requested hits.
+     */
+    private static BytesReference segmentAggregationsCacheKey(ShardSearchRequest request) throws IOException {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.writeStringArray(request.types());
+            request.getAliasFilter().writeTo(out);
+            out.writeOptionalNamedWriteable(request.source().query());
+            request.source().aggregations().writeTo(out);
+            return out.bytes();
+        }
+    }
+
     public ByteSizeValue getTotalIndexingBufferBytes() {
         return indexingMemoryController.indexingBufferSize();
     }
@@ -1161,14 +1346,15 @@ public class IndicesService extends AbstractLifecycleComponent
     /**
      * Cache something calculated at the shard level.
      * @param shard the shard this item is part of
+     * @param cachesHits whether the item holds fetched hits, which are tracked separately in the cache statistics
      * @param reader a reader for this shard. Used to invalidate the cache when there are changes.
      * @param cacheKey key for the thing being cached within this shard
      * @param loader loads the data into the cache if needed
      * @return the contents of the cache or the result of calling the loader
      */
-    private BytesReference cacheShardLevelResult(IndexShard shard, DirectoryReader reader, BytesReference cacheKey, Consumer<StreamOutput> loader)
-            throws Exception {
-        IndexShardCacheEntity cacheEntity = new IndexShardCacheEntity(shard);
+    private BytesReference cacheShardLevelResult(IndexShard shard, boolean cachesHits, DirectoryReader reader, BytesReference cacheKey,
+                                                 Consumer<StreamOutput> loader) throws Exception {
+        IndexShardCacheEntity cacheEntity = new IndexShardCacheEntity(shard, cachesHits);
         Supplier<BytesReference> supplier = () -> {
             /* BytesStreamOutput allows to pass the expected size but by default uses
              * BigArrays.PAGE_SIZE_IN_BYTES which is 16k. A common cached result ie.
@@ -1191,9 +1377,15 @@ public class IndicesService extends AbstractLifecycleComponent
     static final class IndexShardCacheEntity extends AbstractIndexShardCacheEntity {
         private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(IndexShardCacheEntity.class);
         private final IndexShard indexShard;
+        private final boolean cachesHits;
 
         protected IndexShardCacheEntity(IndexShard indexShard) {
+            this(indexShard, false);
+        }
+
+        protected IndexShardCacheEntity(IndexShard indexShard, boolean cachesHits) {
             this.indexShard = indexShard;
+            this.cachesHits = cachesHits;
         }
 
         @Override
@@ -1201,6 +1393,11 @@ public class IndicesService extends AbstractLifecycleComponent
             return indexShard.requestCache();
         }
 
+        @Override
+        protected boolean cachesHits() {
+            return cachesHits;
+        }
+
         @Override
         public boolean isOpen() {
             return indexShard.state() != IndexShardState.CLOSED;
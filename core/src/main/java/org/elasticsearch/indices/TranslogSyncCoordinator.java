@@ -0,0 +1,258 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.elasticsearch.common.CheckedConsumer;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.util.concurrent.CountDown;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Groups the translog syncs that indexing requests wait for across all shards of the node that live on the same data path.
+ * The first sync request on a data path opens a window of {@link #SYNC_WINDOW_SETTING}, once it elapses all requests that
+ * were made in the meantime are processed as one group: each translog of the group is synced once up to the highest location
+ * that was requested for it, and its requests are notified as soon as that sync is done. The translogs of a group are synced
+ * in parallel while groups of the same data path run one after the other, requests that arrive during a group are collected
+ * into the next one.
+ * <p>
+ * Without the coordinator each shard batches its own sync requests, see {@link org.elasticsearch.common.util.concurrent.AsyncIOProcessor},
+ * so a disk that holds many active shards receives a stream of fsyncs that are not aligned with each other and a request may
+ * have to wait for the fsync of its translog that is already in flight before its own one starts. With the coordinator the
+ * fsyncs of a data path are issued in rounds: a request waits for at most one window and one round, the disk is handed all
+ * the fsyncs of a round at once so that it can serve them together and the round takes as long as its slowest fsync, and
+ * there are never more fsyncs in flight on a data path than it has translogs with pending requests.
+ * <p>
+ * At most {@link #MAX_PENDING_SYNCS} requests are queued per data path, like the queue of the per-shard processor. Requests that
+ * don't fit sync the translog on the calling thread, which slows down indexing on that data path until the groups catch up.
+ * <p>
+ * The coordinator is disabled by default, in which case each shard syncs its translog on its own, see
+ * {@link org.elasticsearch.index.shard.IndexShard#sync(Translog.Location, Consumer)}.
+ */
+public class TranslogSyncCoordinator extends AbstractComponent {
+
+    /** How long sync requests are collected on a data path before they are processed together (default: 0, disabled). */
+    public static final Setting<TimeValue> SYNC_WINDOW_SETTING =
+        Setting.timeSetting("indices.translog.sync_window", TimeValue.ZERO, TimeValue.ZERO, Property.NodeScope);
+
+    /** The maximum number of sync requests that wait for a group of a data path */
+    static final int MAX_PENDING_SYNCS = 1024;
+
+    private final ThreadPool threadPool;
+    private final TimeValue window;
+    private final int maxPendingSyncs;
+    private final ConcurrentMap<Path, Group> groups = new ConcurrentHashMap<>();
+
+    public TranslogSyncCoordinator(Settings settings, ThreadPool threadPool) {
+        this(settings, threadPool, MAX_PENDING_SYNCS);
+    }
+
+    // pkg private for testing
+    TranslogSyncCoordinator(Settings settings, ThreadPool threadPool, int maxPendingSyncs) {
+        super(settings);
+        this.threadPool = threadPool;
+        this.window = SYNC_WINDOW_SETTING.get(settings);
+        this.maxPendingSyncs = maxPendingSyncs;
+    }
+
+    /**
+     * Returns <code>true</code> if sync requests are grouped.
+     */
+    public boolean isEnabled() {
+        return window.nanos() > 0;
+    }
+
+    /**
+     * Requests the translog of a shard to be synced up to the given location.
+     *
+     * @param dataPath the data path of the shard, requests of the same data path are grouped
+     * @param translog syncs the translog of the shard up to the highest of the given locations, it must be the same instance
+     *                 for all requests of a shard
+     * @param location the location to sync up to
+     * @param listener notified once the location is synced or the sync failed, on the calling thread if too many requests are
+     *                 pending on the data path
+     */
+    public void sync(Path dataPath, CheckedConsumer<Stream<Translog.Location>, IOException> translog, Translog.Location location,
+                     Consumer<Exception> listener) {
+        assert isEnabled() : "sync requests are not grouped";
+        final PendingSync sync = new PendingSync(translog, location, listener);
+        if (groups.computeIfAbsent(dataPath, Group::new).add(sync) == false) {
+            // the groups of this data path don't keep up, push back on the caller
+            syncTranslog(translog, Collections.singletonList(sync));
+        }
+    }
+
+    private static final class PendingSync {
+        final CheckedConsumer<Stream<Translog.Location>, IOException> translog;
+        final Translog.Location location;
+        final Consumer<Exception> listener;
+
+        PendingSync(CheckedConsumer<Stream<Translog.Location>, IOException> translog, Translog.Location location,
+                    Consumer<Exception> listener) {
+            this.translog = translog;
+            this.location = location;
+            this.listener = listener;
+        }
+    }
+
+    private final class Group extends AbstractRunnable {
+        private final Path dataPath;
+        private List<PendingSync> pending = new ArrayList<>();
+        // whether a group is waiting for its window to elapse or is being synced, guarded by this
+        private boolean scheduled;
+
+        Group(Path dataPath) {
+            this.dataPath = dataPath;
+        }
+
+        /**
+         * Adds the given request to the next group, returns <code>false</code> if too many requests are pending already.
+         */
+        boolean add(PendingSync sync) {
+            synchronized (this) {
+                if (pending.size() >= maxPendingSyncs) {
+                    return false;
+                }
+                pending.add(sync);
+                if (scheduled) {
+                    return true;
+                }
+                scheduled = true;
+            }
+            schedule();
+            return true;
+        }
+
+        private void schedule() {
+            try {
+                threadPool.schedule(window, ThreadPool.Names.GENERIC, this);
+            } catch (Exception e) {
+                logger.warn("failed to schedule translog syncs", e);
+                final List<PendingSync> failed;
+                synchronized (this) {
+                    failed = drain();
+                    scheduled = false;
+                }
+                notifyListeners(failed, e);
+            }
+        }
+
+        private synchronized List<PendingSync> drain() {
+            final List<PendingSync> batch = pending;
+            pending = new ArrayList<>();
+            return batch;
+        }
+
+        @Override
+        protected void doRun() {
+            final List<PendingSync> batch = drain();
+            final Map<CheckedConsumer<Stream<Translog.Location>, IOException>, List<PendingSync>> byTranslog = new IdentityHashMap<>();
+            for (PendingSync sync : batch) {
+                byTranslog.computeIfAbsent(sync.translog, k -> new ArrayList<>()).add(sync);
+            }
+            if (byTranslog.isEmpty()) {
+                onGroupDone();
+                return;
+            }
+            // the last translog to sync finishes the group so that the next group only starts once all syncs are done
+            final CountDown countDown = new CountDown(byTranslog.size());
+            final List<Runnable> syncs = new ArrayList<>(byTranslog.size());
+            for (Map.Entry<CheckedConsumer<Stream<Translog.Location>, IOException>, List<PendingSync>> entry : byTranslog.entrySet()) {
+                syncs.add(() -> {
+                    try {
+                        syncTranslog(entry.getKey(), entry.getValue());
+                    } finally {
+                        if (countDown.countDown()) {
+                            logger.trace("synced [{}] translogs for [{}] requests on [{}]", byTranslog.size(), batch.size(), dataPath);
+                            onGroupDone();
+                        }
+                    }
+                });
+            }
+            for (int i = 0; i < syncs.size() - 1; i++) {
+                try {
+                    threadPool.generic().execute(syncs.get(i));
+                } catch (RejectedExecutionException e) {
+                    // the node is shutting down, sync on this thread
+                    syncs.get(i).run();
+                }
+            }
+            syncs.get(syncs.size() - 1).run();
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            // the group was rejected, fail the requests that are still pending
+            logger.warn("failed to sync translogs", e);
+            notifyListeners(drain(), e);
+            onGroupDone();
+        }
+
+        private void onGroupDone() {
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    scheduled = false;
+                    return;
+                }
+            }
+            // requests arrived while this group was syncing, they open the next window
+            schedule();
+        }
+    }
+
+    private void syncTranslog(CheckedConsumer<Stream<Translog.Location>, IOException> translog, List<PendingSync> syncs) {
+        Exception failure = null;
+        try {
+            translog.accept(syncs.stream().map(sync -> sync.location));
+        } catch (Exception e) {
+            logger.debug("failed to sync translog", e);
+            failure = e;
+        }
+        notifyListeners(syncs, failure);
+    }
+
+    private void notifyListeners(List<PendingSync> syncs, Exception failure) {
+        for (PendingSync sync : syncs) {
+            try {
+                sync.listener.accept(failure);
+            } catch (Exception e) {
+                logger.warn("failed to notify callback", e);
+            }
+        }
+    }
+}
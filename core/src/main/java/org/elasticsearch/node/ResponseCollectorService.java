@@ -29,15 +29,18 @@ import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
@@ -49,8 +52,13 @@ import java.util.stream.Collectors;
 public final class ResponseCollectorService extends AbstractComponent implements ClusterStateListener {
 
     private static final double ALPHA = 0.3;
+    // the number of recent response times that are kept per node in order to compute percentiles
+    private static final int RECENT_RESPONSE_TIMES = 100;
+    // the minimum number of recent response times that are required in order to compute percentiles
+    private static final int MIN_RECENT_RESPONSE_TIMES = 10;
 
     private final ConcurrentMap<String, NodeStatistics> nodeIdToStats = ConcurrentCollections.newConcurrentMap();
+    private final ConcurrentMap<String, HedgeCounters> nodeIdToHedgeCounters = ConcurrentCollections.newConcurrentMap();
 
     public ResponseCollectorService(Settings settings, ClusterService clusterService) {
         super(settings);
@@ -68,6 +76,7 @@ public final class ResponseCollectorService extends AbstractComponent implements
 
     void removeNode(String nodeId) {
         nodeIdToStats.remove(nodeId);
+        nodeIdToHedgeCounters.remove(nodeId);
     }
 
     public void addNodeStatistics(String nodeId, int queueSize, long responseTimeNanos, long avgServiceTimeNanos) {
@@ -75,16 +84,42 @@ public final class ResponseCollectorService extends AbstractComponent implements
             if (ns == null) {
                 ExponentiallyWeightedMovingAverage queueEWMA = new ExponentiallyWeightedMovingAverage(ALPHA, queueSize);
                 ExponentiallyWeightedMovingAverage responseEWMA = new ExponentiallyWeightedMovingAverage(ALPHA, responseTimeNanos);
-                return new NodeStatistics(nodeId, queueEWMA, responseEWMA, avgServiceTimeNanos);
+                NodeStatistics stats = new NodeStatistics(nodeId, queueEWMA, responseEWMA, avgServiceTimeNanos);
+                stats.addRecentResponseTime(responseTimeNanos);
+                return stats;
             } else {
                 ns.queueSize.addValue((double) queueSize);
                 ns.responseTime.addValue((double) responseTimeNanos);
                 ns.serviceTime = avgServiceTimeNanos;
+                ns.addRecentResponseTime(responseTimeNanos);
                 return ns;
             }
         });
     }
 
+    /**
+     * Returns the given percentile of the recent response times of the given node in nanoseconds, or an empty
+     * {@code OptionalLong} if not enough responses have been received from the node yet.
+     */
+    public OptionalLong getResponseTimePercentile(String nodeId, double percentile) {
+        final NodeStatistics stats = nodeIdToStats.get(nodeId);
+        return stats == null ? OptionalLong.empty() : stats.recentResponseTimePercentile(percentile);
+    }
+
+    /**
+     * Records that a search request to the given node was hedged by sending it to another copy of the shard.
+     */
+    public void onHedgeSent(String nodeId) {
+        nodeIdToHedgeCounters.computeIfAbsent(nodeId, id -> new HedgeCounters()).sent.inc();
+    }
+
+    /**
+     * Records that a hedged search request sent to the given node answered before the original request.
+     */
+    public void onHedgeWon(String nodeId) {
+        nodeIdToHedgeCounters.computeIfAbsent(nodeId, id -> new HedgeCounters()).won.inc();
+    }
+
     public Map<String, ComputedNodeStats> getAllNodeStatistics() {
         final int clientNum = nodeIdToStats.size();
         // Transform the mutable object internally used for accounting into the computed version
@@ -96,7 +131,13 @@ public final class ResponseCollectorService extends AbstractComponent implements
     }
 
     public AdaptiveSelectionStats getAdaptiveStats(Map<String, Long> clientSearchConnections) {
-        return new AdaptiveSelectionStats(clientSearchConnections, getAllNodeStatistics());
+        Map<String, Long> hedgesSent = new HashMap<>(nodeIdToHedgeCounters.size());
+        Map<String, Long> hedgesWon = new HashMap<>(nodeIdToHedgeCounters.size());
+        nodeIdToHedgeCounters.forEach((k, v) -> {
+            hedgesSent.put(k, v.sent.count());
+            hedgesWon.put(k, v.won.count());
+        });
+        return new AdaptiveSelectionStats(clientSearchConnections, getAllNodeStatistics(), hedgesSent, hedgesWon);
     }
 
     /**
@@ -217,6 +258,9 @@ public final class ResponseCollectorService extends AbstractComponent implements
         final ExponentiallyWeightedMovingAverage queueSize;
         final ExponentiallyWeightedMovingAverage responseTime;
         double serviceTime;
+        private final long[] recentResponseTimes = new long[RECENT_RESPONSE_TIMES];
+        private int numRecentResponseTimes;
+        private int nextRecentResponseTime;
 
         NodeStatistics(String nodeId,
                        ExponentiallyWeightedMovingAverage queueSizeEWMA,
@@ -227,5 +271,30 @@ public final class ResponseCollectorService extends AbstractComponent implements
             this.responseTime = responseTimeEWMA;
             this.serviceTime = serviceTimeEWMA;
         }
+
+        synchronized void addRecentResponseTime(long responseTimeNanos) {
+            recentResponseTimes[nextRecentResponseTime] = responseTimeNanos;
+            nextRecentResponseTime = (nextRecentResponseTime + 1) % recentResponseTimes.length;
+            numRecentResponseTimes = Math.min(numRecentResponseTimes + 1, recentResponseTimes.length);
+        }
+
+        synchronized OptionalLong recentResponseTimePercentile(double percentile) {
+            final int count = numRecentResponseTimes;
+            if (count < MIN_RECENT_RESPONSE_TIMES) {
+                return OptionalLong.empty();
+            }
+            final long[] sorted = Arrays.copyOf(recentResponseTimes, count);
+            Arrays.sort(sorted);
+            final int index = (int) Math.ceil(percentile / 100 * count) - 1;
+            return OptionalLong.of(sorted[Math.max(0, Math.min(count - 1, index))]);
+        }
+    }
+
+    /**
+     * The number of hedged search requests that were sent to a node and the number of those that answered first.
+     */
+    private static class HedgeCounters {
+        final CounterMetric sent = new CounterMetric();
+        final CounterMetric won = new CounterMetric();
     }
 }
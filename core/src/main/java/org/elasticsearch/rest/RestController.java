@@ -183,6 +183,17 @@ public class RestController extends AbstractComponent implements HttpServerTrans
         }
     }
 
+    @Override
+    public boolean canStreamBody(final RestRequest request) {
+        for (Iterator<MethodHandlers> it = getAllHandlers(request); it.hasNext(); ) {
+            final Optional<RestHandler> mHandler = Optional.ofNullable(it.next()).flatMap(mh -> mh.getHandler(request.method()));
+            if (mHandler.isPresent()) {
+                return mHandler.get().canStreamBody();
+            }
+        }
+        return false;
+    }
+
     @Override
     public void dispatchBadRequest(final RestRequest request, final RestChannel channel,
                                    final ThreadContext threadContext, final Throwable cause) {
@@ -211,15 +222,17 @@ public class RestController extends AbstractComponent implements HttpServerTrans
     boolean dispatchRequest(final RestRequest request, final RestChannel channel, final NodeClient client,
                             final Optional<RestHandler> mHandler) throws Exception {
         final int contentLength = request.hasContent() ? request.content().length() : 0;
+        // the body of a streamed request is still being read, its content type must be checked all the same
+        final boolean hasBody = contentLength > 0 || request.bodyStream() != null;
 
         RestChannel responseChannel = channel;
         // Indicator of whether a response was sent or not
         boolean requestHandled;
 
-        if (contentLength > 0 && mHandler.map(h -> hasContentType(request, h) == false).orElse(false)) {
+        if (hasBody && mHandler.map(h -> hasContentType(request, h) == false).orElse(false)) {
             sendContentTypeErrorMessage(request, channel);
             requestHandled = true;
-        } else if (contentLength > 0 && mHandler.map(h -> h.supportsContentStream()).orElse(false) &&
+        } else if (hasBody && mHandler.map(h -> h.supportsContentStream()).orElse(false) &&
             request.getXContentType() != XContentType.JSON && request.getXContentType() != XContentType.SMILE) {
             channel.sendResponse(BytesRestResponse.createSimpleErrorResponse(channel,
                 RestStatus.NOT_ACCEPTABLE, "Content-Type [" + request.getXContentType() +
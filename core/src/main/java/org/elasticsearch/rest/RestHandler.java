@@ -47,4 +47,12 @@ public interface RestHandler {
     default boolean supportsContentStream() {
         return false;
     }
+
+    /**
+     * Indicates if the RestHandler can handle requests before their body is read. If a handler returns true the body of its
+     * requests may be passed to it chunk by chunk through {@link RestRequest#bodyStream()} instead of as {@link RestRequest#content()}.
+     */
+    default boolean canStreamBody() {
+        return false;
+    }
 }
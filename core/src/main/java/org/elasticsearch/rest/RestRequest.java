@@ -111,6 +111,42 @@ public abstract class RestRequest implements ToXContent.Params {
         GET, POST, PUT, DELETE, OPTIONS, HEAD
     }
 
+    /**
+     * The body of a request that is passed to a listener chunk by chunk while it is read from the network.
+     */
+    public interface BodyStream {
+
+        /**
+         * Sets the listener the chunks of the body are passed to, chunks that were read before the listener was set are passed first.
+         * Must be called once. The body isn't read from the network until a listener is set.
+         */
+        void setListener(Listener listener);
+
+        /**
+         * Stops reading the body from the network and passing chunks to the listener until {@link #resume()} is called.
+         */
+        void pause();
+
+        /**
+         * Resumes reading the body after {@link #pause()} was called.
+         */
+        void resume();
+
+        interface Listener {
+
+            /**
+             * Called with the chunks of the body in order, one at a time. The chunk is only valid for the duration of the call so
+             * listeners must copy what they need to keep.
+             */
+            void onChunk(BytesReference chunk, boolean isLast);
+
+            /**
+             * Called if the body can't be read to the end, for instance because the connection was closed.
+             */
+            void onFailure(Exception e);
+        }
+    }
+
     public abstract Method method();
 
     /**
@@ -136,6 +172,16 @@ public abstract class RestRequest implements ToXContent.Params {
 
     public abstract BytesReference content();
 
+    /**
+     * The stream the body of this request is read from while the request is handled, or {@code null} if the body was read before the
+     * request was dispatched. Only requests of handlers that {@link RestHandler#canStreamBody() can stream their body} have a body
+     * stream, their {@link #content()} is empty.
+     */
+    @Nullable
+    public BodyStream bodyStream() {
+        return null;
+    }
+
     /**
      * @return content of the request body or throw an exception if the body or content type is missing
      */
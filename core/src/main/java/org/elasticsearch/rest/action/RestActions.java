@@ -53,6 +53,7 @@ public class RestActions {
     public static final ParseField TOTAL_FIELD = new ParseField("total");
     public static final ParseField SUCCESSFUL_FIELD = new ParseField("successful");
     public static final ParseField SKIPPED_FIELD = new ParseField("skipped");
+    public static final ParseField PRUNED_FIELD = new ParseField("pruned");
     public static final ParseField FAILED_FIELD = new ParseField("failed");
     public static final ParseField FAILURES_FIELD = new ParseField("failures");
 
@@ -81,12 +82,25 @@ public class RestActions {
     public static void buildBroadcastShardsHeader(XContentBuilder builder, Params params,
                                                   int total, int successful, int skipped, int failed,
                                                   ShardOperationFailedException[] shardFailures) throws IOException {
+        buildBroadcastShardsHeader(builder, params, total, successful, skipped, 0, failed, shardFailures);
+    }
+
+    /**
+     * Same as {@link #buildBroadcastShardsHeader(XContentBuilder, Params, int, int, int, int, ShardOperationFailedException[])}
+     * but also renders the number of pruned shards, if any.
+     */
+    public static void buildBroadcastShardsHeader(XContentBuilder builder, Params params,
+                                                  int total, int successful, int skipped, int pruned, int failed,
+                                                  ShardOperationFailedException[] shardFailures) throws IOException {
         builder.startObject(_SHARDS_FIELD.getPreferredName());
         builder.field(TOTAL_FIELD.getPreferredName(), total);
         builder.field(SUCCESSFUL_FIELD.getPreferredName(), successful);
         if (skipped >= 0) {
             builder.field(SKIPPED_FIELD.getPreferredName(), skipped);
         }
+        if (pruned > 0) {
+            builder.field(PRUNED_FIELD.getPreferredName(), pruned);
+        }
         builder.field(FAILED_FIELD.getPreferredName(), failed);
         if (shardFailures != null && shardFailures.length > 0) {
             builder.startArray(FAILURES_FIELD.getPreferredName());
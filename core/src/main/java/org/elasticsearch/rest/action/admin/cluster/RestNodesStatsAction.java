@@ -71,6 +71,9 @@ public class RestNodesStatsAction extends BaseRestHandler {
         metrics.put("script", r -> r.script(true));
         metrics.put("discovery", r -> r.discovery(true));
         metrics.put("ingest", r -> r.ingest(true));
+        metrics.put("search_latency", r -> r.searchLatency(true));
+        metrics.put("big_arrays", r -> r.bigArrays(true));
+        metrics.put("buffered_aggs", r -> r.bufferedAggs(true));
         METRICS = Collections.unmodifiableMap(metrics);
     }
 
@@ -21,13 +21,19 @@ package org.elasticsearch.rest.action.document;
 
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkShardRequest;
+import org.elasticsearch.action.bulk.IncrementalBulkParser;
 import org.elasticsearch.action.support.ActiveShardCount;
 import org.elasticsearch.client.Requests;
 import org.elasticsearch.client.node.NodeClient;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.logging.DeprecationLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.rest.BaseRestHandler;
 import org.elasticsearch.rest.RestController;
 import org.elasticsearch.rest.RestRequest;
@@ -52,7 +58,23 @@ public class RestBulkAction extends BaseRestHandler {
     private static final DeprecationLogger DEPRECATION_LOGGER =
         new DeprecationLogger(Loggers.getLogger(RestBulkAction.class));
 
+    /**
+     * Whether bulk requests are executed while their body is read, see {@link StreamingBulkListener}. Items before a malformed line
+     * are executed even though the request fails, which is why streaming is disabled by default.
+     */
+    public static final Setting<Boolean> STREAMING_ENABLED_SETTING =
+        Setting.boolSetting("rest.action.bulk.streaming.enabled", false, Property.NodeScope);
+    /**
+     * The size of the items of a streamed bulk request that are in flight or buffered before reading the body is paused. Items are
+     * sent in batches of a quarter of the window.
+     */
+    public static final Setting<ByteSizeValue> STREAMING_WINDOW_SETTING =
+        Setting.byteSizeSetting("rest.action.bulk.streaming.window", new ByteSizeValue(20, ByteSizeUnit.MB),
+            new ByteSizeValue(4, ByteSizeUnit.KB), new ByteSizeValue(Integer.MAX_VALUE, ByteSizeUnit.BYTES), Property.NodeScope);
+
     private final boolean allowExplicitIndex;
+    private final boolean streamingEnabled;
+    private final long streamingWindowInBytes;
 
     public RestBulkAction(Settings settings, RestController controller) {
         super(settings);
@@ -65,6 +87,8 @@ public class RestBulkAction extends BaseRestHandler {
         controller.registerHandler(PUT, "/{index}/{type}/_bulk", this);
 
         this.allowExplicitIndex = MULTI_ALLOW_EXPLICIT_INDEX.get(settings);
+        this.streamingEnabled = STREAMING_ENABLED_SETTING.get(settings);
+        this.streamingWindowInBytes = STREAMING_WINDOW_SETTING.get(settings).getBytes();
     }
 
     @Override
@@ -74,7 +98,6 @@ public class RestBulkAction extends BaseRestHandler {
 
     @Override
     public RestChannelConsumer prepareRequest(final RestRequest request, final NodeClient client) throws IOException {
-        BulkRequest bulkRequest = Requests.bulkRequest();
         String defaultIndex = request.param("index");
         String defaultType = request.param("type");
         String defaultRouting = request.param("routing");
@@ -86,19 +109,44 @@ public class RestBulkAction extends BaseRestHandler {
         String[] defaultFields = fieldsParam != null ? Strings.commaDelimitedListToStringArray(fieldsParam) : null;
         String defaultPipeline = request.param("pipeline");
         String waitForActiveShards = request.param("wait_for_active_shards");
-        if (waitForActiveShards != null) {
-            bulkRequest.waitForActiveShards(ActiveShardCount.parseString(waitForActiveShards));
+        ActiveShardCount activeShardCount = waitForActiveShards != null ? ActiveShardCount.parseString(waitForActiveShards) : null;
+        TimeValue timeout = request.paramAsTime("timeout", BulkShardRequest.DEFAULT_TIMEOUT);
+        String refresh = request.param("refresh");
+
+        final RestRequest.BodyStream bodyStream = request.bodyStream();
+        if (bodyStream != null) {
+            // every batch of items is sent as a bulk request of its own with the options of the whole request
+            final IncrementalBulkParser parser = new IncrementalBulkParser(
+                () -> newBulkRequest(activeShardCount, timeout, refresh), defaultIndex, defaultType, defaultRouting, defaultFields,
+                defaultFetchSourceContext, defaultPipeline, allowExplicitIndex, request.getXContentType(), streamingWindowInBytes / 4);
+            return channel -> new StreamingBulkListener(client, bodyStream, parser, streamingWindowInBytes,
+                new RestStatusToXContentListener<>(channel)).start();
         }
-        bulkRequest.timeout(request.paramAsTime("timeout", BulkShardRequest.DEFAULT_TIMEOUT));
-        bulkRequest.setRefreshPolicy(request.param("refresh"));
+
+        BulkRequest bulkRequest = newBulkRequest(activeShardCount, timeout, refresh);
         bulkRequest.add(request.requiredContent(), defaultIndex, defaultType, defaultRouting, defaultFields,
             defaultFetchSourceContext, defaultPipeline, null, allowExplicitIndex, request.getXContentType());
 
         return channel -> client.bulk(bulkRequest, new RestStatusToXContentListener<>(channel));
     }
 
+    private static BulkRequest newBulkRequest(ActiveShardCount waitForActiveShards, TimeValue timeout, String refresh) {
+        BulkRequest bulkRequest = Requests.bulkRequest();
+        if (waitForActiveShards != null) {
+            bulkRequest.waitForActiveShards(waitForActiveShards);
+        }
+        bulkRequest.timeout(timeout);
+        bulkRequest.setRefreshPolicy(refresh);
+        return bulkRequest;
+    }
+
     @Override
     public boolean supportsContentStream() {
         return true;
     }
+
+    @Override
+    public boolean canStreamBody() {
+        return streamingEnabled;
+    }
 }
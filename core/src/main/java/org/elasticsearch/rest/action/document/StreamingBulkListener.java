@@ -0,0 +1,305 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rest.action.document;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.bulk.IncrementalBulkParser;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.rest.RestRequest;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes a bulk request whose body is streamed, see {@link RestBulkAction#STREAMING_ENABLED_SETTING}. Complete items are sent
+ * as a separate bulk request whenever they add up to a batch, so their shard requests are dispatched while the rest of the body is
+ * still being read. Reading the body is paused while the items that were sent and the part of the body that isn't parsed yet
+ * exceed the window, until enough requests complete. The items of all requests are returned in one bulk response once the body is
+ * read to the end and all requests completed, the items of a request that failed as a whole are returned as failed items.
+ * <p>
+ * Requests may complete in any order, so a request that has an item with the same id as an item of a request in flight waits
+ * until that request completed, and so do the requests that are sent after it. Ids are compared regardless of the index since
+ * the index may be an alias. The refresh policy only applies to the final request, which waits until all other requests
+ * completed: the last request is held back until the next one is parsed since it may turn out to be the final one.
+ */
+final class StreamingBulkListener implements RestRequest.BodyStream.Listener {
+
+    private final NodeClient client;
+    private final RestRequest.BodyStream bodyStream;
+    private final IncrementalBulkParser parser;
+    private final long windowInBytes;
+    private final ActionListener<BulkResponse> listener;
+    private final long startTimeNanos = System.nanoTime();
+
+    // the items of the sent requests, in the order they were sent
+    private final List<BulkItemResponse[]> responses = new ArrayList<>();
+    // the number of requests in flight that have an item with a given id
+    private final Map<String, Integer> inFlightIds = new HashMap<>();
+    // the requests that wait for requests in flight, in the order they were sent
+    private final Deque<Batch> waiting = new ArrayDeque<>();
+    // the last parsed request if it has a refresh policy, only accessed by the thread that reads the body
+    private BulkRequest heldBack;
+    private int dispatchedRequests;
+    private int sentItems;
+    private int inFlightRequests;
+    private long inFlightBytes;
+    private long bufferedBytes;
+    private boolean paused;
+    private boolean bodyRead;
+    private boolean done;
+
+    StreamingBulkListener(NodeClient client, RestRequest.BodyStream bodyStream, IncrementalBulkParser parser, long windowInBytes,
+                          ActionListener<BulkResponse> listener) {
+        this.client = client;
+        this.bodyStream = bodyStream;
+        this.parser = parser;
+        this.windowInBytes = windowInBytes;
+        this.listener = listener;
+    }
+
+    void start() {
+        bodyStream.setListener(this);
+    }
+
+    @Override
+    public void onChunk(BytesReference chunk, boolean isLast) {
+        final boolean noItemsSent;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            noItemsSent = sentItems == 0 && heldBack == null;
+        }
+        final BulkRequest request;
+        try {
+            request = parser.parse(chunk, isLast);
+        } catch (Exception e) {
+            fail(e);
+            return;
+        }
+        if (request != null && request.numberOfActions() > 0) {
+            if (heldBack != null) {
+                send(heldBack.setRefreshPolicy(RefreshPolicy.NONE));
+                heldBack = null;
+            }
+            if (isLast || request.getRefreshPolicy() == RefreshPolicy.NONE) {
+                send(request);
+            } else {
+                heldBack = request;
+            }
+        } else if (isLast && heldBack != null) {
+            send(heldBack);
+            heldBack = null;
+        } else if (request != null && noItemsSent) {
+            // the body has no items at all, the bulk action rejects the request just like a request whose body is read at once
+            synchronized (this) {
+                done = true;
+            }
+            client.bulk(request, listener);
+            return;
+        }
+        final BulkResponse response;
+        synchronized (this) {
+            bufferedBytes = parser.bufferedBytes();
+            if (isLast) {
+                bodyRead = true;
+            } else if (paused == false && inFlightRequests > 0 && inFlightBytes + bufferedBytes >= windowInBytes) {
+                // the window is full, one of the requests in flight resumes reading once it completes
+                paused = true;
+                bodyStream.pause();
+            }
+            response = maybeBuildResponse();
+        }
+        if (response != null) {
+            listener.onResponse(response);
+        }
+    }
+
+    @Override
+    public void onFailure(Exception e) {
+        fail(e);
+    }
+
+    private void send(BulkRequest request) {
+        final Batch batch;
+        synchronized (this) {
+            batch = new Batch(request, responses.size(), sentItems);
+            responses.add(null);
+            sentItems += request.numberOfActions();
+            inFlightRequests++;
+            inFlightBytes += batch.bytes;
+            if (waiting.isEmpty() == false || mustWait(batch)) {
+                waiting.add(batch);
+                return;
+            }
+            markDispatched(batch);
+        }
+        dispatch(batch);
+    }
+
+    private boolean mustWait(Batch batch) {
+        assert Thread.holdsLock(this);
+        if (batch.request.getRefreshPolicy() != RefreshPolicy.NONE) {
+            // the refresh must happen once all other items are applied
+            return dispatchedRequests > 0;
+        }
+        for (String id : batch.ids) {
+            if (inFlightIds.containsKey(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void markDispatched(Batch batch) {
+        assert Thread.holdsLock(this);
+        dispatchedRequests++;
+        for (String id : batch.ids) {
+            inFlightIds.merge(id, 1, Integer::sum);
+        }
+    }
+
+    private void dispatch(Batch batch) {
+        client.bulk(batch.request, ActionListener.wrap(
+            response -> onItems(batch, renumber(response.getItems(), batch.offset)),
+            e -> onItems(batch, failedItems(batch.request, batch.offset, e))));
+    }
+
+    private void onItems(Batch batch, BulkItemResponse[] items) {
+        final BulkResponse response;
+        final List<Batch> toDispatch = new ArrayList<>();
+        synchronized (this) {
+            responses.set(batch.ordinal, items);
+            inFlightRequests--;
+            inFlightBytes -= batch.bytes;
+            dispatchedRequests--;
+            for (String id : batch.ids) {
+                inFlightIds.compute(id, (k, count) -> count == 1 ? null : count - 1);
+            }
+            while (done == false && waiting.isEmpty() == false && mustWait(waiting.peek()) == false) {
+                final Batch next = waiting.poll();
+                markDispatched(next);
+                toDispatch.add(next);
+            }
+            if (paused && (inFlightRequests == 0 || inFlightBytes + bufferedBytes < windowInBytes)) {
+                paused = false;
+                bodyStream.resume();
+            }
+            response = maybeBuildResponse();
+        }
+        for (Batch next : toDispatch) {
+            dispatch(next);
+        }
+        if (response != null) {
+            listener.onResponse(response);
+        }
+    }
+
+    private void fail(Exception e) {
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            done = true;
+            if (paused) {
+                // the rest of the body is skipped
+                paused = false;
+                bodyStream.resume();
+            }
+        }
+        listener.onFailure(e);
+    }
+
+    private BulkResponse maybeBuildResponse() {
+        assert Thread.holdsLock(this);
+        if (done || bodyRead == false || inFlightRequests > 0) {
+            return null;
+        }
+        done = true;
+        final BulkItemResponse[] items = new BulkItemResponse[sentItems];
+        int offset = 0;
+        for (BulkItemResponse[] requestItems : responses) {
+            System.arraycopy(requestItems, 0, items, offset, requestItems.length);
+            offset += requestItems.length;
+        }
+        return new BulkResponse(items, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNanos));
+    }
+
+    /**
+     * A request and the position of its items in the response.
+     */
+    private static final class Batch {
+        final BulkRequest request;
+        final int ordinal;
+        final int offset;
+        final long bytes;
+        final Set<String> ids = new HashSet<>();
+
+        Batch(BulkRequest request, int ordinal, int offset) {
+            this.request = request;
+            this.ordinal = ordinal;
+            this.offset = offset;
+            this.bytes = request.estimatedSizeInBytes();
+            for (DocWriteRequest item : request.requests()) {
+                if (item.id() != null) {
+                    ids.add(item.id());
+                }
+            }
+        }
+    }
+
+    private static BulkItemResponse[] renumber(BulkItemResponse[] items, int offset) {
+        final BulkItemResponse[] renumbered = new BulkItemResponse[items.length];
+        for (int i = 0; i < items.length; i++) {
+            final BulkItemResponse item = items[i];
+            if (item.isFailed()) {
+                renumbered[i] = new BulkItemResponse(offset + item.getItemId(), item.getOpType(), item.getFailure());
+            } else {
+                renumbered[i] = new BulkItemResponse(offset + item.getItemId(), item.getOpType(), item.<DocWriteResponse>getResponse());
+            }
+        }
+        return renumbered;
+    }
+
+    private static BulkItemResponse[] failedItems(BulkRequest request, int offset, Exception e) {
+        final List<DocWriteRequest> requests = request.requests();
+        final BulkItemResponse[] failed = new BulkItemResponse[requests.size()];
+        for (int i = 0; i < failed.length; i++) {
+            final DocWriteRequest item = requests.get(i);
+            failed[i] = new BulkItemResponse(offset + i, item.opType(),
+                new BulkItemResponse.Failure(item.index(), item.type(), item.id(), e));
+        }
+        return failed;
+    }
+}
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.search;
 
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.util.IOUtils;
@@ -29,7 +30,11 @@ import org.elasticsearch.action.OriginalIndices;
 import org.elasticsearch.action.search.SearchTask;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.block.ClusterBlockLevel;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.settings.Setting;
@@ -53,6 +58,7 @@ import org.elasticsearch.index.query.Rewriteable;
 import org.elasticsearch.index.shard.IndexEventListener;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.SearchOperationListener;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.indices.cluster.IndicesClusterStateService.AllocatedIndices.IndexRemovalReason;
 import org.elasticsearch.node.ResponseCollectorService;
@@ -61,6 +67,7 @@ import org.elasticsearch.script.SearchScript;
 import org.elasticsearch.search.aggregations.AggregationInitializationException;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
 import org.elasticsearch.search.aggregations.SearchContextAggregations;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.collapse.CollapseContext;
 import org.elasticsearch.search.dfs.DfsPhase;
@@ -75,6 +82,7 @@ import org.elasticsearch.search.fetch.subphase.ScriptFieldsContext.ScriptField;
 import org.elasticsearch.search.fetch.subphase.highlight.HighlightBuilder;
 import org.elasticsearch.search.internal.AliasFilter;
 import org.elasticsearch.search.internal.InternalScrollSearchRequest;
+import org.elasticsearch.search.internal.PointInTimeReader;
 import org.elasticsearch.search.internal.ScrollContext;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.internal.SearchContext.Lifetime;
@@ -163,6 +171,8 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
 
     private final ConcurrentMapLong<SearchContext> activeContexts = ConcurrentCollections.newConcurrentMapLongWithAggressiveConcurrency();
 
+    private final ConcurrentMapLong<PointInTimeReader> activeReaders = ConcurrentCollections.newConcurrentMapLongWithAggressiveConcurrency();
+
     public SearchService(ClusterService clusterService, IndicesService indicesService,
                          ThreadPool threadPool, ScriptService scriptService, BigArrays bigArrays, FetchPhase fetchPhase,
                          ResponseCollectorService responseCollectorService) {
@@ -222,6 +232,7 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         // to release memory and let references to the filesystem go etc.
         if (reason == IndexRemovalReason.DELETED || reason == IndexRemovalReason.CLOSED) {
             freeAllContextForIndex(index);
+            freeAllPointInTimeForIndex(index);
         }
 
     }
@@ -244,6 +255,9 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         for (final SearchContext context : activeContexts.values()) {
             freeContext(context.id());
         }
+        for (final PointInTimeReader reader : activeReaders.values()) {
+            freePointInTime(reader.id());
+        }
     }
 
     @Override
@@ -293,7 +307,12 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
      */
     private void loadOrExecuteQueryPhase(final ShardSearchRequest request, final SearchContext context) throws Exception {
         final boolean canCache = indicesService.canCache(request, context);
+        final boolean canCacheSegmentAggregations = indicesService.canCacheSegmentAggregations(request, context);
         context.getQueryShardContext().freezeContext();
+        if (canCacheSegmentAggregations) {
+            // only the segments that are not cached yet are aggregated, including when the shard level result is not cached
+            context.aggregations().segmentsCache(indicesService.segmentAggregationsCache(request, context));
+        }
         if (canCache) {
             indicesService.loadIntoContext(request, context, queryPhase);
         } else {
@@ -301,6 +320,25 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         }
     }
 
+    /**
+     * Try to load the fetched hits from the cache or execute the fetch phase directly if the cache cannot be used.
+     */
+    private void loadOrExecuteFetchPhase(final SearchContext context) throws Exception {
+        if (indicesService.canCacheHits(context)) {
+            try {
+                indicesService.loadFetchIntoContext(context, fetchPhase);
+            } catch (ExecutionException e) {
+                // execution exception can happen while loading the cache, strip it
+                if (e.getCause() == null) {
+                    throw e;
+                }
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : new ElasticsearchException(e.getCause());
+            }
+        } else {
+            fetchPhase.execute(context);
+        }
+    }
+
     public void executeQueryPhase(ShardSearchRequest request, SearchTask task, ActionListener<SearchPhaseResult> listener) {
         rewriteShardRequest(request, new ActionListener<ShardSearchRequest>() {
             @Override
@@ -366,7 +404,7 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         operationListener.onPreFetchPhase(context);
         try {
             shortcutDocIdsToLoad(context);
-            fetchPhase.execute(context);
+            loadOrExecuteFetchPhase(context);
             if (fetchPhaseShouldFreeContext(context)) {
                 freeContext(context.id());
             } else {
@@ -489,7 +527,7 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
             context.docIdsToLoad(request.docIds(), 0, request.docIdsSize());
             operationListener.onPreFetchPhase(context);
             long time = System.nanoTime();
-            fetchPhase.execute(context);
+            loadOrExecuteFetchPhase(context);
             if (fetchPhaseShouldFreeContext(context)) {
                 freeContext(request.id());
             } else {
@@ -558,6 +596,13 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
                 context.size(10);
             }
 
+            // the aggregation phase needs to know whether slices are collected concurrently when it is pre processed
+            final IndexSettings indexSettings = context.indexShard().indexSettings();
+            if (indexSettings.isConcurrentSegmentSearch()) {
+                context.searcher().setConcurrentSearchExecutor(threadPool.executor(Names.SEARCH_WORKER),
+                    threadPool.info(Names.SEARCH_WORKER).getMax(), indexSettings.getConcurrentSegmentSearchMinDocsPerSlice());
+            }
+
             // pre process
             dfsPhase.preProcess(context);
             queryPhase.preProcess(context);
@@ -589,7 +634,12 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         IndexShard indexShard = indexService.getShard(request.shardId().getId());
         SearchShardTarget shardTarget = new SearchShardTarget(clusterService.localNode().getId(),
                 indexShard.shardId(), request.getClusterAlias(), OriginalIndices.NONE);
-        Engine.Searcher engineSearcher = indexShard.acquireSearcher("search");
+        final Engine.Searcher engineSearcher;
+        if (request.pointInTimeReaderId() == PointInTimeReader.NO_READER_ID) {
+            engineSearcher = indexShard.acquireSearcher("search");
+        } else {
+            engineSearcher = acquirePointInTimeSearcher(request);
+        }
 
         final DefaultSearchContext searchContext = new DefaultSearchContext(idGenerator.incrementAndGet(), request, shardTarget,
             engineSearcher, indexService, indexShard, bigArrays, threadPool.estimatedTimeInMillisCounter(), timeout, fetchPhase,
@@ -611,6 +661,60 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         return searchContext;
     }
 
+    private Engine.Searcher acquirePointInTimeSearcher(ShardSearchRequest request) {
+        final PointInTimeReader reader = activeReaders.get(request.pointInTimeReaderId());
+        if (reader == null) {
+            throw new SearchContextMissingException(request.pointInTimeReaderId());
+        }
+        if (reader.indexShard().shardId().equals(request.shardId()) == false) {
+            throw new IllegalArgumentException("point in time [" + reader.id() + "] was opened on shard " + reader.indexShard().shardId()
+                + " but the request targets shard " + request.shardId());
+        }
+        final PointInTimeBuilder pointInTime = request.source() == null ? null : request.source().pointInTimeBuilder();
+        long keepAlive = -1;
+        if (pointInTime != null && pointInTime.getKeepAlive() != null) {
+            keepAlive = pointInTime.getKeepAlive().millis();
+            validateKeepAlive("point in time", keepAlive);
+        }
+        reader.accessed(threadPool.relativeTimeInMillis(), keepAlive);
+        return reader.acquireSearcher("search");
+    }
+
+    /**
+     * Opens a point in time on the given shard that is kept open for the given keep alive after it was last used, and returns its
+     * id. Searches that run against the point in time share its searcher rather than acquiring a new one.
+     */
+    public long openPointInTime(ShardId shardId, TimeValue keepAlive) {
+        validateKeepAlive("point in time", keepAlive.millis());
+        final IndexShard indexShard = indicesService.indexServiceSafe(shardId.getIndex()).getShard(shardId.id());
+        final Engine.Searcher searcher = indexShard.acquireSearcher("point_in_time");
+        final PointInTimeReader reader = new PointInTimeReader(idGenerator.incrementAndGet(), indexShard, searcher, keepAlive.millis(),
+            threadPool.relativeTimeInMillis());
+        final PointInTimeReader previous = activeReaders.put(reader.id(), reader);
+        assert previous == null;
+        return reader.id();
+    }
+
+    /**
+     * Closes the point in time with the given id, returns <code>false</code> if there is no such point in time.
+     */
+    public boolean freePointInTime(long id) {
+        final PointInTimeReader reader = activeReaders.remove(id);
+        if (reader != null) {
+            reader.close();
+            return true;
+        }
+        return false;
+    }
+
+    private void freeAllPointInTimeForIndex(Index index) {
+        for (PointInTimeReader reader : activeReaders.values()) {
+            if (index.equals(reader.indexShard().shardId().getIndex())) {
+                freePointInTime(reader.id());
+            }
+        }
+    }
+
     private void freeAllContextForIndex(Index index) {
         assert index != null;
         for (SearchContext ctx : activeContexts.values()) {
@@ -647,13 +751,17 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
     }
 
     private void contextScrollKeepAlive(SearchContext context, long keepAlive) throws IOException {
+        validateKeepAlive("scroll", keepAlive);
+        context.keepAlive(keepAlive);
+    }
+
+    private void validateKeepAlive(String kind, long keepAlive) {
         if (keepAlive > maxKeepAlive) {
             throw new IllegalArgumentException(
-                "Keep alive for scroll (" + TimeValue.timeValueMillis(keepAlive).format() + ") is too large. " +
+                "Keep alive for " + kind + " (" + TimeValue.timeValueMillis(keepAlive).format() + ") is too large. " +
                     "It must be less than (" + TimeValue.timeValueMillis(maxKeepAlive).format() + "). " +
                     "This limit can be set by changing the [" + MAX_KEEPALIVE_SETTING.getKey() + "] cluster level setting.");
         }
-        context.keepAlive(keepAlive);
     }
 
     private void contextProcessing(SearchContext context) {
@@ -910,6 +1018,13 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         return this.activeContexts.size();
     }
 
+    /**
+     * Returns the number of open points in time in this SearchService
+     */
+    public int getActivePointInTimeReaders() {
+        return this.activeReaders.size();
+    }
+
     public ResponseCollectorService getResponseCollectorService() {
         return this.responseCollectorService;
     }
@@ -931,6 +1046,14 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
                     freeContext(context.id());
                 }
             }
+            for (PointInTimeReader reader : activeReaders.values()) {
+                final long lastAccessTime = reader.lastAccessTime();
+                if (time - lastAccessTime > reader.keepAlive()) {
+                    logger.debug("freeing point in time [{}], time [{}], lastAccessTime [{}], keepAlive [{}]", reader.id(), time,
+                        lastAccessTime, reader.keepAlive());
+                    freePointInTime(reader.id());
+                }
+            }
         }
     }
 
@@ -944,15 +1067,47 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
      * shard.
      */
     public boolean canMatch(ShardSearchRequest request) throws IOException {
+        return canMatchWithFieldRanges(request).v1();
+    }
+
+    /**
+     * Same as {@link #canMatch(ShardSearchRequest)} but also returns the {@link ShardFieldRanges} of the fields that the query
+     * requires to be within a range, or <code>null</code> if there are no such fields. The ranges are marked as read-only if
+     * the index is write blocked and the shard has no pending changes, in which case the coordinating node caches them for as
+     * long as the index metadata doesn't change.
+     */
+    public Tuple<Boolean, ShardFieldRanges> canMatchWithFieldRanges(ShardSearchRequest request) throws IOException {
         assert request.searchType() == SearchType.QUERY_THEN_FETCH : "unexpected search type: " + request.searchType();
+        // the ranges are extracted from the original query since the rewritten one might not match anymore
+        final QueryBuilder originalQuery = request.source() == null ? null : request.source().query();
+        final ClusterState state = clusterService.state();
+        final long time = System.nanoTime();
         try (DefaultSearchContext context = createSearchContext(request, defaultSearchTimeout, false)) {
             SearchSourceBuilder source = context.request().source();
+            final Tuple<Boolean, ShardFieldRanges> result;
             if (canRewriteToMatchNone(source)) {
                 QueryBuilder queryBuilder = source.query();
-                return queryBuilder instanceof MatchNoneQueryBuilder == false;
+                result = new Tuple<>(queryBuilder instanceof MatchNoneQueryBuilder == false,
+                    buildFieldRanges(state, context, originalQuery));
+            } else {
+                result = new Tuple<>(true, null); // null query means match_all
             }
-            return true; // null query means match_all
+            context.indexShard().getSearchOperationListener().onCanMatchPhase(context, System.nanoTime() - time);
+            return result;
+        }
+    }
+
+    @Nullable
+    private static ShardFieldRanges buildFieldRanges(ClusterState state, SearchContext context, QueryBuilder query) throws IOException {
+        final Index index = context.indexShard().shardId().getIndex();
+        final IndexMetaData indexMetaData = state.metaData().index(index);
+        if (indexMetaData == null || ShardFieldRanges.requiredRanges(query).isEmpty()) {
+            return null;
         }
+        final DirectoryReader reader = context.searcher().getDirectoryReader();
+        // the block must be checked before the reader, otherwise writes that were done in between would not be visible
+        final boolean readOnly = state.blocks().indexBlocked(ClusterBlockLevel.WRITE, index.getName()) && reader.isCurrent();
+        return ShardFieldRanges.build(indexMetaData.getVersion(), readOnly, query, context.mapperService(), reader);
     }
 
     /**
@@ -0,0 +1,316 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search;
+
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.PointValues;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.joda.DateMathParser;
+import org.elasticsearch.common.joda.FormatDateTimeFormatter;
+import org.elasticsearch.common.joda.Joda;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.ConstantScoreQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.joda.time.DateTimeZone;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The min and max values of the numeric and date fields of a shard, taken from the points of the segments of the index.
+ * These are returned by the <code>can_match</code> phase for the fields that a query requires to be within a range, so
+ * that the coordinating node can cache them and skip the shard for later queries whose ranges can't match, without
+ * sending a request to the shard. The ranges describe the reader of the shard they have been computed from, which is
+ * identified by its version. They stay valid for as long as the index metadata keeps the same version if the shard
+ * can't receive writes, see {@link #isReadOnly()}, and only for a short time otherwise.
+ */
+public final class ShardFieldRanges implements Writeable {
+
+    private final long indexMetaDataVersion;
+    private final long readerVersion;
+    private final boolean readOnly;
+    private final Map<String, FieldRange> ranges;
+
+    public ShardFieldRanges(long indexMetaDataVersion, long readerVersion, boolean readOnly, Map<String, FieldRange> ranges) {
+        this.indexMetaDataVersion = indexMetaDataVersion;
+        this.readerVersion = readerVersion;
+        this.readOnly = readOnly;
+        this.ranges = Collections.unmodifiableMap(ranges);
+    }
+
+    public ShardFieldRanges(StreamInput in) throws IOException {
+        indexMetaDataVersion = in.readVLong();
+        readerVersion = in.readVLong();
+        readOnly = in.readBoolean();
+        ranges = Collections.unmodifiableMap(in.readMap(StreamInput::readString, FieldRange::new));
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVLong(indexMetaDataVersion);
+        out.writeVLong(readerVersion);
+        out.writeBoolean(readOnly);
+        out.writeMap(ranges, StreamOutput::writeString, (o, range) -> range.writeTo(o));
+    }
+
+    /**
+     * The version of the index metadata these ranges have been computed for.
+     */
+    public long getIndexMetaDataVersion() {
+        return indexMetaDataVersion;
+    }
+
+    /**
+     * The version of the reader of the shard these ranges have been computed from. It increases whenever a refresh or a
+     * merge changes the segments of the shard.
+     */
+    public long getReaderVersion() {
+        return readerVersion;
+    }
+
+    /**
+     * Returns <code>true</code> if the index was write blocked and the reader had no pending changes when these ranges were
+     * computed, in which case they can't change for as long as the index metadata keeps the same version.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * The ranges per field name.
+     */
+    public Map<String, FieldRange> getRanges() {
+        return ranges;
+    }
+
+    /**
+     * Returns <code>false</code> if any of the ranges that the given query requires can't match the values of this shard.
+     * Fields without a known range are assumed to match.
+     */
+    public boolean canMatch(@Nullable QueryBuilder query, long nowInMillis) {
+        for (RangeQueryBuilder rangeQuery : requiredRanges(query)) {
+            FieldRange range = ranges.get(rangeQuery.fieldName());
+            if (range != null && range.canMatch(rangeQuery, nowInMillis) == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the ranges of the fields that the given query requires to be within a range from the min and max values of
+     * the points of each segment of the given reader. Fields that are not indexed or that are neither dates nor integral
+     * numbers are ignored.
+     */
+    public static ShardFieldRanges build(long indexMetaDataVersion, boolean readOnly, @Nullable QueryBuilder query,
+                                         MapperService mapperService, DirectoryReader reader) throws IOException {
+        final Map<String, FieldRange> ranges = new HashMap<>();
+        for (RangeQueryBuilder rangeQuery : requiredRanges(query)) {
+            final String field = rangeQuery.fieldName();
+            if (ranges.containsKey(field)) {
+                continue;
+            }
+            final MappedFieldType fieldType = mapperService.fullName(field);
+            if (fieldType == null || fieldType.indexOptions() == IndexOptions.NONE) {
+                continue;
+            }
+            final String format;
+            final int bytesPerDim;
+            if (fieldType instanceof DateFieldMapper.DateFieldType) {
+                FormatDateTimeFormatter formatter = ((DateFieldMapper.DateFieldType) fieldType).dateTimeFormatter();
+                if (Locale.ROOT.equals(formatter.locale()) == false) {
+                    // the coordinating node parses the bounds of the query with the root locale
+                    continue;
+                }
+                format = formatter.format();
+                bytesPerDim = Long.BYTES;
+            } else if (fieldType instanceof NumberFieldMapper.NumberFieldType) {
+                format = null;
+                switch (fieldType.typeName()) {
+                    case "long":
+                        bytesPerDim = Long.BYTES;
+                        break;
+                    case "integer":
+                    case "short":
+                    case "byte":
+                        bytesPerDim = Integer.BYTES;
+                        break;
+                    default:
+                        continue;
+                }
+            } else {
+                continue;
+            }
+            final byte[] minPackedValue = PointValues.getMinPackedValue(reader, field);
+            final byte[] maxPackedValue = PointValues.getMaxPackedValue(reader, field);
+            if (minPackedValue == null || maxPackedValue == null) {
+                ranges.put(field, new FieldRange(format, false, 0, 0));
+            } else if (bytesPerDim == Long.BYTES) {
+                ranges.put(field, new FieldRange(format, true, LongPoint.decodeDimension(minPackedValue, 0),
+                    LongPoint.decodeDimension(maxPackedValue, 0)));
+            } else {
+                ranges.put(field, new FieldRange(format, true, IntPoint.decodeDimension(minPackedValue, 0),
+                    IntPoint.decodeDimension(maxPackedValue, 0)));
+            }
+        }
+        return new ShardFieldRanges(indexMetaDataVersion, reader.getVersion(), readOnly, ranges);
+    }
+
+    /**
+     * Returns the range queries that documents must match in order to match the given query, ie. top-level range queries
+     * and range queries in <code>must</code> and <code>filter</code> clauses of boolean queries.
+     */
+    public static List<RangeQueryBuilder> requiredRanges(@Nullable QueryBuilder query) {
+        final List<RangeQueryBuilder> ranges = new ArrayList<>();
+        collectRequiredRanges(query, ranges);
+        return ranges;
+    }
+
+    private static void collectRequiredRanges(@Nullable QueryBuilder query, List<RangeQueryBuilder> ranges) {
+        if (query instanceof RangeQueryBuilder) {
+            ranges.add((RangeQueryBuilder) query);
+        } else if (query instanceof BoolQueryBuilder) {
+            BoolQueryBuilder boolQuery = (BoolQueryBuilder) query;
+            for (QueryBuilder clause : boolQuery.must()) {
+                collectRequiredRanges(clause, ranges);
+            }
+            for (QueryBuilder clause : boolQuery.filter()) {
+                collectRequiredRanges(clause, ranges);
+            }
+        } else if (query instanceof ConstantScoreQueryBuilder) {
+            collectRequiredRanges(((ConstantScoreQueryBuilder) query).innerQuery(), ranges);
+        }
+    }
+
+    /**
+     * The min and max value of a single field of a shard.
+     */
+    public static final class FieldRange implements Writeable {
+
+        @Nullable
+        private final String dateFormat;
+        private final boolean hasValues;
+        private final long min;
+        private final long max;
+
+        /**
+         * @param dateFormat the format of the field if it is a date field, <code>null</code> otherwise
+         * @param hasValues  whether any document of the shard has a value for the field
+         * @param min        the min value of the field, in milliseconds since the epoch for dates
+         * @param max        the max value of the field, in milliseconds since the epoch for dates
+         */
+        public FieldRange(@Nullable String dateFormat, boolean hasValues, long min, long max) {
+            this.dateFormat = dateFormat;
+            this.hasValues = hasValues;
+            this.min = min;
+            this.max = max;
+        }
+
+        FieldRange(StreamInput in) throws IOException {
+            dateFormat = in.readOptionalString();
+            hasValues = in.readBoolean();
+            min = in.readZLong();
+            max = in.readZLong();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeOptionalString(dateFormat);
+            out.writeBoolean(hasValues);
+            out.writeZLong(min);
+            out.writeZLong(max);
+        }
+
+        public long getMin() {
+            return min;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public boolean hasValues() {
+            return hasValues;
+        }
+
+        /**
+         * Returns <code>false</code> if the given range query can't match any value between {@link #getMin()} and
+         * {@link #getMax()}. The bounds of the query are widened rather than narrowed whenever their exact value
+         * is ambiguous, and bounds that can't be parsed are assumed to match.
+         */
+        boolean canMatch(RangeQueryBuilder rangeQuery, long nowInMillis) {
+            if (hasValues == false) {
+                return false;
+            }
+            try {
+                final long lower;
+                final long upper;
+                if (dateFormat != null) {
+                    String format = rangeQuery.format() == null ? dateFormat : rangeQuery.format();
+                    DateMathParser parser = new DateMathParser(Joda.forPattern(format));
+                    DateTimeZone timeZone = rangeQuery.timeZone() == null ? null : DateTimeZone.forID(rangeQuery.timeZone());
+                    lower = rangeQuery.from() == null ? Long.MIN_VALUE
+                        : parser.parse(rangeQuery.from().toString(), () -> nowInMillis, false, timeZone);
+                    upper = rangeQuery.to() == null ? Long.MAX_VALUE
+                        : parser.parse(rangeQuery.to().toString(), () -> nowInMillis, true, timeZone);
+                } else {
+                    lower = rangeQuery.from() == null ? Long.MIN_VALUE : parseNumber(rangeQuery.from(), false);
+                    upper = rangeQuery.to() == null ? Long.MAX_VALUE : parseNumber(rangeQuery.to(), true);
+                }
+                return lower <= max && upper >= min;
+            } catch (RuntimeException e) {
+                // we leave it to the shard to deal with bounds that we can't parse
+                return true;
+            }
+        }
+
+        private static long parseNumber(Object value, boolean roundUp) {
+            final String text = value.toString();
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                double doubleValue = Double.parseDouble(text);
+                if (Double.isNaN(doubleValue)) {
+                    throw e;
+                }
+                // widen by one ulp to account for the rounding of the text to a double, the conversion
+                // saturates to Long.MIN_VALUE / Long.MAX_VALUE on overflow
+                final double ulp = Math.ulp(doubleValue);
+                return (long) (roundUp ? Math.ceil(doubleValue + ulp) : Math.floor(doubleValue - ulp));
+            }
+        }
+    }
+}
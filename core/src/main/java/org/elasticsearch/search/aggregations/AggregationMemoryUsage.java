@@ -0,0 +1,193 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations;
+
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.xcontent.ConstructingObjectParser;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+import static org.elasticsearch.common.xcontent.ConstructingObjectParser.constructorArg;
+
+/**
+ * Tracks the memory that the aggregators at a given path of the aggregation tree account for, through
+ * {@link org.elasticsearch.common.util.BigArrays} and the request circuit breaker, and the number of buckets they create.
+ * The aggregators that are created for each bucket of a parent aggregation share the same path and thus the same usage.
+ */
+public final class AggregationMemoryUsage implements LongConsumer {
+
+    private final String path;
+    private final AtomicLong buckets = new AtomicLong();
+    private long bytes;
+    private long peakBytes;
+
+    public AggregationMemoryUsage(String path) {
+        this.path = path;
+    }
+
+    /**
+     * The names of the aggregations from the top level aggregation to this one, separated with <code>&gt;</code>.
+     */
+    public String path() {
+        return path;
+    }
+
+    /**
+     * Returns the path of the given aggregator in the aggregation tree, see {@link #path()}.
+     */
+    public static String path(Aggregator aggregator) {
+        return aggregator.parent() == null ? aggregator.name() : path(aggregator.parent()) + ">" + aggregator.name();
+    }
+
+    /**
+     * Registers that <code>delta</code> bytes have been allocated, or released if negative.
+     */
+    @Override
+    public synchronized void accept(long delta) {
+        bytes += delta;
+        peakBytes = Math.max(peakBytes, bytes);
+    }
+
+    /**
+     * Registers that <code>count</code> new buckets have been created.
+     */
+    public void addBuckets(long count) {
+        buckets.addAndGet(count);
+    }
+
+    /**
+     * Returns a point-in-time copy of the usage.
+     */
+    public synchronized Stats stats() {
+        return new Stats(path, bytes, peakBytes, buckets.get());
+    }
+
+    /**
+     * The memory usage of the aggregators at a path of the aggregation tree.
+     */
+    public static final class Stats implements Writeable, ToXContentObject {
+        // the human readable sizes are ignored
+        private static final ConstructingObjectParser<Stats, Void> PARSER = new ConstructingObjectParser<>("aggregation_memory_usage",
+            true, a -> new Stats((String) a[0], (long) a[1], (long) a[2], (long) a[3]));
+        static {
+            PARSER.declareString(constructorArg(), new ParseField("path"));
+            PARSER.declareLong(constructorArg(), new ParseField("memory_in_bytes"));
+            PARSER.declareLong(constructorArg(), new ParseField("peak_memory_in_bytes"));
+            PARSER.declareLong(constructorArg(), new ParseField("buckets"));
+        }
+
+        private final String path;
+        private final long bytes;
+        private final long peakBytes;
+        private final long buckets;
+
+        public Stats(String path, long bytes, long peakBytes, long buckets) {
+            this.path = Objects.requireNonNull(path);
+            this.bytes = bytes;
+            this.peakBytes = peakBytes;
+            this.buckets = buckets;
+        }
+
+        public Stats(StreamInput in) throws IOException {
+            path = in.readString();
+            bytes = in.readZLong();
+            peakBytes = in.readVLong();
+            buckets = in.readVLong();
+        }
+
+        public static Stats fromXContent(XContentParser parser) {
+            return PARSER.apply(parser, null);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeString(path);
+            out.writeZLong(bytes);
+            out.writeVLong(peakBytes);
+            out.writeVLong(buckets);
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * The number of bytes that are currently allocated.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * The maximum number of bytes that have been allocated at any time.
+         */
+        public long getPeakBytes() {
+            return peakBytes;
+        }
+
+        /**
+         * The number of buckets that have been created.
+         */
+        public long getBuckets() {
+            return buckets;
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            builder.field("path", path);
+            builder.byteSizeField("memory_in_bytes", "memory", bytes);
+            builder.byteSizeField("peak_memory_in_bytes", "peak_memory", peakBytes);
+            builder.field("buckets", buckets);
+            builder.endObject();
+            return builder;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            Stats other = (Stats) obj;
+            return path.equals(other.path) && bytes == other.bytes && peakBytes == other.peakBytes && buckets == other.buckets;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, bytes, peakBytes, buckets);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + path + "] memory [" + new ByteSizeValue(bytes) + "], peak memory [" + new ByteSizeValue(peakBytes)
+                + "], buckets [" + buckets + "]";
+        }
+    }
+}
@@ -23,6 +23,7 @@ import org.apache.lucene.search.Query;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.lucene.search.Queries;
 import org.elasticsearch.search.SearchPhase;
+import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
 import org.elasticsearch.search.aggregations.bucket.global.GlobalAggregator;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.pipeline.SiblingPipelineAggregator;
@@ -48,6 +49,10 @@ public class AggregationPhase implements SearchPhase {
     @Override
     public void preProcess(SearchContext context) {
         if (context.aggregations() != null) {
+            if (context.getTask() != null) {
+                // exposes the memory usage of the aggregators in the status of the task while the search is running
+                context.getTask().setAggregationMemoryUsage(context.aggregations()::memoryStats);
+            }
             List<Aggregator> collectors = new ArrayList<>();
             Aggregator[] aggregators;
             try {
@@ -60,8 +65,29 @@ public class AggregationPhase implements SearchPhase {
                 }
                 context.aggregations().aggregators(aggregators);
                 if (!collectors.isEmpty()) {
-                    Collector collector = BucketCollector.wrap(collectors);
-                    ((BucketCollector)collector).preCollection();
+                    BucketCollector bucketCollector = BucketCollector.wrap(collectors);
+                    if (context.aggregations().segmentsCache() != null && context.getProfilers() == null
+                            && collectors.size() == aggregators.length && bucketCollector.needsScores() == false) {
+                        // each segment is aggregated separately so that its results can be cached, the aggregators are
+                        // prepared and built per segment
+                        context.queryCollectors().put(AggregationPhase.class,
+                            new SegmentCachingBucketCollector(factories, aggregators, context.aggregations().segmentsCache()));
+                        return;
+                    }
+                    if (context.searcher().isConcurrentSearchEnabled() && context.getProfilers() == null
+                            && collectors.size() == aggregators.length && bucketCollector.needsScores() == false
+                            && canAggregateSlices(context)) {
+                        // each slice of leaves is aggregated with its own aggregators so that slices can be collected
+                        // concurrently, the results of the slices are merged in execute()
+                        context.queryCollectors().put(AggregationPhase.class, new SlicedBucketCollector(factories, aggregators));
+                        return;
+                    }
+                    bucketCollector.preCollection();
+                    Collector collector = bucketCollector;
+                    if (context.getProfilers() == null && bucketCollector.needsScores() == false) {
+                        // documents are buffered and collected in batches, the last batch is flushed in execute()
+                        collector = new BatchingBucketCollector(bucketCollector);
+                    }
                     if (context.getProfilers() != null) {
                         collector = new InternalProfileCollector(collector, CollectorResult.REASON_AGGREGATION,
                                 // TODO: report on child aggs as well
@@ -75,6 +101,16 @@ public class AggregationPhase implements SearchPhase {
         }
     }
 
+    /**
+     * Returns <code>true</code> if the results of the aggregations of the request can be computed per slice and merged,
+     * which is the case of the aggregations whose results can be cached per segment.
+     */
+    private static boolean canAggregateSlices(SearchContext context) {
+        return context.request() != null && context.request().source() != null
+            && context.request().source().aggregations() != null
+            && SegmentCachingBucketCollector.canCache(context.request().source().aggregations());
+    }
+
     @Override
     public void execute(SearchContext context) {
         if (context.aggregations() == null) {
@@ -87,6 +123,60 @@ public class AggregationPhase implements SearchPhase {
             return;
         }
 
+        Collector queryCollector = context.queryCollectors().get(AggregationPhase.class);
+        if (queryCollector instanceof SegmentCachingBucketCollector) {
+            try {
+                // the last segment is not cached if it was not fully collected
+                context.queryResult().aggregations(((SegmentCachingBucketCollector) queryCollector)
+                    .buildAggregations(context.queryResult().searchTimedOut() == false));
+            } catch (IOException e) {
+                throw new AggregationExecutionException("Failed to build aggregations from the results of the segments", e);
+            }
+        } else if (queryCollector instanceof SlicedBucketCollector) {
+            try {
+                ReduceContext reduceContext = new ReduceContext(context.bigArrays(),
+                    context.getQueryShardContext().getScriptService(), false);
+                context.queryResult().aggregations(((SlicedBucketCollector) queryCollector).buildAggregations(reduceContext));
+            } catch (IOException e) {
+                throw new AggregationExecutionException("Failed to build aggregations from the results of the slices", e);
+            }
+        } else {
+            context.queryResult().aggregations(buildAggregations(context, queryCollector));
+        }
+        try {
+            List<PipelineAggregator> pipelineAggregators = context.aggregations().factories().createPipelineAggregators();
+            List<SiblingPipelineAggregator> siblingPipelineAggregators = new ArrayList<>(pipelineAggregators.size());
+            for (PipelineAggregator pipelineAggregator : pipelineAggregators) {
+                if (pipelineAggregator instanceof SiblingPipelineAggregator) {
+                    siblingPipelineAggregators.add((SiblingPipelineAggregator) pipelineAggregator);
+                } else {
+                    throw new AggregationExecutionException("Invalid pipeline aggregation named [" + pipelineAggregator.name()
+                            + "] of type [" + pipelineAggregator.getWriteableName() + "]. Only sibling pipeline aggregations are "
+                            + "allowed at the top level");
+                }
+            }
+            context.queryResult().pipelineAggregators(siblingPipelineAggregators);
+        } catch (IOException e) {
+            throw new AggregationExecutionException("Failed to build top level pipeline aggregators", e);
+        }
+
+        // disable aggregations so that they don't run on next pages in case of scrolling
+        context.aggregations(null);
+        context.queryCollectors().remove(AggregationPhase.class);
+    }
+
+    /**
+     * Builds the aggregations of the shard out of the top level aggregators, after running the global aggregators.
+     */
+    private InternalAggregations buildAggregations(SearchContext context, Collector queryCollector) {
+        if (queryCollector instanceof BatchingBucketCollector) {
+            try {
+                ((BatchingBucketCollector) queryCollector).flush();
+            } catch (IOException e) {
+                throw new AggregationExecutionException("Failed to collect the last batch of documents", e);
+            }
+        }
+
         Aggregator[] aggregators = context.aggregations().aggregators();
         List<Aggregator> globals = new ArrayList<>();
         for (int i = 0; i < aggregators.length; i++) {
@@ -102,9 +192,12 @@ public class AggregationPhase implements SearchPhase {
 
             try {
                 final Collector collector;
+                final BatchingBucketCollector batchingCollector;
                 if (context.getProfilers() == null) {
-                    collector = globalsCollector;
+                    batchingCollector = globalsCollector.needsScores() ? null : new BatchingBucketCollector(globalsCollector);
+                    collector = batchingCollector == null ? globalsCollector : batchingCollector;
                 } else {
+                    batchingCollector = null;
                     InternalProfileCollector profileCollector = new InternalProfileCollector(
                             globalsCollector, CollectorResult.REASON_AGGREGATION_GLOBAL,
                             // TODO: report on sub collectors
@@ -115,6 +208,9 @@ public class AggregationPhase implements SearchPhase {
                 }
                 globalsCollector.preCollection();
                 context.searcher().search(query, collector);
+                if (batchingCollector != null) {
+                    batchingCollector.flush();
+                }
             } catch (Exception e) {
                 throw new QueryPhaseExecutionException(context, "Failed to execute global aggregators", e);
             } finally {
@@ -131,27 +227,7 @@ public class AggregationPhase implements SearchPhase {
                 throw new AggregationExecutionException("Failed to build aggregation [" + aggregator.name() + "]", e);
             }
         }
-        context.queryResult().aggregations(new InternalAggregations(aggregations));
-        try {
-            List<PipelineAggregator> pipelineAggregators = context.aggregations().factories().createPipelineAggregators();
-            List<SiblingPipelineAggregator> siblingPipelineAggregators = new ArrayList<>(pipelineAggregators.size());
-            for (PipelineAggregator pipelineAggregator : pipelineAggregators) {
-                if (pipelineAggregator instanceof SiblingPipelineAggregator) {
-                    siblingPipelineAggregators.add((SiblingPipelineAggregator) pipelineAggregator);
-                } else {
-                    throw new AggregationExecutionException("Invalid pipeline aggregation named [" + pipelineAggregator.name()
-                            + "] of type [" + pipelineAggregator.getWriteableName() + "]. Only sibling pipeline aggregations are "
-                            + "allowed at the top level");
-                }
-            }
-            context.queryResult().pipelineAggregators(siblingPipelineAggregators);
-        } catch (IOException e) {
-            throw new AggregationExecutionException("Failed to build top level pipeline aggregators", e);
-        }
-
-        // disable aggregations so that they don't run on next pages in case of scrolling
-        context.aggregations(null);
-        context.queryCollectors().remove(AggregationPhase.class);
+        return new InternalAggregations(aggregations);
     }
 
 }
@@ -21,6 +21,8 @@ package org.elasticsearch.search.aggregations;
 import org.apache.lucene.index.LeafReaderContext;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.internal.SearchContext;
@@ -53,7 +55,10 @@ public abstract class AggregatorBase extends Aggregator {
     private Map<String, Aggregator> subAggregatorbyName;
     private final List<PipelineAggregator> pipelineAggregators;
     private final CircuitBreakerService breakerService;
+    private final AggregationMemoryUsage memoryUsage;
+    private final BigArrays bigArrays;
     private long requestBytesUsed;
+    private boolean closed;
 
     /**
      * Constructs a new Aggregator.
@@ -72,6 +77,9 @@ public abstract class AggregatorBase extends Aggregator {
         this.parent = parent;
         this.context = context;
         this.breakerService = context.bigArrays().breakerService();
+        final String path = parent == null ? name : AggregationMemoryUsage.path(parent) + ">" + name;
+        this.memoryUsage = context.aggregations() == null ? new AggregationMemoryUsage(path) : context.aggregations().memoryUsage(path);
+        this.bigArrays = context.bigArrays().withMemoryListener(memoryUsage);
         assert factories != null : "sub-factories provided to BucketAggregator must not be null, use AggragatorFactories.EMPTY instead";
         this.subAggregators = factories.createSubAggregators(this);
         context.addReleasable(this, Lifetime.PHASE);
@@ -105,7 +113,22 @@ public abstract class AggregatorBase extends Aggregator {
         };
         addRequestCircuitBreakerBytes(DEFAULT_WEIGHT);
     }
-    
+
+    /**
+     * The {@link BigArrays} that this aggregator must allocate its data structures with, so that they are accounted in
+     * its {@link #memoryUsage()}.
+     */
+    protected final BigArrays bigArrays() {
+        return bigArrays;
+    }
+
+    /**
+     * The memory usage and number of buckets of the aggregators at the path of this aggregator in the aggregation tree.
+     */
+    public final AggregationMemoryUsage memoryUsage() {
+        return memoryUsage;
+    }
+
     /**
      * Increment or decrement the number of bytes that have been allocated to service
      * this request and potentially trigger a {@link CircuitBreakingException}. The
@@ -130,6 +153,7 @@ public abstract class AggregatorBase extends Aggregator {
                     .addWithoutBreaking(bytes);
         }
         this.requestBytesUsed += bytes;
+        memoryUsage.accept(bytes);
         return requestBytesUsed;
     }
     /**
@@ -232,13 +256,22 @@ public abstract class AggregatorBase extends Aggregator {
         collectableSubAggregators.postCollection();
     }
 
-    /** Called upon release of the aggregator. */
+    /**
+     * Called upon release of the aggregator, also releases its sub-aggregators. Aggregators may be released before the
+     * end of the phase they are registered with, so releasing an aggregator again is a no-op.
+     */
     @Override
     public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
         try {
             doClose();
         } finally {
             this.breakerService.getBreaker(CircuitBreaker.REQUEST).addWithoutBreaking(-this.requestBytesUsed);
+            memoryUsage.accept(-this.requestBytesUsed);
+            Releasables.close(subAggregators);
         }
     }
 
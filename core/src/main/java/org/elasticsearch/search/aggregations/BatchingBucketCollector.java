@@ -0,0 +1,115 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.Scorer;
+
+import java.io.IOException;
+
+/**
+ * A {@link BucketCollector} that buffers the documents that the searcher collects in the top level bucket and passes them to
+ * the wrapped collector in batches through {@link LeafBucketCollector#collect(int[], int, long)}, so that aggregators can
+ * process them in tight loops instead of paying a virtual call per document and per level of the aggregation tree.
+ * It must only wrap collectors that don't need scores since the scorer is positioned on another document by the time
+ * a batch is collected. The last batch is collected by {@link #flush()}, which must be called once the search is done.
+ * Leaves in which the wrapped collector has nothing to collect are terminated with a {@link CollectionTerminatedException}.
+ */
+public final class BatchingBucketCollector extends BucketCollector {
+    static final int BATCH_SIZE = 128;
+
+    private final BucketCollector in;
+    private final int[] docs = new int[BATCH_SIZE];
+    private int count;
+    private LeafBucketCollector leafCollector;
+
+    public BatchingBucketCollector(BucketCollector in) {
+        if (in.needsScores()) {
+            throw new IllegalArgumentException("cannot collect documents in batches if scores are needed");
+        }
+        this.in = in;
+    }
+
+    @Override
+    public LeafBucketCollector getLeafCollector(LeafReaderContext ctx) throws IOException {
+        flush();
+        leafCollector = in.getLeafCollector(ctx);
+        if (leafCollector == LeafBucketCollector.NO_OP_COLLECTOR) {
+            // nothing to collect in this leaf, for instance because its buckets were counted up-front
+            throw new CollectionTerminatedException();
+        }
+        return new LeafBucketCollector() {
+            @Override
+            public void setScorer(Scorer scorer) throws IOException {
+                leafCollector.setScorer(scorer);
+            }
+
+            @Override
+            public void collect(int doc, long bucket) throws IOException {
+                assert bucket == 0;
+                docs[count++] = doc;
+                if (count == docs.length) {
+                    collectBatch();
+                }
+            }
+        };
+    }
+
+    /**
+     * Collects the documents that are still buffered.
+     */
+    public void flush() throws IOException {
+        try {
+            collectBatch();
+        } catch (CollectionTerminatedException e) {
+            // the leaf is done anyway
+        }
+    }
+
+    private void collectBatch() throws IOException {
+        if (count > 0) {
+            final int batchSize = count;
+            count = 0;
+            leafCollector.collect(docs, batchSize, 0);
+        }
+    }
+
+    @Override
+    public void preCollection() throws IOException {
+        in.preCollection();
+    }
+
+    @Override
+    public void postCollection() throws IOException {
+        flush();
+        in.postCollection();
+    }
+
+    @Override
+    public boolean needsScores() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return in.toString();
+    }
+}
@@ -21,6 +21,7 @@ package org.elasticsearch.search.aggregations;
 
 
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
 import org.apache.lucene.search.Collector;
 
 import java.io.IOException;
@@ -72,7 +73,14 @@ public abstract class BucketCollector implements Collector {
                     public LeafBucketCollector getLeafCollector(LeafReaderContext ctx) throws IOException {
                         List<LeafBucketCollector> leafCollectors = new ArrayList<>(collectors.length);
                         for (BucketCollector c : collectors) {
-                            leafCollectors.add(c.getLeafCollector(ctx));
+                            try {
+                                leafCollectors.add(c.getLeafCollector(ctx));
+                            } catch (CollectionTerminatedException e) {
+                                // this collector is done with the leaf but the others may not be
+                            }
+                        }
+                        if (leafCollectors.isEmpty()) {
+                            throw new CollectionTerminatedException();
                         }
                         return LeafBucketCollector.wrap(leafCollectors);
                     }
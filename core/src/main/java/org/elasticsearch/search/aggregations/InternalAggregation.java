@@ -142,6 +142,18 @@ public abstract class InternalAggregation implements Aggregation, NamedWriteable
 
     public abstract Object getProperty(List<String> path);
 
+    // rough heap usage of an aggregation result that only holds a few values
+    protected static final long AGGREGATION_BYTES_ESTIMATE = 256;
+
+    /**
+     * Estimates the heap used by this aggregation result, including its buckets and sub-aggregations. This bounds the
+     * results that the coordinating node buffers before reducing them, so results that hold more than a few values, like
+     * sketches or documents, must account for them.
+     */
+    public long estimateSize() {
+        return AGGREGATION_BYTES_ESTIMATE;
+    }
+
     /**
      * Read a size under the assumption that a value of 0 means unlimited.
      */
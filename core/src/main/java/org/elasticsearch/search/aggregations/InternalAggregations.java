@@ -18,16 +18,23 @@
  */
 package org.elasticsearch.search.aggregations;
 
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static java.util.Collections.emptyMap;
 
@@ -59,7 +66,90 @@ public final class InternalAggregations extends Aggregations implements Streamab
             return null;
         }
 
-        // first we collect all aggregations of the same type and list them together
+        // now we can use the first aggregation of each list to handle the reduce of its list
+        List<InternalAggregation> reducedAggregations = new ArrayList<>();
+        for (List<InternalAggregation> aggregations : groupByName(aggregationsList).values()) {
+            InternalAggregation first = aggregations.get(0); // the list can't be empty as it's created on demand
+            reducedAggregations.add(first.reduce(aggregations, context));
+        }
+        return new InternalAggregations(reducedAggregations);
+    }
+
+    /**
+     * Reduces the given lists of aggregations like {@link #reduce(List, ReduceContext)}, but reduces up to
+     * <code>maxConcurrency</code> aggregations at the same time, the calling thread included. The calling thread keeps
+     * reducing aggregations until none is left, so the reduce completes even if the executor rejects or delays the
+     * tasks that are submitted to it.
+     *
+     * @param aggregationsList  A list of aggregation to reduce
+     * @param executor          The executor that helps the calling thread
+     * @param maxConcurrency    The maximum number of threads that reduce aggregations
+     * @param reduceTimes       If not <code>null</code>, receives the time it took to reduce each aggregation, in nanoseconds
+     * @return                  The reduced addAggregation
+     */
+    public static InternalAggregations reduce(List<InternalAggregations> aggregationsList, ReduceContext context, Executor executor,
+                                              int maxConcurrency, @Nullable Map<String, Long> reduceTimes) {
+        if (aggregationsList.isEmpty()) {
+            return null;
+        }
+
+        final List<List<InternalAggregation>> toReduce = new ArrayList<>(groupByName(aggregationsList).values());
+        final InternalAggregation[] reduced = new InternalAggregation[toReduce.size()];
+        final long[] tookInNanos = new long[toReduce.size()];
+        final AtomicInteger nextAggregation = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(toReduce.size());
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        final Runnable reducer = () -> {
+            for (int i = nextAggregation.getAndIncrement(); i < toReduce.size(); i = nextAggregation.getAndIncrement()) {
+                try {
+                    if (failure.get() == null) {
+                        final List<InternalAggregation> aggregations = toReduce.get(i);
+                        final long start = System.nanoTime();
+                        reduced[i] = aggregations.get(0).reduce(aggregations, context);
+                        tookInNanos[i] = System.nanoTime() - start;
+                    }
+                } catch (RuntimeException e) {
+                    if (failure.compareAndSet(null, e) == false) {
+                        failure.get().addSuppressed(e);
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            }
+        };
+        final int numHelpers = Math.min(maxConcurrency, toReduce.size()) - 1;
+        // no need for more helpers once the helpers that already run picked up all aggregations
+        for (int i = 0; i < numHelpers && nextAggregation.get() < toReduce.size(); i++) {
+            try {
+                executor.execute(reducer);
+            } catch (EsRejectedExecutionException e) {
+                // the calling thread reduces the aggregations that are left
+                break;
+            }
+        }
+        reducer.run();
+        try {
+            // wait for the aggregations that helpers are still reducing
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while reducing aggregations", e);
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        if (reduceTimes != null) {
+            for (int i = 0; i < reduced.length; i++) {
+                reduceTimes.put(reduced[i].getName(), tookInNanos[i]);
+            }
+        }
+        return new InternalAggregations(Arrays.asList(reduced));
+    }
+
+    /**
+     * Collects all aggregations of the same name and lists them together.
+     */
+    private static Map<String, List<InternalAggregation>> groupByName(List<InternalAggregations> aggregationsList) {
         Map<String, List<InternalAggregation>> aggByName = new HashMap<>();
         for (InternalAggregations aggregations : aggregationsList) {
             for (Aggregation aggregation : aggregations.aggregations) {
@@ -68,15 +158,18 @@ public final class InternalAggregations extends Aggregations implements Streamab
                 aggs.add((InternalAggregation)aggregation);
             }
         }
+        return aggByName;
+    }
 
-        // now we can use the first aggregation of each list to handle the reduce of its list
-        List<InternalAggregation> reducedAggregations = new ArrayList<>();
-        for (Map.Entry<String, List<InternalAggregation>> entry : aggByName.entrySet()) {
-            List<InternalAggregation> aggregations = entry.getValue();
-            InternalAggregation first = aggregations.get(0); // the list can't be empty as it's created on demand
-            reducedAggregations.add(first.reduce(aggregations, context));
+    /**
+     * Estimates the heap used by these aggregation results, see {@link InternalAggregation#estimateSize()}.
+     */
+    public long estimateSize() {
+        long size = 0;
+        for (Aggregation aggregation : aggregations) {
+            size += ((InternalAggregation) aggregation).estimateSize();
         }
-        return new InternalAggregations(reducedAggregations);
+        return size;
     }
 
     public static InternalAggregations readAggregations(StreamInput in) throws IOException {
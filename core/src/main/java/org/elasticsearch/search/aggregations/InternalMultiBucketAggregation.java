@@ -66,6 +66,21 @@ public abstract class InternalMultiBucketAggregation<A extends InternalMultiBuck
     @Override
     public abstract List<? extends InternalBucket> getBuckets();
 
+    // rough heap usage of a bucket, not counting its sub-aggregations
+    protected static final long BUCKET_BYTES_ESTIMATE = 128;
+
+    @Override
+    public long estimateSize() {
+        long size = super.estimateSize();
+        for (InternalBucket bucket : getBuckets()) {
+            size += BUCKET_BYTES_ESTIMATE;
+            if (bucket.getAggregations() instanceof InternalAggregations) {
+                size += ((InternalAggregations) bucket.getAggregations()).estimateSize();
+            }
+        }
+        return size;
+    }
+
     @Override
     public Object getProperty(List<String> path) {
         if (path.isEmpty()) {
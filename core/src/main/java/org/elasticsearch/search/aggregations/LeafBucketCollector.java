@@ -68,6 +68,13 @@ public abstract class LeafBucketCollector implements LeafCollector {
                     }
                 }
 
+                @Override
+                public void collect(int[] docs, int count, long bucket) throws IOException {
+                    for (LeafBucketCollector c : colls) {
+                        c.collect(docs, count, bucket);
+                    }
+                }
+
             };
         }
     }
@@ -77,6 +84,17 @@ public abstract class LeafBucketCollector implements LeafCollector {
      */
     public abstract void collect(int doc, long bucket) throws IOException;
 
+    /**
+     * Collect the first <code>count</code> docs of the given array, which are sorted in increasing order, in the given bucket.
+     * The default implementation collects them one by one, aggregators can override it in order to read their values and
+     * update the bucket in a tight loop.
+     */
+    public void collect(int[] docs, int count, long bucket) throws IOException {
+        for (int i = 0; i < count; i++) {
+            collect(docs[i], bucket);
+        }
+    }
+
     @Override
     public final void collect(int doc) throws IOException {
         collect(doc, 0);
@@ -18,6 +18,12 @@
  */
 package org.elasticsearch.search.aggregations;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * The aggregation context that is part of the search context.
  */
@@ -25,6 +31,8 @@ public class SearchContextAggregations {
 
     private final AggregatorFactories factories;
     private Aggregator[] aggregators;
+    private SegmentAggregationsCache segmentsCache;
+    private final Map<String, AggregationMemoryUsage> memoryUsages = new ConcurrentHashMap<>();
 
     /**
      * Creates a new aggregation context with the parsed aggregator factories
@@ -50,4 +58,36 @@ public class SearchContextAggregations {
         this.aggregators = aggregators;
     }
 
+    public SegmentAggregationsCache segmentsCache() {
+        return segmentsCache;
+    }
+
+    /**
+     * Sets the cache of the partial aggregation results of each segment, the segments whose results are cached are not
+     * collected.
+     */
+    public void segmentsCache(SegmentAggregationsCache segmentsCache) {
+        this.segmentsCache = segmentsCache;
+    }
+
+    /**
+     * Returns the memory usage of the aggregators at the given path of the aggregation tree, see
+     * {@link AggregationMemoryUsage#path()}.
+     */
+    public AggregationMemoryUsage memoryUsage(String path) {
+        return memoryUsages.computeIfAbsent(path, AggregationMemoryUsage::new);
+    }
+
+    /**
+     * Returns the memory usage of all the aggregators that have been created so far, sorted by path.
+     */
+    public List<AggregationMemoryUsage.Stats> memoryStats() {
+        List<AggregationMemoryUsage.Stats> stats = new ArrayList<>(memoryUsages.size());
+        for (AggregationMemoryUsage usage : memoryUsages.values()) {
+            stats.add(usage.stats());
+        }
+        stats.sort(Comparator.comparing(AggregationMemoryUsage.Stats::getPath));
+        return stats;
+    }
+
 }
@@ -0,0 +1,49 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations;
+
+import org.apache.lucene.index.LeafReader;
+import org.elasticsearch.common.Nullable;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Caches the partial aggregation results of single segments for the aggregations of a search request, so that only
+ * the segments that were not seen by a previous execution of the same request need to be collected.
+ */
+public interface SegmentAggregationsCache {
+
+    /**
+     * Returns the cached aggregations of the given segment, or <code>null</code> if the segment needs to be collected.
+     */
+    @Nullable
+    InternalAggregations get(LeafReader reader) throws IOException;
+
+    /**
+     * Caches the aggregations that were collected on the given segment.
+     */
+    void put(LeafReader reader, InternalAggregations aggregations) throws IOException;
+
+    /**
+     * Merges the partial aggregation results of the segments of the shard into the aggregations of the shard.
+     */
+    InternalAggregations merge(List<InternalAggregations> segmentAggregations);
+}
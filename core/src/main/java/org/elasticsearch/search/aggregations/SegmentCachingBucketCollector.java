@@ -0,0 +1,200 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.filter.FiltersAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.geogrid.GeoGridAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.HistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.missing.MissingAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.nested.NestedAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.nested.ReverseNestedAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.range.DateRangeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.range.GeoDistanceAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.range.IpRangeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.range.RangeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.avg.AvgAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.cardinality.CardinalityAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.geobounds.GeoBoundsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.geocentroid.GeoCentroidAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.max.MaxAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.min.MinAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.percentiles.PercentileRanksAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.percentiles.PercentilesAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.stats.StatsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.stats.extended.ExtendedStatsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.sum.SumAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.valuecount.ValueCountAggregationBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link BucketCollector} that aggregates each segment with its own top level aggregators and caches their partial
+ * results in a {@link SegmentAggregationsCache}. Segments whose results are already cached are not collected at all,
+ * the aggregations of the shard are the merge of the results of all its segments.
+ * <p>
+ * This is only correct for aggregations whose results can be built per segment and merged afterwards without depending
+ * on the other segments of the shard, see {@link #canCache(AggregatorFactories.Builder)}. Like with more shards, the
+ * buckets of <code>terms</code> aggregations are truncated to the shard size on each segment.
+ */
+public final class SegmentCachingBucketCollector extends BucketCollector {
+
+    private static final Set<String> CACHABLE_TYPES = new HashSet<>(Arrays.asList(
+        TermsAggregationBuilder.NAME, HistogramAggregationBuilder.NAME, DateHistogramAggregationBuilder.NAME,
+        RangeAggregationBuilder.NAME, DateRangeAggregationBuilder.NAME, IpRangeAggregationBuilder.NAME,
+        GeoDistanceAggregationBuilder.NAME, GeoGridAggregationBuilder.NAME, FilterAggregationBuilder.NAME,
+        FiltersAggregationBuilder.NAME, MissingAggregationBuilder.NAME, NestedAggregationBuilder.NAME,
+        ReverseNestedAggregationBuilder.NAME, AvgAggregationBuilder.NAME, SumAggregationBuilder.NAME, MinAggregationBuilder.NAME,
+        MaxAggregationBuilder.NAME, ValueCountAggregationBuilder.NAME, StatsAggregationBuilder.NAME,
+        ExtendedStatsAggregationBuilder.NAME, CardinalityAggregationBuilder.NAME, PercentilesAggregationBuilder.NAME,
+        PercentileRanksAggregationBuilder.NAME, GeoBoundsAggregationBuilder.NAME, GeoCentroidAggregationBuilder.NAME));
+
+    /**
+     * Returns <code>true</code> if the partial results of the given aggregations can be computed and cached per segment.
+     * Aggregations that depend on shard level statistics (eg. <code>significant_terms</code>), that select documents
+     * across segments (eg. <code>sampler</code>, <code>top_hits</code>) or that run scripts on reduce are not supported.
+     */
+    public static boolean canCache(AggregatorFactories.Builder aggregations) {
+        return canCache(aggregations.getAggregatorFactories());
+    }
+
+    private static boolean canCache(Collection<AggregationBuilder> aggregations) {
+        for (AggregationBuilder aggregation : aggregations) {
+            if (CACHABLE_TYPES.contains(aggregation.getType()) == false || canCache(aggregation.getSubAggregations()) == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final AggregatorFactories factories;
+    private final SegmentAggregationsCache cache;
+    private final List<InternalAggregations> segmentAggregations = new ArrayList<>();
+    private Aggregator[] spareAggregators;
+    private Aggregator[] aggregators;
+    private BatchingBucketCollector collector;
+    private LeafReader reader;
+
+    /**
+     * Creates a collector that aggregates the segments that are not cached yet.
+     * @param factories the factories of the top level aggregators of each segment
+     * @param aggregators top level aggregators that were already created, they are used for the first segment to collect
+     * @param cache the cache of the partial results of the segments
+     */
+    public SegmentCachingBucketCollector(AggregatorFactories factories, Aggregator[] aggregators, SegmentAggregationsCache cache) {
+        if (BucketCollector.wrap(Arrays.asList(aggregators)).needsScores()) {
+            throw new IllegalArgumentException("cannot cache the aggregations of segments if scores are needed");
+        }
+        this.factories = factories;
+        this.spareAggregators = aggregators;
+        this.cache = cache;
+    }
+
+    @Override
+    public LeafBucketCollector getLeafCollector(LeafReaderContext ctx) throws IOException {
+        finishSegment(true);
+        final InternalAggregations cached = cache.get(ctx.reader());
+        if (cached != null) {
+            segmentAggregations.add(cached);
+            throw new CollectionTerminatedException();
+        }
+        if (spareAggregators != null) {
+            aggregators = spareAggregators;
+            spareAggregators = null;
+        } else {
+            aggregators = factories.createTopLevelAggregators();
+        }
+        final BucketCollector bucketCollector = BucketCollector.wrap(Arrays.asList(aggregators));
+        bucketCollector.preCollection();
+        collector = new BatchingBucketCollector(bucketCollector);
+        reader = ctx.reader();
+        return collector.getLeafCollector(ctx);
+    }
+
+    /**
+     * Builds the aggregations of the segment that is being collected and caches them if the segment was fully collected.
+     */
+    private void finishSegment(boolean cacheResults) throws IOException {
+        if (aggregators == null) {
+            return;
+        }
+        collector.postCollection();
+        final List<InternalAggregation> aggregations = new ArrayList<>(aggregators.length);
+        for (Aggregator aggregator : aggregators) {
+            aggregations.add(aggregator.buildAggregation(0));
+        }
+        // the aggregators of the segment are not needed anymore, they are released now rather than with the search phase
+        Releasables.close(aggregators);
+        final InternalAggregations result = new InternalAggregations(aggregations);
+        if (cacheResults) {
+            cache.put(reader, result);
+        }
+        segmentAggregations.add(result);
+        aggregators = null;
+        collector = null;
+        reader = null;
+    }
+
+    /**
+     * Builds the aggregations of the shard out of the partial results of its segments. This must be called once the
+     * search is done.
+     * @param complete whether the last segment was fully collected and can be cached, which is not the case if the search
+     *                 timed out
+     */
+    public InternalAggregations buildAggregations(boolean complete) throws IOException {
+        finishSegment(complete);
+        if (segmentAggregations.isEmpty()) {
+            assert spareAggregators != null;
+            final List<InternalAggregation> aggregations = new ArrayList<>(spareAggregators.length);
+            for (Aggregator aggregator : spareAggregators) {
+                aggregations.add(aggregator.buildEmptyAggregation());
+            }
+            return new InternalAggregations(aggregations);
+        }
+        return cache.merge(segmentAggregations);
+    }
+
+    @Override
+    public void preCollection() throws IOException {
+        // the aggregators of each segment are prepared when the segment is collected
+    }
+
+    @Override
+    public void postCollection() throws IOException {
+        // the aggregators of each segment are post-collected when the segment is done
+    }
+
+    @Override
+    public boolean needsScores() {
+        return false;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A {@link BucketCollector} that aggregates each slice of leaves that the searcher collects concurrently with its own
+ * top level aggregators. It is never collected directly, the query phase asks for the collector of each slice with
+ * {@link #newCollector()} and the aggregations of the shard are the partial reduce of the results of all slices.
+ * <p>
+ * This is only correct for aggregations whose results can be built per slice and merged afterwards, which are the ones
+ * whose results can be cached per segment, see {@link SegmentCachingBucketCollector#canCache(AggregatorFactories.Builder)}.
+ * Like with more shards, the buckets of <code>terms</code> aggregations are truncated to the shard size on each slice.
+ */
+public final class SlicedBucketCollector extends BucketCollector implements CollectorManager<Collector, Void> {
+
+    private final AggregatorFactories factories;
+    private final List<Aggregator[]> sliceAggregators = new ArrayList<>();
+    private final List<BatchingBucketCollector> sliceCollectors = new ArrayList<>();
+    private Aggregator[] spareAggregators;
+
+    /**
+     * Creates a collector that aggregates each slice separately.
+     * @param factories the factories of the top level aggregators of each slice
+     * @param aggregators top level aggregators that were already created, they are used for the first slice
+     */
+    public SlicedBucketCollector(AggregatorFactories factories, Aggregator[] aggregators) {
+        if (BucketCollector.wrap(Arrays.asList(aggregators)).needsScores()) {
+            throw new IllegalArgumentException("cannot aggregate slices separately if scores are needed");
+        }
+        this.factories = factories;
+        this.spareAggregators = aggregators;
+    }
+
+    /**
+     * Creates the top level aggregators of a new slice and returns the collector of the slice. This is called on the
+     * thread that runs the search, once per slice, before the slices are collected.
+     */
+    @Override
+    public Collector newCollector() throws IOException {
+        final Aggregator[] aggregators;
+        if (spareAggregators != null) {
+            aggregators = spareAggregators;
+            spareAggregators = null;
+        } else {
+            aggregators = factories.createTopLevelAggregators();
+        }
+        final BucketCollector bucketCollector = BucketCollector.wrap(Arrays.asList(aggregators));
+        bucketCollector.preCollection();
+        final BatchingBucketCollector collector = new BatchingBucketCollector(bucketCollector);
+        sliceAggregators.add(aggregators);
+        sliceCollectors.add(collector);
+        return collector;
+    }
+
+    @Override
+    public Void reduce(Collection<Collector> collectors) {
+        // the results of the slices are merged in buildAggregations
+        return null;
+    }
+
+    /**
+     * Builds the aggregations of the shard out of the partial results of its slices. This must be called once the
+     * search is done.
+     */
+    public InternalAggregations buildAggregations(ReduceContext reduceContext) throws IOException {
+        if (sliceAggregators.isEmpty()) {
+            assert spareAggregators != null;
+            final List<InternalAggregation> aggregations = new ArrayList<>(spareAggregators.length);
+            for (Aggregator aggregator : spareAggregators) {
+                aggregations.add(aggregator.buildEmptyAggregation());
+            }
+            return new InternalAggregations(aggregations);
+        }
+        final List<InternalAggregations> results = new ArrayList<>(sliceAggregators.size());
+        for (int i = 0; i < sliceAggregators.size(); i++) {
+            final Aggregator[] aggregators = sliceAggregators.get(i);
+            sliceCollectors.get(i).postCollection();
+            final List<InternalAggregation> aggregations = new ArrayList<>(aggregators.length);
+            for (Aggregator aggregator : aggregators) {
+                aggregations.add(aggregator.buildAggregation(0));
+            }
+            // the aggregators of the slice are not needed anymore, they are released now rather than with the search phase
+            Releasables.close(aggregators);
+            results.add(new InternalAggregations(aggregations));
+        }
+        if (results.size() == 1) {
+            // the search was not split, there is nothing to merge
+            return results.get(0);
+        }
+        return InternalAggregations.reduce(results, reduceContext);
+    }
+
+    @Override
+    public LeafBucketCollector getLeafCollector(LeafReaderContext ctx) throws IOException {
+        throw new IllegalStateException("slices must be collected with the collectors returned by newCollector()");
+    }
+
+    @Override
+    public void preCollection() throws IOException {
+        // the aggregators of each slice are prepared when the slice collector is created
+    }
+
+    @Override
+    public void postCollection() throws IOException {
+        // the aggregators of each slice are post-collected when the aggregations are built
+    }
+
+    @Override
+    public boolean needsScores() {
+        return false;
+    }
+}
@@ -56,6 +56,8 @@ public class BestBucketsDeferringCollector extends DeferringBucketCollector {
         }
     }
 
+    static final int REPLAY_BATCH_SIZE = 128;
+
     final List<Entry> entries = new ArrayList<>();
     BucketCollector collector;
     final SearchContext searchContext;
@@ -112,6 +114,16 @@ public class BestBucketsDeferringCollector extends DeferringBucketCollector {
                 lastDoc = doc;
                 maxBucket = Math.max(maxBucket, bucket);
             }
+
+            @Override
+            public void collect(int[] docs, int count, long bucket) throws IOException {
+                for (int i = 0; i < count; i++) {
+                    docDeltas.add(docs[i] - lastDoc);
+                    buckets.add(bucket);
+                    lastDoc = docs[i];
+                }
+                maxBucket = Math.max(maxBucket, bucket);
+            }
         };
     }
 
@@ -150,6 +162,8 @@ public class BestBucketsDeferringCollector extends DeferringBucketCollector {
             weight = searchContext.searcher()
                         .createNormalizedWeight(searchContext.query(), true);
         }
+        // runs of consecutive documents in the same bucket are replayed in batches when scores are not needed
+        final int[] batch = needsScores ? null : new int[REPLAY_BATCH_SIZE];
         for (Entry entry : entries) {
             final LeafBucketCollector leafCollector = collector.getLeafCollector(entry.context);
             DocIdSetIterator docIt = null;
@@ -163,6 +177,8 @@ public class BestBucketsDeferringCollector extends DeferringBucketCollector {
             final PackedLongValues.Iterator docDeltaIterator = entry.docDeltas.iterator();
             final PackedLongValues.Iterator buckets = entry.buckets.iterator();
             int doc = 0;
+            int batchSize = 0;
+            long batchBucket = -1;
             for (long i = 0, end = entry.docDeltas.size(); i < end; ++i) {
                 doc += docDeltaIterator.next();
                 final long bucket = buckets.next();
@@ -174,10 +190,20 @@ public class BestBucketsDeferringCollector extends DeferringBucketCollector {
                         }
                         // aggregations should only be replayed on matching documents
                         assert docIt.docID() == doc;
+                        leafCollector.collect(doc, rebasedBucket);
+                    } else {
+                        if (batchSize > 0 && (rebasedBucket != batchBucket || batchSize == batch.length)) {
+                            leafCollector.collect(batch, batchSize, batchBucket);
+                            batchSize = 0;
+                        }
+                        batch[batchSize++] = doc;
+                        batchBucket = rebasedBucket;
                     }
-                    leafCollector.collect(doc, rebasedBucket);
                 }
             }
+            if (batchSize > 0) {
+                leafCollector.collect(batch, batchSize, batchBucket);
+            }
         }
 
         collector.postCollection();
@@ -18,8 +18,8 @@
  */
 package org.elasticsearch.search.aggregations.bucket;
 
+import org.apache.lucene.util.ArrayUtil;
 import org.elasticsearch.common.lease.Releasable;
-import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.IntArray;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorBase;
@@ -37,14 +37,12 @@ import java.util.Map;
 
 public abstract class BucketsAggregator extends AggregatorBase {
 
-    private final BigArrays bigArrays;
     private IntArray docCounts;
 
     public BucketsAggregator(String name, AggregatorFactories factories, SearchContext context, Aggregator parent,
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
         super(name, factories, context, parent, pipelineAggregators, metaData);
-        bigArrays = context.bigArrays();
-        docCounts = bigArrays.newIntArray(1, true);
+        docCounts = bigArrays().newIntArray(1, true);
     }
 
     /**
@@ -58,7 +56,15 @@ public abstract class BucketsAggregator extends AggregatorBase {
      * Ensure there are at least <code>maxBucketOrd</code> buckets available.
      */
     public final void grow(long maxBucketOrd) {
-        docCounts = bigArrays.grow(docCounts, maxBucketOrd);
+        docCounts = bigArrays().grow(docCounts, maxBucketOrd);
+    }
+
+    private void incrementDocCount(long bucketOrd, int inc) {
+        // buckets are counted when they receive their first documents rather than when the doc counts are resized,
+        // which may happen up-front for all the buckets that can be created
+        if (docCounts.increment(bucketOrd, inc) == inc && inc > 0) {
+            memoryUsage().addBuckets(1);
+        }
     }
 
     /**
@@ -73,10 +79,67 @@ public abstract class BucketsAggregator extends AggregatorBase {
      * Same as {@link #collectBucket(LeafBucketCollector, int, long)}, but doesn't check if the docCounts needs to be re-sized.
      */
     public final void collectExistingBucket(LeafBucketCollector subCollector, int doc, long bucketOrd) throws IOException {
-        docCounts.increment(bucketOrd, 1);
+        incrementDocCount(bucketOrd, 1);
         subCollector.collect(doc, bucketOrd);
     }
 
+    /**
+     * Utility method to collect the first <code>count</code> docs of the given array in the given bucket (identified by the
+     * bucket ordinal)
+     */
+    public final void collectBucket(LeafBucketCollector subCollector, int[] docs, int count, long bucketOrd) throws IOException {
+        grow(bucketOrd + 1);
+        collectExistingBucket(subCollector, docs, count, bucketOrd);
+    }
+
+    /**
+     * Same as {@link #collectBucket(LeafBucketCollector, int[], int, long)}, but doesn't check if the docCounts needs to be re-sized.
+     */
+    public final void collectExistingBucket(LeafBucketCollector subCollector, int[] docs, int count, long bucketOrd) throws IOException {
+        incrementDocCount(bucketOrd, count);
+        subCollector.collect(docs, count, bucketOrd);
+    }
+
+    /**
+     * Buffers runs of consecutive documents that fall into the same bucket so that each run is passed to the sub aggregators
+     * with a single call to {@link LeafBucketCollector#collect(int[], int, long)}. Documents must be added in increasing order
+     * and {@link #flush()} must be called once all documents of a batch have been added.
+     */
+    protected final class BucketRuns {
+        private final LeafBucketCollector subCollector;
+        private int[] docs = new int[16];
+        private int count;
+        private long bucketOrd = -1;
+
+        public BucketRuns(LeafBucketCollector subCollector) {
+            this.subCollector = subCollector;
+        }
+
+        /**
+         * Adds a document to the given bucket, flushing the current run if it belongs to another bucket.
+         */
+        public void add(int doc, long bucketOrd) throws IOException {
+            if (bucketOrd != this.bucketOrd) {
+                flush();
+                this.bucketOrd = bucketOrd;
+            }
+            if (count == docs.length) {
+                docs = ArrayUtil.grow(docs, count + 1);
+            }
+            docs[count++] = doc;
+        }
+
+        /**
+         * Collects the current run of documents.
+         */
+        public void flush() throws IOException {
+            if (count > 0) {
+                collectBucket(subCollector, docs, count, bucketOrd);
+                count = 0;
+            }
+        }
+    }
+
     public IntArray getDocCounts() {
         return docCounts;
     }
@@ -85,8 +148,8 @@ public abstract class BucketsAggregator extends AggregatorBase {
      * Utility method to increment the doc counts of the given bucket (identified by the bucket ordinal)
      */
     public final void incrementBucketDocCount(long bucketOrd, int inc) {
-        docCounts = bigArrays.grow(docCounts, bucketOrd + 1);
-        docCounts.increment(bucketOrd, inc);
+        grow(bucketOrd + 1);
+        incrementDocCount(bucketOrd, inc);
     }
 
     /**
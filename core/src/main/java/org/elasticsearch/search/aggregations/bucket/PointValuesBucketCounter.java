@@ -0,0 +1,266 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket;
+
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.PointValues.IntersectVisitor;
+import org.apache.lucene.index.PointValues.Relation;
+import org.apache.lucene.queries.IndexSortSortedNumericDocValuesRangeQuery;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.IndexOrDocValuesQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PointRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.Bits;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+
+/**
+ * Computes the doc counts of the buckets of a top level bucket aggregation on a numeric field from the points of the field,
+ * without reading the doc values of the documents that match the query. This is only possible if the aggregation has no
+ * sub-aggregations and if the query matches all documents or is a range query on the same field, see
+ * {@link #create(SearchContext, ValuesSourceConfig, Aggregator, AggregatorFactories)}.
+ * <p>
+ * Cells of the points tree whose values all fall in the same buckets are counted as a whole and only cells that cross the
+ * bounds of a bucket are counted value by value.
+ */
+public abstract class PointValuesBucketCounter {
+
+    private final String field;
+    private final int bytesPerDim;
+    private final long lowerValue;
+    private final long upperValue;
+
+    /**
+     * Returns the parameters of a counter for the given aggregation, or <code>null</code> if its buckets must be collected
+     * from the documents that match the query.
+     */
+    public static Parameters create(SearchContext context, ValuesSourceConfig<?> config, Aggregator parent,
+                                    AggregatorFactories factories) {
+        if (parent != null || factories.countAggregators() > 0) {
+            return null;
+        }
+        if (config.fieldContext() == null || config.script() != null || config.missing() != null) {
+            return null;
+        }
+        // min_score, terminate_after and scrolls filter the documents that are aggregated
+        if (context.minimumScore() != null || context.terminateAfter() != SearchContext.DEFAULT_TERMINATE_AFTER
+                || context.scrollContext() != null) {
+            return null;
+        }
+        final MappedFieldType fieldType = config.fieldContext().fieldType();
+        if (fieldType.indexOptions() == IndexOptions.NONE) {
+            // the field has doc values but no points
+            return null;
+        }
+        final int bytesPerDim = pointBytes(fieldType);
+        if (bytesPerDim == -1) {
+            return null;
+        }
+        return queryBounds(context.query(), fieldType.name(), bytesPerDim);
+    }
+
+    /**
+     * Returns the number of bytes of the points of the given field if they are encoded as longs or ints, or -1.
+     */
+    public static int pointBytes(MappedFieldType fieldType) {
+        if (fieldType instanceof DateFieldMapper.DateFieldType) {
+            return Long.BYTES;
+        } else if (fieldType instanceof NumberFieldMapper.NumberFieldType) {
+            final String typeName = fieldType.typeName();
+            if (NumberFieldMapper.NumberType.LONG.typeName().equals(typeName)) {
+                return Long.BYTES;
+            } else if (NumberFieldMapper.NumberType.INTEGER.typeName().equals(typeName)
+                    || NumberFieldMapper.NumberType.SHORT.typeName().equals(typeName)
+                    || NumberFieldMapper.NumberType.BYTE.typeName().equals(typeName)) {
+                return Integer.BYTES;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the bounds of the values of the field that match the query if the query matches all documents or is a
+     * range query on the field, or <code>null</code>.
+     */
+    static Parameters queryBounds(Query query, String field, int bytesPerDim) {
+        while (true) {
+            // remove wrappers that don't change the matching documents
+            if (query instanceof ConstantScoreQuery) {
+                query = ((ConstantScoreQuery) query).getQuery();
+            } else if (query instanceof BoostQuery) {
+                query = ((BoostQuery) query).getQuery();
+            } else if (query instanceof IndexOrDocValuesQuery) {
+                query = ((IndexOrDocValuesQuery) query).getIndexQuery();
+            } else if (query instanceof IndexSortSortedNumericDocValuesRangeQuery) {
+                query = ((IndexSortSortedNumericDocValuesRangeQuery) query).getFallbackQuery();
+            } else if (query instanceof BooleanQuery && ((BooleanQuery) query).clauses().size() == 1
+                    && ((BooleanQuery) query).clauses().get(0).isRequired()
+                    && ((BooleanQuery) query).clauses().get(0).getOccur() != BooleanClause.Occur.MUST_NOT) {
+                query = ((BooleanQuery) query).clauses().get(0).getQuery();
+            } else {
+                break;
+            }
+        }
+        if (query instanceof MatchAllDocsQuery) {
+            return new Parameters(field, bytesPerDim, Long.MIN_VALUE, Long.MAX_VALUE);
+        } else if (query instanceof PointRangeQuery) {
+            final PointRangeQuery rangeQuery = (PointRangeQuery) query;
+            if (rangeQuery.getField().equals(field) && rangeQuery.getNumDims() == 1 && rangeQuery.getBytesPerDim() == bytesPerDim) {
+                return new Parameters(field, bytesPerDim, decode(rangeQuery.getLowerPoint(), bytesPerDim),
+                    decode(rangeQuery.getUpperPoint(), bytesPerDim));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes a point that was encoded on the given number of bytes, see {@link #pointBytes(MappedFieldType)}.
+     */
+    public static long decode(byte[] packedValue, int bytesPerDim) {
+        return bytesPerDim == Long.BYTES ? LongPoint.decodeDimension(packedValue, 0) : IntPoint.decodeDimension(packedValue, 0);
+    }
+
+    /**
+     * The field whose points are counted and the bounds of the values that match the query.
+     */
+    public static final class Parameters {
+        final String field;
+        final int bytesPerDim;
+        final long lowerValue;
+        final long upperValue;
+
+        Parameters(String field, int bytesPerDim, long lowerValue, long upperValue) {
+            this.field = field;
+            this.bytesPerDim = bytesPerDim;
+            this.lowerValue = lowerValue;
+            this.upperValue = upperValue;
+        }
+    }
+
+    protected PointValuesBucketCounter(Parameters parameters) {
+        this.field = parameters.field;
+        this.bytesPerDim = parameters.bytesPerDim;
+        this.lowerValue = parameters.lowerValue;
+        this.upperValue = parameters.upperValue;
+    }
+
+    /**
+     * Returns <code>true</code> if all values between <code>min</code> and <code>max</code> (inclusive) fall in the same
+     * buckets.
+     */
+    protected abstract boolean sameBuckets(long min, long max);
+
+    /**
+     * Adds <code>count</code> documents to the buckets that contain <code>value</code>.
+     */
+    protected abstract void count(long value, int count) throws IOException;
+
+    /**
+     * Counts the documents of the given segment that match the query into the buckets. Returns <code>false</code> if the
+     * segment can't be counted from the points of the field, in which case its documents must be collected.
+     */
+    public boolean count(LeafReaderContext ctx) throws IOException {
+        final PointValues pointValues = ctx.reader().getPointValues(field);
+        if (pointValues == null) {
+            // no document of this segment has a value for the field
+            return true;
+        }
+        if (pointValues.getNumDimensions() != 1 || pointValues.getBytesPerDimension() != bytesPerDim
+                || pointValues.size() != pointValues.getDocCount()) {
+            // documents with several values must only be counted once per bucket
+            return false;
+        }
+        final Bits liveDocs = ctx.reader().getLiveDocs();
+        final CountingVisitor visitor = new CountingVisitor(liveDocs);
+        pointValues.intersect(visitor);
+        visitor.flush();
+        return true;
+    }
+
+    private class CountingVisitor implements IntersectVisitor {
+        private final Bits liveDocs;
+        // the cell whose documents are counted as a whole, if any
+        private long cellValue;
+        private int cellCount;
+
+        CountingVisitor(Bits liveDocs) {
+            this.liveDocs = liveDocs;
+        }
+
+        @Override
+        public void visit(int docID) throws IOException {
+            if (liveDocs == null || liveDocs.get(docID)) {
+                cellCount++;
+            }
+        }
+
+        @Override
+        public void visit(int docID, byte[] packedValue) throws IOException {
+            if (liveDocs == null || liveDocs.get(docID)) {
+                final long value = decode(packedValue, bytesPerDim);
+                if (value >= lowerValue && value <= upperValue) {
+                    count(value, 1);
+                }
+            }
+        }
+
+        @Override
+        public Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+            final long min = decode(minPackedValue, bytesPerDim);
+            final long max = decode(maxPackedValue, bytesPerDim);
+            if (max < lowerValue || min > upperValue) {
+                return Relation.CELL_OUTSIDE_QUERY;
+            }
+            if (min >= lowerValue && max <= upperValue && sameBuckets(min, max)) {
+                // the documents of the cell are visited right after this call
+                try {
+                    flush();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                cellValue = min;
+                return Relation.CELL_INSIDE_QUERY;
+            }
+            return Relation.CELL_CROSSES_QUERY;
+        }
+
+        void flush() throws IOException {
+            if (cellCount > 0) {
+                count(cellValue, cellCount);
+                cellCount = 0;
+            }
+        }
+    }
+}
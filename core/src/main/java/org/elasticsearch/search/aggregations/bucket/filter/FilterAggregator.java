@@ -20,6 +20,7 @@ package org.elasticsearch.search.aggregations.bucket.filter;
 
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.Bits;
 import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.search.aggregations.Aggregator;
@@ -60,12 +61,30 @@ public class FilterAggregator extends BucketsAggregator implements SingleBucketA
         // no need to provide deleted docs to the filter
         final Bits bits = Lucene.asSequentialAccessBits(ctx.reader().maxDoc(), filter.get().scorerSupplier(ctx));
         return new LeafBucketCollectorBase(sub, null) {
+            int[] matchingDocs;
+
             @Override
             public void collect(int doc, long bucket) throws IOException {
                 if (bits.get(doc)) {
                     collectBucket(sub, doc, bucket);
                 }
             }
+
+            @Override
+            public void collect(int[] docs, int count, long bucket) throws IOException {
+                if (matchingDocs == null || matchingDocs.length < count) {
+                    matchingDocs = new int[ArrayUtil.oversize(count, Integer.BYTES)];
+                }
+                int matching = 0;
+                for (int i = 0; i < count; i++) {
+                    if (bits.get(docs[i])) {
+                        matchingDocs[matching++] = docs[i];
+                    }
+                }
+                if (matching > 0) {
+                    collectBucket(sub, matchingDocs, matching, bucket);
+                }
+            }
         };
     }
 
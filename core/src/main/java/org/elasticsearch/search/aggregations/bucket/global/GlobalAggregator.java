@@ -48,6 +48,12 @@ public class GlobalAggregator extends BucketsAggregator implements SingleBucketA
                 assert bucket == 0 : "global aggregator can only be a top level aggregator";
                 collectBucket(sub, doc, bucket);
             }
+
+            @Override
+            public void collect(int[] docs, int count, long bucket) throws IOException {
+                assert bucket == 0 : "global aggregator can only be a top level aggregator";
+                collectBucket(sub, docs, count, bucket);
+            }
         };
     }
 
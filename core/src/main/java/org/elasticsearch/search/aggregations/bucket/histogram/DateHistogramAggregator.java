@@ -32,6 +32,7 @@ import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.LeafBucketCollector;
 import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
 import org.elasticsearch.search.aggregations.bucket.BucketsAggregator;
+import org.elasticsearch.search.aggregations.bucket.PointValuesBucketCounter;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.BucketOrder;
 import org.elasticsearch.search.aggregations.InternalOrder;
@@ -63,11 +64,12 @@ class DateHistogramAggregator extends BucketsAggregator {
 
     private final LongHash bucketOrds;
     private long offset;
+    private final PointValuesBucketCounter pointsCounter;
 
     DateHistogramAggregator(String name, AggregatorFactories factories, Rounding rounding, long offset, BucketOrder order,
             boolean keyed,
             long minDocCount, @Nullable ExtendedBounds extendedBounds, @Nullable ValuesSource.Numeric valuesSource,
-            DocValueFormat formatter, SearchContext aggregationContext,
+            DocValueFormat formatter, @Nullable PointValuesBucketCounter.Parameters pointsCounter, SearchContext aggregationContext,
             Aggregator parent, List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
 
         super(name, factories, aggregationContext, parent, pipelineAggregators, metaData);
@@ -80,7 +82,26 @@ class DateHistogramAggregator extends BucketsAggregator {
         this.valuesSource = valuesSource;
         this.formatter = formatter;
 
-        bucketOrds = new LongHash(1, aggregationContext.bigArrays());
+        bucketOrds = new LongHash(1, bigArrays());
+        this.pointsCounter = pointsCounter == null ? null : new PointValuesBucketCounter(pointsCounter) {
+            @Override
+            protected boolean sameBuckets(long min, long max) {
+                return round(min) == round(max);
+            }
+
+            @Override
+            protected void count(long value, int count) throws IOException {
+                long bucketOrd = bucketOrds.add(round(value));
+                if (bucketOrd < 0) { // already seen
+                    bucketOrd = -1 - bucketOrd;
+                }
+                incrementBucketDocCount(bucketOrd, count);
+            }
+        };
+    }
+
+    private long round(long value) {
+        return rounding.round(value - offset) + offset;
     }
 
     @Override
@@ -94,8 +115,14 @@ class DateHistogramAggregator extends BucketsAggregator {
         if (valuesSource == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
+        if (pointsCounter != null && pointsCounter.count(ctx)) {
+            // the buckets of this segment were counted from the points of the field
+            return LeafBucketCollector.NO_OP_COLLECTOR;
+        }
         final SortedNumericDocValues values = valuesSource.longValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
+            final BucketRuns runs = new BucketRuns(sub);
+
             @Override
             public void collect(int doc, long bucket) throws IOException {
                 assert bucket == 0;
@@ -121,6 +148,34 @@ class DateHistogramAggregator extends BucketsAggregator {
                     }
                 }
             }
+
+            @Override
+            public void collect(int[] docs, int count, long bucket) throws IOException {
+                assert bucket == 0;
+                for (int i = 0; i < count; i++) {
+                    final int doc = docs[i];
+                    if (values.advanceExact(doc)) {
+                        final int valuesCount = values.docValueCount();
+
+                        long previousRounded = Long.MIN_VALUE;
+                        for (int j = 0; j < valuesCount; ++j) {
+                            long value = values.nextValue();
+                            long rounded = rounding.round(value - offset) + offset;
+                            assert rounded >= previousRounded;
+                            if (rounded == previousRounded) {
+                                continue;
+                            }
+                            long bucketOrd = bucketOrds.add(rounded);
+                            if (bucketOrd < 0) { // already seen
+                                bucketOrd = -1 - bucketOrd;
+                            }
+                            runs.add(doc, bucketOrd);
+                            previousRounded = rounded;
+                        }
+                    }
+                }
+                runs.flush();
+            }
         };
     }
 
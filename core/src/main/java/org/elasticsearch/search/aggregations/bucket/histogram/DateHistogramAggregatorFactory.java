@@ -23,6 +23,7 @@ import org.elasticsearch.common.rounding.Rounding;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
 import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.aggregations.bucket.PointValuesBucketCounter;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.BucketOrder;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
@@ -77,8 +78,10 @@ public final class DateHistogramAggregatorFactory
 
     private Aggregator createAggregator(ValuesSource.Numeric valuesSource, Aggregator parent, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData) throws IOException {
+        final PointValuesBucketCounter.Parameters pointsCounter = valuesSource == null
+                ? null : PointValuesBucketCounter.create(context, config, parent, factories);
         return new DateHistogramAggregator(name, factories, rounding, offset, order, keyed, minDocCount, extendedBounds, valuesSource,
-                config.format(), context, parent, pipelineAggregators, metaData);
+                config.format(), pointsCounter, context, parent, pipelineAggregators, metaData);
     }
 
     @Override
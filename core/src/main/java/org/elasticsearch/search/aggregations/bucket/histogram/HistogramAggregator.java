@@ -83,7 +83,7 @@ class HistogramAggregator extends BucketsAggregator {
         this.valuesSource = valuesSource;
         this.formatter = formatter;
 
-        bucketOrds = new LongHash(1, context.bigArrays());
+        bucketOrds = new LongHash(1, bigArrays());
     }
 
     @Override
@@ -100,6 +100,8 @@ class HistogramAggregator extends BucketsAggregator {
 
         final SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
+            final BucketRuns runs = new BucketRuns(sub);
+
             @Override
             public void collect(int doc, long bucket) throws IOException {
                 assert bucket == 0;
@@ -125,6 +127,34 @@ class HistogramAggregator extends BucketsAggregator {
                     }
                 }
             }
+
+            @Override
+            public void collect(int[] docs, int count, long bucket) throws IOException {
+                assert bucket == 0;
+                for (int i = 0; i < count; i++) {
+                    final int doc = docs[i];
+                    if (values.advanceExact(doc)) {
+                        final int valuesCount = values.docValueCount();
+
+                        double previousKey = Double.NEGATIVE_INFINITY;
+                        for (int j = 0; j < valuesCount; ++j) {
+                            double value = values.nextValue();
+                            double key = Math.floor((value - offset) / interval);
+                            assert key >= previousKey;
+                            if (key == previousKey) {
+                                continue;
+                            }
+                            long bucketOrd = bucketOrds.add(Double.doubleToLongBits(key));
+                            if (bucketOrd < 0) { // already seen
+                                bucketOrd = -1 - bucketOrd;
+                            }
+                            runs.add(doc, bucketOrd);
+                            previousKey = key;
+                        }
+                    }
+                }
+                runs.flush();
+            }
         };
     }
 
@@ -19,6 +19,7 @@
 package org.elasticsearch.search.aggregations.bucket.range;
 
 import org.apache.lucene.index.LeafReaderContext;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -38,6 +39,7 @@ import org.elasticsearch.search.aggregations.LeafBucketCollector;
 import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
 import org.elasticsearch.search.aggregations.NonCollectingAggregator;
 import org.elasticsearch.search.aggregations.bucket.BucketsAggregator;
+import org.elasticsearch.search.aggregations.bucket.PointValuesBucketCounter;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
 import org.elasticsearch.search.internal.SearchContext;
@@ -124,6 +126,13 @@ public class RangeAggregator extends BucketsAggregator {
             return value >= from && value < to;
         }
 
+        /**
+         * Whether all values between <code>min</code> and <code>max</code> (inclusive) either match or don't match this range.
+         */
+        boolean matchesAllOrNone(double min, double max) {
+            return (min >= from && max < to) || max < from || min >= to;
+        }
+
         @Override
         public String toString() {
             return "[" + from + " to " + to + ")";
@@ -224,9 +233,12 @@ public class RangeAggregator extends BucketsAggregator {
 
     final double[] maxTo;
 
+    private final PointValuesBucketCounter pointsCounter;
+
     public RangeAggregator(String name, AggregatorFactories factories, ValuesSource.Numeric valuesSource, DocValueFormat format,
-            InternalRange.Factory rangeFactory, Range[] ranges, boolean keyed, SearchContext context,
-            Aggregator parent, List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
+            InternalRange.Factory rangeFactory, Range[] ranges, boolean keyed, @Nullable PointValuesBucketCounter.Parameters pointsCounter,
+            SearchContext context, Aggregator parent, List<PipelineAggregator> pipelineAggregators,
+            Map<String, Object> metaData) throws IOException {
 
         super(name, factories, context, parent, pipelineAggregators, metaData);
         assert valuesSource != null;
@@ -243,6 +255,26 @@ public class RangeAggregator extends BucketsAggregator {
             maxTo[i] = Math.max(this.ranges[i].to,maxTo[i-1]);
         }
 
+        this.pointsCounter = pointsCounter == null ? null : new PointValuesBucketCounter(pointsCounter) {
+            @Override
+            protected boolean sameBuckets(long min, long max) {
+                for (Range range : RangeAggregator.this.ranges) {
+                    if (range.matchesAllOrNone(min, max) == false) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            protected void count(long value, int count) {
+                for (int i = 0; i < RangeAggregator.this.ranges.length; i++) {
+                    if (RangeAggregator.this.ranges[i].matches(value)) {
+                        incrementBucketDocCount(subBucketOrdinal(0, i), count);
+                    }
+                }
+            }
+        };
     }
 
     @Override
@@ -253,6 +285,10 @@ public class RangeAggregator extends BucketsAggregator {
     @Override
     public LeafBucketCollector getLeafCollector(LeafReaderContext ctx,
             final LeafBucketCollector sub) throws IOException {
+        if (pointsCounter != null && pointsCounter.count(ctx)) {
+            // the buckets of this segment were counted from the points of the field
+            return LeafBucketCollector.NO_OP_COLLECTOR;
+        }
         final SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
             @Override
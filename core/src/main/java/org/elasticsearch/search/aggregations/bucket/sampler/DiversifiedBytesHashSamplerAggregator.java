@@ -71,7 +71,7 @@ public class DiversifiedBytesHashSamplerAggregator extends SamplerAggregator {
     class DiverseDocsDeferringCollector extends BestDocsDeferringCollector {
 
         DiverseDocsDeferringCollector() {
-            super(shardSize, context.bigArrays());
+            super(shardSize, bigArrays());
         }
 
 
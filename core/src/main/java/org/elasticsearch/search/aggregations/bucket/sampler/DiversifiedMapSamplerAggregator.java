@@ -53,7 +53,7 @@ public class DiversifiedMapSamplerAggregator extends SamplerAggregator {
         super(name, shardSize, factories, context, parent, pipelineAggregators, metaData);
         this.valuesSource = valuesSource;
         this.maxDocsPerValue = maxDocsPerValue;
-        bucketOrds = new BytesRefHash(shardSize, context.bigArrays());
+        bucketOrds = new BytesRefHash(shardSize, bigArrays());
 
     }
 
@@ -77,7 +77,7 @@ public class DiversifiedMapSamplerAggregator extends SamplerAggregator {
     class DiverseDocsDeferringCollector extends BestDocsDeferringCollector {
 
         DiverseDocsDeferringCollector() {
-            super(shardSize, context.bigArrays());
+            super(shardSize, bigArrays());
         }
 
 
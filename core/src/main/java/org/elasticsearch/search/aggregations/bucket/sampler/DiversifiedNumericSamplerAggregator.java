@@ -64,7 +64,7 @@ public class DiversifiedNumericSamplerAggregator extends SamplerAggregator {
      */
     class DiverseDocsDeferringCollector extends BestDocsDeferringCollector {
         DiverseDocsDeferringCollector() {
-            super(shardSize, context.bigArrays());
+            super(shardSize, bigArrays());
         }
 
         @Override
@@ -66,7 +66,7 @@ public class DiversifiedOrdinalsSamplerAggregator extends SamplerAggregator {
     class DiverseDocsDeferringCollector extends BestDocsDeferringCollector {
 
         DiverseDocsDeferringCollector() {
-            super(shardSize, context.bigArrays());
+            super(shardSize, bigArrays());
         }
 
         @Override
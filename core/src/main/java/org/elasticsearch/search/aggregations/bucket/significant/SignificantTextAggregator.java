@@ -88,7 +88,7 @@ public class SignificantTextAggregator extends BucketsAggregator {
         this.termsAggFactory = termsAggFactory;
         this.fieldName = fieldName;
         this.sourceFieldNames = sourceFieldNames;
-        bucketOrds = new BytesRefHash(1, context.bigArrays());
+        bucketOrds = new BytesRefHash(1, bigArrays());
         if(filterDuplicateText){
             dupSequenceSpotter = new DuplicateByteSequenceSpotter();        
             lastTrieSize = dupSequenceSpotter.getEstimatedSizeInBytes();
@@ -161,7 +161,7 @@ public class SignificantTextAggregator extends BucketsAggregator {
 
                 SourceLookup sourceLookup = context.lookup().source();
                 sourceLookup.setSegmentAndDocument(ctx, doc);
-                BytesRefHash inDocTerms = new BytesRefHash(256, context.bigArrays());
+                BytesRefHash inDocTerms = new BytesRefHash(256, bigArrays());
                 
                 try {                
                     for (String sourceField : sourceFieldNames) {
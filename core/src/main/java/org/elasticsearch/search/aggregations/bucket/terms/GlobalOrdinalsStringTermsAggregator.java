@@ -100,7 +100,7 @@ public class GlobalOrdinalsStringTermsAggregator extends AbstractStringTermsAggr
         this.valueCount = values.getValueCount();
         this.lookupGlobalOrd = values::lookupOrd;
         this.acceptedGlobalOrdinals = includeExclude != null ? includeExclude.acceptedGlobalOrdinals(values) : null;
-        this.bucketOrds = remapGlobalOrds ? new LongHash(1, context.bigArrays()) : null;
+        this.bucketOrds = remapGlobalOrds ? new LongHash(1, bigArrays()) : null;
     }
 
     boolean remapGlobalOrds() {
@@ -111,6 +111,14 @@ public class GlobalOrdinalsStringTermsAggregator extends AbstractStringTermsAggr
         return bucketOrds == null ? globalOrd : bucketOrds.find(globalOrd);
     }
 
+    private long addGlobalOrd(long globalOrd) {
+        if (bucketOrds == null) {
+            return globalOrd;
+        }
+        final long bucketOrd = bucketOrds.add(globalOrd);
+        return bucketOrd < 0 ? -1 - bucketOrd : bucketOrd;
+    }
+
     private void collectGlobalOrd(int doc, long globalOrd, LeafBucketCollector sub) throws IOException {
         if (bucketOrds == null) {
             collectExistingBucket(sub, doc, globalOrd);
@@ -139,6 +147,8 @@ public class GlobalOrdinalsStringTermsAggregator extends AbstractStringTermsAggr
         final SortedDocValues singleValues = DocValues.unwrapSingleton(globalOrds);
         if (singleValues != null) {
             return new LeafBucketCollectorBase(sub, globalOrds) {
+                final BucketRuns runs = new BucketRuns(sub);
+
                 @Override
                 public void collect(int doc, long bucket) throws IOException {
                     assert bucket == 0;
@@ -147,6 +157,17 @@ public class GlobalOrdinalsStringTermsAggregator extends AbstractStringTermsAggr
                         collectGlobalOrd(doc, ord, sub);
                     }
                 }
+
+                @Override
+                public void collect(int[] docs, int count, long bucket) throws IOException {
+                    assert bucket == 0;
+                    for (int i = 0; i < count; i++) {
+                        if (singleValues.advanceExact(docs[i])) {
+                            runs.add(docs[i], addGlobalOrd(singleValues.ordValue()));
+                        }
+                    }
+                    runs.flush();
+                }
             };
         } else {
             return new LeafBucketCollectorBase(sub, globalOrds) {
@@ -315,7 +336,7 @@ public class GlobalOrdinalsStringTermsAggregator extends AbstractStringTermsAggr
             super(name, factories, valuesSource, order, format, bucketCountThresholds, null,
                 context, parent, forceDenseMode, collectionMode, showTermDocCountError, pipelineAggregators, metaData);
             assert factories == null || factories.countAggregators() == 0;
-            this.segmentDocCounts = context.bigArrays().newIntArray(1, true);
+            this.segmentDocCounts = bigArrays().newIntArray(1, true);
         }
 
         @Override
@@ -326,7 +347,7 @@ public class GlobalOrdinalsStringTermsAggregator extends AbstractStringTermsAggr
             }
             globalOrds = valuesSource.globalOrdinalsValues(ctx);
             segmentOrds = valuesSource.ordinalsValues(ctx);
-            segmentDocCounts = context.bigArrays().grow(segmentDocCounts, 1 + segmentOrds.getValueCount());
+            segmentDocCounts = bigArrays().grow(segmentDocCounts, 1 + segmentOrds.getValueCount());
             assert sub == LeafBucketCollector.NO_OP_COLLECTOR;
             final SortedDocValues singleValues = DocValues.unwrapSingleton(segmentOrds);
             if (singleValues != null) {
@@ -339,6 +360,16 @@ public class GlobalOrdinalsStringTermsAggregator extends AbstractStringTermsAggr
                             segmentDocCounts.increment(ord + 1, 1);
                         }
                     }
+
+                    @Override
+                    public void collect(int[] docs, int count, long bucket) throws IOException {
+                        assert bucket == 0;
+                        for (int i = 0; i < count; i++) {
+                            if (singleValues.advanceExact(docs[i])) {
+                                segmentDocCounts.increment(singleValues.ordValue() + 1, 1);
+                            }
+                        }
+                    }
                 };
             } else {
                 return new LeafBucketCollectorBase(sub, segmentOrds) {
@@ -20,6 +20,7 @@ package org.elasticsearch.search.aggregations.bucket.terms;
 
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedNumericDocValues;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.LongHash;
 import org.elasticsearch.search.DocValueFormat;
@@ -44,20 +45,45 @@ import static java.util.Collections.emptyList;
 
 public class LongTermsAggregator extends TermsAggregator {
 
+    /**
+     * The maximum number of distinct values that the field may have for the buckets to be collected in a dense array
+     * indexed by the distance of the values to the minimum value of the field rather than in a hash table.
+     */
+    public static final long MAX_DENSE_RANGE = 1024;
+
     protected final ValuesSource.Numeric valuesSource;
     protected final LongHash bucketOrds;
     private boolean showTermDocCountError;
     private LongFilter longFilter;
+    private final boolean dense;
+    private final long minValue;
 
     public LongTermsAggregator(String name, AggregatorFactories factories, ValuesSource.Numeric valuesSource, DocValueFormat format,
             BucketOrder order, BucketCountThresholds bucketCountThresholds, SearchContext aggregationContext, Aggregator parent,
             SubAggCollectionMode subAggCollectMode, boolean showTermDocCountError, IncludeExclude.LongFilter longFilter,
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
+        this(name, factories, valuesSource, format, order, bucketCountThresholds, aggregationContext, parent, subAggCollectMode,
+            showTermDocCountError, longFilter, null, pipelineAggregators, metaData);
+    }
+
+    /**
+     * @param minValue if not <code>null</code>, the minimum value of the field, which must have less than
+     *                 {@link #MAX_DENSE_RANGE} distinct values: the ordinal of the bucket of each value is then its distance
+     *                 to the minimum value
+     */
+    public LongTermsAggregator(String name, AggregatorFactories factories, ValuesSource.Numeric valuesSource, DocValueFormat format,
+            BucketOrder order, BucketCountThresholds bucketCountThresholds, SearchContext aggregationContext, Aggregator parent,
+            SubAggCollectionMode subAggCollectMode, boolean showTermDocCountError, IncludeExclude.LongFilter longFilter,
+            @Nullable Long minValue, List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
         super(name, factories, aggregationContext, parent, bucketCountThresholds, order, format, subAggCollectMode, pipelineAggregators, metaData);
+        // empty buckets are filled in from the values of the index, which the dense ordinals can't tell apart from missing values
+        assert minValue == null || bucketCountThresholds.getMinDocCount() > 0;
         this.valuesSource = valuesSource;
         this.showTermDocCountError = showTermDocCountError;
         this.longFilter = longFilter;
-        bucketOrds = new LongHash(1, aggregationContext.bigArrays());
+        this.dense = minValue != null;
+        this.minValue = dense ? minValue : 0;
+        bucketOrds = new LongHash(1, bigArrays());
     }
 
     @Override
@@ -73,7 +99,12 @@ public class LongTermsAggregator extends TermsAggregator {
     public LeafBucketCollector getLeafCollector(LeafReaderContext ctx,
             final LeafBucketCollector sub) throws IOException {
         final SortedNumericDocValues values = getValues(valuesSource, ctx);
+        if (dense) {
+            return getDenseLeafCollector(values, sub);
+        }
         return new LeafBucketCollectorBase(sub, values) {
+            final BucketRuns runs = new BucketRuns(sub);
+
             @Override
             public void collect(int doc, long owningBucketOrdinal) throws IOException {
                 assert owningBucketOrdinal == 0;
@@ -99,6 +130,86 @@ public class LongTermsAggregator extends TermsAggregator {
                     }
                 }
             }
+
+            @Override
+            public void collect(int[] docs, int count, long owningBucketOrdinal) throws IOException {
+                assert owningBucketOrdinal == 0;
+                for (int i = 0; i < count; i++) {
+                    final int doc = docs[i];
+                    if (values.advanceExact(doc)) {
+                        final int valuesCount = values.docValueCount();
+
+                        long previous = Long.MAX_VALUE;
+                        for (int j = 0; j < valuesCount; ++j) {
+                            final long val = values.nextValue();
+                            if (previous != val || j == 0) {
+                                if ((longFilter == null) || (longFilter.accept(val))) {
+                                    long bucketOrdinal = bucketOrds.add(val);
+                                    if (bucketOrdinal < 0) { // already seen
+                                        bucketOrdinal = -1 - bucketOrdinal;
+                                    }
+                                    runs.add(doc, bucketOrdinal);
+                                }
+
+                                previous = val;
+                            }
+                        }
+                    }
+                }
+                runs.flush();
+            }
+        };
+    }
+
+    private LeafBucketCollector getDenseLeafCollector(SortedNumericDocValues values, LeafBucketCollector sub) {
+        return new LeafBucketCollectorBase(sub, values) {
+            final BucketRuns runs = new BucketRuns(sub);
+
+            @Override
+            public void collect(int doc, long owningBucketOrdinal) throws IOException {
+                assert owningBucketOrdinal == 0;
+                if (values.advanceExact(doc)) {
+                    final int valuesCount = values.docValueCount();
+
+                    long previous = Long.MAX_VALUE;
+                    for (int i = 0; i < valuesCount; ++i) {
+                        final long val = values.nextValue();
+                        if (previous != val || i == 0) {
+                            if ((longFilter == null) || (longFilter.accept(val))) {
+                                assert val - minValue >= 0 && val - minValue < MAX_DENSE_RANGE;
+                                collectBucket(sub, doc, val - minValue);
+                            }
+
+                            previous = val;
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void collect(int[] docs, int count, long owningBucketOrdinal) throws IOException {
+                assert owningBucketOrdinal == 0;
+                for (int i = 0; i < count; i++) {
+                    final int doc = docs[i];
+                    if (values.advanceExact(doc)) {
+                        final int valuesCount = values.docValueCount();
+
+                        long previous = Long.MAX_VALUE;
+                        for (int j = 0; j < valuesCount; ++j) {
+                            final long val = values.nextValue();
+                            if (previous != val || j == 0) {
+                                if ((longFilter == null) || (longFilter.accept(val))) {
+                                    assert val - minValue >= 0 && val - minValue < MAX_DENSE_RANGE;
+                                    runs.add(doc, val - minValue);
+                                }
+
+                                previous = val;
+                            }
+                        }
+                    }
+                }
+                runs.flush();
+            }
         };
     }
 
@@ -124,17 +235,23 @@ public class LongTermsAggregator extends TermsAggregator {
             }
         }
 
-        final int size = (int) Math.min(bucketOrds.size(), bucketCountThresholds.getShardSize());
+        // dense ordinals may include values that no document has, their doc count is 0
+        final long numBucketOrds = dense ? maxBucketOrd() : bucketOrds.size();
+        final int size = (int) Math.min(numBucketOrds, bucketCountThresholds.getShardSize());
 
         long otherDocCount = 0;
         BucketPriorityQueue<LongTerms.Bucket> ordered = new BucketPriorityQueue<>(size, order.comparator(this));
         LongTerms.Bucket spare = null;
-        for (long i = 0; i < bucketOrds.size(); i++) {
+        for (long i = 0; i < numBucketOrds; i++) {
+            final int docCount = bucketDocCount(i);
+            if (dense && docCount == 0) {
+                continue;
+            }
             if (spare == null) {
                 spare = new LongTerms.Bucket(0, 0, null, showTermDocCountError, 0, format);
             }
-            spare.term = bucketOrds.get(i);
-            spare.docCount = bucketDocCount(i);
+            spare.term = dense ? minValue + i : bucketOrds.get(i);
+            spare.docCount = docCount;
             otherDocCount += spare.docCount;
             spare.bucketOrd = i;
             if (bucketCountThresholds.getShardMinDocCount() <= spare.docCount) {
@@ -0,0 +1,181 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.terms;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.BucketOrder;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalOrder;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
+import org.elasticsearch.search.aggregations.bucket.terms.IncludeExclude.LongFilter;
+import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyList;
+
+/**
+ * An aggregator of long values that writes its terms and their counts to disk when they use more memory than a threshold,
+ * see {@link SpillingTermCounts}. The values are encoded as sortable bytes. It doesn't support sub-aggregations.
+ */
+public class SpillingLongTermsAggregator extends TermsAggregator {
+
+    private final ValuesSource.Numeric valuesSource;
+    private final boolean showTermDocCountError;
+    private final LongFilter longFilter;
+    private final SpillingTermCounts termCounts;
+    private final BytesRef scratch = new BytesRef(new byte[Long.BYTES]);
+
+    public SpillingLongTermsAggregator(String name, ValuesSource.Numeric valuesSource, DocValueFormat format, BucketOrder order,
+            BucketCountThresholds bucketCountThresholds, LongFilter longFilter, long spillThreshold, SearchContext context,
+            Aggregator parent, boolean showTermDocCountError, List<PipelineAggregator> pipelineAggregators,
+            Map<String, Object> metaData) throws IOException {
+        super(name, AggregatorFactories.EMPTY, context, parent, bucketCountThresholds, order, format, SubAggCollectionMode.DEPTH_FIRST,
+                pipelineAggregators, metaData);
+        this.valuesSource = valuesSource;
+        this.showTermDocCountError = showTermDocCountError;
+        this.longFilter = longFilter;
+        this.termCounts = new SpillingTermCounts(bigArrays(), memoryUsage(), spillThreshold,
+                SpillingTermCounts.spillDirectory(context));
+    }
+
+    @Override
+    public boolean needsScores() {
+        return valuesSource != null && valuesSource.needsScores();
+    }
+
+    private boolean add(long value, long inc) throws IOException {
+        NumericUtils.longToSortableBytes(value, scratch.bytes, 0);
+        return termCounts.add(scratch, inc);
+    }
+
+    @Override
+    public LeafBucketCollector getLeafCollector(LeafReaderContext ctx, final LeafBucketCollector sub) throws IOException {
+        final SortedNumericDocValues values = valuesSource.longValues(ctx);
+        return new LeafBucketCollectorBase(sub, values) {
+            @Override
+            public void collect(int doc, long owningBucketOrdinal) throws IOException {
+                assert owningBucketOrdinal == 0;
+                if (values.advanceExact(doc)) {
+                    final int valuesCount = values.docValueCount();
+
+                    long previous = Long.MAX_VALUE;
+                    for (int i = 0; i < valuesCount; ++i) {
+                        final long val = values.nextValue();
+                        if (previous != val || i == 0) {
+                            if ((longFilter == null) || (longFilter.accept(val))) {
+                                if (add(val, 1)) {
+                                    memoryUsage().addBuckets(1);
+                                }
+                            }
+
+                            previous = val;
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public InternalAggregation buildAggregation(long owningBucketOrdinal) throws IOException {
+        assert owningBucketOrdinal == 0;
+
+        if (bucketCountThresholds.getMinDocCount() == 0 && (InternalOrder.isCountDesc(order) == false
+                || termCounts.spilled() || termCounts.maxTerms() < bucketCountThresholds.getRequiredSize())) {
+            // we need to fill-in the blanks
+            for (LeafReaderContext ctx : context.searcher().getTopReaderContext().leaves()) {
+                final SortedNumericDocValues values = valuesSource.longValues(ctx);
+                for (int docId = 0; docId < ctx.reader().maxDoc(); ++docId) {
+                    if (values.advanceExact(docId)) {
+                        final int valueCount = values.docValueCount();
+                        for (int i = 0; i < valueCount; ++i) {
+                            long value = values.nextValue();
+                            if (longFilter == null || longFilter.accept(value)) {
+                                add(value, 0);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        final int size = (int) Math.min(termCounts.maxTerms(), bucketCountThresholds.getShardSize());
+
+        long otherDocCount = 0;
+        BucketPriorityQueue<LongTerms.Bucket> ordered = new BucketPriorityQueue<>(size, order.comparator(this));
+        LongTerms.Bucket spare = null;
+        try (SpillingTermCounts.Cursor cursor = termCounts.cursor()) {
+            while (cursor.next()) {
+                if (spare == null) {
+                    spare = new LongTerms.Bucket(0, 0, null, showTermDocCountError, 0, format);
+                }
+                final BytesRef term = cursor.term();
+                spare.term = NumericUtils.sortableBytesToLong(term.bytes, term.offset);
+                spare.docCount = cursor.count();
+                otherDocCount += spare.docCount;
+                if (bucketCountThresholds.getShardMinDocCount() <= spare.docCount) {
+                    spare = ordered.insertWithOverflow(spare);
+                }
+            }
+            // the terms that were added after the first spill are only counted once the runs are merged
+            memoryUsage().addBuckets(cursor.uncountedTerms());
+        }
+
+        // Get the top buckets
+        final LongTerms.Bucket[] list = new LongTerms.Bucket[ordered.size()];
+        for (int i = ordered.size() - 1; i >= 0; --i) {
+            final LongTerms.Bucket bucket = ordered.pop();
+            bucket.aggregations = buildEmptySubAggregations();
+            bucket.docCountError = 0;
+            list[i] = bucket;
+            otherDocCount -= bucket.docCount;
+        }
+
+        return new LongTerms(name, order, bucketCountThresholds.getRequiredSize(), bucketCountThresholds.getMinDocCount(),
+                pipelineAggregators(), metaData(), format, bucketCountThresholds.getShardSize(), showTermDocCountError, otherDocCount,
+                Arrays.asList(list), 0);
+    }
+
+    @Override
+    public InternalAggregation buildEmptyAggregation() {
+        return new LongTerms(name, order, bucketCountThresholds.getRequiredSize(), bucketCountThresholds.getMinDocCount(),
+                pipelineAggregators(), metaData(), format, bucketCountThresholds.getShardSize(), showTermDocCountError, 0, emptyList(), 0);
+    }
+
+    @Override
+    public void doClose() {
+        Releasables.close(termCounts);
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.terms;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.index.fielddata.SortedBinaryDocValues;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.BucketOrder;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalOrder;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
+import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An aggregator of string values that writes its terms and their counts to disk when they use more memory than a threshold,
+ * see {@link SpillingTermCounts}. It doesn't support sub-aggregations.
+ */
+public class SpillingStringTermsAggregator extends AbstractStringTermsAggregator {
+
+    private final ValuesSource valuesSource;
+    private final IncludeExclude.StringFilter includeExclude;
+    private final SpillingTermCounts termCounts;
+
+    public SpillingStringTermsAggregator(String name, ValuesSource valuesSource, BucketOrder order, DocValueFormat format,
+            BucketCountThresholds bucketCountThresholds, IncludeExclude.StringFilter includeExclude, long spillThreshold,
+            SearchContext context, Aggregator parent, boolean showTermDocCountError, List<PipelineAggregator> pipelineAggregators,
+            Map<String, Object> metaData) throws IOException {
+        super(name, AggregatorFactories.EMPTY, context, parent, order, format, bucketCountThresholds, SubAggCollectionMode.DEPTH_FIRST,
+                showTermDocCountError, pipelineAggregators, metaData);
+        this.valuesSource = valuesSource;
+        this.includeExclude = includeExclude;
+        this.termCounts = new SpillingTermCounts(bigArrays(), memoryUsage(), spillThreshold,
+                SpillingTermCounts.spillDirectory(context));
+    }
+
+    @Override
+    public boolean needsScores() {
+        return valuesSource != null && valuesSource.needsScores();
+    }
+
+    @Override
+    public LeafBucketCollector getLeafCollector(LeafReaderContext ctx, final LeafBucketCollector sub) throws IOException {
+        final SortedBinaryDocValues values = valuesSource.bytesValues(ctx);
+        return new LeafBucketCollectorBase(sub, values) {
+            final BytesRefBuilder previous = new BytesRefBuilder();
+
+            @Override
+            public void collect(int doc, long bucket) throws IOException {
+                assert bucket == 0;
+                if (values.advanceExact(doc)) {
+                    final int valuesCount = values.docValueCount();
+
+                    // SortedBinaryDocValues don't guarantee uniqueness so we
+                    // need to take care of dups
+                    previous.clear();
+                    for (int i = 0; i < valuesCount; ++i) {
+                        final BytesRef bytes = values.nextValue();
+                        if (includeExclude != null && !includeExclude.accept(bytes)) {
+                            continue;
+                        }
+                        if (previous.get().equals(bytes)) {
+                            continue;
+                        }
+                        if (termCounts.add(bytes, 1)) {
+                            memoryUsage().addBuckets(1);
+                        }
+                        previous.copyBytes(bytes);
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public InternalAggregation buildAggregation(long owningBucketOrdinal) throws IOException {
+        assert owningBucketOrdinal == 0;
+
+        if (bucketCountThresholds.getMinDocCount() == 0 && (InternalOrder.isCountDesc(order) == false
+                || termCounts.spilled() || termCounts.maxTerms() < bucketCountThresholds.getRequiredSize())) {
+            // we need to fill-in the blanks
+            for (LeafReaderContext ctx : context.searcher().getTopReaderContext().leaves()) {
+                final SortedBinaryDocValues values = valuesSource.bytesValues(ctx);
+                // brute force
+                for (int docId = 0; docId < ctx.reader().maxDoc(); ++docId) {
+                    if (values.advanceExact(docId)) {
+                        final int valueCount = values.docValueCount();
+                        for (int i = 0; i < valueCount; ++i) {
+                            final BytesRef term = values.nextValue();
+                            if (includeExclude == null || includeExclude.accept(term)) {
+                                termCounts.add(term, 0);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        final int size = (int) Math.min(termCounts.maxTerms(), bucketCountThresholds.getShardSize());
+
+        long otherDocCount = 0;
+        BucketPriorityQueue<StringTerms.Bucket> ordered = new BucketPriorityQueue<>(size, order.comparator(this));
+        StringTerms.Bucket spare = null;
+        try (SpillingTermCounts.Cursor cursor = termCounts.cursor()) {
+            while (cursor.next()) {
+                if (spare == null) {
+                    spare = new StringTerms.Bucket(new BytesRef(), 0, null, showTermDocCountError, 0, format);
+                }
+                spare.termBytes = cursor.term();
+                spare.docCount = cursor.count();
+                otherDocCount += spare.docCount;
+                if (bucketCountThresholds.getShardMinDocCount() <= spare.docCount
+                        && (ordered.size() < size || ordered.lessThan(ordered.top(), spare))) {
+                    // the term of the cursor is only valid until the next term is read
+                    spare.termBytes = BytesRef.deepCopyOf(spare.termBytes);
+                    spare = ordered.insertWithOverflow(spare);
+                }
+            }
+            // the terms that were added after the first spill are only counted once the runs are merged
+            memoryUsage().addBuckets(cursor.uncountedTerms());
+        }
+
+        // Get the top buckets
+        final StringTerms.Bucket[] list = new StringTerms.Bucket[ordered.size()];
+        for (int i = ordered.size() - 1; i >= 0; --i) {
+            final StringTerms.Bucket bucket = ordered.pop();
+            bucket.aggregations = buildEmptySubAggregations();
+            bucket.docCountError = 0;
+            list[i] = bucket;
+            otherDocCount -= bucket.docCount;
+        }
+
+        return new StringTerms(name, order, bucketCountThresholds.getRequiredSize(), bucketCountThresholds.getMinDocCount(),
+                pipelineAggregators(), metaData(), format, bucketCountThresholds.getShardSize(), showTermDocCountError, otherDocCount,
+                Arrays.asList(list), 0);
+    }
+
+    @Override
+    public void doClose() {
+        Releasables.close(termCounts);
+    }
+
+}
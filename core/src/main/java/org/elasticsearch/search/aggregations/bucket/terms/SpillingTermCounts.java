@@ -0,0 +1,385 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.terms;
+
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.IntroSorter;
+import org.apache.lucene.util.PriorityQueue;
+import org.elasticsearch.common.CheckedSupplier;
+import org.elasticsearch.common.io.stream.InputStreamStreamInput;
+import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.BytesRefHash;
+import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.common.util.LongArray;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Counts the documents of each term in a {@link BytesRefHash} and, whenever the terms and their counts use more memory than
+ * a threshold, writes them to a temporary file sorted by term and starts over with an empty hash. The counts are read back
+ * through a {@link Cursor} that merges the sorted runs and sums up the counts of the terms that were spilled several times.
+ * The temporary files are deleted on {@link #close()}, and files that are left behind because a node stopped in the middle of
+ * a search are deleted when the shard is created again.
+ * <p>
+ * The threshold applies to each instance: an aggregator that is collected for several parent buckets is wrapped with
+ * {@link org.elasticsearch.search.aggregations.AggregatorFactory#asMultiBucketAggregator} which creates one aggregator, and so
+ * one instance, per parent bucket, so the memory of a nested spilling terms aggregation isn't bounded by the threshold.
+ */
+final class SpillingTermCounts implements Releasable {
+
+    /**
+     * Returns the directory in the data path of the searched shard that the terms are written to, see
+     * {@link org.elasticsearch.index.shard.ShardPath#resolveTermsSpill()}.
+     */
+    static CheckedSupplier<Path, IOException> spillDirectory(SearchContext context) {
+        return () -> context.indexShard().shardPath().resolveTermsSpill();
+    }
+
+    private final BigArrays bigArrays;
+    private final long threshold;
+    private final CheckedSupplier<Path, IOException> directory;
+    private final List<Path> runs = new ArrayList<>();
+    private long spilledTerms;
+    // the number of terms that add reported as new
+    private long countedTerms;
+    // the bytes that the terms and their counts currently account for with the request circuit breaker
+    private long bytesUsed;
+    private BytesRefHash terms;
+    private LongArray counts;
+
+    /**
+     * @param bigArrays   the arrays to allocate the terms and counts with
+     * @param memoryUsage notified of the memory that the terms and counts account for in addition to the threshold check
+     * @param threshold   the number of bytes that the terms and their counts may use before they are written to disk
+     * @param directory   the directory to write the temporary files to, only resolved on the first spill
+     */
+    SpillingTermCounts(BigArrays bigArrays, LongConsumer memoryUsage, long threshold, CheckedSupplier<Path, IOException> directory) {
+        this.bigArrays = bigArrays.withMemoryListener(delta -> {
+            bytesUsed += delta;
+            memoryUsage.accept(delta);
+        });
+        this.threshold = threshold;
+        this.directory = directory;
+        this.terms = new BytesRefHash(1, this.bigArrays);
+        this.counts = this.bigArrays.newLongArray(1, true);
+    }
+
+    /**
+     * Adds <code>inc</code> to the count of the given term, which may be 0 to only register the term. Returns
+     * <code>true</code> if the term is counted for the first time, which is only known until terms are written to disk:
+     * later terms may have been written already and are counted when the runs are merged, see {@link Cursor#uncountedTerms()}.
+     */
+    boolean add(BytesRef term, long inc) throws IOException {
+        long ord = terms.add(term);
+        final boolean added = ord >= 0;
+        if (added) {
+            counts = bigArrays.grow(counts, ord + 1);
+        } else {
+            ord = -1 - ord;
+        }
+        final boolean counted = inc > 0 && runs.isEmpty() && counts.get(ord) == 0;
+        counts.increment(ord, inc);
+        if (counted) {
+            countedTerms++;
+        }
+        if (added && bytesUsed > threshold) {
+            spill();
+        }
+        return counted;
+    }
+
+    /**
+     * Returns <code>true</code> if terms have been written to disk.
+     */
+    boolean spilled() {
+        return runs.isEmpty() == false;
+    }
+
+    /**
+     * Returns an upper bound of the number of distinct terms, which is exact if nothing has been written to disk.
+     */
+    long maxTerms() {
+        return spilledTerms + terms.size();
+    }
+
+    /**
+     * Returns a cursor over the terms and their counts, in term order if terms have been written to disk and in no
+     * particular order otherwise. No terms must be added once the cursor is created.
+     */
+    Cursor cursor() throws IOException {
+        if (runs.isEmpty()) {
+            return new InMemoryCursor();
+        }
+        spill();
+        return new MergingCursor();
+    }
+
+    private void spill() throws IOException {
+        final long size = terms.size();
+        if (size == 0) {
+            return;
+        }
+        final Path dir = directory.get();
+        Files.createDirectories(dir);
+        final Path run = Files.createTempFile(dir, "terms_", ".spill");
+        // registered before writing so that a partially written run is deleted too
+        runs.add(run);
+        try (IntArray ords = sortedOrds(size);
+             StreamOutput out = new OutputStreamStreamOutput(new BufferedOutputStream(Files.newOutputStream(run)))) {
+            final BytesRef spare = new BytesRef();
+            out.writeVLong(size);
+            for (long i = 0; i < size; i++) {
+                final int ord = ords.get(i);
+                out.writeBytesRef(terms.get(ord, spare));
+                out.writeVLong(counts.get(ord));
+            }
+        }
+        spilledTerms += size;
+        Releasables.close(terms, counts);
+        // cleared so that they aren't released twice if the allocation of the new ones trips the breaker
+        terms = null;
+        counts = null;
+        terms = new BytesRefHash(1, bigArrays);
+        counts = bigArrays.newLongArray(1, true);
+    }
+
+    private IntArray sortedOrds(long size) {
+        final IntArray ords = bigArrays.newIntArray(size, false);
+        for (int i = 0; i < size; i++) {
+            ords.set(i, i);
+        }
+        new IntroSorter() {
+            final BytesRef spare1 = new BytesRef();
+            final BytesRef spare2 = new BytesRef();
+            final BytesRefBuilder pivot = new BytesRefBuilder();
+
+            @Override
+            protected void swap(int i, int j) {
+                final int tmp = ords.get(i);
+                ords.set(i, ords.get(j));
+                ords.set(j, tmp);
+            }
+
+            @Override
+            protected int compare(int i, int j) {
+                return terms.get(ords.get(i), spare1).compareTo(terms.get(ords.get(j), spare2));
+            }
+
+            @Override
+            protected void setPivot(int i) {
+                pivot.copyBytes(terms.get(ords.get(i), spare1));
+            }
+
+            @Override
+            protected int comparePivot(int j) {
+                return pivot.get().compareTo(terms.get(ords.get(j), spare2));
+            }
+        }.sort(0, (int) size);
+        return ords;
+    }
+
+    @Override
+    public void close() {
+        try {
+            Releasables.close(terms, counts);
+        } finally {
+            IOUtils.deleteFilesIgnoringExceptions(runs);
+        }
+    }
+
+    /**
+     * Iterates over terms and their counts.
+     */
+    abstract static class Cursor implements Closeable {
+
+        /**
+         * Moves to the next term, returns <code>false</code> if there are no terms left.
+         */
+        abstract boolean next() throws IOException;
+
+        /**
+         * The current term, which is only valid until the next call to {@link #next()}.
+         */
+        abstract BytesRef term();
+
+        /**
+         * The count of the current term.
+         */
+        abstract long count();
+
+        /**
+         * The number of distinct terms with a non-zero count that {@link #add} didn't report, which is only complete once
+         * {@link #next()} returned <code>false</code>.
+         */
+        abstract long uncountedTerms();
+    }
+
+    private class InMemoryCursor extends Cursor {
+        private final BytesRef term = new BytesRef();
+        private long ord = -1;
+
+        @Override
+        boolean next() {
+            if (++ord >= terms.size()) {
+                return false;
+            }
+            terms.get(ord, term);
+            return true;
+        }
+
+        @Override
+        BytesRef term() {
+            return term;
+        }
+
+        @Override
+        long count() {
+            return counts.get(ord);
+        }
+
+        @Override
+        long uncountedTerms() {
+            // nothing was written to disk so add reported every term
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private class MergingCursor extends Cursor {
+        private final List<RunReader> readers = new ArrayList<>(runs.size());
+        private final PriorityQueue<RunReader> queue;
+        private final BytesRefBuilder term = new BytesRefBuilder();
+        private long count;
+        private long distinctTerms;
+
+        MergingCursor() throws IOException {
+            queue = new PriorityQueue<RunReader>(runs.size()) {
+                @Override
+                protected boolean lessThan(RunReader a, RunReader b) {
+                    return a.term.compareTo(b.term) < 0;
+                }
+            };
+            boolean success = false;
+            try {
+                for (Path run : runs) {
+                    final RunReader reader = new RunReader(run);
+                    readers.add(reader);
+                    if (reader.next()) {
+                        queue.add(reader);
+                    }
+                }
+                success = true;
+            } finally {
+                if (success == false) {
+                    close();
+                }
+            }
+        }
+
+        @Override
+        boolean next() throws IOException {
+            RunReader top = queue.top();
+            if (top == null) {
+                return false;
+            }
+            term.copyBytes(top.term);
+            count = 0;
+            do {
+                count += top.count;
+                if (top.next()) {
+                    queue.updateTop();
+                } else {
+                    queue.pop();
+                }
+                top = queue.top();
+            } while (top != null && top.term.equals(term.get()));
+            if (count > 0) {
+                distinctTerms++;
+            }
+            return true;
+        }
+
+        @Override
+        BytesRef term() {
+            return term.get();
+        }
+
+        @Override
+        long count() {
+            return count;
+        }
+
+        @Override
+        long uncountedTerms() {
+            return distinctTerms - countedTerms;
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOUtils.close(readers);
+        }
+    }
+
+    private static class RunReader implements Closeable {
+        private final StreamInput in;
+        private long remaining;
+        BytesRef term;
+        long count;
+
+        RunReader(Path run) throws IOException {
+            in = new InputStreamStreamInput(new BufferedInputStream(Files.newInputStream(run)));
+            remaining = in.readVLong();
+        }
+
+        boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            term = in.readBytesRef();
+            count = in.readVLong();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -60,7 +60,7 @@ public class StringTermsAggregator extends AbstractStringTermsAggregator {
                 pipelineAggregators, metaData);
         this.valuesSource = valuesSource;
         this.includeExclude = includeExclude;
-        bucketOrds = new BytesRefHash(1, context.bigArrays());
+        bucketOrds = new BytesRefHash(1, bigArrays());
     }
 
     @Override
@@ -19,10 +19,15 @@
 
 package org.elasticsearch.search.aggregations.bucket.terms;
 
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.PointValues;
 import org.apache.lucene.search.IndexSearcher;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.logging.DeprecationLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.mapper.MappedFieldType;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.aggregations.AggregationExecutionException;
 import org.elasticsearch.search.aggregations.Aggregator;
@@ -35,6 +40,7 @@ import org.elasticsearch.search.aggregations.InternalOrder;
 import org.elasticsearch.search.aggregations.InternalOrder.CompoundOrder;
 import org.elasticsearch.search.aggregations.NonCollectingAggregator;
 import org.elasticsearch.search.aggregations.bucket.BucketUtils;
+import org.elasticsearch.search.aggregations.bucket.PointValuesBucketCounter;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregator.BucketCountThresholds;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.support.ValuesSource;
@@ -129,7 +135,7 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
                 execution = ExecutionMode.fromString(executionHint, DEPRECATION_LOGGER);
             }
             // In some cases, using ordinals is just not supported: override it
-            if (valuesSource instanceof ValuesSource.Bytes.WithOrdinals == false) {
+            if (valuesSource instanceof ValuesSource.Bytes.WithOrdinals == false && execution != ExecutionMode.SPILL) {
                 execution = ExecutionMode.MAP;
             }
             final long maxOrd = getMaxOrd(valuesSource, context.searcher());
@@ -180,9 +186,15 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
             if (includeExclude != null) {
                 longFilter = includeExclude.convertToLongFilter(config.format());
             }
+            // other execution hints don't apply to numeric fields
+            if (ExecutionMode.SPILL.toString().equals(executionHint) && factories == AggregatorFactories.EMPTY) {
+                return new SpillingLongTermsAggregator(name, (ValuesSource.Numeric) valuesSource, config.format(), order,
+                        bucketCountThresholds, longFilter, spillThreshold(context), context, parent, showTermDocCountError,
+                        pipelineAggregators, metaData);
+            }
             return new LongTermsAggregator(name, factories, (ValuesSource.Numeric) valuesSource, config.format(), order,
-                    bucketCountThresholds, context, parent, cm, showTermDocCountError, longFilter, pipelineAggregators,
-                    metaData);
+                    bucketCountThresholds, context, parent, cm, showTermDocCountError, longFilter, denseMinValue(),
+                    pipelineAggregators, metaData);
         }
 
         throw new AggregationExecutionException("terms aggregation cannot be applied to field [" + config.fieldContext().field()
@@ -216,6 +228,48 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
         }
     }
 
+    /**
+     * Returns the minimum value of the field if the values of the field span less than
+     * {@link LongTermsAggregator#MAX_DENSE_RANGE} distinct values according to its points, or <code>null</code> if the
+     * buckets must be hashed.
+     */
+    private Long denseMinValue() throws IOException {
+        if (bucketCountThresholds.getMinDocCount() == 0) {
+            // empty buckets are filled in from the values of the documents
+            return null;
+        }
+        if (config.fieldContext() == null || config.script() != null || config.missing() != null) {
+            return null;
+        }
+        final MappedFieldType fieldType = config.fieldContext().fieldType();
+        final int bytesPerDim = PointValuesBucketCounter.pointBytes(fieldType);
+        if (fieldType.indexOptions() == IndexOptions.NONE || bytesPerDim == -1) {
+            return null;
+        }
+        final IndexReader reader = context.searcher().getIndexReader();
+        final byte[] minPackedValue = PointValues.getMinPackedValue(reader, fieldType.name());
+        final byte[] maxPackedValue = PointValues.getMaxPackedValue(reader, fieldType.name());
+        if (minPackedValue == null || maxPackedValue == null) {
+            return null;
+        }
+        final long minValue = PointValuesBucketCounter.decode(minPackedValue, bytesPerDim);
+        final long maxValue = PointValuesBucketCounter.decode(maxPackedValue, bytesPerDim);
+        final long range = maxValue - minValue;
+        // the range is negative if it overflows
+        if (range < 0 || range >= LongTermsAggregator.MAX_DENSE_RANGE) {
+            return null;
+        }
+        return minValue;
+    }
+
+    /**
+     * Returns the number of bytes that the terms of a terms aggregation with the {@link ExecutionMode#SPILL} execution hint
+     * can use before they are written to disk, see {@link IndexSettings#TERMS_SPILL_THRESHOLD_SETTING}.
+     */
+    static long spillThreshold(SearchContext context) {
+        return context.mapperService().getIndexSettings().getValue(IndexSettings.TERMS_SPILL_THRESHOLD_SETTING).getBytes();
+    }
+
     public enum ExecutionMode {
 
         MAP(new ParseField("map")) {
@@ -293,6 +347,32 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
                         format, bucketCountThresholds, filter, context, parent, remapGlobalOrds, subAggCollectMode, showTermDocCountError,
                         pipelineAggregators, metaData);
             }
+        },
+        SPILL(new ParseField("spill")) {
+
+            @Override
+            Aggregator create(String name,
+                              AggregatorFactories factories,
+                              ValuesSource valuesSource,
+                              BucketOrder order,
+                              DocValueFormat format,
+                              TermsAggregator.BucketCountThresholds bucketCountThresholds,
+                              IncludeExclude includeExclude,
+                              SearchContext context,
+                              Aggregator parent,
+                              SubAggCollectionMode subAggCollectMode,
+                              boolean showTermDocCountError,
+                              List<PipelineAggregator> pipelineAggregators,
+                              Map<String, Object> metaData) throws IOException {
+                if (factories != AggregatorFactories.EMPTY) {
+                    // the state of the sub-aggregators can't be written to disk
+                    return MAP.create(name, factories, valuesSource, order, format, bucketCountThresholds, includeExclude, context,
+                            parent, subAggCollectMode, showTermDocCountError, pipelineAggregators, metaData);
+                }
+                final IncludeExclude.StringFilter filter = includeExclude == null ? null : includeExclude.convertToStringFilter(format);
+                return new SpillingStringTermsAggregator(name, valuesSource, order, format, bucketCountThresholds, filter,
+                        spillThreshold(context), context, parent, showTermDocCountError, pipelineAggregators, metaData);
+            }
         };
 
         public static ExecutionMode fromString(String value, final DeprecationLogger deprecationLogger) {
@@ -301,8 +381,11 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
                     return GLOBAL_ORDINALS;
                 case "map":
                     return MAP;
+                case "spill":
+                    return SPILL;
                 default:
-                    throw new IllegalArgumentException("Unknown `execution_hint`: [" + value + "], expected any of [map, global_ordinals]");
+                    throw new IllegalArgumentException("Unknown `execution_hint`: [" + value + "], expected any of [map, global_ordinals, "
+                        + "spill]");
             }
         }
 
@@ -52,7 +52,7 @@ public class AvgAggregator extends NumericMetricsAggregator.SingleValue {
         this.valuesSource = valuesSource;
         this.format = formatter;
         if (valuesSource != null) {
-            final BigArrays bigArrays = context.bigArrays();
+            final BigArrays bigArrays = bigArrays();
             counts = bigArrays.newLongArray(1, true);
             sums = bigArrays.newDoubleArray(1, true);
         }
@@ -69,7 +69,7 @@ public class AvgAggregator extends NumericMetricsAggregator.SingleValue {
         if (valuesSource == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
-        final BigArrays bigArrays = context.bigArrays();
+        final BigArrays bigArrays = bigArrays();
         final SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
             @Override
@@ -87,6 +87,28 @@ public class AvgAggregator extends NumericMetricsAggregator.SingleValue {
                     sums.increment(bucket, sum);
                 }
             }
+
+            @Override
+            public void collect(int[] docs, int count, long bucket) throws IOException {
+                counts = bigArrays.grow(counts, bucket + 1);
+                sums = bigArrays.grow(sums, bucket + 1);
+
+                long valueCount = 0;
+                double sum = sums.get(bucket);
+                for (int i = 0; i < count; i++) {
+                    if (values.advanceExact(docs[i])) {
+                        final int docValueCount = values.docValueCount();
+                        valueCount += docValueCount;
+                        double docSum = 0;
+                        for (int j = 0; j < docValueCount; j++) {
+                            docSum += values.nextValue();
+                        }
+                        sum += docSum;
+                    }
+                }
+                counts.increment(bucket, valueCount);
+                sums.set(bucket, sum);
+            }
         };
     }
 
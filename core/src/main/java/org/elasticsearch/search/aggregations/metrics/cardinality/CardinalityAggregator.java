@@ -27,6 +27,7 @@ import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LongValues;
 import org.apache.lucene.util.RamUsageEstimator;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.lease.Releasable;
@@ -34,6 +35,7 @@ import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.LongArray;
 import org.elasticsearch.common.util.ObjectArray;
+import org.elasticsearch.index.fielddata.IndexFieldDataService;
 import org.elasticsearch.index.fielddata.SortedBinaryDocValues;
 import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
 import org.elasticsearch.search.aggregations.Aggregator;
@@ -55,6 +57,8 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
 
     private final int precision;
     private final ValuesSource valuesSource;
+    // whether the hashes of the terms may be cached with the global ordinals of the field
+    private final boolean useOrdinalHashes;
 
     // Expensive to initialize, so we only initialize it when we have an actual value source
     @Nullable
@@ -67,7 +71,9 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
         super(name, context, parent, pipelineAggregators, metaData);
         this.valuesSource = valuesSource;
         this.precision = precision;
-        this.counts = valuesSource == null ? null : new HyperLogLogPlusPlus(precision, context.bigArrays(), 1);
+        this.counts = valuesSource == null ? null : new HyperLogLogPlusPlus(precision, bigArrays(), 1);
+        this.useOrdinalHashes = valuesSource instanceof ValuesSource.Bytes.WithOrdinals
+            && context.mapperService().getIndexSettings().getValue(IndexFieldDataService.INDEX_FIELDDATA_ORDINAL_HASHES_SETTING);
     }
 
     @Override
@@ -94,11 +100,15 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
                 return new EmptyCollector();
             }
 
+            final LongValues ordinalHashes = useOrdinalHashes ? source.ordinalHashes(ctx) : null;
             final long ordinalsMemoryUsage = OrdinalsCollector.memoryOverhead(maxOrd);
             final long countsMemoryUsage = HyperLogLogPlusPlus.memoryUsage(precision);
             // only use ordinals if they don't increase memory usage by more than 25%
             if (ordinalsMemoryUsage < countsMemoryUsage / 4) {
-                return new OrdinalsCollector(counts, ordinalValues, context.bigArrays());
+                return new OrdinalsCollector(counts, ordinalValues, ordinalHashes, bigArrays());
+            }
+            if (ordinalHashes != null) {
+                return new OrdinalHashesCollector(counts, ordinalValues, ordinalHashes);
             }
         }
 
@@ -213,6 +223,42 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
 
     }
 
+    /**
+     * Collects the hashes that were computed with the global ordinals of the field, see
+     * {@link IndexFieldDataService#INDEX_FIELDDATA_ORDINAL_HASHES_SETTING}.
+     */
+    private static class OrdinalHashesCollector extends Collector {
+
+        private final HyperLogLogPlusPlus counts;
+        private final SortedSetDocValues values;
+        private final LongValues ordinalHashes;
+
+        OrdinalHashesCollector(HyperLogLogPlusPlus counts, SortedSetDocValues values, LongValues ordinalHashes) {
+            this.counts = counts;
+            this.values = values;
+            this.ordinalHashes = ordinalHashes;
+        }
+
+        @Override
+        public void collect(int doc, long bucketOrd) throws IOException {
+            if (values.advanceExact(doc)) {
+                for (long ord = values.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = values.nextOrd()) {
+                    counts.collect(bucketOrd, ordinalHashes.get(ord));
+                }
+            }
+        }
+
+        @Override
+        public void postCollect() {
+            // no-op
+        }
+
+        @Override
+        public void close() {
+            // no-op
+        }
+    }
+
     private static class OrdinalsCollector extends Collector {
 
         private static final long SHALLOW_FIXEDBITSET_SIZE = RamUsageEstimator.shallowSizeOfInstance(FixedBitSet.class);
@@ -226,11 +272,13 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
 
         private final BigArrays bigArrays;
         private final SortedSetDocValues values;
+        @Nullable
+        private final LongValues ordinalHashes;
         private final int maxOrd;
         private final HyperLogLogPlusPlus counts;
         private ObjectArray<FixedBitSet> visitedOrds;
 
-        OrdinalsCollector(HyperLogLogPlusPlus counts, SortedSetDocValues values,
+        OrdinalsCollector(HyperLogLogPlusPlus counts, SortedSetDocValues values, @Nullable LongValues ordinalHashes,
                 BigArrays bigArrays) {
             if (values.getValueCount() > Integer.MAX_VALUE) {
                 throw new IllegalArgumentException();
@@ -239,6 +287,7 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
             this.bigArrays = bigArrays;
             this.counts = counts;
             this.values = values;
+            this.ordinalHashes = ordinalHashes;
             visitedOrds = bigArrays.newObjectArray(1);
         }
 
@@ -259,6 +308,19 @@ public class CardinalityAggregator extends NumericMetricsAggregator.SingleValue
 
         @Override
         public void postCollect() throws IOException {
+            if (ordinalHashes != null) {
+                // the hashes were computed when the global ordinals were built
+                for (long bucket = visitedOrds.size() - 1; bucket >= 0; --bucket) {
+                    final FixedBitSet bits = visitedOrds.get(bucket);
+                    if (bits != null) {
+                        for (int ord = bits.nextSetBit(0); ord < DocIdSetIterator.NO_MORE_DOCS; ord = ord + 1 < maxOrd ? bits.nextSetBit(ord + 1) : DocIdSetIterator.NO_MORE_DOCS) {
+                            counts.collect(bucket, ordinalHashes.get(ord));
+                        }
+                    }
+                }
+                return;
+            }
+
             final FixedBitSet allVisitedOrds = new FixedBitSet(maxOrd);
             for (long bucket = visitedOrds.size() - 1; bucket >= 0; --bucket) {
                 final FixedBitSet bits = visitedOrds.get(bucket);
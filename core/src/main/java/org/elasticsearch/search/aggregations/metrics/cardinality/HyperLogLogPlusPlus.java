@@ -19,7 +19,6 @@
 
 package org.elasticsearch.search.aggregations.metrics.cardinality;
 
-import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LongBitSet;
 import org.apache.lucene.util.packed.PackedInts;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -28,7 +27,6 @@ import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.ByteArray;
-import org.elasticsearch.common.util.ByteUtils;
 import org.elasticsearch.common.util.IntArray;
 
 import java.io.IOException;
@@ -173,7 +171,7 @@ public final class HyperLogLogPlusPlus implements Releasable {
         m = 1 << p;
         this.bigArrays = bigArrays;
         algorithm = new OpenBitSet();
-        runLens = bigArrays.newByteArray(initialBucketCount << p);
+        runLens = bigArrays.newOffHeapByteArray(initialBucketCount << p, true);
         hashSet = new Hashset(initialBucketCount);
         final double alpha;
         switch (p) {
@@ -469,7 +467,6 @@ public final class HyperLogLogPlusPlus implements Releasable {
         private final int threshold;
         private final int mask;
         private IntArray sizes;
-        private final BytesRef readSpare;
         private final ByteBuffer writeSpare;
 
         Hashset(long initialBucketCount) {
@@ -477,7 +474,6 @@ public final class HyperLogLogPlusPlus implements Releasable {
             threshold = (int) (capacity * MAX_LOAD_FACTOR);
             mask = capacity - 1;
             sizes = bigArrays.newIntArray(initialBucketCount);
-            readSpare = new BytesRef();
             writeSpare = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
         }
 
@@ -486,8 +482,10 @@ public final class HyperLogLogPlusPlus implements Releasable {
         }
 
         private int get(long bucket, int index) {
-            runLens.get(index(bucket, index), 4, readSpare);
-            return ByteUtils.readIntLE(readSpare.bytes, readSpare.offset);
+            // little endian, read byte by byte since reading a slice of off-heap registers would copy it
+            final long start = index(bucket, index);
+            return (runLens.get(start) & 0xFF) | (runLens.get(start + 1) & 0xFF) << 8
+                | (runLens.get(start + 2) & 0xFF) << 16 | (runLens.get(start + 3) & 0xFF) << 24;
         }
 
         private void set(long bucket, int index, int value) {
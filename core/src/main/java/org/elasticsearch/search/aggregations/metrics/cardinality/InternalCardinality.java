@@ -65,6 +65,15 @@ public final class InternalCardinality extends InternalNumericMetricsAggregation
         }
     }
 
+    @Override
+    public long estimateSize() {
+        if (counts == null) {
+            return super.estimateSize();
+        }
+        // the registers of the sketch are allocated upfront, even while it still counts linearly
+        return super.estimateSize() + counts.maxBucket() * HyperLogLogPlusPlus.memoryUsage(counts.precision());
+    }
+
     @Override
     public String getWriteableName() {
         return CardinalityAggregationBuilder.NAME;
@@ -59,7 +59,7 @@ public final class GeoBoundsAggregator extends MetricsAggregator {
         this.valuesSource = valuesSource;
         this.wrapLongitude = wrapLongitude;
         if (valuesSource != null) {
-            final BigArrays bigArrays = context.bigArrays();
+            final BigArrays bigArrays = bigArrays();
             tops = bigArrays.newDoubleArray(1, false);
             tops.fill(0, tops.size(), Double.NEGATIVE_INFINITY);
             bottoms = bigArrays.newDoubleArray(1, false);
@@ -81,7 +81,7 @@ public final class GeoBoundsAggregator extends MetricsAggregator {
         if (valuesSource == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
-        final BigArrays bigArrays = context.bigArrays();
+        final BigArrays bigArrays = bigArrays();
         final MultiGeoPointValues values = valuesSource.geoPointValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
             @Override
@@ -52,7 +52,7 @@ final class GeoCentroidAggregator extends MetricsAggregator {
         super(name, context, parent, pipelineAggregators, metaData);
         this.valuesSource = valuesSource;
         if (valuesSource != null) {
-            final BigArrays bigArrays = context.bigArrays();
+            final BigArrays bigArrays = bigArrays();
             centroids = bigArrays.newLongArray(1, true);
             counts = bigArrays.newLongArray(1, true);
         }
@@ -63,7 +63,7 @@ final class GeoCentroidAggregator extends MetricsAggregator {
         if (valuesSource == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
-        final BigArrays bigArrays = context.bigArrays();
+        final BigArrays bigArrays = bigArrays();
         final MultiGeoPointValues values = valuesSource.geoPointValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
             @Override
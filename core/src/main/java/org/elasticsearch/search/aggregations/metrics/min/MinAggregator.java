@@ -52,7 +52,7 @@ public class MinAggregator extends NumericMetricsAggregator.SingleValue {
         super(name, context, parent, pipelineAggregators, metaData);
         this.valuesSource = valuesSource;
         if (valuesSource != null) {
-            mins = context.bigArrays().newDoubleArray(1, false);
+            mins = bigArrays().newDoubleArray(1, false);
             mins.fill(0, mins.size(), Double.POSITIVE_INFINITY);
         }
         this.format = formatter;
@@ -69,7 +69,7 @@ public class MinAggregator extends NumericMetricsAggregator.SingleValue {
         if (valuesSource == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
-        final BigArrays bigArrays = context.bigArrays();
+        final BigArrays bigArrays = bigArrays();
         final SortedNumericDoubleValues allValues = valuesSource.doubleValues(ctx);
         final NumericDoubleValues values = MultiValueMode.MIN.select(allValues, Double.POSITIVE_INFINITY);
         return new LeafBucketCollectorBase(sub, allValues) {
@@ -89,6 +89,22 @@ public class MinAggregator extends NumericMetricsAggregator.SingleValue {
                 }
             }
 
+            @Override
+            public void collect(int[] docs, int count, long bucket) throws IOException {
+                if (bucket >= mins.size()) {
+                    long from = mins.size();
+                    mins = bigArrays.grow(mins, bucket + 1);
+                    mins.fill(from, mins.size(), Double.POSITIVE_INFINITY);
+                }
+                double min = mins.get(bucket);
+                for (int i = 0; i < count; i++) {
+                    if (values.advanceExact(docs[i])) {
+                        min = Math.min(min, values.doubleValue());
+                    }
+                }
+                mins.set(bucket, min);
+            }
+
         };
     }
 
@@ -59,7 +59,7 @@ public abstract class AbstractHDRPercentilesAggregator extends NumericMetricsAgg
         this.valuesSource = valuesSource;
         this.keyed = keyed;
         this.format = formatter;
-        this.states = context.bigArrays().newObjectArray(1);
+        this.states = bigArrays().newObjectArray(1);
         this.keys = keys;
         this.numberOfSignificantValueDigits = numberOfSignificantValueDigits;
     }
@@ -75,7 +75,7 @@ public abstract class AbstractHDRPercentilesAggregator extends NumericMetricsAgg
         if (valuesSource == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
-        final BigArrays bigArrays = context.bigArrays();
+        final BigArrays bigArrays = bigArrays();
         final SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
             @Override
@@ -99,6 +99,11 @@ abstract class AbstractInternalHDRPercentiles extends InternalNumericMetricsAggr
         return state.getEstimatedFootprintInBytes();
     }
 
+    @Override
+    public long estimateSize() {
+        return super.estimateSize() + getEstimatedMemoryFootprint();
+    }
+
     @Override
     public AbstractInternalHDRPercentiles doReduce(List<InternalAggregation> aggregations, ReduceContext reduceContext) {
         DoubleHistogram merged = null;
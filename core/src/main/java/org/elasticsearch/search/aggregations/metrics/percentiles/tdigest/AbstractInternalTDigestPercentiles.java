@@ -83,6 +83,11 @@ abstract class AbstractInternalTDigestPercentiles extends InternalNumericMetrics
         return state.byteSize();
     }
 
+    @Override
+    public long estimateSize() {
+        return super.estimateSize() + getEstimatedMemoryFootprint();
+    }
+
     @Override
     public AbstractInternalTDigestPercentiles doReduce(List<InternalAggregation> aggregations, ReduceContext reduceContext) {
         TDigestState merged = null;
@@ -58,7 +58,7 @@ public abstract class AbstractTDigestPercentilesAggregator extends NumericMetric
         this.valuesSource = valuesSource;
         this.keyed = keyed;
         this.formatter = formatter;
-        this.states = context.bigArrays().newObjectArray(1);
+        this.states = bigArrays().newObjectArray(1);
         this.keys = keys;
         this.compression = compression;
     }
@@ -74,7 +74,7 @@ public abstract class AbstractTDigestPercentilesAggregator extends NumericMetric
         if (valuesSource == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
-        final BigArrays bigArrays = context.bigArrays();
+        final BigArrays bigArrays = bigArrays();
         final SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
             @Override
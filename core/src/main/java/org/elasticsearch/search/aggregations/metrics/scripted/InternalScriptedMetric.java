@@ -19,6 +19,8 @@
 
 package org.elasticsearch.search.aggregations.metrics.scripted;
 
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.xcontent.XContentBuilder;
@@ -29,6 +31,7 @@ import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -71,6 +74,52 @@ public class InternalScriptedMetric extends InternalAggregation implements Scrip
         return ScriptedMetricAggregationBuilder.NAME;
     }
 
+    // rough heap usage of a value held by the script results, not counting the values it holds itself
+    private static final long VALUE_BYTES_ESTIMATE = 32;
+
+    @Override
+    public long estimateSize() {
+        return super.estimateSize() + estimateSize(aggregation);
+    }
+
+    /**
+     * Estimates the heap used by a value that the scripts returned, walking the maps, collections and arrays that
+     * {@link StreamOutput#writeGenericValue(Object)} supports.
+     */
+    private static long estimateSize(Object value) {
+        long size = VALUE_BYTES_ESTIMATE;
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+            }
+        } else if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                size += estimateSize(element);
+            }
+        } else if (value instanceof Object[]) {
+            for (Object element : (Object[]) value) {
+                size += estimateSize(element);
+            }
+        } else if (value instanceof byte[]) {
+            size += ((byte[]) value).length;
+        } else if (value instanceof int[]) {
+            size += ((int[]) value).length * Integer.BYTES;
+        } else if (value instanceof long[]) {
+            size += ((long[]) value).length * Long.BYTES;
+        } else if (value instanceof float[]) {
+            size += ((float[]) value).length * Float.BYTES;
+        } else if (value instanceof double[]) {
+            size += ((double[]) value).length * Double.BYTES;
+        } else if (value instanceof CharSequence) {
+            size += ((CharSequence) value).length() * Character.BYTES;
+        } else if (value instanceof BytesRef) {
+            size += ((BytesRef) value).length;
+        } else if (value instanceof BytesReference) {
+            size += ((BytesReference) value).length();
+        }
+        return size;
+    }
+
     @Override
     public Object aggregation() {
         if (aggregation.size() != 1) {
@@ -56,7 +56,7 @@ public class StatsAggregator extends NumericMetricsAggregator.MultiValue {
         super(name, context, parent, pipelineAggregators, metaData);
         this.valuesSource = valuesSource;
         if (valuesSource != null) {
-            final BigArrays bigArrays = context.bigArrays();
+            final BigArrays bigArrays = bigArrays();
             counts = bigArrays.newLongArray(1, true);
             sums = bigArrays.newDoubleArray(1, true);
             mins = bigArrays.newDoubleArray(1, false);
@@ -78,7 +78,7 @@ public class StatsAggregator extends NumericMetricsAggregator.MultiValue {
         if (valuesSource == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
-        final BigArrays bigArrays = context.bigArrays();
+        final BigArrays bigArrays = bigArrays();
         final SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
             @Override
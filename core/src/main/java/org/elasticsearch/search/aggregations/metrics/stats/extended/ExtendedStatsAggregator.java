@@ -62,7 +62,7 @@ public class ExtendedStatsAggregator extends NumericMetricsAggregator.MultiValue
         this.format = formatter;
         this.sigma = sigma;
         if (valuesSource != null) {
-            final BigArrays bigArrays = context.bigArrays();
+            final BigArrays bigArrays = bigArrays();
             counts = bigArrays.newLongArray(1, true);
             sums = bigArrays.newDoubleArray(1, true);
             mins = bigArrays.newDoubleArray(1, false);
@@ -84,7 +84,7 @@ public class ExtendedStatsAggregator extends NumericMetricsAggregator.MultiValue
         if (valuesSource == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
-        final BigArrays bigArrays = context.bigArrays();
+        final BigArrays bigArrays = bigArrays();
         final SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
 
@@ -50,7 +50,7 @@ public class SumAggregator extends NumericMetricsAggregator.SingleValue {
         this.valuesSource = valuesSource;
         this.format = formatter;
         if (valuesSource != null) {
-            sums = context.bigArrays().newDoubleArray(1, true);
+            sums = bigArrays().newDoubleArray(1, true);
         }
     }
 
@@ -65,7 +65,7 @@ public class SumAggregator extends NumericMetricsAggregator.SingleValue {
         if (valuesSource == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
-        final BigArrays bigArrays = context.bigArrays();
+        final BigArrays bigArrays = bigArrays();
         final SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
             @Override
@@ -80,6 +80,23 @@ public class SumAggregator extends NumericMetricsAggregator.SingleValue {
                     sums.increment(bucket, sum);
                 }
             }
+
+            @Override
+            public void collect(int[] docs, int count, long bucket) throws IOException {
+                sums = bigArrays.grow(sums, bucket + 1);
+                double sum = sums.get(bucket);
+                for (int i = 0; i < count; i++) {
+                    if (values.advanceExact(docs[i])) {
+                        final int valuesCount = values.docValueCount();
+                        double docSum = 0;
+                        for (int j = 0; j < valuesCount; j++) {
+                            docSum += values.nextValue();
+                        }
+                        sum += docSum;
+                    }
+                }
+                sums.set(bucket, sum);
+            }
         };
     }
 
@@ -23,6 +23,7 @@ import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopFieldDocs;
+import org.elasticsearch.common.document.DocumentField;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.lucene.Lucene;
@@ -80,6 +81,35 @@ public class InternalTopHits extends InternalAggregation implements TopHits {
         return TopHitsAggregationBuilder.NAME;
     }
 
+    // rough heap usage of a hit and of a score doc, not counting the source and fields of the hit
+    private static final long HIT_BYTES_ESTIMATE = 256;
+    private static final long SCORE_DOC_BYTES_ESTIMATE = 32;
+    private static final long FIELD_VALUE_BYTES_ESTIMATE = 32;
+
+    @Override
+    public long estimateSize() {
+        return super.estimateSize() + topDocs.scoreDocs.length * SCORE_DOC_BYTES_ESTIMATE + estimateSize(searchHits);
+    }
+
+    private static long estimateSize(SearchHits hits) {
+        long size = 0;
+        for (SearchHit hit : hits.getHits()) {
+            size += HIT_BYTES_ESTIMATE;
+            if (hit.getSourceRef() != null) {
+                size += hit.getSourceRef().length();
+            }
+            for (DocumentField field : hit.getFields().values()) {
+                size += field.getValues().size() * FIELD_VALUE_BYTES_ESTIMATE;
+            }
+            if (hit.getInnerHits() != null) {
+                for (SearchHits innerHits : hit.getInnerHits().values()) {
+                    size += estimateSize(innerHits);
+                }
+            }
+        }
+        return size;
+    }
+
     @Override
     public SearchHits getHits() {
         return searchHits;
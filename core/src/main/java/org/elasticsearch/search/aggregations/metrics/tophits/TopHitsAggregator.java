@@ -65,7 +65,7 @@ public class TopHitsAggregator extends MetricsAggregator {
             Aggregator parent, List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
         super(name, context, parent, pipelineAggregators, metaData);
         this.fetchPhase = fetchPhase;
-        topDocsCollectors = new LongObjectPagedHashMap<>(1, context.bigArrays());
+        topDocsCollectors = new LongObjectPagedHashMap<>(1, bigArrays());
         this.subSearchContext = subSearchContext;
     }
 
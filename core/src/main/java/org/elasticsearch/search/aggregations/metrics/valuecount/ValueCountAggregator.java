@@ -56,7 +56,7 @@ public class ValueCountAggregator extends NumericMetricsAggregator.SingleValue {
         super(name, aggregationContext, parent, pipelineAggregators, metaData);
         this.valuesSource = valuesSource;
         if (valuesSource != null) {
-            counts = context.bigArrays().newLongArray(1, true);
+            counts = bigArrays().newLongArray(1, true);
         }
     }
 
@@ -66,7 +66,7 @@ public class ValueCountAggregator extends NumericMetricsAggregator.SingleValue {
         if (valuesSource == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
-        final BigArrays bigArrays = context.bigArrays();
+        final BigArrays bigArrays = bigArrays();
         final SortedBinaryDocValues values = valuesSource.bytesValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
 
@@ -78,6 +78,18 @@ public class ValueCountAggregator extends NumericMetricsAggregator.SingleValue {
                 }
             }
 
+            @Override
+            public void collect(int[] docs, int count, long bucket) throws IOException {
+                counts = bigArrays.grow(counts, bucket + 1);
+                long valueCount = 0;
+                for (int i = 0; i < count; i++) {
+                    if (values.advanceExact(docs[i])) {
+                        valueCount += values.docValueCount();
+                    }
+                }
+                counts.increment(bucket, valueCount);
+            }
+
         };
     }
 
@@ -0,0 +1,142 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.builder;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ObjectParser;
+import org.elasticsearch.common.xcontent.ToXContentObject;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * A builder that makes a search request run against a point in time that was opened with the open point in time api, instead of
+ * against the indices of the request.
+ */
+public class PointInTimeBuilder implements Writeable, ToXContentObject {
+    public static final ParseField ID_FIELD = new ParseField("id");
+    public static final ParseField KEEP_ALIVE_FIELD = new ParseField("keep_alive");
+    private static final ObjectParser<PointInTimeBuilder, Void> PARSER = new ObjectParser<>("pit", PointInTimeBuilder::new);
+
+    static {
+        PARSER.declareString(PointInTimeBuilder::setId, ID_FIELD);
+        PARSER.declareField((parser, builder, context) ->
+                builder.setKeepAlive(TimeValue.parseTimeValue(parser.text(), KEEP_ALIVE_FIELD.getPreferredName())),
+            KEEP_ALIVE_FIELD, ObjectParser.ValueType.STRING);
+    }
+
+    private String id;
+    private TimeValue keepAlive;
+
+    private PointInTimeBuilder() {}
+
+    /**
+     * Public constructor
+     * @param id the id of the point in time as returned by the open point in time api
+     */
+    public PointInTimeBuilder(String id) {
+        Objects.requireNonNull(id, "id must be non-null");
+        this.id = id;
+    }
+
+    public PointInTimeBuilder(StreamInput in) throws IOException {
+        id = in.readString();
+        keepAlive = in.readOptionalWriteable(TimeValue::new);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeString(id);
+        out.writeOptionalWriteable(keepAlive);
+    }
+
+    public static PointInTimeBuilder fromXContent(XContentParser parser) throws IOException {
+        PointInTimeBuilder builder = PARSER.parse(parser, new PointInTimeBuilder(), null);
+        if (builder.id == null) {
+            throw new IllegalArgumentException("[" + ID_FIELD.getPreferredName() + "] is required for a point in time");
+        }
+        return builder;
+    }
+
+    // for object parser only
+    private void setId(String id) {
+        if (Strings.isEmpty(id)) {
+            throw new IllegalArgumentException("point in time id is null or empty");
+        }
+        this.id = id;
+    }
+
+    /**
+     * The id of the point in time.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Extends the time to live of the point in time on all of its shards, <code>null</code> leaves it unchanged.
+     */
+    public PointInTimeBuilder setKeepAlive(@Nullable TimeValue keepAlive) {
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    @Nullable
+    public TimeValue getKeepAlive() {
+        return keepAlive;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject();
+        builder.field(ID_FIELD.getPreferredName(), id);
+        if (keepAlive != null) {
+            builder.field(KEEP_ALIVE_FIELD.getPreferredName(), keepAlive.getStringRep());
+        }
+        builder.endObject();
+        return builder;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PointInTimeBuilder that = (PointInTimeBuilder) o;
+        return Objects.equals(id, that.id) && Objects.equals(keepAlive, that.keepAlive);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, keepAlive);
+    }
+
+    @Override
+    public String toString() {
+        return Strings.toString(this);
+    }
+}
@@ -56,6 +56,7 @@ import org.elasticsearch.tasks.TaskCancelledException;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -138,22 +139,38 @@ public class FetchPhase implements SearchPhase {
         try {
             SearchHit[] hits = new SearchHit[context.docIdsToLoadSize()];
             FetchSubPhase.HitContext hitContext = new FetchSubPhase.HitContext();
-            for (int index = 0; index < context.docIdsToLoadSize(); index++) {
+            // hits are loaded in doc id order so that the stored fields of each segment are read sequentially, and put back
+            // in their original order. Each entry holds the doc id in its upper and the index of the hit in its lower bits.
+            final long[] docsInOrder = new long[context.docIdsToLoadSize()];
+            for (int index = 0; index < docsInOrder.length; index++) {
+                docsInOrder[index] = ((long) context.docIdsToLoad()[context.docIdsToLoadFrom() + index] << 32) | index;
+            }
+            Arrays.sort(docsInOrder);
+            final List<LeafReaderContext> leaves = context.searcher().getIndexReader().leaves();
+            LeafReaderContext subReaderContext = null;
+            LeafStoredFieldsLoader storedFieldsLoader = null;
+            for (int i = 0; i < docsInOrder.length; i++) {
                 if (context.isCancelled()) {
                     throw new TaskCancelledException("cancelled");
                 }
-                int docId = context.docIdsToLoad()[context.docIdsToLoadFrom() + index];
-                int readerIndex = ReaderUtil.subIndex(docId, context.searcher().getIndexReader().leaves());
-                LeafReaderContext subReaderContext = context.searcher().getIndexReader().leaves().get(readerIndex);
+                final int docId = (int) (docsInOrder[i] >>> 32);
+                final int index = (int) docsInOrder[i];
+                if (subReaderContext == null || docId >= subReaderContext.docBase + subReaderContext.reader().maxDoc()) {
+                    subReaderContext = leaves.get(ReaderUtil.subIndex(docId, leaves));
+                    // a sequential loader only pays off if more than one document of the segment is loaded
+                    final boolean sequential = i + 1 < docsInOrder.length
+                        && (int) (docsInOrder[i + 1] >>> 32) < subReaderContext.docBase + subReaderContext.reader().maxDoc();
+                    storedFieldsLoader = LeafStoredFieldsLoader.create(subReaderContext.reader(), sequential);
+                }
                 int subDocId = docId - subReaderContext.docBase;
 
                 final SearchHit searchHit;
                 int rootDocId = findRootDocumentIfNested(context, subReaderContext, subDocId);
                 if (rootDocId != -1) {
                     searchHit = createNestedSearchHit(context, docId, subDocId, rootDocId, fieldNames, fieldNamePatterns,
-                            subReaderContext);
+                            subReaderContext, storedFieldsLoader);
                 } else {
-                    searchHit = createSearchHit(context, fieldsVisitor, docId, subDocId, subReaderContext);
+                    searchHit = createSearchHit(context, fieldsVisitor, docId, subDocId, subReaderContext, storedFieldsLoader);
                 }
 
                 hits[index] = searchHit;
@@ -190,11 +207,11 @@ public class FetchPhase implements SearchPhase {
     }
 
     private SearchHit createSearchHit(SearchContext context, FieldsVisitor fieldsVisitor, int docId, int subDocId,
-                                      LeafReaderContext subReaderContext) {
+                                      LeafReaderContext subReaderContext, LeafStoredFieldsLoader storedFieldsLoader) {
         if (fieldsVisitor == null) {
             return new SearchHit(docId);
         }
-        loadStoredFields(context, subReaderContext, fieldsVisitor, subDocId);
+        loadStoredFields(context, storedFieldsLoader, fieldsVisitor, subDocId);
         fieldsVisitor.postProcess(context.mapperService());
 
         Map<String, DocumentField> searchFields = null;
@@ -224,7 +241,8 @@ public class FetchPhase implements SearchPhase {
 
     private SearchHit createNestedSearchHit(SearchContext context, int nestedTopDocId, int nestedSubDocId,
                                             int rootSubDocId, Set<String> fieldNames,
-                                            List<String> fieldNamePatterns, LeafReaderContext subReaderContext) throws IOException {
+                                            List<String> fieldNamePatterns, LeafReaderContext subReaderContext,
+                                            LeafStoredFieldsLoader storedFieldsLoader) throws IOException {
         // Also if highlighting is requested on nested documents we need to fetch the _source from the root document,
         // otherwise highlighting will attempt to fetch the _source from the nested doc, which will fail,
         // because the entire _source is only stored with the root document.
@@ -233,7 +251,7 @@ public class FetchPhase implements SearchPhase {
         final boolean needSource = context.sourceRequested() || context.highlight() != null;
         if (needSource || (context instanceof InnerHitsContext.InnerHitSubContext == false)) {
             FieldsVisitor rootFieldsVisitor = new FieldsVisitor(needSource);
-            loadStoredFields(context, subReaderContext, rootFieldsVisitor, rootSubDocId);
+            loadStoredFields(context, storedFieldsLoader, rootFieldsVisitor, rootSubDocId);
             rootFieldsVisitor.postProcess(context.mapperService());
             uid = rootFieldsVisitor.uid();
             source = rootFieldsVisitor.source();
@@ -245,7 +263,7 @@ public class FetchPhase implements SearchPhase {
 
 
         Map<String, DocumentField> searchFields =
-                getSearchFields(context, nestedSubDocId, fieldNames, fieldNamePatterns, subReaderContext);
+                getSearchFields(context, nestedSubDocId, fieldNames, fieldNamePatterns, storedFieldsLoader);
         DocumentMapper documentMapper = context.mapperService().documentMapper(uid.type());
         SourceLookup sourceLookup = context.lookup().source();
         sourceLookup.setSegmentAndDocument(subReaderContext, nestedSubDocId);
@@ -307,13 +325,13 @@ public class FetchPhase implements SearchPhase {
     }
 
     private Map<String, DocumentField> getSearchFields(SearchContext context, int nestedSubDocId, Set<String> fieldNames,
-                                                       List<String> fieldNamePatterns, LeafReaderContext subReaderContext) {
+                                                       List<String> fieldNamePatterns, LeafStoredFieldsLoader storedFieldsLoader) {
         Map<String, DocumentField> searchFields = null;
         if (context.hasStoredFields() && !context.storedFieldsContext().fieldNames().isEmpty()) {
             FieldsVisitor nestedFieldsVisitor = new CustomFieldsVisitor(fieldNames == null ? Collections.emptySet() : fieldNames,
                     fieldNamePatterns == null ? Collections.emptyList() : fieldNamePatterns, false);
             if (nestedFieldsVisitor != null) {
-                loadStoredFields(context, subReaderContext, nestedFieldsVisitor, nestedSubDocId);
+                loadStoredFields(context, storedFieldsLoader, nestedFieldsVisitor, nestedSubDocId);
                 nestedFieldsVisitor.postProcess(context.mapperService());
                 if (!nestedFieldsVisitor.fields().isEmpty()) {
                     searchFields = new HashMap<>(nestedFieldsVisitor.fields().size());
@@ -380,10 +398,11 @@ public class FetchPhase implements SearchPhase {
         return nestedIdentity;
     }
 
-    private void loadStoredFields(SearchContext searchContext, LeafReaderContext readerContext, FieldsVisitor fieldVisitor, int docId) {
+    private void loadStoredFields(SearchContext searchContext, LeafStoredFieldsLoader storedFieldsLoader, FieldsVisitor fieldVisitor,
+                                  int docId) {
         fieldVisitor.reset();
         try {
-            readerContext.reader().document(docId, fieldVisitor);
+            storedFieldsLoader.document(docId, fieldVisitor);
         } catch (IOException e) {
             throw new FetchPhaseExecutionException(searchContext, "Failed to fetch doc id [" + docId + "]", e);
         }
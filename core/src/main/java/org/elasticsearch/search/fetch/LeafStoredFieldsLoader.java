@@ -0,0 +1,76 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.fetch;
+
+import org.apache.lucene.codecs.StoredFieldsReader;
+import org.apache.lucene.index.CodecReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.elasticsearch.common.lucene.index.ElasticsearchLeafReader;
+
+import java.io.IOException;
+
+/**
+ * Loads the stored fields of the documents of a single segment. When several documents of the same segment are loaded, the
+ * documents should be loaded in doc id order with a sequential loader: it reuses the state of a stored fields reader that is
+ * optimized for sequential access, so that a compressed block of documents is decompressed once rather than once per document.
+ * Sequential loaders must only be used by the thread that created them.
+ */
+public final class LeafStoredFieldsLoader {
+
+    private final LeafReader reader;
+    private final StoredFieldsReader sequentialReader;
+
+    private LeafStoredFieldsLoader(LeafReader reader, StoredFieldsReader sequentialReader) {
+        this.reader = reader;
+        this.sequentialReader = sequentialReader;
+    }
+
+    /**
+     * Creates a loader for the given segment.
+     *
+     * @param sequential whether several documents of the segment will be loaded in doc id order
+     */
+    public static LeafStoredFieldsLoader create(LeafReader reader, boolean sequential) {
+        StoredFieldsReader sequentialReader = null;
+        if (sequential) {
+            // we can only bypass readers that don't filter stored fields, which is why we don't unwrap any other filter reader
+            LeafReader unwrapped = reader;
+            while (unwrapped instanceof ElasticsearchLeafReader) {
+                unwrapped = ((ElasticsearchLeafReader) unwrapped).getDelegate();
+            }
+            if (unwrapped instanceof CodecReader) {
+                sequentialReader = ((CodecReader) unwrapped).getFieldsReader().getMergeInstance();
+            }
+        }
+        return new LeafStoredFieldsLoader(reader, sequentialReader);
+    }
+
+    /**
+     * Visits the stored fields of the given document, the doc id is relative to the segment.
+     */
+    public void document(int docId, StoredFieldVisitor visitor) throws IOException {
+        if (sequentialReader == null) {
+            reader.document(docId, visitor);
+        } else {
+            sequentialReader.visitDocument(docId, visitor);
+        }
+    }
+}
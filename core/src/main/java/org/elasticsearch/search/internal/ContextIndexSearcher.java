@@ -26,6 +26,7 @@ import org.apache.lucene.index.TermContext;
 import org.apache.lucene.search.BulkScorer;
 import org.apache.lucene.search.CollectionStatistics;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
@@ -34,6 +35,8 @@ import org.apache.lucene.search.QueryCachingPolicy;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.TermStatistics;
 import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.ThreadInterruptedException;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.search.dfs.AggregatedDfs;
@@ -44,8 +47,14 @@ import org.elasticsearch.search.profile.query.QueryProfiler;
 import org.elasticsearch.search.profile.query.QueryTimingType;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Context-aware extension of {@link IndexSearcher}.
@@ -66,6 +75,14 @@ public class ContextIndexSearcher extends IndexSearcher implements Releasable {
 
     private Runnable checkCancelled;
 
+    /** The executor used to collect slices of leaves concurrently, or <code>null</code> if leaves are collected sequentially */
+    private Executor executor;
+
+    private int maxSlices = 1;
+
+    /** Leaves are not split into more slices than needed to give each slice at least this number of documents */
+    private int minDocsPerSlice = 1;
+
     public ContextIndexSearcher(Engine.Searcher searcher,
             QueryCache queryCache, QueryCachingPolicy queryCachingPolicy) {
         super(searcher.reader());
@@ -92,6 +109,33 @@ public class ContextIndexSearcher extends IndexSearcher implements Releasable {
         this.checkCancelled = checkCancelled;
     }
 
+    /**
+     * Enables concurrent collection of the leaves of this searcher through {@link #search(Query, CollectorManager)}.
+     * @param executor the executor that collects the slices, or <code>null</code> to collect leaves sequentially
+     * @param maxSlices the maximum number of slices the leaves are split into
+     * @param minDocsPerSlice the minimum number of documents of a slice, leaves are not split into more slices than needed
+     *                        to give each slice at least this number of documents
+     */
+    public void setConcurrentSearchExecutor(@Nullable Executor executor, int maxSlices, int minDocsPerSlice) {
+        if (maxSlices < 1) {
+            throw new IllegalArgumentException("maxSlices must be greater than 0, got [" + maxSlices + "]");
+        }
+        if (minDocsPerSlice < 1) {
+            throw new IllegalArgumentException("minDocsPerSlice must be greater than 0, got [" + minDocsPerSlice + "]");
+        }
+        this.executor = executor;
+        this.maxSlices = maxSlices;
+        this.minDocsPerSlice = minDocsPerSlice;
+    }
+
+    /**
+     * Returns <code>true</code> if {@link #search(Query, CollectorManager)} collects slices of leaves concurrently.
+     * Profiled searches are always collected sequentially since the profile breakdowns are not thread-safe.
+     */
+    public boolean isConcurrentSearchEnabled() {
+        return executor != null && maxSlices > 1 && profiler == null;
+    }
+
     public void setAggregatedDfs(AggregatedDfs aggregatedDfs) {
         this.aggregatedDfs = aggregatedDfs;
     }
@@ -186,6 +230,104 @@ public class ContextIndexSearcher extends IndexSearcher implements Releasable {
         super.search(leaves, cancellableWeight, collector);
     }
 
+    /**
+     * Collects the provided <code>query</code> with one collector per slice of leaves. Slices are collected
+     * concurrently on the executor set with {@link #setConcurrentSearchExecutor(Executor, int, int)}, the last slice
+     * being collected by the calling thread. All slices are waited for, even if one of them fails, so that
+     * the collectors can be safely read once this method returns or throws.
+     */
+    @Override
+    public <C extends Collector, T> T search(Query query, CollectorManager<C, T> collectorManager) throws IOException {
+        final List<List<LeafReaderContext>> slices = isConcurrentSearchEnabled() ?
+            computeSlices(leafContexts, maxSlices, minDocsPerSlice) : Collections.singletonList(leafContexts);
+        if (slices.size() <= 1) {
+            final C collector = collectorManager.newCollector();
+            search(query, collector);
+            return collectorManager.reduce(Collections.singletonList(collector));
+        }
+        final List<C> collectors = new ArrayList<>(slices.size());
+        boolean needsScores = false;
+        for (int i = 0; i < slices.size(); i++) {
+            final C collector = collectorManager.newCollector();
+            collectors.add(collector);
+            needsScores |= collector.needsScores();
+        }
+        final Weight weight = createNormalizedWeight(query, needsScores);
+        final List<FutureTask<C>> tasks = new ArrayList<>(slices.size());
+        for (int i = 0; i < slices.size(); i++) {
+            final List<LeafReaderContext> leaves = slices.get(i);
+            final C collector = collectors.get(i);
+            tasks.add(new FutureTask<>(() -> {
+                search(leaves, weight, collector);
+                return collector;
+            }));
+        }
+        for (int i = 0; i < tasks.size() - 1; i++) {
+            try {
+                executor.execute(tasks.get(i));
+            } catch (RejectedExecutionException e) {
+                // the executor is shutting down, collect the slice on the calling thread
+                tasks.get(i).run();
+            }
+        }
+        tasks.get(tasks.size() - 1).run();
+        Throwable failure = null;
+        for (FutureTask<C> task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                } else if (failure != e.getCause()) {
+                    failure.addSuppressed(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ThreadInterruptedException(e);
+            }
+        }
+        if (failure != null) {
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw new RuntimeException(failure);
+        }
+        return collectorManager.reduce(collectors);
+    }
+
+    /**
+     * Splits the provided <code>leaves</code> into at most <code>maxSlices</code> slices of contiguous leaves
+     * with roughly the same number of documents. Slices are contiguous so that the order of the slices
+     * follows the order of the doc ids, which callers rely on to tie-break hits when merging per-slice results.
+     */
+    static List<List<LeafReaderContext>> computeSlices(List<LeafReaderContext> leaves, int maxSlices, int minDocsPerSlice) {
+        long totalDocs = 0;
+        for (LeafReaderContext leaf : leaves) {
+            totalDocs += leaf.reader().maxDoc();
+        }
+        final long docsPerSlice = Math.max(minDocsPerSlice, (totalDocs + maxSlices - 1) / maxSlices);
+        final List<List<LeafReaderContext>> slices = new ArrayList<>();
+        List<LeafReaderContext> current = new ArrayList<>();
+        long currentDocs = 0;
+        for (LeafReaderContext leaf : leaves) {
+            current.add(leaf);
+            currentDocs += leaf.reader().maxDoc();
+            if (currentDocs >= docsPerSlice && slices.size() < maxSlices - 1) {
+                slices.add(current);
+                current = new ArrayList<>();
+                currentDocs = 0;
+            }
+        }
+        if (current.isEmpty() == false) {
+            slices.add(current);
+        }
+        return slices;
+    }
+
     @Override
     public Explanation explain(Query query, int doc) throws IOException {
         if (aggregatedDfs != null) {
@@ -0,0 +1,117 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.internal;
+
+import org.elasticsearch.common.util.concurrent.AbstractRefCounted;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.shard.IndexShard;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A point in time view of a shard: a searcher that is kept open, for as long as it is accessed at least once per keep alive, so
+ * that many search requests can run against the same view of the shard. Unlike a scroll, it holds no search context between
+ * requests, each request creates its own context on top of a reference to the shared searcher which is released when the
+ * context is closed.
+ */
+public final class PointInTimeReader extends AbstractRefCounted {
+
+    /**
+     * The reader id of shard search requests that don't run against a point in time.
+     */
+    public static final long NO_READER_ID = -1L;
+
+    private final long id;
+    private final IndexShard indexShard;
+    private final Engine.Searcher searcher;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private volatile long keepAlive;
+    private volatile long lastAccessTime;
+
+    public PointInTimeReader(long id, IndexShard indexShard, Engine.Searcher searcher, long keepAlive, long nowInMillis) {
+        super("point_in_time");
+        this.id = id;
+        this.indexShard = indexShard;
+        this.searcher = searcher;
+        this.keepAlive = keepAlive;
+        this.lastAccessTime = nowInMillis;
+    }
+
+    public long id() {
+        return id;
+    }
+
+    public IndexShard indexShard() {
+        return indexShard;
+    }
+
+    public long keepAlive() {
+        return keepAlive;
+    }
+
+    public long lastAccessTime() {
+        return lastAccessTime;
+    }
+
+    /**
+     * Records an access to this reader at the given time and optionally replaces its keep alive.
+     */
+    public void accessed(long nowInMillis, long keepAlive) {
+        this.lastAccessTime = nowInMillis;
+        if (keepAlive >= 0) {
+            this.keepAlive = keepAlive;
+        }
+    }
+
+    /**
+     * Returns a new reference to the searcher of this point in time that must be closed once the search is done. Throws an
+     * {@link IllegalStateException} if the point in time has been closed already.
+     */
+    public Engine.Searcher acquireSearcher(String source) {
+        if (tryIncRef() == false) {
+            throw new IllegalStateException("point in time [" + id + "] is already closed");
+        }
+        return new Engine.Searcher(source, searcher.searcher()) {
+            private final AtomicBoolean released = new AtomicBoolean(false);
+
+            @Override
+            public void close() {
+                if (released.compareAndSet(false, true)) {
+                    decRef();
+                }
+            }
+        };
+    }
+
+    /**
+     * Releases the reference that this point in time holds on its searcher. The searcher itself is only closed once all the
+     * searches that use it are done.
+     */
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            decRef();
+        }
+    }
+
+    @Override
+    protected void closeInternal() {
+        searcher.close();
+    }
+}
@@ -73,6 +73,7 @@ public class ShardSearchLocalRequest implements ShardSearchRequest {
     private SearchSourceBuilder source;
     private Boolean requestCache;
     private long nowInMillis;
+    private long pointInTimeReaderId = PointInTimeReader.NO_READER_ID;
 
     private boolean profile;
 
@@ -80,12 +81,13 @@ public class ShardSearchLocalRequest implements ShardSearchRequest {
     }
 
     ShardSearchLocalRequest(SearchRequest searchRequest, ShardId shardId, int numberOfShards,
-                            AliasFilter aliasFilter, float indexBoost, long nowInMillis, String clusterAlias) {
+                            AliasFilter aliasFilter, float indexBoost, long nowInMillis, String clusterAlias, long pointInTimeReaderId) {
         this(shardId, numberOfShards, searchRequest.searchType(),
                 searchRequest.source(), searchRequest.types(), searchRequest.requestCache(), aliasFilter, indexBoost);
         this.scroll = searchRequest.scroll();
         this.nowInMillis = nowInMillis;
         this.clusterAlias = clusterAlias;
+        this.pointInTimeReaderId = pointInTimeReaderId;
     }
 
     public ShardSearchLocalRequest(ShardId shardId, String[] types, long nowInMillis, AliasFilter aliasFilter) {
@@ -169,6 +171,11 @@ public class ShardSearchLocalRequest implements ShardSearchRequest {
         return scroll;
     }
 
+    @Override
+    public long pointInTimeReaderId() {
+        return pointInTimeReaderId;
+    }
+
     @Override
     public void setProfile(boolean profile) {
         this.profile = profile;
@@ -210,6 +217,9 @@ public class ShardSearchLocalRequest implements ShardSearchRequest {
         if (in.getVersion().onOrAfter(Version.V_5_6_0)) {
             clusterAlias = in.readOptionalString();
         }
+        if (in.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            pointInTimeReaderId = in.readLong();
+        }
     }
 
     protected void innerWriteTo(StreamOutput out, boolean asKey) throws IOException {
@@ -232,6 +242,10 @@ public class ShardSearchLocalRequest implements ShardSearchRequest {
         if (out.getVersion().onOrAfter(Version.V_5_6_0)) {
             out.writeOptionalString(clusterAlias);
         }
+        // the reader is part of the cache key already
+        if (!asKey && out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            out.writeLong(pointInTimeReaderId);
+        }
     }
 
     @Override
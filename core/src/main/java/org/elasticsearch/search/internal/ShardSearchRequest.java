@@ -71,6 +71,12 @@ public interface ShardSearchRequest {
 
     Scroll scroll();
 
+    /**
+     * Returns the id of the {@link PointInTimeReader} on the target node that this request runs against, or
+     * {@link PointInTimeReader#NO_READER_ID} if it runs against the current searcher of the shard.
+     */
+    long pointInTimeReaderId();
+
     /**
      * Sets if this shard search needs to be profiled or not
      * @param profile True if the shard should be profiled
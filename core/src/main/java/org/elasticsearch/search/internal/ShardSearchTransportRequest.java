@@ -57,8 +57,15 @@ public class ShardSearchTransportRequest extends TransportRequest implements Sha
 
     public ShardSearchTransportRequest(OriginalIndices originalIndices, SearchRequest searchRequest, ShardId shardId, int numberOfShards,
                                        AliasFilter aliasFilter, float indexBoost, long nowInMillis, String clusterAlias) {
+        this(originalIndices, searchRequest, shardId, numberOfShards, aliasFilter, indexBoost, nowInMillis, clusterAlias,
+            PointInTimeReader.NO_READER_ID);
+    }
+
+    public ShardSearchTransportRequest(OriginalIndices originalIndices, SearchRequest searchRequest, ShardId shardId, int numberOfShards,
+                                       AliasFilter aliasFilter, float indexBoost, long nowInMillis, String clusterAlias,
+                                       long pointInTimeReaderId) {
         this.shardSearchLocalRequest = new ShardSearchLocalRequest(searchRequest, shardId, numberOfShards, aliasFilter, indexBoost,
-            nowInMillis, clusterAlias);
+            nowInMillis, clusterAlias, pointInTimeReaderId);
         this.originalIndices = originalIndices;
     }
 
@@ -156,6 +163,11 @@ public class ShardSearchTransportRequest extends TransportRequest implements Sha
         return shardSearchLocalRequest.scroll();
     }
 
+    @Override
+    public long pointInTimeReaderId() {
+        return shardSearchLocalRequest.pointInTimeReaderId();
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         throw new UnsupportedOperationException("usage of Streamable is to be replaced by Writeable");
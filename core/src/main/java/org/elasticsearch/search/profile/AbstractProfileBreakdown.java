@@ -58,4 +58,9 @@ public abstract class AbstractProfileBreakdown<T extends Enum<T>> {
         }
         return Collections.unmodifiableMap(map);
     }
+
+    /** Convert the memory usage of this node to a map, empty if the node doesn't report it. */
+    public Map<String, Long> toMemoryMap() {
+        return Collections.emptyMap();
+    }
 }
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.search.profile;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -55,17 +56,25 @@ public final class ProfileResult implements Writeable, ToXContentObject {
     static final ParseField NODE_TIME_RAW = new ParseField("time_in_nanos");
     static final ParseField CHILDREN = new ParseField("children");
     static final ParseField BREAKDOWN = new ParseField("breakdown");
+    static final ParseField MEMORY = new ParseField("memory");
 
     private final String type;
     private final String description;
     private final Map<String, Long> timings;
+    private final Map<String, Long> memory;
     private final long nodeTime;
     private final List<ProfileResult> children;
 
     public ProfileResult(String type, String description, Map<String, Long> timings, List<ProfileResult> children) {
+        this(type, description, timings, Collections.emptyMap(), children);
+    }
+
+    public ProfileResult(String type, String description, Map<String, Long> timings, Map<String, Long> memory,
+                         List<ProfileResult> children) {
         this.type = type;
         this.description = description;
         this.timings = Objects.requireNonNull(timings, "required timings argument missing");
+        this.memory = Objects.requireNonNull(memory, "required memory argument missing");
         this.children = children;
         this.nodeTime = getTotalTime(timings);
     }
@@ -83,6 +92,15 @@ public final class ProfileResult implements Writeable, ToXContentObject {
         for (int i = 0; i < timingsSize; ++i) {
             timings.put(in.readString(), in.readLong());
         }
+        if (in.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            int memorySize = in.readVInt();
+            this.memory = new HashMap<>(memorySize);
+            for (int i = 0; i < memorySize; ++i) {
+                memory.put(in.readString(), in.readLong());
+            }
+        } else {
+            this.memory = Collections.emptyMap();
+        }
 
         int size = in.readVInt();
         this.children = new ArrayList<>(size);
@@ -102,6 +120,13 @@ public final class ProfileResult implements Writeable, ToXContentObject {
             out.writeString(entry.getKey());
             out.writeLong(entry.getValue());
         }
+        if (out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            out.writeVInt(memory.size());
+            for (Map.Entry<String, Long> entry : memory.entrySet()) {
+                out.writeString(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+        }
         out.writeVInt(children.size());
         for (ProfileResult child : children) {
             child.writeTo(out);
@@ -129,6 +154,13 @@ public final class ProfileResult implements Writeable, ToXContentObject {
         return Collections.unmodifiableMap(timings);
     }
 
+    /**
+     * Returns the memory breakdown for this particular node, empty if the node doesn't report its memory usage
+     */
+    public Map<String, Long> getMemoryBreakdown() {
+        return Collections.unmodifiableMap(memory);
+    }
+
     /**
      * Returns the total time (inclusive of children) for this query node.
      *
@@ -152,6 +184,9 @@ public final class ProfileResult implements Writeable, ToXContentObject {
                 .field(DESCRIPTION.getPreferredName(), description)
                 .timeValueField(NODE_TIME_RAW.getPreferredName(), NODE_TIME.getPreferredName(), getTime(), TimeUnit.NANOSECONDS)
                 .field(BREAKDOWN.getPreferredName(), timings);
+        if (memory.isEmpty() == false) {
+            builder = builder.field(MEMORY.getPreferredName(), memory);
+        }
 
         if (!children.isEmpty()) {
             builder = builder.startArray(CHILDREN.getPreferredName());
@@ -171,6 +206,7 @@ public final class ProfileResult implements Writeable, ToXContentObject {
         String currentFieldName = null;
         String type = null, description = null;
         Map<String, Long> timings =  new HashMap<>();
+        Map<String, Long> memory = new HashMap<>();
         List<ProfileResult> children = new ArrayList<>();
         while((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
             if (token == XContentParser.Token.FIELD_NAME) {
@@ -198,6 +234,13 @@ public final class ProfileResult implements Writeable, ToXContentObject {
                         long value = parser.longValue();
                         timings.put(name, value);
                     }
+                } else if (MEMORY.match(currentFieldName)) {
+                    while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+                        ensureExpectedToken(parser.currentToken(), XContentParser.Token.FIELD_NAME, parser::getTokenLocation);
+                        String name = parser.currentName();
+                        ensureExpectedToken(parser.nextToken(), XContentParser.Token.VALUE_NUMBER, parser::getTokenLocation);
+                        memory.put(name, parser.longValue());
+                    }
                 } else {
                     parser.skipChildren();
                 }
@@ -211,7 +254,7 @@ public final class ProfileResult implements Writeable, ToXContentObject {
                 }
             }
         }
-        return new ProfileResult(type, description, timings, children);
+        return new ProfileResult(type, description, timings, memory, children);
     }
 
     /**
@@ -19,6 +19,8 @@ package org.elasticsearch.search.profile;
  * under the License.
  */
 
+import org.elasticsearch.Version;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
@@ -38,12 +40,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 import static org.elasticsearch.common.xcontent.XContentParserUtils.ensureExpectedToken;
 
 /**
  * A container class to hold all the profile results across all shards.  Internally
- * holds a map of shard ID -&gt; Profiled results
+ * holds a map of shard ID -&gt; Profiled results, and the time it took to reduce each
+ * top level aggregation on the coordinating node.
  */
 public final class SearchProfileShardResults implements Writeable, ToXContentFragment {
 
@@ -51,11 +55,25 @@ public final class SearchProfileShardResults implements Writeable, ToXContentFra
     private static final String ID_FIELD = "id";
     private static final String SHARDS_FIELD = "shards";
     public static final String PROFILE_FIELD = "profile";
+    static final String AGGREGATION_REDUCE_FIELD = "aggregation_reduce";
+    private static final String NAME_FIELD = "name";
+    private static final String TIME_FIELD = "time";
+    private static final String TIME_NANOS_FIELD = "time_in_nanos";
 
     private Map<String, ProfileShardResult> shardResults;
+    private Map<String, Long> aggregationReduceTimes;
 
     public SearchProfileShardResults(Map<String, ProfileShardResult> shardResults) {
+        this(shardResults, null);
+    }
+
+    /**
+     * @param aggregationReduceTimes the time it took to reduce each top level aggregation, in nanoseconds
+     */
+    public SearchProfileShardResults(Map<String, ProfileShardResult> shardResults, @Nullable Map<String, Long> aggregationReduceTimes) {
         this.shardResults =  Collections.unmodifiableMap(shardResults);
+        this.aggregationReduceTimes = aggregationReduceTimes == null ? Collections.emptyMap()
+            : Collections.unmodifiableMap(aggregationReduceTimes);
     }
 
     public SearchProfileShardResults(StreamInput in) throws IOException {
@@ -68,12 +86,24 @@ public final class SearchProfileShardResults implements Writeable, ToXContentFra
             shardResults.put(key, shardResult);
         }
         shardResults = Collections.unmodifiableMap(shardResults);
+        if (in.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            aggregationReduceTimes = Collections.unmodifiableMap(in.readMap(StreamInput::readString, StreamInput::readVLong));
+        } else {
+            aggregationReduceTimes = Collections.emptyMap();
+        }
     }
 
     public Map<String, ProfileShardResult> getShardResults() {
         return this.shardResults;
     }
 
+    /**
+     * Returns the time it took to reduce each top level aggregation on the coordinating node, in nanoseconds.
+     */
+    public Map<String, Long> getAggregationReduceTimes() {
+        return this.aggregationReduceTimes;
+    }
+
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         out.writeInt(shardResults.size());
@@ -81,6 +111,9 @@ public final class SearchProfileShardResults implements Writeable, ToXContentFra
             out.writeString(entry.getKey());
             entry.getValue().writeTo(out);
         }
+        if (out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            out.writeMap(aggregationReduceTimes, StreamOutput::writeString, StreamOutput::writeVLong);
+        }
     }
 
     @Override
@@ -101,7 +134,18 @@ public final class SearchProfileShardResults implements Writeable, ToXContentFra
             profileShardResult.getAggregationProfileResults().toXContent(builder, params);
             builder.endObject();
         }
-        builder.endArray().endObject();
+        builder.endArray();
+        if (aggregationReduceTimes.isEmpty() == false) {
+            builder.startArray(AGGREGATION_REDUCE_FIELD);
+            for (String name : new TreeSet<>(aggregationReduceTimes.keySet())) {
+                builder.startObject();
+                builder.field(NAME_FIELD, name);
+                builder.timeValueField(TIME_NANOS_FIELD, TIME_FIELD, aggregationReduceTimes.get(name), TimeUnit.NANOSECONDS);
+                builder.endObject();
+            }
+            builder.endArray();
+        }
+        builder.endObject();
         return builder;
     }
 
@@ -109,12 +153,17 @@ public final class SearchProfileShardResults implements Writeable, ToXContentFra
         XContentParser.Token token = parser.currentToken();
         ensureExpectedToken(XContentParser.Token.START_OBJECT, token, parser::getTokenLocation);
         Map<String, ProfileShardResult> searchProfileResults = new HashMap<>();
+        Map<String, Long> aggregationReduceTimes = new HashMap<>();
         while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
             if (token == XContentParser.Token.START_ARRAY) {
                 if (SHARDS_FIELD.equals(parser.currentName())) {
                     while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
                         parseSearchProfileResultsEntry(parser, searchProfileResults);
                     }
+                } else if (AGGREGATION_REDUCE_FIELD.equals(parser.currentName())) {
+                    while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+                        parseAggregationReduceTime(parser, aggregationReduceTimes);
+                    }
                 } else {
                     parser.skipChildren();
                 }
@@ -122,7 +171,31 @@ public final class SearchProfileShardResults implements Writeable, ToXContentFra
                 parser.skipChildren();
             }
         }
-        return new SearchProfileShardResults(searchProfileResults);
+        return new SearchProfileShardResults(searchProfileResults, aggregationReduceTimes);
+    }
+
+    private static void parseAggregationReduceTime(XContentParser parser, Map<String, Long> aggregationReduceTimes) throws IOException {
+        XContentParser.Token token = parser.currentToken();
+        ensureExpectedToken(XContentParser.Token.START_OBJECT, token, parser::getTokenLocation);
+        String name = null;
+        long time = -1;
+        String currentFieldName = null;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            if (token == XContentParser.Token.FIELD_NAME) {
+                currentFieldName = parser.currentName();
+            } else if (token.isValue()) {
+                if (NAME_FIELD.equals(currentFieldName)) {
+                    name = parser.text();
+                } else if (TIME_NANOS_FIELD.equals(currentFieldName)) {
+                    time = parser.longValue();
+                } else {
+                    parser.skipChildren();
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        aggregationReduceTimes.put(name, time);
     }
 
     private static void parseSearchProfileResultsEntry(XContentParser parser,
@@ -19,12 +19,38 @@
 
 package org.elasticsearch.search.profile.aggregation;
 
+import org.elasticsearch.search.aggregations.AggregationMemoryUsage;
 import org.elasticsearch.search.profile.AbstractProfileBreakdown;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 public class AggregationProfileBreakdown extends AbstractProfileBreakdown<AggregationTimingType> {
 
+    private AggregationMemoryUsage memoryUsage;
+
     public AggregationProfileBreakdown() {
         super(AggregationTimingType.class);
     }
 
+    /**
+     * Sets the memory usage of the profiled aggregator.
+     */
+    public void setMemoryUsage(AggregationMemoryUsage memoryUsage) {
+        this.memoryUsage = memoryUsage;
+    }
+
+    @Override
+    public Map<String, Long> toMemoryMap() {
+        if (memoryUsage == null) {
+            return Collections.emptyMap();
+        }
+        AggregationMemoryUsage.Stats stats = memoryUsage.stats();
+        Map<String, Long> map = new HashMap<>();
+        map.put("peak_memory_in_bytes", stats.getPeakBytes());
+        map.put("buckets", stats.getBuckets());
+        return Collections.unmodifiableMap(map);
+    }
+
 }
@@ -20,7 +20,9 @@
 package org.elasticsearch.search.profile.aggregation;
 
 import org.apache.lucene.index.LeafReaderContext;
+import org.elasticsearch.search.aggregations.AggregationMemoryUsage;
 import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorBase;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.LeafBucketCollector;
 import org.elasticsearch.search.internal.SearchContext;
@@ -95,6 +97,11 @@ public class ProfilingAggregator extends Aggregator {
     @Override
     public void preCollection() throws IOException {
         this.profileBreakdown = profiler.getQueryBreakdown(delegate);
+        if (delegate instanceof AggregatorBase) {
+            profileBreakdown.setMemoryUsage(((AggregatorBase) delegate).memoryUsage());
+        } else if (context().aggregations() != null) {
+            profileBreakdown.setMemoryUsage(context().aggregations().memoryUsage(AggregationMemoryUsage.path(delegate)));
+        }
         Timer timer = profileBreakdown.getTimer(AggregationTimingType.INITIALIZE);
         timer.start();
         try {
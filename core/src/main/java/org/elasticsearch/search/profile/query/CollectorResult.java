@@ -19,6 +19,7 @@
 
 package org.elasticsearch.search.profile.query;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -50,6 +51,7 @@ public class CollectorResult implements ToXContentObject, Writeable {
     public static final String REASON_SEARCH_MULTI = "search_multi";
     public static final String REASON_SEARCH_TIMEOUT = "search_timeout";
     public static final String REASON_SEARCH_CANCELLED = "search_cancelled";
+    public static final String REASON_SEARCH_COMPETITIVE_SORT = "search_competitive_sort";
     public static final String REASON_AGGREGATION = "aggregation";
     public static final String REASON_AGGREGATION_GLOBAL = "aggregation_global";
 
@@ -57,6 +59,7 @@ public class CollectorResult implements ToXContentObject, Writeable {
     private static final ParseField REASON = new ParseField("reason");
     private static final ParseField TIME = new ParseField("time");
     private static final ParseField TIME_NANOS = new ParseField("time_in_nanos");
+    private static final ParseField SKIPPED_DOCS = new ParseField("skipped_docs");
     private static final ParseField CHILDREN = new ParseField("children");
 
     /**
@@ -74,15 +77,25 @@ public class CollectorResult implements ToXContentObject, Writeable {
      */
     private final Long time;
 
+    /**
+     * The number of documents that this Collector skipped because they could not compete, or -1 if it doesn't skip documents
+     */
+    private final long skippedDocs;
+
     /**
      * A list of children collectors "embedded" inside this collector
      */
     private List<CollectorResult> children;
 
     public CollectorResult(String collectorName, String reason, Long time, List<CollectorResult> children) {
+        this(collectorName, reason, time, -1L, children);
+    }
+
+    public CollectorResult(String collectorName, String reason, Long time, long skippedDocs, List<CollectorResult> children) {
         this.collectorName = collectorName;
         this.reason = reason;
         this.time = time;
+        this.skippedDocs = skippedDocs;
         this.children = children;
     }
 
@@ -93,6 +106,11 @@ public class CollectorResult implements ToXContentObject, Writeable {
         this.collectorName = in.readString();
         this.reason = in.readString();
         this.time = in.readLong();
+        if (in.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            this.skippedDocs = in.readZLong();
+        } else {
+            this.skippedDocs = -1L;
+        }
         int size = in.readVInt();
         this.children = new ArrayList<>(size);
         for (int i = 0; i < size; i++) {
@@ -106,6 +124,9 @@ public class CollectorResult implements ToXContentObject, Writeable {
         out.writeString(collectorName);
         out.writeString(reason);
         out.writeLong(time);
+        if (out.getVersion().onOrAfter(Version.V_7_0_0_alpha1)) {
+            out.writeZLong(skippedDocs);
+        }
         out.writeVInt(children.size());
         for (CollectorResult child : children) {
             child.writeTo(out);
@@ -119,6 +140,13 @@ public class CollectorResult implements ToXContentObject, Writeable {
         return this.time;
     }
 
+    /**
+     * @return the number of documents that this collector skipped because they could not compete, or -1 if it doesn't skip documents
+     */
+    public long getSkippedDocs() {
+        return this.skippedDocs;
+    }
+
     /**
      * @return a human readable "hint" about what this collector was used for
      */
@@ -146,6 +174,9 @@ public class CollectorResult implements ToXContentObject, Writeable {
                 .field(NAME.getPreferredName(), getName())
                 .field(REASON.getPreferredName(), getReason())
                 .timeValueField(TIME_NANOS.getPreferredName(), TIME.getPreferredName(), getTime(), TimeUnit.NANOSECONDS);
+        if (skippedDocs >= 0) {
+            builder.field(SKIPPED_DOCS.getPreferredName(), skippedDocs);
+        }
 
         if (!children.isEmpty()) {
             builder = builder.startArray(CHILDREN.getPreferredName());
@@ -164,6 +195,7 @@ public class CollectorResult implements ToXContentObject, Writeable {
         String currentFieldName = null;
         String name = null, reason = null;
         long time = -1;
+        long skippedDocs = -1;
         List<CollectorResult> children = new ArrayList<>();
         while((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
             if (token == XContentParser.Token.FIELD_NAME) {
@@ -178,6 +210,8 @@ public class CollectorResult implements ToXContentObject, Writeable {
                     parser.text();
                 } else if (TIME_NANOS.match(currentFieldName)) {
                     time = parser.longValue();
+                } else if (SKIPPED_DOCS.match(currentFieldName)) {
+                    skippedDocs = parser.longValue();
                 } else {
                     parser.skipChildren();
                 }
@@ -193,6 +227,6 @@ public class CollectorResult implements ToXContentObject, Writeable {
                 parser.skipChildren();
             }
         }
-        return new CollectorResult(name, reason, time, children);
+        return new CollectorResult(name, reason, time, skippedDocs, children);
     }
 }
@@ -26,6 +26,7 @@ import org.apache.lucene.search.LeafCollector;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.LongSupplier;
 
 /**
  * This class wraps a Lucene Collector and times the execution of:
@@ -56,11 +57,22 @@ public class InternalProfileCollector implements Collector {
      */
     private final List<InternalProfileCollector> children;
 
+    /**
+     * The number of documents that the wrapped collector skipped, or -1 if it doesn't skip documents
+     */
+    private final LongSupplier skippedDocs;
+
     public InternalProfileCollector(Collector collector, String reason, List<InternalProfileCollector> children) {
+        this(collector, reason, children, () -> -1L);
+    }
+
+    public InternalProfileCollector(Collector collector, String reason, List<InternalProfileCollector> children,
+                                    LongSupplier skippedDocs) {
         this.collector = new ProfileCollector(collector);
         this.reason = reason;
         this.collectorName = deriveCollectorName(collector);
         this.children = children;
+        this.skippedDocs = skippedDocs;
     }
 
     /**
@@ -70,6 +82,13 @@ public class InternalProfileCollector implements Collector {
         return collector.getTime();
     }
 
+    /**
+     * @return the number of documents that the wrapped collector skipped, or -1 if it doesn't skip documents
+     */
+    public long getSkippedDocs() {
+        return skippedDocs.getAsLong();
+    }
+
     /**
      * @return a human readable "hint" about what this collector was used for
      */
@@ -130,6 +149,7 @@ public class InternalProfileCollector implements Collector {
             CollectorResult result = doGetCollectorTree(child);
             childResults.add(result);
         }
-        return new CollectorResult(collector.getName(), collector.getReason(), collector.getTime(), childResults);
+        return new CollectorResult(collector.getName(), collector.getReason(), collector.getTime(), collector.getSkippedDocs(),
+            childResults);
     }
 }
@@ -0,0 +1,502 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.FilterCollector;
+import org.apache.lucene.search.FilterLeafCollector;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.DocIdSetBuilder;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.index.fielddata.fieldcomparator.LongValuesComparatorSource;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.search.MultiValueMode;
+import org.elasticsearch.search.internal.SearchContext;
+import org.elasticsearch.search.profile.query.InternalProfileCollector;
+import org.elasticsearch.search.sort.SortAndFormats;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.elasticsearch.search.profile.query.CollectorResult.REASON_SEARCH_COMPETITIVE_SORT;
+
+/**
+ * A {@link QueryCollectorContext} that skips the documents that cannot compete with the top hits of a search sorted by a
+ * numeric field, when the total number of hits is not tracked. The collector keeps the primary sort values of the best
+ * <code>numHits</code> documents that were collected so far and the query returned by {@link #wrapQuery(Query)} only
+ * matches the documents that are at least as good as the worst of them, which it finds by intersecting the points of
+ * the sort field with the competitive range. Whole BKD cells are skipped this way so that the cost of a search for the
+ * latest <code>numHits</code> documents depends on <code>numHits</code> rather than on the number of matching documents.
+ */
+final class CompetitiveSortCollectorContext extends QueryCollectorContext {
+    /**
+     * The competitive documents of a segment are only recomputed from its points if
+     * this reduces the number of candidates by this factor at least
+     */
+    static final int MIN_SKIP_FACTOR = 8;
+    /**
+     * The number of candidates to wait for before checking again if the bound is selective enough
+     */
+    static final int CHECK_INTERVAL = 32;
+
+    private final String field;
+    private final boolean reverse;
+    private final long missingValue;
+    // the primary sort values of the best documents, the least competitive one on top
+    private final long[] heap;
+    private int heapSize;
+    // incremented every time the least competitive value of a full heap changes
+    private long boundVersion;
+    private long skippedDocs;
+
+    CompetitiveSortCollectorContext(String field, boolean reverse, int numHits) {
+        super(REASON_SEARCH_COMPETITIVE_SORT);
+        assert numHits > 0;
+        this.field = field;
+        this.reverse = reverse;
+        // missing values are sorted last
+        this.missingValue = reverse ? Long.MIN_VALUE : Long.MAX_VALUE;
+        this.heap = new long[numHits];
+    }
+
+    /**
+     * Returns a context that skips non-competitive documents of the search, or <code>null</code> if the search
+     * cannot skip documents: the total number of hits must not be tracked, all the matching documents must go to the
+     * top docs collector only and the primary sort must be on the min (ascending) or max (descending) value of a long or
+     * date field that is indexed and has doc values, with missing values sorted last.
+     */
+    @Nullable
+    static CompetitiveSortCollectorContext create(SearchContext searchContext, int numHits) {
+        final SortAndFormats sortAndFormats = searchContext.sort();
+        if (numHits <= 0
+                || sortAndFormats == null
+                || searchContext.trackTotalHits()
+                || searchContext.trackScores()
+                || searchContext.scrollContext() != null
+                || searchContext.collapse() != null
+                || searchContext.searchAfter() != null
+                || searchContext.queryCollectors().isEmpty() == false
+                || searchContext.terminateAfter() != SearchContext.DEFAULT_TERMINATE_AFTER) {
+            return null;
+        }
+        final SortField sortField = sortAndFormats.sort.getSort()[0];
+        if (sortField.getField() == null || sortField.getComparatorSource() instanceof LongValuesComparatorSource == false) {
+            return null;
+        }
+        final LongValuesComparatorSource source = (LongValuesComparatorSource) sortField.getComparatorSource();
+        if (source.nested() != null
+                || source.sortMode() != (sortField.getReverse() ? MultiValueMode.MAX : MultiValueMode.MIN)
+                || source.sortMissingLast(source.missingValue()) == false) {
+            return null;
+        }
+        final MappedFieldType fieldType = searchContext.smartNameFieldType(sortField.getField());
+        if (fieldType == null
+                || fieldType.indexOptions() == IndexOptions.NONE
+                || fieldType.hasDocValues() == false
+                || (fieldType instanceof DateFieldMapper.DateFieldType == false
+                    && (fieldType instanceof NumberFieldMapper.NumberFieldType == false
+                        || fieldType.typeName().equals(NumberFieldMapper.NumberType.LONG.typeName()) == false))) {
+            return null;
+        }
+        return new CompetitiveSortCollectorContext(fieldType.name(), sortField.getReverse(), numHits);
+    }
+
+    /**
+     * Returns the number of documents that were skipped because they could not compete with the top hits.
+     */
+    long skippedDocs() {
+        return skippedDocs;
+    }
+
+    /**
+     * Wraps the provided <code>query</code> so that it skips the documents that cannot compete with the documents
+     * collected so far by the collector of this context.
+     */
+    Query wrapQuery(Query query) {
+        return new CompetitiveQuery(query);
+    }
+
+    @Override
+    Collector create(Collector in) throws IOException {
+        return new CompetitiveSortCollector(in);
+    }
+
+    @Override
+    protected InternalProfileCollector createWithProfiler(InternalProfileCollector in) throws IOException {
+        return new InternalProfileCollector(create(in), REASON_SEARCH_COMPETITIVE_SORT,
+            in != null ? Collections.singletonList(in) : Collections.emptyList(), this::skippedDocs);
+    }
+
+    private boolean isCompetitive(long value, long bound) {
+        return reverse ? value >= bound : value <= bound;
+    }
+
+    private boolean isMoreCompetitive(long a, long b) {
+        return reverse ? a > b : a < b;
+    }
+
+    /**
+     * Adds the primary sort value of a collected document to the heap of the best values.
+     */
+    void collect(long value) {
+        if (heapSize < heap.length) {
+            heap[heapSize] = value;
+            siftUp(heapSize++);
+            if (heapSize == heap.length) {
+                boundVersion++;
+            }
+        } else if (isMoreCompetitive(value, heap[0])) {
+            final long previous = heap[0];
+            heap[0] = value;
+            siftDown(0);
+            if (heap[0] != previous) {
+                boundVersion++;
+            }
+        }
+    }
+
+    private void siftUp(int i) {
+        final long value = heap[i];
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (isMoreCompetitive(heap[parent], value) == false) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = value;
+    }
+
+    private void siftDown(int i) {
+        final long value = heap[i];
+        while (true) {
+            int child = (i << 1) + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && isMoreCompetitive(heap[child], heap[child + 1])) {
+                child++;
+            }
+            if (isMoreCompetitive(value, heap[child]) == false) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = value;
+    }
+
+    /**
+     * Returns the least competitive of the best values, or the missing value if fewer than <code>numHits</code>
+     * documents have been collected so far, in which case all documents are competitive.
+     */
+    long bound() {
+        return heapSize < heap.length ? missingValue : heap[0];
+    }
+
+    private class CompetitiveSortCollector extends FilterCollector {
+        CompetitiveSortCollector(Collector in) {
+            super(in);
+        }
+
+        @Override
+        public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+            final SortedNumericDocValues values = DocValues.getSortedNumeric(context.reader(), field);
+            return new FilterLeafCollector(super.getLeafCollector(context)) {
+                @Override
+                public void collect(int doc) throws IOException {
+                    in.collect(doc);
+                    if (values.advanceExact(doc)) {
+                        final int count = values.docValueCount();
+                        long value = values.nextValue();
+                        if (reverse) {
+                            // sorted by max value
+                            for (int i = 1; i < count; i++) {
+                                value = values.nextValue();
+                            }
+                        }
+                        CompetitiveSortCollectorContext.this.collect(value);
+                    } else {
+                        CompetitiveSortCollectorContext.this.collect(missingValue);
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * The documents of a segment whose values are competitive with the current bound, recomputed from the points of the
+     * sort field when the bound changes and is selective enough.
+     */
+    private class LeafCompetitiveDocs {
+        private final int maxDoc;
+        private final PointValues points;
+        private DocIdSetIterator iterator;
+        private long cost;
+        private long checkedBoundVersion;
+        private int candidatesUntilNextCheck;
+
+        LeafCompetitiveDocs(LeafReaderContext context) throws IOException {
+            this.maxDoc = context.reader().maxDoc();
+            this.points = context.reader().getPointValues(field);
+            this.cost = maxDoc;
+        }
+
+        /**
+         * Returns an iterator over the competitive documents or <code>null</code> if all documents are competitive.
+         */
+        @Nullable
+        DocIdSetIterator iterator() throws IOException {
+            if (checkedBoundVersion != boundVersion) {
+                if (candidatesUntilNextCheck > 0) {
+                    candidatesUntilNextCheck--;
+                } else {
+                    update();
+                }
+            }
+            return iterator;
+        }
+
+        private void update() throws IOException {
+            checkedBoundVersion = boundVersion;
+            final long bound = bound();
+            if (bound == missingValue) {
+                // documents without a value might still compete on secondary sort fields
+                return;
+            }
+            if (points == null) {
+                // no document of this segment has a value so none can compete
+                iterator = DocIdSetIterator.empty();
+                cost = 0;
+                return;
+            }
+            final CompetitiveVisitor visitor = new CompetitiveVisitor(bound);
+            if (points.estimatePointCount(visitor) * MIN_SKIP_FACTOR > cost) {
+                candidatesUntilNextCheck = CHECK_INTERVAL;
+                return;
+            }
+            visitor.result = new DocIdSetBuilder(maxDoc, points, field);
+            points.intersect(visitor);
+            iterator = visitor.result.build().iterator();
+            cost = iterator.cost();
+        }
+    }
+
+    private class CompetitiveVisitor implements PointValues.IntersectVisitor {
+        private final long bound;
+        private DocIdSetBuilder result;
+        private DocIdSetBuilder.BulkAdder adder;
+
+        CompetitiveVisitor(long bound) {
+            this.bound = bound;
+        }
+
+        @Override
+        public void grow(int count) {
+            adder = result.grow(count);
+        }
+
+        @Override
+        public void visit(int docID) {
+            adder.add(docID);
+        }
+
+        @Override
+        public void visit(int docID, byte[] packedValue) {
+            if (isCompetitive(LongPoint.decodeDimension(packedValue, 0), bound)) {
+                adder.add(docID);
+            }
+        }
+
+        @Override
+        public PointValues.Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+            final long min = LongPoint.decodeDimension(minPackedValue, 0);
+            final long max = LongPoint.decodeDimension(maxPackedValue, 0);
+            if (isCompetitive(reverse ? max : min, bound) == false) {
+                return PointValues.Relation.CELL_OUTSIDE_QUERY;
+            } else if (isCompetitive(reverse ? min : max, bound)) {
+                return PointValues.Relation.CELL_INSIDE_QUERY;
+            } else {
+                return PointValues.Relation.CELL_CROSSES_QUERY;
+            }
+        }
+    }
+
+    /**
+     * A query that only matches the documents of the wrapped query that are competitive with the current bound. Its matches
+     * change during collection so it must never be cached, which is why it only equals itself.
+     */
+    private class CompetitiveQuery extends Query {
+        private final Query in;
+
+        CompetitiveQuery(Query in) {
+            this.in = in;
+        }
+
+        @Override
+        public Query rewrite(IndexReader reader) throws IOException {
+            final Query rewritten = in.rewrite(reader);
+            if (rewritten != in) {
+                return new CompetitiveQuery(rewritten);
+            }
+            return this;
+        }
+
+        @Override
+        public Weight createWeight(IndexSearcher searcher, boolean needsScores, float boost) throws IOException {
+            final Weight inWeight = searcher.createWeight(in, needsScores, boost);
+            return new Weight(this) {
+                @Override
+                public Scorer scorer(LeafReaderContext context) throws IOException {
+                    final Scorer scorer = inWeight.scorer(context);
+                    if (scorer == null) {
+                        return null;
+                    }
+                    return new CompetitiveScorer(this, scorer, new LeafCompetitiveDocs(context));
+                }
+
+                @Override
+                public Explanation explain(LeafReaderContext context, int doc) throws IOException {
+                    return inWeight.explain(context, doc);
+                }
+
+                @Override
+                public void extractTerms(Set<Term> terms) {
+                    inWeight.extractTerms(terms);
+                }
+            };
+        }
+
+        @Override
+        public String toString(String field) {
+            return "CompetitiveSort(" + in.toString(field) + ", field=" + CompetitiveSortCollectorContext.this.field + ")";
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return this == obj;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    /**
+     * Leap-frogs the iterator of the wrapped scorer with the competitive documents of the segment. Two-phase iteration is
+     * disabled so that bulk scorers cannot bypass the competitive documents.
+     */
+    private class CompetitiveScorer extends Scorer {
+        private final Scorer in;
+        private final DocIdSetIterator inIterator;
+        private final LeafCompetitiveDocs competitiveDocs;
+        private int doc = -1;
+
+        CompetitiveScorer(Weight weight, Scorer in, LeafCompetitiveDocs competitiveDocs) {
+            super(weight);
+            this.in = in;
+            this.inIterator = in.iterator();
+            this.competitiveDocs = competitiveDocs;
+        }
+
+        @Override
+        public int docID() {
+            return doc;
+        }
+
+        @Override
+        public float score() throws IOException {
+            return in.score();
+        }
+
+        @Override
+        public int freq() throws IOException {
+            return in.freq();
+        }
+
+        @Override
+        public DocIdSetIterator iterator() {
+            return new DocIdSetIterator() {
+                @Override
+                public int docID() {
+                    return doc;
+                }
+
+                @Override
+                public int nextDoc() throws IOException {
+                    return doc = nextCompetitiveDoc(inIterator.nextDoc());
+                }
+
+                @Override
+                public int advance(int target) throws IOException {
+                    return doc = nextCompetitiveDoc(inIterator.advance(target));
+                }
+
+                @Override
+                public long cost() {
+                    return inIterator.cost();
+                }
+            };
+        }
+
+        private int nextCompetitiveDoc(int candidate) throws IOException {
+            while (candidate != DocIdSetIterator.NO_MORE_DOCS) {
+                final DocIdSetIterator competitive = competitiveDocs.iterator();
+                if (competitive == null) {
+                    return candidate;
+                }
+                int target = competitive.docID();
+                if (target < candidate) {
+                    target = competitive.advance(candidate);
+                }
+                if (target == candidate) {
+                    return candidate;
+                }
+                if (target == DocIdSetIterator.NO_MORE_DOCS) {
+                    skippedDocs += competitiveDocs.maxDoc - candidate;
+                    return DocIdSetIterator.NO_MORE_DOCS;
+                }
+                skippedDocs += target - candidate;
+                candidate = inIterator.advance(target);
+            }
+            return DocIdSetIterator.NO_MORE_DOCS;
+        }
+    }
+}
@@ -21,6 +21,7 @@ package org.elasticsearch.search.query;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.EarlyTerminatingSortingCollector;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MultiCollector;
@@ -79,6 +80,14 @@ abstract class QueryCollectorContext {
         return true;
     }
 
+    /**
+     * Returns true if {@link #create(Collector)} can be called once per slice of leaves in order to
+     * collect the query concurrently. Contexts that keep state across the whole search must return false.
+     */
+    boolean supportsConcurrentCollection() {
+        return false;
+    }
+
     /**
      * Post-process <code>result</code> after search execution.
      *
@@ -121,6 +130,11 @@ abstract class QueryCollectorContext {
             Collector create(Collector in) {
                 return new MinimumScoreCollector(in, minScore);
             }
+
+            @Override
+            boolean supportsConcurrentCollection() {
+                return true;
+            }
         };
     }
 
@@ -134,11 +148,17 @@ abstract class QueryCollectorContext {
                 final Weight filterWeight = searcher.createNormalizedWeight(query, false);
                 return new FilteredCollector(in, filterWeight);
             }
+
+            @Override
+            boolean supportsConcurrentCollection() {
+                return true;
+            }
         };
     }
 
     /**
-     * Creates a multi collector from the provided <code>subs</code>
+     * Creates a multi collector from the provided <code>subs</code>. Subs that are also {@link CollectorManager}s
+     * provide a new collector each time the multi collector is created, which allows to collect slices concurrently.
      */
     static QueryCollectorContext createMultiCollectorContext(Collection<Collector> subs) {
         return new QueryCollectorContext(REASON_SEARCH_MULTI) {
@@ -146,10 +166,18 @@ abstract class QueryCollectorContext {
             Collector create(Collector in) throws IOException {
                 List<Collector> subCollectors = new ArrayList<> ();
                 subCollectors.add(in);
-                subCollectors.addAll(subs);
+                for (Collector sub : subs) {
+                    // collectors that are also managers create a new collector for each slice
+                    subCollectors.add(sub instanceof CollectorManager ? ((CollectorManager<?, ?>) sub).newCollector() : sub);
+                }
                 return MultiCollector.wrap(subCollectors);
             }
 
+            @Override
+            boolean supportsConcurrentCollection() {
+                return subs.stream().allMatch(sub -> sub instanceof CollectorManager);
+            }
+
             @Override
             protected InternalProfileCollector createWithProfiler(InternalProfileCollector in) throws IOException {
                 final List<InternalProfileCollector> subCollectors = new ArrayList<> ();
@@ -180,6 +208,11 @@ abstract class QueryCollectorContext {
             boolean shouldCollect() {
                 return false;
             }
+
+            @Override
+            boolean supportsConcurrentCollection() {
+                return true;
+            }
         };
     }
 
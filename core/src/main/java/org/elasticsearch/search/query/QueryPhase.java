@@ -25,6 +25,7 @@ import org.apache.lucene.queries.SearchAfterSortedDocQuery;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.EarlyTerminatingSortingCollector;
 import org.apache.lucene.search.FieldDoc;
@@ -57,7 +58,10 @@ import org.elasticsearch.search.suggest.SuggestPhase;
 import org.elasticsearch.tasks.TaskCancelledException;
 import org.elasticsearch.threadpool.ThreadPool;
 
+import java.io.IOException;
+import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.function.Consumer;
 
 import static org.elasticsearch.search.query.QueryCollectorContext.createCancellableCollectorContext;
@@ -254,22 +258,49 @@ public class QueryPhase implements SearchPhase {
                 // add the collector context first so we don't early terminate aggs but only top docs
                 collectors.addFirst(createEarlySortingTerminationCollectorContext(reader, searchContext.query(), indexSort,
                     topDocsFactory.numHits(), searchContext.trackTotalHits(), shouldCollect));
+            } else if (shouldCollect) {
+                // skip the documents that cannot compete with the top docs collected so far
+                final CompetitiveSortCollectorContext competitiveSortContext =
+                    CompetitiveSortCollectorContext.create(searchContext, topDocsFactory.numHits());
+                if (competitiveSortContext != null) {
+                    collectors.addFirst(competitiveSortContext);
+                    query = competitiveSortContext.wrapQuery(query);
+                }
             }
             // add the top docs collector, the first collector context in the chain
             collectors.addFirst(topDocsFactory);
 
+            final boolean concurrent = doProfile == false && canCollectConcurrently(searcher, collectors);
             final Collector queryCollector;
             if (doProfile) {
                 InternalProfileCollector profileCollector = QueryCollectorContext.createQueryCollectorWithProfiler(collectors);
                 searchContext.getProfilers().getCurrentQueryProfiler().setCollector(profileCollector);
                 queryCollector = profileCollector;
+            } else if (concurrent) {
+                // the collector tree is created once per slice by the searcher
+                queryCollector = null;
             } else {
                queryCollector = QueryCollectorContext.createQueryCollector(collectors);
             }
 
             try {
                 if (shouldCollect) {
-                    searcher.search(query, queryCollector);
+                    if (concurrent) {
+                        searcher.search(query, new CollectorManager<Collector, Void>() {
+                            @Override
+                            public Collector newCollector() throws IOException {
+                                return QueryCollectorContext.createQueryCollector(collectors);
+                            }
+
+                            @Override
+                            public Void reduce(Collection<Collector> sliceCollectors) {
+                                // per-slice results are merged by the collector contexts on post-processing
+                                return null;
+                            }
+                        });
+                    } else {
+                        searcher.search(query, queryCollector);
+                    }
                 }
             } catch (TimeExceededException e) {
                 assert timeoutSet : "TimeExceededException thrown even though timeout wasn't set";
@@ -299,6 +330,16 @@ public class QueryPhase implements SearchPhase {
         }
     }
 
+    /**
+     * Returns true if the provided <code>searcher</code> collects slices of leaves concurrently and all
+     * the collector contexts in the chain can create one collector per slice.
+     */
+    static boolean canCollectConcurrently(IndexSearcher searcher, List<QueryCollectorContext> collectors) {
+        return searcher instanceof ContextIndexSearcher
+            && ((ContextIndexSearcher) searcher).isConcurrentSearchEnabled()
+            && collectors.stream().allMatch(QueryCollectorContext::supportsConcurrentCollection);
+    }
+
     /**
      * Returns true if the provided <code>query</code> returns docs in index order (internal doc ids).
      * @param query The query to execute
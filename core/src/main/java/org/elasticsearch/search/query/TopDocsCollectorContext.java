@@ -23,9 +23,11 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.CollectionTerminatedException;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.LeafCollector;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
@@ -34,6 +36,7 @@ import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopDocsCollector;
 import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopFieldDocs;
 import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.search.TotalHitCountCollector;
 import org.apache.lucene.search.grouping.CollapsingTopDocsCollector;
@@ -47,6 +50,8 @@ import org.elasticsearch.search.rescore.RescoreContext;
 import org.elasticsearch.search.sort.SortAndFormats;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 import static org.elasticsearch.search.profile.query.CollectorResult.REASON_SEARCH_COUNT;
@@ -78,40 +83,67 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
     }
 
     static class TotalHitCountCollectorContext extends TopDocsCollectorContext {
-        private final TotalHitCountCollector collector;
+        private final List<TotalHitCountCollector> collectors = new ArrayList<>();
         private final int hitCount;
+        private final boolean shouldCollect;
 
         /**
          * Ctr
          * @param reader The index reader
          * @param query The query to execute
          * @param shouldCollect True if any previous collector context in the chain forces the search to be executed, false otherwise
+         * @param hasFilterCollector True if any previous collector context in the chain filters the documents that match the query
          */
-        private TotalHitCountCollectorContext(IndexReader reader, Query query, boolean shouldCollect) throws IOException {
+        private TotalHitCountCollectorContext(IndexReader reader, Query query, boolean shouldCollect,
+                                              boolean hasFilterCollector) throws IOException {
             super(REASON_SEARCH_COUNT, 0);
-            this.collector = new TotalHitCountCollector();
             // implicit total hit counts are valid only when there is no filter collector in the chain
-            // so we check the shortcut only if shouldCollect is true
-            this.hitCount = shouldCollect ? -1 : shortcutTotalHitCount(reader, query);
+            this.hitCount = hasFilterCollector ? -1 : shortcutTotalHitCount(reader, query);
+            this.shouldCollect = shouldCollect || hitCount == -1;
         }
 
         @Override
         boolean shouldCollect() {
-            return hitCount == -1;
+            return shouldCollect;
         }
 
         Collector create(Collector in) {
             assert in == null;
+            if (hitCount != -1) {
+                // the other collectors of the chain need the documents but the hit count is already known
+                return new Collector() {
+                    @Override
+                    public LeafCollector getLeafCollector(LeafReaderContext context) {
+                        throw new CollectionTerminatedException();
+                    }
+
+                    @Override
+                    public boolean needsScores() {
+                        return false;
+                    }
+                };
+            }
+            // one collector per slice if the query is collected concurrently
+            final TotalHitCountCollector collector = new TotalHitCountCollector();
+            collectors.add(collector);
             return collector;
         }
 
+        @Override
+        boolean supportsConcurrentCollection() {
+            return true;
+        }
+
         @Override
         void postProcess(QuerySearchResult result, boolean hasCollected) {
-            final int totalHitCount;
-            if (hasCollected) {
-                totalHitCount = collector.getTotalHits();
+            int totalHitCount;
+            if (hitCount == -1) {
+                assert hasCollected;
+                totalHitCount = 0;
+                for (TotalHitCountCollector collector : collectors) {
+                    totalHitCount += collector.getTotalHits();
+                }
             } else {
-                assert hitCount != -1;
                 totalHitCount = hitCount;
             }
             result.topDocs(new TopDocs(totalHitCount, Lucene.EMPTY_SCORE_DOCS, 0), null);
@@ -156,7 +188,9 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
 
     abstract static class SimpleTopDocsCollectorContext extends TopDocsCollectorContext {
         private final @Nullable SortAndFormats sortAndFormats;
-        private final TopDocsCollector<?> topDocsCollector;
+        private final @Nullable ScoreDoc searchAfter;
+        private final boolean trackMaxScore;
+        private final List<TopDocsCollector<?>> topDocsCollectors = new ArrayList<>();
 
         /**
          * Ctr
@@ -171,26 +205,67 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
                                               boolean trackMaxScore) throws IOException {
             super(REASON_SEARCH_TOP_HITS, numHits);
             this.sortAndFormats = sortAndFormats;
+            this.searchAfter = searchAfter;
+            this.trackMaxScore = trackMaxScore;
+        }
+
+        @Override
+        Collector create(Collector in) throws IOException {
+            assert in == null;
+            // one collector per slice if the query is collected concurrently
+            final TopDocsCollector<?> topDocsCollector;
             if (sortAndFormats == null) {
-                this.topDocsCollector = TopScoreDocCollector.create(numHits, searchAfter);
+                topDocsCollector = TopScoreDocCollector.create(numHits, searchAfter);
             } else {
-                this.topDocsCollector = TopFieldCollector.create(sortAndFormats.sort, numHits,
+                topDocsCollector = TopFieldCollector.create(sortAndFormats.sort, numHits,
                     (FieldDoc) searchAfter, true, trackMaxScore, trackMaxScore);
             }
+            topDocsCollectors.add(topDocsCollector);
+            return topDocsCollector;
         }
 
         @Override
-        Collector create(Collector in) {
-            assert in == null;
-            return topDocsCollector;
+        boolean supportsConcurrentCollection() {
+            return true;
         }
 
         @Override
         void postProcess(QuerySearchResult result, boolean hasCollected) throws IOException {
             assert hasCollected;
-            final TopDocs topDocs = topDocsCollector.topDocs();
+            final TopDocs topDocs;
+            if (topDocsCollectors.size() == 1) {
+                topDocs = topDocsCollectors.get(0).topDocs();
+            } else {
+                topDocs = mergeSliceTopDocs();
+            }
             result.topDocs(topDocs, sortAndFormats == null ? null : sortAndFormats.formats);
         }
+
+        /**
+         * Merges the top docs of the slices. Slices are made of contiguous leaves so using the slice index as
+         * the shard index tie-breaks equal hits on doc ids, like a sequential collection would.
+         */
+        private TopDocs mergeSliceTopDocs() throws IOException {
+            final TopDocs merged;
+            if (sortAndFormats == null) {
+                final TopDocs[] sliceTopDocs = new TopDocs[topDocsCollectors.size()];
+                for (int i = 0; i < sliceTopDocs.length; i++) {
+                    sliceTopDocs[i] = topDocsCollectors.get(i).topDocs();
+                }
+                merged = TopDocs.merge(0, numHits, sliceTopDocs, true);
+            } else {
+                final TopFieldDocs[] sliceTopDocs = new TopFieldDocs[topDocsCollectors.size()];
+                for (int i = 0; i < sliceTopDocs.length; i++) {
+                    sliceTopDocs[i] = (TopFieldDocs) topDocsCollectors.get(i).topDocs();
+                }
+                merged = TopDocs.merge(sortAndFormats.sort, 0, numHits, sliceTopDocs, true);
+            }
+            for (ScoreDoc scoreDoc : merged.scoreDocs) {
+                // the shard index is set on the coordinating node
+                scoreDoc.shardIndex = -1;
+            }
+            return merged;
+        }
     }
 
     static class ScrollingTopDocsCollectorContext extends SimpleTopDocsCollectorContext {
@@ -207,6 +282,12 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
             this.numberOfShards = numberOfShards;
         }
 
+        @Override
+        boolean supportsConcurrentCollection() {
+            // the scroll context is updated from the top docs of the whole shard
+            return false;
+        }
+
         @Override
         void postProcess(QuerySearchResult result, boolean hasCollected) throws IOException {
             super.postProcess(result, hasCollected);
@@ -276,7 +357,10 @@ abstract class TopDocsCollectorContext extends QueryCollectorContext {
         final int totalNumDocs = Math.max(1, reader.numDocs());
         if (searchContext.size() == 0) {
             // no matter what the value of from is
-            return new TotalHitCountCollectorContext(reader, query, shouldCollect);
+            // post filters, min_score and terminate_after change the number of hits
+            final boolean hasFilterCollector = searchContext.parsedPostFilter() != null || searchContext.minimumScore() != null
+                || searchContext.terminateAfter() != SearchContext.DEFAULT_TERMINATE_AFTER;
+            return new TotalHitCountCollectorContext(reader, query, shouldCollect, hasFilterCollector);
         } else if (searchContext.scrollContext() != null) {
             // no matter what the value of from is
             int numDocs = Math.min(searchContext.size(), totalNumDocs);
@@ -70,7 +70,10 @@ public class ThreadPool extends AbstractComponent implements Scheduler, Closeabl
         public static final String GET = "get";
         public static final String INDEX = "index";
         public static final String BULK = "bulk";
+        public static final String BULK_PARSE = "bulk_parse";
         public static final String SEARCH = "search";
+        public static final String SEARCH_WORKER = "search_worker";
+        public static final String SEARCH_REDUCE = "search_reduce";
         public static final String MANAGEMENT = "management";
         public static final String FLUSH = "flush";
         public static final String REFRESH = "refresh";
@@ -126,7 +129,10 @@ public class ThreadPool extends AbstractComponent implements Scheduler, Closeabl
         map.put(Names.GET, ThreadPoolType.FIXED);
         map.put(Names.INDEX, ThreadPoolType.FIXED);
         map.put(Names.BULK, ThreadPoolType.FIXED);
+        map.put(Names.BULK_PARSE, ThreadPoolType.FIXED);
         map.put(Names.SEARCH, ThreadPoolType.FIXED_AUTO_QUEUE_SIZE);
+        map.put(Names.SEARCH_WORKER, ThreadPoolType.FIXED);
+        map.put(Names.SEARCH_REDUCE, ThreadPoolType.FIXED);
         map.put(Names.MANAGEMENT, ThreadPoolType.SCALING);
         map.put(Names.FLUSH, ThreadPoolType.SCALING);
         map.put(Names.REFRESH, ThreadPoolType.SCALING);
@@ -170,9 +176,16 @@ public class ThreadPool extends AbstractComponent implements Scheduler, Closeabl
         builders.put(Names.GENERIC, new ScalingExecutorBuilder(Names.GENERIC, 4, genericThreadPoolMax, TimeValue.timeValueSeconds(30)));
         builders.put(Names.INDEX, new FixedExecutorBuilder(settings, Names.INDEX, availableProcessors, 200));
         builders.put(Names.BULK, new FixedExecutorBuilder(settings, Names.BULK, availableProcessors, 200)); // now that we reuse bulk for index/delete ops
+        // separate from bulk so that parsing documents ahead of time never takes queue capacity from shard bulk requests
+        builders.put(Names.BULK_PARSE, new FixedExecutorBuilder(settings, Names.BULK_PARSE, availableProcessors, 200));
         builders.put(Names.GET, new FixedExecutorBuilder(settings, Names.GET, availableProcessors, 1000));
         builders.put(Names.SEARCH, new AutoQueueAdjustingExecutorBuilder(settings,
                         Names.SEARCH, searchThreadPoolSize(availableProcessors), 1000, 1000, 1000, 2000));
+        // unbounded queue so that slices are never rejected, the search threads that fan out slices to this pool block until all
+        // of them are collected so the number of queued slices is bounded by the size of the search pool times the number of slices
+        builders.put(Names.SEARCH_WORKER, new FixedExecutorBuilder(settings, Names.SEARCH_WORKER, availableProcessors, -1));
+        // separate from search so that helpers of the final reduce of aggregations never take queue capacity from shard requests
+        builders.put(Names.SEARCH_REDUCE, new FixedExecutorBuilder(settings, Names.SEARCH_REDUCE, availableProcessors, 200));
         builders.put(Names.MANAGEMENT, new ScalingExecutorBuilder(Names.MANAGEMENT, 1, 5, TimeValue.timeValueMinutes(5)));
         // no queue as this means clients will need to handle rejections on listener queue even if the operation succeeded
         // the assumption here is that the listeners should be very lightweight on the listeners side
@@ -0,0 +1,123 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.lucene.queries;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.search.IndexOrDocValuesQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryUtils;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+
+public class IndexSortSortedNumericDocValuesRangeQueryTests extends ESTestCase {
+
+    private static Query fallback(String field, long lower, long upper) {
+        return new IndexOrDocValuesQuery(LongPoint.newRangeQuery(field, lower, upper),
+            SortedNumericDocValuesField.newSlowRangeQuery(field, lower, upper));
+    }
+
+    public void testBasics() {
+        Query query1 = new IndexSortSortedNumericDocValuesRangeQuery("field", 1, 10, fallback("field", 1, 10));
+        Query query2 = new IndexSortSortedNumericDocValuesRangeQuery("field", 1, 10, fallback("field", 1, 10));
+        Query query3 = new IndexSortSortedNumericDocValuesRangeQuery("field", 1, 11, fallback("field", 1, 11));
+        QueryUtils.check(query1);
+        QueryUtils.checkEqual(query1, query2);
+        QueryUtils.checkUnequal(query1, query3);
+    }
+
+    public void testSameHitsAsFallback() throws IOException {
+        doTestSameHitsAsFallback(true, randomBoolean());
+    }
+
+    public void testSameHitsAsFallbackWithMissingValues() throws IOException {
+        doTestSameHitsAsFallback(false, randomBoolean());
+    }
+
+    private void doTestSameHitsAsFallback(boolean allDocsHaveValues, boolean reverse) throws IOException {
+        try (Directory dir = newDirectory()) {
+            IndexWriterConfig config = new IndexWriterConfig();
+            config.setIndexSort(new Sort(new SortedNumericSortField("timestamp", SortField.Type.LONG, reverse)));
+            RandomIndexWriter writer = new RandomIndexWriter(random(), dir, config);
+            int numDocs = randomIntBetween(1, 500);
+            for (int i = 0; i < numDocs; i++) {
+                Document doc = new Document();
+                if (allDocsHaveValues || randomBoolean()) {
+                    long value = randomLongBetween(-100, 100);
+                    doc.add(new LongPoint("timestamp", value));
+                    doc.add(new SortedNumericDocValuesField("timestamp", value));
+                }
+                writer.addDocument(doc);
+                if (rarely()) {
+                    writer.commit();
+                }
+                if (rarely()) {
+                    writer.deleteDocuments(LongPoint.newExactQuery("timestamp", randomLongBetween(-100, 100)));
+                }
+            }
+            try (IndexReader reader = writer.getReader()) {
+                IndexSearcher searcher = newSearcher(reader);
+                for (int i = 0; i < 20; i++) {
+                    long lower = randomLongBetween(-120, 120);
+                    long upper = randomLongBetween(-120, 120);
+                    Query fallback = fallback("timestamp", lower, upper);
+                    Query query = new IndexSortSortedNumericDocValuesRangeQuery("timestamp", lower, upper, fallback);
+                    assertEquals(searcher.count(fallback), searcher.count(query));
+                }
+                if (allDocsHaveValues) {
+                    IndexSortSortedNumericDocValuesRangeQuery query =
+                        new IndexSortSortedNumericDocValuesRangeQuery("timestamp", -10, 10, fallback("timestamp", -10, 10));
+                    for (LeafReaderContext leaf : reader.leaves()) {
+                        assertNotNull(query.docIdRange(leaf.reader()));
+                    }
+                }
+            }
+            writer.close();
+        }
+    }
+
+    public void testUnsortedIndexUsesFallback() throws IOException {
+        try (Directory dir = newDirectory()) {
+            RandomIndexWriter writer = new RandomIndexWriter(random(), dir, new IndexWriterConfig());
+            Document doc = new Document();
+            doc.add(new LongPoint("timestamp", 5));
+            doc.add(new SortedNumericDocValuesField("timestamp", 5));
+            writer.addDocument(doc);
+            try (IndexReader reader = writer.getReader()) {
+                IndexSortSortedNumericDocValuesRangeQuery query =
+                    new IndexSortSortedNumericDocValuesRangeQuery("timestamp", 0, 10, fallback("timestamp", 0, 10));
+                assertNull(query.docIdRange(reader.leaves().get(0).reader()));
+                assertEquals(1, newSearcher(reader).count(query));
+            }
+            writer.close();
+        }
+    }
+}
@@ -19,13 +19,17 @@
 
 package org.elasticsearch.action.admin.cluster.node.stats;
 
+import org.HdrHistogram.Histogram;
+import org.elasticsearch.action.search.BufferedAggsStats;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.util.BigArraysStats;
 import org.elasticsearch.discovery.DiscoveryStats;
 import org.elasticsearch.discovery.zen.PendingClusterStateStats;
 import org.elasticsearch.discovery.zen.PublishClusterStateStats;
 import org.elasticsearch.http.HttpStats;
+import org.elasticsearch.index.search.stats.SearchLatencyStats;
 import org.elasticsearch.indices.breaker.AllCircuitBreakerStats;
 import org.elasticsearch.indices.breaker.CircuitBreakerStats;
 import org.elasticsearch.ingest.IngestStats;
@@ -43,6 +47,7 @@ import org.elasticsearch.transport.TransportStats;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -289,6 +294,8 @@ public class NodeStatsTests extends ESTestCase {
                 } else {
                     assertEquals(adaptiveStats.getOutgoingConnections(), deserializedAdaptiveStats.getOutgoingConnections());
                     assertEquals(adaptiveStats.getRanks(), deserializedAdaptiveStats.getRanks());
+                    assertEquals(adaptiveStats.getHedgesSent(), deserializedAdaptiveStats.getHedgesSent());
+                    assertEquals(adaptiveStats.getHedgesWon(), deserializedAdaptiveStats.getHedgesWon());
                     adaptiveStats.getComputedStats().forEach((k, v) -> {
                         ResponseCollectorService.ComputedNodeStats aStats = adaptiveStats.getComputedStats().get(k);
                         ResponseCollectorService.ComputedNodeStats bStats = deserializedAdaptiveStats.getComputedStats().get(k);
@@ -298,10 +305,64 @@ public class NodeStatsTests extends ESTestCase {
                         assertEquals(aStats.responseTime, bStats.responseTime, 0.01);
                     });
                 }
+                SearchLatencyStats searchLatencyStats = nodeStats.getSearchLatencyStats();
+                SearchLatencyStats deserializedSearchLatencyStats = deserializedNodeStats.getSearchLatencyStats();
+                if (searchLatencyStats == null) {
+                    assertNull(deserializedSearchLatencyStats);
+                } else {
+                    assertEquals(searchLatencyStats.getIndices().keySet(), deserializedSearchLatencyStats.getIndices().keySet());
+                    searchLatencyStats.getIndices().forEach((index, latency) -> {
+                        SearchLatencyStats.IndexLatency deserializedLatency = deserializedSearchLatencyStats.getIndices().get(index);
+                        assertHistogramsEqual(latency.getPhases(), deserializedLatency.getPhases());
+                        assertHistogramsEqual(latency.getQueries(), deserializedLatency.getQueries());
+                        assertHistogramsEqual(latency.getAggregations(), deserializedLatency.getAggregations());
+                    });
+                }
+                BigArraysStats bigArraysStats = nodeStats.getBigArraysStats();
+                BigArraysStats deserializedBigArraysStats = deserializedNodeStats.getBigArraysStats();
+                if (bigArraysStats == null) {
+                    assertNull(deserializedBigArraysStats);
+                } else {
+                    assertEquals(bigArraysStats.isOffHeap(), deserializedBigArraysStats.isOffHeap());
+                    assertEquals(bigArraysStats.getOffHeapUsed(), deserializedBigArraysStats.getOffHeapUsed());
+                    assertEquals(bigArraysStats.getOffHeapAllocated(), deserializedBigArraysStats.getOffHeapAllocated());
+                    assertEquals(bigArraysStats.getOffHeapLimit(), deserializedBigArraysStats.getOffHeapLimit());
+                }
+                BufferedAggsStats bufferedAggsStats = nodeStats.getBufferedAggsStats();
+                BufferedAggsStats deserializedBufferedAggsStats = deserializedNodeStats.getBufferedAggsStats();
+                if (bufferedAggsStats == null) {
+                    assertNull(deserializedBufferedAggsStats);
+                } else {
+                    assertEquals(bufferedAggsStats.getCurrent(), deserializedBufferedAggsStats.getCurrent());
+                    assertEquals(bufferedAggsStats.getPeak(), deserializedBufferedAggsStats.getPeak());
+                    assertEquals(bufferedAggsStats.getPartialReduces(), deserializedBufferedAggsStats.getPartialReduces());
+                }
             }
         }
     }
 
+    private static void assertHistogramsEqual(Map<String, Histogram> expected, Map<String, Histogram> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((key, histogram) -> {
+            assertEquals(histogram.getTotalCount(), actual.get(key).getTotalCount());
+            assertEquals(histogram.getMaxValue(), actual.get(key).getMaxValue());
+            assertEquals(histogram.getValueAtPercentile(50), actual.get(key).getValueAtPercentile(50));
+        });
+    }
+
+    private static Map<String, Histogram> randomHistograms(String... keys) {
+        Map<String, Histogram> histograms = new HashMap<>();
+        for (String key : randomSubsetOf(Arrays.asList(keys))) {
+            Histogram histogram = new Histogram(2);
+            int numValues = randomIntBetween(1, 100);
+            for (int i = 0; i < numValues; i++) {
+                histogram.recordValue(randomLongBetween(0, 10_000_000));
+            }
+            histograms.put(key, histogram);
+        }
+        return histograms;
+    }
+
     private static NodeStats createNodeStats() {
         DiscoveryNode node = new DiscoveryNode("test_node", buildNewFakeTransportAddress(),
                 emptyMap(), emptySet(), VersionUtils.randomVersion(random()));
@@ -442,6 +503,8 @@ public class NodeStatsTests extends ESTestCase {
             int numNodes = randomIntBetween(0,10);
             Map<String, Long> nodeConnections = new HashMap<>();
             Map<String, ResponseCollectorService.ComputedNodeStats> nodeStats = new HashMap<>();
+            Map<String, Long> hedgesSent = new HashMap<>();
+            Map<String, Long> hedgesWon = new HashMap<>();
             for (int i = 0; i < numNodes; i++) {
                 String nodeId = randomAlphaOfLengthBetween(3, 10);
                 // add outgoing connection info
@@ -456,12 +519,40 @@ public class NodeStatsTests extends ESTestCase {
                             randomDoubleBetween(1.0, 10000000.0, true));
                     nodeStats.put(nodeId, stats);
                 }
+                // add hedging counters
+                if (rarely()) {
+                    long sent = randomLongBetween(0, 100);
+                    hedgesSent.put(nodeId, sent);
+                    hedgesWon.put(nodeId, randomLongBetween(0, sent));
+                }
+            }
+            adaptiveSelectionStats = new AdaptiveSelectionStats(nodeConnections, nodeStats, hedgesSent, hedgesWon);
+        }
+        SearchLatencyStats searchLatencyStats = null;
+        if (frequently()) {
+            Map<String, SearchLatencyStats.IndexLatency> indices = new HashMap<>();
+            int numIndices = randomIntBetween(0, 5);
+            for (int i = 0; i < numIndices; i++) {
+                indices.put(randomAlphaOfLengthBetween(3, 10), new SearchLatencyStats.IndexLatency(
+                    randomHistograms(SearchLatencyStats.CAN_MATCH, SearchLatencyStats.QUERY, SearchLatencyStats.FETCH),
+                    randomHistograms("match", "term", "bool", "range"),
+                    randomHistograms("terms", "date_histogram", "avg")));
             }
-            adaptiveSelectionStats = new AdaptiveSelectionStats(nodeConnections, nodeStats);
+            searchLatencyStats = new SearchLatencyStats(indices);
+        }
+        BigArraysStats bigArraysStats = null;
+        if (frequently()) {
+            long offHeapUsed = randomNonNegativeLong();
+            bigArraysStats = new BigArraysStats(randomBoolean(), offHeapUsed, randomLongBetween(offHeapUsed, Long.MAX_VALUE),
+                randomNonNegativeLong());
+        }
+        BufferedAggsStats bufferedAggsStats = null;
+        if (frequently()) {
+            bufferedAggsStats = new BufferedAggsStats(randomNonNegativeLong(), randomNonNegativeLong(), randomNonNegativeLong());
         }
         //TODO NodeIndicesStats are not tested here, way too complicated to create, also they need to be migrated to Writeable yet
         return new NodeStats(node, randomNonNegativeLong(), null, osStats, processStats, jvmStats, threadPoolStats,
                 fsInfo, transportStats, httpStats, allCircuitBreakerStats, scriptStats, discoveryStats,
-                ingestStats, adaptiveSelectionStats);
+                ingestStats, adaptiveSelectionStats, searchLatencyStats, bigArraysStats, bufferedAggsStats);
     }
 }
@@ -0,0 +1,178 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.bulk;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class IncrementalBulkParserTests extends ESTestCase {
+
+    private static IncrementalBulkParser newParser(long batchSizeInBytes) {
+        return new IncrementalBulkParser(BulkRequest::new, "index", "type", null, null, null, null, true, XContentType.JSON,
+            batchSizeInBytes);
+    }
+
+    private static String randomItems(int numItems) {
+        final StringBuilder body = new StringBuilder();
+        for (int i = 0; i < numItems; i++) {
+            if (rarely()) {
+                body.append("\n");
+            }
+            switch (randomIntBetween(0, 3)) {
+                case 0:
+                    body.append("{\"index\":{\"_id\":\"").append(i).append("\"}}\n");
+                    body.append("{\"field\":\"").append(randomAlphaOfLengthBetween(1, 100)).append("\"}\n");
+                    break;
+                case 1:
+                    body.append("{\"create\":{\"_index\":\"other\",\"_id\":\"").append(i).append("\"}}\n");
+                    body.append("{\"field\":\"").append(randomAlphaOfLengthBetween(1, 100)).append("\"}\n");
+                    break;
+                case 2:
+                    body.append("{\"delete\":{\"_id\":\"").append(i).append("\"}}\n");
+                    break;
+                default:
+                    body.append("{\"update\":{\"_id\":\"").append(i).append("\"}}\n");
+                    body.append("{\"doc\":{\"field\":\"").append(randomAlphaOfLengthBetween(1, 100)).append("\"}}\n");
+                    break;
+            }
+        }
+        return body.toString();
+    }
+
+    private static List<BulkRequest> parseInChunks(IncrementalBulkParser parser, byte[] body) throws IOException {
+        final List<BulkRequest> requests = new ArrayList<>();
+        int offset = 0;
+        do {
+            final int length = randomIntBetween(0, body.length - offset);
+            final boolean isLast = offset + length == body.length;
+            final BulkRequest request = parser.parse(new BytesArray(body, offset, length), isLast);
+            if (isLast) {
+                assertThat(request, notNullValue());
+            }
+            if (request != null) {
+                requests.add(request);
+            }
+            offset += length;
+        } while (offset < body.length);
+        return requests;
+    }
+
+    public void testParsesItemsLikeBulkRequest() throws IOException {
+        final byte[] body = randomItems(randomIntBetween(1, 100)).getBytes(StandardCharsets.UTF_8);
+        final BulkRequest expected = new BulkRequest();
+        expected.add(new BytesArray(body), "index", "type", null, null, null, null, null, true, XContentType.JSON);
+
+        final List<DocWriteRequest> items = new ArrayList<>();
+        for (BulkRequest request : parseInChunks(newParser(randomIntBetween(1, body.length)), body)) {
+            items.addAll(request.requests());
+        }
+        assertThat(items.size(), equalTo(expected.numberOfActions()));
+        for (int i = 0; i < items.size(); i++) {
+            final DocWriteRequest item = items.get(i);
+            final DocWriteRequest expectedItem = expected.requests().get(i);
+            assertThat(item.opType(), equalTo(expectedItem.opType()));
+            assertThat(item.index(), equalTo(expectedItem.index()));
+            assertThat(item.type(), equalTo(expectedItem.type()));
+            assertThat(item.id(), equalTo(expectedItem.id()));
+            if (item instanceof IndexRequest) {
+                assertThat(((IndexRequest) item).source(), equalTo(((IndexRequest) expectedItem).source()));
+            } else if (item instanceof UpdateRequest) {
+                assertThat(((UpdateRequest) item).doc().source(), equalTo(((UpdateRequest) expectedItem).doc().source()));
+            }
+        }
+    }
+
+    public void testReturnsBatchesBeforeTheLastChunk() throws IOException {
+        final int numItems = randomIntBetween(2, 20);
+        final IncrementalBulkParser parser = newParser(1);
+        for (int i = 0; i < numItems; i++) {
+            final String action = "{\"index\":{\"_id\":\"" + i + "\"}}\n";
+            final String source = "{\"field\":\"" + randomAlphaOfLength(10) + "\"}\n";
+            // the item isn't complete without its source
+            assertThat(parser.parse(new BytesArray(action), false), nullValue());
+            assertThat(parser.bufferedBytes(), equalTo((long) action.length()));
+            final BulkRequest request = parser.parse(new BytesArray(source), false);
+            assertThat(request, notNullValue());
+            assertThat(request.numberOfActions(), equalTo(1));
+            assertThat(request.requests().get(0).id(), equalTo(Integer.toString(i)));
+            assertThat(parser.bufferedBytes(), equalTo(0L));
+        }
+        assertThat(parser.parse(BytesArray.EMPTY, true).numberOfActions(), equalTo(0));
+    }
+
+    public void testOnlyBuffersTheIncompleteItem() throws IOException {
+        final IncrementalBulkParser parser = newParser(1);
+        final String items = randomItems(randomIntBetween(1, 10));
+        final String incomplete = "{\"index\":{\"_id\":\"incomplete\"}}\n{\"field\":";
+        final BulkRequest request = parser.parse(new BytesArray(items + incomplete), false);
+        assertThat(request, notNullValue());
+        assertThat(parser.bufferedBytes(), equalTo((long) incomplete.length()));
+        final BulkRequest last = parser.parse(new BytesArray("\"value\"}\n"), true);
+        assertThat(last.numberOfActions(), equalTo(1));
+        assertThat(last.requests().get(0).id(), equalTo("incomplete"));
+        assertThat(((IndexRequest) last.requests().get(0)).source(), equalTo(new BytesArray("{\"field\":\"value\"}")));
+        assertThat(parser.bufferedBytes(), equalTo(0L));
+    }
+
+    public void testBuffersUntilBatchIsFull() throws IOException {
+        final String item = "{\"delete\":{\"_id\":\"1\"}}\n";
+        final int itemsPerBatch = randomIntBetween(2, 10);
+        final IncrementalBulkParser parser = newParser(item.length() * itemsPerBatch);
+        for (int i = 1; i < itemsPerBatch; i++) {
+            assertThat(parser.parse(new BytesArray(item), false), nullValue());
+            assertThat(parser.bufferedBytes(), lessThan((long) item.length() * itemsPerBatch));
+        }
+        assertThat(parser.parse(new BytesArray(item), false).numberOfActions(), equalTo(itemsPerBatch));
+    }
+
+    public void testRequiresNewlineAtTheEnd() throws IOException {
+        final IncrementalBulkParser parser = newParser(randomIntBetween(1, 100));
+        parser.parse(new BytesArray("{\"index\":{\"_id\":\"1\"}}\n"), false);
+        final IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+            () -> parser.parse(new BytesArray("{\"field\":\"value\"}"), true));
+        assertThat(e.getMessage(), containsString("The bulk request must be terminated by a newline"));
+    }
+
+    public void testReportsLineOfMalformedItems() throws IOException {
+        final IncrementalBulkParser parser = newParser(1);
+        assertThat(parser.parse(new BytesArray("{\"index\":{\"_id\":\"1\"}}\n{\"field\":\"value\"}\n"), false), notNullValue());
+        assertThat(parser.parse(new BytesArray("{\"delete\":{\"_id\":\"2\"}}\n"), false), notNullValue());
+        final BytesReference malformed = new BytesArray("{\"index\":{\"_unknown\":\"3\"}}\n{\"field\":\"value\"}\n");
+        final IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> parser.parse(malformed, false));
+        assertThat(e.getMessage(), equalTo("failed to parse the bulk items starting at line [4]"));
+        assertThat(e.getCause().getMessage(), containsString("Action/metadata line [1] contains an unknown parameter [_unknown]"));
+    }
+}
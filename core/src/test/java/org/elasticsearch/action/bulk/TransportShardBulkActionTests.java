@@ -19,6 +19,8 @@
 
 package org.elasticsearch.action.bulk;
 
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ElasticsearchStatusException;
 import org.elasticsearch.Version;
@@ -37,6 +39,10 @@ import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.Requests;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.routing.RecoverySource;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.routing.ShardRoutingState;
+import org.elasticsearch.cluster.routing.TestShardRouting;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentType;
@@ -45,14 +51,18 @@ import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.engine.VersionConflictEngineException;
 import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.index.mapper.Mapping;
+import org.elasticsearch.index.seqno.SequenceNumbers;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.IndexShardTestCase;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.LongSupplier;
@@ -257,6 +267,128 @@ public class TransportShardBulkActionTests extends IndexShardTestCase {
         closeShards(shard);
     }
 
+    private IndexShard newStartedShardWithMapping() throws IOException {
+        ShardRouting routing = TestShardRouting.newShardRouting(shardId, randomAlphaOfLength(10), true,
+            ShardRoutingState.INITIALIZING, RecoverySource.StoreRecoverySource.EMPTY_STORE_INSTANCE);
+        IndexShard shard = newShard(routing, indexMetaData());
+        recoverShardFromStore(shard);
+        return shard;
+    }
+
+    private static long countTerm(IndexShard shard, String field, String value) throws IOException {
+        shard.refresh("test");
+        try (Engine.Searcher searcher = shard.acquireSearcher("test")) {
+            return searcher.searcher().count(new TermQuery(new Term(field, value)));
+        }
+    }
+
+    public void testPreParseBulkIndexRequests() throws Exception {
+        IndexShard shard = newStartedShardWithMapping();
+
+        BulkItemRequest[] items = new BulkItemRequest[randomIntBetween(2, 20)];
+        boolean[] malformed = new boolean[items.length];
+        for (int i = 0; i < items.length; i++) {
+            IndexRequest writeRequest = new IndexRequest("index", "type", "id_" + i).opType(DocWriteRequest.OpType.INDEX);
+            malformed[i] = rarely();
+            if (malformed[i]) {
+                writeRequest.source("{\"foo\":", XContentType.JSON);
+                assertNull(shard.preParseIndexOperation(TransportShardBulkAction.sourceToParse(writeRequest)));
+            } else {
+                writeRequest.source(Requests.INDEX_CONTENT_TYPE, "foo", "bar-" + i);
+                assertNotNull(shard.preParseIndexOperation(TransportShardBulkAction.sourceToParse(writeRequest)));
+            }
+            items[i] = new BulkItemRequest(i, writeRequest);
+        }
+        BulkShardRequest bulkShardRequest = new BulkShardRequest(shardId, RefreshPolicy.NONE, items);
+
+        WritePrimaryResult<BulkShardRequest, BulkShardResponse> result;
+        try (BulkItemPreParser preParser = BulkItemPreParser.start(bulkShardRequest, shard,
+                threadPool.executor(ThreadPool.Names.BULK_PARSE), randomIntBetween(1, 4), logger)) {
+            result = TransportShardBulkAction.performOnPrimary(bulkShardRequest, shard, null, threadPool::absoluteTimeInMillis,
+                new NoopMappingUpdatePerformer(), preParser);
+        }
+
+        // the items are still applied in order
+        long lastSeqNo = SequenceNumbers.NO_OPS_PERFORMED;
+        int successful = 0;
+        for (int i = 0; i < items.length; i++) {
+            BulkItemResponse response = result.finalResponseIfSuccessful.getResponses()[i];
+            assertThat(response.getId(), equalTo("id_" + i));
+            assertThat(response.isFailed(), equalTo(malformed[i]));
+            if (malformed[i] == false) {
+                assertTrue(response.getResponse().getSeqNo() > lastSeqNo);
+                lastSeqNo = response.getResponse().getSeqNo();
+                successful++;
+                assertThat(countTerm(shard, "foo.keyword", "bar-" + i), equalTo(1L));
+            }
+        }
+        assertDocCount(shard, successful);
+        closeShards(shard);
+    }
+
+    public void testPreParseOnlyWithinWindow() throws Exception {
+        IndexShard shard = newStartedShardWithMapping();
+        final int window = BulkItemPreParser.ITEMS_AHEAD_PER_HELPER;
+        BulkItemRequest[] items = new BulkItemRequest[window + randomIntBetween(2, 10)];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new BulkItemRequest(i, new IndexRequest("index", "type", "id_" + i).source(Requests.INDEX_CONTENT_TYPE,
+                "foo", "bar-" + i));
+        }
+        BulkShardRequest bulkShardRequest = new BulkShardRequest(shardId, RefreshPolicy.NONE, items);
+
+        // helpers only run when we run them
+        List<Runnable> helpers = new ArrayList<>();
+        try (BulkItemPreParser preParser = BulkItemPreParser.start(bulkShardRequest, shard, helpers::add, 1, logger)) {
+            assertThat(helpers.size(), equalTo(1));
+            helpers.remove(0).run();
+            // the helper stops at the end of the window and isn't started again until the window moves
+            assertThat(helpers.size(), equalTo(0));
+            // the first item is left to the thread that applies the items
+            assertNull(preParser.take(0));
+            for (int i = 1; i <= window; i++) {
+                assertNotNull(preParser.take(i));
+                // the window moved, so another helper was queued
+                assertThat(helpers.size(), equalTo(1));
+            }
+            // the item after the window has not been parsed
+            assertNull(preParser.take(window + 1));
+        }
+        closeShards(shard);
+    }
+
+    public void testPreParsedDocumentRequiresUnchangedMapping() throws Exception {
+        IndexShard shard = newStartedShardWithMapping();
+        // the pre-parsed document and the source that is passed when applying differ so that we can tell which one was indexed
+        IndexShard.PreParsedDocument preParsed = shard.preParseIndexOperation(TransportShardBulkAction.sourceToParse(
+            new IndexRequest("index", "type", "1").source(Requests.INDEX_CONTENT_TYPE, "foo", "pre-parsed")));
+        assertNotNull(preParsed);
+        Engine.IndexResult result = shard.applyIndexOperationOnPrimary(Versions.MATCH_ANY, VersionType.INTERNAL,
+            TransportShardBulkAction.sourceToParse(
+                new IndexRequest("index", "type", "1").source(Requests.INDEX_CONTENT_TYPE, "foo", "source")),
+            IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP, false, update -> fail("no mapping update expected"), preParsed);
+        assertFalse(result.hasFailure());
+        assertThat(countTerm(shard, "foo.keyword", "pre-parsed"), equalTo(1L));
+        assertThat(countTerm(shard, "foo.keyword", "source"), equalTo(0L));
+
+        preParsed = shard.preParseIndexOperation(TransportShardBulkAction.sourceToParse(
+            new IndexRequest("index", "type", "2").source(Requests.INDEX_CONTENT_TYPE, "foo", "pre-parsed")));
+        assertNotNull(preParsed);
+        // adding a sub field replaces the document mapper of the type, the document must be parsed again
+        updateMappings(shard, IndexMetaData.builder(shard.indexSettings().getIndexMetaData())
+            .putMapping("type", "{\"properties\":{\"foo\":{\"type\":\"text\",\"fields\":" +
+                "{\"keyword\":{\"type\":\"keyword\",\"ignore_above\":256},\"raw\":{\"type\":\"keyword\"}}}}}")
+            .build());
+        result = shard.applyIndexOperationOnPrimary(Versions.MATCH_ANY, VersionType.INTERNAL,
+            TransportShardBulkAction.sourceToParse(
+                new IndexRequest("index", "type", "2").source(Requests.INDEX_CONTENT_TYPE, "foo", "source")),
+            IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP, false, update -> fail("no mapping update expected"), preParsed);
+        assertFalse(result.hasFailure());
+        assertThat(countTerm(shard, "foo.keyword", "source"), equalTo(1L));
+        assertThat(countTerm(shard, "foo.raw", "source"), equalTo(1L));
+        assertThat(countTerm(shard, "foo.keyword", "pre-parsed"), equalTo(1L));
+        closeShards(shard);
+    }
+
     public void testExecuteBulkIndexRequestWithRejection() throws Exception {
         IndexMetaData metaData = indexMetaData();
         IndexShard shard = newStartedShard(true);
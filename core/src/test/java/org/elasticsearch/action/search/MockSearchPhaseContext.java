@@ -21,6 +21,7 @@ package org.elasticsearch.action.search;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.action.OriginalIndices;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.internal.InternalSearchResponse;
@@ -49,6 +50,7 @@ public final class MockSearchPhaseContext implements SearchPhaseContext {
     Set<Long> releasedSearchContexts = new HashSet<>();
     SearchRequest searchRequest = new SearchRequest();
     AtomicInteger phasesExecuted = new AtomicInteger();
+    List<Releasable> releasables = Collections.synchronizedList(new ArrayList<>());
 
     public MockSearchPhaseContext(int numShards) {
         this.numShards = numShards;
@@ -125,6 +127,11 @@ public final class MockSearchPhaseContext implements SearchPhaseContext {
         }
     }
 
+    @Override
+    public void addReleasable(Releasable releasable) {
+        releasables.add(releasable);
+    }
+
     @Override
     public void execute(Runnable command) {
         command.run();
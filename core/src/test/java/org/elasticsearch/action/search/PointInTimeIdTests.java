@@ -0,0 +1,62 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PointInTimeIdTests extends ESTestCase {
+
+    public void testEncodeDecode() {
+        String[] indices = new String[randomIntBetween(1, 5)];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = randomAlphaOfLengthBetween(1, 10);
+        }
+        IndicesOptions indicesOptions = IndicesOptions.fromOptions(randomBoolean(), randomBoolean(), randomBoolean(), randomBoolean());
+        List<PointInTimeId.ShardReader> shards = new ArrayList<>();
+        int numShards = randomIntBetween(0, 10);
+        for (int i = 0; i < numShards; i++) {
+            ShardId shardId = new ShardId(randomFrom(indices), randomAlphaOfLength(10), randomIntBetween(0, 10));
+            shards.add(new PointInTimeId.ShardReader(shardId, randomAlphaOfLengthBetween(1, 10), randomNonNegativeLong()));
+        }
+
+        PointInTimeId decoded = PointInTimeId.decode(new PointInTimeId(indices, indicesOptions, shards).encode());
+        assertArrayEquals(indices, decoded.getIndices());
+        assertEquals(indicesOptions, decoded.getIndicesOptions());
+        assertEquals(numShards, decoded.getShards().size());
+        for (int i = 0; i < numShards; i++) {
+            PointInTimeId.ShardReader expected = shards.get(i);
+            PointInTimeId.ShardReader actual = decoded.getShards().get(i);
+            assertEquals(expected.getShardId(), actual.getShardId());
+            assertEquals(expected.getNodeId(), actual.getNodeId());
+            assertEquals(expected.getReaderId(), actual.getReaderId());
+        }
+    }
+
+    public void testDecodeInvalidId() {
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> PointInTimeId.decode(randomAlphaOfLength(12)));
+        assertEquals("Cannot parse point in time id", e.getMessage());
+    }
+}
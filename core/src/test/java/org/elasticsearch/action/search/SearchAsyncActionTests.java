@@ -27,15 +27,23 @@ import org.elasticsearch.cluster.routing.GroupShardsIterator;
 import org.elasticsearch.cluster.routing.RecoverySource;
 import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.cluster.routing.UnassignedInfo;
+import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.node.AdaptiveSelectionStats;
+import org.elasticsearch.node.ResponseCollectorService;
 import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.internal.AliasFilter;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.Transport;
 import org.elasticsearch.transport.TransportException;
 import org.elasticsearch.transport.TransportRequest;
@@ -43,6 +51,7 @@ import org.elasticsearch.transport.TransportRequestOptions;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -355,6 +364,122 @@ public class SearchAsyncActionTests extends ESTestCase {
         executor.shutdown();
     }
 
+    public void testHedging() throws Exception {
+        SearchRequest request = new SearchRequest();
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        ActionListener<SearchResponse> responseListener = ActionListener.wrap(r -> {}, failure::set);
+        DiscoveryNode slowNode = new DiscoveryNode("node_1", buildNewFakeTransportAddress(), Version.CURRENT);
+        DiscoveryNode fastNode = new DiscoveryNode("node_2", buildNewFakeTransportAddress(), Version.CURRENT);
+        int numShards = randomIntBetween(1, 5);
+        ArrayList<SearchShardIterator> list = new ArrayList<>();
+        for (int i = 0; i < numShards; i++) {
+            ShardId shardId = new ShardId(new Index("idx", "_na_"), i);
+            ShardRouting primary = ShardRouting.newUnassigned(shardId, true, RecoverySource.StoreRecoverySource.EMPTY_STORE_INSTANCE,
+                new UnassignedInfo(UnassignedInfo.Reason.INDEX_CREATED, "foobar")).initialize(slowNode.getId(), i + "p", 0).moveToStarted();
+            ShardRouting replica = ShardRouting.newUnassigned(shardId, false, RecoverySource.PeerRecoverySource.INSTANCE,
+                new UnassignedInfo(UnassignedInfo.Reason.INDEX_CREATED, "foobar")).initialize(fastNode.getId(), i + "r", 0).moveToStarted();
+            list.add(new SearchShardIterator(null, shardId, Arrays.asList(primary, replica), OriginalIndices.NONE));
+        }
+        GroupShardsIterator<SearchShardIterator> shardsIter = new GroupShardsIterator<>(list);
+
+        ThreadPool threadPool = new TestThreadPool(getTestName());
+        Settings settings = Settings.builder()
+            .put(ShardRequestHedging.HEDGING_ENABLED_SETTING.getKey(), true)
+            .put(ShardRequestHedging.HEDGING_MIN_DELAY_SETTING.getKey(), "1ms")
+            .put(ShardRequestHedging.HEDGING_MAX_OUTSTANDING_PER_NODE_SETTING.getKey(), numShards)
+            .build();
+        ClusterSettings clusterSettings = new ClusterSettings(settings, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS);
+        ResponseCollectorService collector = new ResponseCollectorService(settings,
+            new ClusterService(settings, clusterSettings, threadPool, Collections.emptyMap()));
+        for (int i = 0; i < 20; i++) {
+            collector.addNodeStatistics(slowNode.getId(), 1, TimeValue.timeValueMillis(1).nanos(), 1000);
+        }
+        ShardRequestHedging hedging = new ShardRequestHedging(settings, clusterSettings, threadPool, collector);
+
+        Set<Long> freedContexts = ConcurrentCollections.newConcurrentSet();
+        SearchTransportService transportService = new SearchTransportService(Settings.EMPTY, null, null) {
+            @Override
+            public void sendFreeContext(Transport.Connection connection, long contextId, OriginalIndices originalIndices) {
+                assertEquals(slowNode, connection.getNode());
+                freedContexts.add(contextId);
+            }
+        };
+        Map<String, Transport.Connection> lookup = new HashMap<>();
+        lookup.put(slowNode.getId(), new MockConnection(slowNode));
+        lookup.put(fastNode.getId(), new MockConnection(fastNode));
+        Map<String, AliasFilter> aliasFilters = Collections.singletonMap("_na_", new AliasFilter(null, Strings.EMPTY_ARRAY));
+        AtomicInteger contextIdGenerator = new AtomicInteger(0);
+        Map<ShardId, Runnable> slowResponses = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        try {
+            AbstractSearchAsyncAction<TestSearchPhaseResult> asyncAction =
+                new AbstractSearchAsyncAction<TestSearchPhaseResult>(
+                    "test",
+                    logger,
+                    transportService,
+                    (cluster, node) -> lookup.get(node),
+                    aliasFilters,
+                    Collections.emptyMap(),
+                    executor,
+                    request,
+                    responseListener,
+                    shardsIter,
+                    new TransportSearchAction.SearchTimeProvider(0, 0, () -> 0),
+                    0,
+                    null,
+                    new InitialSearchPhase.ArraySearchPhaseResults<>(shardsIter.size()),
+                    request.getMaxConcurrentShardRequests(),
+                    hedging) {
+
+                    @Override
+                    protected void executePhaseOnShard(SearchShardIterator shardIt, ShardRouting shard,
+                                                       SearchActionListener<TestSearchPhaseResult> listener) {
+                        DiscoveryNode node = getConnection(null, shard.currentNodeId()).getNode();
+                        TestSearchPhaseResult result = new TestSearchPhaseResult(contextIdGenerator.incrementAndGet(), node);
+                        if (node.equals(slowNode)) {
+                            // the slow node only answers once the search is done
+                            slowResponses.put(shard.shardId(), () -> listener.onResponse(result));
+                        } else {
+                            new Thread(() -> listener.onResponse(result)).start();
+                        }
+                    }
+
+                    @Override
+                    protected SearchPhase getNextPhase(SearchPhaseResults<TestSearchPhaseResult> results,
+                                                       SearchPhaseContext context) {
+                        return new SearchPhase("test") {
+                            @Override
+                            public void run() throws IOException {
+                                for (int i = 0; i < results.getNumShards(); i++) {
+                                    assertEquals(fastNode, results.getAtomicArray().get(i).node);
+                                }
+                                latch.countDown();
+                            }
+                        };
+                    }
+                };
+            asyncAction.start();
+            latch.await();
+            assertNull(failure.get());
+            SearchResponse searchResponse = asyncAction.buildSearchResponse(null, null);
+            assertEquals(numShards, searchResponse.getSuccessfulShards());
+            assertEquals(0, searchResponse.getFailedShards());
+            assertEquals(numShards, slowResponses.size());
+            AdaptiveSelectionStats stats = collector.getAdaptiveStats(Collections.emptyMap());
+            assertEquals(Long.valueOf(numShards), stats.getHedgesSent().get(fastNode.getId()));
+            assertEquals(Long.valueOf(numShards), stats.getHedgesWon().get(fastNode.getId()));
+            assertEquals(0, hedging.getOutstandingHedges(fastNode.getId()));
+
+            // the late responses of the slow node are discarded and their contexts released
+            slowResponses.values().forEach(Runnable::run);
+            assertBusy(() -> assertEquals(numShards, freedContexts.size()));
+        } finally {
+            executor.shutdown();
+            terminate(threadPool);
+        }
+    }
+
     static GroupShardsIterator<SearchShardIterator> getShardsIter(String index, OriginalIndices originalIndices, int numShards,
                                                      boolean doReplicas, DiscoveryNode primaryNode, DiscoveryNode replicaNode) {
         ArrayList<SearchShardIterator> list = new ArrayList<>();
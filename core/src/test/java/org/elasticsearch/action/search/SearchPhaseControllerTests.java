@@ -22,16 +22,24 @@ package org.elasticsearch.action.search;
 import com.carrotsearch.randomizedtesting.RandomizedContext;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.text.Text;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.concurrent.AtomicArray;
 import org.elasticsearch.index.Index;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.BucketOrder;
+import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.bucket.terms.LongTerms;
 import org.elasticsearch.search.aggregations.metrics.max.InternalMax;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.fetch.FetchSearchResult;
@@ -52,11 +60,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
@@ -313,13 +324,15 @@ public class SearchPhaseControllerTests extends ESTestCase {
         result.setShardIndex(1);
         consumer.consumeResult(result);
         int numTotalReducePhases = 1;
+        // aggs are always buffered, even if there are less shards than the batched reduce size
+        assertThat(consumer, instanceOf(SearchPhaseController.QueryPhaseResultConsumer.class));
         if (bufferSize == 2) {
-            assertThat(consumer, instanceOf(SearchPhaseController.QueryPhaseResultConsumer.class));
             assertEquals(1, ((SearchPhaseController.QueryPhaseResultConsumer)consumer).getNumReducePhases());
             assertEquals(2, ((SearchPhaseController.QueryPhaseResultConsumer)consumer).getNumBuffered());
             numTotalReducePhases++;
         } else {
-            assertThat(consumer, not(instanceOf(SearchPhaseController.QueryPhaseResultConsumer.class)));
+            assertEquals(0, ((SearchPhaseController.QueryPhaseResultConsumer)consumer).getNumReducePhases());
+            assertEquals(3, ((SearchPhaseController.QueryPhaseResultConsumer)consumer).getNumBuffered());
         }
 
         SearchPhaseController.ReducedQueryPhase reduce = consumer.reduce();
@@ -328,6 +341,124 @@ public class SearchPhaseControllerTests extends ESTestCase {
         assertEquals(3.0D, max.getValue(), 0.0D);
     }
 
+    public void testConsumerReducesWhenBufferedAggsExceedMaxSize() {
+        final CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(Settings.EMPTY,
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        final BigArrays bigArrays = new BigArrays(Settings.EMPTY, breakerService);
+        // a single buffered result is enough to exceed the maximum size
+        final SearchPhaseController controller = new SearchPhaseController(Settings.builder()
+            .put(SearchPhaseController.MAX_BUFFERED_AGGS_SIZE_SETTING.getKey(), "1b").build(), bigArrays, null);
+        final int expectedNumResults = randomIntBetween(4, 20);
+        SearchRequest request = new SearchRequest();
+        // the default batched reduce size is larger than the number of shards
+        request.source(new SearchSourceBuilder().aggregation(AggregationBuilders.max("test")).size(0));
+        InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> consumer =
+            controller.newSearchPhaseResults(request, expectedNumResults);
+        assertThat(consumer, instanceOf(SearchPhaseController.QueryPhaseResultConsumer.class));
+        final CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < expectedNumResults; i++) {
+            QuerySearchResult result = new QuerySearchResult(i, new SearchShardTarget("node", new Index("a", "b"), i, null));
+            result.topDocs(new TopDocs(0, new ScoreDoc[0], 0.0F), new DocValueFormat[0]);
+            double value = randomDouble();
+            max = Math.max(max, value);
+            InternalAggregations aggs = new InternalAggregations(Collections.singletonList(new InternalMax("test", value,
+                DocValueFormat.RAW, Collections.emptyList(), Collections.emptyMap())));
+            result.aggregations(aggs);
+            result.setShardIndex(i);
+            consumer.consumeResult(result);
+            SearchPhaseController.QueryPhaseResultConsumer resultConsumer = (SearchPhaseController.QueryPhaseResultConsumer) consumer;
+            assertThat(resultConsumer.getNumBuffered(), lessThanOrEqualTo(2));
+            assertEquals(resultConsumer.getBufferedBytes(), breaker.getUsed());
+            assertEquals(resultConsumer.getBufferedBytes(), controller.bufferedAggsStats().getCurrent().getBytes());
+        }
+        SearchPhaseController.QueryPhaseResultConsumer resultConsumer = (SearchPhaseController.QueryPhaseResultConsumer) consumer;
+        assertEquals(expectedNumResults - 2, resultConsumer.getNumReducePhases());
+        final long peakBufferedBytes = resultConsumer.getPeakBufferedBytes();
+        assertThat(peakBufferedBytes, greaterThan(0L));
+        SearchPhaseController.ReducedQueryPhase reduce = consumer.reduce();
+        assertEquals(expectedNumResults - 1, reduce.numReducePhases);
+        assertEquals(max, ((InternalMax) reduce.aggregations.asList().get(0)).getValue(), 0.0D);
+        // the buffered results are released from the breaker once reduced
+        assertEquals(0, breaker.getUsed());
+        // the peak is reported in the response and in the node stats
+        assertEquals(peakBufferedBytes, reduce.peakBufferedAggsBytes);
+        assertEquals(peakBufferedBytes, reduce.buildResponse(SearchHits.empty()).getPeakBufferedAggsBytes());
+        final BufferedAggsStats stats = controller.bufferedAggsStats();
+        assertEquals(0, stats.getCurrent().getBytes());
+        assertEquals(peakBufferedBytes, stats.getPeak().getBytes());
+        assertEquals(expectedNumResults - 2, stats.getPartialReduces());
+    }
+
+    public void testConsumerAccountsReducedAggsBySize() {
+        final CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(Settings.EMPTY,
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        final BigArrays bigArrays = new BigArrays(Settings.EMPTY, breakerService);
+        final SearchPhaseController controller = new SearchPhaseController(Settings.builder()
+            .put(SearchPhaseController.MAX_BUFFERED_AGGS_SIZE_SETTING.getKey(), "1b").build(), bigArrays, null);
+        final int expectedNumResults = randomIntBetween(4, 20);
+        SearchRequest request = new SearchRequest();
+        request.source(new SearchSourceBuilder().aggregation(AggregationBuilders.terms("test")).size(0));
+        InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> consumer =
+            controller.newSearchPhaseResults(request, expectedNumResults);
+        assertThat(consumer, instanceOf(SearchPhaseController.QueryPhaseResultConsumer.class));
+        SearchPhaseController.QueryPhaseResultConsumer resultConsumer = (SearchPhaseController.QueryPhaseResultConsumer) consumer;
+        final CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        long shardResultBytes = 0;
+        for (int i = 0; i < expectedNumResults; i++) {
+            QuerySearchResult result = new QuerySearchResult(i, new SearchShardTarget("node", new Index("a", "b"), i, null));
+            result.topDocs(new TopDocs(0, new ScoreDoc[0], 0.0F), new DocValueFormat[0]);
+            // every shard returns a different term, so the reduced results grow with the number of shards
+            LongTerms.Bucket bucket = new LongTerms.Bucket(i, 1, InternalAggregations.EMPTY, false, 0, DocValueFormat.RAW);
+            InternalAggregations aggs = new InternalAggregations(Collections.singletonList(new LongTerms("test", BucketOrder.count(false),
+                expectedNumResults, 1, Collections.emptyList(), Collections.emptyMap(), DocValueFormat.RAW, expectedNumResults, false, 0,
+                Collections.singletonList(bucket), 0)));
+            shardResultBytes = Math.max(shardResultBytes, SearchPhaseController.estimateAggsSize(aggs));
+            result.aggregations(aggs);
+            result.setShardIndex(i);
+            consumer.consumeResult(result);
+            assertEquals(resultConsumer.getBufferedBytes(), breaker.getUsed());
+        }
+        assertEquals(expectedNumResults - 2, resultConsumer.getNumReducePhases());
+        // the partially reduced result holds the terms of all but the last shard and is accounted for by its own size
+        // rather than by the size of the largest shard result it replaced
+        assertThat(resultConsumer.getBufferedBytes(), greaterThan(2 * shardResultBytes));
+        SearchPhaseController.ReducedQueryPhase reduce = consumer.reduce();
+        assertEquals(expectedNumResults, ((LongTerms) reduce.aggregations.asList().get(0)).getBuckets().size());
+        assertEquals(0, breaker.getUsed());
+    }
+
+    public void testConsumerFailsReduceWhenBreakerTrips() {
+        final CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(Settings.builder()
+            .put(HierarchyCircuitBreakerService.REQUEST_CIRCUIT_BREAKER_LIMIT_SETTING.getKey(), "1kb").build(),
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        final BigArrays bigArrays = new BigArrays(Settings.EMPTY, breakerService);
+        final SearchPhaseController controller = new SearchPhaseController(Settings.EMPTY, bigArrays, null);
+        final int expectedNumResults = randomIntBetween(2, 10);
+        SearchRequest request = new SearchRequest();
+        request.source(new SearchSourceBuilder().aggregation(AggregationBuilders.terms("test")).size(0));
+        InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> consumer =
+            controller.newSearchPhaseResults(request, expectedNumResults);
+        final CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        for (int i = 0; i < expectedNumResults; i++) {
+            QuerySearchResult result = new QuerySearchResult(i, new SearchShardTarget("node", new Index("a", "b"), i, null));
+            result.topDocs(new TopDocs(0, new ScoreDoc[0], 0.0F), new DocValueFormat[0]);
+            // every shard result is estimated to be larger than the breaker limit
+            List<LongTerms.Bucket> buckets = new ArrayList<>();
+            for (int j = 0; j < 10; j++) {
+                buckets.add(new LongTerms.Bucket(j, 1, InternalAggregations.EMPTY, false, 0, DocValueFormat.RAW));
+            }
+            result.aggregations(new InternalAggregations(Collections.singletonList(new LongTerms("test", BucketOrder.count(false),
+                10, 1, Collections.emptyList(), Collections.emptyMap(), DocValueFormat.RAW, 10, false, 0, buckets, 0))));
+            result.setShardIndex(i);
+            consumer.consumeResult(result);
+            assertEquals(0, breaker.getUsed());
+        }
+        expectThrows(CircuitBreakingException.class, consumer::reduce);
+        assertEquals(0, breaker.getUsed());
+        assertEquals(0, controller.bufferedAggsStats().getCurrent().getBytes());
+    }
+
     public void testConsumerConcurrently() throws InterruptedException {
         int expectedNumResults = randomIntBetween(1, 100);
         int bufferSize = randomIntBetween(2, 200);
@@ -399,6 +530,45 @@ public class SearchPhaseControllerTests extends ESTestCase {
     }
 
 
+    public void testConcurrentFinalReduce() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(randomIntBetween(1, 4));
+        try {
+            final Settings settings = Settings.builder()
+                .put(SearchPhaseController.MAX_CONCURRENT_AGGS_REDUCE_SETTING.getKey(), randomIntBetween(1, 8)).build();
+            final SearchPhaseController controller =
+                new SearchPhaseController(settings, BigArrays.NON_RECYCLING_INSTANCE, null, executor);
+            int expectedNumResults = randomIntBetween(1, 20);
+            int numAggs = randomIntBetween(1, 40);
+            SearchRequest request = new SearchRequest();
+            request.source(new SearchSourceBuilder().aggregation(AggregationBuilders.avg("foo")).size(0));
+            InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> consumer =
+                controller.newSearchPhaseResults(request, expectedNumResults);
+            double[] max = new double[numAggs];
+            for (int i = 0; i < expectedNumResults; i++) {
+                QuerySearchResult result = new QuerySearchResult(i, new SearchShardTarget("node", new Index("a", "b"), i, null));
+                result.topDocs(new TopDocs(1, new ScoreDoc[0], 1), new DocValueFormat[0]);
+                List<InternalAggregation> aggs = new ArrayList<>();
+                for (int j = 0; j < numAggs; j++) {
+                    double value = randomIntBetween(1, 1000);
+                    max[j] = Math.max(max[j], value);
+                    aggs.add(new InternalMax("test" + j, value, DocValueFormat.RAW, Collections.emptyList(), Collections.emptyMap()));
+                }
+                result.aggregations(new InternalAggregations(aggs));
+                result.setShardIndex(i);
+                result.size(0);
+                consumer.consumeResult(result);
+            }
+            SearchPhaseController.ReducedQueryPhase reduce = consumer.reduce();
+            assertEquals(numAggs, reduce.aggregations.asList().size());
+            for (int j = 0; j < numAggs; j++) {
+                InternalMax internalMax = reduce.aggregations.get("test" + j);
+                assertEquals(max[j], internalMax.getValue(), 0.0D);
+            }
+        } finally {
+            terminate(executor);
+        }
+    }
+
     public void testConsumerOnlyHits() throws InterruptedException {
         int expectedNumResults = randomIntBetween(1, 100);
         int bufferSize = randomIntBetween(2, 200);
@@ -452,7 +622,7 @@ public class SearchPhaseControllerTests extends ESTestCase {
             request.setBatchedReduceSize(bufferSize);
             InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> consumer
                 = searchPhaseController.newSearchPhaseResults(request, expectedNumResults);
-            if ((hasAggs || hasTopDocs) && expectedNumResults > bufferSize) {
+            if ((hasAggs && expectedNumResults > 1) || (hasTopDocs && expectedNumResults > bufferSize)) {
                 assertThat("expectedNumResults: " + expectedNumResults + " bufferSize: " + bufferSize,
                     consumer, instanceOf(SearchPhaseController.QueryPhaseResultConsumer.class));
             } else {
@@ -462,6 +632,20 @@ public class SearchPhaseControllerTests extends ESTestCase {
         }
     }
 
+    public void testNewSearchPhaseResultsWithoutShards() {
+        SearchRequest request = new SearchRequest();
+        request.source(new SearchSourceBuilder().aggregation(AggregationBuilders.avg("foo")));
+        if (randomBoolean()) {
+            request.source().size(0);
+        }
+        InitialSearchPhase.ArraySearchPhaseResults<SearchPhaseResult> consumer = searchPhaseController.newSearchPhaseResults(request, 0);
+        assertThat(consumer, not(instanceOf(SearchPhaseController.QueryPhaseResultConsumer.class)));
+        SearchPhaseController.ReducedQueryPhase reduce = consumer.reduce();
+        assertTrue(reduce.isEmptyResult);
+        assertEquals(0, reduce.totalHits);
+        assertNull(reduce.aggregations);
+    }
+
     public void testReduceTopNWithFromOffset() {
         SearchRequest request = new SearchRequest();
         request.source(new SearchSourceBuilder().size(5).from(5));
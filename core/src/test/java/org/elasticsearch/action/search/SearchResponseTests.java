@@ -107,8 +107,9 @@ public class SearchResponseTests extends ESTestCase {
             InternalAggregations aggregations = aggregationsTests.createTestInstance();
             Suggest suggest = SuggestTests.createTestItem();
             SearchProfileShardResults profileShardResults = SearchProfileShardResultsTests.createTestItem();
+            long peakBufferedAggsBytes = randomBoolean() ? 0 : randomNonNegativeLong();
             internalSearchResponse = new InternalSearchResponse(hits, aggregations, suggest, profileShardResults,
-                timedOut, terminatedEarly, numReducePhases);
+                timedOut, terminatedEarly, numReducePhases, peakBufferedAggsBytes);
         } else {
             internalSearchResponse = InternalSearchResponse.empty();
         }
@@ -0,0 +1,69 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.common.io.stream.Writeable.Reader;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.search.aggregations.AggregationMemoryUsage;
+import org.elasticsearch.test.AbstractSerializingTestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SearchTaskStatusTests extends AbstractSerializingTestCase<SearchTask.Status> {
+
+    @Override
+    protected SearchTask.Status createTestInstance() {
+        final int numAggregations = randomIntBetween(0, 5);
+        final List<AggregationMemoryUsage.Stats> aggregations = new ArrayList<>(numAggregations);
+        for (int i = 0; i < numAggregations; i++) {
+            aggregations.add(randomStats());
+        }
+        return new SearchTask.Status(aggregations);
+    }
+
+    private static AggregationMemoryUsage.Stats randomStats() {
+        final long peakBytes = randomNonNegativeLong();
+        return new AggregationMemoryUsage.Stats(randomAlphaOfLength(5) + ">" + randomAlphaOfLength(5),
+            randomLongBetween(0, peakBytes), peakBytes, randomNonNegativeLong());
+    }
+
+    @Override
+    protected Reader<SearchTask.Status> instanceReader() {
+        return SearchTask.Status::new;
+    }
+
+    @Override
+    protected SearchTask.Status doParseInstance(XContentParser parser) throws IOException {
+        return SearchTask.Status.fromXContent(parser);
+    }
+
+    @Override
+    protected SearchTask.Status mutateInstance(SearchTask.Status instance) throws IOException {
+        final List<AggregationMemoryUsage.Stats> aggregations = new ArrayList<>(instance.getAggregations());
+        if (aggregations.isEmpty() || randomBoolean()) {
+            aggregations.add(randomStats());
+        } else {
+            aggregations.remove(randomIntBetween(0, aggregations.size() - 1));
+        }
+        return new SearchTask.Status(aggregations);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.action.OriginalIndices;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.block.ClusterBlocks;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.routing.GroupShardsIterator;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.ShardFieldRanges;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ShardFieldRangeCacheTests extends ESTestCase {
+
+    private static ClusterState clusterState(long version, boolean writeBlock) {
+        IndexMetaData indexMetaData = IndexMetaData.builder("idx")
+            .settings(settings(Version.CURRENT).put(IndexMetaData.SETTING_INDEX_UUID, "_na_")
+                .put(IndexMetaData.INDEX_BLOCKS_WRITE_SETTING.getKey(), writeBlock))
+            .numberOfShards(3).numberOfReplicas(0).version(version).build();
+        return ClusterState.builder(new ClusterName("test"))
+            .metaData(MetaData.builder().put(indexMetaData, false))
+            .blocks(ClusterBlocks.builder().addBlocks(indexMetaData))
+            .build();
+    }
+
+    private static GroupShardsIterator<SearchShardIterator> shardsIter() {
+        DiscoveryNode node = new DiscoveryNode("node_1", buildNewFakeTransportAddress(), Version.CURRENT);
+        return SearchAsyncActionTests.getShardsIter("idx", new OriginalIndices(new String[]{"idx"},
+            IndicesOptions.strictExpandOpenAndForbidClosed()), 3, false, node, null);
+    }
+
+    private final AtomicLong relativeTimeInMillis = new AtomicLong();
+
+    private static ShardFieldRanges ranges(long version, long min, long max) {
+        return ranges(version, 1, true, min, max);
+    }
+
+    private static ShardFieldRanges ranges(long version, long readerVersion, boolean readOnly, long min, long max) {
+        return new ShardFieldRanges(version, readerVersion, readOnly,
+            Collections.singletonMap("field", new ShardFieldRanges.FieldRange(null, true, min, max)));
+    }
+
+    private static SearchRequest rangeRequest(long from, long to) {
+        return new SearchRequest("idx").source(new SearchSourceBuilder().query(QueryBuilders.boolQuery()
+            .must(QueryBuilders.termQuery("foo", "bar"))
+            .filter(QueryBuilders.rangeQuery("field").gte(from).lte(to))));
+    }
+
+    private ShardFieldRangeCache newCache(Settings settings) {
+        return new ShardFieldRangeCache(settings, new ClusterSettings(settings, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS),
+            relativeTimeInMillis::get);
+    }
+
+    public void testPrune() {
+        ShardFieldRangeCache cache = newCache(Settings.EMPTY);
+        GroupShardsIterator<SearchShardIterator> shardsIter = shardsIter();
+        cache.put(shardsIter.get(0).shardId(), ranges(3, 0, 10));
+        cache.put(shardsIter.get(1).shardId(), ranges(3, 20, 30));
+
+        assertEquals(1, cache.prune(clusterState(3, true), rangeRequest(12, 25), shardsIter, 0));
+        assertTrue(shardsIter.get(0).skip());
+        assertTrue(shardsIter.get(0).pruned());
+        assertFalse(shardsIter.get(1).skip());
+        // no ranges are known for the last shard
+        assertFalse(shardsIter.get(2).skip());
+    }
+
+    public void testKeepsOneShard() {
+        ShardFieldRangeCache cache = newCache(Settings.EMPTY);
+        GroupShardsIterator<SearchShardIterator> shardsIter = shardsIter();
+        for (SearchShardIterator shardIt : shardsIter) {
+            cache.put(shardIt.shardId(), ranges(3, 0, 10));
+        }
+        assertEquals(2, cache.prune(clusterState(3, true), rangeRequest(100, 200), shardsIter, 0));
+        assertFalse(shardsIter.get(0).skip());
+        assertTrue(shardsIter.get(1).pruned());
+        assertTrue(shardsIter.get(2).pruned());
+    }
+
+    public void testIgnoresOutdatedRanges() {
+        ShardFieldRangeCache cache = newCache(Settings.EMPTY);
+        GroupShardsIterator<SearchShardIterator> shardsIter = shardsIter();
+        cache.put(shardsIter.get(0).shardId(), ranges(3, 0, 10));
+
+        // the index is not write blocked anymore, and the ranges of shards that receive writes are not used by default
+        assertEquals(0, cache.prune(clusterState(3, false), rangeRequest(12, 25), shardsIter, 0));
+        assertEquals(1, cache.count());
+        // the index metadata changed since the ranges were computed
+        assertEquals(0, cache.prune(clusterState(4, true), rangeRequest(12, 25), shardsIter, 0));
+        assertEquals(0, cache.count());
+        for (SearchShardIterator shardIt : shardsIter) {
+            assertFalse(shardIt.skip());
+        }
+    }
+
+    public void testMergesRangesOfTheSameVersion() {
+        ShardFieldRangeCache cache = newCache(Settings.EMPTY);
+        GroupShardsIterator<SearchShardIterator> shardsIter = shardsIter();
+        cache.put(shardsIter.get(0).shardId(), ranges(3, 0, 10));
+        cache.put(shardsIter.get(0).shardId(), new ShardFieldRanges(3, 1, true,
+            Collections.singletonMap("other", new ShardFieldRanges.FieldRange(null, false, 0, 0))));
+        assertEquals(1, cache.prune(clusterState(3, true), rangeRequest(12, 25), shardsIter, 0));
+    }
+
+    public void testPrunesShardsThatReceiveWritesWithMaxAge() {
+        ShardFieldRangeCache cache = newCache(Settings.builder()
+            .put(ShardFieldRangeCache.SHARD_FIELD_RANGES_MAX_AGE_SETTING.getKey(), "1s").build());
+        GroupShardsIterator<SearchShardIterator> shardsIter = shardsIter();
+        cache.put(shardsIter.get(0).shardId(), ranges(3, 5, false, 0, 10));
+        ClusterState state = clusterState(3, false);
+        assertEquals(1, cache.prune(state, rangeRequest(12, 25), shardsIter, 0));
+        assertTrue(shardsIter.get(0).pruned());
+
+        // the ranges of an older reader that arrive late are ignored
+        cache.put(shardsIter.get(0).shardId(), ranges(3, 4, false, 0, 20));
+        assertEquals(1, cache.prune(state, rangeRequest(12, 25), shardsIter(), 0));
+
+        // a refresh added documents up to 20
+        cache.put(shardsIter.get(0).shardId(), ranges(3, 6, false, 0, 20));
+        assertEquals(0, cache.prune(state, rangeRequest(12, 25), shardsIter(), 0));
+
+        // the ranges are only used for a short time since the shard might have been refreshed since
+        assertEquals(1, cache.prune(state, rangeRequest(21, 25), shardsIter(), 0));
+        relativeTimeInMillis.addAndGet(1001);
+        assertEquals(0, cache.prune(state, rangeRequest(21, 25), shardsIter(), 0));
+        assertEquals(1, cache.count());
+    }
+
+    public void testPrunesOnlyReadOnlyShardsByDefault() {
+        ShardFieldRangeCache cache = newCache(Settings.EMPTY);
+        GroupShardsIterator<SearchShardIterator> shardsIter = shardsIter();
+        cache.put(shardsIter.get(0).shardId(), ranges(3, 1, false, 0, 10));
+        cache.put(shardsIter.get(1).shardId(), ranges(3, 1, true, 0, 10));
+        assertEquals(1, cache.prune(clusterState(3, true), rangeRequest(12, 25), shardsIter, 0));
+        assertFalse(shardsIter.get(0).skip());
+        assertTrue(shardsIter.get(1).pruned());
+    }
+
+    public void testDisabled() {
+        ShardFieldRangeCache cache = newCache(Settings.builder()
+            .put(ShardFieldRangeCache.SHARD_PRUNING_ENABLED_SETTING.getKey(), false).build());
+        GroupShardsIterator<SearchShardIterator> shardsIter = shardsIter();
+        cache.put(shardsIter.get(0).shardId(), ranges(3, 0, 10));
+        assertEquals(0, cache.count());
+        assertEquals(0, cache.prune(clusterState(3, true), rangeRequest(12, 25), shardsIter, 0));
+    }
+
+    public void testRequestsThatCannotBePruned() {
+        ShardFieldRangeCache cache = newCache(Settings.EMPTY);
+        GroupShardsIterator<SearchShardIterator> shardsIter = shardsIter();
+        cache.put(shardsIter.get(0).shardId(), ranges(3, 0, 10));
+        ClusterState state = clusterState(3, true);
+        assertEquals(0, cache.prune(state, new SearchRequest("idx"), shardsIter, 0));
+        assertEquals(0, cache.prune(state, rangeRequest(12, 25).searchType(SearchType.DFS_QUERY_THEN_FETCH), shardsIter, 0));
+        assertEquals(0, cache.prune(state, new SearchRequest("idx").source(new SearchSourceBuilder()
+            .query(QueryBuilders.boolQuery().should(QueryBuilders.rangeQuery("field").gte(12)))), shardsIter, 0));
+    }
+}
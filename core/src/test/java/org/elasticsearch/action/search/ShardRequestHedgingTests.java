@@ -0,0 +1,104 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.node.ResponseCollectorService;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
+import org.junit.Before;
+
+import java.util.Collections;
+
+public class ShardRequestHedgingTests extends ESTestCase {
+
+    private ThreadPool threadPool;
+    private ClusterSettings clusterSettings;
+    private ResponseCollectorService collector;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        threadPool = new TestThreadPool(getTestName());
+        clusterSettings = new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS);
+        collector = new ResponseCollectorService(Settings.EMPTY,
+            new ClusterService(Settings.EMPTY, clusterSettings, threadPool, Collections.emptyMap()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+        terminate(threadPool);
+    }
+
+    private ShardRequestHedging newHedging(Settings settings) {
+        return new ShardRequestHedging(settings, clusterSettings, threadPool, collector);
+    }
+
+    public void testHedgeDelay() {
+        ShardRequestHedging hedging = newHedging(Settings.builder()
+            .put(ShardRequestHedging.HEDGING_ENABLED_SETTING.getKey(), true)
+            .put(ShardRequestHedging.HEDGING_LATENCY_PERCENTILE_SETTING.getKey(), 90)
+            .build());
+        // nothing is known about the node yet
+        assertNull(hedging.getHedgeDelay("node1"));
+        for (int i = 1; i <= 10; i++) {
+            collector.addNodeStatistics("node1", 1, TimeValue.timeValueMillis(10 * i).nanos(), 1000);
+        }
+        assertEquals(TimeValue.timeValueMillis(90), hedging.getHedgeDelay("node1"));
+
+        clusterSettings.applySettings(Settings.builder()
+            .put(ShardRequestHedging.HEDGING_ENABLED_SETTING.getKey(), true)
+            .put(ShardRequestHedging.HEDGING_MIN_DELAY_SETTING.getKey(), "1s")
+            .build());
+        assertEquals(TimeValue.timeValueSeconds(1), hedging.getHedgeDelay("node1"));
+
+        clusterSettings.applySettings(Settings.EMPTY);
+        assertFalse(hedging.isEnabled());
+        assertNull(hedging.getHedgeDelay("node1"));
+    }
+
+    public void testMaxOutstandingPerNode() {
+        ShardRequestHedging hedging = newHedging(Settings.builder()
+            .put(ShardRequestHedging.HEDGING_ENABLED_SETTING.getKey(), true)
+            .put(ShardRequestHedging.HEDGING_MAX_OUTSTANDING_PER_NODE_SETTING.getKey(), 2)
+            .build());
+        assertTrue(hedging.tryAcquire("node1"));
+        assertTrue(hedging.tryAcquire("node1"));
+        assertFalse(hedging.tryAcquire("node1"));
+        assertTrue(hedging.tryAcquire("node2"));
+        assertEquals(2, hedging.getOutstandingHedges("node1"));
+        hedging.onHedgeDone("node1");
+        assertTrue(hedging.tryAcquire("node1"));
+        assertEquals(Long.valueOf(3), collector.getAdaptiveStats(Collections.emptyMap()).getHedgesSent().get("node1"));
+    }
+
+    public void testInvalidPercentile() {
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> ShardRequestHedging
+            .HEDGING_LATENCY_PERCENTILE_SETTING.get(Settings.builder().put("search.hedging.latency_percentile", 101).build()));
+        assertEquals("Failed to parse value [101] for setting [search.hedging.latency_percentile] must be > 0 and <= 100",
+            e.getMessage());
+    }
+}
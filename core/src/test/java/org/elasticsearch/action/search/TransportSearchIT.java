@@ -21,11 +21,13 @@ package org.elasticsearch.action.search;
 
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.test.ESIntegTestCase;
 
 import java.util.Collections;
 
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertHitCount;
 import static org.hamcrest.Matchers.containsString;
 
 public class TransportSearchIT extends ESIntegTestCase {
@@ -70,4 +72,29 @@ public class TransportSearchIT extends ESIntegTestCase {
         }
     }
 
+    public void testRefreshedDocumentsOutsideOfReportedRangesAreFound() throws Exception {
+        assertAcked(prepareCreate("test")
+                .setSettings(Settings.builder()
+                        .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 3)
+                        .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+                        .put("index.refresh_interval", -1))
+                .addMapping("type", "field", "type=long"));
+        for (int i = 0; i < 30; i++) {
+            client().prepareIndex("test", "type", Integer.toString(i)).setSource("field", randomIntBetween(0, 10)).get();
+        }
+        refresh("test");
+
+        // the can_match phase reports the ranges of all shards to the coordinating node
+        SearchResponse response = client().prepareSearch("test").setPreFilterShardSize(1)
+                .setQuery(QueryBuilders.rangeQuery("field").gte(100).lte(200)).get();
+        assertHitCount(response, 0);
+
+        client().prepareIndex("test", "type", "out_of_range").setSource("field", 150).get();
+        refresh("test");
+
+        response = client().prepareSearch("test").setPreFilterShardSize(1)
+                .setQuery(QueryBuilders.rangeQuery("field").gte(100).lte(200)).get();
+        assertHitCount(response, 1);
+        assertEquals(0, response.getPrunedShards());
+    }
 }
@@ -22,6 +22,7 @@ package org.elasticsearch.common.compress;
 import org.apache.lucene.util.LineFileDocs;
 import org.apache.lucene.util.TestUtil;
 import org.elasticsearch.common.io.stream.ByteBufferStreamInput;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.OutputStreamStreamOutput;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -33,6 +34,7 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
+import java.util.zip.Deflater;
 
 /**
  * Test streaming compression (e.g. used for recovery)
@@ -383,6 +385,31 @@ public class DeflateCompressTests extends ESTestCase {
         }
     }
 
+    public void testCompressWithReusedDeflater() throws IOException {
+        final Deflater deflater = DeflateCompressor.newDeflater();
+        try {
+            final byte[] buffer = new byte[TestUtil.nextInt(random(), 1, 4096)];
+            for (int i = 0; i < 10; i++) {
+                final byte[] bytes = randomBoolean()
+                    ? randomRealisticUnicodeOfLengthBetween(0, 100000).getBytes(StandardCharsets.UTF_8)
+                    : randomByteArrayOfLength(TestUtil.nextInt(random(), 0, 100000));
+                final BytesStreamOutput uncompressed = new BytesStreamOutput();
+                uncompressed.writeBytes(bytes);
+                final BytesStreamOutput compressed = new BytesStreamOutput();
+                DeflateCompressor.compress(uncompressed.bytes(), deflater, buffer, compressed);
+                assertTrue(compressor.isCompressed(compressed.bytes()));
+                try (StreamInput in = compressor.streamInput(compressed.bytes().streamInput())) {
+                    final byte[] decompressed = new byte[bytes.length];
+                    in.readBytes(decompressed, 0, decompressed.length);
+                    assertArrayEquals(bytes, decompressed);
+                    assertEquals(-1, in.read());
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+    }
+
     private void doTest(byte bytes[]) throws IOException {
         ByteBuffer bb = ByteBuffer.wrap(bytes);
         StreamInput rawIn = new ByteBufferStreamInput(bb);
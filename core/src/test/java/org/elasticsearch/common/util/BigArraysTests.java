@@ -37,12 +37,14 @@ import java.util.List;
 import java.util.function.Function;
 
 import static org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService.REQUEST_CIRCUIT_BREAKER_LIMIT_SETTING;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 
 public class BigArraysTests extends ESTestCase {
 
     private BigArrays randombigArrays() {
-        return new MockBigArrays(Settings.EMPTY, new NoneCircuitBreakerService());
+        Settings settings = Settings.builder().put(BigArrays.OFF_HEAP_SETTING.getKey(), randomBoolean()).build();
+        return new MockBigArrays(settings, new NoneCircuitBreakerService());
     }
 
     private BigArrays bigArrays;
@@ -386,6 +388,119 @@ public class BigArraysTests extends ESTestCase {
         }
     }
 
+    public void testOffHeapStats() {
+        Settings settings = Settings.builder().put(BigArrays.OFF_HEAP_SETTING.getKey(), true).build();
+        BigArrays bigArrays = new MockBigArrays(settings, new NoneCircuitBreakerService());
+        assertTrue(bigArrays.stats().isOffHeap());
+        assertEquals(0, bigArrays.stats().getOffHeapUsed().getBytes());
+
+        final int numPages = randomIntBetween(2, 10);
+        LongArray longs = bigArrays.newLongArray(numPages * BigArrays.LONG_PAGE_SIZE);
+        DoubleArray doubles = bigArrays.newDoubleArray(numPages * BigArrays.LONG_PAGE_SIZE);
+        assertEquals(2L * numPages * BigArrays.PAGE_SIZE_IN_BYTES, bigArrays.stats().getOffHeapUsed().getBytes());
+        assertThat(bigArrays.stats().getOffHeapAllocated().getBytes(),
+            greaterThanOrEqualTo(bigArrays.stats().getOffHeapUsed().getBytes()));
+
+        longs = bigArrays.resize(longs, 1);
+        assertEquals(numPages * BigArrays.PAGE_SIZE_IN_BYTES, bigArrays.stats().getOffHeapUsed().getBytes());
+        longs.close();
+        doubles.close();
+        assertEquals(0, bigArrays.stats().getOffHeapUsed().getBytes());
+
+        BigArrays onHeap = new MockBigArrays(Settings.EMPTY, new NoneCircuitBreakerService());
+        assertFalse(onHeap.stats().isOffHeap());
+        onHeap.newLongArray(numPages * BigArrays.LONG_PAGE_SIZE).close();
+        assertEquals(0, onHeap.stats().getOffHeapAllocated().getBytes());
+    }
+
+    public void testOffHeapByteArray() {
+        Settings settings = Settings.builder().put(BigArrays.OFF_HEAP_SETTING.getKey(), true).build();
+        BigArrays bigArrays = new MockBigArrays(settings, new NoneCircuitBreakerService());
+        final byte[] expected = new byte[randomIntBetween(1, 200000)];
+        random().nextBytes(expected);
+        ByteArray array = bigArrays.newOffHeapByteArray(randomIntBetween(1, 1000), randomBoolean());
+        // arrays move off-heap once they grow past a page
+        array = bigArrays.resize(array, expected.length);
+        array.set(0, expected, 0, expected.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], array.get(i));
+        }
+        final int offset = randomIntBetween(0, expected.length - 1);
+        final int length = randomIntBetween(0, expected.length - offset);
+        final BytesRef ref = new BytesRef();
+        array.get(offset, length, ref);
+        assertEquals(new BytesRef(expected, offset, length), ref);
+        array.fill(offset, offset + length, (byte) 42);
+        Arrays.fill(expected, offset, offset + length, (byte) 42);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], array.get(i));
+        }
+        if (expected.length > BigArrays.BYTE_PAGE_SIZE) {
+            assertThat(bigArrays.stats().getOffHeapUsed().getBytes(), greaterThan(0L));
+        }
+        array.close();
+        assertEquals(0, bigArrays.stats().getOffHeapUsed().getBytes());
+
+        // other byte arrays stay on the heap
+        ByteArray onHeap = bigArrays.newByteArray(2 * BigArrays.BYTE_PAGE_SIZE);
+        assertEquals(0, bigArrays.stats().getOffHeapUsed().getBytes());
+        onHeap.close();
+    }
+
+    public void testOffHeapByteArrayBulkGet() {
+        Settings settings = Settings.builder().put(BigArrays.OFF_HEAP_SETTING.getKey(), true).build();
+        BigArrays bigArrays = new MockBigArrays(settings, new NoneCircuitBreakerService());
+        final byte[] expected = new byte[randomIntBetween(3 * BigArrays.BYTE_PAGE_SIZE, 10 * BigArrays.BYTE_PAGE_SIZE)];
+        random().nextBytes(expected);
+        ByteArray array = bigArrays.newOffHeapByteArray(randomIntBetween(1, BigArrays.BYTE_PAGE_SIZE), false);
+        final BytesRef ref = new BytesRef();
+        // slices are copied while the array is still on the heap too, so that the ref never points to one of its pages
+        array.set(0, expected, 0, (int) array.size());
+        assertTrue(array.get(0, (int) array.size(), ref));
+        assertEquals(new BytesRef(expected, 0, (int) array.size()), ref);
+        array = bigArrays.resize(array, expected.length);
+        array.set(0, expected, 0, expected.length);
+        for (int i = 0; i < 100; ++i) {
+            final int offset = randomInt(expected.length - 1);
+            final int length = randomInt(Math.min(randomBoolean() ? 10 : 3 * BigArrays.BYTE_PAGE_SIZE, expected.length - offset));
+            final byte[] bytes = ref.bytes;
+            assertTrue(array.get(offset, length, ref));
+            assertEquals(new BytesRef(expected, offset, length), ref);
+            if (length <= bytes.length) {
+                assertSame(bytes, ref.bytes);
+            }
+        }
+        array.close();
+    }
+
+    public void testOffHeapLimit() {
+        final int numPages = randomIntBetween(2, 10);
+        Settings settings = Settings.builder()
+            .put(BigArrays.OFF_HEAP_SETTING.getKey(), true)
+            .put(BigArrays.OFF_HEAP_LIMIT_SETTING.getKey(), numPages * BigArrays.PAGE_SIZE_IN_BYTES, ByteSizeUnit.BYTES)
+            .build();
+        // direct memory is not accounted by the request breaker, which would trip on the first page
+        HierarchyCircuitBreakerService hcbs = new HierarchyCircuitBreakerService(
+            Settings.builder().put(REQUEST_CIRCUIT_BREAKER_LIMIT_SETTING.getKey(), 1, ByteSizeUnit.KB).build(),
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        BigArrays bigArrays = new MockBigArrays(settings, hcbs).withCircuitBreaking();
+        assertEquals(numPages * BigArrays.PAGE_SIZE_IN_BYTES, bigArrays.stats().getOffHeapLimit().getBytes());
+
+        LongArray longs = bigArrays.newLongArray(numPages * BigArrays.LONG_PAGE_SIZE);
+        assertEquals(0, hcbs.getBreaker(CircuitBreaker.REQUEST).getUsed());
+        CircuitBreakingException e = expectThrows(CircuitBreakingException.class,
+            () -> bigArrays.newIntArray(2 * BigArrays.INT_PAGE_SIZE));
+        assertEquals(numPages * BigArrays.PAGE_SIZE_IN_BYTES, e.getByteLimit());
+        e = expectThrows(CircuitBreakingException.class, () -> bigArrays.resize(longs, (numPages + 1) * BigArrays.LONG_PAGE_SIZE));
+        assertEquals(numPages * BigArrays.PAGE_SIZE_IN_BYTES, e.getByteLimit());
+        assertEquals(numPages * BigArrays.LONG_PAGE_SIZE, longs.size());
+
+        // released memory can be reserved again
+        longs.close();
+        bigArrays.newDoubleArray(numPages * BigArrays.LONG_PAGE_SIZE).close();
+        assertEquals(0, bigArrays.stats().getOffHeapUsed().getBytes());
+    }
+
     private List<BigArraysHelper> bigArrayCreators(final long maxSize, final boolean withBreaking) {
         final BigArrays byteBigArrays = newBigArraysInstance(maxSize, withBreaking);
         BigArraysHelper byteHelper = new BigArraysHelper(byteBigArrays,
@@ -141,7 +141,7 @@ public class IndexModuleTests extends ESTestCase {
     private IndexService newIndexService(IndexModule module) throws IOException {
         return module.newIndexService(nodeEnvironment, xContentRegistry(), deleter, circuitBreakerService, bigArrays, threadPool,
                 scriptService, null, indicesQueryCache, mapperRegistry,
-                new IndicesFieldDataCache(settings, listener), writableRegistry());
+                new IndicesFieldDataCache(settings, listener), writableRegistry(), null);
     }
 
     public void testWrapperIsBound() throws IOException {
@@ -20,23 +20,39 @@
 package org.elasticsearch.index.codec;
 
 import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.FieldsConsumer;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.lucene50.Lucene50PostingsFormat;
 import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat;
 import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat.Mode;
 import org.apache.lucene.codecs.lucene62.Lucene62Codec;
 import org.apache.lucene.codecs.lucene70.Lucene70Codec;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FilterLeafReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SegmentReadState;
 import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LuceneTestCase.SuppressCodecs;
 import org.elasticsearch.common.logging.ESLoggerFactory;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.analysis.IndexAnalyzers;
+import org.elasticsearch.index.engine.EngineConfig;
+import org.elasticsearch.index.mapper.IdFieldMapper;
 import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.Uid;
 import org.elasticsearch.index.similarity.SimilarityService;
 import org.elasticsearch.indices.mapper.MapperRegistry;
 import org.elasticsearch.test.ESTestCase;
@@ -44,8 +60,14 @@ import org.elasticsearch.test.IndexSettingsModule;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
 
 @SuppressCodecs("*") // we test against default codec so never get a random one here!
 public class CodecTests extends ESTestCase {
@@ -67,6 +89,97 @@ public class CodecTests extends ESTestCase {
         assertCompressionEquals(Mode.BEST_COMPRESSION, codec);
     }
 
+    public void testIdBloomFilter() throws Exception {
+        PerFieldMappingPostingFormatCodec codec = (PerFieldMappingPostingFormatCodec) createCodecService().codec("default");
+        assertThat(codec.getPostingsFormatForField(IdFieldMapper.NAME), not(instanceOf(BloomFilterPostingsFormat.class)));
+
+        codec = (PerFieldMappingPostingFormatCodec) createCodecService(Settings.builder()
+            .put(EngineConfig.INDEX_ID_BLOOM_FILTER_SETTING.getKey(), true).build()).codec(randomFrom("default", "best_compression"));
+        assertThat(codec.getPostingsFormatForField(IdFieldMapper.NAME), instanceOf(BloomFilterPostingsFormat.class));
+
+        Directory dir = newDirectory();
+        IndexWriterConfig iwc = newIndexWriterConfig(null);
+        iwc.setCodec(codec);
+        IndexWriter iw = new IndexWriter(dir, iwc);
+        final int numDocs = randomIntBetween(1, 1000);
+        for (int i = 0; i < numDocs; i++) {
+            Document doc = new Document();
+            doc.add(new StringField(IdFieldMapper.NAME, Uid.encodeId(Integer.toString(i * 2)), Field.Store.NO));
+            iw.addDocument(doc);
+            if (rarely()) {
+                iw.commit();
+            }
+        }
+        if (randomBoolean()) {
+            iw.forceMerge(1);
+        }
+        iw.close();
+        DirectoryReader ir = DirectoryReader.open(dir);
+        int found = 0;
+        for (LeafReaderContext context : ir.leaves()) {
+            SegmentReader sr = (SegmentReader) context.reader();
+            Terms terms = sr.getPostingsReader().terms(IdFieldMapper.NAME);
+            assertThat(BloomFilterPostingsFormat.bloomFilterRamBytesUsed(terms), greaterThan(0L));
+            TermsEnum termsEnum = terms.iterator();
+            for (int i = 0; i < numDocs; i++) {
+                if (termsEnum.seekExact(Uid.encodeId(Integer.toString(i * 2)))) {
+                    found++;
+                }
+                // ids that were never indexed are never found, whether the filter rules them out or not
+                assertFalse(termsEnum.seekExact(Uid.encodeId(Integer.toString(i * 2 + 1))));
+            }
+        }
+        assertEquals(numDocs, found);
+        ir.close();
+        dir.close();
+    }
+
+    public void testIdBloomFilterSkipsTermsDictionary() throws Exception {
+        final PostingsFormat bloomFilterFormat = new BloomFilterPostingsFormat(new CountingPostingsFormat());
+        Directory dir = newDirectory();
+        IndexWriterConfig iwc = newIndexWriterConfig(null);
+        iwc.setCodec(new Lucene70Codec() {
+            @Override
+            public PostingsFormat getPostingsFormatForField(String field) {
+                return bloomFilterFormat;
+            }
+        });
+        IndexWriter iw = new IndexWriter(dir, iwc);
+        final int numDocs = randomIntBetween(1, 1000);
+        for (int i = 0; i < numDocs; i++) {
+            Document doc = new Document();
+            doc.add(new StringField(IdFieldMapper.NAME, Uid.encodeId(Integer.toString(i * 2)), Field.Store.NO));
+            iw.addDocument(doc);
+            if (rarely()) {
+                iw.commit();
+            }
+        }
+        iw.close();
+        DirectoryReader ir = DirectoryReader.open(dir);
+        for (LeafReaderContext context : ir.leaves()) {
+            TermsEnum termsEnum = context.reader().terms(IdFieldMapper.NAME).iterator();
+            CountingPostingsFormat.SEEK_EXACT_CALLS.set(0);
+            int found = 0;
+            for (int i = 0; i < numDocs; i++) {
+                if (termsEnum.seekExact(Uid.encodeId(Integer.toString(i * 2)))) {
+                    found++;
+                }
+            }
+            assertEquals(context.reader().maxDoc(), found);
+            // the ids of the segment and about 1% of the other ids get past the filter
+            assertThat(CountingPostingsFormat.SEEK_EXACT_CALLS.get(), greaterThanOrEqualTo(found));
+
+            CountingPostingsFormat.SEEK_EXACT_CALLS.set(0);
+            for (int i = 0; i < numDocs; i++) {
+                assertFalse(termsEnum.seekExact(Uid.encodeId(Integer.toString(i * 2 + 1))));
+            }
+            // ids that were never indexed only reach the terms dictionary on false positives
+            assertThat(CountingPostingsFormat.SEEK_EXACT_CALLS.get(), lessThanOrEqualTo(numDocs / 10 + 5));
+        }
+        ir.close();
+        dir.close();
+    }
+
     // write some docs with it, inspect .si to see this was the used compression
     private void assertCompressionEquals(Mode expected, Codec actual) throws Exception {
         Directory dir = newDirectory();
@@ -86,8 +199,13 @@ public class CodecTests extends ESTestCase {
     }
 
     private CodecService createCodecService() throws IOException {
+        return createCodecService(Settings.EMPTY);
+    }
+
+    private CodecService createCodecService(Settings indexSettings) throws IOException {
         Settings nodeSettings = Settings.builder()
                 .put(Environment.PATH_HOME_SETTING.getKey(), createTempDir())
+                .put(indexSettings)
                 .build();
         IndexSettings settings = IndexSettingsModule.newIndexSettings("_na", nodeSettings);
         SimilarityService similarityService = new SimilarityService(settings, null, Collections.emptyMap());
@@ -98,4 +216,74 @@ public class CodecTests extends ESTestCase {
         return new CodecService(service, ESLoggerFactory.getLogger("test"));
     }
 
+
+    /**
+     * Wraps the default postings format and counts the calls to {@link TermsEnum#seekExact(BytesRef)} on its terms. It is
+     * registered through the SPI so that {@link BloomFilterPostingsFormat} can read segments that it wrapped.
+     */
+    public static final class CountingPostingsFormat extends PostingsFormat {
+        static final AtomicInteger SEEK_EXACT_CALLS = new AtomicInteger();
+
+        private final PostingsFormat delegate = new Lucene50PostingsFormat();
+
+        public CountingPostingsFormat() {
+            super("CountingPostings");
+        }
+
+        @Override
+        public FieldsConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+            return delegate.fieldsConsumer(state);
+        }
+
+        @Override
+        public FieldsProducer fieldsProducer(SegmentReadState state) throws IOException {
+            final FieldsProducer in = delegate.fieldsProducer(state);
+            return new FieldsProducer() {
+                @Override
+                public Iterator<String> iterator() {
+                    return in.iterator();
+                }
+
+                @Override
+                public Terms terms(String field) throws IOException {
+                    final Terms terms = in.terms(field);
+                    if (terms == null) {
+                        return null;
+                    }
+                    return new FilterLeafReader.FilterTerms(terms) {
+                        @Override
+                        public TermsEnum iterator() throws IOException {
+                            return new FilterLeafReader.FilterTermsEnum(in.iterator()) {
+                                @Override
+                                public boolean seekExact(BytesRef text) throws IOException {
+                                    SEEK_EXACT_CALLS.incrementAndGet();
+                                    return in.seekExact(text);
+                                }
+                            };
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return in.size();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    in.close();
+                }
+
+                @Override
+                public void checkIntegrity() throws IOException {
+                    in.checkIntegrity();
+                }
+
+                @Override
+                public long ramBytesUsed() {
+                    return in.ramBytesUsed();
+                }
+            };
+        }
+    }
 }
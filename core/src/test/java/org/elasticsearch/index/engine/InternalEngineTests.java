@@ -26,7 +26,10 @@ import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.core.LogEvent;
 import org.apache.logging.log4j.core.appender.AbstractAppender;
 import org.apache.logging.log4j.core.filter.RegexFilter;
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat;
+import org.apache.lucene.codecs.lucene70.Lucene70Codec;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.NumericDocValuesField;
@@ -91,6 +94,7 @@ import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.codec.BloomFilterPostingsFormat;
 import org.elasticsearch.index.codec.CodecService;
 import org.elasticsearch.index.engine.Engine.Searcher;
 import org.elasticsearch.index.fieldvisitor.FieldsVisitor;
@@ -106,6 +110,7 @@ import org.elasticsearch.index.mapper.RootObjectMapper;
 import org.elasticsearch.index.mapper.SeqNoFieldMapper;
 import org.elasticsearch.index.mapper.SourceFieldMapper;
 import org.elasticsearch.index.mapper.Uid;
+import org.elasticsearch.index.mapper.UidFieldMapper;
 import org.elasticsearch.index.seqno.SeqNoStats;
 import org.elasticsearch.index.seqno.SequenceNumbers;
 import org.elasticsearch.index.seqno.SequenceNumbersService;
@@ -428,6 +433,49 @@ public class InternalEngineTests extends EngineTestCase {
         }
     }
 
+    public void testSegmentsStatsIncludingBloomFilters() throws Exception {
+        final String uidField = defaultSettings.isSingleType() ? IdFieldMapper.NAME : UidFieldMapper.NAME;
+        final PostingsFormat bloomFilterFormat = new BloomFilterPostingsFormat(new Lucene70Codec().getPostingsFormatForField(uidField));
+        final Codec codec = new Lucene70Codec() {
+            @Override
+            public PostingsFormat getPostingsFormatForField(String field) {
+                return field.equals(uidField) ? bloomFilterFormat : super.getPostingsFormatForField(field);
+            }
+        };
+        try (Store store = createStore();
+             Engine engine = createEngine(defaultSettings, store, createTempDir(), NoMergePolicy.INSTANCE, (directory, iwc) -> {
+                 iwc.setCodec(codec);
+                 return new IndexWriter(directory, iwc);
+             })) {
+            assertThat(engine.segmentsStats(false).getBloomFilterMemoryInBytes(), equalTo(0L));
+
+            ParsedDocument doc = testParsedDocument("1", null, testDocumentWithTextField(), B_1, null);
+            engine.index(indexForDoc(doc));
+            engine.refresh("test");
+
+            SegmentsStats stats = engine.segmentsStats(false);
+            assertThat(stats.getBloomFilterMemoryInBytes(), greaterThan(0L));
+            assertThat(stats.getTermsMemoryInBytes(), greaterThan(0L));
+
+            ParsedDocument doc2 = testParsedDocument("2", null, testDocumentWithTextField(), B_2, null);
+            engine.index(indexForDoc(doc2));
+            engine.refresh("test");
+
+            // every segment has its own filter
+            assertThat(engine.segmentsStats(false).getCount(), equalTo(2L));
+            assertThat(engine.segmentsStats(false).getBloomFilterMemoryInBytes(), greaterThan(stats.getBloomFilterMemoryInBytes()));
+        }
+
+        // segments that were written without filters report none
+        try (Store store = createStore();
+             Engine engine = createEngine(defaultSettings, store, createTempDir(), NoMergePolicy.INSTANCE)) {
+            ParsedDocument doc = testParsedDocument("1", null, testDocumentWithTextField(), B_1, null);
+            engine.index(indexForDoc(doc));
+            engine.refresh("test");
+            assertThat(engine.segmentsStats(false).getBloomFilterMemoryInBytes(), equalTo(0L));
+        }
+    }
+
     public void testCommitStats() throws IOException {
         final AtomicLong maxSeqNo = new AtomicLong(SequenceNumbers.NO_OPS_PERFORMED);
         final AtomicLong localCheckpoint = new AtomicLong(SequenceNumbers.NO_OPS_PERFORMED);
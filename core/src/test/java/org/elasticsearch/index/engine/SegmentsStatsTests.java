@@ -0,0 +1,79 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.VersionUtils;
+
+import java.io.IOException;
+
+public class SegmentsStatsTests extends ESTestCase {
+
+    public void testSerialization() throws IOException {
+        final SegmentsStats stats = randomSegmentsStats();
+        final SegmentsStats copy = copy(stats, VersionUtils.randomVersionBetween(random(), Version.V_7_0_0_alpha1, Version.CURRENT));
+        assertEquals(stats.getCount(), copy.getCount());
+        assertEquals(stats.getMemoryInBytes(), copy.getMemoryInBytes());
+        assertEquals(stats.getTermsMemoryInBytes(), copy.getTermsMemoryInBytes());
+        assertEquals(stats.getDocValuesMemoryInBytes(), copy.getDocValuesMemoryInBytes());
+        assertEquals(stats.getBloomFilterMemoryInBytes(), copy.getBloomFilterMemoryInBytes());
+        assertEquals(stats.getVersionMapMemoryInBytes(), copy.getVersionMapMemoryInBytes());
+        assertEquals(stats.getMaxUnsafeAutoIdTimestamp(), copy.getMaxUnsafeAutoIdTimestamp());
+    }
+
+    public void testSerializationToNodesWithoutBloomFilters() throws IOException {
+        final SegmentsStats stats = randomSegmentsStats();
+        final Version version = VersionUtils.randomVersionBetween(random(), Version.V_6_0_0,
+            VersionUtils.getPreviousVersion(Version.V_7_0_0_alpha1));
+        final SegmentsStats copy = copy(stats, version);
+        assertEquals(0L, copy.getBloomFilterMemoryInBytes());
+        // the fields that follow are still read at the right place
+        assertEquals(stats.getMaxUnsafeAutoIdTimestamp(), copy.getMaxUnsafeAutoIdTimestamp());
+        assertEquals(stats.getTermsMemoryInBytes(), copy.getTermsMemoryInBytes());
+    }
+
+    private static SegmentsStats randomSegmentsStats() {
+        final SegmentsStats stats = new SegmentsStats();
+        stats.add(randomIntBetween(0, 100), randomNonNegativeLong() / 4);
+        stats.addTermsMemoryInBytes(randomNonNegativeLong());
+        stats.addDocValuesMemoryInBytes(randomNonNegativeLong());
+        stats.addBloomFilterMemoryInBytes(randomLongBetween(1, Long.MAX_VALUE));
+        stats.addVersionMapMemoryInBytes(randomNonNegativeLong());
+        stats.updateMaxUnsafeAutoIdTimestamp(randomNonNegativeLong());
+        return stats;
+    }
+
+    private static SegmentsStats copy(SegmentsStats stats, Version version) throws IOException {
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.setVersion(version);
+            stats.writeTo(out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                in.setVersion(version);
+                final SegmentsStats copy = new SegmentsStats();
+                copy.readFrom(in);
+                assertEquals(-1, in.read());
+                return copy;
+            }
+        }
+    }
+}
@@ -24,27 +24,44 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FilterDirectoryReader;
+import org.apache.lucene.index.FilterLeafReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongValues;
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.Version;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.hash.MurmurHash3;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
+import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.fielddata.ordinals.GlobalOrdinalsIndexFieldData;
 import org.elasticsearch.index.fielddata.plain.AbstractAtomicOrdinalsFieldData;
 import org.elasticsearch.index.fielddata.plain.PagedBytesIndexFieldData;
 import org.elasticsearch.index.fielddata.plain.SortedSetDVOrdinalsIndexFieldData;
 import org.elasticsearch.index.mapper.TextFieldMapper;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
 import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.FieldMaskingReader;
 
+import java.io.IOException;
+
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
 
 public class FieldDataCacheTests extends ESTestCase {
 
@@ -86,9 +103,135 @@ public class FieldDataCacheTests extends ESTestCase {
         dir.close();
     }
 
+    public void testGlobalOrdinalHashes() throws Exception {
+        Directory dir = newDirectory();
+        IndexWriterConfig iwc = new IndexWriterConfig(null);
+        iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+        IndexWriter iw = new IndexWriter(dir, iwc);
+        long numDocs = scaledRandomIntBetween(32, 128);
+        for (int i = 1; i <= numDocs; i++) {
+            Document doc = new Document();
+            doc.add(new SortedSetDocValuesField("field1", new BytesRef(String.valueOf(randomIntBetween(0, 50)))));
+            iw.addDocument(doc);
+            if (i % 24 == 0) {
+                iw.commit();
+            }
+        }
+        iw.close();
+        DirectoryReader ir = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(dir), new ShardId("_index", "_na_", 0));
+        assertThat(ir.leaves().size(), greaterThan(1));
+
+        DummyAccountingFieldDataCache fieldDataCache = new DummyAccountingFieldDataCache();
+        GlobalOrdinalsIndexFieldData withoutHashes = (GlobalOrdinalsIndexFieldData) createSortedDV("field1", fieldDataCache).loadGlobal(ir);
+        Settings settings = Settings.builder().put(IndexFieldDataService.INDEX_FIELDDATA_ORDINAL_HASHES_SETTING.getKey(), true).build();
+        GlobalOrdinalsIndexFieldData withHashes = (GlobalOrdinalsIndexFieldData) createSortedDV("field1", fieldDataCache, settings)
+            .loadGlobal(ir);
+        // the hashes are accounted for in the memory usage of the global ordinals
+        assertThat(withHashes.ramBytesUsed(), greaterThan(withoutHashes.ramBytesUsed()));
+
+        MurmurHash3.Hash128 hash = new MurmurHash3.Hash128();
+        for (LeafReaderContext context : ir.leaves()) {
+            assertNull(withoutHashes.getOrdinalHashes(context));
+            LongValues ordinalHashes = withHashes.getOrdinalHashes(context);
+            assertNotNull(ordinalHashes);
+            SortedSetDocValues values = context.reader().getSortedSetDocValues("field1");
+            for (long ord = 0; ord < values.getValueCount(); ord++) {
+                BytesRef term = values.lookupOrd(ord);
+                MurmurHash3.hash128(term.bytes, term.offset, term.length, 0, hash);
+                assertEquals(hash.h1, ordinalHashes.get(ord));
+            }
+        }
+
+        ir.close();
+        dir.close();
+    }
+
+    public void testGlobalOrdinalHashesOfASingleSegment() throws Exception {
+        Directory dir = newDirectory();
+        IndexWriter iw = new IndexWriter(dir, new IndexWriterConfig(null));
+        long numDocs = scaledRandomIntBetween(32, 128);
+        for (int i = 1; i <= numDocs; i++) {
+            Document doc = new Document();
+            doc.add(new SortedSetDocValuesField("field1", new BytesRef(String.valueOf(randomIntBetween(0, 50)))));
+            iw.addDocument(doc);
+        }
+        iw.forceMerge(1);
+        iw.close();
+        DirectoryReader ir = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(dir), new ShardId("_index", "_na_", 0));
+        assertThat(ir.leaves().size(), equalTo(1));
+
+        DummyAccountingFieldDataCache fieldDataCache = new DummyAccountingFieldDataCache();
+        // segment ordinals are used as global ordinals unless the hashes are cached
+        SortedSetDVOrdinalsIndexFieldData withoutHashes = createSortedDV("field1", fieldDataCache);
+        assertSame(withoutHashes, withoutHashes.loadGlobal(ir));
+        assertThat(fieldDataCache.cachedGlobally, equalTo(0));
+
+        Settings settings = Settings.builder().put(IndexFieldDataService.INDEX_FIELDDATA_ORDINAL_HASHES_SETTING.getKey(), true).build();
+        IndexOrdinalsFieldData global = createSortedDV("field1", fieldDataCache, settings).loadGlobal(ir);
+        assertThat(fieldDataCache.cachedGlobally, equalTo(1));
+        assertThat(global, instanceOf(GlobalOrdinalsIndexFieldData.class));
+        LeafReaderContext context = ir.leaves().get(0);
+        LongValues ordinalHashes = ((GlobalOrdinalsIndexFieldData) global).getOrdinalHashes(context);
+        assertNotNull(ordinalHashes);
+        SortedSetDocValues values = context.reader().getSortedSetDocValues("field1");
+        // the segment ordinals are still used as they are
+        assertThat(global.load(context).getOrdinalsValues().getValueCount(), equalTo(values.getValueCount()));
+        MurmurHash3.Hash128 hash = new MurmurHash3.Hash128();
+        for (long ord = 0; ord < values.getValueCount(); ord++) {
+            BytesRef term = values.lookupOrd(ord);
+            MurmurHash3.hash128(term.bytes, term.offset, term.length, 0, hash);
+            assertEquals(hash.h1, ordinalHashes.get(ord));
+        }
+
+        ir.close();
+        dir.close();
+    }
+
+    public void testReleasesBreakerIfOrdinalHashesFail() throws Exception {
+        Directory dir = newDirectory();
+        IndexWriterConfig iwc = new IndexWriterConfig(null);
+        iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+        IndexWriter iw = new IndexWriter(dir, iwc);
+        for (int i = 1; i <= 48; i++) {
+            Document doc = new Document();
+            doc.add(new SortedSetDocValuesField("field1", new BytesRef(String.valueOf(i))));
+            iw.addDocument(doc);
+            if (i % 24 == 0) {
+                iw.commit();
+            }
+        }
+        iw.close();
+        // global ordinals can be built, but looking up the terms to hash them fails
+        DirectoryReader ir = new FailingLookupOrdDirectoryReader(
+            ElasticsearchDirectoryReader.wrap(DirectoryReader.open(dir), new ShardId("_index", "_na_", 0)));
+        assertThat(ir.leaves().size(), greaterThan(1));
+
+        CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(Settings.EMPTY,
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        Settings settings = Settings.builder().put(IndexFieldDataService.INDEX_FIELDDATA_ORDINAL_HASHES_SETTING.getKey(), true).build();
+        SortedSetDVOrdinalsIndexFieldData fieldData = createSortedDV("field1", new DummyAccountingFieldDataCache(), settings,
+            breakerService);
+        ElasticsearchException e = expectThrows(ElasticsearchException.class, () -> fieldData.loadGlobal(ir));
+        assertThat(e.getCause(), instanceOf(IOException.class));
+        assertThat(breakerService.getBreaker(CircuitBreaker.FIELDDATA).getUsed(), equalTo(0L));
+
+        ir.close();
+        dir.close();
+    }
+
     private SortedSetDVOrdinalsIndexFieldData createSortedDV(String fieldName, IndexFieldDataCache indexFieldDataCache) {
-        return new SortedSetDVOrdinalsIndexFieldData(createIndexSettings(), indexFieldDataCache, fieldName, new NoneCircuitBreakerService(),
-                AbstractAtomicOrdinalsFieldData.DEFAULT_SCRIPT_FUNCTION);
+        return createSortedDV(fieldName, indexFieldDataCache, Settings.EMPTY);
+    }
+
+    private SortedSetDVOrdinalsIndexFieldData createSortedDV(String fieldName, IndexFieldDataCache indexFieldDataCache,
+                                                             Settings indexSettings) {
+        return createSortedDV(fieldName, indexFieldDataCache, indexSettings, new NoneCircuitBreakerService());
+    }
+
+    private SortedSetDVOrdinalsIndexFieldData createSortedDV(String fieldName, IndexFieldDataCache indexFieldDataCache,
+                                                             Settings indexSettings, CircuitBreakerService breakerService) {
+        return new SortedSetDVOrdinalsIndexFieldData(createIndexSettings(indexSettings), indexFieldDataCache, fieldName,
+                breakerService, AbstractAtomicOrdinalsFieldData.DEFAULT_SCRIPT_FUNCTION);
     }
 
     private PagedBytesIndexFieldData createPagedBytes(String fieldName, IndexFieldDataCache indexFieldDataCache) {
@@ -99,9 +242,13 @@ public class FieldDataCacheTests extends ESTestCase {
     }
 
     private IndexSettings createIndexSettings() {
+        return createIndexSettings(Settings.EMPTY);
+    }
+
+    private IndexSettings createIndexSettings(Settings indexSettings) {
         Settings settings = Settings.EMPTY;
         IndexMetaData indexMetaData = IndexMetaData.builder("_name")
-                .settings(Settings.builder().put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT))
+                .settings(Settings.builder().put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT).put(indexSettings))
                 .numberOfShards(1)
                 .numberOfReplicas(0)
                 .creationDate(System.currentTimeMillis())
@@ -109,6 +256,98 @@ public class FieldDataCacheTests extends ESTestCase {
         return new IndexSettings(indexMetaData, settings);
     }
 
+    private static class FailingLookupOrdDirectoryReader extends FilterDirectoryReader {
+
+        FailingLookupOrdDirectoryReader(DirectoryReader in) throws IOException {
+            super(in, new SubReaderWrapper() {
+                @Override
+                public LeafReader wrap(LeafReader reader) {
+                    return new FilterLeafReader(reader) {
+                        @Override
+                        public SortedSetDocValues getSortedSetDocValues(String field) throws IOException {
+                            final SortedSetDocValues values = super.getSortedSetDocValues(field);
+                            return values == null ? null : new FailingLookupOrdDocValues(values);
+                        }
+
+                        @Override
+                        public CacheHelper getCoreCacheHelper() {
+                            return in.getCoreCacheHelper();
+                        }
+
+                        @Override
+                        public CacheHelper getReaderCacheHelper() {
+                            return in.getReaderCacheHelper();
+                        }
+                    };
+                }
+            });
+        }
+
+        @Override
+        protected DirectoryReader doWrapDirectoryReader(DirectoryReader in) throws IOException {
+            return new FailingLookupOrdDirectoryReader(in);
+        }
+
+        @Override
+        public CacheHelper getReaderCacheHelper() {
+            return in.getReaderCacheHelper();
+        }
+    }
+
+    private static class FailingLookupOrdDocValues extends SortedSetDocValues {
+        private final SortedSetDocValues in;
+
+        FailingLookupOrdDocValues(SortedSetDocValues in) {
+            this.in = in;
+        }
+
+        @Override
+        public long nextOrd() throws IOException {
+            return in.nextOrd();
+        }
+
+        @Override
+        public BytesRef lookupOrd(long ord) throws IOException {
+            throw new IOException("simulated");
+        }
+
+        @Override
+        public long getValueCount() {
+            return in.getValueCount();
+        }
+
+        @Override
+        public TermsEnum termsEnum() throws IOException {
+            // used to build the ordinal map
+            return in.termsEnum();
+        }
+
+        @Override
+        public boolean advanceExact(int target) throws IOException {
+            return in.advanceExact(target);
+        }
+
+        @Override
+        public int docID() {
+            return in.docID();
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+            return in.nextDoc();
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+            return in.advance(target);
+        }
+
+        @Override
+        public long cost() {
+            return in.cost();
+        }
+    }
+
     private class DummyAccountingFieldDataCache implements IndexFieldDataCache {
 
         private int cachedGlobally = 0;
@@ -76,6 +76,7 @@ public class FuzzyQueryBuilderTests extends AbstractQueryTestCase<FuzzyQueryBuil
     @Override
     protected void doAssertLuceneQuery(FuzzyQueryBuilder queryBuilder, Query query, SearchContext context) throws IOException {
         assertThat(query, instanceOf(FuzzyQuery.class));
+        assertTrue(context.getQueryShardContext().isCrossSegment());
     }
 
     public void testIllegalArguments() {
@@ -35,6 +35,7 @@ import org.elasticsearch.common.ParsingException;
 import org.elasticsearch.common.compress.CompressedXContent;
 import org.elasticsearch.common.lucene.search.MultiPhrasePrefixQuery;
 import org.elasticsearch.common.lucene.search.Queries;
+import org.elasticsearch.common.unit.Fuzziness;
 import org.elasticsearch.index.mapper.MappedFieldType;
 import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.index.search.MatchQuery;
@@ -287,6 +288,14 @@ public class MatchQueryBuilderTests extends AbstractQueryTestCase<MatchQueryBuil
         query.toQuery(context); // no exception
     }
 
+    public void testFuzzinessIsCrossSegment() throws Exception {
+        QueryShardContext context = createShardContext();
+        new MatchQueryBuilder(STRING_FIELD_NAME, "text").toQuery(context);
+        assertFalse(context.isCrossSegment());
+        new MatchQueryBuilder(STRING_FIELD_NAME, "text").fuzziness(Fuzziness.AUTO).toQuery(context);
+        assertTrue(context.isCrossSegment());
+    }
+
     public void testExactOnUnsupportedField() throws Exception {
         assumeTrue("test runs only when at least a type is registered", getCurrentTypes().length > 0);
         MatchQueryBuilder query = new MatchQueryBuilder(GEO_POINT_FIELD_NAME, "2,3");
@@ -92,6 +92,15 @@ public class PrefixQueryBuilderTests extends AbstractQueryTestCase<PrefixQueryBu
         assertThat(prefixQuery.getRewriteMethod(), instanceOf(MultiTermQuery.TopTermsBlendedFreqScoringRewrite.class));
     }
 
+    public void testTopTermsRewriteIsCrossSegment() throws IOException {
+        QueryShardContext context = createShardContext();
+        prefixQuery("field", "val").rewrite(randomFrom("constant_score", "scoring_boolean", "constant_score_boolean")).toQuery(context);
+        assertFalse(context.isCrossSegment());
+        prefixQuery("field", "val").rewrite(randomFrom("top_terms_10", "top_terms_boost_10", "top_terms_blended_freqs_10"))
+            .toQuery(context);
+        assertTrue(context.isCrossSegment());
+    }
+
     public void testFromJson() throws IOException {
         String json =
                 "{    \"prefix\" : { \"user\" :  { \"value\" : \"ki\", \"boost\" : 2.0 } }}";
@@ -110,6 +110,7 @@ import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -1578,6 +1579,17 @@ public class IndexShardTests extends IndexShardTestCase {
         closeShards(newShard);
     }
 
+    public void testDeletesLeftoverTermsSpillFilesOnCreation() throws IOException {
+        final IndexShard shard = newStartedShard(true);
+        final Path spillDirectory = shard.shardPath().resolveTermsSpill();
+        Files.createDirectories(spillDirectory);
+        Files.createTempFile(spillDirectory, "terms_", ".spill");
+        final IndexShard newShard = reinitShard(shard);
+        assertFalse(Files.exists(spillDirectory));
+        recoverShardFromStore(newShard);
+        closeShards(newShard);
+    }
+
     public void testRecoverFromStore() throws IOException {
         final IndexShard shard = newStartedShard(true);
         int totalOps = randomInt(10);
@@ -0,0 +1,123 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.shard;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.routing.RecoverySource;
+import org.elasticsearch.cluster.routing.ShardRouting;
+import org.elasticsearch.cluster.routing.ShardRoutingState;
+import org.elasticsearch.cluster.routing.TestShardRouting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.NodeEnvironment;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.index.translog.TranslogStats;
+import org.elasticsearch.indices.TranslogSyncCoordinator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Tests {@link IndexShard#sync(Translog.Location, java.util.function.Consumer)} when the node groups translog syncs.
+ */
+public class IndexShardTranslogSyncTests extends IndexShardTestCase {
+
+    private TranslogSyncCoordinator coordinator;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        // a window that is long enough for all requests of the test to end up in the same group
+        coordinator = new TranslogSyncCoordinator(Settings.builder()
+            .put(TranslogSyncCoordinator.SYNC_WINDOW_SETTING.getKey(), "1s").build(), threadPool);
+    }
+
+    @Override
+    protected TranslogSyncCoordinator translogSyncCoordinator() {
+        return coordinator;
+    }
+
+    private IndexShard newStartedShard(NodeEnvironment.NodePath nodePath, int shard) throws IOException {
+        final ShardId shardId = new ShardId("index", "_na_", shard);
+        final ShardRouting routing = TestShardRouting.newShardRouting(shardId, randomAlphaOfLength(10), true,
+            ShardRoutingState.INITIALIZING, RecoverySource.StoreRecoverySource.EMPTY_STORE_INSTANCE);
+        final IndexMetaData indexMetaData = IndexMetaData.builder("index")
+            .settings(Settings.builder().put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+                .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 2))
+            .primaryTerm(0, 1).primaryTerm(1, 1).build();
+        final ShardPath shardPath = new ShardPath(false, nodePath.resolve(shardId), nodePath.resolve(shardId), shardId);
+        final IndexShard indexShard = newShard(routing, shardPath, indexMetaData, null, null, () -> {});
+        recoverShardFromStore(indexShard);
+        return indexShard;
+    }
+
+    public void testSyncsShardsOfTheSameDataPathTogether() throws Exception {
+        final NodeEnvironment.NodePath nodePath = new NodeEnvironment.NodePath(createTempDir());
+        final IndexShard[] shards = new IndexShard[] { newStartedShard(nodePath, 0), newStartedShard(nodePath, 1) };
+        assertThat(shards[0].shardPath().getRootDataPath(), equalTo(shards[1].shardPath().getRootDataPath()));
+        final TranslogStats[] before = new TranslogStats[shards.length];
+        final List<List<Translog.Location>> locations = new ArrayList<>();
+        int numRequests = 0;
+        for (int i = 0; i < shards.length; i++) {
+            before[i] = shards[i].translogStats();
+            final List<Translog.Location> shardLocations = new ArrayList<>();
+            final int numDocs = randomIntBetween(1, 10);
+            for (int doc = 0; doc < numDocs; doc++) {
+                shardLocations.add(indexDoc(shards[i], "type", Integer.toString(doc)).getTranslogLocation());
+            }
+            locations.add(shardLocations);
+            numRequests += numDocs;
+        }
+
+        final CountDownLatch latch = new CountDownLatch(numRequests);
+        final List<Exception> failures = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            for (Translog.Location location : locations.get(i)) {
+                shards[i].sync(location, e -> {
+                    if (e != null) {
+                        failures.add(e);
+                    }
+                    latch.countDown();
+                });
+            }
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertThat(failures, equalTo(Collections.emptyList()));
+
+        for (int i = 0; i < shards.length; i++) {
+            final TranslogStats after = shards[i].translogStats();
+            // all requests of a shard are answered by a single sync of its translog
+            assertThat(after.getSyncRequestCount() - before[i].getSyncRequestCount(), equalTo((long) locations.get(i).size()));
+            assertThat(after.getSyncCount() - before[i].getSyncCount(), equalTo(1L));
+            for (Translog.Location location : locations.get(i)) {
+                assertFalse(shards[i].getTranslog().ensureSynced(location));
+            }
+        }
+        closeShards(shards);
+    }
+}
@@ -115,7 +115,9 @@ import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasToString;
 import static org.hamcrest.Matchers.isIn;
+import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
 
 @LuceneTestCase.SuppressFileSystems("ExtrasFS")
 public class TranslogTests extends ESTestCase {
@@ -416,13 +418,16 @@ public class TranslogTests extends ESTestCase {
 
             assertThat(copy.estimatedNumberOfOperations(), equalTo(4));
             assertThat(copy.getTranslogSizeInBytes(), equalTo(expectedSizeInBytes));
+            assertThat(copy.getSyncCount(), equalTo(stats.getSyncCount()));
+            assertThat(copy.getSyncRequestCount(), equalTo(stats.getSyncRequestCount()));
 
             try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
                 builder.startObject();
                 copy.toXContent(builder, ToXContent.EMPTY_PARAMS);
                 builder.endObject();
                 assertThat(builder.string(), equalTo("{\"translog\":{\"operations\":4,\"size_in_bytes\":" + expectedSizeInBytes
-                    + ",\"uncommitted_operations\":4,\"uncommitted_size_in_bytes\":" + expectedSizeInBytes + "}}"));
+                    + ",\"uncommitted_operations\":4,\"uncommitted_size_in_bytes\":" + expectedSizeInBytes
+                    + ",\"sync_count\":" + stats.getSyncCount() + ",\"sync_request_count\":" + stats.getSyncRequestCount() + "}}"));
             }
         }
 
@@ -442,7 +447,7 @@ public class TranslogTests extends ESTestCase {
         final List<TranslogStats> statsList = new ArrayList<>(n);
         for (int i = 0; i < n; i++) {
             final TranslogStats stats = new TranslogStats(randomIntBetween(1, 4096), randomIntBetween(1, 1 << 20),
-                randomIntBetween(1, 1 << 20), randomIntBetween(1, 4096));
+                randomIntBetween(1, 1 << 20), randomIntBetween(1, 4096), randomIntBetween(0, 4096), randomIntBetween(0, 4096));
             statsList.add(stats);
             total.add(stats);
         }
@@ -459,6 +464,12 @@ public class TranslogTests extends ESTestCase {
         assertThat(
             total.getUncommittedSizeInBytes(),
             equalTo(statsList.stream().mapToLong(TranslogStats::getUncommittedSizeInBytes).sum()));
+        assertThat(
+            total.getSyncCount(),
+            equalTo(statsList.stream().mapToLong(TranslogStats::getSyncCount).sum()));
+        assertThat(
+            total.getSyncRequestCount(),
+            equalTo(statsList.stream().mapToLong(TranslogStats::getSyncRequestCount).sum()));
     }
 
     public void testNegativeNumberOfOperations() {
@@ -1010,6 +1021,105 @@ public class TranslogTests extends ESTestCase {
         }
     }
 
+    public void testSyncStats() throws IOException {
+        final TranslogStats before = translog.stats();
+        final int translogOperations = randomIntBetween(1, 100);
+        final List<Location> locations = new ArrayList<>();
+        for (int op = 0; op < translogOperations; op++) {
+            locations.add(translog.add(new Translog.Index("test", "" + op, op, Integer.toString(op).getBytes(Charset.forName("UTF-8")))));
+        }
+        assertTrue(translog.ensureSynced(locations.stream()));
+        TranslogStats stats = translog.stats();
+        assertThat(stats.getSyncCount(), equalTo(before.getSyncCount() + 1));
+        assertThat(stats.getSyncRequestCount(), equalTo(before.getSyncRequestCount() + translogOperations));
+
+        // already synced, only the request is counted
+        assertFalse(translog.ensureSynced(randomFrom(locations)));
+        translog.sync();
+        stats = translog.stats();
+        assertThat(stats.getSyncCount(), equalTo(before.getSyncCount() + 1));
+        assertThat(stats.getSyncRequestCount(), equalTo(before.getSyncRequestCount() + translogOperations + 2));
+    }
+
+    public void testCompressedOperations() throws IOException {
+        final Settings settings = Settings.builder()
+            .put(IndexMetaData.SETTING_VERSION_CREATED, org.elasticsearch.Version.CURRENT)
+            .put(IndexSettings.INDEX_TRANSLOG_COMPRESS_SETTING.getKey(), true)
+            .build();
+        final List<Translog.Operation> ops = new ArrayList<>();
+        try (Translog compressed = createTranslog(getTranslogConfig(createTempDir(), settings), null)) {
+            final String source = "{\"field\":\"" + randomAlphaOfLength(8) + "\"}";
+            final int translogOperations = randomIntBetween(10, 100);
+            for (int op = 0; op < translogOperations; op++) {
+                final Translog.Operation operation;
+                if (rarely()) {
+                    operation = new Translog.Delete("test", Integer.toString(op), op, newUid(Integer.toString(op)));
+                } else {
+                    final StringBuilder builder = new StringBuilder("[");
+                    for (int i = randomIntBetween(10, 100); i > 0; i--) {
+                        builder.append(source).append(',');
+                    }
+                    operation = new Translog.Index("test", Integer.toString(op), op,
+                        builder.append(source).append(']').toString().getBytes(Charset.forName("UTF-8")));
+                }
+                ops.add(operation);
+                compressed.add(operation);
+                translog.add(operation);
+            }
+            try (Translog.Snapshot snapshot = compressed.newSnapshot()) {
+                assertThat(snapshot, SnapshotMatchers.equalsTo(ops));
+            }
+            compressed.sync();
+            translog.sync();
+            assertThat(compressed.sizeInBytes(), lessThan(translog.sizeInBytes()));
+        }
+    }
+
+    public void testCompressedOperationChecksum() throws IOException {
+        final Translog.Operation operation = new Translog.Index("test", "1", 0,
+            repeat(randomAlphaOfLength(8), randomIntBetween(Translog.COMPRESSION_THRESHOLD_IN_BYTES / 8, 1024)));
+        final BytesStreamOutput body = new BytesStreamOutput();
+        Translog.writeCompressedOperationNoSize(new BufferedChecksumStreamOutput(body), operation);
+        final BytesStreamOutput out = new BytesStreamOutput();
+        out.writeInt(body.size());
+        body.bytes().writeTo(out);
+        final byte[] bytes = BytesReference.toBytes(out.bytes());
+        assertThat(bytes[Integer.BYTES], equalTo(Translog.COMPRESSED_OPERATION));
+        assertThat(Translog.readOperation(new BufferedChecksumStreamInput(new BytesArray(bytes).streamInput())), equalTo(operation));
+
+        // corrupt a byte of the compressed operation
+        final int corrupted = randomIntBetween(Integer.BYTES + 1, bytes.length - Integer.BYTES - 1);
+        bytes[corrupted] = (byte) ~bytes[corrupted];
+        expectThrows(TranslogCorruptedException.class,
+            () -> Translog.readOperation(new BufferedChecksumStreamInput(new BytesArray(bytes).streamInput())));
+    }
+
+    public void testSmallOperationsAreNotCompressed() throws IOException {
+        final Translog.Operation operation = randomBoolean()
+            ? new Translog.Delete("test", "1", 0, newUid("1"))
+            : new Translog.Index("test", "1", 0, randomAlphaOfLength(randomIntBetween(1, 64)).getBytes(Charset.forName("UTF-8")));
+        final BytesStreamOutput compressed = new BytesStreamOutput();
+        Translog.writeCompressedOperationNoSize(new BufferedChecksumStreamOutput(compressed), operation);
+        final BytesStreamOutput uncompressed = new BytesStreamOutput();
+        Translog.writeOperationNoSize(new BufferedChecksumStreamOutput(uncompressed), operation);
+        assertThat(compressed.bytes(), equalTo(uncompressed.bytes()));
+
+        // operations that do not get smaller are not compressed either
+        final Translog.Operation random = new Translog.Index("test", "1", 0,
+            randomByteArrayOfLength(randomIntBetween(Translog.COMPRESSION_THRESHOLD_IN_BYTES, 4096)));
+        final BytesStreamOutput out = new BytesStreamOutput();
+        Translog.writeCompressedOperationNoSize(new BufferedChecksumStreamOutput(out), random);
+        assertThat(out.bytes().get(0), not(equalTo(Translog.COMPRESSED_OPERATION)));
+    }
+
+    private static byte[] repeat(String value, int times) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString().getBytes(Charset.forName("UTF-8"));
+    }
+
     public void testLocationComparison() throws IOException {
         List<Translog.Location> locations = new ArrayList<>();
         int translogOperations = randomIntBetween(10, 100);
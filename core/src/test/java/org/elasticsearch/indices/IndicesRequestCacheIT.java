@@ -25,10 +25,13 @@ import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.Fuzziness;
+import org.elasticsearch.index.cache.request.RequestCacheStats;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
 import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
 import org.elasticsearch.search.aggregations.bucket.histogram.Histogram.Bucket;
+import org.elasticsearch.search.sort.SortOrder;
 import org.elasticsearch.test.ESIntegTestCase;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -40,6 +43,7 @@ import java.util.List;
 import static org.elasticsearch.search.aggregations.AggregationBuilders.dateHistogram;
 import static org.elasticsearch.search.aggregations.AggregationBuilders.dateRange;
 import static org.elasticsearch.search.aggregations.AggregationBuilders.filter;
+import static org.elasticsearch.search.aggregations.AggregationBuilders.terms;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
 import static org.hamcrest.Matchers.equalTo;
@@ -433,6 +437,9 @@ public class IndicesRequestCacheIT extends ESIntegTestCase {
                 equalTo(0L));
         assertThat(client.admin().indices().prepareStats("index").setRequestCache(true).get().getTotal().getRequestCache().getMissCount(),
                 equalTo(2L));
+        // only the fetched hits of the shard holding the top hit are tracked separately
+        assertThat(client.admin().indices().prepareStats("index").setRequestCache(true).get().getTotal().getRequestCache()
+                .getHitsMissCount(), equalTo(1L));
 
         // If the request has a filter aggregation containing now we should cache since it gets rewritten
         final SearchResponse r4 = client.prepareSearch("index").setSearchType(SearchType.QUERY_THEN_FETCH).setSize(0)
@@ -446,6 +453,61 @@ public class IndicesRequestCacheIT extends ESIntegTestCase {
                 equalTo(4L));
     }
 
+    public void testCacheHits() throws Exception {
+        Client client = client();
+        Settings settings = Settings.builder().put(IndicesRequestCache.INDEX_CACHE_REQUEST_ENABLED_SETTING.getKey(), true)
+            .put(IndicesRequestCache.INDEX_CACHE_REQUEST_HITS_ENABLED_SETTING.getKey(), true)
+            .put(IndicesRequestCache.INDEX_CACHE_REQUEST_HITS_MAX_WINDOW_SETTING.getKey(), 5)
+            .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1).put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0).build();
+        assertAcked(client.admin().indices().prepareCreate("index").addMapping("type", "s", "type=date")
+                .setSettings(settings)
+                .get());
+        indexRandom(true, client.prepareIndex("index", "type", "1").setSource("s", "2016-03-19"),
+                client.prepareIndex("index", "type", "2").setSource("s", "2016-03-20"),
+                client.prepareIndex("index", "type", "3").setSource("s", "2016-03-21"),
+                client.prepareIndex("index", "type", "4").setSource("s", "2016-03-22"),
+                client.prepareIndex("index", "type", "5").setSource("s", "2016-03-23"),
+                client.prepareIndex("index", "type", "6").setSource("s", "2016-03-24"));
+        ensureSearchable("index");
+
+        // the query result and the fetched hits are both cached
+        final SearchResponse r1 = client.prepareSearch("index").setSearchType(SearchType.QUERY_THEN_FETCH).setSize(3)
+                .addSort("s", SortOrder.DESC).get();
+        assertSearchResponse(r1);
+        assertThat(r1.getHits().getTotalHits(), equalTo(6L));
+        RequestCacheStats stats = client.admin().indices().prepareStats("index").setRequestCache(true).get().getTotal().getRequestCache();
+        assertThat(stats.getHitCount(), equalTo(0L));
+        assertThat(stats.getMissCount(), equalTo(1L));
+        assertThat(stats.getHitsHitCount(), equalTo(0L));
+        assertThat(stats.getHitsMissCount(), equalTo(1L));
+
+        final SearchResponse r2 = client.prepareSearch("index").setSearchType(SearchType.QUERY_THEN_FETCH).setSize(3)
+                .addSort("s", SortOrder.DESC).get();
+        assertSearchResponse(r2);
+        assertThat(r2.getHits().getTotalHits(), equalTo(6L));
+        assertThat(r2.getHits().getHits().length, equalTo(3));
+        for (int i = 0; i < 3; i++) {
+            assertThat(r2.getHits().getAt(i).getId(), equalTo(r1.getHits().getAt(i).getId()));
+            assertThat(r2.getHits().getAt(i).getSourceAsMap(), equalTo(r1.getHits().getAt(i).getSourceAsMap()));
+        }
+        stats = client.admin().indices().prepareStats("index").setRequestCache(true).get().getTotal().getRequestCache();
+        assertThat(stats.getHitCount(), equalTo(1L));
+        assertThat(stats.getMissCount(), equalTo(1L));
+        assertThat(stats.getHitsHitCount(), equalTo(1L));
+        assertThat(stats.getHitsMissCount(), equalTo(1L));
+
+        // pages that go beyond the max window are not cached
+        final SearchResponse r3 = client.prepareSearch("index").setSearchType(SearchType.QUERY_THEN_FETCH).setFrom(3).setSize(3)
+                .addSort("s", SortOrder.DESC).get();
+        assertSearchResponse(r3);
+        assertThat(r3.getHits().getHits().length, equalTo(3));
+        stats = client.admin().indices().prepareStats("index").setRequestCache(true).get().getTotal().getRequestCache();
+        assertThat(stats.getHitCount(), equalTo(1L));
+        assertThat(stats.getMissCount(), equalTo(1L));
+        assertThat(stats.getHitsHitCount(), equalTo(1L));
+        assertThat(stats.getHitsMissCount(), equalTo(1L));
+    }
+
     public void testCacheWithFilteredAlias() {
         Client client = client();
         Settings settings = Settings.builder().put(IndicesRequestCache.INDEX_CACHE_REQUEST_ENABLED_SETTING.getKey(), true)
@@ -499,4 +561,52 @@ public class IndicesRequestCacheIT extends ESIntegTestCase {
             equalTo(2L));
     }
 
+    public void testFuzzyAndTopTermsQueriesAreNotCachedPerSegment() throws Exception {
+        Client client = client();
+        // only the partial aggregation results of segments can be cached
+        Settings settings = Settings.builder().put(IndicesRequestCache.INDEX_CACHE_REQUEST_ENABLED_SETTING.getKey(), false)
+            .put(IndicesRequestCache.INDEX_CACHE_REQUEST_SEGMENT_AGGS_ENABLED_SETTING.getKey(), true)
+            .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1).put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0).build();
+        assertAcked(client.admin().indices().prepareCreate("index").addMapping("type", "s", "type=keyword")
+            .setSettings(settings).get());
+        indexRandom(true,
+            client.prepareIndex("index", "type", "1").setSource("s", "foo"),
+            client.prepareIndex("index", "type", "2").setSource("s", "fob"));
+        ensureSearchable("index");
+
+        // the terms that these queries match are picked across all segments
+        SearchResponse r1 = client.prepareSearch("index").setSize(0)
+            .setQuery(QueryBuilders.fuzzyQuery("s", "fop"))
+            .addAggregation(terms("terms").field("s")).get();
+        assertSearchResponse(r1);
+        assertThat(r1.getHits().getTotalHits(), equalTo(2L));
+        assertThat(requestCacheMemorySize("index"), equalTo(0L));
+
+        r1 = client.prepareSearch("index").setSize(0)
+            .setQuery(QueryBuilders.matchQuery("s", "fop").fuzziness(Fuzziness.ONE))
+            .addAggregation(terms("terms").field("s")).get();
+        assertSearchResponse(r1);
+        assertThat(r1.getHits().getTotalHits(), equalTo(2L));
+        assertThat(requestCacheMemorySize("index"), equalTo(0L));
+
+        r1 = client.prepareSearch("index").setSize(0)
+            .setQuery(QueryBuilders.prefixQuery("s", "fo").rewrite("top_terms_1"))
+            .addAggregation(terms("terms").field("s")).get();
+        assertSearchResponse(r1);
+        assertThat(r1.getHits().getTotalHits(), equalTo(1L));
+        assertThat(requestCacheMemorySize("index"), equalTo(0L));
+
+        // unlike the same query with a rewrite that matches all terms
+        r1 = client.prepareSearch("index").setSize(0)
+            .setQuery(QueryBuilders.prefixQuery("s", "fo").rewrite("constant_score"))
+            .addAggregation(terms("terms").field("s")).get();
+        assertSearchResponse(r1);
+        assertThat(r1.getHits().getTotalHits(), equalTo(2L));
+        assertThat(requestCacheMemorySize("index"), greaterThan(0L));
+    }
+
+    private static long requestCacheMemorySize(String index) {
+        return client().admin().indices().prepareStats(index).setRequestCache(true).get().getTotal().getRequestCache()
+            .getMemorySizeInBytes();
+    }
 }
@@ -24,12 +24,16 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LogDocMergePolicy;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.IOUtils;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
@@ -352,6 +356,62 @@ public class IndicesRequestCacheTests extends ESTestCase {
 
     }
 
+    public void testSegmentEntries() throws Exception {
+        ShardRequestCache requestCacheStats = new ShardRequestCache();
+        IndicesRequestCache cache = new IndicesRequestCache(Settings.EMPTY);
+        Directory dir = newDirectory();
+        IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig().setMergePolicy(new LogDocMergePolicy()));
+
+        writer.addDocument(newDoc(0, "foo"));
+        writer.addDocument(newDoc(1, "foo"));
+        DirectoryReader reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer), new ShardId("foo", "bar", 1));
+        TermQueryBuilder termQuery = new TermQueryBuilder("id", "0");
+        BytesReference termBytes = XContentHelper.toXContent(termQuery, XContentType.JSON, false);
+        TestEntity entity = new TestEntity(requestCacheStats, new AtomicBoolean(true));
+
+        // initial cache
+        LeafReader segment = reader.leaves().get(0).reader();
+        assertNull(cache.get(entity, segment, termBytes));
+        cache.put(entity, segment, termBytes, new BytesArray("foo"));
+        // segment lookups don't count as hits or misses
+        assertEquals(0, requestCacheStats.stats().getHitCount());
+        assertEquals(0, requestCacheStats.stats().getMissCount());
+        assertEquals(1, cache.count());
+        assertEquals(1, cache.numRegisteredCloseListeners());
+
+        // a refresh that adds a segment keeps the entry of the existing segment
+        writer.addDocument(newDoc(2, "bar"));
+        DirectoryReader secondReader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer), new ShardId("foo", "bar", 1));
+        assertEquals(2, secondReader.leaves().size());
+        assertEquals(new BytesArray("foo"), cache.get(entity, secondReader.leaves().get(0).reader(), termBytes));
+        assertNull(cache.get(entity, secondReader.leaves().get(1).reader(), termBytes));
+        assertEquals(0, requestCacheStats.stats().getHitCount());
+        assertEquals(0, requestCacheStats.stats().getMissCount());
+
+        // new deletes change the segment
+        writer.deleteDocuments(new Term("id", "0"));
+        DirectoryReader thirdReader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer), new ShardId("foo", "bar", 1));
+        segment = thirdReader.leaves().get(0).reader();
+        assertEquals(1, segment.numDeletedDocs());
+        assertNull(cache.get(entity, segment, termBytes));
+        cache.put(entity, segment, termBytes, new BytesArray("bar"));
+        assertEquals(new BytesArray("bar"), cache.get(entity, segment, termBytes));
+        assertEquals(2, cache.count());
+        assertEquals(1, cache.numRegisteredCloseListeners());
+
+        // the entries are dropped once the segment is merged away
+        writer.forceMerge(1);
+        DirectoryReader fourthReader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer), new ShardId("foo", "bar", 1));
+        assertEquals(1, fourthReader.leaves().size());
+        IOUtils.close(reader, secondReader, thirdReader);
+        cache.cleanCache();
+        assertEquals(0, cache.count());
+        assertEquals(0, cache.numRegisteredCloseListeners());
+        assertEquals(0, requestCacheStats.stats().getMemorySize().bytesAsInt());
+
+        IOUtils.close(fourthReader, writer, dir, cache);
+    }
+
     public void testInvalidate() throws Exception {
         ShardRequestCache requestCacheStats = new ShardRequestCache();
         IndicesRequestCache cache = new IndicesRequestCache(Settings.EMPTY);
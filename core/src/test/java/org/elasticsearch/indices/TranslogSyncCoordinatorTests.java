@@ -0,0 +1,205 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.elasticsearch.common.CheckedConsumer;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class TranslogSyncCoordinatorTests extends ESTestCase {
+
+    private ThreadPool threadPool;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        threadPool = new TestThreadPool(getClass().getName());
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        ThreadPool.terminate(threadPool, 30, TimeUnit.SECONDS);
+        super.tearDown();
+    }
+
+    private TranslogSyncCoordinator newCoordinator() {
+        return new TranslogSyncCoordinator(Settings.builder()
+            .put(TranslogSyncCoordinator.SYNC_WINDOW_SETTING.getKey(), randomIntBetween(1, 50) + "ms").build(), threadPool);
+    }
+
+    public void testDisabledByDefault() {
+        assertFalse(new TranslogSyncCoordinator(Settings.EMPTY, threadPool).isEnabled());
+        assertTrue(newCoordinator().isEnabled());
+    }
+
+    public void testGroupsRequestsPerTranslog() throws Exception {
+        // a window that is long enough for all requests to end up in the same group
+        final TranslogSyncCoordinator coordinator = new TranslogSyncCoordinator(Settings.builder()
+            .put(TranslogSyncCoordinator.SYNC_WINDOW_SETTING.getKey(), "1s").build(), threadPool);
+        final Path dataPath = createTempDir();
+        final int numTranslogs = randomIntBetween(1, 5);
+        final List<List<Translog.Location>> synced = new CopyOnWriteArrayList<>();
+        final AtomicInteger syncs = new AtomicInteger();
+        final CountingTranslog[] translogs = new CountingTranslog[numTranslogs];
+        for (int i = 0; i < numTranslogs; i++) {
+            translogs[i] = new CountingTranslog(syncs, synced);
+        }
+        final int numRequests = randomIntBetween(1, 100);
+        final int[] requestsPerTranslog = new int[numTranslogs];
+        final CountDownLatch latch = new CountDownLatch(numRequests);
+        final List<Exception> failures = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < numRequests; i++) {
+            final int translog = randomIntBetween(0, numTranslogs - 1);
+            requestsPerTranslog[translog]++;
+            coordinator.sync(dataPath, translogs[translog], new Translog.Location(1, i, 1), e -> {
+                if (e != null) {
+                    failures.add(e);
+                }
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertThat(failures, equalTo(Collections.emptyList()));
+        for (int i = 0; i < numTranslogs; i++) {
+            // exactly one sync per translog that has requests in the group
+            assertThat(translogs[i].syncs.get(), equalTo(requestsPerTranslog[i] > 0 ? 1 : 0));
+        }
+        assertThat(syncs.get(), equalTo((int) Arrays.stream(requestsPerTranslog).filter(count -> count > 0).count()));
+        assertThat(synced.stream().mapToInt(List::size).sum(), equalTo(numRequests));
+    }
+
+    public void testSyncsTranslogsOfAGroupInParallel() throws Exception {
+        final TranslogSyncCoordinator coordinator = new TranslogSyncCoordinator(Settings.builder()
+            .put(TranslogSyncCoordinator.SYNC_WINDOW_SETTING.getKey(), "1s").build(), threadPool);
+        final Path dataPath = createTempDir();
+        final int numTranslogs = randomIntBetween(2, 5);
+        // every sync waits for the syncs of all other translogs, which only completes if they run in parallel
+        final CyclicBarrier barrier = new CyclicBarrier(numTranslogs);
+        final CountDownLatch latch = new CountDownLatch(numTranslogs);
+        final List<Exception> failures = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < numTranslogs; i++) {
+            final CheckedConsumer<Stream<Translog.Location>, IOException> translog = locations -> {
+                try {
+                    barrier.await(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+            };
+            coordinator.sync(dataPath, translog, new Translog.Location(1, i, 1), e -> {
+                if (e != null) {
+                    failures.add(e);
+                }
+                latch.countDown();
+            });
+        }
+        assertTrue(latch.await(20, TimeUnit.SECONDS));
+        assertThat(failures, equalTo(Collections.emptyList()));
+    }
+
+    public void testSyncsOnCallingThreadIfTooManyRequestsArePending() throws Exception {
+        final int maxPendingSyncs = randomIntBetween(1, 10);
+        final TranslogSyncCoordinator coordinator = new TranslogSyncCoordinator(Settings.builder()
+            .put(TranslogSyncCoordinator.SYNC_WINDOW_SETTING.getKey(), "1s").build(), threadPool, maxPendingSyncs);
+        final Path dataPath = createTempDir();
+        final CountingTranslog translog = new CountingTranslog(new AtomicInteger(), new CopyOnWriteArrayList<>());
+        final int numRequests = maxPendingSyncs + randomIntBetween(1, 10);
+        final CountDownLatch latch = new CountDownLatch(numRequests);
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger syncedOnCaller = new AtomicInteger();
+        final List<Exception> failures = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < numRequests; i++) {
+            coordinator.sync(dataPath, translog, new Translog.Location(1, i, 1), e -> {
+                if (e != null) {
+                    failures.add(e);
+                }
+                if (Thread.currentThread() == caller) {
+                    syncedOnCaller.incrementAndGet();
+                }
+                latch.countDown();
+            });
+        }
+        // the requests that don't fit are synced right away
+        assertThat(syncedOnCaller.get(), equalTo(numRequests - maxPendingSyncs));
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertThat(failures, equalTo(Collections.emptyList()));
+        assertThat(translog.syncs.get(), equalTo(numRequests - maxPendingSyncs + 1));
+    }
+
+    public void testFailureOnlyFailsRequestsOfTheTranslog() throws Exception {
+        final TranslogSyncCoordinator coordinator = newCoordinator();
+        final Path dataPath = createTempDir();
+        final IOException failure = new IOException("boom");
+        final CheckedConsumer<Stream<Translog.Location>, IOException> failing = locations -> {
+            throw failure;
+        };
+        final CountingTranslog healthy = new CountingTranslog(new AtomicInteger(), new CopyOnWriteArrayList<>());
+        final CountDownLatch latch = new CountDownLatch(2);
+        final Exception[] results = new Exception[2];
+        coordinator.sync(dataPath, failing, new Translog.Location(1, 0, 1), e -> {
+            results[0] = e;
+            latch.countDown();
+        });
+        coordinator.sync(dataPath, healthy, new Translog.Location(1, 0, 1), e -> {
+            results[1] = e;
+            latch.countDown();
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertThat(results[0], sameInstance(failure));
+        assertThat(results[1], nullValue());
+    }
+
+    private static class CountingTranslog implements CheckedConsumer<Stream<Translog.Location>, IOException> {
+        private final AtomicInteger totalSyncs;
+        private final AtomicInteger syncs = new AtomicInteger();
+        private final List<List<Translog.Location>> synced;
+
+        CountingTranslog(AtomicInteger totalSyncs, List<List<Translog.Location>> synced) {
+            this.totalSyncs = totalSyncs;
+            this.synced = synced;
+        }
+
+        @Override
+        public void accept(Stream<Translog.Location> locations) {
+            totalSyncs.incrementAndGet();
+            syncs.incrementAndGet();
+            synced.add(locations.collect(Collectors.toList()));
+        }
+    }
+}
@@ -120,6 +120,33 @@ public class ResponseCollectorServiceTests extends ESTestCase {
         }
     }
 
+    public void testResponseTimePercentile() {
+        assertFalse(collector.getResponseTimePercentile("node1", 50).isPresent());
+        for (int i = 1; i < 10; i++) {
+            collector.addNodeStatistics("node1", 1, i, 10);
+        }
+        // too few responses
+        assertFalse(collector.getResponseTimePercentile("node1", 50).isPresent());
+        collector.addNodeStatistics("node1", 1, 10, 10);
+        assertEquals(5, collector.getResponseTimePercentile("node1", 50).getAsLong());
+        assertEquals(10, collector.getResponseTimePercentile("node1", 100).getAsLong());
+        assertEquals(1, collector.getResponseTimePercentile("node1", 1).getAsLong());
+        // only the most recent responses are taken into account
+        for (int i = 0; i < 100; i++) {
+            collector.addNodeStatistics("node1", 1, 1000, 10);
+        }
+        assertEquals(1000, collector.getResponseTimePercentile("node1", 1).getAsLong());
+    }
+
+    public void testHedgeCounters() {
+        collector.onHedgeSent("node1");
+        collector.onHedgeSent("node1");
+        collector.onHedgeWon("node1");
+        AdaptiveSelectionStats stats = collector.getAdaptiveStats(Collections.emptyMap());
+        assertEquals(Collections.singletonMap("node1", 2L), stats.getHedgesSent());
+        assertEquals(Collections.singletonMap("node1", 1L), stats.getHedgesWon());
+    }
+
     public void testNodeRemoval() throws Exception {
         collector.addNodeStatistics("node1", randomIntBetween(1,100), randomIntBetween(1,100), randomIntBetween(1,100));
         collector.addNodeStatistics("node2", randomIntBetween(1,100), randomIntBetween(1,100), randomIntBetween(1,100));
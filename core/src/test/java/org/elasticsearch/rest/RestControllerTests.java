@@ -452,6 +452,51 @@ public class RestControllerTests extends ESTestCase {
         assertTrue(channel.getSendResponseCalled());
     }
 
+    public void testCanStreamBody() {
+        restController.registerHandler(RestRequest.Method.POST, "/{index}/_stream", new RestHandler() {
+            @Override
+            public void handleRequest(RestRequest request, RestChannel channel, NodeClient client) throws Exception {
+                channel.sendResponse(new BytesRestResponse(RestStatus.OK, BytesRestResponse.TEXT_CONTENT_TYPE, BytesArray.EMPTY));
+            }
+
+            @Override
+            public boolean canStreamBody() {
+                return true;
+            }
+        });
+        restController.registerHandler(RestRequest.Method.POST, "/{index}/_aggregate", new FakeRestHandler(false));
+
+        assertTrue(restController.canStreamBody(new FakeRestRequest.Builder(NamedXContentRegistry.EMPTY)
+            .withMethod(RestRequest.Method.POST).withPath("/index/_stream").build()));
+        assertFalse(restController.canStreamBody(new FakeRestRequest.Builder(NamedXContentRegistry.EMPTY)
+            .withMethod(RestRequest.Method.PUT).withPath("/index/_stream").build()));
+        assertFalse(restController.canStreamBody(new FakeRestRequest.Builder(NamedXContentRegistry.EMPTY)
+            .withMethod(RestRequest.Method.POST).withPath("/index/_aggregate").build()));
+        assertFalse(restController.canStreamBody(new FakeRestRequest.Builder(NamedXContentRegistry.EMPTY)
+            .withMethod(RestRequest.Method.POST).withPath("/index/_unknown").build()));
+    }
+
+    public void testDispatchRequiresContentTypeForStreamedBody() {
+        FakeRestRequest fakeRestRequest = new FakeRestRequest.Builder(NamedXContentRegistry.EMPTY)
+            .withBodyStream(mock(RestRequest.BodyStream.class), null).withMethod(RestRequest.Method.POST).withPath("/foo").build();
+        AssertingChannel channel = new AssertingChannel(fakeRestRequest, true, RestStatus.NOT_ACCEPTABLE);
+        restController.registerHandler(RestRequest.Method.POST, "/foo", new RestHandler() {
+            @Override
+            public void handleRequest(RestRequest request, RestChannel channel, NodeClient client) throws Exception {
+                throw new AssertionError("the request must not be handled");
+            }
+
+            @Override
+            public boolean canStreamBody() {
+                return true;
+            }
+        });
+
+        assertFalse(channel.getSendResponseCalled());
+        restController.dispatchRequest(fakeRestRequest, channel, new ThreadContext(Settings.EMPTY));
+        assertTrue(channel.getSendResponseCalled());
+    }
+
     public void testDispatchBadRequest() {
         final FakeRestRequest fakeRestRequest = new FakeRestRequest.Builder(NamedXContentRegistry.EMPTY).build();
         final AssertingChannel channel = new AssertingChannel(fakeRestRequest, true, RestStatus.BAD_REQUEST);
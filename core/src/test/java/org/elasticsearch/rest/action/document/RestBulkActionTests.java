@@ -23,9 +23,11 @@ import java.util.HashMap;
 import java.util.Map;
 import org.elasticsearch.Version;
 import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.client.node.NodeClient;
 import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestController;
@@ -33,6 +35,7 @@ import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.rest.FakeRestRequest;
 import org.hamcrest.CustomMatcher;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import static org.mockito.Matchers.any;
@@ -73,4 +76,36 @@ public class RestBulkActionTests extends ESTestCase {
                 }
             }), any());
     }
+
+    public void testStreamsBodyIfEnabled() throws Exception {
+        assertFalse(new RestBulkAction(settings(Version.CURRENT).build(), mock(RestController.class)).canStreamBody());
+        final RestBulkAction action = new RestBulkAction(settings(Version.CURRENT)
+            .put(RestBulkAction.STREAMING_ENABLED_SETTING.getKey(), true).build(), mock(RestController.class));
+        assertTrue(action.canStreamBody());
+
+        final NodeClient mockClient = mock(NodeClient.class);
+        final RestRequest.BodyStream bodyStream = mock(RestRequest.BodyStream.class);
+        final Map<String, String> params = new HashMap<>();
+        params.put("refresh", "true");
+        params.put("timeout", "5s");
+        action.handleRequest(
+            new FakeRestRequest.Builder(xContentRegistry()).withPath("my_index/my_type/_bulk").withParams(params)
+                .withBodyStream(bodyStream, XContentType.JSON).withMethod(RestRequest.Method.POST).build(),
+            mock(RestChannel.class), mockClient);
+        final ArgumentCaptor<RestRequest.BodyStream.Listener> listener = ArgumentCaptor.forClass(RestRequest.BodyStream.Listener.class);
+        Mockito.verify(bodyStream).setListener(listener.capture());
+        Mockito.verifyZeroInteractions(mockClient);
+
+        listener.getValue().onChunk(new BytesArray("{\"index\":{\"_id\":\"1\"}}\n{\"field1\":\"val1\"}\n"), true);
+        Mockito.verify(mockClient)
+            .bulk(argThat(new CustomMatcher<BulkRequest>("Options of the streamed request") {
+                @Override
+                public boolean matches(final Object item) {
+                    BulkRequest request = (BulkRequest) item;
+                    return request.numberOfActions() == 1 && "my_index".equals(request.requests().get(0).index())
+                        && request.getRefreshPolicy() == WriteRequest.RefreshPolicy.IMMEDIATE
+                        && TimeValue.timeValueSeconds(5).equals(request.timeout());
+                }
+            }), any());
+    }
 }
@@ -0,0 +1,276 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.rest.action.document;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.bulk.IncrementalBulkParser;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class StreamingBulkListenerTests extends ESTestCase {
+
+    private static final long WINDOW = 4096;
+
+    private final List<Tuple<BulkRequest, ActionListener<BulkResponse>>> sent = new ArrayList<>();
+    private final AtomicReference<BulkResponse> response = new AtomicReference<>();
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private TestBodyStream bodyStream;
+    private NodeClient client;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        super.setUp();
+        bodyStream = new TestBodyStream();
+        client = mock(NodeClient.class);
+        doAnswer(invocation -> {
+            sent.add(new Tuple<>((BulkRequest) invocation.getArguments()[0], (ActionListener<BulkResponse>) invocation.getArguments()[1]));
+            return null;
+        }).when(client).bulk(any(), any());
+    }
+
+    private StreamingBulkListener newListener() {
+        return newListener(RefreshPolicy.NONE);
+    }
+
+    private StreamingBulkListener newListener(RefreshPolicy refreshPolicy) {
+        final IncrementalBulkParser parser = new IncrementalBulkParser(() -> new BulkRequest().setRefreshPolicy(refreshPolicy),
+            "index", "type", null, null, null, null, true, XContentType.JSON, WINDOW / 4);
+        final StreamingBulkListener listener = new StreamingBulkListener(client, bodyStream, parser, WINDOW,
+            ActionListener.wrap(response::set, failure::set));
+        listener.start();
+        assertThat(bodyStream.listener, sameInstance(listener));
+        return listener;
+    }
+
+    private static BytesArray item(int id) {
+        // every item fills a batch on its own
+        return new BytesArray("{\"index\":{\"_id\":\"" + id + "\"}}\n{\"field\":\"" + randomAlphaOfLength((int) WINDOW / 4) + "\"}\n");
+    }
+
+    private static BulkResponse respond(BulkRequest request) {
+        final BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+        for (int i = 0; i < items.length; i++) {
+            final DocWriteRequest item = request.requests().get(i);
+            items[i] = new BulkItemResponse(i, item.opType(),
+                new IndexResponse(new ShardId(item.index(), "_na_", 0), item.type(), item.id(), 1, 1, 1, true));
+        }
+        return new BulkResponse(items, 1);
+    }
+
+    public void testSendsItemsWhileTheBodyIsRead() {
+        final StreamingBulkListener listener = newListener();
+        final int numItems = randomIntBetween(1, 3);
+        for (int i = 0; i < numItems; i++) {
+            listener.onChunk(item(i), false);
+            assertThat(sent.size(), equalTo(i + 1));
+            assertThat(sent.get(i).v1().requests().get(0).id(), equalTo(Integer.toString(i)));
+        }
+        for (Tuple<BulkRequest, ActionListener<BulkResponse>> request : sent) {
+            request.v2().onResponse(respond(request.v1()));
+        }
+        // the response is only sent once the body is read to the end
+        assertThat(response.get(), nullValue());
+        listener.onChunk(BytesArray.EMPTY, true);
+        assertThat(sent.size(), equalTo(numItems));
+        assertThat(response.get().getItems().length, equalTo(numItems));
+        assertFalse(response.get().hasFailures());
+    }
+
+    public void testPausesWhileTheWindowIsFull() {
+        final StreamingBulkListener listener = newListener();
+        int numItems = 0;
+        while (bodyStream.paused == false) {
+            listener.onChunk(item(numItems++), false);
+        }
+        assertThat(numItems, greaterThan(1));
+        assertThat(sent.size(), equalTo(numItems));
+        sent.get(0).v2().onResponse(respond(sent.get(0).v1()));
+        assertFalse(bodyStream.paused);
+
+        listener.onChunk(item(numItems++), true);
+        for (int i = 1; i < sent.size(); i++) {
+            assertThat(response.get(), nullValue());
+            sent.get(i).v2().onResponse(respond(sent.get(i).v1()));
+        }
+        assertThat(response.get().getItems().length, equalTo(numItems));
+    }
+
+    public void testReturnsItemsInOrder() {
+        final StreamingBulkListener listener = newListener();
+        final int numItems = randomIntBetween(1, 20);
+        for (int i = 0; i < numItems; i++) {
+            listener.onChunk(item(i), i == numItems - 1);
+        }
+        final List<Tuple<BulkRequest, ActionListener<BulkResponse>>> requests = new ArrayList<>(sent);
+        Collections.shuffle(requests, random());
+        final List<String> failedIds = new ArrayList<>();
+        final Exception e = new IllegalStateException("boom");
+        for (Tuple<BulkRequest, ActionListener<BulkResponse>> request : requests) {
+            if (randomBoolean()) {
+                request.v2().onResponse(respond(request.v1()));
+            } else {
+                request.v1().requests().forEach(item -> failedIds.add(item.id()));
+                request.v2().onFailure(e);
+            }
+        }
+        final BulkItemResponse[] items = response.get().getItems();
+        assertThat(items.length, equalTo(numItems));
+        for (int i = 0; i < numItems; i++) {
+            assertThat(items[i].getItemId(), equalTo(i));
+            assertThat(items[i].getId(), equalTo(Integer.toString(i)));
+            assertThat(items[i].isFailed(), equalTo(failedIds.contains(Integer.toString(i))));
+            if (items[i].isFailed()) {
+                assertThat(items[i].getFailure().getCause(), sameInstance(e));
+            }
+        }
+    }
+
+    public void testWaitsForRequestsWithTheSameIds() {
+        final StreamingBulkListener listener = newListener();
+        listener.onChunk(item(0), false);
+        listener.onChunk(item(1), false);
+        assertThat(sent.size(), equalTo(2));
+        // the same id as an item in flight, the item must be applied after the first one
+        listener.onChunk(item(0), false);
+        assertThat(sent.size(), equalTo(2));
+        // the requests that are sent later wait too
+        listener.onChunk(item(2), true);
+        assertThat(sent.size(), equalTo(2));
+
+        sent.get(1).v2().onResponse(respond(sent.get(1).v1()));
+        assertThat(sent.size(), equalTo(2));
+        sent.get(0).v2().onResponse(respond(sent.get(0).v1()));
+        assertThat(sent.size(), equalTo(4));
+        assertThat(sent.get(2).v1().requests().get(0).id(), equalTo("0"));
+        assertThat(sent.get(3).v1().requests().get(0).id(), equalTo("2"));
+
+        sent.get(3).v2().onResponse(respond(sent.get(3).v1()));
+        assertThat(response.get(), nullValue());
+        sent.get(2).v2().onResponse(respond(sent.get(2).v1()));
+        final BulkItemResponse[] items = response.get().getItems();
+        assertThat(items.length, equalTo(4));
+        final String[] expectedIds = new String[] {"0", "1", "0", "2"};
+        for (int i = 0; i < items.length; i++) {
+            assertThat(items[i].getItemId(), equalTo(i));
+            assertThat(items[i].getId(), equalTo(expectedIds[i]));
+        }
+    }
+
+    public void testAppliesRefreshPolicyToTheFinalRequest() {
+        final RefreshPolicy refreshPolicy = randomFrom(RefreshPolicy.IMMEDIATE, RefreshPolicy.WAIT_UNTIL);
+        final StreamingBulkListener listener = newListener(refreshPolicy);
+        // at least one other request is in flight when the final one is sent
+        final int numItems = randomIntBetween(2, 3);
+        for (int i = 0; i < numItems; i++) {
+            listener.onChunk(item(i), false);
+            // the last request is held back until it is known whether it is the final one
+            assertThat(sent.size(), equalTo(i));
+        }
+        final boolean lastChunkHasItem = randomBoolean();
+        listener.onChunk(lastChunkHasItem ? item(numItems) : BytesArray.EMPTY, true);
+        final int numRequests = lastChunkHasItem ? numItems + 1 : numItems;
+        // the final request is only sent once all other requests completed
+        assertThat(sent.size(), equalTo(numRequests - 1));
+        for (int i = 0; i < numRequests - 1; i++) {
+            assertThat(sent.get(i).v1().getRefreshPolicy(), equalTo(RefreshPolicy.NONE));
+            sent.get(i).v2().onResponse(respond(sent.get(i).v1()));
+        }
+        assertThat(sent.size(), equalTo(numRequests));
+        final Tuple<BulkRequest, ActionListener<BulkResponse>> last = sent.get(numRequests - 1);
+        assertThat(last.v1().getRefreshPolicy(), equalTo(refreshPolicy));
+        assertThat(last.v1().requests().get(0).id(), equalTo(Integer.toString(numRequests - 1)));
+        assertThat(response.get(), nullValue());
+        last.v2().onResponse(respond(last.v1()));
+        assertThat(response.get().getItems().length, equalTo(numRequests));
+    }
+
+    public void testFailsOnMalformedItem() {
+        final StreamingBulkListener listener = newListener();
+        listener.onChunk(item(0), false);
+        listener.onChunk(new BytesArray("{\"index\":{\"_unknown\":\"1\"}}\n{\"field\":\"" + randomAlphaOfLength((int) WINDOW) + "\"}\n"),
+            false);
+        assertThat(failure.get(), instanceOf(IllegalArgumentException.class));
+        // the rest of the body and the requests in flight are ignored
+        listener.onChunk(item(2), true);
+        assertThat(sent.size(), equalTo(1));
+        sent.get(0).v2().onResponse(respond(sent.get(0).v1()));
+        assertThat(response.get(), nullValue());
+    }
+
+    public void testRejectsBodyWithoutItems() {
+        final StreamingBulkListener listener = newListener();
+        listener.onChunk(new BytesArray(randomBoolean() ? "" : "\n"), true);
+        assertThat(sent.size(), equalTo(1));
+        assertThat(sent.get(0).v1().numberOfActions(), equalTo(0));
+        // the bulk action validates the request and responds directly
+        final Exception e = new IllegalArgumentException("no requests added");
+        sent.get(0).v2().onFailure(e);
+        assertThat(failure.get(), sameInstance(e));
+    }
+
+    private static class TestBodyStream implements RestRequest.BodyStream {
+        private RestRequest.BodyStream.Listener listener;
+        private boolean paused;
+
+        @Override
+        public void setListener(Listener listener) {
+            assertThat(this.listener, nullValue());
+            this.listener = listener;
+        }
+
+        @Override
+        public void pause() {
+            assertFalse(paused);
+            paused = true;
+        }
+
+        @Override
+        public void resume() {
+            assertTrue(paused);
+            paused = false;
+        }
+    }
+}
@@ -24,6 +24,12 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.ClosePointInTimeAction;
+import org.elasticsearch.action.search.ClosePointInTimeRequest;
+import org.elasticsearch.action.search.ClosePointInTimeResponse;
+import org.elasticsearch.action.search.OpenPointInTimeAction;
+import org.elasticsearch.action.search.OpenPointInTimeRequest;
+import org.elasticsearch.action.search.OpenPointInTimeResponse;
 import org.elasticsearch.action.search.SearchPhaseExecutionException;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchTask;
@@ -54,6 +60,7 @@ import org.elasticsearch.script.ScriptType;
 import org.elasticsearch.search.aggregations.bucket.global.GlobalAggregationBuilder;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
 import org.elasticsearch.search.aggregations.support.ValueType;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.fetch.ShardFetchRequest;
 import org.elasticsearch.search.internal.AliasFilter;
@@ -146,6 +153,45 @@ public class SearchServiceTests extends ESSingleNodeTestCase {
         assertEquals(0, service.getActiveContexts());
     }
 
+    public void testPointInTime() {
+        createIndex("index");
+        client().prepareIndex("index", "type", "1").setSource("field", "value").setRefreshPolicy(IMMEDIATE).get();
+        SearchService service = getInstanceFromNode(SearchService.class);
+
+        OpenPointInTimeResponse openResponse = client().execute(OpenPointInTimeAction.INSTANCE,
+            new OpenPointInTimeRequest("index").keepAlive(TimeValue.timeValueMinutes(1))).actionGet();
+        assertEquals(1, service.getActivePointInTimeReaders());
+        // documents indexed after the point in time was opened are not visible to searches that run against it
+        client().prepareIndex("index", "type", "2").setSource("field", "value").setRefreshPolicy(IMMEDIATE).get();
+        for (int i = 0; i < 3; i++) {
+            SearchResponse searchResponse = client().prepareSearch()
+                .setSource(new SearchSourceBuilder().pointInTimeBuilder(new PointInTimeBuilder(openResponse.getId()))).get();
+            assertEquals(1, searchResponse.getHits().getTotalHits());
+        }
+        assertEquals(0, service.getActiveContexts());
+        assertEquals(2, client().prepareSearch("index").get().getHits().getTotalHits());
+
+        ClosePointInTimeResponse closeResponse = client().execute(ClosePointInTimeAction.INSTANCE,
+            new ClosePointInTimeRequest(openResponse.getId())).actionGet();
+        assertTrue(closeResponse.isSucceeded());
+        assertEquals(1, closeResponse.getNumFreed());
+        assertEquals(0, service.getActivePointInTimeReaders());
+        expectThrows(SearchPhaseExecutionException.class, () -> client().prepareSearch()
+            .setSource(new SearchSourceBuilder().pointInTimeBuilder(new PointInTimeBuilder(openResponse.getId()))).get());
+    }
+
+    public void testClearPointInTimeOnIndexDelete() {
+        createIndex("index");
+        SearchService service = getInstanceFromNode(SearchService.class);
+        IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        IndexShard indexShard = indicesService.indexServiceSafe(resolveIndex("index")).getShard(0);
+
+        service.openPointInTime(indexShard.shardId(), TimeValue.timeValueMinutes(1));
+        assertEquals(1, service.getActivePointInTimeReaders());
+        assertAcked(client().admin().indices().prepareDelete("index"));
+        assertEquals(0, service.getActivePointInTimeReaders());
+    }
+
     public void testCloseSearchContextOnRewriteException() {
         createIndex("index");
         client().prepareIndex("index", "type", "1").setSource("field", "value").setRefreshPolicy(IMMEDIATE).get();
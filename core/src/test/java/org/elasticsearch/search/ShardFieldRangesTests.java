@@ -0,0 +1,121 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search;
+
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ShardFieldRangesTests extends ESTestCase {
+
+    private static final long MARCH_20_2016 = 1458432000000L;
+    private static final long MARCH_25_2016 = 1458864000000L;
+
+    private static ShardFieldRanges ranges() {
+        Map<String, ShardFieldRanges.FieldRange> ranges = new HashMap<>();
+        ranges.put("number", new ShardFieldRanges.FieldRange(null, true, 10, 20));
+        ranges.put("date", new ShardFieldRanges.FieldRange("strict_date_optional_time||epoch_millis", true,
+            MARCH_20_2016, MARCH_25_2016));
+        ranges.put("empty", new ShardFieldRanges.FieldRange(null, false, 0, 0));
+        return new ShardFieldRanges(5, randomNonNegativeLong(), randomBoolean(), ranges);
+    }
+
+    public void testRequiredRanges() {
+        assertEquals(0, ShardFieldRanges.requiredRanges(null).size());
+        assertEquals(1, ShardFieldRanges.requiredRanges(QueryBuilders.rangeQuery("number").gte(1)).size());
+        QueryBuilder query = QueryBuilders.boolQuery()
+            .must(QueryBuilders.rangeQuery("number").gte(1))
+            .filter(QueryBuilders.constantScoreQuery(QueryBuilders.rangeQuery("date").gte("now-1d")))
+            .should(QueryBuilders.rangeQuery("other").gte(1))
+            .mustNot(QueryBuilders.rangeQuery("other").gte(1));
+        assertEquals(2, ShardFieldRanges.requiredRanges(query).size());
+    }
+
+    public void testNumberRanges() {
+        ShardFieldRanges ranges = ranges();
+        assertTrue(ranges.canMatch(QueryBuilders.rangeQuery("number").gte(15), 0));
+        assertTrue(ranges.canMatch(QueryBuilders.rangeQuery("number").gte(20).lte(30), 0));
+        assertTrue(ranges.canMatch(QueryBuilders.rangeQuery("number").lte("10"), 0));
+        // decimal bounds are widened to the enclosing integers
+        assertTrue(ranges.canMatch(QueryBuilders.rangeQuery("number").gte(9.1).lte(9.9), 0));
+        assertFalse(ranges.canMatch(QueryBuilders.rangeQuery("number").gte(8.1).lte(8.9), 0));
+        assertTrue(ranges.canMatch(QueryBuilders.rangeQuery("number").gte(20.5), 0));
+        assertFalse(ranges.canMatch(QueryBuilders.rangeQuery("number").gt(21), 0));
+        assertFalse(ranges.canMatch(QueryBuilders.rangeQuery("number").lt(5), 0));
+        // unparseable bounds are left to the shard
+        assertTrue(ranges.canMatch(QueryBuilders.rangeQuery("number").gte("foo"), 0));
+        // unknown fields can match
+        assertTrue(ranges.canMatch(QueryBuilders.rangeQuery("unknown").gte(100), 0));
+        // fields without values can't
+        assertFalse(ranges.canMatch(QueryBuilders.rangeQuery("empty").gte(100), 0));
+    }
+
+    public void testDateRanges() {
+        ShardFieldRanges ranges = ranges();
+        assertTrue(ranges.canMatch(QueryBuilders.rangeQuery("date").gte("2016-03-19").lte("2016-03-21"), 0));
+        assertFalse(ranges.canMatch(QueryBuilders.rangeQuery("date").gte("2016-03-26"), 0));
+        assertFalse(ranges.canMatch(QueryBuilders.rangeQuery("date").lt("2016-03-19"), 0));
+        assertTrue(ranges.canMatch(QueryBuilders.rangeQuery("date").gte(MARCH_25_2016), 0));
+        assertTrue(ranges.canMatch(QueryBuilders.rangeQuery("date").gte("2016-25-03").format("yyyy-dd-MM"), 0));
+        assertFalse(ranges.canMatch(QueryBuilders.rangeQuery("date").gte("2016-26-03").format("yyyy-dd-MM"), 0));
+        // date math is resolved against the provided now
+        assertFalse(ranges.canMatch(QueryBuilders.rangeQuery("date").gte("now-1d"), MARCH_25_2016 + 2 * 86400000L));
+        assertTrue(ranges.canMatch(QueryBuilders.rangeQuery("date").gte("now-1d/d"), MARCH_25_2016 + 86400000L + 1));
+        // time zones shift the bounds
+        assertTrue(ranges.canMatch(QueryBuilders.rangeQuery("date").lte("2016-03-19T23:00:00").timeZone("-01:00"), 0));
+        assertFalse(ranges.canMatch(QueryBuilders.rangeQuery("date").lte("2016-03-19T23:00:00").timeZone("+01:00"), 0));
+    }
+
+    public void testBoolQuery() {
+        ShardFieldRanges ranges = ranges();
+        assertFalse(ranges.canMatch(QueryBuilders.boolQuery()
+            .must(QueryBuilders.rangeQuery("number").gte(15))
+            .filter(QueryBuilders.rangeQuery("date").gte("2016-03-26")), 0));
+        assertTrue(ranges.canMatch(QueryBuilders.boolQuery()
+            .should(QueryBuilders.rangeQuery("number").gte(100))
+            .should(QueryBuilders.rangeQuery("date").gte("2016-03-21")), 0));
+    }
+
+    public void testSerialization() throws IOException {
+        ShardFieldRanges ranges = ranges();
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            ranges.writeTo(out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                ShardFieldRanges copy = new ShardFieldRanges(in);
+                assertEquals(ranges.getIndexMetaDataVersion(), copy.getIndexMetaDataVersion());
+                assertEquals(ranges.getReaderVersion(), copy.getReaderVersion());
+                assertEquals(ranges.isReadOnly(), copy.isReadOnly());
+                assertEquals(ranges.getRanges().keySet(), copy.getRanges().keySet());
+                for (Map.Entry<String, ShardFieldRanges.FieldRange> entry : ranges.getRanges().entrySet()) {
+                    ShardFieldRanges.FieldRange copyRange = copy.getRanges().get(entry.getKey());
+                    assertEquals(entry.getValue().hasValues(), copyRange.hasValues());
+                    assertEquals(entry.getValue().getMin(), copyRange.getMin());
+                    assertEquals(entry.getValue().getMax(), copyRange.getMax());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.KeywordFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.Aggregator.SubAggCollectionMode;
+import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.global.GlobalAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.bucket.histogram.HistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.avg.AvgAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.max.MaxAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.min.MinAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.sum.SumAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.valuecount.ValueCountAggregationBuilder;
+import org.elasticsearch.search.aggregations.support.ValueType;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks that aggregations return the same results whether documents are collected one by one or in batches.
+ */
+public class BatchedCollectionTests extends AggregatorTestCase {
+
+    private static final String[] KEYWORDS = new String[] {"a", "b", "c", "d", "e", "f", "g", "h"};
+
+    public void testMetrics() throws IOException {
+        assertSameResults(new AvgAggregationBuilder("avg").field("long"));
+        assertSameResults(new MaxAggregationBuilder("max").field("long"));
+        assertSameResults(new MinAggregationBuilder("min").field("date"));
+        assertSameResults(new SumAggregationBuilder("sum").field("long"));
+        assertSameResults(new ValueCountAggregationBuilder("value_count", null).field("keyword"));
+    }
+
+    public void testLongTerms() throws IOException {
+        assertSameResults(new TermsAggregationBuilder("terms", ValueType.LONG).field("long")
+            .subAggregation(new MaxAggregationBuilder("max").field("date"))
+            .subAggregation(new MinAggregationBuilder("min").field("date")));
+    }
+
+    public void testGlobalOrdinalsTerms() throws IOException {
+        assertSameResults(new TermsAggregationBuilder("terms", ValueType.STRING).field("keyword").executionHint("global_ordinals")
+            .subAggregation(new SumAggregationBuilder("sum").field("long"))
+            .subAggregation(new ValueCountAggregationBuilder("value_count", null).field("keyword")));
+    }
+
+    public void testHistogram() throws IOException {
+        assertSameResults(new HistogramAggregationBuilder("histogram").field("long").interval(3)
+            .subAggregation(new AvgAggregationBuilder("avg").field("long")));
+    }
+
+    public void testDateHistogram() throws IOException {
+        assertSameResults(new DateHistogramAggregationBuilder("date_histogram").field("date")
+            .dateHistogramInterval(DateHistogramInterval.DAY)
+            .subAggregation(new TermsAggregationBuilder("terms", ValueType.LONG).field("long")
+                .subAggregation(new SumAggregationBuilder("sum").field("long"))));
+    }
+
+    public void testFilter() throws IOException {
+        assertSameResults(new FilterAggregationBuilder("filter", QueryBuilders.rangeQuery("long").gte(10))
+            .subAggregation(new TermsAggregationBuilder("terms", ValueType.STRING).field("keyword")
+                .subAggregation(new AvgAggregationBuilder("avg").field("long"))));
+    }
+
+    public void testGlobal() throws IOException {
+        assertSameResults(new GlobalAggregationBuilder("global")
+            .subAggregation(new MaxAggregationBuilder("max").field("long"))
+            .subAggregation(new MinAggregationBuilder("min").field("long")));
+    }
+
+    public void testDeferredCollection() throws IOException {
+        // breadth first collection replays the documents of the selected buckets through BestBucketsDeferringCollector
+        for (SubAggCollectionMode collectMode : SubAggCollectionMode.values()) {
+            assertSameResults(new TermsAggregationBuilder("terms", ValueType.STRING).field("keyword").size(3)
+                .collectMode(collectMode)
+                .subAggregation(new TermsAggregationBuilder("terms", ValueType.LONG).field("long").size(5)
+                    .collectMode(collectMode)
+                    .subAggregation(new AvgAggregationBuilder("avg").field("long"))));
+        }
+        try (Directory directory = newDirectory()) {
+            indexDocuments(directory);
+            try (IndexReader reader = DirectoryReader.open(directory)) {
+                final IndexSearcher searcher = newSearcher(reader, true, true);
+                final InternalAggregation depthFirst = search(searcher, new MatchAllDocsQuery(),
+                    deferredTerms(SubAggCollectionMode.DEPTH_FIRST), false, fieldTypes());
+                final InternalAggregation breadthFirst = search(searcher, new MatchAllDocsQuery(),
+                    deferredTerms(SubAggCollectionMode.BREADTH_FIRST), true, fieldTypes());
+                assertEquals(depthFirst, breadthFirst);
+            }
+        }
+    }
+
+    private static AggregationBuilder deferredTerms(SubAggCollectionMode collectMode) {
+        return new TermsAggregationBuilder("terms", ValueType.LONG).field("long").size(4).collectMode(collectMode)
+            .subAggregation(new MaxAggregationBuilder("max").field("date"));
+    }
+
+    private void assertSameResults(AggregationBuilder aggregationBuilder) throws IOException {
+        try (Directory directory = newDirectory()) {
+            indexDocuments(directory);
+            try (IndexReader reader = DirectoryReader.open(directory)) {
+                final IndexSearcher searcher = newSearcher(reader, true, true);
+                final Query query = randomBoolean() ? new MatchAllDocsQuery() : LongPoint.newRangeQuery("long", 0, 15);
+                final InternalAggregation perDoc = search(searcher, query, aggregationBuilder, false, fieldTypes());
+                final InternalAggregation batched = search(searcher, query, aggregationBuilder, true, fieldTypes());
+                assertEquals(perDoc, batched);
+            }
+        }
+    }
+
+    /**
+     * Indexes documents in several segments, with runs of consecutive documents that share their values so that
+     * bucket aggregations can pass batches to their sub-aggregations.
+     */
+    private static void indexDocuments(Directory directory) throws IOException {
+        try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+            final long startOfDay = TimeUnit.DAYS.toMillis(randomIntBetween(0, 10000));
+            final int numDocs = randomIntBetween(1, 2000);
+            long value = 0;
+            String keyword = KEYWORDS[0];
+            for (int i = 0; i < numDocs; i++) {
+                if (randomInt(9) == 0) {
+                    value = randomIntBetween(0, 20);
+                    keyword = randomFrom(KEYWORDS);
+                }
+                final Document document = new Document();
+                if (randomInt(19) > 0) {
+                    // values are integers so that sums do not depend on the order in which they are added
+                    document.add(new LongPoint("long", value));
+                    document.add(new SortedNumericDocValuesField("long", value));
+                }
+                document.add(new SortedSetDocValuesField("keyword", new BytesRef(keyword)));
+                if (randomBoolean()) {
+                    document.add(new SortedSetDocValuesField("keyword", new BytesRef(randomFrom(KEYWORDS))));
+                }
+                document.add(new SortedNumericDocValuesField("date", startOfDay + TimeUnit.HOURS.toMillis(value * 5)));
+                indexWriter.addDocument(document);
+                if (randomInt(499) == 0) {
+                    indexWriter.commit();
+                }
+            }
+        }
+    }
+
+    private static MappedFieldType[] fieldTypes() {
+        final MappedFieldType longFieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        longFieldType.setIndexOptions(IndexOptions.DOCS);
+        longFieldType.setName("long");
+        final MappedFieldType keywordFieldType = new KeywordFieldMapper.KeywordFieldType();
+        keywordFieldType.setHasDocValues(true);
+        keywordFieldType.setName("keyword");
+        final DateFieldMapper.DateFieldType dateFieldType = new DateFieldMapper.Builder("_name").fieldType();
+        dateFieldType.setHasDocValues(true);
+        dateFieldType.setName("date");
+        return new MappedFieldType[] {longFieldType, keywordFieldType, dateFieldType};
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class BatchingBucketCollectorTests extends ESTestCase {
+
+    public void testCollectsAllDocumentsInBatches() throws IOException {
+        try (Directory directory = newDirectory();
+             RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+            final int numDocs = scaledRandomIntBetween(1, 1000);
+            for (int i = 0; i < numDocs; i++) {
+                indexWriter.addDocument(new Document());
+            }
+            try (IndexReader indexReader = indexWriter.getReader()) {
+                final List<Integer> collected = new ArrayList<>();
+                final List<Integer> batchSizes = new ArrayList<>();
+                final BucketCollector in = new BucketCollector() {
+                    @Override
+                    public LeafBucketCollector getLeafCollector(LeafReaderContext ctx) {
+                        return new LeafBucketCollector() {
+                            @Override
+                            public void collect(int doc, long bucket) {
+                                fail("documents should be collected in batches");
+                            }
+
+                            @Override
+                            public void collect(int[] docs, int count, long bucket) {
+                                assertEquals(0, bucket);
+                                batchSizes.add(count);
+                                for (int i = 0; i < count; i++) {
+                                    if (i > 0) {
+                                        assertThat(docs[i - 1], lessThanOrEqualTo(docs[i]));
+                                    }
+                                    collected.add(ctx.docBase + docs[i]);
+                                }
+                            }
+                        };
+                    }
+
+                    @Override
+                    public void preCollection() {
+                    }
+
+                    @Override
+                    public void postCollection() {
+                    }
+
+                    @Override
+                    public boolean needsScores() {
+                        return false;
+                    }
+                };
+                final BatchingBucketCollector collector = new BatchingBucketCollector(in);
+                collector.preCollection();
+                new IndexSearcher(indexReader).search(new MatchAllDocsQuery(), collector);
+                collector.postCollection();
+
+                assertEquals(numDocs, collected.size());
+                for (int i = 0; i < numDocs; i++) {
+                    assertEquals(i, (int) collected.get(i));
+                }
+                for (int batchSize : batchSizes) {
+                    assertThat(batchSize, lessThanOrEqualTo(BatchingBucketCollector.BATCH_SIZE));
+                }
+            }
+        }
+    }
+
+    public void testRejectsCollectorsThatNeedScores() {
+        final BucketCollector in = new BucketCollector() {
+            @Override
+            public LeafBucketCollector getLeafCollector(LeafReaderContext ctx) {
+                return LeafBucketCollector.NO_OP_COLLECTOR;
+            }
+
+            @Override
+            public void preCollection() {
+            }
+
+            @Override
+            public void postCollection() {
+            }
+
+            @Override
+            public boolean needsScores() {
+                return true;
+            }
+        };
+        expectThrows(IllegalArgumentException.class, () -> new BatchingBucketCollector(in));
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.LogDocMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.mapper.KeywordFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.search.aggregations.bucket.sampler.SamplerAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.significant.SignificantTermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.NumericMetricsAggregation;
+import org.elasticsearch.search.aggregations.metrics.max.MaxAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.sum.InternalSum;
+import org.elasticsearch.search.aggregations.metrics.sum.SumAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.tophits.TopHitsAggregationBuilder;
+import org.elasticsearch.search.aggregations.support.ValueType;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.singleton;
+
+public class SegmentCachingBucketCollectorTests extends AggregatorTestCase {
+
+    public void testOnlyCollectsSegmentsThatAreNotCached() throws IOException {
+        final MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        fieldType.setName("number");
+        final SumAggregationBuilder aggregationBuilder = new SumAggregationBuilder("sum").field("number");
+        final TestCache cache = new TestCache();
+        try (Directory directory = newDirectory();
+             IndexWriter indexWriter = new IndexWriter(directory, new IndexWriterConfig().setMergePolicy(new LogDocMergePolicy()))) {
+            long expectedSum = 0;
+            final int numSegments = randomIntBetween(1, 5);
+            for (int i = 0; i < numSegments; i++) {
+                expectedSum += addDocuments(indexWriter);
+                indexWriter.commit();
+            }
+            try (IndexReader reader = DirectoryReader.open(indexWriter)) {
+                assertEquals(numSegments, reader.leaves().size());
+                assertEquals(expectedSum, search(reader, aggregationBuilder, fieldType, cache), 0d);
+                assertEquals(0, cache.hits);
+                assertEquals(numSegments, cache.entries.size());
+            }
+
+            // only the new segment is collected
+            expectedSum += addDocuments(indexWriter);
+            try (IndexReader reader = DirectoryReader.open(indexWriter)) {
+                assertEquals(numSegments + 1, reader.leaves().size());
+                assertEquals(expectedSum, search(reader, aggregationBuilder, fieldType, cache), 0d);
+                assertEquals(numSegments, cache.hits);
+                assertEquals(numSegments + 1, cache.entries.size());
+            }
+        }
+    }
+
+    public void testTermsWithSubAggregationMatchUncachedResults() throws IOException {
+        final TermsAggregationBuilder aggregationBuilder = new TermsAggregationBuilder("terms", ValueType.STRING)
+            .field("keyword").size(KEYWORDS.length)
+            .subAggregation(new SumAggregationBuilder("sum").field("number"))
+            .subAggregation(new MaxAggregationBuilder("max").field("number"));
+        final TestCache cache = new TestCache();
+        try (Directory directory = newDirectory();
+             IndexWriter indexWriter = new IndexWriter(directory, new IndexWriterConfig().setMergePolicy(new LogDocMergePolicy()))) {
+            final int numSegments = randomIntBetween(1, 5);
+            int id = 0;
+            for (int i = 0; i < numSegments; i++) {
+                id = addKeywordDocuments(indexWriter, id);
+                indexWriter.commit();
+            }
+            try (IndexReader reader = DirectoryReader.open(indexWriter)) {
+                final Terms uncached = (Terms) search(new IndexSearcher(reader), new MatchAllDocsQuery(), aggregationBuilder, fieldTypes());
+                // the first search fills the cache and the second one only reads from it
+                assertSameTerms(uncached, search(reader, aggregationBuilder, cache, fieldTypes()).get("terms"));
+                assertEquals(0, cache.hits);
+                assertSameTerms(uncached, search(reader, aggregationBuilder, cache, fieldTypes()).get("terms"));
+                assertEquals(numSegments, cache.hits);
+            }
+        }
+    }
+
+    public void testDeletesAfterCaching() throws IOException {
+        final TermsAggregationBuilder aggregationBuilder = new TermsAggregationBuilder("terms", ValueType.STRING)
+            .field("keyword").size(KEYWORDS.length)
+            .subAggregation(new SumAggregationBuilder("sum").field("number"));
+        final TestCache cache = new TestCache();
+        try (Directory directory = newDirectory();
+             IndexWriter indexWriter = new IndexWriter(directory, new IndexWriterConfig().setMergePolicy(new LogDocMergePolicy()))) {
+            final int numSegments = randomIntBetween(1, 5);
+            int numDocs = 0;
+            for (int i = 0; i < numSegments; i++) {
+                numDocs = addKeywordDocuments(indexWriter, numDocs);
+                indexWriter.commit();
+            }
+            try (IndexReader reader = DirectoryReader.open(indexWriter)) {
+                search(reader, aggregationBuilder, cache, fieldTypes());
+            }
+
+            final int numDeletes = randomIntBetween(1, numDocs);
+            for (int i = 0; i < numDeletes; i++) {
+                indexWriter.deleteDocuments(new Term("id", Integer.toString(randomInt(numDocs - 1))));
+            }
+            try (IndexReader reader = DirectoryReader.open(indexWriter)) {
+                int segmentsWithoutDeletes = 0;
+                for (LeafReaderContext leaf : reader.leaves()) {
+                    if (leaf.reader().numDeletedDocs() == 0) {
+                        segmentsWithoutDeletes++;
+                    }
+                }
+                final Terms uncached = (Terms) search(new IndexSearcher(reader), new MatchAllDocsQuery(), aggregationBuilder, fieldTypes());
+                // the segments with new deletes are collected again
+                final int hits = cache.hits;
+                assertSameTerms(uncached, search(reader, aggregationBuilder, cache, fieldTypes()).get("terms"));
+                assertEquals(segmentsWithoutDeletes, cache.hits - hits);
+            }
+        }
+    }
+
+    public void testCanCache() {
+        assertTrue(SegmentCachingBucketCollector.canCache(AggregatorFactories.builder()
+            .addAggregator(new TermsAggregationBuilder("terms", null).field("foo")
+                .subAggregation(new SumAggregationBuilder("sum").field("bar")))));
+        assertFalse(SegmentCachingBucketCollector.canCache(AggregatorFactories.builder()
+            .addAggregator(new SignificantTermsAggregationBuilder("significant_terms", null).field("foo"))));
+        assertFalse(SegmentCachingBucketCollector.canCache(AggregatorFactories.builder()
+            .addAggregator(new SamplerAggregationBuilder("sampler"))));
+        assertFalse(SegmentCachingBucketCollector.canCache(AggregatorFactories.builder()
+            .addAggregator(new TermsAggregationBuilder("terms", null).field("foo")
+                .subAggregation(new TopHitsAggregationBuilder("top_hits")))));
+    }
+
+    private static final String[] KEYWORDS = new String[] {"a", "b", "c", "d", "e"};
+
+    private static long addDocuments(IndexWriter indexWriter) throws IOException {
+        long sum = 0;
+        final int numDocs = randomIntBetween(1, 50);
+        for (int i = 0; i < numDocs; i++) {
+            final long value = randomIntBetween(-100, 100);
+            indexWriter.addDocument(singleton(new SortedNumericDocValuesField("number", value)));
+            sum += value;
+        }
+        return sum;
+    }
+
+    /**
+     * Adds documents whose ids start at <code>id</code> and returns the id of the next document.
+     */
+    private static int addKeywordDocuments(IndexWriter indexWriter, int id) throws IOException {
+        final int numDocs = randomIntBetween(1, 50);
+        for (int i = 0; i < numDocs; i++) {
+            final Document document = new Document();
+            document.add(new StringField("id", Integer.toString(id++), Field.Store.NO));
+            document.add(new SortedSetDocValuesField("keyword", new BytesRef(randomFrom(KEYWORDS))));
+            document.add(new SortedNumericDocValuesField("number", randomIntBetween(-100, 100)));
+            indexWriter.addDocument(document);
+        }
+        return id;
+    }
+
+    private static MappedFieldType[] fieldTypes() {
+        final MappedFieldType keywordFieldType = new KeywordFieldMapper.KeywordFieldType();
+        keywordFieldType.setHasDocValues(true);
+        keywordFieldType.setName("keyword");
+        final MappedFieldType numberFieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        numberFieldType.setName("number");
+        return new MappedFieldType[] {keywordFieldType, numberFieldType};
+    }
+
+    /**
+     * The merged results of the segments are a partial reduce, so buckets are compared by key.
+     */
+    private static void assertSameTerms(Terms expected, Terms actual) {
+        assertEquals(expected.getBuckets().size(), actual.getBuckets().size());
+        for (Terms.Bucket expectedBucket : expected.getBuckets()) {
+            final Terms.Bucket actualBucket = actual.getBucketByKey(expectedBucket.getKeyAsString());
+            assertNotNull(actualBucket);
+            assertEquals(expectedBucket.getDocCount(), actualBucket.getDocCount());
+            for (Aggregation aggregation : expectedBucket.getAggregations()) {
+                assertEquals(((NumericMetricsAggregation.SingleValue) aggregation).value(),
+                    ((NumericMetricsAggregation.SingleValue) actualBucket.getAggregations().get(aggregation.getName())).value(), 0d);
+            }
+        }
+    }
+
+    private double search(IndexReader reader, AggregationBuilder aggregationBuilder, MappedFieldType fieldType,
+                          SegmentAggregationsCache cache) throws IOException {
+        final InternalSum sum = search(reader, aggregationBuilder, cache, fieldType).get("sum");
+        return sum.getValue();
+    }
+
+    private InternalAggregations search(IndexReader reader, AggregationBuilder aggregationBuilder, SegmentAggregationsCache cache,
+                                        MappedFieldType... fieldTypes) throws IOException {
+        final IndexSearcher searcher = new IndexSearcher(reader);
+        final Aggregator aggregator = createAggregator(aggregationBuilder, searcher, fieldTypes);
+        final SearchContext context = aggregator.context();
+        final AggregatorFactories factories = AggregatorFactories.builder().addAggregator(aggregationBuilder).build(context, null);
+        final SegmentCachingBucketCollector collector =
+            new SegmentCachingBucketCollector(factories, factories.createTopLevelAggregators(), cache);
+        searcher.search(new MatchAllDocsQuery(), collector);
+        return collector.buildAggregations(true);
+    }
+
+    /**
+     * Keys entries on the core of the segment and its number of deleted documents, like
+     * {@link org.elasticsearch.indices.IndicesRequestCache}.
+     */
+    private static class TestCache implements SegmentAggregationsCache {
+        private final Map<Tuple<IndexReader.CacheKey, Integer>, InternalAggregations> entries = new HashMap<>();
+        private int hits;
+
+        private static Tuple<IndexReader.CacheKey, Integer> key(LeafReader reader) {
+            return new Tuple<>(reader.getCoreCacheHelper().getKey(), reader.numDeletedDocs());
+        }
+
+        @Override
+        public InternalAggregations get(LeafReader reader) {
+            final InternalAggregations aggregations = entries.get(key(reader));
+            if (aggregations != null) {
+                hits++;
+            }
+            return aggregations;
+        }
+
+        @Override
+        public void put(LeafReader reader, InternalAggregations aggregations) {
+            assertNull(entries.put(key(reader), aggregations));
+        }
+
+        @Override
+        public InternalAggregations merge(List<InternalAggregations> segmentAggregations) {
+            return InternalAggregations.reduce(segmentAggregations,
+                new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, false));
+        }
+    }
+}
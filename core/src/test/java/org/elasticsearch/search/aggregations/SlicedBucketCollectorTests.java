@@ -0,0 +1,140 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.mapper.KeywordFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
+import org.elasticsearch.search.aggregations.metrics.max.MaxAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.sum.Sum;
+import org.elasticsearch.search.aggregations.metrics.sum.SumAggregationBuilder;
+import org.elasticsearch.search.aggregations.support.ValueType;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class SlicedBucketCollectorTests extends AggregatorTestCase {
+
+    private static final String[] KEYWORDS = new String[] {"a", "b", "c", "d", "e"};
+
+    public void testConcurrentSlicesMatchSequentialCollection() throws Exception {
+        final TermsAggregationBuilder aggregationBuilder = new TermsAggregationBuilder("terms", ValueType.STRING)
+            .field("keyword").size(KEYWORDS.length)
+            .subAggregation(new SumAggregationBuilder("sum").field("number"))
+            .subAggregation(new MaxAggregationBuilder("max").field("number"));
+        final ExecutorService executor = Executors.newFixedThreadPool(randomIntBetween(2, 4));
+        try (Directory directory = newDirectory();
+             IndexWriter indexWriter = new IndexWriter(directory, new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+            final int numSegments = randomIntBetween(1, 8);
+            for (int i = 0; i < numSegments; i++) {
+                final int numDocs = randomIntBetween(1, 50);
+                for (int j = 0; j < numDocs; j++) {
+                    final Document document = new Document();
+                    document.add(new SortedSetDocValuesField("keyword", new BytesRef(randomFrom(KEYWORDS))));
+                    document.add(new SortedNumericDocValuesField("number", randomIntBetween(-100, 100)));
+                    indexWriter.addDocument(document);
+                }
+                indexWriter.commit();
+            }
+            try (IndexReader reader = DirectoryReader.open(indexWriter)) {
+                assertEquals(numSegments, reader.leaves().size());
+                final Terms expected = (Terms) search(new IndexSearcher(reader), new MatchAllDocsQuery(), aggregationBuilder,
+                    fieldTypes());
+                // each leaf is a slice of the searcher
+                final Terms actual = sliceSearch(new IndexSearcher(reader, executor), aggregationBuilder).get("terms");
+                assertEquals(expected.getBuckets().size(), actual.getBuckets().size());
+                for (Terms.Bucket expectedBucket : expected.getBuckets()) {
+                    final Terms.Bucket actualBucket = actual.getBucketByKey(expectedBucket.getKeyAsString());
+                    assertNotNull(actualBucket);
+                    assertEquals(expectedBucket.getDocCount(), actualBucket.getDocCount());
+                    assertEquals(((Sum) expectedBucket.getAggregations().get("sum")).getValue(),
+                        ((Sum) actualBucket.getAggregations().get("sum")).getValue(), 0d);
+                    assertEquals(((Max) expectedBucket.getAggregations().get("max")).getValue(),
+                        ((Max) actualBucket.getAggregations().get("max")).getValue(), 0d);
+                }
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    public void testNoSlicesBuildsEmptyAggregations() throws IOException {
+        final MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        fieldType.setName("number");
+        final SumAggregationBuilder aggregationBuilder = new SumAggregationBuilder("sum").field("number");
+        try (Directory directory = newDirectory();
+             IndexWriter indexWriter = new IndexWriter(directory, new IndexWriterConfig())) {
+            try (IndexReader reader = DirectoryReader.open(indexWriter)) {
+                final SlicedBucketCollector collector = createCollector(new IndexSearcher(reader), aggregationBuilder, fieldType);
+                final Sum sum = collector.buildAggregations(reduceContext()).get("sum");
+                assertEquals(0d, sum.getValue(), 0d);
+            }
+        }
+    }
+
+    private InternalAggregations sliceSearch(IndexSearcher searcher, AggregationBuilder aggregationBuilder) throws IOException {
+        final SlicedBucketCollector collector = createCollector(searcher, aggregationBuilder, fieldTypes());
+        searcher.search(new MatchAllDocsQuery(), (CollectorManager<Collector, Void>) collector);
+        return collector.buildAggregations(reduceContext());
+    }
+
+    private SlicedBucketCollector createCollector(IndexSearcher searcher, AggregationBuilder aggregationBuilder,
+                                                  MappedFieldType... fieldTypes) throws IOException {
+        final Aggregator aggregator = createAggregator(aggregationBuilder, searcher, fieldTypes);
+        final SearchContext context = aggregator.context();
+        final AggregatorFactories factories = AggregatorFactories.builder().addAggregator(aggregationBuilder).build(context, null);
+        return new SlicedBucketCollector(factories, factories.createTopLevelAggregators());
+    }
+
+    private static InternalAggregation.ReduceContext reduceContext() {
+        return new InternalAggregation.ReduceContext(BigArrays.NON_RECYCLING_INSTANCE, null, false);
+    }
+
+    private static MappedFieldType[] fieldTypes() {
+        final MappedFieldType keywordFieldType = new KeywordFieldMapper.KeywordFieldType();
+        keywordFieldType.setHasDocValues(true);
+        keywordFieldType.setName("keyword");
+        final MappedFieldType numberFieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        numberFieldType.setName("number");
+        return new MappedFieldType[] {keywordFieldType, numberFieldType};
+    }
+}
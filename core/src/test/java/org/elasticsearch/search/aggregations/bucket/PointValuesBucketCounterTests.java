@@ -0,0 +1,149 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class PointValuesBucketCounterTests extends ESTestCase {
+
+    public void testQueryBounds() {
+        PointValuesBucketCounter.Parameters parameters = PointValuesBucketCounter.queryBounds(new MatchAllDocsQuery(), "field", 8);
+        assertNotNull(parameters);
+        assertEquals(Long.MIN_VALUE, parameters.lowerValue);
+        assertEquals(Long.MAX_VALUE, parameters.upperValue);
+
+        parameters = PointValuesBucketCounter.queryBounds(new ConstantScoreQuery(LongPoint.newRangeQuery("field", 3, 42)), "field", 8);
+        assertNotNull(parameters);
+        assertEquals(3, parameters.lowerValue);
+        assertEquals(42, parameters.upperValue);
+
+        parameters = PointValuesBucketCounter.queryBounds(new BooleanQuery.Builder()
+            .add(IntPoint.newRangeQuery("field", -5, 5), Occur.FILTER).build(), "field", 4);
+        assertNotNull(parameters);
+        assertEquals(-5, parameters.lowerValue);
+        assertEquals(5, parameters.upperValue);
+
+        // other fields, other encodings and other queries filter documents that the points can't tell about
+        assertNull(PointValuesBucketCounter.queryBounds(LongPoint.newRangeQuery("other", 3, 42), "field", 8));
+        assertNull(PointValuesBucketCounter.queryBounds(IntPoint.newRangeQuery("field", 3, 42), "field", 8));
+        assertNull(PointValuesBucketCounter.queryBounds(new TermQuery(new Term("field", "foo")), "field", 8));
+        assertNull(PointValuesBucketCounter.queryBounds(new BooleanQuery.Builder()
+            .add(new MatchAllDocsQuery(), Occur.MUST_NOT).build(), "field", 8));
+        assertNull(PointValuesBucketCounter.queryBounds(new BooleanQuery.Builder()
+            .add(new MatchAllDocsQuery(), Occur.MUST)
+            .add(new TermQuery(new Term("field", "foo")), Occur.FILTER).build(), "field", 8));
+    }
+
+    public void testSameCountsAsDocValues() throws IOException {
+        try (Directory dir = newDirectory();
+             RandomIndexWriter w = new RandomIndexWriter(random(), dir)) {
+            final int numDocs = scaledRandomIntBetween(100, 5000);
+            final long[] values = new long[numDocs];
+            for (int i = 0; i < numDocs; i++) {
+                Document doc = new Document();
+                doc.add(new StringField("id", Integer.toString(i), Store.NO));
+                values[i] = randomLongBetween(-10000, 10000);
+                doc.add(new LongPoint("field", values[i]));
+                w.addDocument(doc);
+            }
+            final boolean[] deleted = new boolean[numDocs];
+            for (int i = 0; i < numDocs; i++) {
+                if (rarely()) {
+                    w.deleteDocuments(new Term("id", Integer.toString(i)));
+                    deleted[i] = true;
+                }
+            }
+            final long lower = randomLongBetween(-12000, 0);
+            final long upper = randomLongBetween(0, 12000);
+            final long interval = randomLongBetween(1, 3000);
+            final Map<Long, Long> expected = new HashMap<>();
+            for (int i = 0; i < numDocs; i++) {
+                if (deleted[i] == false && values[i] >= lower && values[i] <= upper) {
+                    expected.merge(Math.floorDiv(values[i], interval), 1L, Long::sum);
+                }
+            }
+
+            try (IndexReader reader = w.getReader()) {
+                final Map<Long, Long> actual = new HashMap<>();
+                final PointValuesBucketCounter counter = new PointValuesBucketCounter(
+                        PointValuesBucketCounter.queryBounds(LongPoint.newRangeQuery("field", lower, upper), "field", 8)) {
+                    @Override
+                    protected boolean sameBuckets(long min, long max) {
+                        return Math.floorDiv(min, interval) == Math.floorDiv(max, interval);
+                    }
+
+                    @Override
+                    protected void count(long value, int count) {
+                        actual.merge(Math.floorDiv(value, interval), (long) count, Long::sum);
+                    }
+                };
+                for (LeafReaderContext ctx : reader.leaves()) {
+                    assertTrue(counter.count(ctx));
+                }
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    public void testMultiValuedSegmentsAreNotCounted() throws IOException {
+        try (Directory dir = newDirectory();
+             RandomIndexWriter w = new RandomIndexWriter(random(), dir)) {
+            Document doc = new Document();
+            doc.add(new LongPoint("field", 1));
+            doc.add(new LongPoint("field", 2));
+            w.addDocument(doc);
+            w.forceMerge(1);
+            try (IndexReader reader = w.getReader()) {
+                final PointValuesBucketCounter counter = new PointValuesBucketCounter(
+                        PointValuesBucketCounter.queryBounds(new MatchAllDocsQuery(), "field", 8)) {
+                    @Override
+                    protected boolean sameBuckets(long min, long max) {
+                        return true;
+                    }
+
+                    @Override
+                    protected void count(long value, int count) {
+                        fail("multi-valued documents must be collected");
+                    }
+                };
+                assertFalse(counter.count(reader.leaves().get(0)));
+            }
+        }
+    }
+}
@@ -21,32 +21,44 @@ package org.elasticsearch.search.aggregations.bucket.terms;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.InetAddressPoint;
+import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.SortedNumericDocValuesField;
 import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.NumericUtils;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.common.network.InetAddresses;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.MockBigArrays;
+import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.mapper.IpFieldMapper;
 import org.elasticsearch.index.mapper.KeywordFieldMapper;
 import org.elasticsearch.index.mapper.MappedFieldType;
 import org.elasticsearch.index.mapper.NumberFieldMapper;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.ShardPath;
 import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
 import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationMemoryUsage;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorBase;
 import org.elasticsearch.search.aggregations.AggregatorTestCase;
 import org.elasticsearch.search.aggregations.BucketOrder;
 import org.elasticsearch.search.aggregations.InternalAggregation;
@@ -56,6 +68,9 @@ import org.elasticsearch.search.aggregations.support.ValueType;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -65,7 +80,11 @@ import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class TermsAggregatorTests extends AggregatorTestCase {
     public void testGlobalOrdinalsExecutionHint() throws Exception {
@@ -152,6 +171,138 @@ public class TermsAggregatorTests extends AggregatorTestCase {
         }
     }
 
+    public void testMemoryUsage() throws Exception {
+        try (Directory directory = newDirectory()) {
+            final int numTerms = randomIntBetween(1, 100);
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                for (int i = 0; i < numTerms; i++) {
+                    Document document = new Document();
+                    document.add(new SortedSetDocValuesField("string", new BytesRef("term" + i)));
+                    document.add(new StringField("match", "yes", Field.Store.NO));
+                    indexWriter.addDocument(document);
+                }
+                // terms of documents that don't match the query must not be counted as buckets
+                final int numOtherTerms = randomIntBetween(0, 100);
+                for (int i = 0; i < numOtherTerms; i++) {
+                    Document document = new Document();
+                    document.add(new SortedSetDocValuesField("string", new BytesRef("other" + i)));
+                    document.add(new StringField("match", "no", Field.Store.NO));
+                    indexWriter.addDocument(document);
+                }
+            }
+            try (IndexReader indexReader = maybeWrapReaderEs(DirectoryReader.open(directory))) {
+                IndexSearcher indexSearcher = newIndexSearcher(indexReader);
+                TermsAggregationBuilder aggregationBuilder = new TermsAggregationBuilder("_name", ValueType.STRING)
+                    .field("string");
+                MappedFieldType fieldType = new KeywordFieldMapper.KeywordFieldType();
+                fieldType.setName("string");
+                fieldType.setHasDocValues(true);
+
+                TermsAggregator aggregator = createAggregator(aggregationBuilder, indexSearcher, fieldType);
+                // global ordinals resize the doc counts up-front for all the terms of a segment
+                assertThat(aggregator, instanceOf(GlobalOrdinalsStringTermsAggregator.class));
+                aggregator.preCollection();
+                indexSearcher.search(new TermQuery(new Term("match", "yes")), aggregator);
+                aggregator.postCollection();
+                AggregationMemoryUsage.Stats stats = aggregator.memoryUsage().stats();
+                assertEquals("_name", stats.getPath());
+                assertEquals(numTerms, stats.getBuckets());
+                // the default weight of the aggregator and the arrays of its terms and doc counts
+                assertThat(stats.getPeakBytes(), greaterThan((long) AggregatorBase.DEFAULT_WEIGHT));
+                assertThat(stats.getPeakBytes(), greaterThanOrEqualTo(stats.getBytes()));
+            }
+        }
+    }
+
+    public void testSpill() throws Exception {
+        try (Directory directory = newDirectory()) {
+            final Map<String, Integer> expected = new HashMap<>();
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                final int numDocs = scaledRandomIntBetween(500, 2000);
+                for (int i = 0; i < numDocs; i++) {
+                    Document document = new Document();
+                    final long value = randomIntBetween(0, numDocs);
+                    document.add(new SortedSetDocValuesField("string", new BytesRef(Long.toString(value))));
+                    document.add(new SortedNumericDocValuesField("long", value));
+                    expected.merge(Long.toString(value), 1, Integer::sum);
+                    indexWriter.addDocument(document);
+                }
+            }
+            final IndexMetaData indexMetaData = IndexMetaData.builder("_index")
+                .settings(Settings.builder()
+                    .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+                    .put(IndexSettings.TERMS_SPILL_THRESHOLD_SETTING.getKey(), randomIntBetween(1, 4) + "kb"))
+                .numberOfShards(1)
+                .numberOfReplicas(0)
+                .build();
+            final IndexSettings indexSettings = new IndexSettings(indexMetaData, Settings.EMPTY);
+            final ShardId shardId = new ShardId("_index", "_na_", 0);
+            final Path dataPath = createTempDir().resolve("_na_").resolve("0");
+            final IndexShard indexShard = mock(IndexShard.class);
+            when(indexShard.shardPath()).thenReturn(new ShardPath(false, dataPath, dataPath, shardId));
+
+            try (IndexReader indexReader = maybeWrapReaderEs(DirectoryReader.open(directory))) {
+                IndexSearcher indexSearcher = newIndexSearcher(indexReader);
+                final int size = randomIntBetween(1, expected.size());
+                final boolean numeric = randomBoolean();
+                TermsAggregationBuilder aggregationBuilder = new TermsAggregationBuilder("_name",
+                        numeric ? ValueType.LONG : ValueType.STRING)
+                    .executionHint("spill")
+                    .field(numeric ? "long" : "string")
+                    .size(size)
+                    .shardSize(size);
+                final MappedFieldType fieldType;
+                if (numeric) {
+                    fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+                    fieldType.setName("long");
+                } else {
+                    fieldType = new KeywordFieldMapper.KeywordFieldType();
+                    fieldType.setName("string");
+                }
+                fieldType.setHasDocValues(true);
+
+                TermsAggregator aggregator = createAggregator(aggregationBuilder, indexSearcher, indexSettings, fieldType);
+                assertThat(aggregator, instanceOf(numeric ? SpillingLongTermsAggregator.class : SpillingStringTermsAggregator.class));
+                when(aggregator.context().indexShard()).thenReturn(indexShard);
+                aggregator.preCollection();
+                indexSearcher.search(new MatchAllDocsQuery(), aggregator);
+                aggregator.postCollection();
+                Terms result = (Terms) aggregator.buildAggregation(0L);
+                // terms that were written to disk several times are only counted once
+                assertEquals(expected.size(), aggregator.memoryUsage().stats().getBuckets());
+                aggregator.close();
+                // the terms and their counts don't fit in the threshold
+                assertTrue(Files.exists(dataPath.resolve(ShardPath.TERMS_SPILL_FOLDER_NAME)));
+                try (DirectoryStream<Path> runs = Files.newDirectoryStream(dataPath.resolve(ShardPath.TERMS_SPILL_FOLDER_NAME))) {
+                    assertFalse("the runs must be deleted", runs.iterator().hasNext());
+                }
+
+                final List<Map.Entry<String, Integer>> expectedBuckets = new ArrayList<>(expected.entrySet());
+                // sorted by descending count and then by ascending term
+                expectedBuckets.sort((a, b) -> {
+                    int cmp = Integer.compare(b.getValue(), a.getValue());
+                    if (cmp == 0) {
+                        cmp = numeric ? Long.compare(Long.parseLong(a.getKey()), Long.parseLong(b.getKey()))
+                            : a.getKey().compareTo(b.getKey());
+                    }
+                    return cmp;
+                });
+                assertEquals(size, result.getBuckets().size());
+                long sumOfOtherDocCounts = 0;
+                for (int i = 0; i < expectedBuckets.size(); i++) {
+                    if (i < size) {
+                        Terms.Bucket bucket = result.getBuckets().get(i);
+                        assertEquals(expectedBuckets.get(i).getKey(), bucket.getKeyAsString());
+                        assertEquals((long) expectedBuckets.get(i).getValue(), bucket.getDocCount());
+                    } else {
+                        sumOfOtherDocCounts += expectedBuckets.get(i).getValue();
+                    }
+                }
+                assertEquals(sumOfOtherDocCounts, result.getSumOfOtherDocCounts());
+            }
+        }
+    }
+
     public void testStringIncludeExclude() throws Exception {
         try (Directory directory = newDirectory()) {
             try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
@@ -475,6 +626,54 @@ public class TermsAggregatorTests extends AggregatorTestCase {
         termsAggregatorWithNestedMaxAgg(ValueType.LONG, fieldType, Integer::longValue, val -> new NumericDocValuesField("field", val));
     }
 
+    public void testLongTermsAggregatorOnNarrowRange() throws Exception {
+        try (Directory directory = newDirectory()) {
+            final long minValue = randomLongBetween(-1000, 1000);
+            final int range = randomIntBetween(1, (int) LongTermsAggregator.MAX_DENSE_RANGE);
+            final Map<Long, Integer> counts = new HashMap<>();
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                final int numDocs = scaledRandomIntBetween(1, 2000);
+                for (int i = 0; i < numDocs; i++) {
+                    Document document = new Document();
+                    final long first = minValue + randomIntBetween(0, range - 1);
+                    document.add(new LongPoint("field", first));
+                    document.add(new SortedNumericDocValuesField("field", first));
+                    counts.merge(first, 1, Integer::sum);
+                    final long second = minValue + randomIntBetween(0, range - 1);
+                    if (randomBoolean() && second != first) {
+                        document.add(new LongPoint("field", second));
+                        document.add(new SortedNumericDocValuesField("field", second));
+                        counts.merge(second, 1, Integer::sum);
+                    }
+                    indexWriter.addDocument(document);
+                }
+            }
+            try (IndexReader indexReader = maybeWrapReaderEs(DirectoryReader.open(directory))) {
+                IndexSearcher indexSearcher = newIndexSearcher(indexReader);
+                MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+                fieldType.setName("field");
+                fieldType.setHasDocValues(true);
+                fieldType.setIndexOptions(IndexOptions.DOCS);
+
+                // empty buckets are filled in by the hash based collection
+                TermsAggregationBuilder aggregationBuilder = new TermsAggregationBuilder("_name", ValueType.LONG)
+                    .field("field")
+                    .size(range)
+                    .minDocCount(randomIntBetween(0, 1))
+                    .order(BucketOrder.key(true));
+                LongTerms result = search(indexSearcher, new MatchAllDocsQuery(), aggregationBuilder, fieldType);
+                final List<Long> expectedKeys = new ArrayList<>(counts.keySet());
+                expectedKeys.sort(Long::compareTo);
+                assertEquals(expectedKeys.size(), result.getBuckets().size());
+                for (int i = 0; i < expectedKeys.size(); i++) {
+                    Terms.Bucket bucket = result.getBuckets().get(i);
+                    assertEquals(expectedKeys.get(i), bucket.getKey());
+                    assertEquals((long) counts.get(expectedKeys.get(i)), bucket.getDocCount());
+                }
+            }
+        }
+    }
+
     public void testDoubleTermsAggregator() throws Exception {
         BiFunction<Double, Boolean, IndexableField> luceneFieldFactory = (val, mv) -> {
             if (mv) {
@@ -32,6 +32,7 @@ import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.bucket.global.Global;
 import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 import org.elasticsearch.search.aggregations.metrics.cardinality.Cardinality;
+import org.elasticsearch.search.aggregations.metrics.cardinality.HyperLogLogPlusPlus;
 import org.elasticsearch.test.ESIntegTestCase;
 
 import java.util.Collection;
@@ -50,6 +51,7 @@ import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcke
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.notNullValue;
 
 @ESIntegTestCase.SuiteScopeTestCase
@@ -185,6 +187,28 @@ public class CardinalityIT extends ESIntegTestCase {
         assertCount(count, 0);
     }
 
+    public void testBufferedResultsAccountForRegisters() throws Exception {
+        assertAcked(prepareCreate("idx_registers")
+            .setSettings(Settings.builder().put("index.number_of_shards", between(2, 5)).put("index.number_of_replicas", 0))
+            .addMapping("type", "str_value", "type=keyword"));
+        IndexRequestBuilder[] builders = new IndexRequestBuilder[100];
+        for (int i = 0; i < builders.length; i++) {
+            builders[i] = client().prepareIndex("idx_registers", "type").setSource("str_value", "s" + i);
+        }
+        indexRandom(true, builders);
+
+        // the highest precision, whose registers take 256kb
+        final long threshold = 40000;
+        SearchResponse response = client().prepareSearch("idx_registers").setSize(0)
+            .addAggregation(cardinality("cardinality").precisionThreshold(threshold).field("str_value"))
+            .get();
+        assertSearchResponse(response);
+        assertCount(response.getAggregations().get("cardinality"), builders.length);
+        // the shard results buffered on the coordinating node are accounted for by the size of their registers
+        final long registersBytes = HyperLogLogPlusPlus.memoryUsage(HyperLogLogPlusPlus.precisionFromThreshold(threshold));
+        assertThat(response.getPeakBufferedAggsBytes(), greaterThanOrEqualTo(registersBytes));
+    }
+
     public void testPartiallyUnmapped() throws Exception {
         SearchResponse response = client().prepareSearch("idx", "idx_unmapped").setTypes("type")
                 .addAggregation(cardinality("cardinality").precisionThreshold(precisionThreshold).field("str_value"))
@@ -32,10 +32,13 @@ import org.elasticsearch.test.InternalAggregationTestCase;
 import org.junit.After;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+
 public class InternalCardinalityTests extends InternalAggregationTestCase<InternalCardinality> {
     private static List<HyperLogLogPlusPlus> algos;
     private static int p;
@@ -86,6 +89,11 @@ public class InternalCardinalityTests extends InternalAggregationTestCase<Intern
         }
     }
 
+    public void testEstimateSizeCountsRegisters() {
+        InternalCardinality cardinality = createTestInstance(randomAlphaOfLength(5), Collections.emptyList(), null);
+        assertThat(cardinality.estimateSize(), greaterThanOrEqualTo(HyperLogLogPlusPlus.memoryUsage(p)));
+    }
+
     @Override
     protected void assertFromXContent(InternalCardinality aggregation, ParsedAggregation parsedAggregation) {
         assertTrue(parsedAggregation instanceof ParsedCardinality);
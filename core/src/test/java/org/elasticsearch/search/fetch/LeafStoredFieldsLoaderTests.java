@@ -0,0 +1,146 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.fetch;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FilterDirectoryReader;
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class LeafStoredFieldsLoaderTests extends ESTestCase {
+
+    private static final class CollectingVisitor extends StoredFieldVisitor {
+        final List<String> values = new ArrayList<>();
+
+        @Override
+        public Status needsField(FieldInfo fieldInfo) {
+            return Status.YES;
+        }
+
+        @Override
+        public void stringField(FieldInfo fieldInfo, byte[] value) {
+            values.add(fieldInfo.name + ":" + new String(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static List<String> load(LeafStoredFieldsLoader loader, int docId) throws IOException {
+        CollectingVisitor visitor = new CollectingVisitor();
+        loader.document(docId, visitor);
+        return visitor.values;
+    }
+
+    public void testSequentialLoading() throws IOException {
+        try (Directory dir = newDirectory(); IndexWriter writer = new IndexWriter(dir, newIndexWriterConfig())) {
+            int numDocs = randomIntBetween(1, 500);
+            for (int i = 0; i < numDocs; i++) {
+                Document doc = new Document();
+                doc.add(new StoredField("id", Integer.toString(i)));
+                doc.add(new StoredField("text", randomAlphaOfLengthBetween(1, 100)));
+                writer.addDocument(doc);
+                if (rarely()) {
+                    writer.commit();
+                }
+            }
+            try (DirectoryReader reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer), new ShardId("foo", "_na_", 1))) {
+                for (LeafReaderContext leaf : reader.leaves()) {
+                    LeafStoredFieldsLoader sequential = LeafStoredFieldsLoader.create(leaf.reader(), true);
+                    LeafStoredFieldsLoader random = LeafStoredFieldsLoader.create(leaf.reader(), false);
+                    for (int docId = 0; docId < leaf.reader().maxDoc(); docId += randomIntBetween(1, 5)) {
+                        assertEquals(load(random, docId), load(sequential, docId));
+                    }
+                }
+            }
+        }
+    }
+
+    public void testDoesNotBypassFilterReaders() throws IOException {
+        try (Directory dir = newDirectory(); IndexWriter writer = new IndexWriter(dir, newIndexWriterConfig())) {
+            Document doc = new Document();
+            doc.add(new StoredField("id", "1"));
+            doc.add(new StoredField("secret", "value"));
+            writer.addDocument(doc);
+            DirectoryReader reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(writer), new ShardId("foo", "_na_", 1));
+            // hides the secret field, like field level security does
+            reader = new FilterDirectoryReader(reader, new FilterDirectoryReader.SubReaderWrapper() {
+                @Override
+                public LeafReader wrap(LeafReader reader) {
+                    return new FilterLeafReader(reader) {
+                        @Override
+                        public void document(int docID, StoredFieldVisitor visitor) throws IOException {
+                            super.document(docID, new StoredFieldVisitor() {
+                                @Override
+                                public Status needsField(FieldInfo fieldInfo) throws IOException {
+                                    return fieldInfo.name.equals("secret") ? Status.NO : visitor.needsField(fieldInfo);
+                                }
+
+                                @Override
+                                public void stringField(FieldInfo fieldInfo, byte[] value) throws IOException {
+                                    visitor.stringField(fieldInfo, value);
+                                }
+                            });
+                        }
+
+                        @Override
+                        public CacheHelper getCoreCacheHelper() {
+                            return in.getCoreCacheHelper();
+                        }
+
+                        @Override
+                        public CacheHelper getReaderCacheHelper() {
+                            return in.getReaderCacheHelper();
+                        }
+                    };
+                }
+            }) {
+                @Override
+                protected DirectoryReader doWrapDirectoryReader(DirectoryReader in) throws IOException {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public CacheHelper getReaderCacheHelper() {
+                    return in.getReaderCacheHelper();
+                }
+            };
+            try {
+                LeafStoredFieldsLoader loader = LeafStoredFieldsLoader.create(reader.leaves().get(0).reader(), true);
+                assertEquals(Collections.singletonList("id:1"), load(loader, 0));
+            } finally {
+                reader.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.internal;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.tasks.TaskCancelledException;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class ContextIndexSearcherTests extends ESTestCase {
+
+    private static Directory newSegmentedDirectory(int numSegments) throws IOException {
+        Directory dir = newDirectory();
+        try (IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE))) {
+            for (int i = 0; i < numSegments; i++) {
+                final int numDocs = randomIntBetween(1, 50);
+                for (int j = 0; j < numDocs; j++) {
+                    Document doc = new Document();
+                    doc.add(new StringField("foo", randomBoolean() ? "bar" : "baz", Store.NO));
+                    doc.add(new NumericDocValuesField("rank", randomIntBetween(0, 20)));
+                    w.addDocument(doc);
+                }
+                w.commit();
+            }
+        }
+        return dir;
+    }
+
+    public void testComputeSlices() throws Exception {
+        try (Directory dir = newSegmentedDirectory(randomIntBetween(2, 10));
+             DirectoryReader reader = DirectoryReader.open(dir)) {
+            final List<LeafReaderContext> leaves = reader.leaves();
+            final int maxSlices = randomIntBetween(1, 5);
+            List<List<LeafReaderContext>> slices = ContextIndexSearcher.computeSlices(leaves, maxSlices, 1);
+            assertThat(slices.size(), lessThanOrEqualTo(maxSlices));
+            // slices are made of contiguous leaves
+            assertEquals(leaves, slices.stream().flatMap(List::stream).collect(Collectors.toList()));
+            for (List<LeafReaderContext> slice : slices) {
+                assertFalse(slice.isEmpty());
+            }
+            // small readers are never split
+            assertEquals(1, ContextIndexSearcher.computeSlices(leaves, maxSlices, reader.maxDoc() + 1).size());
+        }
+    }
+
+    public void testConcurrentSearchMatchesSequentialSearch() throws Exception {
+        final ExecutorService executor = EsExecutors.newFixed("test", 2, -1,
+            EsExecutors.daemonThreadFactory("test"), new ThreadContext(Settings.EMPTY));
+        try (Directory dir = newSegmentedDirectory(randomIntBetween(4, 10));
+             DirectoryReader reader = DirectoryReader.open(dir)) {
+            final IndexSearcher sequential = new IndexSearcher(reader);
+            final ContextIndexSearcher searcher = newContextIndexSearcher(reader);
+            searcher.setConcurrentSearchExecutor(executor, randomIntBetween(2, 4), 1);
+            assertTrue(searcher.isConcurrentSearchEnabled());
+
+            final TermQuery query = new TermQuery(new Term("foo", "bar"));
+            final int count = searcher.search(query, new CollectorManager<TotalHitCountCollector, Integer>() {
+                @Override
+                public TotalHitCountCollector newCollector() {
+                    return new TotalHitCountCollector();
+                }
+
+                @Override
+                public Integer reduce(Collection<TotalHitCountCollector> collectors) {
+                    return collectors.stream().mapToInt(TotalHitCountCollector::getTotalHits).sum();
+                }
+            });
+            assertEquals(sequential.count(query), count);
+
+            final Sort sort = new Sort(new SortField("rank", SortField.Type.LONG));
+            final int numHits = randomIntBetween(1, 30);
+            final TopDocs topDocs = searcher.search(new MatchAllDocsQuery(), new CollectorManager<TopFieldCollector, TopDocs>() {
+                @Override
+                public TopFieldCollector newCollector() throws IOException {
+                    return TopFieldCollector.create(sort, numHits, true, false, false);
+                }
+
+                @Override
+                public TopDocs reduce(Collection<TopFieldCollector> collectors) throws IOException {
+                    final TopFieldDocs[] topDocs = new TopFieldDocs[collectors.size()];
+                    int i = 0;
+                    for (TopFieldCollector collector : collectors) {
+                        topDocs[i++] = collector.topDocs();
+                    }
+                    return TopDocs.merge(sort, 0, numHits, topDocs, true);
+                }
+            });
+            final TopDocs expected = sequential.search(new MatchAllDocsQuery(), numHits, sort);
+            assertEquals(expected.totalHits, topDocs.totalHits);
+            assertEquals(expected.scoreDocs.length, topDocs.scoreDocs.length);
+            for (int i = 0; i < expected.scoreDocs.length; i++) {
+                assertEquals(expected.scoreDocs[i].doc, topDocs.scoreDocs[i].doc);
+            }
+        } finally {
+            terminate(executor);
+        }
+    }
+
+    public void testConcurrentSearchPropagatesCancellation() throws Exception {
+        final ExecutorService executor = EsExecutors.newFixed("test", 2, -1,
+            EsExecutors.daemonThreadFactory("test"), new ThreadContext(Settings.EMPTY));
+        try (Directory dir = newSegmentedDirectory(randomIntBetween(4, 10));
+             DirectoryReader reader = DirectoryReader.open(dir)) {
+            final ContextIndexSearcher searcher = newContextIndexSearcher(reader);
+            searcher.setConcurrentSearchExecutor(executor, 4, 1);
+            searcher.setCheckCancelled(() -> {
+                throw new TaskCancelledException("cancelled");
+            });
+            expectThrows(TaskCancelledException.class, () -> searcher.search(new MatchAllDocsQuery(),
+                new CollectorManager<Collector, Void>() {
+                    @Override
+                    public Collector newCollector() {
+                        return new TotalHitCountCollector();
+                    }
+
+                    @Override
+                    public Void reduce(Collection<Collector> collectors) {
+                        throw new AssertionError("search should have been cancelled");
+                    }
+                }));
+        } finally {
+            terminate(executor);
+        }
+    }
+
+    private static ContextIndexSearcher newContextIndexSearcher(DirectoryReader reader) {
+        final Engine.Searcher engineSearcher = new Engine.Searcher("test", new IndexSearcher(reader));
+        return new ContextIndexSearcher(engineSearcher, null, IndexSearcher.getDefaultQueryCachingPolicy());
+    }
+}
@@ -55,12 +55,17 @@ public class ProfileResultTests extends ESTestCase {
             }
             timings.put(randomAlphaOfLengthBetween(5, 10), time); // don't overflow Long.MAX_VALUE;
         }
+        Map<String, Long> memory = new HashMap<>();
+        if (randomBoolean()) {
+            memory.put("peak_memory_in_bytes", randomNonNegativeLong());
+            memory.put("buckets", randomNonNegativeLong());
+        }
         int childrenSize = depth > 0 ? randomIntBetween(0, 1) : 0;
         List<ProfileResult> children = new ArrayList<>(childrenSize);
         for (int i = 0; i < childrenSize; i++) {
             children.add(createTestItem(depth - 1));
         }
-        return new ProfileResult(type, description, timings, children);
+        return new ProfileResult(type, description, timings, memory, children);
     }
 
     public void testFromXContent() throws IOException {
@@ -82,8 +87,9 @@ public class ProfileResultTests extends ESTestCase {
         BytesReference originalBytes = toShuffledXContent(profileResult, xContentType, ToXContent.EMPTY_PARAMS, humanReadable);
         BytesReference mutated;
         if (addRandomFields) {
-            // "breakdown" just consists of key/value pairs, we shouldn't add anything random there
-            Predicate<String> excludeFilter = (s) -> s.endsWith(ProfileResult.BREAKDOWN.getPreferredName());
+            // "breakdown" and "memory" just consist of key/value pairs, we shouldn't add anything random there
+            Predicate<String> excludeFilter = (s) -> s.endsWith(ProfileResult.BREAKDOWN.getPreferredName())
+                || s.endsWith(ProfileResult.MEMORY.getPreferredName());
             mutated = insertRandomFields(xContentType, originalBytes, excludeFilter, random());
         } else {
             mutated = originalBytes;
@@ -96,6 +102,7 @@ public class ProfileResultTests extends ESTestCase {
             assertNull(parser.nextToken());
         }
         assertEquals(profileResult.getTime(), parsed.getTime());
+        assertEquals(profileResult.getMemoryBreakdown(), parsed.getMemoryBreakdown());
         assertToXContentEquivalent(originalBytes, toXContent(parsed, xContentType, humanReadable), xContentType);
     }
 
@@ -56,7 +56,12 @@ public class SearchProfileShardResultsTests  extends ESTestCase {
             AggregationProfileShardResult aggProfileShardResult = AggregationProfileShardResultTests.createTestItem(1);
             searchProfileResults.put(randomAlphaOfLengthBetween(5, 10), new ProfileShardResult(queryProfileResults, aggProfileShardResult));
         }
-        return new SearchProfileShardResults(searchProfileResults);
+        Map<String, Long> aggregationReduceTimes = new HashMap<>();
+        int numAggs = randomIntBetween(0, 3);
+        for (int i = 0; i < numAggs; i++) {
+            aggregationReduceTimes.put(randomAlphaOfLengthBetween(5, 10), randomNonNegativeLong());
+        }
+        return new SearchProfileShardResults(searchProfileResults, aggregationReduceTimes);
     }
 
     public void testFromXContent() throws IOException {
@@ -47,6 +47,7 @@ public class CollectorResultTests extends ESTestCase {
             // also often use relatively "small" values, otherwise we will mostly test huge longs
             time = time % 100000;
         }
+        long skippedDocs = randomBoolean() ? -1 : randomNonNegativeLong();
         int size = randomIntBetween(0, 5);
         List<CollectorResult> children = new ArrayList<>(size);
         if (depth > 0) {
@@ -54,7 +55,7 @@ public class CollectorResultTests extends ESTestCase {
                 children.add(createTestItem(depth - 1));
             }
         }
-        return new CollectorResult(name, reason, time, children);
+        return new CollectorResult(name, reason, time, skippedDocs, children);
     }
 
     public void testFromXContent() throws IOException {
@@ -151,5 +152,15 @@ public class CollectorResultTests extends ESTestCase {
                 "  \"time\" : \"1.2s\",\n" +
                 "  \"time_in_nanos\" : 1234567890\n" +
               "}", builder.string());
+
+        result = new CollectorResult("collectorName", "some reason", 1234567890L, 42L, Collections.emptyList());
+        builder = XContentFactory.jsonBuilder().prettyPrint();
+        result.toXContent(builder, ToXContent.EMPTY_PARAMS);
+        assertEquals("{\n" +
+                "  \"name\" : \"collectorName\",\n" +
+                "  \"reason\" : \"some reason\",\n" +
+                "  \"time_in_nanos\" : 1234567890,\n" +
+                "  \"skipped_docs\" : 42\n" +
+              "}", builder.string());
     }
 }
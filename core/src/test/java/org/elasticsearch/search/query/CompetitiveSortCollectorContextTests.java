@@ -0,0 +1,125 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSelector;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+
+import static org.hamcrest.Matchers.greaterThan;
+
+public class CompetitiveSortCollectorContextTests extends ESTestCase {
+
+    public void testSameTopDocs() throws IOException {
+        try (Directory dir = newDirectory();
+             RandomIndexWriter w = new RandomIndexWriter(random(), dir)) {
+            final int numDocs = scaledRandomIntBetween(100, 5000);
+            for (int i = 0; i < numDocs; i++) {
+                Document doc = new Document();
+                if (randomBoolean()) {
+                    doc.add(new StringField("foo", "bar", Store.NO));
+                }
+                final int numValues = frequently() ? 1 : randomIntBetween(0, 3);
+                for (int j = 0; j < numValues; j++) {
+                    final long value = randomLongBetween(-1000, 1000);
+                    doc.add(new LongPoint("timestamp", value));
+                    doc.add(new SortedNumericDocValuesField("timestamp", value));
+                }
+                w.addDocument(doc);
+                if (rarely()) {
+                    w.deleteDocuments(new Term("foo", "bar"));
+                }
+            }
+            try (IndexReader reader = w.getReader()) {
+                final IndexSearcher searcher = new IndexSearcher(reader);
+                for (Query query : new Query[] { new MatchAllDocsQuery(), new TermQuery(new Term("foo", "bar")) }) {
+                    final boolean reverse = randomBoolean();
+                    final int numHits = randomIntBetween(1, 50);
+                    final SortedNumericSortField sortField = new SortedNumericSortField("timestamp", SortField.Type.LONG, reverse,
+                        reverse ? SortedNumericSelector.Type.MAX : SortedNumericSelector.Type.MIN);
+                    sortField.setMissingValue(reverse ? Long.MIN_VALUE : Long.MAX_VALUE);
+                    final Sort sort = new Sort(sortField);
+                    final TopDocs expected = searcher.search(query, numHits, sort);
+
+                    final CompetitiveSortCollectorContext context = new CompetitiveSortCollectorContext("timestamp", reverse, numHits);
+                    final TopFieldCollector topDocsCollector = TopFieldCollector.create(sort, numHits, null, true, false, false);
+                    searcher.search(context.wrapQuery(query), context.create(topDocsCollector));
+                    final TopDocs actual = topDocsCollector.topDocs();
+
+                    assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+                    for (int i = 0; i < expected.scoreDocs.length; i++) {
+                        assertEquals(expected.scoreDocs[i].doc, actual.scoreDocs[i].doc);
+                        assertEquals(((FieldDoc) expected.scoreDocs[i]).fields[0], ((FieldDoc) actual.scoreDocs[i]).fields[0]);
+                    }
+                }
+            }
+        }
+    }
+
+    public void testSkipsNonCompetitiveDocs() throws IOException {
+        try (Directory dir = newDirectory();
+             RandomIndexWriter w = new RandomIndexWriter(random(), dir)) {
+            final int numDocs = 10000;
+            for (int i = 0; i < numDocs; i++) {
+                Document doc = new Document();
+                doc.add(new LongPoint("timestamp", i));
+                doc.add(new SortedNumericDocValuesField("timestamp", i));
+                w.addDocument(doc);
+            }
+            w.forceMerge(1);
+            try (IndexReader reader = w.getReader()) {
+                final IndexSearcher searcher = new IndexSearcher(reader);
+                final int numHits = 10;
+                final Sort sort = new Sort(new SortedNumericSortField("timestamp", SortField.Type.LONG));
+                final CompetitiveSortCollectorContext context = new CompetitiveSortCollectorContext("timestamp", false, numHits);
+                final TopFieldCollector topDocsCollector = TopFieldCollector.create(sort, numHits, null, true, false, false);
+                searcher.search(context.wrapQuery(new MatchAllDocsQuery()), context.create(topDocsCollector));
+                final TopDocs topDocs = topDocsCollector.topDocs();
+                assertEquals(numHits, topDocs.scoreDocs.length);
+                for (int i = 0; i < numHits; i++) {
+                    assertEquals((long) i, ((FieldDoc) topDocs.scoreDocs[i]).fields[0]);
+                }
+                // most documents cannot compete with the smallest values once a few of them have been collected
+                assertThat(context.skippedDocs(), greaterThan((long) numDocs / 2));
+                assertEquals(numHits - 1, context.bound());
+            }
+        }
+    }
+}
@@ -35,6 +35,7 @@ import org.apache.lucene.queries.MinDocQuery;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.FieldComparator;
 import org.apache.lucene.search.FieldDoc;
@@ -44,29 +45,42 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.LeafCollector;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.MultiCollector;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TotalHitCountCollector;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.Directory;
 import org.elasticsearch.action.search.SearchTask;
+import org.elasticsearch.common.lucene.search.FilteredCollector;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.query.ParsedQuery;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.IndexShardTestCase;
 import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.internal.ContextIndexSearcher;
 import org.elasticsearch.search.internal.ScrollContext;
 import org.elasticsearch.search.sort.SortAndFormats;
 import org.elasticsearch.test.TestSearchContext;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.hamcrest.Matchers.anyOf;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
 
@@ -209,6 +223,80 @@ public class QueryPhaseTests extends IndexShardTestCase {
         assertTrue(collected.get());
     }
 
+    public void testCountShortcutWhenOtherCollectorsNeedDocuments() throws Exception {
+        Directory dir = newDirectory();
+        IndexWriterConfig iwc = newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE);
+        RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+        final int numDocs = scaledRandomIntBetween(100, 200);
+        for (int i = 0; i < numDocs; ++i) {
+            Document doc = new Document();
+            doc.add(new StringField("foo", randomBoolean() ? "bar" : "baz", Store.NO));
+            w.addDocument(doc);
+        }
+        final IndexReader reader = w.getReader();
+        final IndexSearcher searcher = new IndexSearcher(reader);
+        final Query query = new MatchAllDocsQuery();
+        final Query postFilter = new TermQuery(new Term("foo", "bar"));
+        for (boolean trackTotalHits : new boolean[] { true, false }) {
+            for (boolean withPostFilter : new boolean[] { true, false }) {
+                TestSearchContext context = new TestSearchContext(null, indexShard);
+                context.parsedQuery(new ParsedQuery(query));
+                context.setSize(0);
+                context.trackTotalHits(trackTotalHits);
+                if (withPostFilter) {
+                    context.parsedPostFilter(new ParsedQuery(postFilter));
+                }
+                // another collector of the chain, like aggregations, needs the documents
+                TopDocsCollectorContext topDocsContext = TopDocsCollectorContext.createTopDocsCollectorContext(context, reader, true);
+                assertTrue(topDocsContext.shouldCollect());
+                Collector collector = topDocsContext.create(null);
+                if (withPostFilter) {
+                    // like the post filter collector of the query phase
+                    collector = new FilteredCollector(collector, searcher.createNormalizedWeight(postFilter, false));
+                }
+                final TotalHitCountCollector other = new TotalHitCountCollector();
+                searcher.search(query, MultiCollector.wrap(collector, other));
+                topDocsContext.postProcess(context.queryResult(), true);
+                assertEquals(numDocs, other.getTotalHits());
+                assertEquals(withPostFilter ? searcher.count(postFilter) : numDocs, context.queryResult().topDocs().totalHits);
+            }
+        }
+        reader.close();
+        w.close();
+        dir.close();
+    }
+
+    public void testPostFilterCountWithDocuments() throws Exception {
+        Directory dir = newDirectory();
+        IndexWriterConfig iwc = newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE);
+        RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+        final int numDocs = scaledRandomIntBetween(100, 200);
+        for (int i = 0; i < numDocs; ++i) {
+            Document doc = new Document();
+            doc.add(new StringField("foo", randomBoolean() ? "bar" : "baz", Store.NO));
+            w.addDocument(doc);
+        }
+        final IndexReader reader = w.getReader();
+        final IndexSearcher searcher = new IndexSearcher(reader);
+        final Query postFilter = new TermQuery(new Term("foo", "bar"));
+        for (boolean trackTotalHits : new boolean[] { true, false }) {
+            TestSearchContext context = new TestSearchContext(null, indexShard);
+            context.parsedQuery(new ParsedQuery(new MatchAllDocsQuery()));
+            context.setSize(0);
+            context.trackTotalHits(trackTotalHits);
+            context.setTask(new SearchTask(123L, "", "", "", null));
+            QueryPhase.execute(context, searcher, checkCancelled -> {}, null);
+            assertEquals(numDocs, context.queryResult().topDocs().totalHits);
+
+            context.parsedPostFilter(new ParsedQuery(postFilter));
+            QueryPhase.execute(context, searcher, checkCancelled -> {}, null);
+            assertEquals(searcher.count(postFilter), context.queryResult().topDocs().totalHits);
+        }
+        reader.close();
+        w.close();
+        dir.close();
+    }
+
     public void testQueryCapturesThreadPoolStats() throws Exception {
         TestSearchContext context = new TestSearchContext(null, indexShard);
         context.setTask(new SearchTask(123L, "", "", "", null));
@@ -526,6 +614,110 @@ public class QueryPhaseTests extends IndexShardTestCase {
         dir.close();
     }
 
+    public void testConcurrentCollectionMatchesSequentialCollection() throws Exception {
+        Directory dir = newDirectory();
+        IndexWriterConfig iwc = newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE);
+        RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+        final int numDocs = scaledRandomIntBetween(100, 500);
+        for (int i = 0; i < numDocs; ++i) {
+            Document doc = new Document();
+            if (randomBoolean()) {
+                doc.add(new StringField("foo", "bar", Store.NO));
+            }
+            doc.add(new NumericDocValuesField("rank", randomIntBetween(0, 10)));
+            w.addDocument(doc);
+            if (rarely()) {
+                w.commit();
+            }
+        }
+        w.commit();
+        final IndexReader reader = w.getReader();
+        w.close();
+
+        final ThreadPoolExecutor executor = (ThreadPoolExecutor) threadPool.executor(ThreadPool.Names.SEARCH_WORKER);
+        final Sort sort = new Sort(new SortField("rank", SortField.Type.INT));
+        for (Query query : new Query[] { new MatchAllDocsQuery(), new TermQuery(new Term("foo", "bar")) }) {
+            for (boolean sorted : new boolean[] { false, true }) {
+                final int size = randomIntBetween(0, 50);
+                final TopDocs sequential = executeQuery(reader, query, size, sorted ? sort : null, null);
+                final long completedTasks = executor.getCompletedTaskCount();
+                final TopDocs concurrent = executeQuery(reader, query, size, sorted ? sort : null, executor);
+                if (reader.leaves().size() > 1 && size > 0 && sorted == false) {
+                    // the slices ran on the search_worker pool, whose workers count a task once it returned
+                    assertBusy(() -> assertThat(executor.getCompletedTaskCount(), greaterThan(completedTasks)));
+                }
+                // the total hits of the slices are summed up
+                assertThat(concurrent.totalHits, equalTo(sequential.totalHits));
+                assertThat(concurrent.scoreDocs.length, equalTo(sequential.scoreDocs.length));
+                for (int i = 0; i < sequential.scoreDocs.length; i++) {
+                    // ties are broken on doc ids like in the sequential collection
+                    assertThat(concurrent.scoreDocs[i].doc, equalTo(sequential.scoreDocs[i].doc));
+                    assertThat(concurrent.scoreDocs[i].score, equalTo(sequential.scoreDocs[i].score));
+                    assertThat(concurrent.scoreDocs[i].shardIndex, equalTo(sequential.scoreDocs[i].shardIndex));
+                    if (sorted) {
+                        assertThat(((FieldDoc) concurrent.scoreDocs[i]).fields, equalTo(((FieldDoc) sequential.scoreDocs[i]).fields));
+                    }
+                }
+            }
+        }
+        reader.close();
+        dir.close();
+    }
+
+    public void testMultiCollectorCreatesACollectorPerSliceForManagers() throws Exception {
+        final List<TotalHitCountCollector> sliceCollectors = new ArrayList<>();
+        final SliceCollectorManager manager = new SliceCollectorManager(sliceCollectors);
+        final QueryCollectorContext sliced = QueryCollectorContext.createMultiCollectorContext(Collections.singletonList(manager));
+        assertTrue(sliced.supportsConcurrentCollection());
+        final int numSlices = randomIntBetween(1, 5);
+        for (int i = 0; i < numSlices; i++) {
+            sliced.create(new TotalHitCountCollector());
+        }
+        assertThat(sliceCollectors.size(), equalTo(numSlices));
+
+        // collectors that are shared by all slices force sequential collection
+        final QueryCollectorContext shared = QueryCollectorContext.createMultiCollectorContext(
+            Arrays.asList(manager, new TotalHitCountCollector()));
+        assertFalse(shared.supportsConcurrentCollection());
+    }
+
+    private static class SliceCollectorManager extends TotalHitCountCollector
+            implements CollectorManager<TotalHitCountCollector, Void> {
+        private final List<TotalHitCountCollector> sliceCollectors;
+
+        SliceCollectorManager(List<TotalHitCountCollector> sliceCollectors) {
+            this.sliceCollectors = sliceCollectors;
+        }
+
+        @Override
+        public TotalHitCountCollector newCollector() {
+            TotalHitCountCollector collector = new TotalHitCountCollector();
+            sliceCollectors.add(collector);
+            return collector;
+        }
+
+        @Override
+        public Void reduce(Collection<TotalHitCountCollector> collectors) {
+            return null;
+        }
+    }
+
+    private TopDocs executeQuery(IndexReader reader, Query query, int size, Sort sort, Executor executor) {
+        TestSearchContext context = new TestSearchContext(null, indexShard);
+        context.parsedQuery(new ParsedQuery(query));
+        context.setSize(size);
+        context.setTask(new SearchTask(123L, "", "", "", null));
+        if (sort != null) {
+            context.sort(new SortAndFormats(sort, new DocValueFormat[] {DocValueFormat.RAW}));
+        }
+        final Engine.Searcher engineSearcher = new Engine.Searcher("test", new IndexSearcher(reader));
+        final ContextIndexSearcher searcher = new ContextIndexSearcher(engineSearcher, null,
+            IndexSearcher.getDefaultQueryCachingPolicy());
+        searcher.setConcurrentSearchExecutor(executor, randomIntBetween(2, 8), 1);
+        QueryPhase.execute(context, searcher, checkCancelled -> {}, null);
+        return context.queryResult().topDocs();
+    }
+
     static IndexSearcher getAssertingEarlyTerminationSearcher(IndexReader reader, int size) {
         return new IndexSearcher(reader) {
             protected void search(List<LeafReaderContext> leaves, Weight weight, Collector collector) throws IOException {
@@ -0,0 +1,95 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.stats;
+
+import org.HdrHistogram.Histogram;
+import org.elasticsearch.action.admin.cluster.node.stats.NodesStatsResponse;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.search.stats.SearchLatencyStats;
+import org.elasticsearch.indices.IndicesService;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.test.ESSingleNodeTestCase;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.elasticsearch.action.support.WriteRequest.RefreshPolicy.IMMEDIATE;
+
+public class SearchLatencyStatsTests extends ESSingleNodeTestCase {
+
+    public void testRecordsPhasesAndTypes() {
+        createIndex("index");
+        client().prepareIndex("index", "type", "1").setSource("field", "value").setRefreshPolicy(IMMEDIATE).get();
+        client().prepareSearch("index").setQuery(QueryBuilders.termQuery("field", "value"))
+            .addAggregation(AggregationBuilders.terms("first").field("field.keyword"))
+            .addAggregation(AggregationBuilders.terms("second").field("field.keyword")).get();
+        client().prepareSearch("index").get();
+
+        SearchLatencyStats stats = getInstanceFromNode(IndicesService.class).searchLatencyStats();
+        SearchLatencyStats.IndexLatency latency = stats.getIndices().get("index");
+        assertNotNull(latency);
+        int numShards = getIndexService(resolveIndex("index")).getIndexSettings().getNumberOfShards();
+        assertEquals(2 * numShards, latency.getPhases().get(SearchLatencyStats.QUERY).getTotalCount());
+        assertEquals(2, latency.getPhases().get(SearchLatencyStats.FETCH).getTotalCount());
+        assertEquals(numShards, latency.getQueries().get("term").getTotalCount());
+        assertEquals(numShards, latency.getQueries().get("match_all").getTotalCount());
+        // two aggregations of the same type are recorded once per shard request
+        assertEquals(numShards, latency.getAggregations().get("terms").getTotalCount());
+
+        NodesStatsResponse response = client().admin().cluster().prepareNodesStats().clear().setSearchLatency(true).get();
+        assertNotNull(response.getNodes().get(0).getSearchLatencyStats().getIndices().get("index"));
+
+        client().admin().indices().prepareDelete("index").get();
+        assertNull(getInstanceFromNode(IndicesService.class).searchLatencyStats().getIndices().get("index"));
+    }
+
+    public void testAdd() {
+        SearchLatencyStats first = new SearchLatencyStats(Collections.singletonMap("index",
+            new SearchLatencyStats.IndexLatency(histograms(SearchLatencyStats.QUERY, 10, 20), histograms("term", 10, 20),
+                Collections.emptyMap())));
+        SearchLatencyStats second = new SearchLatencyStats(Collections.singletonMap("index",
+            new SearchLatencyStats.IndexLatency(histograms(SearchLatencyStats.QUERY, 1000), histograms("match", 1000),
+                histograms("terms", 1000))));
+
+        first.add(second);
+        SearchLatencyStats.IndexLatency merged = first.getIndices().get("index");
+        Histogram query = merged.getPhases().get(SearchLatencyStats.QUERY);
+        assertEquals(3, query.getTotalCount());
+        assertEquals(10, query.getMinValue());
+        assertTrue(query.valuesAreEquivalent(1000, query.getMaxValue()));
+        assertEquals(2, merged.getQueries().get("term").getTotalCount());
+        assertEquals(1, merged.getQueries().get("match").getTotalCount());
+        assertEquals(1, merged.getAggregations().get("terms").getTotalCount());
+
+        // the stats that were added are not modified
+        assertEquals(1, second.getIndices().get("index").getPhases().get(SearchLatencyStats.QUERY).getTotalCount());
+    }
+
+    private static Map<String, Histogram> histograms(String key, long... values) {
+        Histogram histogram = new Histogram(2);
+        for (long value : values) {
+            histogram.recordValue(value);
+        }
+        Map<String, Histogram> histograms = new HashMap<>();
+        histograms.put(key, histogram);
+        return histograms;
+    }
+}
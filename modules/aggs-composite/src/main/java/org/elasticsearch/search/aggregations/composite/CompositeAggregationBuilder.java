@@ -145,7 +145,8 @@ public class CompositeAggregationBuilder extends AbstractAggregationBuilder<Comp
         IndexSortConfig indexSortConfig = shardContext.getIndexSettings().getIndexSortConfig();
         if (indexSortConfig.hasIndexSort()) {
             Sort sort = indexSortConfig.buildIndexSort(shardContext::fieldMapper, shardContext::getForField);
-            System.arraycopy(sort.getSort(), 0, sortFields, 0, sortFields.length);
+            // the index sort may have fewer fields than the sources
+            System.arraycopy(sort.getSort(), 0, sortFields, 0, Math.min(sortFields.length, sort.getSort().length));
         }
         List<String> sourceNames = new ArrayList<>();
         for (int i = 0; i < configs.length; i++) {
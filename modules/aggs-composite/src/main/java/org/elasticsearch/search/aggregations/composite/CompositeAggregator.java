@@ -20,9 +20,20 @@
 package org.elasticsearch.search.aggregations.composite;
 
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.queries.SearchAfterSortedDocQuery;
+import org.apache.lucene.search.BulkScorer;
 import org.apache.lucene.search.CollectionTerminatedException;
 import org.apache.lucene.search.DocIdSet;
 import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.SortedNumericSortField;
+import org.apache.lucene.search.SortedSetSortField;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.RoaringDocIdSet;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
@@ -45,7 +56,9 @@ final class CompositeAggregator extends BucketsAggregator {
     private final int size;
     private final CompositeValuesSourceConfig[] sources;
     private final List<String> sourceNames;
-    private final boolean canEarlyTerminate;
+    private final CompositeKey rawAfterKey;
+    // the number of leading sources whose values are sorted like the documents of the index
+    private final int sortPrefixLength;
 
     private final TreeMap<Integer, Integer> keys;
     private final CompositeValuesComparator array;
@@ -53,6 +66,8 @@ final class CompositeAggregator extends BucketsAggregator {
     private final List<LeafContext> contexts = new ArrayList<>();
     private LeafContext leaf;
     private RoaringDocIdSet.Builder builder;
+    // the weight of the query, to collect the segments that start at the after key, see getLeafCollector
+    private Weight queryWeight;
 
     CompositeAggregator(String name, AggregatorFactories factories, SearchContext context, Aggregator parent,
                             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData,
@@ -62,18 +77,40 @@ final class CompositeAggregator extends BucketsAggregator {
         this.size = size;
         this.sources = sources;
         this.sourceNames = sourceNames;
+        this.rawAfterKey = rawAfterKey;
         // we use slot 0 to fill the current document (size+1).
         this.array = new CompositeValuesComparator(context.searcher().getIndexReader(), sources, size+1);
         if (rawAfterKey != null) {
             array.setTop(rawAfterKey.values());
         }
         this.keys = new TreeMap<>(array::compare);
-        this.canEarlyTerminate = Arrays.stream(sources)
-            .allMatch(CompositeValuesSourceConfig::canEarlyTerminate);
+        this.sortPrefixLength = sortPrefixLength(sources);
+    }
+
+    /**
+     * Returns the number of leading sources that match the index sort. Histogram sources round the values of the field so
+     * they end the prefix: documents are sorted on their rounded values but not on the values of the next sources anymore.
+     */
+    private static int sortPrefixLength(CompositeValuesSourceConfig[] sources) {
+        int length = 0;
+        for (CompositeValuesSourceConfig source : sources) {
+            if (source.canEarlyTerminate() == false) {
+                break;
+            }
+            length++;
+            if (source.valuesSource() instanceof RoundingValuesSource || source.valuesSource() instanceof HistogramValuesSource) {
+                break;
+            }
+        }
+        return length;
     }
 
     boolean canEarlyTerminate() {
-        return canEarlyTerminate;
+        return sortPrefixLength > 0;
+    }
+
+    int sortPrefixLength() {
+        return sortPrefixLength;
     }
 
     private int[] getReverseMuls() {
@@ -127,13 +164,112 @@ final class CompositeAggregator extends BucketsAggregator {
         leaf = new LeafContext(ctx, sub);
         builder = new RoaringDocIdSet.Builder(ctx.reader().maxDoc());
         final CompositeValuesSource.Collector inner = array.getLeafCollector(ctx, getFirstPassCollector());
-        return new LeafBucketCollector() {
+        final LeafBucketCollector collector = new LeafBucketCollector() {
             @Override
             public void collect(int doc, long zeroBucket) throws IOException {
                 assert zeroBucket == 0L;
                 inner.collect(doc);
             }
         };
+        final int firstDoc = firstDocAfterKey(ctx);
+        if (firstDoc > 0) {
+            // The documents before the after key were returned in previous pages, we collect the segment from the after key
+            // rather than visiting them.
+            collectFrom(ctx, collector, firstDoc);
+            throw new CollectionTerminatedException();
+        }
+        return collector;
+    }
+
+    /**
+     * Returns the first document of the segment that doesn't sort before the after key on the leading source, or 0 if the
+     * documents of the segment are not sorted on the leading source.
+     */
+    private int firstDocAfterKey(LeafReaderContext ctx) throws IOException {
+        if (rawAfterKey == null || sortPrefixLength == 0) {
+            return 0;
+        }
+        final Sort indexSort = ctx.reader().getMetaData().getSort();
+        if (indexSort == null) {
+            return 0;
+        }
+        final SortField sortField = indexSort.getSort()[0];
+        final Object topValue = afterKeySortValue(sortField, sources[0], rawAfterKey.get(0));
+        if (topValue == null) {
+            return 0;
+        }
+        // ties are broken on the doc id of the after doc, which is past the end of the segment so that the documents on the
+        // after key are collected too
+        final FieldDoc after = new FieldDoc(Integer.MAX_VALUE, Float.NaN, new Object[] { topValue });
+        final Query query = new SearchAfterSortedDocQuery(new Sort(sortField), after);
+        final Scorer scorer = query.createWeight(context.searcher(), false, 1f).scorer(ctx);
+        return scorer == null ? DocIdSetIterator.NO_MORE_DOCS : scorer.iterator().nextDoc();
+    }
+
+    /**
+     * Converts the value of the after key on the leading source to a value of the primary sort field of the index, rounded
+     * so that none of the documents on or after the after key sort before it. Returns null if the value can't be converted.
+     */
+    private static Object afterKeySortValue(SortField sortField, CompositeValuesSourceConfig source, Comparable<?> value) {
+        final boolean asc = source.reverseMul() > 0;
+        if (asc == false &&
+                (source.valuesSource() instanceof RoundingValuesSource || source.valuesSource() instanceof HistogramValuesSource)) {
+            // the values of the after bucket are greater than its key so they sort before it in descending order
+            return null;
+        }
+        if (sortField instanceof SortedSetSortField) {
+            return value instanceof BytesRef ? value : new BytesRef(value.toString());
+        }
+        if (sortField instanceof SortedNumericSortField && value instanceof Number) {
+            final Number number = (Number) value;
+            switch (((SortedNumericSortField) sortField).getNumericType()) {
+                case LONG:
+                    return roundToLong(number, asc);
+                case INT:
+                    return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, roundToLong(number, asc)));
+                case DOUBLE:
+                    return number.doubleValue();
+                case FLOAT:
+                    final float floatValue = number.floatValue();
+                    if (asc && floatValue > number.doubleValue()) {
+                        return Math.nextDown(floatValue);
+                    } else if (asc == false && floatValue < number.doubleValue()) {
+                        return Math.nextUp(floatValue);
+                    }
+                    return floatValue;
+                default:
+                    return null;
+            }
+        }
+        return null;
+    }
+
+    private static long roundToLong(Number number, boolean asc) {
+        if (number instanceof Double || number instanceof Float) {
+            return (long) (asc ? Math.floor(number.doubleValue()) : Math.ceil(number.doubleValue()));
+        }
+        return number.longValue();
+    }
+
+    /**
+     * Collects the documents of the segment that match the query, starting at <code>firstDoc</code>.
+     */
+    private void collectFrom(LeafReaderContext ctx, LeafBucketCollector collector, int firstDoc) throws IOException {
+        if (firstDoc == DocIdSetIterator.NO_MORE_DOCS) {
+            return;
+        }
+        if (queryWeight == null) {
+            queryWeight = context.searcher().createNormalizedWeight(context.query(), false);
+        }
+        final BulkScorer scorer = queryWeight.bulkScorer(ctx);
+        if (scorer == null) {
+            return;
+        }
+        try {
+            scorer.score(collector, ctx.reader().getLiveDocs(), firstDoc, DocIdSetIterator.NO_MORE_DOCS);
+        } catch (CollectionTerminatedException e) {
+            // the page is full and the remaining documents of the segment are not competitive
+        }
     }
 
     @Override
@@ -166,20 +302,16 @@ final class CompositeAggregator extends BucketsAggregator {
                     return;
                 }
                 if (array.hasTop() && array.compareTop(0) <= 0) {
-                    // This key is greater than the top value collected in the previous round.
-                    if (canEarlyTerminate) {
-                        // The index sort matches the composite sort, we can early terminate this segment.
-                        throw new CollectionTerminatedException();
-                    }
-                    // just skip this key for now
+                    // This key was returned in a previous page, just skip it.
                     return;
                 }
                 if (keys.size() >= size) {
                     // The tree map is full, check if the candidate key should be kept.
                     if (array.compare(0, keys.lastKey()) > 0) {
                         // The candidate key is not competitive
-                        if (canEarlyTerminate) {
-                            // The index sort matches the composite sort, we can early terminate this segment.
+                        if (sortPrefixLength > 0 && array.compare(0, keys.lastKey(), sortPrefixLength) > 0) {
+                            // The index sort matches the leading sources and the remaining documents of this segment
+                            // are sorted after the last key of the page on these sources, we can early terminate this segment.
                             throw new CollectionTerminatedException();
                         }
                         // just skip this key
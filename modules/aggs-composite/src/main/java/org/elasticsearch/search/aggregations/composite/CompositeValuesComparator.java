@@ -80,8 +80,15 @@ final class CompositeValuesComparator {
      * Compares the values in <code>slot1</code> with <code>slot2</code>.
      */
     int compare(int slot1, int slot2) {
-        assert slot1 < size && slot2 < size;
-        for (int i = 0; i < arrays.length; i++) {
+        return compare(slot1, slot2, arrays.length);
+    }
+
+    /**
+     * Compares the values in <code>slot1</code> with <code>slot2</code> on the first <code>numSources</code> sources only.
+     */
+    int compare(int slot1, int slot2, int numSources) {
+        assert slot1 < size && slot2 < size && numSources <= arrays.length;
+        for (int i = 0; i < numSources; i++) {
             int cmp = arrays[i].compare(slot1, slot2);
             if (cmp != 0) {
                 return cmp;
@@ -229,9 +229,7 @@ public class DateHistogramValuesSourceBuilder extends CompositeValuesSourceBuild
             RoundingValuesSource vs = new RoundingValuesSource(numeric, rounding);
             boolean canEarlyTerminate = false;
             final FieldContext fieldContext = config.fieldContext();
-            if (sortField != null &&
-                    pos == numPos-1 &&
-                    fieldContext != null)  {
+            if (sortField != null && fieldContext != null)  {
                 canEarlyTerminate = checkCanEarlyTerminate(context.searcher().getIndexReader(),
                     fieldContext.field(), order() == SortOrder.ASC ? false : true, sortField);
             }
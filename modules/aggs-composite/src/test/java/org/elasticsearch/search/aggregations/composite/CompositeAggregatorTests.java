@@ -60,9 +60,13 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -148,6 +152,81 @@ public class CompositeAggregatorTests extends AggregatorTestCase {
         );
     }
 
+    public void testWithIndexSortShorterThanSources() throws Exception {
+        final List<Map<String, List<Object>>> dataset = new ArrayList<>();
+        dataset.addAll(
+            Arrays.asList(
+                createDocument("keyword", "a", "long", 100L),
+                createDocument("keyword", "c", "long", 100L),
+                createDocument("keyword", "a", "long", 0L),
+                createDocument("keyword", "c", "long", 100L)
+            )
+        );
+        final Sort sort = new Sort(new SortedSetSortField("keyword", false));
+        testSearchCase(new MatchAllDocsQuery(), sort, dataset,
+            () -> new CompositeAggregationBuilder("name",
+                    Arrays.asList(
+                        new TermsValuesSourceBuilder("keyword").field("keyword"),
+                        new TermsValuesSourceBuilder("long").field("long")
+                    )
+            ),
+            (result) -> {
+                assertEquals(3, result.getBuckets().size());
+                assertEquals("{keyword=a, long=0}", result.getBuckets().get(0).getKeyAsString());
+                assertEquals(1L, result.getBuckets().get(0).getDocCount());
+                assertEquals("{keyword=a, long=100}", result.getBuckets().get(1).getKeyAsString());
+                assertEquals(1L, result.getBuckets().get(1).getDocCount());
+                assertEquals("{keyword=c, long=100}", result.getBuckets().get(2).getKeyAsString());
+                assertEquals(2L, result.getBuckets().get(2).getDocCount());
+            }
+        );
+    }
+
+    public void testPaginateWithIndexSort() throws Exception {
+        final boolean reverse = randomBoolean();
+        // keys are formatted with fixed widths so that their string order matches the order of the buckets
+        final Map<String, Long> expected = new TreeMap<>(
+            Comparator.comparing((String key) -> key.substring(0, "{keyword=k00".length()),
+                reverse ? Comparator.<String>reverseOrder() : Comparator.<String>naturalOrder())
+                .thenComparing(key -> key.substring("{keyword=k00".length())));
+        final List<Map<String, List<Object>>> dataset = new ArrayList<>();
+        final int numDocs = randomIntBetween(50, 200);
+        for (int i = 0; i < numDocs; i++) {
+            final String keyword = String.format(Locale.ROOT, "k%02d", randomIntBetween(0, 20));
+            final long value = randomIntBetween(0, 9);
+            dataset.add(createDocument("keyword", keyword, "long", value));
+            expected.merge("{keyword=" + keyword + ", long=" + value + "}", 1L, Long::sum);
+        }
+        final Sort sort = new Sort(new SortedSetSortField("keyword", reverse));
+        final int size = randomIntBetween(1, 10);
+        final Map<String, Long> actual = new LinkedHashMap<>();
+        Map<String, Object> afterKey = null;
+        do {
+            final Map<String, Object> after = afterKey;
+            final List<InternalComposite> results = new ArrayList<>();
+            // the leading source matches the index sort, so the collection of each page starts at the after key
+            executeTestCase(false, sort, new MatchAllDocsQuery(), dataset,
+                () -> {
+                    CompositeAggregationBuilder builder = new CompositeAggregationBuilder("name",
+                        Arrays.asList(
+                            new TermsValuesSourceBuilder("keyword").field("keyword").order(reverse ? SortOrder.DESC : SortOrder.ASC),
+                            new TermsValuesSourceBuilder("long").field("long")
+                        )
+                    ).size(size);
+                    return after == null ? builder : builder.aggregateAfter(after);
+                }, results::add
+            );
+            final InternalComposite result = results.get(0);
+            for (InternalComposite.InternalBucket bucket : result.getBuckets()) {
+                assertNull(actual.put(bucket.getKeyAsString(), bucket.getDocCount()));
+            }
+            final List<InternalComposite.InternalBucket> buckets = result.getBuckets();
+            afterKey = buckets.isEmpty() ? null : new HashMap<>(buckets.get(buckets.size() - 1).getKey());
+        } while (afterKey != null);
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+        assertEquals(expected, actual);
+    }
+
    public void testWithKeywordDesc() throws Exception {
         final List<Map<String, List<Object>>> dataset = new ArrayList<>();
         dataset.addAll(
@@ -352,6 +431,89 @@ public class CompositeAggregatorTests extends AggregatorTestCase {
         );
     }
 
+    public void testWithIndexSortPrefix() throws Exception {
+        final List<Map<String, List<Object>>> dataset = new ArrayList<>();
+        dataset.addAll(
+            Arrays.asList(
+                createDocument("keyword", "a", "long", 100L),
+                createDocument("keyword", "c", "long", 100L),
+                createDocument("keyword", "a", "long", 0L),
+                createDocument("keyword", "d", "long", 10L),
+                createDocument("keyword", "c"),
+                createDocument("keyword", "c", "long", 100L),
+                createDocument("long", 100L)
+            )
+        );
+        // the index sort only matches the first source
+        final Sort sort = new Sort(new SortedSetSortField("keyword", false));
+        testSearchCase(new MatchAllDocsQuery(), sort, dataset,
+            () -> new CompositeAggregationBuilder("name",
+                    Arrays.asList(
+                        new TermsValuesSourceBuilder("keyword").field("keyword"),
+                        new TermsValuesSourceBuilder("long").field("long")
+                    )
+            ).size(2),
+            (result) -> {
+                assertEquals(2, result.getBuckets().size());
+                assertEquals("{keyword=a, long=0}", result.getBuckets().get(0).getKeyAsString());
+                assertEquals(1L, result.getBuckets().get(0).getDocCount());
+                assertEquals("{keyword=a, long=100}", result.getBuckets().get(1).getKeyAsString());
+                assertEquals(1L, result.getBuckets().get(1).getDocCount());
+            }
+        );
+
+        testSearchCase(new MatchAllDocsQuery(), sort, dataset,
+            () -> new CompositeAggregationBuilder("name",
+                    Arrays.asList(
+                        new TermsValuesSourceBuilder("keyword").field("keyword"),
+                        new TermsValuesSourceBuilder("long").field("long")
+                    )
+                ).aggregateAfter(createAfterKey("keyword", "a", "long", 100L)).size(1),
+            (result) -> {
+                assertEquals(1, result.getBuckets().size());
+                assertEquals("{keyword=c, long=100}", result.getBuckets().get(0).getKeyAsString());
+                assertEquals(2L, result.getBuckets().get(0).getDocCount());
+            }
+        );
+
+        try (Directory directory = newDirectory()) {
+            IndexWriterConfig config = LuceneTestCase.newIndexWriterConfig(random(), new MockAnalyzer(random()));
+            config.setIndexSort(new Sort(new SortedNumericSortField("date", SortField.Type.LONG),
+                new SortedSetSortField("keyword", false)));
+            config.setCodec(TestUtil.getDefaultCodec());
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory, config)) {
+                Document document = new Document();
+                addToDocument(document, createDocument("date", asLong("2017-10-20T03:08:45"), "keyword", "a"));
+                indexWriter.addDocument(document);
+            }
+            try (IndexReader indexReader = DirectoryReader.open(directory)) {
+                IndexSearcher indexSearcher = newSearcher(indexReader, false, false);
+                IndexSettings indexSettings = createIndexSettings(new Sort(new SortedNumericSortField("date", SortField.Type.LONG),
+                    new SortedSetSortField("keyword", false)));
+                CompositeAggregationBuilder builder = new CompositeAggregationBuilder("name",
+                    Arrays.asList(
+                        new DateHistogramValuesSourceBuilder("date").field("date")
+                            .dateHistogramInterval(DateHistogramInterval.days(1)),
+                        new TermsValuesSourceBuilder("keyword").field("keyword")
+                    )
+                );
+                CompositeAggregator aggregator = createAggregator(builder, indexSearcher, indexSettings, FIELD_TYPES);
+                // documents are sorted on the rounded dates but not on the keywords within a day
+                assertEquals(1, aggregator.sortPrefixLength());
+
+                builder = new CompositeAggregationBuilder("name",
+                    Arrays.asList(
+                        new TermsValuesSourceBuilder("date").field("date"),
+                        new TermsValuesSourceBuilder("keyword").field("keyword"),
+                        new TermsValuesSourceBuilder("long").field("long")
+                    )
+                );
+                aggregator = createAggregator(builder, indexSearcher, indexSettings, FIELD_TYPES);
+                assertEquals(2, aggregator.sortPrefixLength());
+            }
+        }
+    }
+
     public void testWithKeywordAndLongDesc() throws Exception {
         final List<Map<String, List<Object>>> dataset = new ArrayList<>();
         dataset.addAll(
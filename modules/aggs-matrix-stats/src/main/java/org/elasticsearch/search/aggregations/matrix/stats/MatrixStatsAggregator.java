@@ -54,7 +54,7 @@ final class MatrixStatsAggregator extends MetricsAggregator {
         super(name, context, parent, pipelineAggregators, metaData);
         if (valuesSources != null && !valuesSources.isEmpty()) {
             this.valuesSources = new NumericMultiValuesSource(valuesSources, multiValueMode);
-            stats = context.bigArrays().newObjectArray(1);
+            stats = bigArrays().newObjectArray(1);
         } else {
             this.valuesSources = null;
         }
@@ -71,7 +71,7 @@ final class MatrixStatsAggregator extends MetricsAggregator {
         if (valuesSources == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
-        final BigArrays bigArrays = context.bigArrays();
+        final BigArrays bigArrays = bigArrays();
         final NumericDoubleValues[] values = new NumericDoubleValues[valuesSources.fieldNames().length];
         for (int i = 0; i < values.length; ++i) {
             values[i] = valuesSources.getField(i, ctx);
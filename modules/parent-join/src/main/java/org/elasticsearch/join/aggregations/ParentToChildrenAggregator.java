@@ -80,9 +80,9 @@ public class ParentToChildrenAggregator extends BucketsAggregator implements Sin
         // these two filters are cached in the parser
         this.childFilter = context.searcher().createNormalizedWeight(childFilter, false);
         this.parentFilter = context.searcher().createNormalizedWeight(parentFilter, false);
-        this.parentOrdToBuckets = context.bigArrays().newLongArray(maxOrd, false);
+        this.parentOrdToBuckets = bigArrays().newLongArray(maxOrd, false);
         this.parentOrdToBuckets.fill(0, maxOrd, -1);
-        this.parentOrdToOtherBuckets = new LongObjectPagedHashMap<>(context.bigArrays());
+        this.parentOrdToOtherBuckets = new LongObjectPagedHashMap<>(bigArrays());
         this.valuesSource = valuesSource;
     }
 
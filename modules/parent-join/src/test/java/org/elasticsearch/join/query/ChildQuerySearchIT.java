@@ -37,6 +37,7 @@ import org.elasticsearch.index.query.MatchQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.functionscore.FunctionScoreQueryBuilder;
+import org.elasticsearch.indices.IndicesRequestCache;
 import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
@@ -84,6 +85,7 @@ import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.hasId;
 import static org.hamcrest.Matchers.anyOf;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 
 public class ChildQuerySearchIT extends ParentChildTestCase {
@@ -94,6 +96,50 @@ public class ChildQuerySearchIT extends ParentChildTestCase {
         assertThat(e.getMessage(), equalTo("The [_parent.type] option can't point to the same type"));
     }
 
+    public void testHasChildIsNotCachedPerSegment() throws Exception {
+        // only the partial aggregation results of segments can be cached
+        Settings settings = Settings.builder().put(indexSettings())
+            .put(IndicesRequestCache.INDEX_CACHE_REQUEST_ENABLED_SETTING.getKey(), false)
+            .put(IndicesRequestCache.INDEX_CACHE_REQUEST_SEGMENT_AGGS_ENABLED_SETTING.getKey(), true)
+            .build();
+        if (legacy()) {
+            assertAcked(prepareCreate("test").setSettings(settings)
+                .addMapping("parent")
+                .addMapping("child", "_parent", "type=parent"));
+        } else {
+            assertAcked(prepareCreate("test").setSettings(settings)
+                .addMapping("doc", buildParentJoinFieldMappingFromSimplifiedDef("join_field", true, "parent", "child")));
+        }
+        ensureGreen();
+
+        createIndexRequest("test", "parent", "p1", null, "p_field", "p_value1").get();
+        createIndexRequest("test", "child", "c1", "p1", "c_field", "red").get();
+        refresh();
+
+        SearchResponse searchResponse = client().prepareSearch("test").setSize(0)
+            .setQuery(termQuery("p_field", "p_value1"))
+            .addAggregation(AggregationBuilders.terms("terms").field("p_field.keyword")).get();
+        assertNoFailures(searchResponse);
+        assertHitCount(searchResponse, 1L);
+        assertThat(requestCacheMemorySize("test"), greaterThan(0L));
+
+        client().admin().indices().prepareClearCache("test").setRequestCache(true).get();
+        assertThat(requestCacheMemorySize("test"), equalTo(0L));
+
+        // the parents that a segment matches depend on the children in the other segments
+        searchResponse = client().prepareSearch("test").setSize(0)
+            .setQuery(hasChildQuery("child", termQuery("c_field", "red"), ScoreMode.None))
+            .addAggregation(AggregationBuilders.terms("terms").field("p_field.keyword")).get();
+        assertNoFailures(searchResponse);
+        assertHitCount(searchResponse, 1L);
+        assertThat(requestCacheMemorySize("test"), equalTo(0L));
+    }
+
+    private long requestCacheMemorySize(String index) {
+        return client().admin().indices().prepareStats(index).setRequestCache(true).get().getTotal().getRequestCache()
+            .getMemorySizeInBytes();
+    }
+
     public void testMultiLevelChild() throws Exception {
         if (legacy()) {
             assertAcked(prepareCreate("test")
@@ -0,0 +1,166 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty4;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.transport.netty4.Netty4Utils;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+
+/**
+ * The body of a request that is streamed to its handler, see {@link Netty4HttpBodyStreamHandler}. Chunks are passed to the listener
+ * on the event loop of the channel and never from within {@link #setListener} or {@link #resume()}. Reading is paused by turning off
+ * auto read on the channel, chunks that were already read when the stream was paused are buffered until it is resumed.
+ */
+final class Netty4HttpBodyStream implements RestRequest.BodyStream {
+
+    private final Channel channel;
+    private volatile boolean paused = true;
+    private volatile boolean complete;
+    private volatile boolean skipping;
+
+    // only accessed on the event loop of the channel
+    private final ArrayDeque<ByteBuf> buffered = new ArrayDeque<>();
+    private boolean lastBuffered;
+    private Listener listener;
+    private Exception failure;
+
+    Netty4HttpBodyStream(Channel channel) {
+        this.channel = channel;
+        // nothing is read until there is a listener
+        channel.config().setAutoRead(false);
+    }
+
+    @Override
+    public void setListener(Listener listener) {
+        Objects.requireNonNull(listener);
+        channel.eventLoop().execute(() -> {
+            assert this.listener == null : "the listener is already set";
+            this.listener = listener;
+            if (failure != null) {
+                listener.onFailure(failure);
+            } else {
+                resume();
+            }
+        });
+    }
+
+    @Override
+    public void pause() {
+        if (complete == false) {
+            paused = true;
+            channel.config().setAutoRead(false);
+        }
+    }
+
+    @Override
+    public void resume() {
+        paused = false;
+        channel.eventLoop().execute(this::passBuffered);
+    }
+
+    /**
+     * Skips the rest of the body, which is read but not passed to the listener. Called once the response of the request is sent.
+     */
+    void skipRemaining() {
+        if (complete == false && skipping == false) {
+            skipping = true;
+            channel.eventLoop().execute(() -> {
+                releaseBuffered();
+                paused = false;
+                channel.config().setAutoRead(true);
+            });
+        }
+    }
+
+    /**
+     * Called on the event loop with the next chunk of the body, the chunk is released by the caller.
+     */
+    void onContent(ByteBuf content, boolean isLast) {
+        assert channel.eventLoop().inEventLoop();
+        if (skipping) {
+            complete = isLast;
+        } else if (paused || listener == null || buffered.isEmpty() == false) {
+            buffered.add(content.retain());
+            lastBuffered = isLast;
+            passBuffered();
+        } else {
+            pass(content, isLast);
+        }
+    }
+
+    /**
+     * Called on the event loop if the connection is closed before the body is read to the end.
+     */
+    void onFailure(Exception e) {
+        assert channel.eventLoop().inEventLoop();
+        releaseBuffered();
+        if (complete == false && skipping == false) {
+            complete = true;
+            if (listener != null) {
+                listener.onFailure(e);
+            } else {
+                failure = e;
+            }
+        }
+    }
+
+    private void passBuffered() {
+        assert channel.eventLoop().inEventLoop();
+        if (listener == null || skipping) {
+            return;
+        }
+        while (paused == false && buffered.isEmpty() == false) {
+            final ByteBuf content = buffered.poll();
+            try {
+                pass(content, lastBuffered && buffered.isEmpty());
+            } finally {
+                content.release();
+            }
+        }
+        if (paused == false && complete == false) {
+            channel.config().setAutoRead(true);
+            // the stream might have been paused from another thread in the meantime
+            if (paused) {
+                channel.config().setAutoRead(false);
+            }
+        }
+    }
+
+    private void pass(ByteBuf content, boolean isLast) {
+        if (isLast) {
+            // the stream can't be paused anymore, the next request on the channel is read right away
+            complete = true;
+            paused = false;
+            channel.config().setAutoRead(true);
+        }
+        listener.onChunk(Netty4Utils.toBytesReference(content), isLast);
+    }
+
+    private void releaseBuffered() {
+        for (ByteBuf content : buffered) {
+            content.release();
+        }
+        buffered.clear();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty4;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * Sits in front of the aggregator and passes the body of requests whose handler can stream it to a {@link Netty4HttpBodyStream}
+ * instead of aggregating it, see {@link org.elasticsearch.http.HttpServerTransport.Dispatcher#canStreamBody}. Such requests are
+ * passed on as soon as their headers are read, as a {@link StreamedHttpRequest} with empty content that the aggregator lets through.
+ */
+final class Netty4HttpBodyStreamHandler extends ChannelInboundHandlerAdapter {
+
+    private final Netty4HttpServerTransport transport;
+    // the body stream of the request that is being read, null if the body of the request is aggregated
+    private Netty4HttpBodyStream stream;
+
+    Netty4HttpBodyStreamHandler(Netty4HttpServerTransport transport) {
+        this.transport = transport;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (stream != null && msg instanceof HttpContent) {
+            final HttpContent content = (HttpContent) msg;
+            final boolean isLast = msg instanceof LastHttpContent;
+            final Netty4HttpBodyStream current = stream;
+            if (isLast) {
+                stream = null;
+            }
+            try {
+                current.onContent(content.content(), isLast);
+            } finally {
+                content.release();
+            }
+        } else if (msg instanceof HttpRequest && msg instanceof FullHttpRequest == false && canStreamBody(ctx, (HttpRequest) msg)) {
+            final HttpRequest request = (HttpRequest) msg;
+            if (HttpUtil.is100ContinueExpected(request)) {
+                // the aggregator answers the expectation of the requests it aggregates
+                ctx.writeAndFlush(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.CONTINUE, Unpooled.EMPTY_BUFFER));
+                request.headers().remove(HttpHeaderNames.EXPECT);
+            }
+            stream = new Netty4HttpBodyStream(ctx.channel());
+            ctx.fireChannelRead(new StreamedHttpRequest(request, stream));
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (stream != null) {
+            stream.onFailure(new ClosedChannelException());
+            stream = null;
+        }
+        super.channelInactive(ctx);
+    }
+
+    private boolean canStreamBody(ChannelHandlerContext ctx, HttpRequest request) {
+        if (request.decoderResult().isSuccess() == false) {
+            return false;
+        }
+        final FullHttpRequest withoutBody = new DefaultFullHttpRequest(request.protocolVersion(), request.method(), request.uri(),
+            Unpooled.EMPTY_BUFFER, request.headers(), EmptyHttpHeaders.INSTANCE);
+        try {
+            return transport.canStreamBody(new Netty4HttpRequest(transport.xContentRegistry, withoutBody, ctx.channel()));
+        } catch (RuntimeException e) {
+            // the request is aggregated and dispatched as usual, which reports the problem with its headers
+            return false;
+        }
+    }
+
+    /**
+     * A request whose body is read by the handler of the request through the body stream.
+     */
+    static final class StreamedHttpRequest extends DefaultFullHttpRequest {
+
+        private final Netty4HttpBodyStream bodyStream;
+
+        StreamedHttpRequest(HttpRequest request, Netty4HttpBodyStream bodyStream) {
+            super(request.protocolVersion(), request.method(), request.uri(), Unpooled.EMPTY_BUFFER, request.headers(),
+                EmptyHttpHeaders.INSTANCE);
+            this.bodyStream = bodyStream;
+        }
+
+        Netty4HttpBodyStream bodyStream() {
+            return bodyStream;
+        }
+    }
+}
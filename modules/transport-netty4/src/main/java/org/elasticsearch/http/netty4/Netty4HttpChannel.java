@@ -59,6 +59,7 @@ final class Netty4HttpChannel extends AbstractRestChannel {
     private final Channel channel;
     private final FullHttpRequest nettyRequest;
     private final HttpPipelinedRequest pipelinedRequest;
+    private final Netty4HttpBodyStream bodyStream;
     private final ThreadContext threadContext;
 
     /**
@@ -80,6 +81,7 @@ final class Netty4HttpChannel extends AbstractRestChannel {
         this.channel = request.getChannel();
         this.nettyRequest = request.request();
         this.pipelinedRequest = pipelinedRequest;
+        this.bodyStream = request.nettyBodyStream();
         this.threadContext = threadContext;
     }
 
@@ -156,6 +158,10 @@ final class Netty4HttpChannel extends AbstractRestChannel {
             if (pipelinedRequest != null) {
                 pipelinedRequest.release();
             }
+            if (bodyStream != null) {
+                // the handler won't read the rest of the body, it still needs to be read before the next request
+                bodyStream.skipRemaining();
+            }
         }
     }
 
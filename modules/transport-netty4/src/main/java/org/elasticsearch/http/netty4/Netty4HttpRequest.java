@@ -24,6 +24,7 @@ import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpMethod;
 
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
@@ -44,11 +45,18 @@ public class Netty4HttpRequest extends RestRequest {
     private final FullHttpRequest request;
     private final Channel channel;
     private final BytesReference content;
+    private final Netty4HttpBodyStream bodyStream;
 
     Netty4HttpRequest(NamedXContentRegistry xContentRegistry, FullHttpRequest request, Channel channel) {
+        this(xContentRegistry, request, channel, null);
+    }
+
+    Netty4HttpRequest(NamedXContentRegistry xContentRegistry, FullHttpRequest request, Channel channel,
+                      @Nullable Netty4HttpBodyStream bodyStream) {
         super(xContentRegistry, request.uri(), new HttpHeadersMap(request.headers()));
         this.request = request;
         this.channel = channel;
+        this.bodyStream = bodyStream;
         if (request.content().isReadable()) {
             this.content = Netty4Utils.toBytesReference(request.content());
         } else {
@@ -101,6 +109,16 @@ public class Netty4HttpRequest extends RestRequest {
         return content;
     }
 
+    @Override
+    public BodyStream bodyStream() {
+        return bodyStream;
+    }
+
+    @Nullable
+    Netty4HttpBodyStream nettyBodyStream() {
+        return bodyStream;
+    }
+
     /**
      * Returns the remote address where this rest request channel is "connected to".  The
      * returned {@link SocketAddress} is supposed to be down-cast into more
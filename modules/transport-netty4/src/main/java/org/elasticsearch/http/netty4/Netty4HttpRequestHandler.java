@@ -64,9 +64,12 @@ class Netty4HttpRequestHandler extends SimpleChannelInboundHandler<Object> {
                         Unpooled.copiedBuffer(request.content()),
                         request.headers(),
                         request.trailingHeaders());
+        // the body of a streamed request is read while the request is handled
+        final Netty4HttpBodyStream bodyStream = request instanceof Netty4HttpBodyStreamHandler.StreamedHttpRequest
+            ? ((Netty4HttpBodyStreamHandler.StreamedHttpRequest) request).bodyStream() : null;
         final Netty4HttpRequest httpRequest;
         try {
-            httpRequest = new Netty4HttpRequest(serverTransport.xContentRegistry, copy, ctx.channel());
+            httpRequest = new Netty4HttpRequest(serverTransport.xContentRegistry, copy, ctx.channel(), bodyStream);
         } catch (Exception ex) {
             if (pipelinedRequest != null) {
                 pipelinedRequest.release();
@@ -470,6 +470,10 @@ public class Netty4HttpServerTransport extends AbstractLifecycleComponent implem
         }
     }
 
+    boolean canStreamBody(final RestRequest request) {
+        return dispatcher.canStreamBody(request);
+    }
+
     void dispatchBadRequest(final RestRequest request, final RestChannel channel, final Throwable cause) {
         final ThreadContext threadContext = threadPool.getThreadContext();
         try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
@@ -532,6 +536,7 @@ public class Netty4HttpServerTransport extends AbstractLifecycleComponent implem
             ch.pipeline().addLast("decoder", decoder);
             ch.pipeline().addLast("decoder_compress", new HttpContentDecompressor());
             ch.pipeline().addLast("encoder", new HttpResponseEncoder());
+            ch.pipeline().addLast("body_stream", new Netty4HttpBodyStreamHandler(transport));
             final HttpObjectAggregator aggregator = new HttpObjectAggregator(Math.toIntExact(transport.maxContentLength.getBytes()));
             if (transport.maxCompositeBufferComponents != -1) {
                 aggregator.setMaxCumulationBufferComponents(transport.maxCompositeBufferComponents);
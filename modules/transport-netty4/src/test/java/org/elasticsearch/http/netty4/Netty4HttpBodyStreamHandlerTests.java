@@ -0,0 +1,265 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.http.netty4;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.network.NetworkService;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.MockBigArrays;
+import org.elasticsearch.http.NullDispatcher;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class Netty4HttpBodyStreamHandlerTests extends ESTestCase {
+
+    private ThreadPool threadPool;
+    private Netty4HttpServerTransport transport;
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setup() throws Exception {
+        threadPool = new TestThreadPool("test");
+        transport = new Netty4HttpServerTransport(Settings.EMPTY, new NetworkService(Collections.emptyList()),
+            new MockBigArrays(Settings.EMPTY, new NoneCircuitBreakerService()), threadPool, xContentRegistry(), new NullDispatcher() {
+                @Override
+                public boolean canStreamBody(RestRequest request) {
+                    return request.rawPath().endsWith("/_stream");
+                }
+            });
+        channel = new EmbeddedChannel(new Netty4HttpBodyStreamHandler(transport));
+    }
+
+    @After
+    public void shutdown() throws Exception {
+        channel.finishAndReleaseAll();
+        transport.close();
+        if (threadPool != null) {
+            threadPool.shutdownNow();
+        }
+    }
+
+    private Netty4HttpBodyStream startStreamedRequest(HttpRequest request) {
+        channel.writeInbound(request);
+        final Object msg = channel.readInbound();
+        assertThat(msg, instanceOf(Netty4HttpBodyStreamHandler.StreamedHttpRequest.class));
+        final Netty4HttpBodyStreamHandler.StreamedHttpRequest streamed = (Netty4HttpBodyStreamHandler.StreamedHttpRequest) msg;
+        assertThat(streamed.uri(), equalTo(request.uri()));
+        assertThat(streamed.content().readableBytes(), equalTo(0));
+        // nothing is read until the handler of the request sets a listener
+        assertFalse(channel.config().isAutoRead());
+        return streamed.bodyStream();
+    }
+
+    private static HttpRequest streamedRequest() {
+        return new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/index/_stream");
+    }
+
+    private static HttpContent chunk(String content, boolean isLast) {
+        final ByteBuf buffer = Unpooled.copiedBuffer(content, StandardCharsets.UTF_8);
+        return isLast ? new DefaultLastHttpContent(buffer) : new DefaultHttpContent(buffer);
+    }
+
+    public void testPassesOtherRequestsOn() {
+        final HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/index/_aggregate");
+        final HttpContent content = chunk("body", true);
+        channel.writeInbound(request, content);
+        assertThat(channel.readInbound(), sameInstance(request));
+        assertThat(channel.readInbound(), sameInstance(content));
+        assertTrue(channel.config().isAutoRead());
+        content.release();
+    }
+
+    public void testStreamsBody() {
+        final Netty4HttpBodyStream bodyStream = startStreamedRequest(streamedRequest());
+        final RecordingListener listener = new RecordingListener();
+        bodyStream.setListener(listener);
+        channel.runPendingTasks();
+        assertTrue(channel.config().isAutoRead());
+
+        final List<HttpContent> chunks = new ArrayList<>();
+        final StringBuilder body = new StringBuilder();
+        final int numChunks = randomIntBetween(1, 10);
+        for (int i = 0; i < numChunks; i++) {
+            final String content = randomAlphaOfLengthBetween(0, 100);
+            body.append(content);
+            final HttpContent chunk = chunk(content, i == numChunks - 1);
+            chunks.add(chunk);
+            channel.writeInbound(chunk);
+            assertThat(listener.chunks, equalTo(i + 1));
+        }
+        assertTrue(listener.last);
+        assertThat(listener.body(), equalTo(body.toString()));
+        // the chunks are neither aggregated nor kept
+        assertThat(channel.readInbound(), nullValue());
+        for (HttpContent chunk : chunks) {
+            assertThat(chunk.refCnt(), equalTo(0));
+        }
+        assertTrue(channel.config().isAutoRead());
+
+        // the next request is handled as usual
+        final HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+        channel.writeInbound(request);
+        assertThat(channel.readInbound(), sameInstance(request));
+    }
+
+    public void testBuffersChunksUntilListenerIsSet() {
+        final Netty4HttpBodyStream bodyStream = startStreamedRequest(streamedRequest());
+        channel.writeInbound(chunk("first", false), chunk("last", true));
+        final RecordingListener listener = new RecordingListener();
+        bodyStream.setListener(listener);
+        assertThat(listener.chunks, equalTo(0));
+        channel.runPendingTasks();
+        assertThat(listener.chunks, equalTo(2));
+        assertTrue(listener.last);
+        assertThat(listener.body(), equalTo("firstlast"));
+        assertTrue(channel.config().isAutoRead());
+    }
+
+    public void testPausesReading() {
+        final Netty4HttpBodyStream bodyStream = startStreamedRequest(streamedRequest());
+        final RecordingListener listener = new RecordingListener();
+        bodyStream.setListener(listener);
+        channel.runPendingTasks();
+
+        channel.writeInbound(chunk("first", false));
+        bodyStream.pause();
+        assertFalse(channel.config().isAutoRead());
+        // chunks that were read already are buffered
+        channel.writeInbound(chunk("second", false), chunk("last", true));
+        assertThat(listener.chunks, equalTo(1));
+
+        bodyStream.resume();
+        assertThat(listener.chunks, equalTo(1));
+        channel.runPendingTasks();
+        assertThat(listener.chunks, equalTo(3));
+        assertTrue(listener.last);
+        assertThat(listener.body(), equalTo("firstsecondlast"));
+        assertTrue(channel.config().isAutoRead());
+    }
+
+    public void testSkipsRemainingBody() {
+        final Netty4HttpBodyStream bodyStream = startStreamedRequest(streamedRequest());
+        final RecordingListener listener = new RecordingListener();
+        bodyStream.setListener(listener);
+        channel.runPendingTasks();
+        channel.writeInbound(chunk("first", false));
+        bodyStream.pause();
+
+        // the response was sent before the body was read to the end
+        bodyStream.skipRemaining();
+        channel.runPendingTasks();
+        assertTrue(channel.config().isAutoRead());
+        final HttpContent last = chunk("last", true);
+        channel.writeInbound(chunk("second", false), last);
+        assertThat(last.refCnt(), equalTo(0));
+        assertThat(listener.chunks, equalTo(1));
+        assertFalse(listener.last);
+        assertThat(channel.readInbound(), nullValue());
+    }
+
+    public void testFailsListenerIfChannelIsClosed() {
+        final Netty4HttpBodyStream bodyStream = startStreamedRequest(streamedRequest());
+        final RecordingListener listener = new RecordingListener();
+        if (randomBoolean()) {
+            bodyStream.setListener(listener);
+            channel.runPendingTasks();
+            channel.writeInbound(chunk("first", false));
+            channel.close();
+        } else {
+            channel.close();
+            bodyStream.setListener(listener);
+            channel.runPendingTasks();
+        }
+        assertThat(listener.failure, instanceOf(ClosedChannelException.class));
+        assertFalse(listener.last);
+    }
+
+    public void testAnswersExpectContinue() {
+        final HttpRequest request = streamedRequest();
+        request.headers().set(HttpHeaderNames.EXPECT, HttpHeaderValues.CONTINUE);
+        startStreamedRequest(request);
+        final FullHttpResponse response = channel.readOutbound();
+        assertThat(response.status(), equalTo(HttpResponseStatus.CONTINUE));
+        assertFalse(request.headers().contains(HttpHeaderNames.EXPECT));
+        response.release();
+    }
+
+    private static class RecordingListener implements RestRequest.BodyStream.Listener {
+        private final BytesStreamOutput body = new BytesStreamOutput();
+        private int chunks;
+        private boolean last;
+        private Exception failure;
+
+        @Override
+        public void onChunk(org.elasticsearch.common.bytes.BytesReference chunk, boolean isLast) {
+            assertFalse(last);
+            assertThat(failure, nullValue());
+            try {
+                chunk.writeTo(body);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            chunks++;
+            last = isLast;
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            assertThat(failure, nullValue());
+            failure = e;
+        }
+
+        String body() {
+            return body.bytes().utf8ToString();
+        }
+    }
+}
@@ -37,6 +37,7 @@ import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
 
 public class MockBigArrays extends BigArrays {
 
@@ -71,11 +72,16 @@ public class MockBigArrays extends BigArrays {
     private final CircuitBreakerService breakerService;
 
     public MockBigArrays(Settings settings, CircuitBreakerService breakerService) {
-        this(new MockPageCacheRecycler(settings), breakerService, false);
+        this(new MockPageCacheRecycler(settings), breakerService, false, OFF_HEAP_SETTING.get(settings));
     }
 
-    private MockBigArrays(PageCacheRecycler recycler, CircuitBreakerService breakerService, boolean checkBreaker) {
-        super(recycler, breakerService, checkBreaker);
+    private MockBigArrays(PageCacheRecycler recycler, CircuitBreakerService breakerService, boolean checkBreaker, boolean offHeap) {
+        this(recycler, breakerService, checkBreaker, offHeap, null);
+    }
+
+    private MockBigArrays(PageCacheRecycler recycler, CircuitBreakerService breakerService, boolean checkBreaker, boolean offHeap,
+                          LongConsumer memoryListener) {
+        super(recycler, breakerService, checkBreaker, offHeap, memoryListener);
         this.recycler = recycler;
         this.breakerService = breakerService;
         long seed;
@@ -90,7 +96,12 @@ public class MockBigArrays extends BigArrays {
 
     @Override
     public BigArrays withCircuitBreaking() {
-        return new MockBigArrays(this.recycler, this.breakerService, true);
+        return new MockBigArrays(this.recycler, this.breakerService, true, isOffHeap(), memoryListener);
+    }
+
+    @Override
+    public BigArrays withMemoryListener(LongConsumer listener) {
+        return new MockBigArrays(this.recycler, this.breakerService, checkBreaker, isOffHeap(), listener);
     }
 
     @Override
@@ -102,6 +113,15 @@ public class MockBigArrays extends BigArrays {
         return array;
     }
 
+    @Override
+    public ByteArray newOffHeapByteArray(long size, boolean clearOnResize) {
+        final ByteArrayWrapper array = new ByteArrayWrapper(super.newOffHeapByteArray(size, clearOnResize), clearOnResize);
+        if (!clearOnResize) {
+            array.randomizeContent(0, size);
+        }
+        return array;
+    }
+
     @Override
     public ByteArray resize(ByteArray array, long size) {
         ByteArrayWrapper arr = (ByteArrayWrapper) array;
@@ -62,6 +62,7 @@ import org.elasticsearch.index.seqno.SequenceNumbers;
 import org.elasticsearch.index.similarity.SimilarityService;
 import org.elasticsearch.index.store.DirectoryService;
 import org.elasticsearch.index.store.Store;
+import org.elasticsearch.indices.TranslogSyncCoordinator;
 import org.elasticsearch.indices.recovery.PeerRecoveryTargetService;
 import org.elasticsearch.indices.recovery.RecoveryFailedException;
 import org.elasticsearch.indices.recovery.RecoverySourceHandler;
@@ -130,6 +131,15 @@ public abstract class IndexShardTestCase extends ESTestCase {
         return Settings.EMPTY;
     }
 
+    /**
+     * Returns the coordinator that groups the translog syncs of the shards created by this test, <code>null</code> by default so that
+     * each shard syncs its own translog.
+     */
+    @Nullable
+    protected TranslogSyncCoordinator translogSyncCoordinator() {
+        return null;
+    }
+
     private Store createStore(IndexSettings indexSettings, ShardPath shardPath) throws IOException {
         final ShardId shardId = shardPath.getShardId();
         final DirectoryService directoryService = new DirectoryService(shardId, indexSettings) {
@@ -285,7 +295,8 @@ public abstract class IndexShardTestCase extends ESTestCase {
             };
             indexShard = new IndexShard(routing, indexSettings, shardPath, store, () -> null, indexCache, mapperService, similarityService,
                 engineFactory, indexEventListener, indexSearcherWrapper, threadPool,
-                BigArrays.NON_RECYCLING_INSTANCE, warmer, Collections.emptyList(), Arrays.asList(listeners), globalCheckpointSyncer);
+                BigArrays.NON_RECYCLING_INSTANCE, warmer, Collections.emptyList(), Arrays.asList(listeners), globalCheckpointSyncer,
+                translogSyncCoordinator());
             success = true;
         } finally {
             if (success == false) {
@@ -241,16 +241,51 @@ public abstract class AggregatorTestCase extends ESTestCase {
                                                                              AggregationBuilder builder,
                                                                              IndexSettings indexSettings,
                                                                              MappedFieldType... fieldTypes) throws IOException {
-        C a = createAggregator(builder, searcher, fieldTypes);
+        return search(searcher, query, builder, indexSettings, randomBoolean(), fieldTypes);
+    }
+
+    /**
+     * Same as {@link #search(IndexSearcher, Query, AggregationBuilder, MappedFieldType...)} but documents are collected
+     * in batches, like the aggregation phase does when scores are not needed, only if <code>collectInBatches</code> is true.
+     */
+    protected <A extends InternalAggregation, C extends Aggregator> A search(IndexSearcher searcher,
+                                                                             Query query,
+                                                                             AggregationBuilder builder,
+                                                                             boolean collectInBatches,
+                                                                             MappedFieldType... fieldTypes) throws IOException {
+        return search(searcher, query, builder, createIndexSettings(), collectInBatches, fieldTypes);
+    }
+
+    private <A extends InternalAggregation, C extends Aggregator> A search(IndexSearcher searcher,
+                                                                           Query query,
+                                                                           AggregationBuilder builder,
+                                                                           IndexSettings indexSettings,
+                                                                           boolean collectInBatches,
+                                                                           MappedFieldType... fieldTypes) throws IOException {
+        C a = createAggregator(builder, searcher, indexSettings, fieldTypes);
+        // aggregators may run the query on their own, for instance to start collecting a segment at a given document
+        when(a.context().query()).thenReturn(query);
         a.preCollection();
-        searcher.search(query, a);
-        a.postCollection();
+        BucketCollector collector = collectInBatches(a, collectInBatches);
+        searcher.search(query, collector);
+        collector.postCollection();
         @SuppressWarnings("unchecked")
         A internalAgg = (A) a.buildAggregation(0L);
         return internalAgg;
 
     }
 
+    /**
+     * Wraps the provided aggregator so that documents are collected in batches, like the aggregation phase does
+     * when scores are not needed.
+     */
+    private static BucketCollector collectInBatches(Aggregator aggregator, boolean collectInBatches) {
+        if (aggregator.needsScores() == false && collectInBatches) {
+            return new BatchingBucketCollector(aggregator);
+        }
+        return aggregator;
+    }
+
     /**
      * Divides the provided {@link IndexSearcher} in sub-searcher, one for each segment,
      * builds an aggregator for each sub-searcher filtered by the provided {@link Query} and
@@ -283,9 +318,11 @@ public abstract class AggregatorTestCase extends ESTestCase {
 
         for (ShardSearcher subSearcher : subSearchers) {
             C a = createAggregator(builder, subSearcher, fieldTypes);
+            when(a.context().query()).thenReturn(query);
             a.preCollection();
-            subSearcher.search(weight, a);
-            a.postCollection();
+            BucketCollector collector = collectInBatches(a, randomBoolean());
+            subSearcher.search(weight, collector);
+            collector.postCollection();
             aggs.add(a.buildAggregation(0L));
         }
         if (aggs.isEmpty()) {
@@ -35,17 +35,19 @@ public class FakeRestRequest extends RestRequest {
     private final BytesReference content;
     private final Method method;
     private final SocketAddress remoteAddress;
+    private final BodyStream bodyStream;
 
     public FakeRestRequest() {
-        this(NamedXContentRegistry.EMPTY, new HashMap<>(), new HashMap<>(), null, Method.GET, "/", null);
+        this(NamedXContentRegistry.EMPTY, new HashMap<>(), new HashMap<>(), null, Method.GET, "/", null, null);
     }
 
     private FakeRestRequest(NamedXContentRegistry xContentRegistry, Map<String, List<String>> headers, Map<String, String> params,
-                            BytesReference content, Method method, String path, SocketAddress remoteAddress) {
+                            BytesReference content, Method method, String path, SocketAddress remoteAddress, BodyStream bodyStream) {
         super(xContentRegistry, params, path, headers);
         this.content = content;
         this.method = method;
         this.remoteAddress = remoteAddress;
+        this.bodyStream = bodyStream;
     }
 
     @Override
@@ -68,6 +70,11 @@ public class FakeRestRequest extends RestRequest {
         return content;
     }
 
+    @Override
+    public BodyStream bodyStream() {
+        return bodyStream;
+    }
+
     @Override
     public SocketAddress getRemoteAddress() {
         return remoteAddress;
@@ -88,6 +95,8 @@ public class FakeRestRequest extends RestRequest {
 
         private SocketAddress address = null;
 
+        private BodyStream bodyStream = null;
+
         public Builder(NamedXContentRegistry xContentRegistry) {
             this.xContentRegistry = xContentRegistry;
         }
@@ -125,8 +134,16 @@ public class FakeRestRequest extends RestRequest {
             return this;
         }
 
+        public Builder withBodyStream(BodyStream bodyStream, XContentType xContentType) {
+            this.bodyStream = bodyStream;
+            if (xContentType != null) {
+                headers.put("Content-Type", Collections.singletonList(xContentType.mediaType()));
+            }
+            return this;
+        }
+
         public FakeRestRequest build() {
-            return new FakeRestRequest(xContentRegistry, headers, params, content, method, path, address);
+            return new FakeRestRequest(xContentRegistry, headers, params, content, method, path, address, bodyStream);
         }
 
     }